@@ -80,6 +80,7 @@ public class PropServerConfiguration implements ServerConfiguration {
     private final String cairoAttachPartitionSuffix;
     private final CairoConfiguration cairoConfiguration = new PropCairoConfiguration();
     private final int cairoMaxCrashFiles;
+    private final int cairoPageFramePrefetchCount;
     private final int cairoPageFrameReduceColumnListCapacity;
     private final int cairoPageFrameReduceQueueCapacity;
     private final int cairoPageFrameReduceRowIdListCapacity;
@@ -93,6 +94,9 @@ public class PropServerConfiguration implements ServerConfiguration {
     private final PropSqlExecutionCircuitBreakerConfiguration circuitBreakerConfiguration = new PropSqlExecutionCircuitBreakerConfiguration();
     private final int circuitBreakerThrottle;
     private final long circuitBreakerTimeout;
+    private final long columnBufferCachePartitionAge;
+    private final String columnBufferCachePriorityTables;
+    private final long columnBufferCacheSize;
     private final int columnIndexerQueueCapacity;
     private final int columnPurgeQueueCapacity;
     private final long columnPurgeRetryDelay;
@@ -112,6 +116,7 @@ public class PropServerConfiguration implements ServerConfiguration {
     private final PropHttpMinIODispatcherConfiguration httpMinIODispatcherConfiguration = new PropHttpMinIODispatcherConfiguration();
     private final PropHttpMinServerConfiguration httpMinServerConfiguration = new PropHttpMinServerConfiguration();
     private final boolean httpMinServerEnabled;
+    private final boolean httpIlpEnabled;
     private final HttpServerConfiguration httpServerConfiguration = new PropHttpServerConfiguration();
     private final boolean httpServerEnabled;
     private final int httpSqlCacheBlockCount;
@@ -164,6 +169,7 @@ public class PropServerConfiguration implements ServerConfiguration {
     private final long o3MaxLag;
     private final long o3MinLagUs;
     private final int o3OpenColumnQueueCapacity;
+    private final int o3PartitionChunkSize;
     private final int o3PartitionPurgeListCapacity;
     private final int o3PartitionQueueCapacity;
     private final int o3PurgeDiscoveryQueueCapacity;
@@ -248,6 +254,13 @@ public class PropServerConfiguration implements ServerConfiguration {
     private final int sqlPageFrameMinRows;
     private final boolean sqlParallelFilterEnabled;
     private final boolean sqlParallelFilterPreTouchEnabled;
+    private final boolean sqlParallelGroupByEnabled;
+    private final boolean sqlParallelSampleByEnabled;
+    private final boolean sqlParallelHashJoinEnabled;
+    private final boolean sqlParallelSortEnabled;
+    private final long sqlQueryMemoryBudget;
+    private final boolean partitionStatsEnabled;
+    private final long partitionCompressionAge;
     private final int sqlRenameTableModelPoolCapacity;
     private final int sqlSmallMapKeyCapacity;
     private final int sqlSmallMapPageSize;
@@ -272,6 +285,7 @@ public class PropServerConfiguration implements ServerConfiguration {
     private final int vectorAggregateQueueCapacity;
     private final WorkerPoolConfiguration walApplyPoolConfiguration = new PropWalApplyPoolConfiguration();
     private final long walApplySleepTimeout;
+    private final long walApplyTableTimeQuota;
     private final int[] walApplyWorkerAffinity;
     private final int walApplyWorkerCount;
     private final boolean walApplyWorkerHaltOnError;
@@ -343,6 +357,7 @@ public class PropServerConfiguration implements ServerConfiguration {
     private int jsonQueryFloatScale;
     private String keepAliveHeader;
     private String lineTcpAuthDbPath;
+    private boolean lineTcpBinaryFormatSupported;
     private long lineTcpCommitIntervalDefault;
     private double lineTcpCommitIntervalFraction;
     private int lineTcpConnectionPoolInitialCapacity;
@@ -364,7 +379,10 @@ public class PropServerConfiguration implements ServerConfiguration {
     private int lineTcpNetConnectionRcvBuf;
     private long lineTcpNetConnectionTimeout;
     private LineProtoTimestampAdapter lineTcpTimestampAdapter;
+    private int lineTcpWriterMaxShards;
     private int lineTcpWriterQueueCapacity;
+    private long lineTcpWriterShardEvents;
+    private double lineTcpWriterShardLoadRatio;
     private int[] lineTcpWriterWorkerAffinity;
     private int lineTcpWriterWorkerCount;
     private boolean lineTcpWriterWorkerPoolHaltOnError;
@@ -462,6 +480,7 @@ public class PropServerConfiguration implements ServerConfiguration {
         this.walSupported = getBoolean(properties, env, PropertyKey.CAIRO_WAL_SUPPORTED, true);
         this.walSegmentRolloverRowCount = getLong(properties, env, PropertyKey.CAIRO_WAL_SEGMENT_ROLLOVER_ROW_COUNT, 200_000);
         this.walCommitSquashRowLimit = getInt(properties, env, PropertyKey.CAIRO_WAL_COMMIT_SQUASH_ROW_LIMIT, 512 * 1024);
+        this.walApplyTableTimeQuota = getLong(properties, env, PropertyKey.CAIRO_WAL_APPLY_TABLE_TIME_QUOTA, 1000);
         this.tableTypeConversionEnabled = getBoolean(properties, env, PropertyKey.TABLE_TYPE_CONVERSION_ENABLED, true);
 
         this.dbDirectory = getString(properties, env, PropertyKey.CAIRO_ROOT, DB_DIRECTORY);
@@ -747,6 +766,7 @@ public class PropServerConfiguration implements ServerConfiguration {
             this.httpSqlCacheEnabled = getBoolean(properties, env, PropertyKey.HTTP_QUERY_CACHE_ENABLED, true);
             this.httpSqlCacheBlockCount = getInt(properties, env, PropertyKey.HTTP_QUERY_CACHE_BLOCK_COUNT, 4);
             this.httpSqlCacheRowCount = getInt(properties, env, PropertyKey.HTTP_QUERY_CACHE_ROW_COUNT, 4);
+            this.httpIlpEnabled = getBoolean(properties, env, PropertyKey.HTTP_ILP_ENABLED, true);
             this.sqlCharacterStoreCapacity = getInt(properties, env, PropertyKey.CAIRO_CHARACTER_STORE_CAPACITY, 1024);
             this.sqlCharacterStoreSequencePoolCapacity = getInt(properties, env, PropertyKey.CAIRO_CHARACTER_STORE_SEQUENCE_POOL_CAPACITY, 64);
             this.sqlColumnPoolCapacity = getInt(properties, env, PropertyKey.CAIRO_COLUMN_POOL_CAPACITY, 4096);
@@ -799,8 +819,24 @@ public class PropServerConfiguration implements ServerConfiguration {
             this.cairoPageFrameReduceColumnListCapacity = Numbers.ceilPow2(getInt(properties, env, PropertyKey.CAIRO_PAGE_FRAME_COLUMN_LIST_CAPACITY, 16));
             this.sqlParallelFilterEnabled = getBoolean(properties, env, PropertyKey.CAIRO_SQL_PARALLEL_FILTER_ENABLED, true);
             this.sqlParallelFilterPreTouchEnabled = getBoolean(properties, env, PropertyKey.CAIRO_SQL_PARALLEL_FILTER_PRETOUCH_ENABLED, true);
+            this.sqlParallelGroupByEnabled = getBoolean(properties, env, PropertyKey.CAIRO_SQL_PARALLEL_GROUPBY_ENABLED, false);
+            this.sqlParallelSampleByEnabled = getBoolean(properties, env, PropertyKey.CAIRO_SQL_PARALLEL_SAMPLEBY_ENABLED, false);
+            this.sqlParallelHashJoinEnabled = getBoolean(properties, env, PropertyKey.CAIRO_SQL_PARALLEL_HASHJOIN_ENABLED, false);
+            this.sqlParallelSortEnabled = getBoolean(properties, env, PropertyKey.CAIRO_SQL_PARALLEL_SORT_ENABLED, false);
+            this.sqlQueryMemoryBudget = getLongSize(properties, env, PropertyKey.CAIRO_SQL_QUERY_MEMORY_BUDGET, 0);
+            this.partitionStatsEnabled = getBoolean(properties, env, PropertyKey.CAIRO_PARTITION_STATS_ENABLED, true);
+            this.partitionCompressionAge = getLong(properties, env, PropertyKey.CAIRO_PARTITION_COMPRESSION_AGE, -1);
+            if (this.partitionCompressionAge == 0) {
+                // partitions would be compressed as soon as they are closed and rewritten by every late row
+                throw new ServerConfigurationException("invalid configuration value [key=" + PropertyKey.CAIRO_PARTITION_COMPRESSION_AGE.getPropertyPath() +
+                        ", description=partition compression age must be positive or negative to disable compression]");
+            }
+            this.columnBufferCacheSize = getLongSize(properties, env, PropertyKey.CAIRO_COLUMN_BUFFER_CACHE_SIZE, 0);
+            this.columnBufferCachePartitionAge = getLong(properties, env, PropertyKey.CAIRO_COLUMN_BUFFER_CACHE_PARTITION_AGE, 86_400_000);
+            this.columnBufferCachePriorityTables = getString(properties, env, PropertyKey.CAIRO_COLUMN_BUFFER_CACHE_PRIORITY_TABLES, "");
             this.cairoPageFrameReduceShardCount = getInt(properties, env, PropertyKey.CAIRO_PAGE_FRAME_SHARD_COUNT, 4);
             this.cairoPageFrameReduceTaskPoolCapacity = getInt(properties, env, PropertyKey.CAIRO_PAGE_FRAME_TASK_POOL_CAPACITY, 4);
+            this.cairoPageFramePrefetchCount = getInt(properties, env, PropertyKey.CAIRO_PAGE_FRAME_PREFETCH_COUNT, 4);
 
             this.writerDataIndexKeyAppendPageSize = Files.ceilPageSize(getLongSize(properties, env, PropertyKey.CAIRO_WRITER_DATA_INDEX_KEY_APPEND_PAGE_SIZE, 512 * 1024));
             this.writerDataIndexValueAppendPageSize = Files.ceilPageSize(getLongSize(properties, env, PropertyKey.CAIRO_WRITER_DATA_INDEX_VALUE_APPEND_PAGE_SIZE, 16 * Numbers.SIZE_1MB));
@@ -889,6 +925,7 @@ public class PropServerConfiguration implements ServerConfiguration {
             this.vectorAggregateQueueCapacity = getQueueCapacity(properties, env, PropertyKey.CAIRO_VECTOR_AGGREGATE_QUEUE_CAPACITY, 128);
             this.o3CallbackQueueCapacity = getQueueCapacity(properties, env, PropertyKey.CAIRO_O3_CALLBACK_QUEUE_CAPACITY, 128);
             this.o3PartitionQueueCapacity = getQueueCapacity(properties, env, PropertyKey.CAIRO_O3_PARTITION_QUEUE_CAPACITY, 128);
+            this.o3PartitionChunkSize = Math.max(1, getInt(properties, env, PropertyKey.CAIRO_O3_PARTITION_CHUNK_SIZE, 32));
             this.o3OpenColumnQueueCapacity = getQueueCapacity(properties, env, PropertyKey.CAIRO_O3_OPEN_COLUMN_QUEUE_CAPACITY, 128);
             this.o3CopyQueueCapacity = getQueueCapacity(properties, env, PropertyKey.CAIRO_O3_COPY_QUEUE_CAPACITY, 128);
             this.o3PurgeDiscoveryQueueCapacity = Numbers.ceilPow2(getInt(properties, env, PropertyKey.CAIRO_O3_PURGE_DISCOVERY_QUEUE_CAPACITY, 128));
@@ -973,6 +1010,9 @@ public class PropServerConfiguration implements ServerConfiguration {
                             PropertyKey.LINE_TCP_MAX_MEASUREMENT_SIZE.getPropertyPath() + " (" + this.lineTcpMaxMeasurementSize + ") cannot be more than line.tcp.msg.buffer.size (" + this.lineTcpMsgBufferSize + ")");
                 }
                 this.lineTcpWriterQueueCapacity = getQueueCapacity(properties, env, PropertyKey.LINE_TCP_WRITER_QUEUE_CAPACITY, 128);
+                this.lineTcpWriterMaxShards = getInt(properties, env, PropertyKey.LINE_TCP_WRITER_MAX_SHARDS, 0);
+                this.lineTcpWriterShardEvents = getLong(properties, env, PropertyKey.LINE_TCP_WRITER_SHARD_EVENTS, 10_000);
+                this.lineTcpWriterShardLoadRatio = getDouble(properties, env, PropertyKey.LINE_TCP_WRITER_SHARD_LOAD_RATIO, 0.5);
                 this.lineTcpWriterWorkerCount = getInt(properties, env, PropertyKey.LINE_TCP_WRITER_WORKER_COUNT, 1);
                 cpuUsed += this.lineTcpWriterWorkerCount;
                 this.lineTcpWriterWorkerAffinity = getAffinity(properties, env, PropertyKey.LINE_TCP_WRITER_WORKER_AFFINITY, lineTcpWriterWorkerCount);
@@ -1016,6 +1056,7 @@ public class PropServerConfiguration implements ServerConfiguration {
                 }
                 this.minIdleMsBeforeWriterRelease = getLong(properties, env, PropertyKey.LINE_TCP_MIN_IDLE_MS_BEFORE_WRITER_RELEASE, 500);
                 this.lineTcpDisconnectOnError = getBoolean(properties, env, PropertyKey.LINE_TCP_DISCONNECT_ON_ERROR, true);
+                this.lineTcpBinaryFormatSupported = getBoolean(properties, env, PropertyKey.LINE_TCP_BINARY_FORMAT_SUPPORTED, false);
                 this.stringToCharCastAllowed = getBoolean(properties, env, PropertyKey.LINE_TCP_UNDOCUMENTED_STRING_TO_CHAR_CAST_ALLOWED, false);
                 this.symbolAsFieldSupported = getBoolean(properties, env, PropertyKey.LINE_TCP_UNDOCUMENTED_SYMBOL_AS_FIELD_SUPPORTED, false);
                 this.stringAsTagSupported = getBoolean(properties, env, PropertyKey.LINE_TCP_UNDOCUMENTED_STRING_AS_TAG_SUPPORTED, false);
@@ -1552,6 +1593,21 @@ public class PropServerConfiguration implements ServerConfiguration {
             return circuitBreakerConfiguration;
         }
 
+        @Override
+        public long getColumnBufferCachePartitionAge() {
+            return columnBufferCachePartitionAge;
+        }
+
+        @Override
+        public String getColumnBufferCachePriorityTables() {
+            return columnBufferCachePriorityTables;
+        }
+
+        @Override
+        public long getColumnBufferCacheSize() {
+            return columnBufferCacheSize;
+        }
+
         @Override
         public int getColumnCastModelPoolCapacity() {
             return sqlColumnCastModelPoolCapacity;
@@ -1802,6 +1858,11 @@ public class PropServerConfiguration implements ServerConfiguration {
             return o3OpenColumnQueueCapacity;
         }
 
+        @Override
+        public int getO3PartitionChunkSize() {
+            return o3PartitionChunkSize;
+        }
+
         @Override
         public int getO3PartitionQueueCapacity() {
             return o3PartitionQueueCapacity;
@@ -1812,6 +1873,11 @@ public class PropServerConfiguration implements ServerConfiguration {
             return o3PurgeDiscoveryQueueCapacity;
         }
 
+        @Override
+        public int getPageFramePrefetchCount() {
+            return cairoPageFramePrefetchCount;
+        }
+
         @Override
         public int getPageFrameReduceColumnListCapacity() {
             return cairoPageFrameReduceColumnListCapacity;
@@ -2196,6 +2262,11 @@ public class PropServerConfiguration implements ServerConfiguration {
             return vectorAggregateQueueCapacity;
         }
 
+        @Override
+        public long getWalApplyTableTimeQuota() {
+            return walApplyTableTimeQuota;
+        }
+
         @Override
         public int getWalCommitSquashRowLimit() {
             return walCommitSquashRowLimit;
@@ -2306,6 +2377,41 @@ public class PropServerConfiguration implements ServerConfiguration {
             return sqlParallelFilterPreTouchEnabled;
         }
 
+        @Override
+        public boolean isSqlParallelGroupByEnabled() {
+            return sqlParallelGroupByEnabled;
+        }
+
+        @Override
+        public boolean isSqlParallelSampleByEnabled() {
+            return sqlParallelSampleByEnabled;
+        }
+
+        @Override
+        public boolean isSqlParallelHashJoinEnabled() {
+            return sqlParallelHashJoinEnabled;
+        }
+
+        @Override
+        public boolean isSqlParallelSortEnabled() {
+            return sqlParallelSortEnabled;
+        }
+
+        @Override
+        public long getSqlQueryMemoryBudget() {
+            return sqlQueryMemoryBudget;
+        }
+
+        @Override
+        public boolean isPartitionStatsEnabled() {
+            return partitionStatsEnabled;
+        }
+
+        @Override
+        public long getPartitionCompressionAge() {
+            return partitionCompressionAge;
+        }
+
         @Override
         public boolean isTableTypeConversionEnabled() {
             return tableTypeConversionEnabled;
@@ -2632,6 +2738,11 @@ public class PropServerConfiguration implements ServerConfiguration {
             return jsonQueryProcessorConfiguration;
         }
 
+        @Override
+        public LineTcpReceiverConfiguration getLineTcpReceiverConfiguration() {
+            return lineTcpReceiverConfiguration;
+        }
+
         @Override
         public String getPoolName() {
             return "http";
@@ -2692,6 +2803,12 @@ public class PropServerConfiguration implements ServerConfiguration {
             return httpServerEnabled;
         }
 
+        @Override
+        public boolean isLineHttpEnabled() {
+            // line protocol settings are parsed only when the TCP receiver is enabled
+            return httpIlpEnabled && lineTcpEnabled;
+        }
+
         @Override
         public boolean isQueryCacheEnabled() {
             return httpSqlCacheEnabled;
@@ -2890,16 +3007,36 @@ public class PropServerConfiguration implements ServerConfiguration {
             return minIdleMsBeforeWriterRelease;
         }
 
+        @Override
+        public int getWriterMaxShards() {
+            return lineTcpWriterMaxShards;
+        }
+
         @Override
         public int getWriterQueueCapacity() {
             return lineTcpWriterQueueCapacity;
         }
 
+        @Override
+        public long getWriterShardEvents() {
+            return lineTcpWriterShardEvents;
+        }
+
+        @Override
+        public double getWriterShardLoadRatio() {
+            return lineTcpWriterShardLoadRatio;
+        }
+
         @Override
         public WorkerPoolConfiguration getWriterWorkerPoolConfiguration() {
             return lineTcpWriterWorkerPoolConfiguration;
         }
 
+        @Override
+        public boolean isBinaryFormatSupported() {
+            return lineTcpBinaryFormatSupported;
+        }
+
         @Override
         public boolean isEnabled() {
             return lineTcpEnabled;
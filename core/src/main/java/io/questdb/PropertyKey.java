@@ -87,8 +87,19 @@ public enum PropertyKey {
     CAIRO_PAGE_FRAME_REDUCE_QUEUE_CAPACITY("cairo.page.frame.reduce.queue.capacity"),
     CAIRO_PAGE_FRAME_ROWID_LIST_CAPACITY("cairo.page.frame.rowid.list.capacity"),
     CAIRO_PAGE_FRAME_COLUMN_LIST_CAPACITY("cairo.page.frame.column.list.capacity"),
+    CAIRO_PAGE_FRAME_PREFETCH_COUNT("cairo.page.frame.prefetch.count"),
     CAIRO_SQL_PARALLEL_FILTER_ENABLED("cairo.sql.parallel.filter.enabled"),
     CAIRO_SQL_PARALLEL_FILTER_PRETOUCH_ENABLED("cairo.sql.parallel.filter.pretouch.enabled"),
+    CAIRO_SQL_PARALLEL_GROUPBY_ENABLED("cairo.sql.parallel.groupby.enabled"),
+    CAIRO_SQL_PARALLEL_SAMPLEBY_ENABLED("cairo.sql.parallel.sampleby.enabled"),
+    CAIRO_SQL_PARALLEL_HASHJOIN_ENABLED("cairo.sql.parallel.hashjoin.enabled"),
+    CAIRO_SQL_PARALLEL_SORT_ENABLED("cairo.sql.parallel.sort.enabled"),
+    CAIRO_SQL_QUERY_MEMORY_BUDGET("cairo.sql.query.memory.budget"),
+    CAIRO_PARTITION_STATS_ENABLED("cairo.partition.stats.enabled"),
+    CAIRO_PARTITION_COMPRESSION_AGE("cairo.partition.compression.age"),
+    CAIRO_COLUMN_BUFFER_CACHE_SIZE("cairo.column.buffer.cache.size"),
+    CAIRO_COLUMN_BUFFER_CACHE_PARTITION_AGE("cairo.column.buffer.cache.partition.age"),
+    CAIRO_COLUMN_BUFFER_CACHE_PRIORITY_TABLES("cairo.column.buffer.cache.priority.tables"),
     CAIRO_PAGE_FRAME_SHARD_COUNT("cairo.page.frame.shard.count"),
     CAIRO_PAGE_FRAME_TASK_POOL_CAPACITY("cairo.page.frame.task.pool.capacity"),
     CAIRO_SQL_JOIN_METADATA_PAGE_SIZE("cairo.sql.join.metadata.page.size"),
@@ -143,6 +154,7 @@ public enum PropertyKey {
     CAIRO_VECTOR_AGGREGATE_QUEUE_CAPACITY("cairo.vector.aggregate.queue.capacity"),
     CAIRO_O3_CALLBACK_QUEUE_CAPACITY("cairo.o3.callback.queue.capacity"),
     CAIRO_O3_PARTITION_QUEUE_CAPACITY("cairo.o3.partition.queue.capacity"),
+    CAIRO_O3_PARTITION_CHUNK_SIZE("cairo.o3.partition.chunk.size"),
     CAIRO_O3_OPEN_COLUMN_QUEUE_CAPACITY("cairo.o3.open.column.queue.capacity"),
     CAIRO_O3_COPY_QUEUE_CAPACITY("cairo.o3.copy.queue.capacity"),
     CAIRO_O3_UPD_PARTITION_SIZE_QUEUE_CAPACITY("cairo.o3.upd.partition.size.queue.capacity"),
@@ -251,6 +263,7 @@ public enum PropertyKey {
     HTTP_QUERY_CACHE_ENABLED("http.query.cache.enabled"),
     HTTP_QUERY_CACHE_BLOCK_COUNT("http.query.cache.block.count"),
     HTTP_QUERY_CACHE_ROW_COUNT("http.query.cache.row.count"),
+    HTTP_ILP_ENABLED("http.ilp.enabled"),
     LINE_UDP_BIND_TO("line.udp.bind.to"),
     LINE_UDP_HALT_ON_ERROR("line.udp.haltOnError"),
     LINE_UDP_JOIN("line.udp.join"),
@@ -280,6 +293,9 @@ public enum PropertyKey {
     LINE_TCP_MSG_BUFFER_SIZE("line.tcp.msg.buffer.size"),
     LINE_TCP_MAX_MEASUREMENT_SIZE("line.tcp.max.measurement.size"),
     LINE_TCP_WRITER_QUEUE_CAPACITY("line.tcp.writer.queue.capacity"),
+    LINE_TCP_WRITER_MAX_SHARDS("line.tcp.writer.max.shards"),
+    LINE_TCP_WRITER_SHARD_EVENTS("line.tcp.writer.shard.events"),
+    LINE_TCP_WRITER_SHARD_LOAD_RATIO("line.tcp.writer.shard.load.ratio"),
     LINE_TCP_WRITER_WORKER_COUNT("line.tcp.writer.worker.count"),
     LINE_TCP_WRITER_WORKER_AFFINITY("line.tcp.writer.worker.affinity"),
     LINE_TCP_WRITER_HALT_ON_ERROR("line.tcp.writer.halt.on.error"),
@@ -299,6 +315,7 @@ public enum PropertyKey {
     LINE_DEFAULT_PARTITION_BY("line.default.partition.by"),
     LINE_TCP_MIN_IDLE_MS_BEFORE_WRITER_RELEASE("line.tcp.min.idle.ms.before.writer.release"),
     LINE_TCP_DISCONNECT_ON_ERROR("line.tcp.disconnect.on.error"),
+    LINE_TCP_BINARY_FORMAT_SUPPORTED("line.tcp.binary.format.supported"),
     LINE_TCP_UNDOCUMENTED_STRING_TO_CHAR_CAST_ALLOWED("line.tcp.undocumented.string.to.char.cast.allowed"),
     LINE_TCP_UNDOCUMENTED_SYMBOL_AS_FIELD_SUPPORTED("line.tcp.undocumented.symbol.as.field.supported"),
     LINE_TCP_UNDOCUMENTED_STRING_AS_TAG_SUPPORTED("line.tcp.undocumented.string.as.tag.supported"),
@@ -389,6 +406,7 @@ public enum PropertyKey {
     CAIRO_WAL_RECREATE_DISTRESSED_SEQUENCER_ATTEMPTS("cairo.wal.recreate.distressed.sequencer.attempts"),
     CAIRO_WAL_INACTIVE_WRITER_TTL("cairo.wal.inactive.writer.ttl"),
     CAIRO_WAL_COMMIT_SQUASH_ROW_LIMIT("cairo.wal.commit.squash.row.limit"),
+    CAIRO_WAL_APPLY_TABLE_TIME_QUOTA("cairo.wal.apply.table.time.quota"),
     READ_ONLY_INSTANCE("readonly"),
     CAIRO_TABLE_REGISTRY_AUTO_RELOAD_FREQUENCY("cairo.table.registry.auto.reload.frequency");
 
@@ -28,6 +28,8 @@ import io.questdb.cairo.CairoConfiguration;
 import io.questdb.cairo.CairoEngine;
 import io.questdb.cairo.ColumnIndexerJob;
 import io.questdb.cairo.O3Utils;
+import io.questdb.cairo.PartitionCompressionJob;
+import io.questdb.cairo.mv.MatViewRefreshJob;
 import io.questdb.cairo.wal.ApplyWal2TableJob;
 import io.questdb.cairo.wal.CheckWalTransactionsJob;
 import io.questdb.cairo.wal.WalPurgeJob;
@@ -119,11 +121,21 @@ public class ServerMain implements Closeable {
                             sharedPool.assign(walPurgeJob);
                             sharedPool.freeOnExit(walPurgeJob);
 
+                            final MatViewRefreshJob matViewRefreshJob = new MatViewRefreshJob(engine, ffCache);
+                            sharedPool.assign(matViewRefreshJob);
+                            sharedPool.freeOnExit(matViewRefreshJob);
+
                             if (!config.getWalApplyPoolConfiguration().isEnabled()) {
                                 setupWalApplyJob(sharedPool, engine, getSharedWorkerCount(), ffCache);
                             }
                         }
 
+                        if (cairoConfig.getPartitionCompressionAge() > -1) {
+                            final PartitionCompressionJob partitionCompressionJob = new PartitionCompressionJob(engine, ffCache);
+                            sharedPool.assign(partitionCompressionJob);
+                            sharedPool.freeOnExit(partitionCompressionJob);
+                        }
+
                         // text import
                         TextImportJob.assignToPool(messageBus, sharedPool);
                         if (cairoConfig.getSqlCopyInputRoot() != null) {
@@ -29,11 +29,13 @@ import io.questdb.cairo.sql.RecordMetadata;
 import io.questdb.griffin.PlanSink;
 import io.questdb.griffin.SqlExecutionContext;
 import io.questdb.std.str.CharSink;
+import org.jetbrains.annotations.Nullable;
 
 public abstract class AbstractDataFrameCursorFactory implements DataFrameCursorFactory {
     private final GenericRecordMetadata metadata;
     private final TableToken tableToken;
     private final long tableVersion;
+    protected PartitionPruner partitionPruner;
 
     public AbstractDataFrameCursorFactory(TableToken tableToken, long tableVersion, GenericRecordMetadata metadata) {
         this.tableToken = tableToken;
@@ -49,6 +51,10 @@ public abstract class AbstractDataFrameCursorFactory implements DataFrameCursorF
         return metadata;
     }
 
+    public void setPartitionPruner(@Nullable PartitionPruner partitionPruner) {
+        this.partitionPruner = partitionPruner;
+    }
+
     @Override
     public boolean supportTableRowId(TableToken tableToken) {
         return this.tableToken.equals(tableToken);
@@ -28,11 +28,13 @@ import io.questdb.cairo.sql.DataFrame;
 import io.questdb.cairo.sql.DataFrameCursor;
 import io.questdb.cairo.sql.StaticSymbolTable;
 import io.questdb.std.Misc;
+import org.jetbrains.annotations.Nullable;
 
 public abstract class AbstractFullDataFrameCursor implements DataFrameCursor {
     protected final FullTableDataFrame frame = new FullTableDataFrame();
     protected int partitionHi;
     protected int partitionIndex;
+    protected PartitionPruner partitionPruner;
     protected TableReader reader;
 
     @Override
@@ -58,6 +60,9 @@ public abstract class AbstractFullDataFrameCursor implements DataFrameCursor {
     public DataFrameCursor of(TableReader reader) {
         this.reader = reader;
         this.partitionHi = reader.getPartitionCount();
+        if (partitionPruner != null) {
+            partitionPruner.of(reader);
+        }
         toTop();
         return this;
     }
@@ -66,10 +71,17 @@ public abstract class AbstractFullDataFrameCursor implements DataFrameCursor {
     public boolean reload() {
         boolean moreData = reader.reload();
         this.partitionHi = reader.getPartitionCount();
+        if (partitionPruner != null) {
+            partitionPruner.of(reader);
+        }
         toTop();
         return moreData;
     }
 
+    public void setPartitionPruner(@Nullable PartitionPruner partitionPruner) {
+        this.partitionPruner = partitionPruner;
+    }
+
     @Override
     public long size() {
         return reader.size();
@@ -33,6 +33,7 @@ import io.questdb.griffin.SqlExecutionContext;
 import io.questdb.griffin.model.RuntimeIntrinsicIntervalModel;
 import io.questdb.std.LongList;
 import io.questdb.std.Misc;
+import org.jetbrains.annotations.Nullable;
 
 public abstract class AbstractIntervalDataFrameCursor implements DataFrameCursor {
     static final int SCAN_DOWN = 1;
@@ -49,6 +50,7 @@ public abstract class AbstractIntervalDataFrameCursor implements DataFrameCursor
     // searching partition from top every time
     protected long partitionLimit;
     protected int partitionLo;
+    protected PartitionPruner partitionPruner;
     protected TableReader reader;
     protected long size = -1;
     protected long sizeSoFar = 0;
@@ -90,6 +92,9 @@ public abstract class AbstractIntervalDataFrameCursor implements DataFrameCursor
     public AbstractIntervalDataFrameCursor of(TableReader reader, SqlExecutionContext sqlContext) throws SqlException {
         this.reader = reader;
         this.intervals = this.intervalsModel.calculateIntervals(sqlContext);
+        if (partitionPruner != null) {
+            partitionPruner.of(reader);
+        }
         calculateRanges(intervals);
         return this;
     }
@@ -97,12 +102,19 @@ public abstract class AbstractIntervalDataFrameCursor implements DataFrameCursor
     @Override
     public boolean reload() {
         if (reader != null && reader.reload()) {
+            if (partitionPruner != null) {
+                partitionPruner.of(reader);
+            }
             calculateRanges(intervals);
             return true;
         }
         return false;
     }
 
+    public void setPartitionPruner(@Nullable PartitionPruner partitionPruner) {
+        this.partitionPruner = partitionPruner;
+    }
+
     @Override
     public long size() {
         return size > -1 ? size : computeSize();
@@ -82,6 +82,15 @@ public interface CairoConfiguration {
 
     SqlExecutionCircuitBreakerConfiguration getCircuitBreakerConfiguration();
 
+    // partitions older than this many milliseconds, relative to the table max timestamp, are read via the column buffer cache
+    long getColumnBufferCachePartitionAge();
+
+    // comma separated names of the tables whose columns are evicted from the column buffer cache last
+    String getColumnBufferCachePriorityTables();
+
+    // zero disables the column buffer cache, column files of all partitions are mapped then
+    long getColumnBufferCacheSize();
+
     int getColumnCastModelPoolCapacity();
 
     int getColumnIndexerQueueCapacity();
@@ -212,6 +221,9 @@ public interface CairoConfiguration {
 
     int getO3OpenColumnQueueCapacity();
 
+    // max number of partitions an O3 commit merges at a time, memory used by the merge grows with it
+    int getO3PartitionChunkSize();
+
     int getO3PartitionQueueCapacity();
 
     int getO3PurgeDiscoveryQueueCapacity();
@@ -221,6 +233,12 @@ public interface CairoConfiguration {
         return "hs_err_pid+";
     }
 
+    /**
+     * Number of page frames ahead of the one being reduced whose column memory is
+     * advised to the OS as needed soon. Zero disables read-ahead.
+     */
+    int getPageFramePrefetchCount();
+
     int getPageFrameReduceColumnListCapacity();
 
     int getPageFrameReduceQueueCapacity();
@@ -403,6 +421,9 @@ public interface CairoConfiguration {
 
     int getVectorAggregateQueueCapacity();
 
+    // time in millis a WAL apply job spends on one table before letting other tables progress
+    long getWalApplyTableTimeQuota();
+
     int getWalCommitSquashRowLimit();
 
     boolean getWalEnabledDefault();
@@ -452,6 +473,20 @@ public interface CairoConfiguration {
 
     boolean isSqlParallelFilterPreTouchEnabled();
 
+    boolean isSqlParallelGroupByEnabled();
+
+    boolean isSqlParallelSampleByEnabled();
+
+    boolean isSqlParallelHashJoinEnabled();
+
+    boolean isSqlParallelSortEnabled();
+
+    long getSqlQueryMemoryBudget();
+
+    boolean isPartitionStatsEnabled();
+
+    long getPartitionCompressionAge();
+
     boolean isTableTypeConversionEnabled();
 
     boolean isWalSupported();
@@ -29,11 +29,15 @@ import io.questdb.MessageBusImpl;
 import io.questdb.Metrics;
 import io.questdb.Telemetry;
 import io.questdb.cairo.mig.EngineMigration;
+import io.questdb.cairo.mv.MatViewDefinition;
+import io.questdb.cairo.mv.MatViewGraph;
 import io.questdb.cairo.pool.*;
 import io.questdb.cairo.security.AllowAllCairoSecurityContext;
 import io.questdb.cairo.sql.AsyncWriterCommand;
 import io.questdb.cairo.sql.TableRecordMetadata;
 import io.questdb.cairo.sql.TableReferenceOutOfDateException;
+import io.questdb.cairo.vm.Vm;
+import io.questdb.cairo.vm.api.MemoryCMR;
 import io.questdb.cairo.vm.api.MemoryMARW;
 import io.questdb.cairo.wal.WalReader;
 import io.questdb.cairo.wal.WalWriter;
@@ -64,8 +68,10 @@ public class CairoEngine implements Closeable, WriterSource {
     public static final String BUSY_READER = "busyReader";
     private static final Log LOG = LogFactory.getLog(CairoEngine.class);
     private final AtomicLong asyncCommandCorrelationId = new AtomicLong();
+    private final ColumnBufferCache columnBufferCache;
     private final CairoConfiguration configuration;
     private final EngineMaintenanceJob engineMaintenanceJob;
+    private final MatViewGraph matViewGraph = new MatViewGraph();
     private final MessageBusImpl messageBus;
     private final MetadataPool metadataPool;
     private final Metrics metrics;
@@ -95,7 +101,8 @@ public class CairoEngine implements Closeable, WriterSource {
         this.tableSequencerAPI = new TableSequencerAPI(this, configuration);
         this.messageBus = new MessageBusImpl(configuration);
         this.writerPool = new WriterPool(this.getConfiguration(), this.getMessageBus(), metrics);
-        this.readerPool = new ReaderPool(configuration, messageBus);
+        this.columnBufferCache = configuration.getColumnBufferCacheSize() > 0 ? new ColumnBufferCache(configuration) : null;
+        this.readerPool = new ReaderPool(configuration, messageBus, columnBufferCache);
         this.metadataPool = new MetadataPool(configuration, this);
         this.walWriterPool = new WalWriterPool(configuration, this);
         this.engineMaintenanceJob = new EngineMaintenanceJob(configuration);
@@ -151,6 +158,8 @@ public class CairoEngine implements Closeable, WriterSource {
                 }
             }
         }
+
+        loadMatViews();
     }
 
     @TestOnly
@@ -168,6 +177,7 @@ public class CairoEngine implements Closeable, WriterSource {
     public void close() {
         Misc.free(writerPool);
         Misc.free(readerPool);
+        Misc.free(columnBufferCache);
         Misc.free(metadataPool);
         Misc.free(walWriterPool);
         Misc.free(tableIdGenerator);
@@ -181,6 +191,7 @@ public class CairoEngine implements Closeable, WriterSource {
     @TestOnly
     public void closeNameRegistry() {
         tableNameRegistry.close();
+        matViewGraph.clear();
     }
 
     public TableToken createTable(
@@ -284,6 +295,7 @@ public class CairoEngine implements Closeable, WriterSource {
     ) {
         securityContext.checkWritePermission();
         verifyTableToken(tableToken);
+        matViewGraph.removeView(tableToken);
         if (tableToken.isWal()) {
             if (tableNameRegistry.dropTable(tableToken)) {
                 tableSequencerAPI.dropTable(tableToken, false);
@@ -344,6 +356,11 @@ public class CairoEngine implements Closeable, WriterSource {
         return writerPool.getBusyCount();
     }
 
+    @Nullable
+    public ColumnBufferCache getColumnBufferCache() {
+        return columnBufferCache;
+    }
+
     public long getCommandCorrelationId() {
         return asyncCommandCorrelationId.incrementAndGet();
     }
@@ -356,6 +373,10 @@ public class CairoEngine implements Closeable, WriterSource {
         return engineMaintenanceJob;
     }
 
+    public MatViewGraph getMatViewGraph() {
+        return matViewGraph;
+    }
+
     public MessageBus getMessageBus() {
         return messageBus;
     }
@@ -715,6 +736,8 @@ public class CairoEngine implements Closeable, WriterSource {
     @TestOnly
     public void reloadTableNames(ObjList<TableToken> convertedTables) {
         tableNameRegistry.reloadTableNameCache(convertedTables);
+        matViewGraph.clear();
+        loadMatViews();
     }
 
     public int removeDirectory(@Transient Path path, CharSequence dir) {
@@ -809,6 +832,34 @@ public class CairoEngine implements Closeable, WriterSource {
         writerPool.unlock(tableToken);
     }
 
+    private void loadMatViews() {
+        final ObjList<TableToken> tableTokens = new ObjList<>();
+        tableNameRegistry.getTableTokens(tableTokens, false);
+        final FilesFacade ff = configuration.getFilesFacade();
+        try (Path path = new Path(); MemoryCMR mem = Vm.getCMRInstance()) {
+            path.of(configuration.getRoot());
+            final int rootLen = path.length();
+            for (int i = 0, n = tableTokens.size(); i < n; i++) {
+                final TableToken tableToken = tableTokens.getQuick(i);
+                // views are written by the refresh job and never use WAL
+                if (tableToken.isWal()) {
+                    continue;
+                }
+                try {
+                    final MatViewDefinition viewDefinition = MatViewDefinition.read(ff, mem, path.trimTo(rootLen).concat(tableToken), tableToken);
+                    if (viewDefinition != null) {
+                        matViewGraph.addView(viewDefinition);
+                    }
+                } catch (CairoException e) {
+                    LOG.error().$("could not load materialized view [table=").$(tableToken)
+                            .$(", msg=").$(e.getFlyweightMessage())
+                            .$(", errno=").$(e.getErrno())
+                            .I$();
+                }
+            }
+        }
+    }
+
     private TableToken rename0(Path path, TableToken srcTableToken, CharSequence tableName, Path otherPath, CharSequence to) {
         final FilesFacade ff = configuration.getFilesFacade();
         final CharSequence root = configuration.getRoot();
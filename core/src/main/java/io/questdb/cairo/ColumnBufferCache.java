@@ -0,0 +1,322 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo;
+
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.*;
+import io.questdb.std.str.LPSZ;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+
+/**
+ * Bounded off-heap cache of column files of cold partitions. Files are read with pread() into native
+ * buffers and the OS is asked to drop the file pages from its page cache right after, so that scans over
+ * historical data neither evict the hot partitions of ingested tables from the page cache nor grow
+ * process memory beyond the cache capacity.
+ * <p>
+ * Entries are shared by table readers and are pinned for as long as a reader has them open. Unpinned
+ * entries are evicted with CLOCK: every pass of the clock hand takes one credit away from the entry and
+ * the entry is evicted when it runs out of credits. Credits are topped up on every hit. Columns of
+ * priority tables get more credits, so they outlive columns that were read by one-off scans.
+ * <p>
+ * Entries are keyed by file path and validated against the file modification time, files of cold
+ * partitions are not supposed to change, but the partition could be truncated and re-populated.
+ * When the cache can't fit a file, the caller should fall back to mapping it.
+ * <p>
+ * Columns of compressed partitions are cached decompressed. Such entries are allocated empty and
+ * are filled block by block by the readers, see {@link #acquireDecompressed(LPSZ, long, long, int)}.
+ */
+public class ColumnBufferCache implements Closeable {
+    public static final int PRIORITY_HIGH = 3;
+    public static final int PRIORITY_LOW = 1;
+    private static final Log LOG = LogFactory.getLog(ColumnBufferCache.class);
+    private final long capacity;
+    // the clock ring
+    private final ObjList<Entry> entries = new ObjList<>();
+    private final CharSequenceObjHashMap<Entry> entriesByPath = new CharSequenceObjHashMap<>();
+    private final FilesFacade ff;
+    private final CharSequenceHashSet priorityTables = new CharSequenceHashSet();
+    private int clockHand;
+    private long hitCount;
+    private long missCount;
+    // includes the memory reserved for the files being read
+    private long usedSize;
+
+    public ColumnBufferCache(CairoConfiguration configuration) {
+        this.ff = configuration.getFilesFacade();
+        this.capacity = configuration.getColumnBufferCacheSize();
+        final String tables = configuration.getColumnBufferCachePriorityTables();
+        if (tables != null) {
+            for (String table : tables.split(",")) {
+                table = table.trim();
+                if (table.length() > 0) {
+                    priorityTables.add(table);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns cached contents of the file, reads it when it is not in the cache. The returned entry
+     * is pinned until it is released.
+     *
+     * @param path     path of the file, the cache key
+     * @param fd       file descriptor to read the file from
+     * @param size     number of bytes from the start of the file the caller needs
+     * @param priority {@link #PRIORITY_LOW} or {@link #PRIORITY_HIGH}
+     * @return the entry or null when the file does not fit the cache
+     */
+    @Nullable
+    public Entry acquire(LPSZ path, int fd, long size, int priority) {
+        assert size > 0;
+        final long lastModified = ff.getLastModified(path);
+        synchronized (this) {
+            final Entry entry = entriesByPath.get(path);
+            if (entry != null) {
+                if (entry.lastModified == lastModified && entry.size >= size && entry.decodedBlocks == null) {
+                    entry.refCount++;
+                    entry.credits = Math.max(entry.credits, priority);
+                    hitCount++;
+                    return entry;
+                }
+                // the file has changed or grown
+                detach(entry);
+            }
+            missCount++;
+            if (!reserve(size)) {
+                return null;
+            }
+        }
+
+        // read outside the lock, the other readers could be using the cache meanwhile
+        final long address = Unsafe.malloc(size, MemoryTag.NATIVE_COLUMN_BUFFER_CACHE);
+        try {
+            long offset = 0;
+            while (offset < size) {
+                final long n = ff.read(fd, address + offset, size - offset, offset);
+                if (n < 1) {
+                    throw CairoException.critical(ff.errno()).put("could not read column file [path=").put(path)
+                            .put(", offset=").put(offset)
+                            .put(", size=").put(size)
+                            .put(']');
+                }
+                offset += n;
+            }
+            ff.fadvise(fd, 0, size, Files.POSIX_FADV_DONTNEED);
+        } catch (Throwable th) {
+            Unsafe.free(address, size, MemoryTag.NATIVE_COLUMN_BUFFER_CACHE);
+            synchronized (this) {
+                usedSize -= size;
+            }
+            throw th;
+        }
+
+        final Entry entry = new Entry(Chars.toString(path), address, size, lastModified, priority);
+        synchronized (this) {
+            final Entry existing = entriesByPath.get(path);
+            if (existing != null) {
+                // another reader has read the same file concurrently, the later copy wins
+                detach(existing);
+            }
+            entriesByPath.put(entry.path, entry);
+            entries.add(entry);
+            LOG.debug().$("cached [path=").$(path).$(", size=").$(size).$(", used=").$(usedSize).I$();
+            return entry;
+        }
+    }
+
+    /**
+     * Returns cached decompressed contents of a compressed column file, allocates the entry when it is not
+     * in the cache. Contents of the new entry are left uninitialised. The callers decompress the blocks they
+     * need while holding the entry monitor, see {@link Entry#isDecoded(long)} and {@link Entry#setDecoded(long)}.
+     * The returned entry is pinned until it is released.
+     *
+     * @param path       path of the compressed file, the cache key
+     * @param length     decompressed length of the file
+     * @param blockCount number of compressed blocks in the file
+     * @param priority   {@link #PRIORITY_LOW} or {@link #PRIORITY_HIGH}
+     * @return the entry or null when the file does not fit the cache
+     */
+    @Nullable
+    public Entry acquireDecompressed(LPSZ path, long length, long blockCount, int priority) {
+        assert length > 0;
+        final long lastModified = ff.getLastModified(path);
+        synchronized (this) {
+            final Entry entry = entriesByPath.get(path);
+            if (entry != null) {
+                if (entry.lastModified == lastModified && entry.size == length && entry.decodedBlocks != null) {
+                    entry.refCount++;
+                    entry.credits = Math.max(entry.credits, priority);
+                    hitCount++;
+                    return entry;
+                }
+                detach(entry);
+            }
+            missCount++;
+            if (!reserve(length)) {
+                return null;
+            }
+            final Entry newEntry = new Entry(Chars.toString(path), Unsafe.malloc(length, MemoryTag.NATIVE_COLUMN_BUFFER_CACHE), length, lastModified, priority);
+            newEntry.decodedBlocks = new LongList();
+            newEntry.decodedBlocks.setAll((int) ((blockCount + 63) >>> 6), 0);
+            entriesByPath.put(newEntry.path, newEntry);
+            entries.add(newEntry);
+            return newEntry;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        for (int i = 0, n = entries.size(); i < n; i++) {
+            free(entries.getQuick(i));
+        }
+        entries.clear();
+        entriesByPath.clear();
+        clockHand = 0;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public int getPriority(CharSequence tableName) {
+        return priorityTables.contains(tableName) ? PRIORITY_HIGH : PRIORITY_LOW;
+    }
+
+    public synchronized long getUsedSize() {
+        return usedSize;
+    }
+
+    public synchronized void release(Entry entry) {
+        assert entry.refCount > 0;
+        if (--entry.refCount == 0 && entry.detached) {
+            free(entry);
+        }
+    }
+
+    private void detach(Entry entry) {
+        entriesByPath.remove(entry.path);
+        final int index = entries.indexOf(entry);
+        entries.remove(index);
+        if (index < clockHand) {
+            clockHand--;
+        }
+        entry.detached = true;
+        if (entry.refCount == 0) {
+            free(entry);
+        }
+    }
+
+    private void free(Entry entry) {
+        if (entry.address != 0) {
+            Unsafe.free(entry.address, entry.size, MemoryTag.NATIVE_COLUMN_BUFFER_CACHE);
+            entry.address = 0;
+            usedSize -= entry.size;
+        }
+    }
+
+    private boolean reserve(long size) {
+        if (size > capacity) {
+            return false;
+        }
+        // enough steps to take all credits away from every entry
+        long stepsRemaining = (long) entries.size() * (PRIORITY_HIGH + 1);
+        while (usedSize + size > capacity) {
+            if (entries.size() == 0 || stepsRemaining-- == 0) {
+                // everything is pinned
+                return false;
+            }
+            if (clockHand >= entries.size()) {
+                clockHand = 0;
+            }
+            final Entry entry = entries.getQuick(clockHand);
+            if (entry.refCount == 0 && --entry.credits < 1) {
+                LOG.debug().$("evicted [path=").$(entry.path).$(", size=").$(entry.size).I$();
+                detach(entry);
+            } else {
+                clockHand++;
+            }
+        }
+        usedSize += size;
+        return true;
+    }
+
+    public static class Entry {
+        private final long lastModified;
+        private final String path;
+        private final long size;
+        private long address;
+        private int credits;
+        // blocks of decompressed contents that have been filled in, null for plain file contents
+        private LongList decodedBlocks;
+        private boolean detached;
+        private int refCount = 1;
+
+        private Entry(String path, long address, long size, long lastModified, int credits) {
+            this.path = path;
+            this.address = address;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.credits = credits;
+        }
+
+        public long getAddress() {
+            return address;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Must be called while holding the entry monitor.
+         */
+        public boolean isDecoded(long block) {
+            return (decodedBlocks.getQuick((int) (block >>> 6)) & (1L << block)) != 0;
+        }
+
+        /**
+         * Must be called while holding the entry monitor, after the block has been decompressed.
+         */
+        public void setDecoded(long block) {
+            final int word = (int) (block >>> 6);
+            decodedBlocks.setQuick(word, decodedBlocks.getQuick(word) | (1L << block));
+        }
+    }
+}
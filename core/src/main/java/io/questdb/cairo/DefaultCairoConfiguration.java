@@ -122,6 +122,21 @@ public class DefaultCairoConfiguration implements CairoConfiguration {
         return circuitBreakerConfiguration;
     }
 
+    @Override
+    public long getColumnBufferCachePartitionAge() {
+        return 86_400_000;
+    }
+
+    @Override
+    public String getColumnBufferCachePriorityTables() {
+        return "";
+    }
+
+    @Override
+    public long getColumnBufferCacheSize() {
+        return 0;
+    }
+
     @Override
     public int getColumnCastModelPoolCapacity() {
         return 32;
@@ -373,6 +388,11 @@ public class DefaultCairoConfiguration implements CairoConfiguration {
         return 1024;
     }
 
+    @Override
+    public int getO3PartitionChunkSize() {
+        return 32;
+    }
+
     @Override
     public int getO3PartitionQueueCapacity() {
         return 1024;
@@ -383,6 +403,11 @@ public class DefaultCairoConfiguration implements CairoConfiguration {
         return 1024;
     }
 
+    @Override
+    public int getPageFramePrefetchCount() {
+        return 4;
+    }
+
     @Override
     public int getPageFrameReduceColumnListCapacity() {
         return 16;
@@ -770,6 +795,11 @@ public class DefaultCairoConfiguration implements CairoConfiguration {
         return 1024;
     }
 
+    @Override
+    public long getWalApplyTableTimeQuota() {
+        return 1000;
+    }
+
     @Override
     public int getWalCommitSquashRowLimit() {
         return 512 * 1024;
@@ -884,6 +914,41 @@ public class DefaultCairoConfiguration implements CairoConfiguration {
         return true;
     }
 
+    @Override
+    public boolean isSqlParallelGroupByEnabled() {
+        return false;
+    }
+
+    @Override
+    public boolean isSqlParallelSampleByEnabled() {
+        return false;
+    }
+
+    @Override
+    public boolean isSqlParallelHashJoinEnabled() {
+        return false;
+    }
+
+    @Override
+    public boolean isSqlParallelSortEnabled() {
+        return false;
+    }
+
+    @Override
+    public long getSqlQueryMemoryBudget() {
+        return 0;
+    }
+
+    @Override
+    public boolean isPartitionStatsEnabled() {
+        return true;
+    }
+
+    @Override
+    public long getPartitionCompressionAge() {
+        return -1;
+    }
+
     @Override
     public boolean isTableTypeConversionEnabled() {
         return true;
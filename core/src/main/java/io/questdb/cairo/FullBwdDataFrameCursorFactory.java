@@ -38,6 +38,7 @@ public class FullBwdDataFrameCursorFactory extends AbstractDataFrameCursorFactor
     @Override
     public DataFrameCursor getCursor(SqlExecutionContext executionContext, int order) {
         if (order == ORDER_DESC || order == ORDER_ANY) {
+            cursor.setPartitionPruner(partitionPruner);
             return cursor.of(getReader(executionContext));
         }
 
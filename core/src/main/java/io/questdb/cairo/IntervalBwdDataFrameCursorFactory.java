@@ -57,6 +57,7 @@ public class IntervalBwdDataFrameCursorFactory extends AbstractDataFrameCursorFa
     @Override
     public DataFrameCursor getCursor(SqlExecutionContext executionContext, int order) throws SqlException {
         if (order == ORDER_DESC || order == ORDER_ANY) {
+            cursor.setPartitionPruner(partitionPruner);
             cursor.of(getReader(executionContext), executionContext);
             return cursor;
         }
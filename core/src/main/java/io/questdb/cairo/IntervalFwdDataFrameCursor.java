@@ -49,6 +49,11 @@ public class IntervalFwdDataFrameCursor extends AbstractIntervalDataFrameCursor
         while (intervalsLo < intervalsHi && partitionLo < partitionHi) {
             // We don't need to worry about column tops and null column because we
             // are working with timestamp. Timestamp column cannot be added to existing table.
+            if (partitionPruner != null && partitionPruner.canSkip(reader, partitionLo)) {
+                partitionLimit = 0;
+                partitionLo++;
+                continue;
+            }
             long rowCount = reader.openPartition(partitionLo);
             if (rowCount > 0) {
 
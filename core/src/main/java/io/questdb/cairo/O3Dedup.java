@@ -0,0 +1,735 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo;
+
+import io.questdb.MessageBus;
+import io.questdb.cairo.vm.Vm;
+import io.questdb.cairo.vm.api.MemoryCMARW;
+import io.questdb.cairo.vm.api.MemoryCMR;
+import io.questdb.cairo.vm.api.MemoryCR;
+import io.questdb.cairo.vm.api.MemoryR;
+import io.questdb.griffin.PurgingOperator;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.*;
+import io.questdb.std.str.Path;
+
+import java.io.Closeable;
+
+import static io.questdb.cairo.TableUtils.*;
+
+/**
+ * Deduplicates O3 rows by the designated timestamp and the columns listed in DEDUP UPSERT KEYS of CREATE TABLE.
+ * The last written row wins, both within a commit and across commits:
+ * <ul>
+ *     <li>{@link #dedup} collapses rows of the commit that share keys into the row written last. It works on the
+ *     sorted O3 merge index before the lag split.</li>
+ *     <li>{@link #replaceCommittedRows} writes rows that repeat keys of committed rows over these rows and removes
+ *     them from the merge index. It runs after the lag split on the rows being committed. Non-key columns of the
+ *     partition are re-written as new column versions, the same way UPDATE does it, so partition row counts and
+ *     the offsets O3 merge jobs precompute are not affected. Old column versions are purged once the transaction
+ *     is committed.</li>
+ * </ul>
+ * Keys are compared only within runs of equal timestamps, rows of a run are hashed by key values. Data with
+ * unique timestamps is never compared key by key and data above the committed max timestamp never reads
+ * the partitions.
+ */
+class O3Dedup extends PurgingOperator implements Closeable {
+    private static final Log LOG = LogFactory.getLog(O3Dedup.class);
+    // wide enough for the null of any fixed size type, LONG256 included
+    private static final int NULL_VALUE_SIZE = Long256.BYTES;
+    private final ColumnVersionWriter columnVersionWriter;
+    private final long dataAppendPageSize;
+    private final MemoryCMARW dstAux = Vm.getCMARWInstance();
+    private final MemoryCMARW dstData = Vm.getCMARWInstance();
+    private final long fileOpenOpts;
+    private final IntList groupKept = new IntList();
+    private final IndexBuilder indexBuilder = new IndexBuilder();
+    private final IntList keyColumns = new IntList();
+    private final TableWriterMetadata metadata;
+    private final ObjList<MemoryCMR> partitionAux = new ObjList<>();
+    private final int partitionBy;
+    private final ObjList<MemoryCMR> partitionData = new ObjList<>();
+    private final LongList partitionKeyTops = new LongList();
+    private final MemoryCMR partitionTimestamps = Vm.getCMRInstance();
+    // pairs of (partition row, O3 row), ordered by partition row
+    private final LongList replacedRows = new LongList();
+    private final LongList runEntries = new LongList();
+    private final LongList runKept = new LongList();
+    private final LongList runRanks = new LongList();
+    private final LongList runRows = new LongList();
+    private final MemoryCMR srcAux = Vm.getCMRInstance();
+    private final MemoryCMR srcData = Vm.getCMRInstance();
+    private final ObjList<MemoryCR> o3KeyAux = new ObjList<>();
+    private final ObjList<MemoryCR> o3KeyData = new ObjList<>();
+    private final TxWriter txWriter;
+    private boolean lastPartitionReplaced;
+    private long nullValues;
+    private long nullValuesSize;
+    private ReadOnlyObjList<? extends MemoryCR> o3Columns;
+    private int partitionIndex = -1;
+    private long partitionRowCount;
+    private long partitionTimestamp = Long.MIN_VALUE;
+
+    O3Dedup(
+            CairoConfiguration configuration,
+            MessageBus messageBus,
+            TableWriter tableWriter,
+            Path tablePath,
+            TableWriterMetadata metadata,
+            int partitionBy,
+            TxWriter txWriter,
+            ColumnVersionWriter columnVersionWriter
+    ) {
+        super(LOG, configuration, messageBus, tableWriter, new Path().of(tablePath), tablePath.length());
+        this.metadata = metadata;
+        this.partitionBy = partitionBy;
+        this.txWriter = txWriter;
+        this.columnVersionWriter = columnVersionWriter;
+        this.dataAppendPageSize = configuration.getDataAppendPageSize();
+        this.fileOpenOpts = configuration.getWriterFileOpenOpts();
+    }
+
+    static boolean hasKeys(TableWriterMetadata metadata) {
+        for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+            if (metadata.getColumnType(i) > 0 && metadata.getColumnMetadata(i).isDedupKey()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Forgets column versions replaced by the rolled back transaction, they are still in use.
+     */
+    public void clearReplacedColumnVersions() {
+        updateColumnIndexes.clear();
+        cleanupColumnVersions.clear();
+    }
+
+    @Override
+    public void close() {
+        closePartition();
+        Misc.free(partitionTimestamps);
+        Misc.freeObjList(partitionData);
+        Misc.freeObjList(partitionAux);
+        Misc.free(srcData);
+        Misc.free(srcAux);
+        Misc.free(dstData);
+        Misc.free(dstAux);
+        Misc.free(indexBuilder);
+        Misc.free(path);
+        if (nullValues != 0) {
+            Unsafe.free(nullValues, nullValuesSize, MemoryTag.NATIVE_O3);
+            nullValues = 0;
+            nullValuesSize = 0;
+        }
+    }
+
+    public boolean isLastPartitionReplaced() {
+        return lastPartitionReplaced;
+    }
+
+    /**
+     * Purges column versions replaced by the committed transaction.
+     */
+    public void purgeReplacedColumnVersions() {
+        if (cleanupColumnVersions.size() > 0) {
+            try {
+                purgeOldColumnVersions();
+            } finally {
+                clearReplacedColumnVersions();
+            }
+        }
+    }
+
+    /**
+     * Compacts the merge index in place leaving a single entry for every combination of key values,
+     * the entry of the row written last.
+     *
+     * @param indexAddr     address of the (timestamp, row) merge index, sorted by timestamp
+     * @param rowCount      number of entries in the index
+     * @param o3Columns     O3 columns the index rows point to
+     * @param movedRowLo    first row of the uncommitted rows moved to O3 memory by this commit
+     * @param movedRowCount number of the moved rows, they were written before any row of O3 memory
+     * @return number of entries left in the index
+     */
+    long dedup(long indexAddr, long rowCount, ReadOnlyObjList<? extends MemoryCR> o3Columns, long movedRowLo, long movedRowCount) {
+        configureKeys(o3Columns);
+        long out = 0;
+        long lo = 0;
+        while (lo < rowCount) {
+            final long timestamp = TableWriter.getTimestampIndexValue(indexAddr, lo);
+            long hi = lo + 1;
+            while (hi < rowCount && TableWriter.getTimestampIndexValue(indexAddr, hi) == timestamp) {
+                hi++;
+            }
+
+            if (hi == lo + 1) {
+                // unique timestamp, nothing to compare with
+                if (out < lo) {
+                    putIndexEntry(indexAddr, out, timestamp, getTimestampIndexRow(indexAddr, lo));
+                }
+                out++;
+            } else {
+                out = dedupRun(indexAddr, lo, hi, timestamp, movedRowLo, movedRowCount, out);
+            }
+            lo = hi;
+        }
+
+        if (out < rowCount) {
+            LOG.info().$("dropped duplicate rows [table=").utf8(metadata.getTableToken().getTableName())
+                    .$(", rowCount=").$(rowCount)
+                    .$(", dropped=").$(rowCount - out)
+                    .I$();
+        }
+        return out;
+    }
+
+    /**
+     * Writes rows that repeat keys of committed rows over the committed rows and removes their entries
+     * from the merge index. Entries past the committed rows, the lag, are moved down to stay adjacent.
+     * <p>
+     * Rows landing in read-only partitions are not compared, O3 merge discards them anyway. Compressed
+     * partitions are expected to be decompressed by the caller.
+     *
+     * @param indexAddr address of the (timestamp, row) merge index, sorted by timestamp and deduplicated
+     * @param rowHi     number of index entries being committed
+     * @param rowCount  number of entries in the index, including the lag
+     * @param o3Columns O3 columns the index rows point to
+     * @return number of entries removed from the index
+     */
+    long replaceCommittedRows(long indexAddr, long rowHi, long rowCount, ReadOnlyObjList<? extends MemoryCR> o3Columns) {
+        final long committedMaxTimestamp = txWriter.getMaxTimestamp();
+        configureKeys(o3Columns);
+        this.o3Columns = o3Columns;
+        lastPartitionReplaced = false;
+        long replaced = 0;
+        try {
+            long lo = 0;
+            while (lo < rowHi) {
+                final long timestamp = TableWriter.getTimestampIndexValue(indexAddr, lo);
+                if (timestamp > committedMaxTimestamp) {
+                    break;
+                }
+                long hi = lo + 1;
+                while (hi < rowHi && TableWriter.getTimestampIndexValue(indexAddr, hi) == timestamp) {
+                    hi++;
+                }
+                if (mapPartition(timestamp)) {
+                    replaced += replaceRun(indexAddr, lo, hi, timestamp);
+                }
+                lo = hi;
+            }
+            replacePartitionRows();
+        } finally {
+            closePartition();
+            replacedRows.clear();
+            this.o3Columns = null;
+        }
+
+        if (replaced > 0) {
+            long out = 0;
+            for (long i = 0; i < rowCount; i++) {
+                final long row = getTimestampIndexRow(indexAddr, i);
+                if (row > -1) {
+                    if (out < i) {
+                        putIndexEntry(indexAddr, out, TableWriter.getTimestampIndexValue(indexAddr, i), row);
+                    }
+                    out++;
+                }
+            }
+            LOG.info().$("replaced committed rows [table=").utf8(metadata.getTableToken().getTableName())
+                    .$(", rowCount=").$(rowCount)
+                    .$(", replaced=").$(replaced)
+                    .I$();
+        }
+        return replaced;
+    }
+
+    private static long getTimestampIndexRow(long indexAddr, long i) {
+        return Unsafe.getUnsafe().getLong(indexAddr + (i << 4) + Long.BYTES);
+    }
+
+    private static void putIndexEntry(long indexAddr, long i, long timestamp, long row) {
+        final long p = indexAddr + (i << 4);
+        Unsafe.getUnsafe().putLong(p, timestamp);
+        Unsafe.getUnsafe().putLong(p + Long.BYTES, row);
+    }
+
+    private static long rowOfRank(long rank, long movedRowLo, long movedRowCount) {
+        return rank < movedRowCount ? rank + movedRowLo : rank - movedRowCount;
+    }
+
+    private static long valueAddress(MemoryR data, MemoryR aux, long row, int columnType) {
+        if (aux == null) {
+            return data.addressOf(row << ColumnType.pow2SizeOf(columnType));
+        }
+        return data.addressOf(aux.getLong(row << 3));
+    }
+
+    private static long valueSize(long address, int columnType) {
+        switch (ColumnType.tagOf(columnType)) {
+            case ColumnType.STRING:
+                final int len = Unsafe.getUnsafe().getInt(address);
+                return Integer.BYTES + (len > 0 ? (long) len << 1 : 0);
+            case ColumnType.BINARY:
+                final long size = Unsafe.getUnsafe().getLong(address);
+                return Long.BYTES + Math.max(size, 0);
+            default:
+                return 1L << ColumnType.pow2SizeOf(columnType);
+        }
+    }
+
+    private void appendNulls(int columnType, long count) {
+        switch (ColumnType.tagOf(columnType)) {
+            case ColumnType.STRING:
+                for (long i = 0; i < count; i++) {
+                    dstAux.putLong(dstData.putNullStr());
+                }
+                break;
+            case ColumnType.BINARY:
+                for (long i = 0; i < count; i++) {
+                    dstAux.putLong(dstData.putNullBin());
+                }
+                break;
+            default:
+                TableUtils.setNull(columnType, dstData.appendAddressFor(count << ColumnType.pow2SizeOf(columnType)), count);
+                break;
+        }
+    }
+
+    private void appendO3Value(int columnIndex, int columnType, long o3Row) {
+        final MemoryCR data = o3Columns.getQuick(TableWriter.getPrimaryColumnIndex(columnIndex));
+        if (ColumnType.isVariableLength(columnType)) {
+            final long address = valueAddress(data, o3Columns.getQuick(TableWriter.getSecondaryColumnIndex(columnIndex)), o3Row, columnType);
+            dstData.putBlockOfBytes(address, valueSize(address, columnType));
+            dstAux.putLong(dstData.getAppendOffset());
+        } else {
+            final int shl = ColumnType.pow2SizeOf(columnType);
+            dstData.putBlockOfBytes(data.addressOf(o3Row << shl), 1L << shl);
+        }
+    }
+
+    private void appendPartitionRows(int columnType, long srcTop, long rowLo, long rowHi) {
+        final long nullHi = Math.min(rowHi, srcTop);
+        if (rowLo < nullHi) {
+            appendNulls(columnType, nullHi - rowLo);
+        }
+        // rows of the column file start at the column top
+        final long lo = Math.max(rowLo, srcTop) - srcTop;
+        final long hi = rowHi - srcTop;
+        if (lo < hi) {
+            if (ColumnType.isVariableLength(columnType)) {
+                final long varLo = srcAux.getLong(lo << 3);
+                final long varHi = srcAux.getLong(hi << 3);
+                final long dstVarOffset = dstData.getAppendOffset();
+                if (varHi > varLo) {
+                    dstData.putBlockOfBytes(srcData.addressOf(varLo), varHi - varLo);
+                }
+                // end offsets of the copied values, shifted to the offsets of the new file
+                Vect.shiftCopyFixedSizeColumnData(
+                        varLo - dstVarOffset,
+                        srcAux.addressOf((lo + 1) << 3),
+                        0,
+                        hi - lo - 1,
+                        dstAux.appendAddressFor((hi - lo) << 3)
+                );
+            } else {
+                final int shl = ColumnType.pow2SizeOf(columnType);
+                dstData.putBlockOfBytes(srcData.addressOf(lo << shl), (hi - lo) << shl);
+            }
+        }
+    }
+
+    private void closePartition() {
+        partitionTimestamp = Long.MIN_VALUE;
+        partitionIndex = -1;
+        partitionRowCount = 0;
+        partitionTimestamps.close();
+        for (int i = 0, n = partitionData.size(); i < n; i++) {
+            partitionData.getQuick(i).close();
+            final MemoryCMR aux = partitionAux.getQuick(i);
+            if (aux != null) {
+                aux.close();
+            }
+        }
+    }
+
+    private void configureKeys(ReadOnlyObjList<? extends MemoryCR> o3Columns) {
+        keyColumns.clear();
+        o3KeyData.clear();
+        o3KeyAux.clear();
+        for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+            if (i != metadata.getTimestampIndex() && metadata.getColumnType(i) > 0 && metadata.getColumnMetadata(i).isDedupKey()) {
+                keyColumns.add(i);
+                o3KeyData.add(o3Columns.getQuick(TableWriter.getPrimaryColumnIndex(i)));
+                o3KeyAux.add(ColumnType.isVariableLength(metadata.getColumnType(i)) ? o3Columns.getQuick(TableWriter.getSecondaryColumnIndex(i)) : null);
+            }
+        }
+
+        // values of key columns in rows above the column top
+        final long size = (long) keyColumns.size() * NULL_VALUE_SIZE;
+        if (size > nullValuesSize) {
+            nullValues = Unsafe.realloc(nullValues, nullValuesSize, size, MemoryTag.NATIVE_O3);
+            nullValuesSize = size;
+        }
+        for (int i = 0, n = keyColumns.size(); i < n; i++) {
+            final int columnType = metadata.getColumnType(keyColumns.getQuick(i));
+            final long address = nullValues + (long) i * NULL_VALUE_SIZE;
+            switch (ColumnType.tagOf(columnType)) {
+                case ColumnType.STRING:
+                    Unsafe.getUnsafe().putInt(address, TableUtils.NULL_LEN);
+                    break;
+                case ColumnType.BINARY:
+                    Unsafe.getUnsafe().putLong(address, TableUtils.NULL_LEN);
+                    break;
+                default:
+                    TableUtils.setNull(columnType, address, 1);
+                    break;
+            }
+        }
+    }
+
+    private long dedupRun(long indexAddr, long lo, long hi, long timestamp, long movedRowLo, long movedRowCount, long out) {
+        // order the rows of the run by write order
+        runRanks.clear();
+        for (long i = lo; i < hi; i++) {
+            final long row = getTimestampIndexRow(indexAddr, i);
+            runRanks.add(row >= movedRowLo ? row - movedRowLo : row + movedRowCount);
+        }
+        runRanks.sort();
+
+        // rows with equal keys have equal hashes, they end up adjacent and ordered by rank
+        runEntries.clear();
+        for (int i = 0, n = runRanks.size(); i < n; i++) {
+            final long row = rowOfRank(runRanks.getQuick(i), movedRowLo, movedRowCount);
+            runEntries.add(((long) hashKeys(o3KeyData, o3KeyAux, row, false) << 32) | i);
+        }
+        runEntries.sort();
+
+        runKept.clear();
+        for (int g = 0, n = runEntries.size(); g < n; ) {
+            final int hash = (int) (runEntries.getQuick(g) >> 32);
+            int groupHi = g + 1;
+            while (groupHi < n && (int) (runEntries.getQuick(groupHi) >> 32) == hash) {
+                groupHi++;
+            }
+            // the last written row of every key is kept, hash collisions are told apart by the key values
+            groupKept.clear();
+            for (int i = groupHi - 1; i >= g; i--) {
+                final long rank = runRanks.getQuick((int) runEntries.getQuick(i));
+                final long row = rowOfRank(rank, movedRowLo, movedRowCount);
+                boolean duplicate = false;
+                for (int j = 0, m = groupKept.size(); j < m && !duplicate; j++) {
+                    duplicate = keysEqual(row, rowOfRank(runKept.getQuick(groupKept.getQuick(j)), movedRowLo, movedRowCount), false);
+                }
+                if (!duplicate) {
+                    groupKept.add(runKept.size());
+                    runKept.add(rank);
+                }
+            }
+            g = groupHi;
+        }
+
+        // index entries of the run are re-written in write order
+        runKept.sort();
+        for (int i = 0, n = runKept.size(); i < n; i++) {
+            putIndexEntry(indexAddr, out++, timestamp, rowOfRank(runKept.getQuick(i), movedRowLo, movedRowCount));
+        }
+        return out;
+    }
+
+    private long diskKeyAddress(int keyIndex, long row, int columnType) {
+        final long columnTop = partitionKeyTops.getQuick(keyIndex);
+        if (row < columnTop) {
+            return nullValues + (long) keyIndex * NULL_VALUE_SIZE;
+        }
+        return valueAddress(partitionData.getQuick(keyIndex), partitionAux.getQuick(keyIndex), row - columnTop, columnType);
+    }
+
+    private int hashKeys(ObjList<? extends MemoryR> data, ObjList<? extends MemoryR> aux, long row, boolean disk) {
+        int hash = 0;
+        for (int i = 0, n = keyColumns.size(); i < n; i++) {
+            final int columnType = metadata.getColumnType(keyColumns.getQuick(i));
+            final long address = disk ? diskKeyAddress(i, row, columnType) : valueAddress(data.getQuick(i), aux.getQuick(i), row, columnType);
+            hash = 31 * hash + Hash.hashMem32(address, valueSize(address, columnType));
+        }
+        return hash;
+    }
+
+    private boolean keysEqual(long o3Row, long row, boolean disk) {
+        for (int i = 0, n = keyColumns.size(); i < n; i++) {
+            final int columnType = metadata.getColumnType(keyColumns.getQuick(i));
+            final long address1 = valueAddress(o3KeyData.getQuick(i), o3KeyAux.getQuick(i), o3Row, columnType);
+            final long address2 = disk ? diskKeyAddress(i, row, columnType) : valueAddress(o3KeyData.getQuick(i), o3KeyAux.getQuick(i), row, columnType);
+            final long size = valueSize(address1, columnType);
+            if (size != valueSize(address2, columnType) || !Vect.memeq(address1, address2, size)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean mapPartition(long timestamp) {
+        final long floor = txWriter.getPartitionTimestampLo(timestamp);
+        if (floor == partitionTimestamp) {
+            return partitionRowCount > 0;
+        }
+        replacePartitionRows();
+        closePartition();
+        partitionTimestamp = floor;
+
+        final int partitionIndex = txWriter.getPartitionIndex(timestamp);
+        if (partitionIndex < 0) {
+            return false;
+        }
+        if (txWriter.isPartitionCompressed(partitionIndex)) {
+            throw CairoException.critical(0).put("cannot deduplicate rows, partition is compressed [table=").put(metadata.getTableToken().getTableName())
+                    .put(", partition=").ts(floor)
+                    .put(']');
+        }
+        if (txWriter.isPartitionReadOnly(partitionIndex)) {
+            // O3 merge discards rows of read-only partitions
+            return false;
+        }
+        final long rowCount = partitionIndex == txWriter.getPartitionCount() - 1
+                ? txWriter.getTransientRowCount()
+                : txWriter.getPartitionSize(partitionIndex);
+        if (rowCount < 1) {
+            return false;
+        }
+
+        path.trimTo(rootLen);
+        setPathForPartition(path, partitionBy, floor, false);
+        txnPartitionConditionally(path, txWriter.getPartitionNameTxn(partitionIndex));
+        final int plen = path.length();
+
+        final int timestampIndex = metadata.getTimestampIndex();
+        final long timestampSize = rowCount << 3;
+        partitionTimestamps.of(
+                ff,
+                dFile(path.trimTo(plen), metadata.getColumnName(timestampIndex), columnVersionWriter.getColumnNameTxn(floor, timestampIndex)),
+                timestampSize,
+                timestampSize,
+                MemoryTag.MMAP_O3
+        );
+
+        partitionKeyTops.clear();
+        for (int i = 0, n = keyColumns.size(); i < n; i++) {
+            final int columnIndex = keyColumns.getQuick(i);
+            final int columnType = metadata.getColumnType(columnIndex);
+            final CharSequence columnName = metadata.getColumnName(columnIndex);
+            final long columnNameTxn = columnVersionWriter.getColumnNameTxn(floor, columnIndex);
+            // rows above the column top, or all rows when the column was added after the partition was written, are nulls
+            final long columnTop = columnVersionWriter.getColumnTop(floor, columnIndex);
+            final long keyTop = columnTop > -1 ? Math.min(columnTop, rowCount) : rowCount;
+            partitionKeyTops.add(keyTop);
+            if (partitionData.size() == i) {
+                partitionData.add(Vm.getCMRInstance());
+                partitionAux.add(null);
+            }
+            final MemoryCMR data = partitionData.getQuick(i);
+            final long columnRowCount = rowCount - keyTop;
+            if (ColumnType.isVariableLength(columnType)) {
+                MemoryCMR aux = partitionAux.getQuick(i);
+                if (aux == null) {
+                    aux = Vm.getCMRInstance();
+                    partitionAux.setQuick(i, aux);
+                }
+                if (columnRowCount > 0) {
+                    final long auxSize = (columnRowCount + 1) << 3;
+                    aux.of(ff, iFile(path.trimTo(plen), columnName, columnNameTxn), auxSize, auxSize, MemoryTag.MMAP_O3);
+                    final long dataSize = aux.getLong(columnRowCount << 3);
+                    data.of(ff, dFile(path.trimTo(plen), columnName, columnNameTxn), dataSize, dataSize, MemoryTag.MMAP_O3);
+                }
+            } else {
+                final MemoryCMR aux = partitionAux.getQuick(i);
+                if (aux != null) {
+                    aux.close();
+                    partitionAux.setQuick(i, null);
+                }
+                if (columnRowCount > 0) {
+                    final long dataSize = columnRowCount << ColumnType.pow2SizeOf(columnType);
+                    data.of(ff, dFile(path.trimTo(plen), columnName, columnNameTxn), dataSize, dataSize, MemoryTag.MMAP_O3);
+                }
+            }
+        }
+        this.partitionIndex = partitionIndex;
+        partitionRowCount = rowCount;
+        return true;
+    }
+
+    private void replaceColumn(int columnIndex, long partitionNameTxn, int plen) {
+        final int columnType = metadata.getColumnType(columnIndex);
+        final CharSequence columnName = metadata.getColumnName(columnIndex);
+        final long rowCount = partitionRowCount;
+        final long columnTop = columnVersionWriter.getColumnTop(partitionTimestamp, columnIndex);
+        final long srcTop = columnTop > -1 ? Math.min(columnTop, rowCount) : rowCount;
+        final long dstTop = Math.min(srcTop, replacedRows.getQuick(0));
+        final long srcNameTxn = columnVersionWriter.getColumnNameTxn(partitionTimestamp, columnIndex);
+        if (srcNameTxn == txWriter.getTxn()) {
+            // the column version is written by this transaction, it cannot be replaced by another one
+            throw CairoException.critical(0).put("cannot replace committed rows, column version is taken [table=").put(metadata.getTableToken().getTableName())
+                    .put(", column=").put(columnName)
+                    .put(", partition=").ts(partitionTimestamp)
+                    .put(", columnNameTxn=").put(srcNameTxn)
+                    .put(']');
+        }
+        tableWriter.upsertColumnVersion(partitionTimestamp, columnIndex, dstTop);
+        if (columnTop > -1) {
+            // columnTop == -1 means column did not exist at the partition
+            if (!updateColumnIndexes.contains(columnIndex)) {
+                updateColumnIndexes.add(columnIndex);
+            }
+            cleanupColumnVersions.add(columnIndex, srcNameTxn, partitionTimestamp, partitionNameTxn);
+        }
+        final long dstNameTxn = columnVersionWriter.getColumnNameTxn(partitionTimestamp, columnIndex);
+        final boolean isVarSize = ColumnType.isVariableLength(columnType);
+
+        try {
+            final long srcRowCount = rowCount - srcTop;
+            if (srcRowCount > 0) {
+                if (isVarSize) {
+                    final long auxSize = (srcRowCount + 1) << 3;
+                    srcAux.of(ff, iFile(path.trimTo(plen), columnName, srcNameTxn), auxSize, auxSize, MemoryTag.MMAP_O3);
+                    final long dataSize = srcAux.getLong(srcRowCount << 3);
+                    srcData.of(ff, dFile(path.trimTo(plen), columnName, srcNameTxn), dataSize, dataSize, MemoryTag.MMAP_O3);
+                } else {
+                    final long dataSize = srcRowCount << ColumnType.pow2SizeOf(columnType);
+                    srcData.of(ff, dFile(path.trimTo(plen), columnName, srcNameTxn), dataSize, dataSize, MemoryTag.MMAP_O3);
+                }
+            }
+
+            // files could be left behind by a rolled back transaction
+            dstData.of(ff, dFile(path.trimTo(plen), columnName, dstNameTxn), dataAppendPageSize, -1, MemoryTag.MMAP_O3, fileOpenOpts);
+            dstData.jumpTo(0);
+            if (isVarSize) {
+                dstAux.of(ff, iFile(path.trimTo(plen), columnName, dstNameTxn), dataAppendPageSize, -1, MemoryTag.MMAP_O3, fileOpenOpts);
+                dstAux.jumpTo(0);
+                dstAux.putLong(0);
+            }
+
+            long row = dstTop;
+            for (int i = 0, n = replacedRows.size(); i < n; i += 2) {
+                final long replacedRow = replacedRows.getQuick(i);
+                appendPartitionRows(columnType, srcTop, row, replacedRow);
+                appendO3Value(columnIndex, columnType, replacedRows.getQuick(i + 1));
+                row = replacedRow + 1;
+            }
+            appendPartitionRows(columnType, srcTop, row, rowCount);
+        } finally {
+            srcData.close();
+            srcAux.close();
+            dstData.close();
+            dstAux.close();
+            path.trimTo(plen);
+        }
+
+        if (metadata.isColumnIndexed(columnIndex)) {
+            indexBuilder.of(path.trimTo(rootLen), configuration);
+            try {
+                indexBuilder.reindexAfterUpdate(partitionTimestamp, columnName, tableWriter);
+            } finally {
+                indexBuilder.clear();
+                path.trimTo(plen);
+            }
+        }
+    }
+
+    private void replacePartitionRows() {
+        if (replacedRows.size() == 0) {
+            return;
+        }
+        final long partitionNameTxn = txWriter.getPartitionNameTxn(partitionIndex);
+        path.trimTo(rootLen);
+        setPathForPartition(path, partitionBy, partitionTimestamp, false);
+        txnPartitionConditionally(path, partitionNameTxn);
+        final int plen = path.length();
+        try {
+            for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+                // the designated timestamp and key columns hold the same values in the replacing rows
+                if (metadata.getColumnType(i) > 0 && i != metadata.getTimestampIndex() && !metadata.getColumnMetadata(i).isDedupKey()) {
+                    replaceColumn(i, partitionNameTxn, plen);
+                }
+            }
+        } finally {
+            path.trimTo(rootLen);
+        }
+        if (partitionIndex == txWriter.getPartitionCount() - 1) {
+            lastPartitionReplaced = true;
+        }
+        LOG.info().$("replaced partition rows [table=").utf8(metadata.getTableToken().getTableName())
+                .$(", partition=").$ts(partitionTimestamp)
+                .$(", rows=").$(replacedRows.size() / 2)
+                .I$();
+        replacedRows.clear();
+    }
+
+    private long replaceRun(long indexAddr, long lo, long hi, long timestamp) {
+        long diskLo = Vect.binarySearch64Bit(partitionTimestamps.addressOf(0), timestamp, 0, partitionRowCount - 1, BinarySearch.SCAN_UP);
+        if (diskLo < 0) {
+            return 0;
+        }
+        long diskHi = diskLo + 1;
+        while (diskHi < partitionRowCount && partitionTimestamps.getLong(diskHi << 3) == timestamp) {
+            diskHi++;
+        }
+
+        // keys of the run are unique after dedup(), rows are looked up by hash
+        runRows.clear();
+        runEntries.clear();
+        for (long i = lo; i < hi; i++) {
+            final long row = getTimestampIndexRow(indexAddr, i);
+            runEntries.add(((long) hashKeys(o3KeyData, o3KeyAux, row, false) << 32) | runRows.size());
+            runRows.add(row);
+        }
+        runEntries.sort();
+
+        long replaced = 0;
+        for (long r = diskLo; r < diskHi; r++) {
+            final int hash = hashKeys(partitionData, partitionAux, r, true);
+            int p = runEntries.binarySearch((long) hash << 32, BinarySearch.SCAN_UP);
+            if (p < 0) {
+                p = -p - 1;
+            }
+            for (int n = runEntries.size(); p < n && (int) (runEntries.getQuick(p) >> 32) == hash; p++) {
+                final int i = (int) runEntries.getQuick(p);
+                final long row = runRows.getQuick(i);
+                if (keysEqual(row, r, true)) {
+                    replacedRows.add(r, row);
+                    final long entry = lo + i;
+                    if (getTimestampIndexRow(indexAddr, entry) > -1) {
+                        // the entry is removed when the index is compacted
+                        putIndexEntry(indexAddr, entry, timestamp, -1);
+                        replaced++;
+                    }
+                    break;
+                }
+            }
+        }
+        return replaced;
+    }
+}
@@ -76,6 +76,10 @@ public class O3OpenColumnJob extends AbstractQueueConsumerJob<O3OpenColumnTask>
             BitmapIndexWriter indexWriter,
             long columnNameTxn
     ) {
+        // Rows are not copied from the WAL segment with FilesFacade.copyData() here, unlike in appendNewPartition().
+        // sendfile writes at the file position of the destination descriptor and cannot write at the append
+        // offset of an existing file, neither via an O_APPEND descriptor. The destination is also mapped by
+        // the append memory of the writer, so rows are copied into the mapped pages instead.
         final long dstLen = srcOooHi - srcOooLo + 1 + srcDataMax - srcDataTop;
         switch (ColumnType.tagOf(columnType)) {
             case ColumnType.BINARY:
@@ -463,6 +467,7 @@ public class O3OpenColumnJob extends AbstractQueueConsumerJob<O3OpenColumnTask>
                         indexBlockCapacity,
                         tableWriter,
                         indexWriter,
+                        columnIndex,
                         columnNameTxn
                 );
                 break;
@@ -811,6 +816,7 @@ public class O3OpenColumnJob extends AbstractQueueConsumerJob<O3OpenColumnTask>
             int indexBlockCapacity,
             TableWriter tableWriter,
             BitmapIndexWriter indexWriter,
+            int columnIndex,
             long columnNameTxn
     ) {
         int dstFixFd = 0;
@@ -821,10 +827,35 @@ public class O3OpenColumnJob extends AbstractQueueConsumerJob<O3OpenColumnTask>
         long dstVarSize = 0;
         int dstKFd = 0;
         int dstVFd = 0;
+        int blockType = O3_BLOCK_O3;
         final FilesFacade ff = tableWriter.getFilesFacade();
 
         try {
-            if (ColumnType.isVariableLength(columnType)) {
+            final int walFd = indexBlockCapacity < 0 && !ColumnType.isDesignatedTimestamp(columnType)
+                    ? tableWriter.getO3WalColumnFd(TableWriter.getPrimaryColumnIndex(columnIndex))
+                    : -1;
+            if (walFd > 0) {
+                // Rows are read straight from the WAL segment in order, file data is copied by the kernel
+                // without mapping the new partition files. Only the offsets of var size columns are re-based.
+                if (ColumnType.isVariableLength(columnType)) {
+                    iFile(pathToPartition.trimTo(plen), columnName, columnNameTxn);
+                    dstFixFd = openRW(ff, pathToPartition, LOG, tableWriter.getConfiguration().getWriterFileOpenOpts());
+                    dstFixSize = (srcOooHi - srcOooLo + 1 + 1) * Long.BYTES;
+                    dstFixAddr = mapRW(ff, dstFixFd, dstFixSize, MemoryTag.MMAP_O3);
+
+                    dFile(pathToPartition.trimTo(plen), columnName, columnNameTxn);
+                    dstVarFd = openRW(ff, pathToPartition, LOG, tableWriter.getConfiguration().getWriterFileOpenOpts());
+                    final long varLo = O3Utils.findVarOffset(srcOooFixAddr, srcOooLo);
+                    copyWalColumnData(ff, walFd, dstVarFd, varLo, O3Utils.getVarColumnLength(srcOooLo, srcOooHi, srcOooFixAddr), pathToPartition);
+                    O3Utils.shiftCopyFixedSizeColumnData(varLo, srcOooFixAddr, srcOooLo, srcOooHi + 1, dstFixAddr);
+                } else {
+                    dFile(pathToPartition.trimTo(plen), columnName, columnNameTxn);
+                    dstFixFd = openRW(ff, pathToPartition, LOG, tableWriter.getConfiguration().getWriterFileOpenOpts());
+                    final int shl = ColumnType.pow2SizeOf(Math.abs(columnType));
+                    copyWalColumnData(ff, walFd, dstFixFd, srcOooLo << shl, (srcOooHi - srcOooLo + 1) << shl, pathToPartition);
+                }
+                blockType = O3_BLOCK_NONE;
+            } else if (ColumnType.isVariableLength(columnType)) {
                 iFile(pathToPartition.trimTo(plen), columnName, columnNameTxn);
                 dstFixFd = openRW(ff, pathToPartition, LOG, tableWriter.getConfiguration().getWriterFileOpenOpts());
                 dstFixSize = (srcOooHi - srcOooLo + 1 + 1) * Long.BYTES;
@@ -867,7 +898,7 @@ public class O3OpenColumnJob extends AbstractQueueConsumerJob<O3OpenColumnTask>
                 columnCounter,
                 null,
                 columnType,
-                O3_BLOCK_O3,
+                blockType,
                 timestampMergeIndexAddr,
                 timestampMergeIndexSize,
                 0,
@@ -918,6 +949,16 @@ public class O3OpenColumnJob extends AbstractQueueConsumerJob<O3OpenColumnTask>
         );
     }
 
+    private static void copyWalColumnData(FilesFacade ff, int srcFd, int dstFd, long srcOffset, long len, Path pathToPartition) {
+        // the new column file is empty, data is written from its start; zero length would copy the whole file
+        if (len > 0 && (ff.copyData(srcFd, dstFd, srcOffset, len) != len || !ff.truncate(dstFd, len))) {
+            throw CairoException.critical(ff.errno()).put("could not copy WAL column data [path=").put(pathToPartition)
+                    .put(", offset=").put(srcOffset)
+                    .put(", len=").put(len)
+                    .put(']');
+        }
+    }
+
     private static void appendTimestampColumn(
             AtomicInteger columnCounter,
             int columnType,
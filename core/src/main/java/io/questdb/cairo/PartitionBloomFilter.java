@@ -0,0 +1,417 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo;
+
+import io.questdb.cairo.sql.RecordMetadata;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.*;
+import io.questdb.std.str.Path;
+
+/**
+ * Bloom filters of the values of BLOOM indexed columns of a single partition. Filters are kept in the "_bloom"
+ * file in the partition directory next to {@link PartitionStats}. The file starts with the partition row count
+ * and the number of entries, followed by a fixed size entry per indexed column and then by the filter bits.
+ * <p>
+ * Same as statistics, a filter is only trusted when the row count, the column name txn and the column top
+ * recorded in the file are the same as the ones of the partition that is being read. Nulls are not added
+ * to the filters, comparisons with null are false anyway.
+ */
+public class PartitionBloomFilter implements Mutable, QuietCloseable {
+    public static final String FILE_NAME = "_bloom";
+    // 10 bits per value and 7 probes give about 1% of false positives
+    private static final int BITS_PER_VALUE = 10;
+    private static final int ENTRY_BIT_COUNT = 4;
+    private static final int ENTRY_COLUMN_NAME_TXN = 2;
+    private static final int ENTRY_COLUMN_TOP = 3;
+    private static final int ENTRY_COLUMN_TYPE = 1;
+    private static final int ENTRY_DATA_OFFSET = 5;
+    private static final int ENTRY_SIZE = 6;
+    private static final int ENTRY_WRITER_INDEX = 0;
+    private static final int HASH_COUNT = 7;
+    private static final int HEADER_SIZE = 2;
+    private static final Log LOG = LogFactory.getLog(PartitionBloomFilter.class);
+    private static final int MIN_BIT_COUNT = 64;
+    private static final String TEMP_FILE_NAME = "_bloom.tmp";
+    private final LongList entries = new LongList();
+    private long addr;
+    private long columnVersion = -1;
+    private FilesFacade ff;
+    private long partitionNameTxn = -1;
+    private long partitionTimestamp = Long.MIN_VALUE;
+    private long rowCount = -1;
+    private long size;
+
+    /**
+     * Scans committed rows of the partition and writes filters of the given columns. The file is written
+     * under a temporary name and then renamed, so that readers never see partially written filters.
+     *
+     * @param ff                  files facade
+     * @param path                partition directory path, the path is restored to its original length on exit
+     * @param metadata            writer metadata, column indexes are writer indexes
+     * @param columnIndexes       writer indexes of BLOOM indexed columns
+     * @param columnVersionReader column versions of the table
+     * @param partitionTimestamp  partition timestamp
+     * @param rowCount            committed row count of the partition
+     * @param opts                file open options
+     */
+    public static void build(
+            FilesFacade ff,
+            Path path,
+            RecordMetadata metadata,
+            IntList columnIndexes,
+            ColumnVersionReader columnVersionReader,
+            long partitionTimestamp,
+            long rowCount,
+            long opts
+    ) {
+        final int columnCount = columnIndexes.size();
+        long len = (HEADER_SIZE + (long) columnCount * ENTRY_SIZE) * Long.BYTES;
+        for (int i = 0; i < columnCount; i++) {
+            final long columnTop = PartitionStats.getColumnTop(columnVersionReader, partitionTimestamp, columnIndexes.getQuick(i), rowCount);
+            len += getBitCount(rowCount - columnTop) / Byte.SIZE;
+        }
+
+        final int plen = path.length();
+        final long buf = Unsafe.malloc(len, MemoryTag.NATIVE_DEFAULT);
+        try {
+            Vect.memset(buf, len, 0);
+            Unsafe.getUnsafe().putLong(buf, rowCount);
+            Unsafe.getUnsafe().putLong(buf + Long.BYTES, columnCount);
+            long dataOffset = (HEADER_SIZE + (long) columnCount * ENTRY_SIZE) * Long.BYTES;
+            for (int i = 0; i < columnCount; i++) {
+                final int columnIndex = columnIndexes.getQuick(i);
+                final int columnType = metadata.getColumnType(columnIndex);
+                final long columnNameTxn = columnVersionReader.getColumnNameTxn(partitionTimestamp, columnIndex);
+                final long columnTop = PartitionStats.getColumnTop(columnVersionReader, partitionTimestamp, columnIndex, rowCount);
+                final long bitCount = getBitCount(rowCount - columnTop);
+                final long entry = buf + (HEADER_SIZE + (long) i * ENTRY_SIZE) * Long.BYTES;
+                Unsafe.getUnsafe().putLong(entry + ENTRY_WRITER_INDEX * Long.BYTES, columnIndex);
+                Unsafe.getUnsafe().putLong(entry + ENTRY_COLUMN_TYPE * Long.BYTES, columnType);
+                Unsafe.getUnsafe().putLong(entry + ENTRY_COLUMN_NAME_TXN * Long.BYTES, columnNameTxn);
+                Unsafe.getUnsafe().putLong(entry + ENTRY_COLUMN_TOP * Long.BYTES, columnTop);
+                Unsafe.getUnsafe().putLong(entry + ENTRY_DATA_OFFSET * Long.BYTES, dataOffset);
+                if (addColumn(ff, path, metadata.getColumnName(columnIndex), columnType, columnNameTxn, rowCount - columnTop, buf + dataOffset, bitCount - 1)) {
+                    Unsafe.getUnsafe().putLong(entry + ENTRY_BIT_COUNT * Long.BYTES, bitCount);
+                }
+                // otherwise bit count stays 0 and the column is treated as not filtered
+                dataOffset += bitCount / Byte.SIZE;
+            }
+
+            ff.remove(path.concat(TEMP_FILE_NAME).$());
+            final int fd = TableUtils.openRW(ff, path, LOG, opts);
+            try {
+                if (ff.write(fd, buf, len, 0) != len) {
+                    throw CairoException.critical(ff.errno()).put("could not write bloom filter [path=").put(path).put(']');
+                }
+            } finally {
+                ff.close(fd);
+            }
+
+            final int tempLen = path.length();
+            try (Path target = new Path().of(path).trimTo(plen).concat(FILE_NAME)) {
+                if (ff.rename(path.trimTo(tempLen).$(), target.$()) != Files.FILES_RENAME_OK) {
+                    throw CairoException.critical(ff.errno()).put("could not rename bloom filter [path=").put(target).put(']');
+                }
+            }
+        } finally {
+            Unsafe.free(buf, len, MemoryTag.NATIVE_DEFAULT);
+            path.trimTo(plen);
+        }
+    }
+
+    public static long hashLong(long value) {
+        return Hash.fastLongMix(value);
+    }
+
+    public static long hashString(CharSequence value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0, n = value.length(); i < n; i++) {
+            h = (h ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        return Hash.fastLongMix(h);
+    }
+
+    public static long hashUuid(long lo, long hi) {
+        return Hash.fastLongMix(Hash.fastLongMix(lo) + hi);
+    }
+
+    public static boolean isSupported(int columnType) {
+        switch (ColumnType.tagOf(columnType)) {
+            case ColumnType.LONG:
+            case ColumnType.STRING:
+            case ColumnType.UUID:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public void clear() {
+        if (addr != 0) {
+            ff.munmap(addr, size, MemoryTag.MMAP_TABLE_READER);
+            addr = 0;
+            size = 0;
+        }
+        entries.clear();
+        rowCount = -1;
+        partitionTimestamp = Long.MIN_VALUE;
+        partitionNameTxn = -1;
+        columnVersion = -1;
+    }
+
+    @Override
+    public void close() {
+        clear();
+    }
+
+    public boolean isAvailable() {
+        return addr != 0;
+    }
+
+    /**
+     * Checks if the last {@link #read} was done for the same partition version.
+     */
+    public boolean isReadFor(long partitionTimestamp, long partitionNameTxn, long rowCount, long columnVersion) {
+        return this.rowCount > -1
+                && this.partitionTimestamp == partitionTimestamp
+                && this.partitionNameTxn == partitionNameTxn
+                && this.rowCount == rowCount
+                && this.columnVersion == columnVersion;
+    }
+
+    /**
+     * @param writerIndex writer index of the column
+     * @param columnType  type of the column the hash was computed for
+     * @param hash        value hash, one of hashLong(), hashString() or hashUuid()
+     * @return false when the partition definitely does not have the value in the column
+     */
+    public boolean mightContain(int writerIndex, int columnType, long hash) {
+        for (int i = 0, n = entries.size(); i < n; i += ENTRY_SIZE) {
+            if (entries.getQuick(i + ENTRY_WRITER_INDEX) == writerIndex) {
+                final long bitCount = entries.getQuick(i + ENTRY_BIT_COUNT);
+                if (bitCount == 0 || entries.getQuick(i + ENTRY_COLUMN_TYPE) != columnType) {
+                    return true;
+                }
+                return probe(addr + entries.getQuick(i + ENTRY_DATA_OFFSET), bitCount - 1, hash);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Maps bloom filter file of the partition. Filters of the columns that were changed after the file
+     * was written are discarded.
+     *
+     * @return true when the file exists and describes the given row count, same as {@link #isAvailable()}
+     */
+    public boolean read(
+            FilesFacade ff,
+            Path path,
+            ColumnVersionReader columnVersionReader,
+            long partitionTimestamp,
+            long partitionNameTxn,
+            long rowCount,
+            long columnVersion
+    ) {
+        clear();
+        this.partitionTimestamp = partitionTimestamp;
+        this.partitionNameTxn = partitionNameTxn;
+        this.rowCount = rowCount;
+        this.columnVersion = columnVersion;
+        final int plen = path.length();
+        int fd = -1;
+        try {
+            fd = ff.openRO(path.concat(FILE_NAME).$());
+            if (fd < 0) {
+                return false;
+            }
+            final long len = ff.length(fd);
+            if (len < HEADER_SIZE * Long.BYTES) {
+                return false;
+            }
+            final long mem = ff.mmap(fd, len, 0, Files.MAP_RO, MemoryTag.MMAP_TABLE_READER);
+            if (mem == FilesFacade.MAP_FAILED) {
+                return false;
+            }
+
+            final long fileRowCount = Unsafe.getUnsafe().getLong(mem);
+            final long entryCount = Unsafe.getUnsafe().getLong(mem + Long.BYTES);
+            if (fileRowCount != rowCount || entryCount < 0 || len < (HEADER_SIZE + entryCount * ENTRY_SIZE) * Long.BYTES) {
+                ff.munmap(mem, len, MemoryTag.MMAP_TABLE_READER);
+                return false;
+            }
+
+            for (long p = mem + HEADER_SIZE * Long.BYTES, lim = p + entryCount * ENTRY_SIZE * Long.BYTES; p < lim; p += Long.BYTES) {
+                entries.add(Unsafe.getUnsafe().getLong(p));
+            }
+
+            for (int i = 0, n = entries.size(); i < n; i += ENTRY_SIZE) {
+                final int writerIndex = (int) entries.getQuick(i + ENTRY_WRITER_INDEX);
+                final long bitCount = entries.getQuick(i + ENTRY_BIT_COUNT);
+                if (entries.getQuick(i + ENTRY_COLUMN_NAME_TXN) != columnVersionReader.getColumnNameTxn(partitionTimestamp, writerIndex)
+                        || entries.getQuick(i + ENTRY_COLUMN_TOP) != PartitionStats.getColumnTop(columnVersionReader, partitionTimestamp, writerIndex, rowCount)
+                        || entries.getQuick(i + ENTRY_DATA_OFFSET) + bitCount / Byte.SIZE > len) {
+                    entries.setQuick(i + ENTRY_BIT_COUNT, 0);
+                }
+            }
+            this.ff = ff;
+            this.addr = mem;
+            this.size = len;
+            return true;
+        } finally {
+            if (fd > -1) {
+                ff.close(fd);
+            }
+            path.trimTo(plen);
+        }
+    }
+
+    private static void add(long bits, long bitMask, long hash) {
+        final long h2 = Hash.fastLongMix(hash) | 1;
+        for (int i = 0; i < HASH_COUNT; i++) {
+            final long bit = (hash + i * h2) & bitMask;
+            final long p = bits + (bit >>> 6) * Long.BYTES;
+            Unsafe.getUnsafe().putLong(p, Unsafe.getUnsafe().getLong(p) | (1L << (bit & 63)));
+        }
+    }
+
+    private static boolean addColumn(
+            FilesFacade ff,
+            Path path,
+            CharSequence columnName,
+            int columnType,
+            long columnNameTxn,
+            long count,
+            long bits,
+            long bitMask
+    ) {
+        if (count < 1) {
+            return true;
+        }
+
+        final int plen = path.length();
+        if (ColumnType.tagOf(columnType) == ColumnType.STRING) {
+            final long auxSize = (count + 1) * Long.BYTES;
+            final int auxFd = TableUtils.openRO(ff, TableUtils.iFile(path, columnName, columnNameTxn), LOG);
+            path.trimTo(plen);
+            try {
+                if (ff.length(auxFd) < auxSize) {
+                    return false;
+                }
+                final long auxAddr = TableUtils.mapRO(ff, auxFd, auxSize, MemoryTag.MMAP_DEFAULT);
+                try {
+                    final long dataSize = Unsafe.getUnsafe().getLong(auxAddr + count * Long.BYTES);
+                    if (dataSize == 0) {
+                        return true;
+                    }
+                    final int dataFd = TableUtils.openRO(ff, TableUtils.dFile(path, columnName, columnNameTxn), LOG);
+                    path.trimTo(plen);
+                    try {
+                        if (ff.length(dataFd) < dataSize) {
+                            return false;
+                        }
+                        final long dataAddr = TableUtils.mapRO(ff, dataFd, dataSize, MemoryTag.MMAP_DEFAULT);
+                        try {
+                            for (long i = 0; i < count; i++) {
+                                final long p = dataAddr + Unsafe.getUnsafe().getLong(auxAddr + i * Long.BYTES);
+                                final int len = Unsafe.getUnsafe().getInt(p);
+                                if (len > -1) {
+                                    add(bits, bitMask, hashString(p + Integer.BYTES, len));
+                                }
+                            }
+                        } finally {
+                            ff.munmap(dataAddr, dataSize, MemoryTag.MMAP_DEFAULT);
+                        }
+                    } finally {
+                        ff.close(dataFd);
+                    }
+                } finally {
+                    ff.munmap(auxAddr, auxSize, MemoryTag.MMAP_DEFAULT);
+                }
+            } finally {
+                ff.close(auxFd);
+            }
+            return true;
+        }
+
+        final long size = count << ColumnType.pow2SizeOf(columnType);
+        final int fd = TableUtils.openRO(ff, TableUtils.dFile(path, columnName, columnNameTxn), LOG);
+        path.trimTo(plen);
+        try {
+            if (ff.length(fd) < size) {
+                return false;
+            }
+            final long addr = TableUtils.mapRO(ff, fd, size, MemoryTag.MMAP_DEFAULT);
+            try {
+                if (ColumnType.tagOf(columnType) == ColumnType.UUID) {
+                    for (long i = 0; i < count; i++) {
+                        final long lo = Unsafe.getUnsafe().getLong(addr + i * 2 * Long.BYTES);
+                        final long hi = Unsafe.getUnsafe().getLong(addr + i * 2 * Long.BYTES + Long.BYTES);
+                        if (!Uuid.isNull(lo, hi)) {
+                            add(bits, bitMask, hashUuid(lo, hi));
+                        }
+                    }
+                } else {
+                    for (long i = 0; i < count; i++) {
+                        final long value = Unsafe.getUnsafe().getLong(addr + i * Long.BYTES);
+                        if (value != Numbers.LONG_NaN) {
+                            add(bits, bitMask, hashLong(value));
+                        }
+                    }
+                }
+            } finally {
+                ff.munmap(addr, size, MemoryTag.MMAP_DEFAULT);
+            }
+        } finally {
+            ff.close(fd);
+        }
+        return true;
+    }
+
+    private static long getBitCount(long count) {
+        return Math.max(MIN_BIT_COUNT, Numbers.ceilPow2(count * BITS_PER_VALUE));
+    }
+
+    private static long hashString(long p, int len) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < len; i++) {
+            h = (h ^ Unsafe.getUnsafe().getChar(p + (long) i * Character.BYTES)) * 0x100000001b3L;
+        }
+        return Hash.fastLongMix(h);
+    }
+
+    private static boolean probe(long bits, long bitMask, long hash) {
+        final long h2 = Hash.fastLongMix(hash) | 1;
+        for (int i = 0; i < HASH_COUNT; i++) {
+            final long bit = (hash + i * h2) & bitMask;
+            if ((Unsafe.getUnsafe().getLong(bits + (bit >>> 6) * Long.BYTES) & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -282,7 +282,7 @@ public final class PartitionBy {
         }
     }
 
-    static PartitionCeilMethod getPartitionCeilMethod(int partitionBy) {
+    public static PartitionCeilMethod getPartitionCeilMethod(int partitionBy) {
         switch (partitionBy) {
             case DAY:
                 return CEIL_DD;
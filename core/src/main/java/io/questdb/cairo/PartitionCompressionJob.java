@@ -0,0 +1,163 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cairo;
+
+import io.questdb.cairo.security.AllowAllCairoSecurityContext;
+import io.questdb.cairo.sql.OperationFuture;
+import io.questdb.griffin.*;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.mp.SynchronizedJob;
+import io.questdb.std.IntLongHashMap;
+import io.questdb.std.Misc;
+import io.questdb.std.ObjList;
+import io.questdb.std.datetime.microtime.MicrosecondClock;
+import io.questdb.std.datetime.microtime.Timestamps;
+import io.questdb.std.str.StringSink;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+
+/**
+ * Compresses partitions that have gone cold, i.e. the partitions that end at least
+ * {@link CairoConfiguration#getPartitionCompressionAge()} before the max timestamp of the table.
+ * Partitions are converted by ALTER TABLE CONVERT PARTITION statements, so that the conversion
+ * takes the table writer in turn with the other writes and goes through WAL for WAL tables.
+ * <p>
+ * Tables are scanned once per {@link #CHECK_INTERVAL}, a table is looked at again only when its
+ * max timestamp has moved since the last successful conversion. When the conversion fails, e.g.
+ * the writer is busy, it is retried on the next scan.
+ */
+public class PartitionCompressionJob extends SynchronizedJob implements Closeable {
+    public static final long CHECK_INTERVAL = Timestamps.MINUTE_MICROS;
+    private static final Log LOG = LogFactory.getLog(PartitionCompressionJob.class);
+    private final long age;
+    private final MicrosecondClock clock;
+    private final CairoEngine engine;
+    // table id to max timestamp of the table when it has been last compressed
+    private final IntLongHashMap maxTimestamps = new IntLongHashMap();
+    private final StringSink sql = new StringSink();
+    private final ObjList<TableToken> tableTokens = new ObjList<>();
+    private long lastRunTimestamp = Long.MIN_VALUE;
+    private SqlCompiler sqlCompiler;
+    private SqlExecutionContextImpl sqlExecutionContext;
+
+    public PartitionCompressionJob(CairoEngine engine, @Nullable FunctionFactoryCache functionFactoryCache) {
+        this.engine = engine;
+        this.age = engine.getConfiguration().getPartitionCompressionAge() * Timestamps.MILLI_MICROS;
+        this.clock = engine.getConfiguration().getMicrosecondClock();
+        this.sqlCompiler = new SqlCompiler(engine, functionFactoryCache, null);
+        this.sqlExecutionContext = new SqlExecutionContextImpl(engine, 1);
+        this.sqlExecutionContext.with(AllowAllCairoSecurityContext.INSTANCE, null, null);
+    }
+
+    @Override
+    public void close() {
+        sqlCompiler = Misc.free(sqlCompiler);
+        sqlExecutionContext = Misc.free(sqlExecutionContext);
+    }
+
+    private boolean compressTable(TableToken tableToken) {
+        long maxTimestamp;
+        try (TableReader reader = engine.getReader(AllowAllCairoSecurityContext.INSTANCE, tableToken)) {
+            final int partitionBy = reader.getPartitionedBy();
+            final TxReader txFile = reader.getTxFile();
+            maxTimestamp = txFile.getMaxTimestamp();
+            final int keyIndex = maxTimestamps.keyIndex(tableToken.getTableId());
+            if (!PartitionBy.isPartitioned(partitionBy) || (keyIndex < 0 && maxTimestamps.valueAt(keyIndex) == maxTimestamp)) {
+                return false;
+            }
+
+            final PartitionBy.PartitionCeilMethod ceilMethod = PartitionBy.getPartitionCeilMethod(partitionBy);
+            assert ceilMethod != null;
+            final long coldTimestamp = maxTimestamp - age;
+            sql.clear();
+            // active partition is never compressed
+            for (int i = 0, n = txFile.getPartitionCount() - 1; i < n; i++) {
+                final long timestamp = txFile.getPartitionTimestamp(i);
+                if (ceilMethod.ceil(timestamp) > coldTimestamp) {
+                    break;
+                }
+                // compressed partitions are read-only too
+                if (!txFile.isPartitionReadOnly(i)) {
+                    if (sql.length() == 0) {
+                        sql.put("alter table '").put(tableToken.getTableName()).put("' convert partition to compressed list '");
+                    } else {
+                        sql.put(", '");
+                    }
+                    PartitionBy.setSinkForPartition(sql, partitionBy, timestamp, false);
+                    sql.put('\'');
+                }
+            }
+        }
+
+        if (sql.length() > 0) {
+            try {
+                final CompiledQuery cq = sqlCompiler.compile(sql, sqlExecutionContext);
+                try (OperationFuture ignore = cq.execute(null)) {
+                    LOG.info().$("compressed cold partitions [table=").$(tableToken).I$();
+                }
+            } catch (SqlException e) {
+                LOG.error().$("could not compress cold partitions [table=").$(tableToken)
+                        .$(", msg=").$(e.getFlyweightMessage())
+                        .$(", pos=").$(e.getPosition())
+                        .I$();
+                return false;
+            }
+        }
+        maxTimestamps.put(tableToken.getTableId(), maxTimestamp);
+        return sql.length() > 0;
+    }
+
+    @Override
+    protected boolean runSerially() {
+        if (age < 0) {
+            return false;
+        }
+        final long now = clock.getTicks();
+        if (lastRunTimestamp != Long.MIN_VALUE && now - lastRunTimestamp < CHECK_INTERVAL) {
+            return false;
+        }
+        lastRunTimestamp = now;
+
+        boolean useful = false;
+        tableTokens.clear();
+        engine.getTableTokens(tableTokens, false);
+        for (int i = 0, n = tableTokens.size(); i < n; i++) {
+            final TableToken tableToken = tableTokens.getQuick(i);
+            try {
+                useful |= compressTable(tableToken);
+            } catch (CairoException e) {
+                // the table could be dropped or locked, it is retried on the next run
+                LOG.error().$("could not compress cold partitions, will retry [table=").$(tableToken)
+                        .$(", msg=").$(e.getFlyweightMessage())
+                        .$(", errno=").$(e.getErrno())
+                        .I$();
+            }
+        }
+        return useful;
+    }
+}
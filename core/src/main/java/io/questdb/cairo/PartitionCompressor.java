@@ -0,0 +1,525 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cairo;
+
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.*;
+import io.questdb.std.str.LPSZ;
+
+/**
+ * Converts column files of cold partitions to block compressed format and back. Compressed file starts with
+ * a header: magic, block size, uncompressed length and block count. Header is followed by block count + 1
+ * file offsets of the blocks and then by the blocks. Each block is an independent raw deflate stream, so that
+ * any part of the file can be decompressed without decompressing what precedes it. Blocks that do not
+ * compress are stored as is, such block has the same length as the data it holds.
+ * <p>
+ * LONG and TIMESTAMP columns are encoded rather than deflated, such files have their own magic and smaller
+ * blocks. Every block starts with the encoding byte and picks whichever of frame-of-reference, dictionary
+ * or delta-of-delta bit packing is the most compact for the values it holds. Encoded blocks decode an order
+ * of magnitude faster than deflate ones, which lets readers decode them one by one as they are accessed.
+ * <p>
+ * Compressed files keep the names of the files they replace. Partition is flagged as compressed in
+ * the _txn file, which tells table reader to open its columns via {@link io.questdb.cairo.vm.MemoryCMRZImpl}.
+ */
+public class PartitionCompressor implements QuietCloseable {
+    public static final int BLOCK_SIZE = 1024 * 1024;
+    public static final int ENCODED_BLOCK_SIZE = 64 * 1024;
+    public static final int MAGIC = 0x315A4451;
+    public static final int MAGIC_ENCODED = 0x325A4451;
+    // bit packed values are followed by zero padding, so that any value can be read with an 8-byte load
+    private static final int BIT_PADDING = 8;
+    private static final byte BLOCK_DICT = 2;
+    private static final byte BLOCK_DOD = 3;
+    private static final byte BLOCK_FOR = 1;
+    private static final byte BLOCK_RAW = 0;
+    // largest encoded block is a raw block, which is the encoding byte followed by the values
+    private static final int ENCODED_BUF_SIZE = ENCODED_BLOCK_SIZE + 1;
+    private static final int HEADER_BLOCK_COUNT_OFFSET = 16;
+    private static final int HEADER_BLOCK_SIZE_OFFSET = 4;
+    private static final int HEADER_LENGTH_OFFSET = 8;
+    private static final int HEADER_SIZE = 24;
+    private static final Log LOG = LogFactory.getLog(PartitionCompressor.class);
+    private long encodeBuf;
+    private long outBuf;
+    private long sortBuf;
+    private long stream;
+
+    public static long getBlockSize(long addr) {
+        return Unsafe.getUnsafe().getInt(addr + HEADER_BLOCK_SIZE_OFFSET);
+    }
+
+    /**
+     * Returns offset in uncompressed data at which the block containing given offset ends.
+     * This is how much memory decompression of the data up to the offset needs.
+     *
+     * @param addr address of compressed file
+     * @param hi   offset in uncompressed data
+     * @return end of the block containing the offset, capped by uncompressed length
+     */
+    public static long getBlockHi(long addr, long hi) {
+        final long blockSize = Unsafe.getUnsafe().getInt(addr + HEADER_BLOCK_SIZE_OFFSET);
+        return Math.min(getLength(addr), (hi + blockSize - 1) / blockSize * blockSize);
+    }
+
+    public static long getLength(long addr) {
+        return Unsafe.getUnsafe().getLong(addr + HEADER_LENGTH_OFFSET);
+    }
+
+    /**
+     * Decompresses blocks that contain [lo, hi) range of uncompressed data. Blocks are written at their
+     * offsets in uncompressed data, so the destination must have room for {@link #getBlockHi(long, long)} bytes.
+     *
+     * @param addr address of compressed file
+     * @param dst  destination address, corresponds to the start of uncompressed data
+     * @param lo   offset in uncompressed data, inclusive
+     * @param hi   offset in uncompressed data, exclusive
+     * @return end offset of the last decompressed block
+     */
+    public static long inflate(long addr, long dst, long lo, long hi) {
+        final long blockSize = Unsafe.getUnsafe().getInt(addr + HEADER_BLOCK_SIZE_OFFSET);
+        final long length = getLength(addr);
+        final long blockLo = lo / blockSize;
+        final long blockHi = (Math.min(hi, length) + blockSize - 1) / blockSize;
+        if (blockLo >= blockHi) {
+            return lo;
+        }
+
+        if (isEncoded(addr)) {
+            for (long block = blockLo; block < blockHi; block++) {
+                final long offsetLo = Unsafe.getUnsafe().getLong(addr + HEADER_SIZE + block * Long.BYTES);
+                final int len = (int) Math.min(blockSize, length - block * blockSize);
+                decode(addr + offsetLo, dst + block * blockSize, len, block);
+            }
+            return Math.min(length, blockHi * blockSize);
+        }
+
+        final long strm = Zip.inflateInit(true);
+        if (strm < 0) {
+            throw CairoException.critical(0).put("could not initialize inflater [code=").put(strm).put(']');
+        }
+        try {
+            for (long block = blockLo; block < blockHi; block++) {
+                final long offsetLo = Unsafe.getUnsafe().getLong(addr + HEADER_SIZE + block * Long.BYTES);
+                final long offsetHi = Unsafe.getUnsafe().getLong(addr + HEADER_SIZE + (block + 1) * Long.BYTES);
+                final int len = (int) Math.min(blockSize, length - block * blockSize);
+                final long out = dst + block * blockSize;
+                if (offsetHi - offsetLo == len) {
+                    // block is stored uncompressed
+                    Vect.memcpy(out, addr + offsetLo, len);
+                    continue;
+                }
+                Zip.inflateReset(strm);
+                Zip.setInput(strm, addr + offsetLo, (int) (offsetHi - offsetLo));
+                final int n = Zip.inflate(strm, out, len, true);
+                if (n != len) {
+                    throw CairoException.critical(0).put("corrupt compressed block [block=").put(block)
+                            .put(", expectedLength=").put(len)
+                            .put(", code=").put(n)
+                            .put(']');
+                }
+            }
+        } finally {
+            Zip.inflateEnd(strm);
+        }
+        return Math.min(length, blockHi * blockSize);
+    }
+
+    public static boolean isEncoded(long addr) {
+        return Unsafe.getUnsafe().getInt(addr) == MAGIC_ENCODED;
+    }
+
+    /**
+     * Checks that mapped file is a compressed file and that its block table fits in the file.
+     *
+     * @param addr     address of compressed file
+     * @param fileSize size of compressed file
+     * @return uncompressed length of the data
+     */
+    public static long validate(long addr, long fileSize) {
+        if (fileSize >= HEADER_SIZE + Long.BYTES && (Unsafe.getUnsafe().getInt(addr) == MAGIC || isEncoded(addr))) {
+            final int blockSize = Unsafe.getUnsafe().getInt(addr + HEADER_BLOCK_SIZE_OFFSET);
+            final long length = getLength(addr);
+            final long blockCount = Unsafe.getUnsafe().getLong(addr + HEADER_BLOCK_COUNT_OFFSET);
+            if (blockSize > 0
+                    && length > -1
+                    && blockCount == (length + blockSize - 1) / blockSize
+                    && HEADER_SIZE + (blockCount + 1) * Long.BYTES <= fileSize
+                    && Unsafe.getUnsafe().getLong(addr + HEADER_SIZE + blockCount * Long.BYTES) == fileSize) {
+                return length;
+            }
+        }
+        throw CairoException.critical(0).put("invalid compressed column file [size=").put(fileSize).put(']');
+    }
+
+    @Override
+    public void close() {
+        if (stream != 0) {
+            Zip.deflateEnd(stream);
+            stream = 0;
+        }
+        outBuf = Unsafe.free(outBuf, BLOCK_SIZE, MemoryTag.NATIVE_TABLE_WRITER);
+        encodeBuf = Unsafe.free(encodeBuf, ENCODED_BUF_SIZE, MemoryTag.NATIVE_TABLE_WRITER);
+        sortBuf = Unsafe.free(sortBuf, ENCODED_BLOCK_SIZE, MemoryTag.NATIVE_TABLE_WRITER);
+    }
+
+    /**
+     * Writes compressed copy of the first length bytes of the source file. Destination file is removed
+     * first, which is what breaks the hard link when partition is converted in a hard linked copy.
+     *
+     * @param ff     files facade
+     * @param src    uncompressed file
+     * @param dst    compressed file
+     * @param length length of the data to compress
+     * @param opts   file open options
+     */
+    public void compress(FilesFacade ff, LPSZ src, LPSZ dst, long length, long opts) {
+        compress0(ff, src, dst, length, opts, false);
+    }
+
+    /**
+     * Writes encoded copy of the first length bytes of the source file, which must hold 8-byte integer values.
+     * Destination file is removed first.
+     *
+     * @param ff     files facade
+     * @param src    uncompressed LONG or TIMESTAMP column file
+     * @param dst    encoded file
+     * @param length length of the data to encode
+     * @param opts   file open options
+     */
+    public void encode(FilesFacade ff, LPSZ src, LPSZ dst, long length, long opts) {
+        compress0(ff, src, dst, length, opts, true);
+    }
+
+    private static int bitWidth(long range) {
+        return 64 - Long.numberOfLeadingZeros(range);
+    }
+
+    private static void decode(long src, long dst, int len, long block) {
+        final int n = len >>> 3;
+        switch (Unsafe.getUnsafe().getByte(src)) {
+            case BLOCK_RAW:
+                Vect.memcpy(dst, src + 1, len);
+                break;
+            case BLOCK_FOR: {
+                final long min = Unsafe.getUnsafe().getLong(src + 1);
+                final int width = Unsafe.getUnsafe().getByte(src + 9);
+                final long bits = src + 10;
+                for (int i = 0; i < n; i++) {
+                    Unsafe.getUnsafe().putLong(dst + (long) i * Long.BYTES, min + getBits(bits, (long) i * width, width));
+                }
+                break;
+            }
+            case BLOCK_DICT: {
+                final long dict = src + 5;
+                final int dictSize = Unsafe.getUnsafe().getInt(src + 1);
+                final int width = Unsafe.getUnsafe().getByte(dict + (long) dictSize * Long.BYTES);
+                final long bits = dict + (long) dictSize * Long.BYTES + 1;
+                for (int i = 0; i < n; i++) {
+                    final long code = getBits(bits, (long) i * width, width);
+                    Unsafe.getUnsafe().putLong(dst + (long) i * Long.BYTES, Unsafe.getUnsafe().getLong(dict + code * Long.BYTES));
+                }
+                break;
+            }
+            case BLOCK_DOD: {
+                long value = Unsafe.getUnsafe().getLong(src + 1);
+                long delta = Unsafe.getUnsafe().getLong(src + 9);
+                final long minDod = Unsafe.getUnsafe().getLong(src + 17);
+                final int width = Unsafe.getUnsafe().getByte(src + 25);
+                final long bits = src + 26;
+                Unsafe.getUnsafe().putLong(dst, value);
+                for (int i = 1; i < n; i++) {
+                    if (i > 1) {
+                        delta += minDod + getBits(bits, (long) (i - 2) * width, width);
+                    }
+                    value += delta;
+                    Unsafe.getUnsafe().putLong(dst + (long) i * Long.BYTES, value);
+                }
+                break;
+            }
+            default:
+                throw CairoException.critical(0).put("corrupt encoded block [block=").put(block)
+                        .put(", encoding=").put(Unsafe.getUnsafe().getByte(src))
+                        .put(']');
+        }
+    }
+
+    private static long getBits(long addr, long bitOffset, int width) {
+        final long byteOffset = bitOffset >>> 3;
+        final int shift = (int) (bitOffset & 7);
+        long value = Unsafe.getUnsafe().getLong(addr + byteOffset) >>> shift;
+        if (shift + width > 64) {
+            value |= (Unsafe.getUnsafe().getByte(addr + byteOffset + Long.BYTES) & 0xffL) << (64 - shift);
+        }
+        return width == 64 ? value : value & ((1L << width) - 1);
+    }
+
+    private static long packedSize(long count, int width) {
+        return (count * width + 7) / 8 + BIT_PADDING;
+    }
+
+    // destination must be zeroed
+    private static void putBits(long addr, long bitOffset, long value, int width) {
+        final long byteOffset = bitOffset >>> 3;
+        final int shift = (int) (bitOffset & 7);
+        final long p = addr + byteOffset;
+        Unsafe.getUnsafe().putLong(p, Unsafe.getUnsafe().getLong(p) | (value << shift));
+        if (shift + width > 64) {
+            Unsafe.getUnsafe().putByte(p + Long.BYTES, (byte) (Unsafe.getUnsafe().getByte(p + Long.BYTES) | (value >>> (64 - shift))));
+        }
+    }
+
+    private void compress0(FilesFacade ff, LPSZ src, LPSZ dst, long length, long opts, boolean encode) {
+        final int blockSize = encode ? ENCODED_BLOCK_SIZE : BLOCK_SIZE;
+        final int srcFd = TableUtils.openRO(ff, src, LOG);
+        final long blockCount = (length + blockSize - 1) / blockSize;
+        final long headerSize = HEADER_SIZE + (blockCount + 1) * Long.BYTES;
+        long srcAddr = 0;
+        long header = 0;
+        int dstFd = -1;
+        try {
+            if (length > 0) {
+                srcAddr = TableUtils.mapRO(ff, srcFd, length, MemoryTag.MMAP_TABLE_WRITER);
+            }
+            header = Unsafe.malloc(headerSize, MemoryTag.NATIVE_TABLE_WRITER);
+            Unsafe.getUnsafe().putInt(header, encode ? MAGIC_ENCODED : MAGIC);
+            Unsafe.getUnsafe().putInt(header + HEADER_BLOCK_SIZE_OFFSET, blockSize);
+            Unsafe.getUnsafe().putLong(header + HEADER_LENGTH_OFFSET, length);
+            Unsafe.getUnsafe().putLong(header + HEADER_BLOCK_COUNT_OFFSET, blockCount);
+
+            ff.remove(dst);
+            dstFd = TableUtils.openRW(ff, dst, LOG, opts);
+            long offset = headerSize;
+            for (long block = 0; block < blockCount; block++) {
+                Unsafe.getUnsafe().putLong(header + HEADER_SIZE + block * Long.BYTES, offset);
+                final long blockAddr = srcAddr + block * blockSize;
+                final int len = (int) Math.min(blockSize, length - block * blockSize);
+                final int compressedLen = encode ? encode(blockAddr, len) : deflate(blockAddr, len);
+                if (compressedLen > -1) {
+                    write(ff, dstFd, encode ? encodeBuf : outBuf, compressedLen, offset, dst);
+                    offset += compressedLen;
+                } else {
+                    write(ff, dstFd, blockAddr, len, offset, dst);
+                    offset += len;
+                }
+            }
+            Unsafe.getUnsafe().putLong(header + HEADER_SIZE + blockCount * Long.BYTES, offset);
+            write(ff, dstFd, header, headerSize, 0, dst);
+        } finally {
+            if (srcAddr != 0) {
+                ff.munmap(srcAddr, length, MemoryTag.MMAP_TABLE_WRITER);
+            }
+            ff.close(srcFd);
+            if (dstFd != -1) {
+                ff.close(dstFd);
+            }
+            Unsafe.free(header, headerSize, MemoryTag.NATIVE_TABLE_WRITER);
+        }
+    }
+
+    /**
+     * Writes uncompressed copy of the compressed source file. Destination file is removed first.
+     *
+     * @param ff   files facade
+     * @param src  compressed file
+     * @param dst  uncompressed file
+     * @param opts file open options
+     */
+    public void decompress(FilesFacade ff, LPSZ src, LPSZ dst, long opts) {
+        final int srcFd = TableUtils.openRO(ff, src, LOG);
+        final long fileSize = ff.length(srcFd);
+        long srcAddr = 0;
+        long length = 0;
+        long dstAddr = 0;
+        int dstFd = -1;
+        try {
+            srcAddr = TableUtils.mapRO(ff, srcFd, fileSize, MemoryTag.MMAP_TABLE_WRITER);
+            length = validate(srcAddr, fileSize);
+            ff.remove(dst);
+            dstFd = TableUtils.openRW(ff, dst, LOG, opts);
+            if (length > 0) {
+                dstAddr = TableUtils.mapRW(ff, dstFd, length, MemoryTag.MMAP_TABLE_WRITER);
+                inflate(srcAddr, dstAddr, 0, length);
+            }
+        } finally {
+            if (dstAddr != 0) {
+                ff.munmap(dstAddr, length, MemoryTag.MMAP_TABLE_WRITER);
+            }
+            if (dstFd != -1) {
+                ff.close(dstFd);
+            }
+            if (srcAddr != 0) {
+                ff.munmap(srcAddr, fileSize, MemoryTag.MMAP_TABLE_WRITER);
+            }
+            ff.close(srcFd);
+        }
+    }
+
+    private static void write(FilesFacade ff, int fd, long addr, long len, long offset, LPSZ path) {
+        if (ff.write(fd, addr, len, offset) != len) {
+            throw CairoException.critical(ff.errno()).put("could not write compressed column [path=").put(path)
+                    .put(", offset=").put(offset)
+                    .put(", len=").put(len)
+                    .put(']');
+        }
+    }
+
+    // returns compressed length of the block or -1 when the block does not compress
+    private int deflate(long addr, int len) {
+        if (stream == 0) {
+            final long strm = Zip.deflateInit();
+            if (strm < 0) {
+                throw CairoException.critical(0).put("could not initialize deflater [code=").put(strm).put(']');
+            }
+            stream = strm;
+            ensureOutBuf();
+        } else {
+            Zip.deflateReset(stream);
+        }
+        Zip.setInput(stream, addr, len);
+        // output buffer is no larger than the input, when compressed block does not fit
+        // deflate does not finish the stream and the block is stored as is
+        if (Zip.deflate(stream, outBuf, len, true) != Zip.Z_STREAM_END) {
+            return -1;
+        }
+        final int compressedLen = len - Zip.availOut(stream);
+        return compressedLen < len ? compressedLen : -1;
+    }
+
+    // returns encoded length of the block, block that does not encode is stored as is after the encoding byte
+    private int encode(long addr, int len) {
+        if (encodeBuf == 0) {
+            encodeBuf = Unsafe.malloc(ENCODED_BUF_SIZE, MemoryTag.NATIVE_TABLE_WRITER);
+            sortBuf = Unsafe.malloc(ENCODED_BLOCK_SIZE, MemoryTag.NATIVE_TABLE_WRITER);
+        }
+
+        final int n = len >>> 3;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        long minDod = Long.MAX_VALUE;
+        long maxDod = Long.MIN_VALUE;
+        long prev = 0;
+        long prevDelta = 0;
+        for (int i = 0; i < n; i++) {
+            final long value = Unsafe.getUnsafe().getLong(addr + (long) i * Long.BYTES);
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            // deltas wrap around on overflow, decoder wraps them back the same way
+            final long delta = value - prev;
+            if (i > 1) {
+                final long dod = delta - prevDelta;
+                minDod = Math.min(minDod, dod);
+                maxDod = Math.max(maxDod, dod);
+            }
+            prev = value;
+            prevDelta = delta;
+        }
+
+        final int forWidth = bitWidth(max - min);
+        final long forSize = 10 + packedSize(n, forWidth);
+        final int dodWidth = n > 2 ? bitWidth(maxDod - minDod) : 0;
+        final long dodSize = 26 + packedSize(Math.max(0, n - 2), dodWidth);
+        long bestSize = Math.min(len + 1, Math.min(forSize, dodSize));
+
+        // distinct values, sorted as unsigned so that values can be looked up by binary search; collecting
+        // stops once the dictionary alone is larger than the best encoding so far
+        Vect.memcpy(sortBuf, addr, len);
+        Vect.sortULongAscInPlace(sortBuf, n);
+        int dictSize = 1;
+        for (int i = 1; i < n && 5 + (long) dictSize * Long.BYTES < bestSize; i++) {
+            final long value = Unsafe.getUnsafe().getLong(sortBuf + (long) i * Long.BYTES);
+            if (value != Unsafe.getUnsafe().getLong(sortBuf + (long) (dictSize - 1) * Long.BYTES)) {
+                Unsafe.getUnsafe().putLong(sortBuf + (long) dictSize++ * Long.BYTES, value);
+            }
+        }
+        final int dictWidth = bitWidth(dictSize - 1);
+        final long dictBlockSize = 6 + (long) dictSize * Long.BYTES + packedSize(n, dictWidth);
+
+        if (dictBlockSize < bestSize) {
+            Unsafe.getUnsafe().putByte(encodeBuf, BLOCK_DICT);
+            Unsafe.getUnsafe().putInt(encodeBuf + 1, dictSize);
+            Vect.memcpy(encodeBuf + 5, sortBuf, (long) dictSize * Long.BYTES);
+            Unsafe.getUnsafe().putByte(encodeBuf + 5 + (long) dictSize * Long.BYTES, (byte) dictWidth);
+            final long bits = encodeBuf + 6 + (long) dictSize * Long.BYTES;
+            Vect.memset(bits, packedSize(n, dictWidth), 0);
+            for (int i = 0; i < n; i++) {
+                final long value = Unsafe.getUnsafe().getLong(addr + (long) i * Long.BYTES);
+                int lo = 0;
+                int hi = dictSize - 1;
+                while (lo < hi) {
+                    final int mid = (lo + hi) >>> 1;
+                    if (Long.compareUnsigned(Unsafe.getUnsafe().getLong(sortBuf + (long) mid * Long.BYTES), value) < 0) {
+                        lo = mid + 1;
+                    } else {
+                        hi = mid;
+                    }
+                }
+                putBits(bits, (long) i * dictWidth, lo, dictWidth);
+            }
+            return (int) dictBlockSize;
+        }
+
+        if (bestSize == forSize) {
+            Unsafe.getUnsafe().putByte(encodeBuf, BLOCK_FOR);
+            Unsafe.getUnsafe().putLong(encodeBuf + 1, min);
+            Unsafe.getUnsafe().putByte(encodeBuf + 9, (byte) forWidth);
+            final long bits = encodeBuf + 10;
+            Vect.memset(bits, packedSize(n, forWidth), 0);
+            for (int i = 0; i < n; i++) {
+                putBits(bits, (long) i * forWidth, Unsafe.getUnsafe().getLong(addr + (long) i * Long.BYTES) - min, forWidth);
+            }
+            return (int) forSize;
+        }
+
+        if (bestSize == dodSize) {
+            final long first = Unsafe.getUnsafe().getLong(addr);
+            Unsafe.getUnsafe().putByte(encodeBuf, BLOCK_DOD);
+            Unsafe.getUnsafe().putLong(encodeBuf + 1, first);
+            Unsafe.getUnsafe().putLong(encodeBuf + 9, n > 1 ? Unsafe.getUnsafe().getLong(addr + Long.BYTES) - first : 0);
+            Unsafe.getUnsafe().putLong(encodeBuf + 17, n > 2 ? minDod : 0);
+            Unsafe.getUnsafe().putByte(encodeBuf + 25, (byte) dodWidth);
+            final long bits = encodeBuf + 26;
+            Vect.memset(bits, packedSize(Math.max(0, n - 2), dodWidth), 0);
+            for (int i = 2; i < n; i++) {
+                final long p = addr + (long) i * Long.BYTES;
+                final long dod = (Unsafe.getUnsafe().getLong(p) - Unsafe.getUnsafe().getLong(p - Long.BYTES))
+                        - (Unsafe.getUnsafe().getLong(p - Long.BYTES) - Unsafe.getUnsafe().getLong(p - 2 * Long.BYTES));
+                putBits(bits, (long) (i - 2) * dodWidth, dod - minDod, dodWidth);
+            }
+            return (int) dodSize;
+        }
+
+        Unsafe.getUnsafe().putByte(encodeBuf, BLOCK_RAW);
+        Vect.memcpy(encodeBuf + 1, addr, len);
+        return len + 1;
+    }
+
+    private void ensureOutBuf() {
+        if (outBuf == 0) {
+            outBuf = Unsafe.malloc(BLOCK_SIZE, MemoryTag.NATIVE_TABLE_WRITER);
+        }
+    }
+}
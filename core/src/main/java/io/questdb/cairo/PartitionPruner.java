@@ -0,0 +1,243 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cairo;
+
+import io.questdb.cairo.sql.SymbolTable;
+import io.questdb.std.*;
+
+/**
+ * Skips partitions that cannot contain rows matching the filter. The pruner is a conjunction of simple
+ * "column op constant" predicates taken from the filter, these are evaluated against
+ * {@link PartitionStats} of the partition. Partitions without up-to-date statistics are never skipped.
+ * <p>
+ * Comparisons are false for nulls, therefore partition that has nothing but nulls in a column
+ * cannot match any predicate on that column.
+ * <p>
+ * Equality predicates on BLOOM indexed columns are also checked against {@link PartitionBloomFilter}
+ * of the partition.
+ */
+public class PartitionPruner implements Mutable {
+    public static final int OP_EQ = 0;
+    public static final int OP_GE = 1;
+    public static final int OP_GT = 2;
+    public static final int OP_LE = 3;
+    public static final int OP_LT = 4;
+    private static final int VALUE_BLOOM = 3;
+    private static final int VALUE_DOUBLE = 1;
+    private static final int VALUE_LONG = 0;
+    private static final int VALUE_SYMBOL = 2;
+    private final IntList columnIndexes = new IntList();
+    private final IntList columnTypes = new IntList();
+    private final IntList ops = new IntList();
+    private final ObjList<String> symbolValues = new ObjList<>();
+    private final IntList valueTypes = new IntList();
+    private final LongList values = new LongList();
+    private final IntList writerIndexes = new IntList();
+
+    public static int flip(int op) {
+        switch (op) {
+            case OP_GE:
+                return OP_LE;
+            case OP_GT:
+                return OP_LT;
+            case OP_LE:
+                return OP_GE;
+            case OP_LT:
+                return OP_GT;
+            default:
+                return op;
+        }
+    }
+
+    /**
+     * Adds equality predicate to be checked against partition bloom filter, the predicate is ignored
+     * when the column is not BLOOM indexed.
+     *
+     * @param hash value hash, see {@link PartitionBloomFilter#hashLong(long)} and friends
+     */
+    public void addBloom(int columnIndex, int columnType, long hash) {
+        add(columnIndex, columnType, OP_EQ, VALUE_BLOOM, hash, null);
+    }
+
+    public void addDouble(int columnIndex, int columnType, int op, double value) {
+        add(columnIndex, columnType, op, VALUE_DOUBLE, Double.doubleToRawLongBits(value), null);
+    }
+
+    public void addLong(int columnIndex, int columnType, int op, long value) {
+        add(columnIndex, columnType, op, VALUE_LONG, value, null);
+    }
+
+    public void addSymbol(int columnIndex, int columnType, CharSequence value) {
+        add(columnIndex, columnType, OP_EQ, VALUE_SYMBOL, SymbolTable.VALUE_NOT_FOUND, Chars.toString(value));
+    }
+
+    /**
+     * @param reader         reader the partition belongs to, must be the one passed to {@link #of(TableReader)}
+     * @param partitionIndex partition index
+     * @return true when partition statistics or bloom filters prove that none of the partition rows match the filter
+     */
+    public boolean canSkip(TableReader reader, int partitionIndex) {
+        PartitionStats stats = null;
+        PartitionBloomFilter bloomFilter = null;
+        boolean statsRead = false;
+        boolean bloomFilterRead = false;
+
+        for (int i = 0, n = ops.size(); i < n; i++) {
+            final int writerIndex = writerIndexes.getQuick(i);
+            if (writerIndex < 0) {
+                continue;
+            }
+
+            if (valueTypes.getQuick(i) == VALUE_BLOOM) {
+                if (!bloomFilterRead) {
+                    bloomFilter = reader.getPartitionBloomFilter(partitionIndex);
+                    bloomFilterRead = true;
+                }
+                if (bloomFilter != null && !bloomFilter.mightContain(writerIndex, columnTypes.getQuick(i), values.getQuick(i))) {
+                    return true;
+                }
+                continue;
+            }
+
+            if (!statsRead) {
+                stats = reader.getPartitionStats(partitionIndex);
+                statsRead = true;
+            }
+            if (stats == null) {
+                continue;
+            }
+
+            final long nullCount = stats.getNullCount(writerIndex);
+            if (nullCount < 0 || stats.getColumnType(writerIndex) != columnTypes.getQuick(i)) {
+                continue;
+            }
+            if (nullCount >= stats.getRowCount() || !mayMatch(stats, i, writerIndex)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void clear() {
+        columnIndexes.clear();
+        columnTypes.clear();
+        ops.clear();
+        symbolValues.clear();
+        valueTypes.clear();
+        values.clear();
+        writerIndexes.clear();
+    }
+
+    public boolean isEmpty() {
+        return ops.size() == 0;
+    }
+
+    /**
+     * Resolves column writer indexes, symbol keys and bloom indexed columns against the reader the query is about to scan.
+     *
+     * @param reader table reader
+     */
+    public void of(TableReader reader) {
+        final TableReaderMetadata metadata = reader.getMetadata();
+        writerIndexes.clear();
+        for (int i = 0, n = ops.size(); i < n; i++) {
+            final int columnIndex = columnIndexes.getQuick(i);
+            if (valueTypes.getQuick(i) == VALUE_BLOOM && !metadata.getColumnMetadata(columnIndex).isBloomIndexed()) {
+                // don't look for filter files of the column that was never indexed
+                writerIndexes.add(-1);
+                continue;
+            }
+            writerIndexes.add(metadata.getWriterIndex(columnIndex));
+            if (valueTypes.getQuick(i) == VALUE_SYMBOL) {
+                values.setQuick(i, reader.getSymbolMapReader(columnIndex).keyOf(symbolValues.getQuick(i)));
+            }
+        }
+    }
+
+    private static boolean mayMatch(int op, double min, double max, double value) {
+        switch (op) {
+            case OP_EQ:
+                return value >= min && value <= max;
+            case OP_GE:
+                return max >= value;
+            case OP_GT:
+                return max > value;
+            case OP_LE:
+                return min <= value;
+            default:
+                return min < value;
+        }
+    }
+
+    private static boolean mayMatch(int op, long min, long max, long value) {
+        switch (op) {
+            case OP_EQ:
+                return value >= min && value <= max;
+            case OP_GE:
+                return max >= value;
+            case OP_GT:
+                return max > value;
+            case OP_LE:
+                return min <= value;
+            default:
+                return min < value;
+        }
+    }
+
+    private void add(int columnIndex, int columnType, int op, int valueType, long value, String symbolValue) {
+        columnIndexes.add(columnIndex);
+        columnTypes.add(columnType);
+        ops.add(op);
+        valueTypes.add(valueType);
+        values.add(value);
+        symbolValues.add(symbolValue);
+    }
+
+    private boolean mayMatch(PartitionStats stats, int predicateIndex, int writerIndex) {
+        final int op = ops.getQuick(predicateIndex);
+        final long value = values.getQuick(predicateIndex);
+        final int columnTag = ColumnType.tagOf(columnTypes.getQuick(predicateIndex));
+        final boolean floatingPoint = columnTag == ColumnType.FLOAT || columnTag == ColumnType.DOUBLE;
+
+        switch (valueTypes.getQuick(predicateIndex)) {
+            case VALUE_SYMBOL:
+                return value != SymbolTable.VALUE_NOT_FOUND
+                        && mayMatch(op, stats.getMinLong(writerIndex), stats.getMaxLong(writerIndex), value);
+            case VALUE_LONG:
+                if (!floatingPoint) {
+                    return mayMatch(op, stats.getMinLong(writerIndex), stats.getMaxLong(writerIndex), value);
+                }
+                return mayMatch(op, stats.getMinDouble(writerIndex), stats.getMaxDouble(writerIndex), (double) value);
+            default:
+                final double doubleValue = Double.longBitsToDouble(value);
+                if (floatingPoint) {
+                    return mayMatch(op, stats.getMinDouble(writerIndex), stats.getMaxDouble(writerIndex), doubleValue);
+                }
+                return mayMatch(op, (double) stats.getMinLong(writerIndex), (double) stats.getMaxLong(writerIndex), doubleValue);
+        }
+    }
+}
@@ -0,0 +1,427 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cairo;
+
+import io.questdb.cairo.sql.RecordMetadata;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.*;
+import io.questdb.std.str.Path;
+
+/**
+ * Min/max/null-count statistics of a single partition. Statistics are kept in the "_stats" file
+ * in the partition directory, so they follow partition versions, detach/attach and drop without
+ * any extra bookkeeping. The file is a list of longs: the partition row count, the number of
+ * writer columns and then a fixed size entry per writer column.
+ * <p>
+ * Statistics of a column are only trusted when the row count, the column name txn and the column top
+ * recorded in the file are the same as the ones of the partition that is being read. Anything else
+ * means that the file is stale and that the partition must be scanned.
+ * <p>
+ * Min and max exclude nulls. FLOAT and DOUBLE values are stored as raw double bits, all other
+ * supported types are stored as longs. BYTE and SHORT have no null, their column top reads as 0
+ * and is accounted for as such.
+ */
+public class PartitionStats implements Mutable {
+    public static final String FILE_NAME = "_stats";
+    private static final int ENTRY_COLUMN_NAME_TXN = 1;
+    private static final int ENTRY_COLUMN_TOP = 2;
+    private static final int ENTRY_COLUMN_TYPE = 0;
+    private static final int ENTRY_MAX = 5;
+    private static final int ENTRY_MIN = 4;
+    private static final int ENTRY_NULL_COUNT = 3;
+    private static final int ENTRY_SIZE = 6;
+    private static final int HEADER_SIZE = 2;
+    private static final Log LOG = LogFactory.getLog(PartitionStats.class);
+    private static final String TEMP_FILE_NAME = "_stats.tmp";
+    private final LongList entries = new LongList();
+    private boolean available;
+    private long columnVersion = -1;
+    private long partitionNameTxn = -1;
+    private long partitionTimestamp = Long.MIN_VALUE;
+    private long rowCount = -1;
+
+    public static boolean isSupported(int columnType) {
+        switch (ColumnType.tagOf(columnType)) {
+            case ColumnType.BYTE:
+            case ColumnType.SHORT:
+            case ColumnType.INT:
+            case ColumnType.LONG:
+            case ColumnType.DATE:
+            case ColumnType.TIMESTAMP:
+            case ColumnType.FLOAT:
+            case ColumnType.DOUBLE:
+            case ColumnType.SYMBOL:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+        available = false;
+        rowCount = -1;
+        partitionTimestamp = Long.MIN_VALUE;
+        partitionNameTxn = -1;
+        columnVersion = -1;
+    }
+
+    /**
+     * Scans committed rows of the partition and computes statistics of all supported columns.
+     *
+     * @param ff                  files facade
+     * @param path                partition directory path, the path is restored to its original length on exit
+     * @param metadata            writer metadata, column indexes are writer indexes
+     * @param columnVersionReader column versions of the table
+     * @param partitionTimestamp  partition timestamp
+     * @param rowCount            committed row count of the partition
+     */
+    public void compute(
+            FilesFacade ff,
+            Path path,
+            RecordMetadata metadata,
+            ColumnVersionReader columnVersionReader,
+            long partitionTimestamp,
+            long rowCount
+    ) {
+        clear();
+        this.partitionTimestamp = partitionTimestamp;
+        this.rowCount = rowCount;
+        this.available = true;
+        final int columnCount = metadata.getColumnCount();
+        final int timestampIndex = metadata.getTimestampIndex();
+        for (int i = 0; i < columnCount; i++) {
+            final int columnType = metadata.getColumnType(i);
+            final long columnNameTxn = columnVersionReader.getColumnNameTxn(partitionTimestamp, i);
+            final long columnTop = getColumnTop(columnVersionReader, partitionTimestamp, i, rowCount);
+            final int offset = entries.size();
+            entries.add(columnType);
+            entries.add(columnNameTxn);
+            entries.add(columnTop);
+            entries.add(-1);
+            entries.add(0);
+            entries.add(0);
+            // designated timestamp is pruned by interval scans, no need to read it again
+            if (columnType > 0 && i != timestampIndex && isSupported(columnType)) {
+                computeColumn(ff, path, metadata.getColumnName(i), columnType, columnNameTxn, columnTop, offset);
+            }
+        }
+    }
+
+    public int getColumnCount() {
+        return entries.size() / ENTRY_SIZE;
+    }
+
+    public int getColumnType(int writerIndex) {
+        return (int) entries.getQuick(writerIndex * ENTRY_SIZE + ENTRY_COLUMN_TYPE);
+    }
+
+    public double getMaxDouble(int writerIndex) {
+        return Double.longBitsToDouble(getMaxLong(writerIndex));
+    }
+
+    public long getMaxLong(int writerIndex) {
+        return entries.getQuick(writerIndex * ENTRY_SIZE + ENTRY_MAX);
+    }
+
+    public double getMinDouble(int writerIndex) {
+        return Double.longBitsToDouble(getMinLong(writerIndex));
+    }
+
+    public long getMinLong(int writerIndex) {
+        return entries.getQuick(writerIndex * ENTRY_SIZE + ENTRY_MIN);
+    }
+
+    /**
+     * @param writerIndex writer index of the column
+     * @return number of null values in the column, including column top, or -1 when the column has no statistics
+     */
+    public long getNullCount(int writerIndex) {
+        if (writerIndex < getColumnCount()) {
+            return entries.getQuick(writerIndex * ENTRY_SIZE + ENTRY_NULL_COUNT);
+        }
+        return -1;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public boolean isAvailable() {
+        return available;
+    }
+
+    /**
+     * Checks if the last {@link #read} was done for the same partition version. Result of the read,
+     * including absence of the file, can be reused in that case.
+     */
+    public boolean isReadFor(long partitionTimestamp, long partitionNameTxn, long rowCount, long columnVersion) {
+        return this.rowCount > -1
+                && this.partitionTimestamp == partitionTimestamp
+                && this.partitionNameTxn == partitionNameTxn
+                && this.rowCount == rowCount
+                && this.columnVersion == columnVersion;
+    }
+
+    /**
+     * Reads statistics file of the partition. Statistics of the columns that were changed after the file was written
+     * are discarded.
+     *
+     * @return true when the file exists and describes the given row count, same as {@link #isAvailable()}
+     */
+    public boolean read(
+            FilesFacade ff,
+            Path path,
+            ColumnVersionReader columnVersionReader,
+            long partitionTimestamp,
+            long partitionNameTxn,
+            long rowCount,
+            long columnVersion
+    ) {
+        clear();
+        this.partitionTimestamp = partitionTimestamp;
+        this.partitionNameTxn = partitionNameTxn;
+        this.rowCount = rowCount;
+        this.columnVersion = columnVersion;
+        final int plen = path.length();
+        int fd = -1;
+        long buf = 0;
+        long len = 0;
+        try {
+            fd = ff.openRO(path.concat(FILE_NAME).$());
+            if (fd < 0) {
+                return false;
+            }
+            len = ff.length(fd);
+            if (len < HEADER_SIZE * Long.BYTES) {
+                return false;
+            }
+            buf = Unsafe.malloc(len, MemoryTag.NATIVE_DEFAULT);
+            if (ff.read(fd, buf, len, 0) != len) {
+                return false;
+            }
+            final long fileRowCount = Unsafe.getUnsafe().getLong(buf);
+            final long columnCount = Unsafe.getUnsafe().getLong(buf + Long.BYTES);
+            if (fileRowCount != rowCount || len != (HEADER_SIZE + columnCount * ENTRY_SIZE) * Long.BYTES) {
+                return false;
+            }
+
+            for (long p = buf + HEADER_SIZE * Long.BYTES, lim = buf + len; p < lim; p += Long.BYTES) {
+                entries.add(Unsafe.getUnsafe().getLong(p));
+            }
+
+            for (int i = 0; i < columnCount; i++) {
+                final int offset = i * ENTRY_SIZE;
+                if (entries.getQuick(offset + ENTRY_COLUMN_NAME_TXN) != columnVersionReader.getColumnNameTxn(partitionTimestamp, i)
+                        || entries.getQuick(offset + ENTRY_COLUMN_TOP) != getColumnTop(columnVersionReader, partitionTimestamp, i, rowCount)) {
+                    entries.setQuick(offset + ENTRY_NULL_COUNT, -1);
+                }
+            }
+            return available = true;
+        } finally {
+            if (buf != 0) {
+                Unsafe.free(buf, len, MemoryTag.NATIVE_DEFAULT);
+            }
+            if (fd > -1) {
+                ff.close(fd);
+            }
+            path.trimTo(plen);
+        }
+    }
+
+    /**
+     * Writes statistics to the partition directory. The file is written under a temporary name
+     * and then renamed, so that readers never see partially written statistics.
+     *
+     * @param ff   files facade
+     * @param path partition directory path, the path is restored to its original length on exit
+     * @param opts file open options
+     */
+    public void write(FilesFacade ff, Path path, long opts) {
+        final int plen = path.length();
+        final long len = (HEADER_SIZE + (long) entries.size()) * Long.BYTES;
+        final long buf = Unsafe.malloc(len, MemoryTag.NATIVE_DEFAULT);
+        try {
+            Unsafe.getUnsafe().putLong(buf, rowCount);
+            Unsafe.getUnsafe().putLong(buf + Long.BYTES, getColumnCount());
+            for (int i = 0, n = entries.size(); i < n; i++) {
+                Unsafe.getUnsafe().putLong(buf + (HEADER_SIZE + i) * Long.BYTES, entries.getQuick(i));
+            }
+
+            // remove leftover of a failed write rather than truncating it
+            ff.remove(path.concat(TEMP_FILE_NAME).$());
+            final int fd = TableUtils.openRW(ff, path, LOG, opts);
+            try {
+                if (ff.write(fd, buf, len, 0) != len) {
+                    throw CairoException.critical(ff.errno()).put("could not write partition stats [path=").put(path).put(']');
+                }
+            } finally {
+                ff.close(fd);
+            }
+
+            final int tempLen = path.length();
+            try (Path target = new Path().of(path).trimTo(plen).concat(FILE_NAME)) {
+                if (ff.rename(path.trimTo(tempLen).$(), target.$()) != Files.FILES_RENAME_OK) {
+                    throw CairoException.critical(ff.errno()).put("could not rename partition stats [path=").put(target).put(']');
+                }
+            }
+        } finally {
+            Unsafe.free(buf, len, MemoryTag.NATIVE_DEFAULT);
+            path.trimTo(plen);
+        }
+    }
+
+    static long getColumnTop(ColumnVersionReader columnVersionReader, long partitionTimestamp, int columnIndex, long rowCount) {
+        final long columnTop = columnVersionReader.getColumnTop(partitionTimestamp, columnIndex);
+        // column does not exist in the partition
+        return columnTop > -1 ? Math.min(columnTop, rowCount) : rowCount;
+    }
+
+    private void computeColumn(
+            FilesFacade ff,
+            Path path,
+            CharSequence columnName,
+            int columnType,
+            long columnNameTxn,
+            long columnTop,
+            int offset
+    ) {
+        final long count = rowCount - columnTop;
+        final int columnTag = ColumnType.tagOf(columnType);
+        // BYTE and SHORT column tops read as 0 rather than null
+        final boolean topIsZero = columnTag == ColumnType.BYTE || columnTag == ColumnType.SHORT;
+        if (count < 1) {
+            setStats(offset, topIsZero ? 0 : rowCount, 0, 0);
+            return;
+        }
+
+        final int plen = path.length();
+        final long size = count << ColumnType.pow2SizeOf(columnType);
+        final int fd = TableUtils.openRO(ff, TableUtils.dFile(path, columnName, columnNameTxn), LOG);
+        path.trimTo(plen);
+        try {
+            if (ff.length(fd) < size) {
+                // column file is shorter than expected, leave the column without statistics
+                return;
+            }
+            final long addr = TableUtils.mapRO(ff, fd, size, MemoryTag.MMAP_DEFAULT);
+            try {
+                switch (columnTag) {
+                    case ColumnType.BYTE: {
+                        long min = columnTop > 0 ? 0 : Long.MAX_VALUE;
+                        long max = columnTop > 0 ? 0 : Long.MIN_VALUE;
+                        for (long i = 0; i < count; i++) {
+                            final byte v = Unsafe.getUnsafe().getByte(addr + i);
+                            min = Math.min(min, v);
+                            max = Math.max(max, v);
+                        }
+                        setStats(offset, 0, min, max);
+                        break;
+                    }
+                    case ColumnType.SHORT: {
+                        long min = columnTop > 0 ? 0 : Long.MAX_VALUE;
+                        long max = columnTop > 0 ? 0 : Long.MIN_VALUE;
+                        for (long i = 0; i < count; i++) {
+                            final short v = Unsafe.getUnsafe().getShort(addr + i * Short.BYTES);
+                            min = Math.min(min, v);
+                            max = Math.max(max, v);
+                        }
+                        setStats(offset, 0, min, max);
+                        break;
+                    }
+                    case ColumnType.INT:
+                    case ColumnType.SYMBOL: {
+                        final long nonNullCount = Vect.countInt(addr, count);
+                        if (nonNullCount > 0) {
+                            setStats(offset, rowCount - nonNullCount, Vect.minInt(addr, count), Vect.maxInt(addr, count));
+                        } else {
+                            setStats(offset, rowCount, 0, 0);
+                        }
+                        break;
+                    }
+                    case ColumnType.LONG:
+                    case ColumnType.DATE:
+                    case ColumnType.TIMESTAMP: {
+                        final long nonNullCount = Vect.countLong(addr, count);
+                        if (nonNullCount > 0) {
+                            setStats(offset, rowCount - nonNullCount, Vect.minLong(addr, count), Vect.maxLong(addr, count));
+                        } else {
+                            setStats(offset, rowCount, 0, 0);
+                        }
+                        break;
+                    }
+                    case ColumnType.FLOAT: {
+                        long nonNullCount = 0;
+                        double min = Double.POSITIVE_INFINITY;
+                        double max = Double.NEGATIVE_INFINITY;
+                        for (long i = 0; i < count; i++) {
+                            final float v = Unsafe.getUnsafe().getFloat(addr + i * Float.BYTES);
+                            if (v == v) {
+                                nonNullCount++;
+                                min = Math.min(min, v);
+                                max = Math.max(max, v);
+                            }
+                        }
+                        setDoubleStats(offset, nonNullCount, min, max);
+                        break;
+                    }
+                    case ColumnType.DOUBLE: {
+                        final long nonNullCount = Vect.countDouble(addr, count);
+                        if (nonNullCount > 0) {
+                            setDoubleStats(offset, nonNullCount, Vect.minDouble(addr, count), Vect.maxDouble(addr, count));
+                        } else {
+                            setStats(offset, rowCount, 0, 0);
+                        }
+                        break;
+                    }
+                    default:
+                        break;
+                }
+            } finally {
+                ff.munmap(addr, size, MemoryTag.MMAP_DEFAULT);
+            }
+        } finally {
+            ff.close(fd);
+        }
+    }
+
+    private void setDoubleStats(int offset, long nonNullCount, double min, double max) {
+        if (nonNullCount == 0) {
+            setStats(offset, rowCount, 0, 0);
+        } else if (min == min && max == max) {
+            setStats(offset, rowCount - nonNullCount, Double.doubleToRawLongBits(min), Double.doubleToRawLongBits(max));
+        }
+        // otherwise the range cannot be trusted, e.g. column of infinities, leave the column without statistics
+    }
+
+    private void setStats(int offset, long nullCount, long min, long max) {
+        entries.setQuick(offset + ENTRY_NULL_COUNT, nullCount);
+        entries.setQuick(offset + ENTRY_MIN, min);
+        entries.setQuick(offset + ENTRY_MAX, max);
+    }
+}
@@ -34,6 +34,8 @@ public class TableColumnMetadata implements Plannable {
     private final RecordMetadata metadata;
     private final boolean symbolTableStatic;
     private final int writerIndex;
+    private boolean bloomIndexed;
+    private boolean dedupKey;
     private int indexValueBlockCapacity;
     private boolean indexed;
     private String name;
@@ -100,6 +102,14 @@ public class TableColumnMetadata implements Plannable {
         return writerIndex;
     }
 
+    public boolean isBloomIndexed() {
+        return bloomIndexed;
+    }
+
+    public boolean isDedupKey() {
+        return dedupKey;
+    }
+
     public boolean isDeleted() {
         return type < 0;
     }
@@ -116,6 +126,14 @@ public class TableColumnMetadata implements Plannable {
         type = -Math.abs(type);
     }
 
+    public void setBloomIndexed(boolean value) {
+        bloomIndexed = value;
+    }
+
+    public void setDedupKey(boolean value) {
+        dedupKey = value;
+    }
+
     public void setIndexValueBlockCapacity(int indexValueBlockCapacity) {
         this.indexValueBlockCapacity = indexValueBlockCapacity;
     }
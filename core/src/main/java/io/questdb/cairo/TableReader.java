@@ -27,6 +27,8 @@ package io.questdb.cairo;
 import io.questdb.MessageBus;
 import io.questdb.cairo.sql.StaticSymbolTable;
 import io.questdb.cairo.sql.SymbolTableSource;
+import io.questdb.cairo.vm.MemoryCMRCImpl;
+import io.questdb.cairo.vm.MemoryCMRZImpl;
 import io.questdb.cairo.vm.NullMemoryMR;
 import io.questdb.cairo.vm.Vm;
 import io.questdb.cairo.vm.api.MemoryMR;
@@ -35,6 +37,7 @@ import io.questdb.log.Log;
 import io.questdb.log.LogFactory;
 import io.questdb.std.*;
 import io.questdb.std.datetime.DateFormat;
+import io.questdb.std.datetime.microtime.Timestamps;
 import io.questdb.std.datetime.millitime.MillisecondClock;
 import io.questdb.std.str.CharSink;
 import io.questdb.std.str.Path;
@@ -53,6 +56,9 @@ public class TableReader implements Closeable, SymbolTableSource {
     private static final int PARTITIONS_SLOT_SIZE = 4;
     private static final int PARTITIONS_SLOT_SIZE_MSB = Numbers.msb(PARTITIONS_SLOT_SIZE);
     private final MillisecondClock clock;
+    private final ColumnBufferCache columnBufferCache;
+    private final long columnBufferCachePartitionAge;
+    private final int columnBufferCachePriority;
     private final ColumnVersionReader columnVersionReader;
     private final CairoConfiguration configuration;
     private final FilesFacade ff;
@@ -60,8 +66,11 @@ public class TableReader implements Closeable, SymbolTableSource {
     private final TableReaderMetadata metadata;
     private final LongList openPartitionInfo;
     private final int partitionBy;
+    private final PartitionBy.PartitionCeilMethod partitionCeilMethod;
     private final DateFormat partitionDirFormatMethod;
     private final PartitionBy.PartitionFloorMethod partitionFloorMethod;
+    private final ObjList<PartitionBloomFilter> partitionBloomFilters = new ObjList<>();
+    private final ObjList<PartitionStats> partitionStats = new ObjList<>();
     private final Path path;
     private final TableReaderRecordCursor recordCursor = new TableReaderRecordCursor();
     private final int rootLen;
@@ -91,8 +100,19 @@ public class TableReader implements Closeable, SymbolTableSource {
     public TableReader(CairoConfiguration configuration,
                        TableToken tableToken,
                        @Nullable MessageBus messageBus
+    ) {
+        this(configuration, tableToken, messageBus, null);
+    }
+
+    public TableReader(CairoConfiguration configuration,
+                       TableToken tableToken,
+                       @Nullable MessageBus messageBus,
+                       @Nullable ColumnBufferCache columnBufferCache
     ) {
         this.configuration = configuration;
+        this.columnBufferCache = columnBufferCache;
+        this.columnBufferCachePartitionAge = configuration.getColumnBufferCachePartitionAge() * Timestamps.MILLI_MICROS;
+        this.columnBufferCachePriority = columnBufferCache != null ? columnBufferCache.getPriority(tableToken.getTableName()) : 0;
         this.clock = configuration.getMillisecondClock();
         this.ff = configuration.getFilesFacade();
         this.tableToken = tableToken;
@@ -118,6 +138,7 @@ public class TableReader implements Closeable, SymbolTableSource {
             columnCountShl = getColumnBits(columnCount);
             openSymbolMaps();
             partitionCount = txFile.getPartitionCount();
+            partitionCeilMethod = PartitionBy.getPartitionCeilMethod(partitionBy);
             partitionDirFormatMethod = PartitionBy.getPartitionDirFormatMethod(partitionBy);
             partitionFloorMethod = PartitionBy.getPartitionFloorMethod(partitionBy);
 
@@ -167,6 +188,7 @@ public class TableReader implements Closeable, SymbolTableSource {
             Misc.free(txnScoreboard);
             Misc.free(path);
             Misc.free(columnVersionReader);
+            Misc.freeObjListAndClear(partitionBloomFilters);
             LOG.debug().$("closed '").utf8(tableToken.getTableName()).$('\'').$();
         }
     }
@@ -293,6 +315,82 @@ public class TableReader implements Closeable, SymbolTableSource {
         return end / PARTITIONS_SLOT_SIZE;
     }
 
+    /**
+     * Returns bloom filters of BLOOM indexed columns of the partition. The file is mapped once
+     * and re-mapped only when partition is changed by a commit.
+     *
+     * @param partitionIndex partition index
+     * @return partition bloom filters or null when partition does not have up-to-date filters
+     */
+    @Nullable
+    public PartitionBloomFilter getPartitionBloomFilter(int partitionIndex) {
+        if (!PartitionBy.isPartitioned(partitionBy)) {
+            return null;
+        }
+        final long partitionSize = txFile.getPartitionSize(partitionIndex);
+        if (partitionSize < 1) {
+            return null;
+        }
+
+        PartitionBloomFilter filter = partitionBloomFilters.getQuiet(partitionIndex);
+        if (filter == null) {
+            filter = new PartitionBloomFilter();
+            partitionBloomFilters.extendAndSet(partitionIndex, filter);
+        }
+
+        final long partitionTimestamp = txFile.getPartitionTimestamp(partitionIndex);
+        final long partitionNameTxn = txFile.getPartitionNameTxn(partitionIndex);
+        final long columnVersion = txFile.getColumnVersion();
+        if (!filter.isReadFor(partitionTimestamp, partitionNameTxn, partitionSize, columnVersion)) {
+            try {
+                pathGenPartitioned(partitionIndex);
+                TableUtils.txnPartitionConditionally(path, partitionNameTxn);
+                filter.read(ff, path, columnVersionReader, partitionTimestamp, partitionNameTxn, partitionSize, columnVersion);
+            } finally {
+                path.trimTo(rootLen);
+            }
+        }
+        return filter.isAvailable() ? filter : null;
+    }
+
+    /**
+     * Returns min/max/null count statistics of the partition. The result is cached and re-read
+     * only when partition is changed by a commit.
+     *
+     * @param partitionIndex partition index
+     * @return partition statistics or null when partition does not have up-to-date statistics
+     */
+    @Nullable
+    public PartitionStats getPartitionStats(int partitionIndex) {
+        if (!PartitionBy.isPartitioned(partitionBy)) {
+            return null;
+        }
+        final long partitionSize = txFile.getPartitionSize(partitionIndex);
+        if (partitionSize < 1) {
+            return null;
+        }
+
+        PartitionStats stats = partitionStats.getQuiet(partitionIndex);
+        if (stats == null) {
+            stats = new PartitionStats();
+            partitionStats.extendAndSet(partitionIndex, stats);
+        }
+
+        final long partitionTimestamp = txFile.getPartitionTimestamp(partitionIndex);
+        final long partitionNameTxn = txFile.getPartitionNameTxn(partitionIndex);
+        final long columnVersion = txFile.getColumnVersion();
+        if (!stats.isReadFor(partitionTimestamp, partitionNameTxn, partitionSize, columnVersion)) {
+            try {
+                pathGenPartitioned(partitionIndex);
+                TableUtils.txnPartitionConditionally(path, partitionNameTxn);
+                stats.read(ff, path, columnVersionReader, partitionTimestamp, partitionNameTxn, partitionSize, columnVersion);
+            } finally {
+                path.trimTo(rootLen);
+            }
+        }
+        return stats.isAvailable() ? stats : null;
+    }
+
     public long getPartitionTimestampByIndex(int partitionIndex) {
         return txFile.getPartitionTimestamp(partitionIndex);
     }
@@ -444,6 +542,10 @@ public class TableReader implements Closeable, SymbolTableSource {
             // partition reload will apply truncate if necessary
             // applyTruncate for non-partitioned tables only
             reconcileOpenPartitions(txPartitionVersion, txColumnVersion, txTruncateVersion);
+            if (txPartitionVersion != txFile.getPartitionTableVersion() || txColumnVersion != txFile.getColumnVersion()) {
+                // unmap filters of the partition versions that may be purged
+                Misc.freeObjListAndKeepObjects(partitionBloomFilters);
+            }
 
             // Save transaction details which impact the reloading. Do not rely on txReader, it can be reloaded outside this method.
             txPartitionVersion = this.txFile.getPartitionTableVersion();
@@ -741,6 +843,14 @@ public class TableReader implements Closeable, SymbolTableSource {
 
     @NotNull
     // this method is not thread safe
+    // cold partitions are read via the column buffer cache, the last partition is always mapped
+    private boolean isColdPartition(int partitionIndex, long partitionTimestamp) {
+        return columnBufferCache != null
+                && PartitionBy.isPartitioned(partitionBy)
+                && partitionIndex < txFile.getPartitionCount() - 1
+                && partitionCeilMethod.ceil(partitionTimestamp) <= txFile.getMaxTimestamp() - columnBufferCachePartitionAge;
+    }
+
     private SymbolMapReaderImpl newSymbolMapReader(int symbolColumnIndex, int columnIndex) {
         // symbol column index is the index of symbol column in dense array of symbol columns, e.g.
         // if table has only one symbol columns, the symbolColumnIndex is 0 regardless of column position
@@ -771,12 +881,25 @@ public class TableReader implements Closeable, SymbolTableSource {
             ObjList<MemoryMR> columns,
             int primaryIndex,
             MemoryMR mem,
-            long columnSize
+            long columnSize,
+            boolean compressed,
+            boolean cached
     ) {
-        if (mem != null && mem != NullMemoryMR.INSTANCE) {
+        if (mem != null && mem != NullMemoryMR.INSTANCE && (mem instanceof MemoryCMRZImpl) == compressed && (mem instanceof MemoryCMRCImpl) == cached) {
             mem.of(ff, path, columnSize, columnSize, MemoryTag.MMAP_TABLE_READER);
         } else {
-            mem = Vm.getMRInstance(ff, path, columnSize, MemoryTag.MMAP_TABLE_READER);
+            // partition has been converted or has gone cold since the memory was opened
+            Misc.free(mem);
+            if (compressed) {
+                // decompressed contents are shared with other readers via the cache when it is enabled
+                mem = new MemoryCMRZImpl(columnBufferCache, columnBufferCachePriority);
+                mem.of(ff, path, columnSize, columnSize, MemoryTag.MMAP_TABLE_READER);
+            } else if (cached) {
+                mem = new MemoryCMRCImpl(columnBufferCache, columnBufferCachePriority);
+                mem.of(ff, path, columnSize, columnSize, MemoryTag.MMAP_TABLE_READER);
+            } else {
+                mem = Vm.getMRInstance(ff, path, columnSize, MemoryTag.MMAP_TABLE_READER);
+            }
             columns.setQuick(primaryIndex, mem);
         }
         return mem;
@@ -1009,18 +1132,20 @@ public class TableReader implements Closeable, SymbolTableSource {
             // of when the column was added.
             if (columnRowCount > 0 && (versionRecordIndex > -1L || columnVersionReader.getColumnTopPartitionTimestamp(writerIndex) <= partitionTimestamp)) {
                 final int columnType = metadata.getColumnType(columnIndex);
+                final boolean compressed = PartitionBy.isPartitioned(partitionBy) && txFile.isPartitionCompressed(partitionIndex);
+                final boolean cached = !compressed && isColdPartition(partitionIndex, partitionTimestamp);
 
                 if (ColumnType.isVariableLength(columnType)) {
                     long columnSize = columnRowCount * 8L + 8L;
                     TableUtils.iFile(path.trimTo(plen), name, columnTxn);
-                    mem2 = openOrCreateMemory(path, columns, secondaryIndex, mem2, columnSize);
+                    mem2 = openOrCreateMemory(path, columns, secondaryIndex, mem2, columnSize, compressed, cached);
                     columnSize = mem2.getLong(columnRowCount * 8L);
                     TableUtils.dFile(path.trimTo(plen), name, columnTxn);
-                    openOrCreateMemory(path, columns, primaryIndex, mem1, columnSize);
+                    openOrCreateMemory(path, columns, primaryIndex, mem1, columnSize, compressed, cached);
                 } else {
                     long columnSize = columnRowCount << ColumnType.pow2SizeOf(columnType);
                     TableUtils.dFile(path.trimTo(plen), name, columnTxn);
-                    openOrCreateMemory(path, columns, primaryIndex, mem1, columnSize);
+                    openOrCreateMemory(path, columns, primaryIndex, mem1, columnSize, compressed, cached);
                     Misc.free(columns.getAndSetQuick(secondaryIndex, null));
                 }
 
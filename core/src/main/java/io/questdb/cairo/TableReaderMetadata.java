@@ -92,6 +92,7 @@ public class TableReaderMetadata extends AbstractRecordMetadata implements Table
             assert name != null;
             int columnType = TableUtils.getColumnType(metaMem, metaIndex);
             boolean isIndexed = TableUtils.isColumnIndexed(metaMem, metaIndex);
+            boolean isBloomIndexed = TableUtils.isColumnBloomIndexed(metaMem, metaIndex);
             int indexBlockCapacity = TableUtils.getIndexBlockCapacity(metaMem, metaIndex);
             TableColumnMetadata existing = null;
             String newName;
@@ -116,19 +117,21 @@ public class TableReaderMetadata extends AbstractRecordMetadata implements Table
                 if (rename
                         || existing == null
                         || existing.isIndexed() != isIndexed
+                        || existing.isBloomIndexed() != isBloomIndexed
                         || existing.getIndexValueBlockCapacity() != indexBlockCapacity
                 ) {
-                    columnMetadata.setQuick(existingIndex - shiftLeft,
-                            new TableColumnMetadata(
-                                    newName,
-                                    columnType,
-                                    isIndexed,
-                                    indexBlockCapacity,
-                                    true,
-                                    null,
-                                    metaIndex
-                            )
+                    TableColumnMetadata column = new TableColumnMetadata(
+                            newName,
+                            columnType,
+                            isIndexed,
+                            indexBlockCapacity,
+                            true,
+                            null,
+                            metaIndex
                     );
+                    column.setBloomIndexed(isBloomIndexed);
+                    column.setDedupKey(TableUtils.isColumnDedupKey(metaMem, metaIndex));
+                    columnMetadata.setQuick(existingIndex - shiftLeft, column);
                 } else if (shiftLeft > 0) {
                     columnMetadata.setQuick(existingIndex - shiftLeft, existing);
                 }
@@ -175,7 +178,7 @@ public class TableReaderMetadata extends AbstractRecordMetadata implements Table
 
         for (int i = 0; i < columnCount; i++) {
             TableColumnMetadata columnMetadata = metadata.columnMetadata.getQuick(i);
-            this.columnMetadata.setQuick(i, new TableColumnMetadata(
+            TableColumnMetadata column = new TableColumnMetadata(
                     columnMetadata.getName(),
                     columnMetadata.getType(),
                     columnMetadata.isIndexed(),
@@ -183,7 +186,10 @@ public class TableReaderMetadata extends AbstractRecordMetadata implements Table
                     columnMetadata.isSymbolTableStatic(),
                     columnMetadata.getMetadata(),
                     columnMetadata.getWriterIndex()
-            ));
+            );
+            column.setBloomIndexed(columnMetadata.isBloomIndexed());
+            column.setDedupKey(columnMetadata.isDedupKey());
+            this.columnMetadata.setQuick(i, column);
             columnNameIndexMap.put(columnMetadata.getName(), i);
         }
     }
@@ -301,17 +307,18 @@ public class TableReaderMetadata extends AbstractRecordMetadata implements Table
                 assert name != null;
                 int columnType = TableUtils.getColumnType(metaMem, i);
                 if (columnType > -1) {
-                    columnMetadata.add(
-                            new TableColumnMetadata(
-                                    Chars.toString(name),
-                                    columnType,
-                                    TableUtils.isColumnIndexed(metaMem, i),
-                                    TableUtils.getIndexBlockCapacity(metaMem, i),
-                                    true,
-                                    null,
-                                    i
-                            )
+                    TableColumnMetadata column = new TableColumnMetadata(
+                            Chars.toString(name),
+                            columnType,
+                            TableUtils.isColumnIndexed(metaMem, i),
+                            TableUtils.getIndexBlockCapacity(metaMem, i),
+                            true,
+                            null,
+                            i
                     );
+                    column.setBloomIndexed(TableUtils.isColumnBloomIndexed(metaMem, i));
+                    column.setDedupKey(TableUtils.isColumnDedupKey(metaMem, i));
+                    columnMetadata.add(column);
                     if (i == timestampIndex) {
                         this.timestampIndex = columnMetadata.size() - 1;
                     }
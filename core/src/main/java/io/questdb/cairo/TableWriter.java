@@ -31,6 +31,7 @@ import io.questdb.cairo.sql.AsyncWriterCommand;
 import io.questdb.cairo.sql.SymbolTable;
 import io.questdb.cairo.sql.TableRecordMetadata;
 import io.questdb.cairo.sql.TableReferenceOutOfDateException;
+import io.questdb.cairo.vm.MemoryCMRZImpl;
 import io.questdb.cairo.vm.NullMapWriter;
 import io.questdb.cairo.vm.Vm;
 import io.questdb.cairo.vm.api.*;
@@ -48,6 +49,7 @@ import io.questdb.log.LogRecord;
 import io.questdb.mp.*;
 import io.questdb.std.*;
 import io.questdb.std.datetime.DateFormat;
+import io.questdb.std.datetime.microtime.MicrosecondClock;
 import io.questdb.std.datetime.microtime.Timestamps;
 import io.questdb.std.str.DirectByteCharSequence;
 import io.questdb.std.str.LPSZ;
@@ -123,6 +125,7 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
     private final MemoryMR metaMem;
     private final TableWriterMetadata metadata;
     private final Metrics metrics;
+    private final MicrosecondClock microsecondClock;
     private final int mkDirMode;
     private final ObjList<Runnable> nullSetters;
     private final ObjectPool<O3Basket> o3BasketPool = new ObjectPool<>(O3Basket::new, 64);
@@ -132,22 +135,29 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
     private final SOUnboundedCountDownLatch o3DoneLatch = new SOUnboundedCountDownLatch();
     private final AtomicInteger o3ErrorCount = new AtomicInteger();
     private final long[] o3LastTimestampSpreads = new long[WINDOW_SIZE];
+    private final int o3PartitionChunkSize;
     private final AtomicLong o3PartitionUpdRemaining = new AtomicLong();
     private final ObjList<O3CallbackTask> o3PendingCallbackTasks = new ObjList<>();
     private final boolean o3QuickSortEnabled;
     private final Path other;
     private final MessageBus ownMessageBus;
     private final boolean parallelIndexerEnabled;
+    private final IntList partitionBloomColumns = new IntList();
     private final int partitionBy;
     private final PartitionBy.PartitionCeilMethod partitionCeilMethod;
     private final DateFormat partitionDirFmt;
     private final PartitionBy.PartitionFloorMethod partitionFloorMethod;
     private final LongList partitionRemoveCandidates = new LongList();
+    private final PartitionStats partitionStats = new PartitionStats();
+    private final LongList partitionStatsCandidates = new LongList();
+    private final boolean partitionStatsEnabled;
     private final Path path;
     private final AtomicLong physicallyWrittenRowsSinceLastCommit = new AtomicLong();
     private final int rootLen;
     private final FragileCode RECOVER_FROM_META_RENAME_FAILURE = this::recoverFromMetaRenameFailure;
     private final FindVisitor removePartitionDirectories = this::removePartitionDirectories0;
+    // (timestamp, name txn) pairs of partitions removed by the current transaction, purged after commit
+    private final LongList removedPartitions = new LongList();
     private final Row row = new RowImpl();
     private final LongList rowValueIsNotNull = new LongList();
     private final TxReader slaveTxReader;
@@ -194,6 +204,7 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
     private DirectLongList o3ColumnTopSink;
     private ReadOnlyObjList<? extends MemoryCR> o3Columns;
     private long o3CommitBatchTimestampMin = Long.MAX_VALUE;
+    private O3Dedup o3Dedup;
     private long o3EffectiveLag = 0L;
     private boolean o3InError = false;
     private long o3MasterRef = -1L;
@@ -219,6 +230,8 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
     private final O3ColumnUpdateMethod o3MoveLagRef = this::o3MoveLag0;
     private final O3ColumnUpdateMethod o3MoveUncommittedRef = this::o3MoveUncommitted0;
     private MemoryARW o3TimestampMemCpy;
+    private PartitionCompressor partitionCompressor;
+    private long partitionStatsLastPartitionTimestamp;
     private long partitionTimestampHi;
     private boolean performRecovery;
     private boolean removeDirOnCancelRow = true;
@@ -258,6 +271,9 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
         this.tableToken = tableToken;
         this.o3QuickSortEnabled = configuration.isO3QuickSortEnabled();
         this.o3ColumnMemorySize = configuration.getO3ColumnMemorySize();
+        this.o3PartitionChunkSize = configuration.getO3PartitionChunkSize();
+        this.microsecondClock = configuration.getMicrosecondClock();
+        this.partitionStatsEnabled = configuration.isPartitionStatsEnabled();
         this.path = new Path().of(root).concat(tableToken);
         this.other = new Path().of(root).concat(tableToken);
         this.rootLen = path.length();
@@ -281,7 +297,8 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
             this.txWriter = new TxWriter(ff).ofRW(path.concat(TXN_FILE_NAME).$(), partitionBy);
             this.txnScoreboard = new TxnScoreboard(ff, configuration.getTxnScoreboardEntryCount()).ofRW(path.trimTo(rootLen));
             path.trimTo(rootLen);
-            this.o3ColumnOverrides = metadata.isWalEnabled() ? new ObjList<>() : null;
+            this.o3ColumnOverrides = new ObjList<>();
+            this.o3Dedup = O3Dedup.hasKeys(metadata) ? new O3Dedup(configuration, this.messageBus, this, path, metadata, partitionBy, txWriter, columnVersionWriter) : null;
             // we have to do truncate repair at this stage of constructor
             // because this operation requires metadata
             switch (todo) {
@@ -318,6 +335,7 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
             if (PartitionBy.isPartitioned(partitionBy)) {
                 this.partitionDirFmt = PartitionBy.getPartitionDirFormatMethod(partitionBy);
                 this.partitionTimestampHi = txWriter.getLastPartitionTimestamp();
+                this.partitionStatsLastPartitionTimestamp = partitionTimestampHi;
             } else {
                 this.partitionDirFmt = null;
             }
@@ -369,6 +387,45 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
         return Unsafe.getUnsafe().getLong(timestampIndex + indexRow * 16);
     }
 
+    @Override
+    public void addBloomIndex(CharSequence columnName) {
+        checkDistressed();
+
+        final int columnIndex = getColumnIndexQuiet(metaMem, columnName, columnCount);
+
+        if (columnIndex == -1) {
+            throw CairoException.nonCritical().put("column '").put(columnName).put("' does not exist");
+        }
+
+        commit();
+
+        if (isColumnBloomIndexed(metaMem, columnIndex)) {
+            throw CairoException.nonCritical().put("already bloom indexed [column=").put(columnName).put(']');
+        }
+
+        final int existingType = getColumnType(metaMem, columnIndex);
+        if (!PartitionBloomFilter.isSupported(existingType)) {
+            throw CairoException.nonCritical().put("cannot create bloom index for [column='").put(columnName).put(", type=").put(ColumnType.nameOf(existingType)).put(", path=").put(path).put(']');
+        }
+
+        // set bloom flag in metadata and create new _meta.swp
+        metaSwapIndex = copyMetadataAndSetIndexAttrs(columnIndex, META_FLAG_BIT_BLOOM_INDEXED, getIndexBlockCapacity(metaMem, columnIndex));
+
+        swapMetaFile(columnName);
+
+        metadata.getColumnMetadata(columnIndex).setBloomIndexed(true);
+
+        // filters of sealed partitions are built right away, the last partition gets its filter when it is sealed
+        if (PartitionBy.isPartitioned(partitionBy)) {
+            for (int i = 0, n = txWriter.getPartitionCount() - 1; i < n; i++) {
+                partitionStatsCandidates.add(txWriter.getPartitionTimestamp(i));
+            }
+            updatePartitionStats();
+        }
+
+        LOG.info().$("ADDED bloom index to '").utf8(columnName).$('[').$(ColumnType.nameOf(existingType)).$("]' to ").$(path).$();
+    }
+
     @Override
     public void addColumn(CharSequence columnName, int columnType) {
         addColumn(
@@ -653,6 +710,64 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
         return operation.apply(this, true);
     }
 
+    /**
+     * Applies rows staged in memory outside of this writer, e.g. by line protocol writer threads sharing
+     * a hot table. Columns follow WAL segment layout: primary and secondary memory per column, designated
+     * timestamp stored as timestamp and row index pairs, var size columns with N+1 offsets. Symbol keys
+     * above the clean symbol count of each diff are remapped to this writer's symbol maps.
+     * <p>
+     * Rows are committed as they are applied, the writer must not have an open transaction.
+     *
+     * @param columns       staged columns, two per table column, null for deleted columns
+     * @param rowCount      number of staged rows
+     * @param ordered       true when staged rows are in timestamp order
+     * @param timestampMin  min staged timestamp
+     * @param timestampMax  max staged timestamp
+     * @param mapDiffCursor symbols that are new to staged columns
+     * @return number of rows added to the table
+     */
+    public long applyStagedRows(
+            ReadOnlyObjList<? extends MemoryCR> columns,
+            long rowCount,
+            boolean ordered,
+            long timestampMin,
+            long timestampMax,
+            SymbolMapDiffCursor mapDiffCursor
+    ) {
+        if (inTransaction()) {
+            throw CairoException.critical(0).put("cannot apply staged rows while in transaction [table=").put(tableToken.getTableName()).put(']');
+        }
+
+        txWriter.beginPartitionSizeUpdate();
+        LOG.info().$("applying staged rows [table=").$(tableToken)
+                .$(", rowCount=").$(rowCount)
+                .$(", ordered=").$(ordered)
+                .$(", tsMin=").$ts(timestampMin).$(", tsMax=").$ts(timestampMax)
+                .I$();
+        if (rowAction == ROW_ACTION_OPEN_PARTITION && txWriter.getMaxTimestamp() == Long.MIN_VALUE) {
+            openFirstPartition(timestampMin);
+        }
+        // O3 memory keeps rows of the last out-of-order commit, staged rows must not be merged with them as lag
+        o3OpenColumns();
+        o3Columns = columns;
+        o3RowCount = rowCount;
+        processO3Columns(path, metadata.getTimestampIndex(), ordered, 0, rowCount, timestampMin, timestampMax, mapDiffCursor, Long.MAX_VALUE);
+
+        final long committedRowCount = txWriter.unsafeCommittedFixedRowCount() + txWriter.unsafeCommittedTransientRowCount();
+        final long rowsAdded = txWriter.getRowCount() - committedRowCount;
+        updateIndexes();
+        columnVersionWriter.commit();
+        txWriter.setColumnVersion(columnVersionWriter.getVersion());
+        txWriter.commit(defaultCommitMode, this.denseSymbolMapWriters);
+        this.committedMasterRef = masterRef;
+        processPartitionRemoveCandidates();
+        updatePartitionStats();
+
+        metrics.tableWriter().incrementCommits();
+        metrics.tableWriter().addCommittedRows(rowsAdded);
+        return rowsAdded;
+    }
+
     @Override
     public AttachDetachStatus attachPartition(long timestamp) {
         // -1 means unknown size
@@ -856,6 +971,51 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
         txWriter.commit(defaultCommitMode, denseSymbolMapWriters);
     }
 
+    @Override
+    public void convertPartition(long timestamp, boolean compress) {
+        // Should be checked by SQL compiler
+        assert metadata.getTimestampIndex() > -1;
+        assert PartitionBy.isPartitioned(partitionBy);
+
+        if (inTransaction()) {
+            LOG.info()
+                    .$("committing open transaction before applying convert partition command [table=")
+                    .utf8(tableToken.getTableName())
+                    .$(", partition=").$ts(timestamp)
+                    .I$();
+            commit();
+        }
+
+        final int partitionIndex = txWriter.getPartitionIndex(timestamp);
+        if (partitionIndex == -1) {
+            throw CairoException.nonCritical().put("could not convert partition, partition does not exist [table=").put(tableToken.getTableName())
+                    .put(", partitionTimestamp=").ts(timestamp)
+                    .put(']');
+        }
+
+        if (getPartitionLo(timestamp) == getPartitionLo(txWriter.getMaxTimestamp())) {
+            throw CairoException.nonCritical().put("cannot convert active partition [table=").put(tableToken.getTableName())
+                    .put(", partitionTimestamp=").ts(timestamp)
+                    .put(']');
+        }
+
+        if (txWriter.isPartitionCompressed(partitionIndex) == compress) {
+            LOG.info().$("partition is already converted [table=").utf8(tableToken.getTableName())
+                    .$(", partition=").$ts(timestamp)
+                    .$(", compressed=").$(compress)
+                    .I$();
+            return;
+        }
+
+        if (compress && txWriter.isPartitionReadOnly(partitionIndex)) {
+            throw CairoException.nonCritical().put("cannot compress read-only partition [table=").put(tableToken.getTableName())
+                    .put(", partitionTimestamp=").ts(timestamp)
+                    .put(']');
+        }
+
+        convertPartition0(partitionIndex, compress);
+    }
+
     public void destroy() {
         // Closes all the files and makes this instance unusable e.g. it cannot return to the pool on close.
         LOG.info().$("closing table files [table=").utf8(tableToken.getTableName())
@@ -888,6 +1048,11 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
         if (timestamp == getPartitionLo(maxTimestamp)) {
             return AttachDetachStatus.DETACH_ERR_ACTIVE;
         }
+
+        // attach expects native column files
+        if (txWriter.isPartitionCompressed(partitionIndex)) {
+            return AttachDetachStatus.DETACH_ERR_COMPRESSED;
+        }
         long minTimestamp = txWriter.getMinTimestamp();
 
         long partitionNameTxn = txWriter.getPartitionNameTxn(partitionIndex);
@@ -1135,6 +1300,25 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
         return metadata;
     }
 
+    /**
+     * Returns descriptor of the WAL segment file O3 rows of the column are read from, or -1 when
+     * O3 rows are not in the file as they are, e.g. sorted into memory or with remapped symbol keys.
+     * Row N of the segment is at file offset N of the column, index column for var size types.
+     * The descriptor is used to copy rows into new partition files only, see O3OpenColumnJob.appendLastPartition().
+     *
+     * @param columnOffset primary column index, see {@link #getPrimaryColumnIndex(int)}
+     * @return file descriptor or -1
+     */
+    int getO3WalColumnFd(int columnOffset) {
+        if (columnOffset < walMappedColumns.size()) {
+            final MemoryCMOR mem = walMappedColumns.getQuick(columnOffset);
+            if (mem != null && o3Columns.getQuick(columnOffset) == mem) {
+                return mem.getFd();
+            }
+        }
+        return -1;
+    }
+
     public long getO3RowCount() {
         return hasO3() ? getO3RowCount0() : 0L;
     }
@@ -1252,7 +1436,7 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
     }
 
     public boolean inTransaction() {
-        return txWriter != null && (txWriter.inTransaction() || hasO3() || columnVersionWriter.hasChanges());
+        return txWriter != null && (txWriter.inTransaction() || hasO3() || columnVersionWriter.hasChanges() || removedPartitions.size() > 0);
     }
 
     public boolean isOpen() {
@@ -1292,8 +1476,9 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
 
             default: // switch partition
                 bumpMasterRef();
-                if (timestamp > partitionTimestampHi || timestamp < txWriter.getMaxTimestamp()) {
-                    if (timestamp < txWriter.getMaxTimestamp()) {
+                if (timestamp > partitionTimestampHi || timestamp <= txWriter.getMaxTimestamp()) {
+                    // rows repeating max timestamp of deduplicated table are checked for duplicates by O3 commit
+                    if (timestamp < txWriter.getMaxTimestamp() || (o3Dedup != null && timestamp == txWriter.getMaxTimestamp())) {
                         return newRowO3(timestamp);
                     }
 
@@ -1384,126 +1569,10 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
             SymbolMapDiffCursor mapDiffCursor,
             long commitToTimestamp
     ) {
-        this.lastPartitionTimestamp = partitionFloorMethod.floor(partitionTimestampHi);
-        long partitionTimestampHiLimit = partitionCeilMethod.ceil(partitionTimestampHi) - 1;
         int walRootPathLen = walPath.length();
-
         try {
             mmapWalColumns(walPath, timestampIndex, rowLo, rowHi);
-            long o3TimestampOffset = o3TimestampMem.getAppendOffset();
-            long lagRowCount = o3TimestampOffset >> 4;
-            if (lagRowCount > 0) {
-                o3TimestampMin = Math.min(o3TimestampMin, getTimestampIndexValue(o3TimestampMem.getAddress(), 0));
-            }
-
-            try {
-                long timestampAddr;
-                long o3Lo = rowLo;
-                long o3Hi = rowHi;
-                final boolean copiedToMemory;
-                final boolean needsOrdering = !ordered || lagRowCount > 0;
-                final long symbolRowLo = needsOrdering || commitToTimestamp < 0 ? lagRowCount : rowLo;
-                o3Columns = remapWalSymbols(mapDiffCursor, rowLo, rowHi, walPath, symbolRowLo);
-                MemoryCR walTimestampColumn = walMappedColumns.getQuick(getPrimaryColumnIndex(timestampIndex));
-
-                if (commitToTimestamp < o3TimestampMin) {
-                    // Don't commit anything, move everything to memory instead.
-                    // This usually happens when WAL transactions are very small, so it's faster
-                    // to squash several of them together before writing anything to disk.
-                    LOG.debug().$("all WAL rows copied to LAG [table=").$(tableToken).I$();
-                    // This will copy data from mmap files to memory.
-                    // Symbols are already mapped to the correct destination.
-                    o3ShiftLagRowsUp(timestampIndex, o3Hi - o3Lo, o3Lo, lagRowCount, true);
-                    return false;
-                }
-
-                if (needsOrdering) {
-                    LOG.info().$("sorting WAL [table=").$(tableToken)
-                            .$(", ordered=").$(ordered)
-                            .$(", lagRowCount=").$(lagRowCount)
-                            .$(", rowLo=").$(rowLo)
-                            .$(", rowHi=").$(rowHi).I$();
-
-                    final long timestampMemorySize = (rowHi - rowLo) << 4;
-                    o3TimestampMem.jumpTo(o3TimestampOffset + timestampMemorySize);
-                    o3TimestampMemCpy.jumpTo(o3TimestampOffset + timestampMemorySize);
-
-                    timestampAddr = o3TimestampMem.getAddress();
-                    final long mappedTimestampIndexAddr = walTimestampColumn.addressOf(rowLo << 4);
-                    Vect.radixSortABLongIndexAscInA(
-                            timestampAddr,
-                            lagRowCount,
-                            mappedTimestampIndexAddr,
-                            rowHi - rowLo,
-                            o3TimestampMemCpy.addressOf(0)
-                    );
-                    o3MergeIntoLag(timestampAddr, lagRowCount, rowLo, rowHi, timestampIndex);
-
-                    // Sorted data is now sorted in memory copy of the data from mmap files
-                    // Row indexes start from 0, not rowLo
-                    o3Hi = rowHi - rowLo + lagRowCount;
-                    o3Lo = 0L;
-                    lagRowCount = 0L;
-                    o3Columns = o3MemColumns;
-                    copiedToMemory = true;
-                    o3TimestampMin = getTimestampIndexValue(timestampAddr, o3Lo);
-                    o3TimestampMax = getTimestampIndexValue(timestampAddr, o3Hi - 1);
-                } else {
-                    timestampAddr = walTimestampColumn.addressOf(0);
-                    copiedToMemory = false;
-                }
-
-                if (commitToTimestamp < o3TimestampMin) {
-                    // Don't commit anything, it is enough to move everything to memory instead.
-                    // Copying is already done while sorting at the point so we can finish here.
-                    return false;
-                } else {
-                    if (commitToTimestamp < o3TimestampMax) {
-                        final long lagThresholdRow = 1 +
-                                Vect.boundedBinarySearchIndexT(
-                                        timestampAddr,
-                                        commitToTimestamp,
-                                        o3Lo,
-                                        o3Hi - 1,
-                                        BinarySearch.SCAN_DOWN
-                                );
-                        assert lagThresholdRow > 0 && lagThresholdRow < o3Hi;
-                        lagRowCount = o3Hi - o3Lo - lagThresholdRow;
-                        o3Hi = lagThresholdRow;
-                        o3TimestampMax = getTimestampIndexValue(timestampAddr, o3Hi - 1);
-                        assert o3TimestampMax >= o3TimestampMin && o3TimestampMax <= commitToTimestamp;
-
-                        LOG.debug().$("committing WAL with LAG [table=").$(tableToken)
-                                .$(", lagRowCount=").$(lagRowCount)
-                                .$(", rowLo=").$(o3Lo)
-                                .$(", rowHi=").$(o3Hi).I$();
-                    } else {
-                        lagRowCount = 0;
-                    }
-
-                    o3RowCount = o3Hi - o3Lo + lagRowCount;
-                    processO3Block(
-                            lagRowCount,
-                            timestampIndex,
-                            timestampAddr,
-                            o3Hi,
-                            o3TimestampMin,
-                            o3TimestampMax,
-                            copiedToMemory,
-                            o3Lo
-                    );
-                    if (lagRowCount == 0) {
-                        o3TimestampMem.jumpTo(0);
-                    }
-                }
-            } finally {
-                finishO3Append(lagRowCount);
-                o3Columns = o3MemColumns;
-                closeWalColumns();
-            }
-
-            finishO3Commit(partitionTimestampHiLimit);
-            return true;
+            return processO3Columns(walPath, timestampIndex, ordered, rowLo, rowHi, o3TimestampMin, o3TimestampMax, mapDiffCursor, commitToTimestamp);
         } finally {
             walPath.trimTo(walRootPathLen);
         }
@@ -1552,6 +1621,7 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
             // Bookmark masterRef to track how many rows is in uncommitted state
             this.committedMasterRef = masterRef;
             processPartitionRemoveCandidates();
+            updatePartitionStats();
 
             metrics.tableWriter().incrementCommits();
             metrics.tableWriter().addCommittedRows(rowsAdded);
@@ -1719,6 +1789,10 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
                 prevTimestamp = 0L; // meaningless
             } else {
                 final int prevIndex = index - 1;
+                if (txWriter.isPartitionCompressed(prevIndex)) {
+                    // previous partition becomes active, it has to be writable
+                    convertPartition0(prevIndex, false);
+                }
                 prevTimestamp = txWriter.getPartitionTimestamp(prevIndex);
                 newTransientRowCount = txWriter.getPartitionSize(prevIndex);
                 try {
@@ -1782,6 +1856,110 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
         return true;
     }
 
+    /**
+     * Removes partitions with timestamps in the [lo, hi) interval as part of the current transaction.
+     * Unlike {@link #removePartition(long)} nothing is committed: readers keep seeing the partitions
+     * until the next {@link #commit()}, which also publishes the rows appended in the meantime, so that
+     * a range of the table can be replaced in a single transaction. Rows appended to the interval land
+     * in new partition directories, the removed ones are purged once the commit is done.
+     * {@link #rollback()} brings the partitions back.
+     *
+     * @param lo inclusive partition timestamp lower bound
+     * @param hi exclusive partition timestamp upper bound
+     * @return number of removed partitions
+     */
+    public int removePartitions(long lo, long hi) {
+        if (!PartitionBy.isPartitioned(partitionBy)) {
+            return 0;
+        }
+
+        // commit changes, there may be uncommitted rows of any partition
+        commit();
+
+        final int partitionCount = txWriter.getPartitionCount();
+        int firstIndex = -1;
+        int lastIndex = -1;
+        for (int i = 0; i < partitionCount; i++) {
+            final long timestamp = txWriter.getPartitionTimestamp(i);
+            if (timestamp >= lo && timestamp < hi) {
+                if (firstIndex == -1) {
+                    firstIndex = i;
+                }
+                lastIndex = i;
+            }
+        }
+        if (firstIndex == -1) {
+            return 0;
+        }
+
+        for (int i = firstIndex; i <= lastIndex; i++) {
+            if (txWriter.getPartitionNameTxn(i) >= txWriter.getTxn() - 1) {
+                // partitions written by this transaction are named `txn-1` or `txn`, the removed
+                // directories must not be reused by them, advance the txn to free up the names
+                txWriter.commit(defaultCommitMode, denseSymbolMapWriters);
+                break;
+            }
+        }
+
+        final boolean removesActivePartition = lastIndex == partitionCount - 1;
+        if (removesActivePartition && firstIndex > 0 && txWriter.isPartitionCompressed(firstIndex - 1)) {
+            // previous partition becomes active, it has to be writable; this commits,
+            // so it must be done before any partition is removed
+            convertPartition0(firstIndex - 1, false);
+        }
+
+        long nextMinTimestamp = txWriter.getMinTimestamp();
+        long nextMaxTimestamp = txWriter.getMaxTimestamp();
+        if (removesActivePartition) {
+            if (firstIndex == 0) {
+                nextMinTimestamp = Long.MAX_VALUE;
+                nextMaxTimestamp = Long.MIN_VALUE;
+            } else {
+                final long prevTimestamp = txWriter.getPartitionTimestamp(firstIndex - 1);
+                try {
+                    setPathForPartition(path.trimTo(rootLen), partitionBy, prevTimestamp, false);
+                    TableUtils.txnPartitionConditionally(path, txWriter.getPartitionNameTxn(firstIndex - 1));
+                    readPartitionMinMax(ff, prevTimestamp, path, metadata.getColumnName(metadata.getTimestampIndex()), txWriter.getPartitionSize(firstIndex - 1));
+                    nextMaxTimestamp = attachMaxTimestamp;
+                } finally {
+                    path.trimTo(rootLen);
+                }
+            }
+        } else if (firstIndex == 0) {
+            nextMinTimestamp = readMinTimestamp(txWriter.getPartitionTimestamp(lastIndex + 1));
+        }
+
+        txWriter.beginPartitionSizeUpdate();
+        for (int i = lastIndex; i >= firstIndex; i--) {
+            final long timestamp = txWriter.getPartitionTimestamp(i);
+            removedPartitions.add(timestamp, txWriter.getPartitionNameTxn(i));
+            columnVersionWriter.removePartition(timestamp);
+            txWriter.removeAttachedPartitions(timestamp);
+        }
+        txWriter.setMinTimestamp(nextMinTimestamp);
+        txWriter.finishPartitionSizeUpdate(nextMinTimestamp, nextMaxTimestamp);
+        txWriter.bumpTruncateVersion();
+
+        if (removesActivePartition) {
+            // files stay intact, readers of the committed transaction still use them
+            closeActivePartition(false);
+            if (firstIndex > 0) {
+                openPartition(txWriter.getLastPartitionTimestamp());
+                setAppendPosition(txWriter.getTransientRowCount(), false);
+            } else {
+                rowAction = ROW_ACTION_OPEN_PARTITION;
+            }
+        }
+
+        final int removed = lastIndex - firstIndex + 1;
+        LOG.info().$("removed partitions in transaction [table=").utf8(tableToken.getTableName())
+                .$(", lo=").$ts(lo)
+                .$(", hi=").$ts(hi)
+                .$(", count=").$(removed)
+                .I$();
+        return removed;
+    }
+
     @Override
     public void renameColumn(CharSequence currentName, CharSequence newName) {
         checkDistressed();
@@ -1840,6 +2018,10 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
             try {
                 LOG.info().$("tx rollback [name=").utf8(tableToken.getTableName()).I$();
                 partitionRemoveCandidates.clear();
+                removedPartitions.clear();
+                if (o3Dedup != null) {
+                    o3Dedup.clearReplacedColumnVersions();
+                }
                 o3CommitBatchTimestampMin = Long.MAX_VALUE;
                 if ((masterRef & 1) != 0) {
                     masterRef++;
@@ -2041,6 +2223,7 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
     public void upsertColumnVersion(long partitionTimestamp, int columnIndex, long columnTop) {
         columnVersionWriter.upsert(partitionTimestamp, columnIndex, txWriter.txn, columnTop);
         txWriter.updatePartitionColumnVersion(partitionTimestamp);
+        partitionStatsCandidates.add(partitionTimestamp);
     }
 
     /**
@@ -2625,6 +2808,12 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
         activeNullSetters = nullSetters;
     }
 
+    private void clearO3ColumnTopSink() {
+        if (o3ColumnTopSink != null) {
+            o3ColumnTopSink.clear();
+        }
+    }
+
     private void clearTodoLog() {
         try {
             todoMem.putLong(0, ++todoTxn); // write txn, reader will first read txn at offset 24 and then at offset 0
@@ -2659,6 +2848,7 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
                 walColumnMemoryPool.push(mappedColumnMem);
             }
         }
+        walMappedColumns.clear();
     }
 
     /**
@@ -2727,6 +2917,7 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
             // Bookmark masterRef to track how many rows is in uncommitted state
             this.committedMasterRef = masterRef;
             processPartitionRemoveCandidates();
+            updatePartitionStats();
 
             metrics.tableWriter().incrementCommits();
             metrics.tableWriter().addCommittedRows(rowsAdded);
@@ -2856,6 +3047,115 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
         }
     }
 
+    // Converts partition into a hard linked copy with the new name txn. Column files of the copy are
+    // replaced by converted versions, everything else, such as indexes and statistics, is shared with the
+    // original. Readers keep using the original directory until they move on to the new txn.
+    private void convertPartition0(int partitionIndex, boolean compress) {
+        final long timestamp = txWriter.getPartitionTimestamp(partitionIndex);
+        final long partitionNameTxn = txWriter.getPartitionNameTxn(partitionIndex);
+        convertPartitionFiles(partitionIndex, compress, txWriter.getTxn());
+        txWriter.updatePartitionSizeAndTxnByIndex(partitionIndex * LONGS_PER_TX_ATTACHED_PARTITION, txWriter.getPartitionSize(partitionIndex));
+        txWriter.setPartitionCompressed(partitionIndex, compress);
+        txWriter.bumpPartitionTableVersion();
+        txWriter.commit(defaultCommitMode, denseSymbolMapWriters);
+        if (compress) {
+            // O3 writes decompress the partition into `txn-1` directory, see o3DecompressPartition(),
+            // advance the txn so that the name is not taken by the compressed partition
+            txWriter.commit(defaultCommitMode, denseSymbolMapWriters);
+        }
+
+        LOG.info().$("converted partition [table=").utf8(tableToken.getTableName())
+                .$(", partition=").$ts(timestamp)
+                .$(", compressed=").$(compress)
+                .I$();
+        safeDeletePartitionDir(timestamp, partitionNameTxn);
+    }
+
+    private void convertPartitionColumn(LPSZ src, LPSZ dst, long size, boolean compress, boolean encode) {
+        if (compress && encode) {
+            // delta-of-delta and bit packing, readers decode such columns block by block
+            partitionCompressor.encode(ff, src, dst, size, configuration.getWriterFileOpenOpts());
+        } else if (compress) {
+            partitionCompressor.compress(ff, src, dst, size, configuration.getWriterFileOpenOpts());
+        } else {
+            partitionCompressor.decompress(ff, src, dst, configuration.getWriterFileOpenOpts());
+        }
+    }
+
+    private void convertPartitionFiles(int partitionIndex, boolean compress, long nameTxn) {
+        final long timestamp = txWriter.getPartitionTimestamp(partitionIndex);
+        final long partitionNameTxn = txWriter.getPartitionNameTxn(partitionIndex);
+        final long partitionSize = txWriter.getPartitionSize(partitionIndex);
+        if (partitionCompressor == null) {
+            partitionCompressor = new PartitionCompressor();
+        }
+
+        setPathForPartition(path.trimTo(rootLen), partitionBy, timestamp, false);
+        TableUtils.txnPartitionConditionally(path, partitionNameTxn);
+        final int plen = path.length();
+        setPathForPartition(other.trimTo(rootLen), partitionBy, timestamp, false);
+        TableUtils.txnPartitionConditionally(other, nameTxn);
+        final int olen = other.length();
+        try {
+            if (ff.exists(other.$()) && ff.rmdir(other) != 0) {
+                // leftover of interrupted conversion
+                throw CairoException.critical(ff.errno()).put("could not remove partition directory [path=").put(other).put(']');
+            }
+
+            if (ff.hardLinkDirRecursive(path.$(), other.trimTo(olen).$(), mkDirMode) != 0) {
+                if (!ff.isCrossDeviceCopyError(ff.errno()) || ff.copyRecursive(path.trimTo(plen).$(), other.trimTo(olen).$(), mkDirMode) != 0) {
+                    throw CairoException.critical(ff.errno()).put("could not copy partition [from=").put(path)
+                            .put(", to=").put(other)
+                            .put(']');
+                }
+            }
+
+            for (int i = 0; i < columnCount; i++) {
+                final int columnType = metadata.getColumnType(i);
+                final long columnTop = columnVersionWriter.getColumnTop(timestamp, i);
+                if (columnType < 0 || columnTop < 0 || columnTop >= partitionSize) {
+                    continue;
+                }
+
+                final CharSequence columnName = metadata.getColumnName(i);
+                final long columnNameTxn = columnVersionWriter.getColumnNameTxn(timestamp, i);
+                final long columnRowCount = partitionSize - columnTop;
+                final long columnSize;
+                if (ColumnType.isVariableLength(columnType)) {
+                    convertPartitionColumn(
+                            iFile(path.trimTo(plen), columnName, columnNameTxn),
+                            iFile(other.trimTo(olen), columnName, columnNameTxn),
+                            (columnRowCount + 1) * Long.BYTES,
+                            compress,
+                            false
+                    );
+                    // data size is the last offset of native index file
+                    columnSize = TableUtils.readLongAtOffset(ff, compress ? path : other, tempMem16b, columnRowCount * Long.BYTES);
+                } else {
+                    columnSize = columnRowCount << ColumnType.pow2SizeOf(columnType);
+                }
+                convertPartitionColumn(
+                        dFile(path.trimTo(plen), columnName, columnNameTxn),
+                        dFile(other.trimTo(olen), columnName, columnNameTxn),
+                        columnSize,
+                        compress,
+                        ColumnType.tagOf(columnType) == ColumnType.LONG || ColumnType.tagOf(columnType) == ColumnType.TIMESTAMP
+                );
+            }
+        } catch (Throwable th) {
+            // original partition is intact, drop the partial copy
+            if (ff.rmdir(other.trimTo(olen).$()) != 0) {
+                LOG.error().$("could not remove partially converted partition [path=").$(other)
+                        .$(", errno=").$(ff.errno())
+                        .I$();
+            }
+            throw th;
+        } finally {
+            path.trimTo(rootLen);
+            other.trimTo(rootLen);
+        }
+    }
+
     private int copyMetadataAndSetIndexAttrs(int columnIndex, int indexedFlag, int indexValueBlockSize) {
         try {
             int index = openMetaSwapFile(ff, ddlMem, path, rootLen, configuration.getMaxSwapFileCount());
@@ -2874,6 +3174,12 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
                     if (isSequential(metaMem, i)) {
                         flags |= META_FLAG_BIT_SEQUENTIAL;
                     }
+                    if (isColumnBloomIndexed(metaMem, i)) {
+                        flags |= META_FLAG_BIT_BLOOM_INDEXED;
+                    }
+                    if (isColumnDedupKey(metaMem, i)) {
+                        flags |= META_FLAG_BIT_DEDUP_KEY;
+                    }
                     ddlMem.putLong(flags);
                     ddlMem.putInt(indexValueBlockSize);
                     ddlMem.skip(16);
@@ -3048,6 +3354,8 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
         Misc.free(slaveTxReader);
         Misc.free(commandQueue);
         updateOperatorImpl = Misc.free(updateOperatorImpl);
+        partitionCompressor = Misc.free(partitionCompressor);
+        o3Dedup = Misc.free(o3Dedup);
         dropIndexOperator = null;
         noOpRowCount = 0L;
         lastOpenPartitionTs = -1L;
@@ -3210,7 +3518,7 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
         long ts = this.txWriter.getMaxTimestamp();
         if (ts > Numbers.LONG_NaN) {
             final int columnIndex = metadata.getColumnIndex(columnName);
-            try (final MemoryMR roMem = indexMem) {
+            try (final MemoryMR roMem = indexMem; final MemoryCMRZImpl compressedMem = new MemoryCMRZImpl()) {
                 // Index last partition separately
                 for (int i = 0, n = txWriter.getPartitionCount() - 1; i < n; i++) {
 
@@ -3236,9 +3544,10 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
                             if (columnTop > -1L && partitionSize > columnTop) {
                                 TableUtils.dFile(path.trimTo(plen), columnName, columnNameTxn);
                                 final long columnSize = (partitionSize - columnTop) << ColumnType.pow2SizeOf(ColumnType.INT);
-                                roMem.of(ff, path, columnSize, columnSize, MemoryTag.MMAP_TABLE_WRITER);
+                                final MemoryMR mem = txWriter.isPartitionCompressed(i) ? compressedMem : roMem;
+                                mem.of(ff, path, columnSize, columnSize, MemoryTag.MMAP_TABLE_WRITER);
                                 indexer.configureWriter(configuration, path.trimTo(plen), columnName, columnNameTxn, columnTop);
-                                indexer.index(roMem, columnTop, partitionSize);
+                                indexer.index(mem, columnTop, partitionSize);
                             }
                         }
                     }
@@ -3383,6 +3692,7 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
      */
     private boolean o3Commit(long o3MaxLag) {
         o3RowCount = getO3RowCount0();
+        final long o3MovedRowLo = o3RowCount;
 
         long o3LagRowCount = 0;
         long maxUncommittedRows = metadata.getMaxUncommittedRows();
@@ -3392,7 +3702,8 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
         // will have to switch partition internally
         long partitionTimestampHiLimit = partitionCeilMethod.ceil(partitionTimestampHi) - 1;
         try {
-            o3RowCount += o3MoveUncommitted(timestampIndex);
+            final long o3MovedRowCount = o3MoveUncommitted(timestampIndex);
+            o3RowCount += o3MovedRowCount;
 
             // we may need to re-use file descriptors when this partition is the "current" one
             // we cannot open file again due to sharing violation
@@ -3405,12 +3716,19 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
 
             // ensure there is enough size
             assert o3TimestampMem.getAppendOffset() == o3RowCount * TIMESTAMP_MERGE_ENTRY_BYTES;
+            long sortStart = microsecondClock.getTicks();
             if (o3RowCount > 600 || !o3QuickSortEnabled) {
                 o3TimestampMemCpy.jumpTo(o3TimestampMem.getAppendOffset());
                 Vect.radixSortLongIndexAscInPlace(sortedTimestampsAddr, o3RowCount, o3TimestampMemCpy.addressOf(0));
             } else {
                 Vect.quickSortLongIndexAscInPlace(sortedTimestampsAddr, o3RowCount);
             }
+            metrics.tableWriter().addO3SortTime(microsecondClock.getTicks() - sortStart);
+
+            if (o3Dedup != null) {
+                o3RowCount = o3Dedup.dedup(sortedTimestampsAddr, o3RowCount, o3Columns, o3MovedRowLo, o3MovedRowCount);
+                o3TimestampMem.jumpTo(o3RowCount * TIMESTAMP_MERGE_ENTRY_BYTES);
+            }
 
             // we have three frames:
             // partition logical "lo" and "hi" - absolute bounds (partitionLo, partitionHi)
@@ -3418,7 +3736,7 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
             // out of order "lo" and "hi" (indexLo, indexHi)
 
             long srcOooMax;
-            final long o3TimestampMin = getTimestampIndexValue(sortedTimestampsAddr, 0);
+            long o3TimestampMin = getTimestampIndexValue(sortedTimestampsAddr, 0);
             if (o3TimestampMin < Timestamps.O3_MIN_TS) {
                 o3InError = true;
                 throw CairoException.nonCritical().put("timestamps before 1970-01-01 are not allowed for O3");
@@ -3525,30 +3843,51 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
                 return true;
             }
 
-            // we could have moved the "srcOooMax" and hence we re-read the max timestamp
-            o3TimestampMax = getTimestampIndexValue(sortedTimestampsAddr, srcOooMax - 1);
-
-
-            // we are going to use this soon to avoid double-copying lag data
-            // final boolean yep = isAppendLastPartitionOnly(sortedTimestampsAddr, o3TimestampMax);
+            if (o3Dedup != null) {
+                final long replacedRowCount = o3ReplaceCommittedRows(sortedTimestampsAddr, srcOooMax, o3RowCount);
+                if (replacedRowCount > 0) {
+                    srcOooMax -= replacedRowCount;
+                    o3RowCount -= replacedRowCount;
+                    o3TimestampMem.jumpTo(o3RowCount * TIMESTAMP_MERGE_ENTRY_BYTES);
+                    if (srcOooMax > 0) {
+                        o3TimestampMin = getTimestampIndexValue(sortedTimestampsAddr, 0);
+                    }
+                }
+            }
 
             // reshuffle all columns according to timestamp index
+            sortStart = microsecondClock.getTicks();
             o3Sort(sortedTimestampsAddr, timestampIndex, o3RowCount);
+            metrics.tableWriter().addO3SortTime(microsecondClock.getTicks() - sortStart);
             LOG.info()
                     .$("sorted [table=").utf8(tableToken.getTableName())
                     .$(", o3RowCount=").$(o3RowCount)
                     .I$();
 
-            processO3Block(
-                    o3LagRowCount,
-                    timestampIndex,
-                    sortedTimestampsAddr,
-                    srcOooMax,
-                    o3TimestampMin,
-                    o3TimestampMax,
-                    true,
-                    0L
-            );
+            if (srcOooMax > 0) {
+                // we could have moved the "srcOooMax" and hence we re-read the max timestamp
+                o3TimestampMax = getTimestampIndexValue(sortedTimestampsAddr, srcOooMax - 1);
+
+                // we are going to use this soon to avoid double-copying lag data
+                // final boolean yep = isAppendLastPartitionOnly(sortedTimestampsAddr, o3TimestampMax);
+
+                processO3Block(
+                        o3LagRowCount,
+                        timestampIndex,
+                        sortedTimestampsAddr,
+                        srcOooMax,
+                        o3TimestampMin,
+                        o3TimestampMax,
+                        true,
+                        0L
+                );
+            } else {
+                // all rows to commit replaced committed rows, column tops of the previous merge are stale
+                clearO3ColumnTopSink();
+                if (o3LagRowCount > 0) {
+                    o3ShiftLagRowsUp(timestampIndex, o3LagRowCount, 0, 0L, false);
+                }
+            }
         } finally {
             finishO3Append(o3LagRowCount);
         }
@@ -3755,6 +4094,33 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
         }
     }
 
+    // Compressed partitions are read-only, rows landing in one are written to its decompressed copy instead.
+    // The copy is named `txn-1`, like partitions created in order by the transaction, and replaces the
+    // compressed partition on commit. On rollback the copy is left behind and is replaced by the next attempt.
+    private void o3DecompressPartition(int partitionIndex) {
+        final long timestamp = txWriter.getPartitionTimestamp(partitionIndex);
+        final long partitionNameTxn = txWriter.getPartitionNameTxn(partitionIndex);
+        final long nameTxn = txWriter.getTxn() - 1;
+        if (partitionNameTxn >= nameTxn) {
+            // compression advances the txn past the name of compressed partition, this is not expected
+            throw CairoException.critical(0).put("cannot write to compressed partition, partition name is taken [table=").put(tableToken.getTableName())
+                    .put(", partition=").ts(timestamp)
+                    .put(", nameTxn=").put(partitionNameTxn)
+                    .put(", txn=").put(txWriter.getTxn())
+                    .put(']');
+        }
+        convertPartitionFiles(partitionIndex, false, nameTxn);
+        txWriter.updatePartitionSizeAndTxnByIndex(partitionIndex * LONGS_PER_TX_ATTACHED_PARTITION, txWriter.getPartitionSize(partitionIndex), nameTxn);
+        txWriter.setPartitionCompressed(partitionIndex, false);
+        txWriter.bumpPartitionTableVersion();
+        // compressed directory is purged once the transaction is committed
+        removedPartitions.add(timestamp, partitionNameTxn);
+        LOG.info().$("o3 decompressed partition [table=").utf8(tableToken.getTableName())
+                .$(", partition=").$ts(timestamp)
+                .$(", nameTxn=").$(nameTxn)
+                .I$();
+    }
+
     private void o3MergeFixColumnLag(int columnIndex, int columnType, long mergeIndex, long lagRows, long mappedRowLo, long mappedRowHi) {
         final long rowCount = lagRows + mappedRowHi - mappedRowLo;
         final int primaryColumnIndex = getPrimaryColumnIndex(columnIndex);
@@ -4189,6 +4555,26 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
         LOG.debug().$("switched partition to memory").$();
     }
 
+    // Returns the row following the chunk of at most o3PartitionChunkSize partitions that starts at srcOooLo.
+    private long o3PartitionChunkHi(long sortedTimestampsAddr, long srcOooLo, long srcOooMax, long o3TimestampMax) {
+        long srcOoo = srcOooLo;
+        for (int i = 0; i < o3PartitionChunkSize && srcOoo < srcOooMax; i++) {
+            // keep ceil inclusive in the interval
+            final long srcOooTimestampCeil = partitionCeilMethod.ceil(getTimestampIndexValue(sortedTimestampsAddr, srcOoo)) - 1;
+            if (srcOooTimestampCeil >= o3TimestampMax) {
+                return srcOooMax;
+            }
+            srcOoo = Vect.boundedBinarySearchIndexT(
+                    sortedTimestampsAddr,
+                    srcOooTimestampCeil,
+                    srcOoo,
+                    srcOooMax - 1,
+                    BinarySearch.SCAN_DOWN
+            ) + 1;
+        }
+        return srcOoo;
+    }
+
     private void o3PartitionUpdate(
             long timestampMin,
             long timestampMax,
@@ -4200,6 +4586,7 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
             boolean partitionMutates
     ) {
         txWriter.minTimestamp = Math.min(timestampMin, txWriter.minTimestamp);
+        partitionStatsCandidates.add(partitionTimestamp);
         final long partitionSize = srcDataMax + srcOooPartitionHi - srcOooPartitionLo + 1;
         final long rowDelta = srcOooPartitionHi - srcOooMax;
         final int partitionIndex = txWriter.findAttachedPartitionIndexByLoTimestamp(partitionTimestamp);
@@ -4253,6 +4640,38 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
         }
     }
 
+    private long o3ReplaceCommittedRows(long sortedTimestampsAddr, long srcOooMax, long rowCount) {
+        // committed rows are re-written in place, compressed partitions have to be decompressed first
+        final long committedMaxTimestamp = txWriter.getMaxTimestamp();
+        long srcOoo = 0;
+        while (srcOoo < srcOooMax) {
+            final long o3Timestamp = getTimestampIndexValue(sortedTimestampsAddr, srcOoo);
+            if (o3Timestamp > committedMaxTimestamp) {
+                break;
+            }
+            final int partitionIndex = txWriter.getPartitionIndex(o3Timestamp);
+            if (partitionIndex > -1 && txWriter.isPartitionCompressed(partitionIndex)) {
+                o3DecompressPartition(partitionIndex);
+            }
+            final long srcOooTimestampCeil = partitionCeilMethod.ceil(o3Timestamp) - 1;
+            srcOoo = Vect.boundedBinarySearchIndexT(
+                    sortedTimestampsAddr,
+                    srcOooTimestampCeil,
+                    srcOoo,
+                    srcOooMax - 1,
+                    BinarySearch.SCAN_DOWN
+            ) + 1;
+        }
+
+        final long replaced = o3Dedup.replaceCommittedRows(sortedTimestampsAddr, srcOooMax, rowCount, o3Columns);
+        if (o3Dedup.isLastPartitionReplaced() && isLastPartitionColumnsOpen()) {
+            // append memory has to move to the new column versions of the last partition
+            closeActivePartition(false);
+            openLastPartition();
+        }
+        return replaced;
+    }
+
     private long o3ScheduleMoveUncommitted0(int timestampIndex, long transientRowsAdded, long committedTransientRowCount) {
         if (transientRowsAdded > 0) {
             final Sequence pubSeq = this.messageBus.getO3CallbackPubSeq();
@@ -4789,8 +5208,56 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
             boolean flattenTimestamp,
             long rowLo
     ) {
-        o3ErrorCount.set(0);
         partitionRemoveCandidates.clear();
+        final long mergeStart = microsecondClock.getTicks();
+        try {
+            // Late data spanning many partitions is merged a chunk of partitions at a time. Partition tasks
+            // of the chunk have to finish before the next chunk is published, so memory held by the merge
+            // indexes, the mapped partition columns and the partition sinks does not grow with the batch.
+            long chunkLo = rowLo;
+            while (true) {
+                final long chunkHi = o3PartitionChunkHi(sortedTimestampsAddr, chunkLo, srcOooMax, o3TimestampMax);
+                flattenTimestamp = processO3Chunk(
+                        o3LagRowCount,
+                        timestampIndex,
+                        sortedTimestampsAddr,
+                        srcOooMax,
+                        getTimestampIndexValue(sortedTimestampsAddr, chunkLo),
+                        getTimestampIndexValue(sortedTimestampsAddr, chunkHi - 1),
+                        flattenTimestamp,
+                        chunkLo,
+                        chunkHi
+                );
+                metrics.tableWriter().incrementO3PartitionChunks();
+                if (chunkHi == srcOooMax) {
+                    // column tops of the last chunk are written out when commit finishes
+                    break;
+                }
+                // the sink is re-used by the next chunk
+                updateO3ColumnTops();
+                chunkLo = chunkHi;
+            }
+        } finally {
+            metrics.tableWriter().addO3MergeTime(microsecondClock.getTicks() - mergeStart);
+        }
+
+        if (o3LagRowCount > 0) {
+            o3ShiftLagRowsUp(timestampIndex, o3LagRowCount, srcOooMax, 0L, false);
+        }
+    }
+
+    private boolean processO3Chunk(
+            final long o3LagRowCount,
+            int timestampIndex,
+            long sortedTimestampsAddr,
+            final long srcOooMax,
+            long o3TimestampMin,
+            long o3TimestampMax,
+            boolean flattenTimestamp,
+            long chunkLo,
+            long chunkHi
+    ) {
+        o3ErrorCount.set(0);
         o3ColumnCounters.clear();
         o3BasketPool.clear();
 
@@ -4803,7 +5270,7 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
         o3PartitionUpdRemaining.set(0L);
         boolean success = true;
         int latchCount = 0;
-        long srcOoo = rowLo;
+        long srcOoo = chunkLo;
         int pCount = 0;
         try {
             // We do not know upfront which partition is going to be last because this is
@@ -4817,7 +5284,7 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
             resizePartitionUpdateSink(o3TimestampMin, o3TimestampMax);
 
             // One loop iteration per partition.
-            while (srcOoo < srcOooMax) {
+            while (srcOoo < chunkHi) {
                 try {
                     final long srcOooLo = srcOoo;
                     final long o3Timestamp = getTimestampIndexValue(sortedTimestampsAddr, srcOoo);
@@ -4829,11 +5296,11 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
                                 sortedTimestampsAddr,
                                 srcOooTimestampCeil,
                                 srcOooLo,
-                                srcOooMax - 1,
+                                chunkHi - 1,
                                 BinarySearch.SCAN_DOWN
                         );
                     } else {
-                        srcOooHi = srcOooMax - 1;
+                        srcOooHi = chunkHi - 1;
                     }
 
                     final long partitionTimestamp = partitionFloorMethod.floor(o3Timestamp);
@@ -4847,6 +5314,10 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
                     final long srcNameTxn;
                     final int partitionIndex = txWriter.findAttachedPartitionIndexByLoTimestamp(partitionTimestamp);
                     if (partitionIndex > -1) {
+                        // partition index here is offset in the attached partitions list
+                        if (txWriter.isPartitionCompressed(partitionIndex >> LONGS_PER_TX_ATTACHED_PARTITION_MSB)) {
+                            o3DecompressPartition(partitionIndex >> LONGS_PER_TX_ATTACHED_PARTITION_MSB);
+                        }
                         if (last) {
                             srcDataMax = transientRowCount;
                         } else {
@@ -5056,7 +5527,7 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
                     success = false;
                     throw e;
                 }
-            } // end while(srcOoo < srcOooMax)
+            } // end while(srcOoo < chunkHi)
 
             // at this point we should know the last partition row count
             this.txWriter.transientRowCount = commitTransientRowCount;
@@ -5081,13 +5552,182 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
                 throw CairoException.critical(0).put("bulk update failed and will be rolled back");
             }
         }
+        return flattenTimestamp;
+    }
 
-        if (o3LagRowCount > 0) {
-            o3ShiftLagRowsUp(timestampIndex, o3LagRowCount, srcOooMax, 0L, false);
+    private boolean processO3Columns(
+            Path walPath,
+            int timestampIndex,
+            boolean ordered,
+            long rowLo,
+            long rowHi,
+            long o3TimestampMin,
+            long o3TimestampMax,
+            SymbolMapDiffCursor mapDiffCursor,
+            long commitToTimestamp
+    ) {
+        this.lastPartitionTimestamp = partitionFloorMethod.floor(partitionTimestampHi);
+        long partitionTimestampHiLimit = partitionCeilMethod.ceil(partitionTimestampHi) - 1;
+        long o3TimestampOffset = o3TimestampMem.getAppendOffset();
+        long lagRowCount = o3TimestampOffset >> 4;
+        if (lagRowCount > 0) {
+            o3TimestampMin = Math.min(o3TimestampMin, getTimestampIndexValue(o3TimestampMem.getAddress(), 0));
         }
+
+        try {
+            long timestampAddr;
+            long o3Lo = rowLo;
+            long o3Hi = rowHi;
+            final boolean copiedToMemory;
+            final boolean needsOrdering = !ordered || lagRowCount > 0 || (o3Dedup != null && walBlockNeedsDedup(timestampIndex, rowLo, rowHi, o3TimestampMin));
+            final long symbolRowLo = needsOrdering || commitToTimestamp < 0 ? lagRowCount : rowLo;
+            MemoryCR walTimestampColumn = o3Columns.getQuick(getPrimaryColumnIndex(timestampIndex));
+            o3Columns = remapWalSymbols(mapDiffCursor, rowLo, rowHi, walPath, symbolRowLo);
+
+            if (commitToTimestamp < o3TimestampMin) {
+                // Don't commit anything, move everything to memory instead.
+                // This usually happens when WAL transactions are very small, so it's faster
+                // to squash several of them together before writing anything to disk.
+                LOG.debug().$("all WAL rows copied to LAG [table=").$(tableToken).I$();
+                // This will copy data from mmap files to memory.
+                // Symbols are already mapped to the correct destination.
+                o3ShiftLagRowsUp(timestampIndex, o3Hi - o3Lo, o3Lo, lagRowCount, true);
+                return false;
+            }
+
+            if (needsOrdering) {
+                LOG.info().$("sorting WAL [table=").$(tableToken)
+                        .$(", ordered=").$(ordered)
+                        .$(", lagRowCount=").$(lagRowCount)
+                        .$(", rowLo=").$(rowLo)
+                        .$(", rowHi=").$(rowHi).I$();
+
+                final long timestampMemorySize = (rowHi - rowLo) << 4;
+                o3TimestampMem.jumpTo(o3TimestampOffset + timestampMemorySize);
+                o3TimestampMemCpy.jumpTo(o3TimestampOffset + timestampMemorySize);
+
+                timestampAddr = o3TimestampMem.getAddress();
+                final long mappedTimestampIndexAddr = walTimestampColumn.addressOf(rowLo << 4);
+                Vect.radixSortABLongIndexAscInA(
+                        timestampAddr,
+                        lagRowCount,
+                        mappedTimestampIndexAddr,
+                        rowHi - rowLo,
+                        o3TimestampMemCpy.addressOf(0)
+                );
+                o3MergeIntoLag(timestampAddr, lagRowCount, rowLo, rowHi, timestampIndex);
+
+                // Sorted data is now sorted in memory copy of the data from mmap files
+                // Row indexes start from 0, not rowLo
+                o3Hi = rowHi - rowLo + lagRowCount;
+                o3Lo = 0L;
+                lagRowCount = 0L;
+                o3Columns = o3MemColumns;
+                copiedToMemory = true;
+
+                if (o3Dedup != null) {
+                    // merged rows are in timestamp order, the index is re-pointed to them
+                    Vect.flattenIndex(timestampAddr, o3Hi);
+                    final long dedupRowCount = o3Dedup.dedup(timestampAddr, o3Hi, o3Columns, o3Hi, 0);
+                    if (dedupRowCount < o3Hi) {
+                        o3TimestampMem.jumpTo(dedupRowCount << 4);
+                        o3Sort(timestampAddr, timestampIndex, dedupRowCount);
+                        Vect.flattenIndex(timestampAddr, dedupRowCount);
+                        o3Hi = dedupRowCount;
+                    }
+                }
+                o3TimestampMin = getTimestampIndexValue(timestampAddr, o3Lo);
+                o3TimestampMax = getTimestampIndexValue(timestampAddr, o3Hi - 1);
+            } else {
+                timestampAddr = walTimestampColumn.addressOf(0);
+                copiedToMemory = false;
+            }
+
+            if (commitToTimestamp < o3TimestampMin) {
+                // Don't commit anything, it is enough to move everything to memory instead.
+                // Copying is already done while sorting at the point so we can finish here.
+                return false;
+            } else {
+                if (commitToTimestamp < o3TimestampMax) {
+                    final long lagThresholdRow = 1 +
+                            Vect.boundedBinarySearchIndexT(
+                                    timestampAddr,
+                                    commitToTimestamp,
+                                    o3Lo,
+                                    o3Hi - 1,
+                                    BinarySearch.SCAN_DOWN
+                            );
+                    assert lagThresholdRow > 0 && lagThresholdRow < o3Hi;
+                    lagRowCount = o3Hi - o3Lo - lagThresholdRow;
+                    o3Hi = lagThresholdRow;
+                    o3TimestampMax = getTimestampIndexValue(timestampAddr, o3Hi - 1);
+                    assert o3TimestampMax >= o3TimestampMin && o3TimestampMax <= commitToTimestamp;
+
+                    LOG.debug().$("committing WAL with LAG [table=").$(tableToken)
+                            .$(", lagRowCount=").$(lagRowCount)
+                            .$(", rowLo=").$(o3Lo)
+                            .$(", rowHi=").$(o3Hi).I$();
+                } else {
+                    lagRowCount = 0;
+                }
+
+                if (o3Dedup != null && copiedToMemory) {
+                    final long replacedRowCount = o3ReplaceCommittedRows(timestampAddr, o3Hi, o3Hi + lagRowCount);
+                    if (replacedRowCount > 0) {
+                        o3Hi -= replacedRowCount;
+                        o3TimestampMem.jumpTo((o3Hi + lagRowCount) << 4);
+                        o3Sort(timestampAddr, timestampIndex, o3Hi + lagRowCount);
+                        Vect.flattenIndex(timestampAddr, o3Hi + lagRowCount);
+                        if (o3Hi > o3Lo) {
+                            o3TimestampMin = getTimestampIndexValue(timestampAddr, o3Lo);
+                            o3TimestampMax = getTimestampIndexValue(timestampAddr, o3Hi - 1);
+                        }
+                    }
+                }
+
+                o3RowCount = o3Hi - o3Lo + lagRowCount;
+                if (o3Hi > o3Lo) {
+                    processO3Block(
+                            lagRowCount,
+                            timestampIndex,
+                            timestampAddr,
+                            o3Hi,
+                            o3TimestampMin,
+                            o3TimestampMax,
+                            copiedToMemory,
+                            o3Lo
+                    );
+                } else {
+                    // all rows to commit replaced committed rows, column tops of the previous merge are stale
+                    clearO3ColumnTopSink();
+                    if (lagRowCount > 0) {
+                        o3ShiftLagRowsUp(timestampIndex, lagRowCount, o3Hi, 0L, false);
+                    }
+                }
+                if (lagRowCount == 0) {
+                    o3TimestampMem.jumpTo(0);
+                }
+            }
+        } finally {
+            finishO3Append(lagRowCount);
+            o3Columns = o3MemColumns;
+            closeWalColumns();
+        }
+
+        finishO3Commit(partitionTimestampHiLimit);
+        return true;
     }
 
     private void processPartitionRemoveCandidates() {
+        if (o3Dedup != null) {
+            // column versions replaced by upserts are not used past the committed transaction
+            o3Dedup.purgeReplacedColumnVersions();
+        }
+        if (removedPartitions.size() > 0) {
+            // O3 merge resets the remove candidates, partitions removed by the committed transaction are added last
+            partitionRemoveCandidates.add(removedPartitions);
+            removedPartitions.clear();
+        }
         try {
             final int n = partitionRemoveCandidates.size();
             if (n > 0) {
@@ -5193,6 +5833,12 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
         try {
             dFile(other, metadata.getColumnName(metadata.getTimestampIndex()), COLUMN_NAME_TXN_NONE);
             if (ff.exists(other)) {
+                if (txWriter.isPartitionCompressed(txWriter.getPartitionIndex(partitionTimestamp))) {
+                    // timestamp column of compressed partition is encoded, decode just the first block
+                    try (MemoryCMRZImpl mem = new MemoryCMRZImpl(ff, other, Long.BYTES, MemoryTag.MMAP_TABLE_WRITER)) {
+                        return mem.getLong(0);
+                    }
+                }
                 // read min timestamp value
                 final int fd = TableUtils.openRO(ff, other, LOG);
                 try {
@@ -6172,6 +6818,7 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
         // added so far. Index writers will start point to different
         // files after switch.
         updateIndexes();
+        partitionStatsCandidates.add(txWriter.getLastPartitionTimestamp());
         txWriter.switchPartitions(timestamp);
         openPartition(timestamp);
         setAppendPosition(0, false);
@@ -6328,6 +6975,10 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
     }
 
     private void updateO3ColumnTops() {
+        if (o3ColumnTopSink == null) {
+            // no partition has been merged yet
+            return;
+        }
         int columnCount = metadata.getColumnCount();
         int increment = columnCount + 1;
 
@@ -6346,6 +6997,81 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
         }
     }
 
+    private void updatePartitionStats() {
+        if (!partitionStatsEnabled || !PartitionBy.isPartitioned(partitionBy)) {
+            partitionStatsCandidates.clear();
+            return;
+        }
+
+        // last partition is still being appended to, its statistics are computed when
+        // it stops being the last one, whether by in-order append or O3 commit
+        final long lastPartitionTs = txWriter.getLastPartitionTimestamp();
+        if (partitionStatsLastPartitionTimestamp != lastPartitionTs) {
+            partitionStatsCandidates.add(partitionStatsLastPartitionTimestamp);
+            partitionStatsLastPartitionTimestamp = lastPartitionTs;
+        }
+
+        final int n = partitionStatsCandidates.size();
+        if (n == 0) {
+            return;
+        }
+
+        try {
+            partitionBloomColumns.clear();
+            for (int i = 0; i < columnCount; i++) {
+                if (metadata.getColumnType(i) > 0 && metadata.getColumnMetadata(i).isBloomIndexed()) {
+                    partitionBloomColumns.add(i);
+                }
+            }
+
+            partitionStatsCandidates.sort();
+            long prevTimestamp = Long.MIN_VALUE;
+            for (int i = 0; i < n; i++) {
+                final long timestamp = partitionStatsCandidates.getQuick(i);
+                if (timestamp == prevTimestamp || timestamp == lastPartitionTs) {
+                    continue;
+                }
+                prevTimestamp = timestamp;
+
+                final int partitionIndex = txWriter.getPartitionIndex(timestamp);
+                if (partitionIndex < 0 || txWriter.isPartitionReadOnly(partitionIndex)) {
+                    // partition has been removed or cannot be written to
+                    continue;
+                }
+
+                try {
+                    setPathForPartition(other, partitionBy, timestamp, false);
+                    TableUtils.txnPartitionConditionally(other, txWriter.getPartitionNameTxn(partitionIndex));
+                    partitionStats.compute(ff, other, metadata, columnVersionWriter, timestamp, txWriter.getPartitionSize(partitionIndex));
+                    partitionStats.write(ff, other, configuration.getWriterFileOpenOpts());
+                    if (partitionBloomColumns.size() > 0) {
+                        PartitionBloomFilter.build(
+                                ff,
+                                other,
+                                metadata,
+                                partitionBloomColumns,
+                                columnVersionWriter,
+                                timestamp,
+                                txWriter.getPartitionSize(partitionIndex),
+                                configuration.getWriterFileOpenOpts()
+                        );
+                    }
+                } catch (CairoException e) {
+                    // statistics are optional, queries will scan the partition
+                    LOG.error().$("could not update partition stats [table=").utf8(tableToken.getTableName())
+                            .$(", partition=").$ts(timestamp)
+                            .$(", errno=").$(e.getErrno())
+                            .$(", error=").$(e.getFlyweightMessage())
+                            .I$();
+                } finally {
+                    other.trimTo(rootLen);
+                }
+            }
+        } finally {
+            partitionStatsCandidates.clear();
+        }
+    }
+
     private void validateSwapMeta(CharSequence columnName) {
         try {
             try {
@@ -6365,6 +7091,20 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
         }
     }
 
+    private boolean walBlockNeedsDedup(int timestampIndex, long rowLo, long rowHi, long o3TimestampMin) {
+        if (o3TimestampMin <= txWriter.getMaxTimestamp()) {
+            return true;
+        }
+        // ordered block above committed data has duplicates only when timestamps repeat
+        final long timestampAddr = o3Columns.getQuick(getPrimaryColumnIndex(timestampIndex)).addressOf(rowLo << 4);
+        for (long i = 1, n = rowHi - rowLo; i < n; i++) {
+            if (getTimestampIndexValue(timestampAddr, i) == getTimestampIndexValue(timestampAddr, i - 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void writeColumnEntry(int i, boolean markDeleted) {
         int columnType = getColumnType(metaMem, i);
         // When column is deleted it's written to metadata with negative type
@@ -6381,6 +7121,14 @@ public class TableWriter implements TableWriterAPI, MetadataService, Closeable {
         if (isSequential(metaMem, i)) {
             flags |= META_FLAG_BIT_SEQUENTIAL;
         }
+
+        if (isColumnBloomIndexed(metaMem, i)) {
+            flags |= META_FLAG_BIT_BLOOM_INDEXED;
+        }
+
+        if (isColumnDedupKey(metaMem, i)) {
+            flags |= META_FLAG_BIT_DEDUP_KEY;
+        }
         ddlMem.putLong(flags);
         ddlMem.putInt(getIndexBlockCapacity(metaMem, i));
         ddlMem.skip(16);
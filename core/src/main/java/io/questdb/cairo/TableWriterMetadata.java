@@ -109,17 +109,18 @@ class TableWriterMetadata extends AbstractRecordMetadata implements TableRecordM
             assert name != null;
             int type = TableUtils.getColumnType(metaMem, i);
             String nameStr = Chars.toString(name);
-            columnMetadata.add(
-                    new TableColumnMetadata(
-                            nameStr,
-                            type,
-                            TableUtils.isColumnIndexed(metaMem, i),
-                            TableUtils.getIndexBlockCapacity(metaMem, i),
-                            true,
-                            null,
-                            i
-                    )
+            TableColumnMetadata column = new TableColumnMetadata(
+                    nameStr,
+                    type,
+                    TableUtils.isColumnIndexed(metaMem, i),
+                    TableUtils.getIndexBlockCapacity(metaMem, i),
+                    true,
+                    null,
+                    i
             );
+            column.setBloomIndexed(TableUtils.isColumnBloomIndexed(metaMem, i));
+            column.setDedupKey(TableUtils.isColumnDedupKey(metaMem, i));
+            columnMetadata.add(column);
             columnNameIndexMap.put(nameStr, i);
             if (ColumnType.isSymbol(type)) {
                 symbolMapCount++;
@@ -33,6 +33,10 @@ public class TableWriterMetrics {
     private final Counter commitCounter;
     private final Counter committedRowCounter;
     private final Counter o3CommitCounter;
+    // O3 stage timings in micros, sorting includes re-shuffling columns in the timestamp order
+    private final Counter o3MergeTimeCounter;
+    private final Counter o3PartitionChunkCounter;
+    private final Counter o3SortTimeCounter;
     // For write amplification metric, `physicallyWrittenRowCounter / committedRowCounter`.
     private final Counter physicallyWrittenRowCounter;
     private final Counter rollbackCounter;
@@ -40,6 +44,9 @@ public class TableWriterMetrics {
     public TableWriterMetrics(MetricsRegistry metricsRegistry) {
         this.commitCounter = metricsRegistry.newCounter("commits");
         this.o3CommitCounter = metricsRegistry.newCounter("o3_commits");
+        this.o3SortTimeCounter = metricsRegistry.newCounter("o3_sort_micros");
+        this.o3MergeTimeCounter = metricsRegistry.newCounter("o3_merge_micros");
+        this.o3PartitionChunkCounter = metricsRegistry.newCounter("o3_partition_chunks");
         this.committedRowCounter = metricsRegistry.newCounter("committed_rows");
         this.rollbackCounter = metricsRegistry.newCounter("rollbacks");
         this.physicallyWrittenRowCounter = metricsRegistry.newCounter("physically_written_rows");
@@ -49,6 +56,14 @@ public class TableWriterMetrics {
         committedRowCounter.add(rows);
     }
 
+    public void addO3MergeTime(long micros) {
+        o3MergeTimeCounter.add(micros);
+    }
+
+    public void addO3SortTime(long micros) {
+        o3SortTimeCounter.add(micros);
+    }
+
     public void addPhysicallyWrittenRows(long rows) {
         physicallyWrittenRowCounter.add(rows);
     }
@@ -65,6 +80,18 @@ public class TableWriterMetrics {
         return o3CommitCounter.getValue();
     }
 
+    public long getO3MergeTime() {
+        return o3MergeTimeCounter.getValue();
+    }
+
+    public long getO3PartitionChunkCount() {
+        return o3PartitionChunkCounter.getValue();
+    }
+
+    public long getO3SortTime() {
+        return o3SortTimeCounter.getValue();
+    }
+
     public long getPhysicallyWrittenRows() {
         return physicallyWrittenRowCounter.getValue();
     }
@@ -81,6 +108,10 @@ public class TableWriterMetrics {
         o3CommitCounter.inc();
     }
 
+    public void incrementO3PartitionChunks() {
+        o3PartitionChunkCounter.inc();
+    }
+
     public void incrementRollbacks() {
         rollbackCounter.inc();
     }
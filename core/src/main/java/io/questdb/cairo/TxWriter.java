@@ -298,6 +298,18 @@ public final class TxWriter extends TxReader implements Closeable, Mutable, Symb
         }
     }
 
+    public void setPartitionCompressed(int partitionIndex, boolean isCompressed) {
+        final int offset = partitionIndex * LONGS_PER_TX_ATTACHED_PARTITION + PARTITION_MASKED_SIZE_OFFSET;
+        long maskedSize = attachedPartitions.getQuick(offset);
+        if (isCompressed) {
+            maskedSize |= 1L << PARTITION_MASK_COMPRESSED_BIT_OFFSET;
+        } else {
+            maskedSize &= ~(1L << PARTITION_MASK_COMPRESSED_BIT_OFFSET);
+        }
+        // compressed partitions cannot be written to
+        attachedPartitions.setQuick(offset, updatePartitionIsReadOnly(maskedSize, isCompressed));
+    }
+
     public void setPartitionReadOnly(int partitionIndex, boolean isReadOnly) {
         setPartitionReadOnlyByIndex(partitionIndex * LONGS_PER_TX_ATTACHED_PARTITION, isReadOnly);
     }
@@ -637,8 +649,12 @@ public final class TxWriter extends TxReader implements Closeable, Mutable, Symb
     }
 
     void updatePartitionSizeAndTxnByIndex(int index, long partitionSize) {
+        updatePartitionSizeAndTxnByIndex(index, partitionSize, txn);
+    }
+
+    void updatePartitionSizeAndTxnByIndex(int index, long partitionSize, long nameTxn) {
         recordStructureVersion++;
         updatePartitionSizeByIndex(index, partitionSize);
-        attachedPartitions.set(index + PARTITION_NAME_TX_OFFSET, txn);
+        attachedPartitions.set(index + PARTITION_NAME_TX_OFFSET, nameTxn);
     }
 }
@@ -239,6 +239,37 @@ public class FastMap implements Map, Reopenable {
         }
     }
 
+    /**
+     * Looks up the key that was last written to the given map via {@link #withKey()}.
+     * Both maps must have identical key and value types. Unlike {@link MapKey#findValue()},
+     * this method doesn't write to this map's memory, so multiple threads, each one with
+     * its own key map, may look up keys concurrently as long as this map isn't modified.
+     *
+     * @param keyMap map holding the key to look up
+     * @return value of the key or null if there is no such key in this map; the returned
+     * value instance belongs to the key map
+     */
+    public MapValue findValue(FastMap keyMap) {
+        assert keySize == keyMap.keySize;
+        assert valueSize == keyMap.valueSize;
+
+        final BaseKey srcKey = keyMap.key;
+        srcKey.commit();
+        final long srcAddress = srcKey.startAddress;
+        final int entrySize = (int) (srcKey.appendAddress - srcAddress);
+        final int hashCode = srcKey.hash();
+        int index = hashCode & mask;
+        long packedOffset;
+        long offset;
+        while ((offset = unpackOffset(packedOffset = getPackedOffset(offsets, index))) > -1) {
+            if (hashCode == unpackHashCode(packedOffset) && eqEntries(kStart + offset, srcAddress, entrySize)) {
+                return valueOf(kStart + offset, false, keyMap.value);
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
     public long getAreaSize() {
         return kLimit - kStart;
     }
@@ -257,6 +288,38 @@ public class FastMap implements Map, Reopenable {
         return record;
     }
 
+    /**
+     * Returns the amount of memory occupied by the key-value pairs. The offset list is
+     * left out: it is sized by the key capacity rather than by the data, and spilling
+     * the pairs doesn't shrink it below the initial capacity.
+     */
+    public long getUsedHeapSize() {
+        return kPos - kStart;
+    }
+
+    /**
+     * Merges the source map into this map. Both maps must have identical key and value types.
+     * Key-value pairs that are not present in this map are copied as is, in the source map's
+     * insertion order, while values of the keys present in both maps are combined with the
+     * provided merge function.
+     * <p>
+     * The source map is left intact.
+     *
+     * @param srcMap    map to merge from
+     * @param mergeFunc function that merges source values into the values of this map
+     */
+    public void merge(FastMap srcMap, MapValueMergeFunction mergeFunc) {
+        assert keySize == srcMap.keySize;
+        assert valueSize == srcMap.valueSize;
+
+        long srcStartAddress = srcMap.kStart;
+        for (int i = 0, n = srcMap.size; i < n; i++) {
+            final int entrySize = entrySize(srcStartAddress);
+            mergeEntry(srcStartAddress, entrySize, srcMap.kLimit, mergeFunc);
+            srcStartAddress = nextEntryAddress(srcStartAddress, entrySize);
+        }
+    }
+
     public void reopen() {
         if (kStart == 0) {
             // handles both mem and offsets
@@ -277,6 +340,7 @@ public class FastMap implements Map, Reopenable {
         offsets.setPos(keyCapacity);
         offsets.zero(0);
         nResizes = 0;
+        size = 0;
     }
 
     @Override
@@ -329,6 +393,13 @@ public class FastMap implements Map, Reopenable {
         return valueOf(keyWriter.startAddress, true, value);
     }
 
+    private boolean eqEntries(long destAddress, long srcAddress, int entrySize) {
+        if (keySize == -1 && Unsafe.getUnsafe().getInt(destAddress) != entrySize) {
+            return false;
+        }
+        return Vect.memeq(destAddress + keyOffset, srcAddress + keyOffset, entrySize - keyOffset);
+    }
+
     private FastMapValue probe0(BaseKey keyWriter, int index, int hashCode, FastMapValue value) {
         long packedOffset;
         long offset;
@@ -411,10 +482,64 @@ public class FastMap implements Map, Reopenable {
         return value.of(address, kLimit, newValue);
     }
 
+    static long nextEntryAddress(long address, int entrySize) {
+        address += entrySize;
+        // Key-value pairs start at 8 byte aligned addresses, so we may need to align the next pointer.
+        if ((address & 0x7) != 0) {
+            address |= 0x7;
+            address++;
+        }
+        return address;
+    }
+
+    int entryHash(long address, int entrySize) {
+        return Hash.hashMem32(address + keyOffset, entrySize - keyOffset);
+    }
+
+    int entrySize(long address) {
+        return keySize != -1 ? keyOffset + keySize : Unsafe.getUnsafe().getInt(address);
+    }
+
     long getAppendOffset() {
         return kPos;
     }
 
+    long getStartAddress() {
+        return kStart;
+    }
+
+    /**
+     * Merges a single key-value pair that was copied from a map with identical key and value types.
+     *
+     * @param srcAddress address of the key-value pair
+     * @param entrySize  size of the key-value pair in bytes
+     * @param srcLimit   upper limit of the memory the key-value pair resides in
+     * @param mergeFunc  function that merges source value into the value of this map
+     */
+    void mergeEntry(long srcAddress, int entrySize, long srcLimit, MapValueMergeFunction mergeFunc) {
+        final int hashCode = entryHash(srcAddress, entrySize);
+        int index = hashCode & mask;
+        long destPackedOffset;
+        long destOffset;
+        while ((destOffset = unpackOffset(destPackedOffset = getPackedOffset(offsets, index))) > -1) {
+            if (hashCode == unpackHashCode(destPackedOffset) && eqEntries(kStart + destOffset, srcAddress, entrySize)) {
+                mergeFunc.merge(
+                        valueOf(kStart + destOffset, false, value),
+                        value2.of(srcAddress, srcLimit, false)
+                );
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+
+        // The key is not present in this map, copy the whole entry.
+        final BaseKey destKey = key.init();
+        destKey.checkSize(entrySize - keyOffset);
+        Vect.memcpy(destKey.startAddress, srcAddress, entrySize);
+        destKey.appendAddress = destKey.startAddress + entrySize;
+        asNew(destKey, index, hashCode, value);
+    }
+
     int getValueColumnCount() {
         return valueColumnCount;
     }
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cairo.map;
+
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.std.IntList;
+import io.questdb.std.ObjList;
+
+/**
+ * Iterates over a spilled map one partition at a time. Each partition is loaded into
+ * the map before its key-value pairs are returned, so the map never holds more than
+ * a single partition. Random access is not supported, since records of the previous
+ * partitions are gone once the next partition is loaded.
+ * <p>
+ * Partitions that exceed the memory budget are split by the spiller, the cursor then
+ * descends into the child spiller and iterates its partitions before moving on.
+ */
+public class FastMapSpillCursor implements RecordCursor {
+    private final FastMap map;
+    private final IntList partitionIndexes = new IntList();
+    private final FastMapSpiller spiller;
+    private final ObjList<FastMapSpiller> spillers = new ObjList<>();
+    private RecordCursor mapCursor;
+    private long memoryBudget;
+    private MapValueMergeFunction mergeFunc;
+
+    public FastMapSpillCursor(FastMap map, FastMapSpiller spiller) {
+        this.map = map;
+        this.spiller = spiller;
+        this.mapCursor = map.getCursor();
+    }
+
+    @Override
+    public void close() {
+        spiller.clear();
+        map.restoreInitialCapacity();
+        spillers.clear();
+        partitionIndexes.clear();
+        mapCursor = null;
+    }
+
+    @Override
+    public Record getRecord() {
+        return map.getRecord();
+    }
+
+    @Override
+    public Record getRecordB() {
+        return mapCursor.getRecordB();
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!mapCursor.hasNext()) {
+            if (!loadNextPartition()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public FastMapSpillCursor of(MapValueMergeFunction mergeFunc, long memoryBudget) {
+        this.mergeFunc = mergeFunc;
+        this.memoryBudget = memoryBudget;
+        toTop();
+        return this;
+    }
+
+    @Override
+    public void recordAt(Record record, long atRowId) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long size() {
+        return -1;
+    }
+
+    @Override
+    public void toTop() {
+        spillers.clear();
+        partitionIndexes.clear();
+        spillers.add(spiller);
+        partitionIndexes.add(-1);
+        map.clear();
+        mapCursor = map.getCursor();
+    }
+
+    private boolean loadNextPartition() {
+        while (true) {
+            final int depth = spillers.size() - 1;
+            final FastMapSpiller current = spillers.getQuick(depth);
+            final int partitionIndex = partitionIndexes.getQuick(depth) + 1;
+            if (partitionIndex >= current.getPartitionCount()) {
+                if (depth == 0) {
+                    return false;
+                }
+                // the split partition is done, remove its files and go back to the parent
+                current.clear();
+                spillers.setPos(depth);
+                partitionIndexes.setPos(depth);
+                continue;
+            }
+            partitionIndexes.setQuick(depth, partitionIndex);
+            map.clear();
+            if (current.load(partitionIndex, map, mergeFunc, memoryBudget)) {
+                mapCursor = map.getCursor();
+                return true;
+            }
+            spillers.add(current.getChild());
+            partitionIndexes.add(-1);
+        }
+    }
+}
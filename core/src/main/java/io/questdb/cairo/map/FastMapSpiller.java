@@ -0,0 +1,320 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cairo.map;
+
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.TableUtils;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.*;
+import io.questdb.std.str.Path;
+
+import java.io.Closeable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Spills key-value pairs of a {@link FastMap} to temporary files, so that the map can be
+ * kept within a memory budget. Pairs are hash-partitioned across a fixed number of files
+ * under the {@value #SPILL_DIR} directory in the cairo root. Once all pairs are spilled,
+ * each partition is loaded into a map on its own and the values of the keys seen in
+ * multiple spills are combined by a merge function, grace hash join style.
+ * <p>
+ * Files preserve the spill order, so the values of a key are always merged in the order
+ * they were spilled.
+ * <p>
+ * A partition that doesn't fit into the budget on its own, e.g. due to skewed keys, is
+ * spilled again into a child spiller that partitions on the next bits of the hash code.
+ * Keys are only split this way until the hash bits run out, the partitions of the last
+ * level are loaded regardless of the budget.
+ */
+public class FastMapSpiller implements Closeable, Mutable {
+    public static final String SPILL_DIR = ".spill";
+    private static final Log LOG = LogFactory.getLog(FastMapSpiller.class);
+    private static final AtomicLong SPILL_ID = new AtomicLong();
+    private static final long WRITE_BUFFER_SIZE = 64 * 1024;
+    private final long[] bufferPositions;
+    private final FilesFacade ff;
+    private final int[] fds;
+    private final long[] fileSizes;
+    private final int level;
+    private final int mkDirMode;
+    private final int partitionBits;
+    private final int partitionCount;
+    private final CharSequence root;
+    private FastMapSpiller child;
+    private int dirLen;
+    private Path path;
+    private long readBufferAddress;
+    private long readBufferSize;
+    private long spillId = -1;
+    private long writeBufferAddress;
+
+    public FastMapSpiller(CairoConfiguration configuration, int partitionCount) {
+        this(configuration.getFilesFacade(), configuration.getRoot(), configuration.getMkDirMode(), partitionCount, 0);
+    }
+
+    private FastMapSpiller(FilesFacade ff, CharSequence root, int mkDirMode, int partitionCount, int level) {
+        assert Numbers.isPow2(partitionCount) && partitionCount > 1;
+        this.ff = ff;
+        this.root = root;
+        this.mkDirMode = mkDirMode;
+        this.partitionCount = partitionCount;
+        this.partitionBits = Numbers.msb(partitionCount);
+        this.level = level;
+        this.fds = new int[partitionCount];
+        this.fileSizes = new long[partitionCount];
+        this.bufferPositions = new long[partitionCount];
+    }
+
+    /**
+     * Closes and removes the spill files, if any. Buffers are kept for reuse.
+     */
+    @Override
+    public void clear() {
+        if (child != null) {
+            child.clear();
+        }
+        if (spillId != -1) {
+            for (int i = 0; i < partitionCount; i++) {
+                if (fds[i] > -1) {
+                    ff.close(fds[i]);
+                    fds[i] = -1;
+                }
+                if (!ff.remove(partitionPath(i))) {
+                    LOG.error().$("could not remove spill file [path=").$(path).$(", errno=").$(ff.errno()).I$();
+                }
+            }
+            spillId = -1;
+        }
+    }
+
+    /**
+     * Removes the spill files and releases the buffers. The spiller may still be used
+     * after close, buffers are allocated again on the next spill.
+     */
+    @Override
+    public void close() {
+        clear();
+        if (writeBufferAddress != 0) {
+            writeBufferAddress = Unsafe.free(writeBufferAddress, WRITE_BUFFER_SIZE * partitionCount, MemoryTag.NATIVE_FAST_MAP);
+        }
+        if (readBufferAddress != 0) {
+            readBufferAddress = Unsafe.free(readBufferAddress, readBufferSize, MemoryTag.NATIVE_FAST_MAP);
+            readBufferSize = 0;
+        }
+        path = Misc.free(path);
+        child = Misc.free(child);
+    }
+
+    /**
+     * Returns the spiller that holds the partition last loaded by
+     * {@link #load(int, FastMap, MapValueMergeFunction, long)} when the partition didn't fit
+     * into the memory budget.
+     */
+    public FastMapSpiller getChild() {
+        return child;
+    }
+
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+
+    public boolean isSpilled() {
+        return spillId != -1;
+    }
+
+    /**
+     * Loads the given partition into the map. Key-value pairs with the keys already present
+     * in the map are combined with the merge function.
+     * <p>
+     * Should the key-value pairs outgrow the memory budget, the partition is spilled into
+     * the {@link #getChild() child} spiller instead, and the map is left empty.
+     *
+     * @param partitionIndex index of the partition to load
+     * @param map            destination map, must have the key and value types of the spilled map
+     * @param mergeFunc      function that merges spilled values into the values of the map
+     * @param memoryBudget   memory budget of the map, 0 if there is no budget
+     * @return true if the partition is loaded into the map, false if it is spilled into the child spiller
+     */
+    public boolean load(int partitionIndex, FastMap map, MapValueMergeFunction mergeFunc, long memoryBudget) {
+        assert spillId != -1;
+        final boolean splittable = memoryBudget > 0 && (level + 2) * partitionBits <= Long.SIZE;
+        boolean split = false;
+        final int fd = fds[partitionIndex];
+        final long fileSize = fileSizes[partitionIndex];
+        long fileOffset = 0;
+        long carry = 0;
+        while (fileOffset < fileSize) {
+            if (carry >= Integer.BYTES) {
+                // make sure the partially read pair fits into the buffer
+                final long entrySize = alignedSize(map.entrySize(readBufferAddress));
+                if (entrySize > readBufferSize) {
+                    final long newSize = Numbers.ceilPow2(entrySize);
+                    readBufferAddress = Unsafe.realloc(readBufferAddress, readBufferSize, newSize, MemoryTag.NATIVE_FAST_MAP);
+                    readBufferSize = newSize;
+                }
+            }
+
+            final long len = Math.min(readBufferSize - carry, fileSize - fileOffset);
+            if (ff.read(fd, readBufferAddress + carry, len, fileOffset) != len) {
+                throw CairoException.critical(ff.errno()).put("could not read spill file [path=").put(partitionPath(partitionIndex)).put(']');
+            }
+            fileOffset += len;
+
+            final long hi = readBufferAddress + carry + len;
+            long lo = readBufferAddress;
+            while (hi - lo >= Integer.BYTES) {
+                final int entrySize = map.entrySize(lo);
+                final long next = lo + alignedSize(entrySize);
+                if (next > hi) {
+                    break;
+                }
+                map.mergeEntry(lo, entrySize, readBufferAddress + readBufferSize, mergeFunc);
+                lo = next;
+                if (splittable && map.getUsedHeapSize() > memoryBudget) {
+                    if (!split) {
+                        if (child == null) {
+                            child = new FastMapSpiller(ff, root, mkDirMode, partitionCount, level + 1);
+                        }
+                        child.clear();
+                        split = true;
+                    }
+                    child.spill(map);
+                    map.restoreInitialCapacity();
+                }
+            }
+            carry = hi - lo;
+            if (carry > 0) {
+                Vect.memmove(readBufferAddress, lo, carry);
+            }
+        }
+        assert carry == 0;
+        if (split) {
+            child.spill(map);
+            map.restoreInitialCapacity();
+            LOG.debug().$("split spill partition [id=").$(spillId).$(", partition=").$(partitionIndex).$(", level=").$(level).I$();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Appends all key-value pairs of the map to the spill files. The map is left intact,
+     * it's up to the caller to clear it.
+     *
+     * @param map map to spill
+     */
+    public void spill(FastMap map) {
+        if (spillId == -1) {
+            open();
+        }
+
+        long address = map.getStartAddress();
+        for (long i = 0, n = map.size(); i < n; i++) {
+            final int entrySize = map.entrySize(address);
+            final long size = alignedSize(entrySize);
+            append(partitionOf(map.entryHash(address, entrySize)), address, size);
+            address += size;
+        }
+
+        for (int i = 0; i < partitionCount; i++) {
+            flush(i);
+        }
+        LOG.debug().$("spilled map [id=").$(spillId).$(", size=").$(map.size()).I$();
+    }
+
+    private static long alignedSize(long entrySize) {
+        // key-value pairs are 8 byte aligned in the map memory and in the spill files
+        return (entrySize + 7) & ~7L;
+    }
+
+    private void append(int partitionIndex, long address, long size) {
+        if (bufferPositions[partitionIndex] + size > WRITE_BUFFER_SIZE) {
+            flush(partitionIndex);
+            if (size > WRITE_BUFFER_SIZE) {
+                write(partitionIndex, address, size);
+                return;
+            }
+        }
+        Vect.memcpy(writeBufferAddress + partitionIndex * WRITE_BUFFER_SIZE + bufferPositions[partitionIndex], address, size);
+        bufferPositions[partitionIndex] += size;
+    }
+
+    private void flush(int partitionIndex) {
+        final long size = bufferPositions[partitionIndex];
+        if (size > 0) {
+            write(partitionIndex, writeBufferAddress + partitionIndex * WRITE_BUFFER_SIZE, size);
+            bufferPositions[partitionIndex] = 0;
+        }
+    }
+
+    private void open() {
+        if (writeBufferAddress == 0) {
+            writeBufferAddress = Unsafe.malloc(WRITE_BUFFER_SIZE * partitionCount, MemoryTag.NATIVE_FAST_MAP);
+        }
+        if (readBufferAddress == 0) {
+            readBufferSize = WRITE_BUFFER_SIZE * 4;
+            readBufferAddress = Unsafe.malloc(readBufferSize, MemoryTag.NATIVE_FAST_MAP);
+        }
+
+        if (path == null) {
+            path = new Path();
+        }
+        path.of(root).concat(SPILL_DIR).slash$();
+        dirLen = path.length();
+        if (!ff.exists(path) && ff.mkdirs(path, mkDirMode) != 0) {
+            throw CairoException.critical(ff.errno()).put("could not create spill directory [path=").put(path).put(']');
+        }
+
+        spillId = SPILL_ID.incrementAndGet();
+        for (int i = 0; i < partitionCount; i++) {
+            fds[i] = -1;
+            fileSizes[i] = 0;
+            bufferPositions[i] = 0;
+        }
+        for (int i = 0; i < partitionCount; i++) {
+            fds[i] = TableUtils.openRW(ff, partitionPath(i), LOG, CairoConfiguration.O_NONE);
+        }
+    }
+
+    private int partitionOf(int hashCode) {
+        // the map uses low bits of the hash code for its slots, take high bits of the mixed hash code;
+        // every level takes the next bits, so that a partition split by the child doesn't end up whole
+        return (int) (((hashCode * 0x9E3779B97F4A7C15L) << (level * partitionBits)) >>> (64 - partitionBits));
+    }
+
+    private Path partitionPath(int partitionIndex) {
+        return path.trimTo(dirLen).put(spillId).put('.').put(partitionIndex).$();
+    }
+
+    private void write(int partitionIndex, long address, long size) {
+        if (ff.write(fds[partitionIndex], address, size, fileSizes[partitionIndex]) != size) {
+            throw CairoException.critical(ff.errno()).put("could not write spill file [path=").put(partitionPath(partitionIndex)).put(']');
+        }
+        fileSizes[partitionIndex] += size;
+    }
+}
@@ -0,0 +1,153 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cairo.mv;
+
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.TableToken;
+import io.questdb.cairo.vm.Vm;
+import io.questdb.cairo.vm.api.MemoryCMR;
+import io.questdb.cairo.vm.api.MemoryMARW;
+import io.questdb.std.Chars;
+import io.questdb.std.FilesFacade;
+import io.questdb.std.MemoryTag;
+import io.questdb.std.str.Path;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Definition of a materialized view: the base table, the SAMPLE BY interval and the
+ * query text. The definition is kept in the view's table directory, next to the
+ * regular table files, and is read back when the engine starts.
+ */
+public class MatViewDefinition {
+    public static final String MAT_VIEW_FILE_NAME = "_mv";
+    private final String baseTableName;
+    private final String query;
+    private final String samplingInterval;
+    private final TableToken viewToken;
+    private volatile String invalidationReason;
+
+    public MatViewDefinition(TableToken viewToken, String baseTableName, String samplingInterval, String query) {
+        this.viewToken = viewToken;
+        this.baseTableName = baseTableName;
+        this.samplingInterval = samplingInterval;
+        this.query = query;
+    }
+
+    /**
+     * Reads view definition from the table directory.
+     *
+     * @param path table directory path, it is restored to its original length on return
+     * @return definition or null when the table is not a materialized view
+     */
+    @Nullable
+    public static MatViewDefinition read(FilesFacade ff, MemoryCMR mem, Path path, TableToken viewToken) {
+        final int pathLen = path.length();
+        try {
+            path.concat(MAT_VIEW_FILE_NAME).$();
+            if (!ff.exists(path)) {
+                return null;
+            }
+            final long fileLen = ff.length(path);
+            mem.of(ff, path, fileLen, fileLen, MemoryTag.MMAP_DEFAULT);
+            long offset = 0;
+            final String baseTableName = readStr(mem, offset, path);
+            offset += Vm.getStorageLength(baseTableName);
+            final String samplingInterval = readStr(mem, offset, path);
+            offset += Vm.getStorageLength(samplingInterval);
+            final String query = readStr(mem, offset, path);
+            return new MatViewDefinition(viewToken, baseTableName, samplingInterval, query);
+        } finally {
+            mem.close();
+            path.trimTo(pathLen);
+        }
+    }
+
+    public String getBaseTableName() {
+        return baseTableName;
+    }
+
+    /**
+     * @return the reason the view stopped being refreshed or null when the view is valid
+     */
+    @Nullable
+    public String getInvalidationReason() {
+        return invalidationReason;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public String getSamplingInterval() {
+        return samplingInterval;
+    }
+
+    public TableToken getViewToken() {
+        return viewToken;
+    }
+
+    /**
+     * Stops refreshes of the view, e.g. when its query no longer compiles against the base table.
+     * The view keeps the rows of the last successful refresh.
+     */
+    public void invalidate(CharSequence reason) {
+        invalidationReason = Chars.toString(reason);
+    }
+
+    public boolean isValid() {
+        return invalidationReason == null;
+    }
+
+    /**
+     * Writes view definition to the table directory.
+     *
+     * @param path table directory path, it is restored to its original length on return
+     */
+    public void write(FilesFacade ff, MemoryMARW mem, Path path) {
+        final int pathLen = path.length();
+        try {
+            mem.smallFile(ff, path.concat(MAT_VIEW_FILE_NAME).$(), MemoryTag.MMAP_DEFAULT);
+            mem.jumpTo(0);
+            mem.putStr(baseTableName);
+            mem.putStr(samplingInterval);
+            mem.putStr(query);
+            mem.close(true, Vm.TRUNCATE_TO_POINTER);
+        } finally {
+            path.trimTo(pathLen);
+        }
+    }
+
+    private static String readStr(MemoryCMR mem, long offset, Path path) {
+        if (offset + Integer.BYTES > mem.size()) {
+            throw CairoException.critical(0).put("invalid materialized view definition [path=").put(path).put(']');
+        }
+        final CharSequence value = mem.getStr(offset);
+        if (value == null) {
+            throw CairoException.critical(0).put("invalid materialized view definition [path=").put(path).put(']');
+        }
+        return Chars.toString(value);
+    }
+}
@@ -0,0 +1,167 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cairo.mv;
+
+import io.questdb.cairo.TableToken;
+import io.questdb.std.*;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Tracks materialized views by their base table along with the timestamp ranges
+ * of base table commits that the views have not seen yet. Commits that arrive before
+ * the refresh job gets to the base table are coalesced into a single min/max range.
+ * <p>
+ * While a view is being created its base table is tracked: commits are recorded even though
+ * the view is not registered yet, and they are not handed out until the view is registered,
+ * so the commits that race with the initial fill of the view are caught up by a refresh.
+ */
+public class MatViewGraph implements Mutable {
+    // base table name -> [lo, hi] inclusive range of changed timestamps
+    private final CharSequenceObjHashMap<LongList> pendingRanges = new CharSequenceObjHashMap<>();
+    // base table name -> number of views under construction
+    private final CharSequenceIntHashMap trackedBaseTables = new CharSequenceIntHashMap();
+    // base table name -> views
+    private final CharSequenceObjHashMap<ObjList<MatViewDefinition>> viewsByBaseTable = new CharSequenceObjHashMap<>();
+
+    public synchronized void addView(MatViewDefinition viewDefinition) {
+        final String baseTableName = viewDefinition.getBaseTableName();
+        ObjList<MatViewDefinition> views = viewsByBaseTable.get(baseTableName);
+        if (views == null) {
+            views = new ObjList<>();
+            viewsByBaseTable.put(baseTableName, views);
+        }
+        final TableToken viewToken = viewDefinition.getViewToken();
+        for (int i = 0, n = views.size(); i < n; i++) {
+            if (views.getQuick(i).getViewToken().equals(viewToken)) {
+                views.setQuick(i, viewDefinition);
+                return;
+            }
+        }
+        views.add(viewDefinition);
+    }
+
+    @Override
+    public synchronized void clear() {
+        viewsByBaseTable.clear();
+        pendingRanges.clear();
+        trackedBaseTables.clear();
+    }
+
+    /**
+     * Copies views of the base table to the sink.
+     */
+    public synchronized void getViews(CharSequence baseTableName, ObjList<MatViewDefinition> sink) {
+        sink.clear();
+        final ObjList<MatViewDefinition> views = viewsByBaseTable.get(baseTableName);
+        if (views != null) {
+            sink.addAll(views);
+        }
+    }
+
+    /**
+     * Records the range of timestamps changed by a base table commit. Use Long.MIN_VALUE and
+     * Long.MAX_VALUE when the changes cannot be bounded, e.g. after TRUNCATE or UPDATE,
+     * the views are then rebuilt from scratch.
+     */
+    public synchronized void notifyBaseTableCommit(CharSequence baseTableName, long minTimestamp, long maxTimestamp) {
+        final int viewIndex = viewsByBaseTable.keyIndex(baseTableName);
+        if ((viewIndex > -1 || viewsByBaseTable.valueAt(viewIndex).size() == 0) && trackedBaseTables.keyIndex(baseTableName) > -1) {
+            return;
+        }
+        final int index = pendingRanges.keyIndex(baseTableName);
+        if (index < 0) {
+            final LongList range = pendingRanges.valueAt(index);
+            range.setQuick(0, Math.min(range.getQuick(0), minTimestamp));
+            range.setQuick(1, Math.max(range.getQuick(1), maxTimestamp));
+        } else {
+            final LongList range = new LongList(2);
+            range.add(minTimestamp, maxTimestamp);
+            pendingRanges.putAt(index, Chars.toString(baseTableName), range);
+        }
+    }
+
+    /**
+     * Removes one pending refresh from the queue.
+     *
+     * @param range receives inclusive min and max timestamps of the changes
+     * @return base table name or null when there is nothing to refresh
+     */
+    @Nullable
+    public synchronized String pollPendingRefresh(LongList range) {
+        final ObjList<CharSequence> keys = pendingRanges.keys();
+        for (int i = 0, n = keys.size(); i < n; i++) {
+            final CharSequence key = keys.getQuick(i);
+            if (trackedBaseTables.keyIndex(key) < 0) {
+                // a view of the table is under construction, hold on to the range until it is registered
+                continue;
+            }
+            final String baseTableName = Chars.toString(key);
+            final LongList pending = pendingRanges.get(baseTableName);
+            pendingRanges.remove(baseTableName);
+            range.clear();
+            range.add(pending.getQuick(0), pending.getQuick(1));
+            return baseTableName;
+        }
+        return null;
+    }
+
+    public synchronized void removeView(TableToken viewToken) {
+        for (int i = 0, n = viewsByBaseTable.keys().size(); i < n; i++) {
+            final ObjList<MatViewDefinition> views = viewsByBaseTable.get(viewsByBaseTable.keys().getQuick(i));
+            for (int j = views.size() - 1; j > -1; j--) {
+                if (views.getQuick(j).getViewToken().equals(viewToken)) {
+                    views.remove(j);
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts recording commits of the base table ahead of {@link #addView(MatViewDefinition)}.
+     * Must be called before the view reads the base table and paired with {@link #untrackBaseTable(CharSequence)}.
+     */
+    public synchronized void trackBaseTable(CharSequence baseTableName) {
+        final int index = trackedBaseTables.keyIndex(baseTableName);
+        trackedBaseTables.putAt(index, baseTableName, index < 0 ? trackedBaseTables.valueAt(index) + 1 : 1);
+    }
+
+    public synchronized void untrackBaseTable(CharSequence baseTableName) {
+        final int index = trackedBaseTables.keyIndex(baseTableName);
+        if (index < 0) {
+            final int count = trackedBaseTables.valueAt(index) - 1;
+            if (count > 0) {
+                trackedBaseTables.putAt(index, baseTableName, count);
+            } else {
+                trackedBaseTables.removeAt(index);
+                final ObjList<MatViewDefinition> views = viewsByBaseTable.get(baseTableName);
+                if (views == null || views.size() == 0) {
+                    // view creation failed, nobody is interested in the recorded commits
+                    pendingRanges.remove(baseTableName);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cairo.mv;
+
+import io.questdb.cairo.*;
+import io.questdb.cairo.security.AllowAllCairoSecurityContext;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.cairo.sql.RecordMetadata;
+import io.questdb.griffin.*;
+import io.questdb.griffin.engine.groupby.TimestampSampler;
+import io.questdb.griffin.engine.groupby.TimestampSamplerFactory;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.mp.SynchronizedJob;
+import io.questdb.std.*;
+import io.questdb.std.datetime.microtime.TimestampFormatUtils;
+import io.questdb.std.str.StringSink;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+
+/**
+ * Brings materialized views up to date with their base tables. Base table commits applied
+ * from WAL are reported to {@link MatViewGraph}; for each reported timestamp range the job
+ * drops view partitions covering the range and re-runs the view query over the same range.
+ * The range is widened so that both ends fall on a SAMPLE BY bucket and a view partition
+ * boundary, which means each affected bucket is re-aggregated in full from the base table.
+ * The partitions are replaced in a single view transaction, readers never see the range empty.
+ * <p>
+ * When the refresh fails with a {@link CairoException}, e.g. the view writer is busy, the range
+ * is handed back to the graph and retried on the next run. A failing view query cannot succeed
+ * on retry, the view is marked invalid instead and is no longer refreshed.
+ */
+public class MatViewRefreshJob extends SynchronizedJob implements Closeable {
+    private static final Log LOG = LogFactory.getLog(MatViewRefreshJob.class);
+    // guards against interval and partition boundaries that practically never meet
+    private static final int MAX_ALIGN_ITERATIONS = 1000;
+    private final BytecodeAssembler asm = new BytecodeAssembler();
+    private final CairoEngine engine;
+    private final EntityColumnFilter entityColumnFilter = new EntityColumnFilter();
+    // base table name, min and max timestamps of ranges to retry
+    private final ObjList<String> failedBaseTables = new ObjList<>();
+    private final LongList failedRanges = new LongList();
+    private final MatViewGraph graph;
+    private final LongList range = new LongList(2);
+    private final StringSink sql = new StringSink();
+    private final ObjList<MatViewDefinition> views = new ObjList<>();
+    private SqlCompiler sqlCompiler;
+    private SqlExecutionContextImpl sqlExecutionContext;
+
+    public MatViewRefreshJob(CairoEngine engine, @Nullable FunctionFactoryCache functionFactoryCache) {
+        this.engine = engine;
+        this.graph = engine.getMatViewGraph();
+        this.sqlCompiler = new SqlCompiler(engine, functionFactoryCache, null);
+        this.sqlExecutionContext = new SqlExecutionContextImpl(engine, 1);
+        this.sqlExecutionContext.with(AllowAllCairoSecurityContext.INSTANCE, null, null);
+    }
+
+    @Override
+    public void close() {
+        sqlCompiler = Misc.free(sqlCompiler);
+        sqlExecutionContext = Misc.free(sqlExecutionContext);
+    }
+
+    private void copyRows(RecordCursorFactory factory, TableWriter writer) throws SqlException {
+        final RecordMetadata metadata = factory.getMetadata();
+        final RecordMetadata writerMetadata = writer.getMetadata();
+        entityColumnFilter.of(writerMetadata.getColumnCount());
+        final RecordToRowCopier copier = RecordToRowCopierUtils.generateCopier(asm, metadata, writerMetadata, entityColumnFilter);
+        final int timestampIndex = metadata.getTimestampIndex();
+        try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+            final Record record = cursor.getRecord();
+            while (cursor.hasNext()) {
+                TableWriter.Row row = writer.newRow(record.getTimestamp(timestampIndex));
+                copier.copy(record, row);
+                row.append();
+            }
+        }
+    }
+
+    private void refreshView(MatViewDefinition viewDefinition, long minTimestamp, long maxTimestamp) throws SqlException {
+        final TableToken viewToken = viewDefinition.getViewToken();
+        try (TableWriter writer = engine.getWriter(AllowAllCairoSecurityContext.INSTANCE, viewToken, "mat view refresh")) {
+            final RecordMetadata writerMetadata = writer.getMetadata();
+            final CharSequence timestampColumn = writerMetadata.getColumnName(writerMetadata.getTimestampIndex());
+            final int partitionBy = writer.getPartitionBy();
+
+            long lo = Long.MIN_VALUE;
+            long hi = Long.MAX_VALUE;
+            if (minTimestamp != Long.MIN_VALUE && maxTimestamp != Long.MAX_VALUE) {
+                final TimestampSampler sampler = TimestampSamplerFactory.getInstance(viewDefinition.getSamplingInterval(), 0);
+                sampler.setStart(0);
+                final PartitionBy.PartitionFloorMethod floorMethod = PartitionBy.getPartitionFloorMethod(partitionBy);
+                final PartitionBy.PartitionCeilMethod ceilMethod = PartitionBy.getPartitionCeilMethod(partitionBy);
+                assert floorMethod != null && ceilMethod != null;
+
+                lo = floorMethod.floor(sampler.round(minTimestamp));
+                hi = ceilMethod.ceil(sampler.round(maxTimestamp));
+                int iterations = 0;
+                while (sampler.round(lo) != lo && ++iterations < MAX_ALIGN_ITERATIONS) {
+                    lo = floorMethod.floor(sampler.round(lo));
+                }
+                while (sampler.round(hi) != hi && ++iterations < MAX_ALIGN_ITERATIONS) {
+                    hi = ceilMethod.ceil(sampler.nextTimestamp(sampler.round(hi)) - 1);
+                }
+                if (iterations >= MAX_ALIGN_ITERATIONS) {
+                    lo = Long.MIN_VALUE;
+                    hi = Long.MAX_VALUE;
+                }
+            }
+
+            sql.clear();
+            if (lo == Long.MIN_VALUE) {
+                sql.put(viewDefinition.getQuery());
+            } else {
+                sql.put("select * from (").put(viewDefinition.getQuery()).put(") where \"").put(timestampColumn).put("\" >= '");
+                TimestampFormatUtils.appendDateTimeUSec(sql, lo);
+                sql.put("' and \"").put(timestampColumn).put("\" < '");
+                TimestampFormatUtils.appendDateTimeUSec(sql, hi);
+                sql.put('\'');
+            }
+
+            // compile before touching the view, a failing query must leave the view as it was
+            try (RecordCursorFactory factory = sqlCompiler.compile(sql, sqlExecutionContext).getRecordCursorFactory()) {
+                // partitions are replaced by a single commit, readers see either old or new rows
+                writer.removePartitions(lo, hi);
+                try {
+                    copyRows(factory, writer);
+                    writer.commit();
+                } catch (Throwable th) {
+                    writer.rollback();
+                    throw th;
+                }
+            }
+
+            LOG.info().$("refreshed materialized view [view=").$(viewToken)
+                    .$(", base=").$(viewDefinition.getBaseTableName())
+                    .$(", lo=").$ts(lo)
+                    .$(", hi=").$ts(hi)
+                    .I$();
+        }
+    }
+
+    @Override
+    protected boolean runSerially() {
+        boolean useful = false;
+        String baseTableName;
+        while ((baseTableName = graph.pollPendingRefresh(range)) != null) {
+            final long minTimestamp = range.getQuick(0);
+            final long maxTimestamp = range.getQuick(1);
+            boolean failed = false;
+            graph.getViews(baseTableName, views);
+            for (int i = 0, n = views.size(); i < n; i++) {
+                final MatViewDefinition viewDefinition = views.getQuick(i);
+                if (!viewDefinition.isValid()) {
+                    continue;
+                }
+                try {
+                    refreshView(viewDefinition, minTimestamp, maxTimestamp);
+                    useful = true;
+                } catch (SqlException e) {
+                    LOG.error().$("could not refresh materialized view, view is invalid [view=").$(viewDefinition.getViewToken())
+                            .$(", msg=").$(e.getFlyweightMessage())
+                            .$(", pos=").$(e.getPosition())
+                            .I$();
+                    viewDefinition.invalidate(e.getFlyweightMessage());
+                } catch (CairoException e) {
+                    LOG.error().$("could not refresh materialized view, will retry [view=").$(viewDefinition.getViewToken())
+                            .$(", msg=").$(e.getFlyweightMessage())
+                            .$(", errno=").$(e.getErrno())
+                            .I$();
+                    failed = true;
+                }
+            }
+            if (failed) {
+                failedBaseTables.add(baseTableName);
+                failedRanges.add(minTimestamp, maxTimestamp);
+            }
+        }
+        views.clear();
+
+        // hand failed ranges back once the queue is drained, retrying them right away would spin
+        for (int i = 0, n = failedBaseTables.size(); i < n; i++) {
+            graph.notifyBaseTableCommit(failedBaseTables.getQuick(i), failedRanges.getQuick(2 * i), failedRanges.getQuick(2 * i + 1));
+        }
+        failedBaseTables.clear();
+        failedRanges.clear();
+        return useful;
+    }
+}
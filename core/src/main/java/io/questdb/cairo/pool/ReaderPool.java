@@ -26,16 +26,24 @@ package io.questdb.cairo.pool;
 
 import io.questdb.MessageBus;
 import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.ColumnBufferCache;
 import io.questdb.cairo.TableReader;
 import io.questdb.cairo.TableToken;
+import org.jetbrains.annotations.Nullable;
 
 public class ReaderPool extends AbstractMultiTenantPool<ReaderPool.R> {
 
+    private final ColumnBufferCache columnBufferCache;
     private final MessageBus messageBus;
 
     public ReaderPool(CairoConfiguration configuration, MessageBus messageBus) {
+        this(configuration, messageBus, null);
+    }
+
+    public ReaderPool(CairoConfiguration configuration, MessageBus messageBus, @Nullable ColumnBufferCache columnBufferCache) {
         super(configuration);
         this.messageBus = messageBus;
+        this.columnBufferCache = columnBufferCache;
     }
 
     @Override
@@ -45,7 +53,7 @@ public class ReaderPool extends AbstractMultiTenantPool<ReaderPool.R> {
 
     @Override
     protected R newTenant(TableToken tableName, Entry<R> entry, int index) {
-        return new R(this, entry, index, tableName, messageBus);
+        return new R(this, entry, index, tableName, messageBus, columnBufferCache);
     }
 
     public static class R extends TableReader implements PoolTenant {
@@ -53,8 +61,15 @@ public class ReaderPool extends AbstractMultiTenantPool<ReaderPool.R> {
         private Entry<R> entry;
         private AbstractMultiTenantPool<R> pool;
 
-        public R(AbstractMultiTenantPool<R> pool, Entry<R> entry, int index, TableToken tableToken, MessageBus messageBus) {
-            super(pool.getConfiguration(), tableToken, messageBus);
+        public R(
+                AbstractMultiTenantPool<R> pool,
+                Entry<R> entry,
+                int index,
+                TableToken tableToken,
+                MessageBus messageBus,
+                @Nullable ColumnBufferCache columnBufferCache
+        ) {
+            super(pool.getConfiguration(), tableToken, messageBus, columnBufferCache);
             this.pool = pool;
             this.entry = entry;
             this.index = index;
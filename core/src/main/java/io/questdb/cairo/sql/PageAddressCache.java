@@ -31,6 +31,8 @@ import io.questdb.std.*;
 public class PageAddressCache implements Mutable {
 
     private final long cacheSizeThreshold;
+    // Size shifts of fixed length columns, -1 for variable length columns.
+    private final IntList columnSizeShifts = new IntList();
     // Index remapping for variable length columns.
     private final IntList varLenColumnIndexes = new IntList();
     private int columnCount;
@@ -63,6 +65,7 @@ public class PageAddressCache implements Mutable {
     @Override
     public void clear() {
         varLenColumnIndexes.clear();
+        columnSizeShifts.clear();
         if (pageAddresses.size() < cacheSizeThreshold) {
             pageAddresses.clear();
             indexPageAddresses.clear();
@@ -112,11 +115,49 @@ public class PageAddressCache implements Mutable {
     public void of(@Transient RecordMetadata metadata) {
         this.columnCount = metadata.getColumnCount();
         this.varLenColumnIndexes.setAll(columnCount, -1);
+        this.columnSizeShifts.setAll(columnCount, -1);
         this.varLenColumnCount = 0;
         for (int columnIndex = 0; columnIndex < columnCount; columnIndex++) {
             final int columnType = metadata.getColumnType(columnIndex);
             if (ColumnType.isVariableLength(columnType)) {
                 varLenColumnIndexes.setQuick(columnIndex, varLenColumnCount++);
+            } else {
+                columnSizeShifts.setQuick(columnIndex, ColumnType.pow2SizeOf(columnType));
+            }
+        }
+    }
+
+    private static void willNeed(FilesFacade ff, long address, long size) {
+        if (size > 0) {
+            // posix_madvise() wants page aligned address
+            final long alignedAddress = address & -Files.PAGE_SIZE;
+            ff.madvise(alignedAddress, size + address - alignedAddress, Files.POSIX_MADV_WILLNEED);
+        }
+    }
+
+    /**
+     * Advises the OS that memory of the given frame will be read soon, so that
+     * the kernel starts reading column pages in before a worker gets to the frame.
+     * Frames of compressed partitions are decoded into native memory, advising
+     * it is harmless.
+     */
+    public void prefetch(FilesFacade ff, int frameIndex, long frameRowCount) {
+        for (int columnIndex = 0; columnIndex < columnCount; columnIndex++) {
+            final long pageAddress = getPageAddress(frameIndex, columnIndex);
+            if (pageAddress == 0) {
+                // column top, nothing to read
+                continue;
+            }
+            final int shift = columnSizeShifts.getQuick(columnIndex);
+            if (shift > -1) {
+                willNeed(ff, pageAddress, frameRowCount << shift);
+            } else {
+                // page address and size describe the whole var column up to the end of the frame,
+                // the first index entry tells where the frame starts
+                final long indexPageAddress = getIndexPageAddress(frameIndex, columnIndex);
+                willNeed(ff, indexPageAddress, (frameRowCount + 1) << 3);
+                final long lo = Unsafe.getUnsafe().getLong(indexPageAddress);
+                willNeed(ff, pageAddress + lo, getPageSize(frameIndex, columnIndex) - lo);
             }
         }
     }
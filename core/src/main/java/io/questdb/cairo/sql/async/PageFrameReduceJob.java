@@ -188,7 +188,7 @@ public class PageFrameReduceJob implements Job, Closeable {
                         reduce(workerId, record, circuitBreaker, task, frameSequence, stealingFrameSequence);
                     }
                 } catch (Throwable e) {
-                    frameSequence.cancel();
+                    frameSequence.fail(e);
                     throw e;
                 } finally {
                     subSeq.done(cursor);
@@ -221,6 +221,7 @@ public class PageFrameReduceJob implements Job, Closeable {
             record.of(frameSequence.getSymbolTableSource(), frameSequence.getPageAddressCache());
             record.setFrameIndex(task.getFrameIndex());
             assert !frameSequence.done;
+            frameSequence.prefetchAhead(task.getFrameIndex());
             frameSequence.getReducer().reduce(workerId, record, task, circuitBreaker, stealingFrameSequence);
         } else {
             frameSequence.cancel();
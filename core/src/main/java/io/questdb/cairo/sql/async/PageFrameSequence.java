@@ -26,6 +26,7 @@ package io.questdb.cairo.sql.async;
 
 import io.questdb.MessageBus;
 import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.CairoException;
 import io.questdb.cairo.sql.*;
 import io.questdb.griffin.SqlException;
 import io.questdb.griffin.SqlExecutionContext;
@@ -42,6 +43,7 @@ import java.io.Closeable;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class PageFrameSequence<T extends StatefulAtom> implements Closeable {
 
@@ -49,10 +51,14 @@ public class PageFrameSequence<T extends StatefulAtom> implements Closeable {
     private static final long LOCAL_TASK_CURSOR = Long.MAX_VALUE;
     private static final Log LOG = LogFactory.getLog(PageFrameSequence.class);
     private final MillisecondClock clock;
+    // message of the first reducer error, copied as exceptions are thread local
+    private final AtomicReference<String> failureMessage = new AtomicReference<>();
+    private final FilesFacade ff;
     private final LongList frameRowCounts = new LongList();
     private final WeakClosableObjectPool<PageFrameReduceTask> localTaskPool;
     private final MessageBus messageBus;
     private final PageAddressCache pageAddressCache;
+    private final int prefetchCount;
     private final AtomicInteger reduceCounter = new AtomicInteger(0);
     private final PageFrameReducer reducer;
     private final AtomicBoolean valid = new AtomicBoolean(true);
@@ -85,6 +91,8 @@ public class PageFrameSequence<T extends StatefulAtom> implements Closeable {
         this.reducer = reducer;
         this.clock = configuration.getMillisecondClock();
         this.localTaskPool = localTaskPool;
+        this.ff = configuration.getFilesFacade();
+        this.prefetchCount = configuration.getPageFramePrefetchCount();
     }
 
     /**
@@ -149,6 +157,25 @@ public class PageFrameSequence<T extends StatefulAtom> implements Closeable {
         this.valid.compareAndSet(true, false);
     }
 
+    /**
+     * Cancels the sequence due to an error thrown by a reducer. Interruptions are treated as
+     * cancellations, other errors are kept for the query owner, see {@link #getFailureMessage()}.
+     *
+     * @param th error thrown by the reducer
+     */
+    public void fail(Throwable th) {
+        if (!(th instanceof CairoException) || !((CairoException) th).isInterruption()) {
+            final String message;
+            if (th instanceof FlyweightMessageContainer) {
+                message = ((FlyweightMessageContainer) th).getFlyweightMessage().toString();
+            } else {
+                message = th.getMessage() != null ? th.getMessage() : th.getClass().getName();
+            }
+            failureMessage.compareAndSet(null, message);
+        }
+        cancel();
+    }
+
     public void clear() {
         // prepare different frame sequence using the same object instance
         frameCount = 0;
@@ -198,6 +225,14 @@ public class PageFrameSequence<T extends StatefulAtom> implements Closeable {
         return circuitBreakerFd;
     }
 
+    /**
+     * @return message of the first error thrown by a reducer or null when the sequence was
+     * not cancelled or was cancelled by the circuit breaker
+     */
+    public CharSequence getFailureMessage() {
+        return failureMessage.get();
+    }
+
     public int getFrameCount() {
         return frameCount;
     }
@@ -316,6 +351,12 @@ public class PageFrameSequence<T extends StatefulAtom> implements Closeable {
             // this method sets a lot of state of the page sequence
             prepareForDispatch(rnd, frameCount, pageFrameCursor, atom, collectSubSeq);
 
+            // get the kernel reading the first frames while we're dispatching them,
+            // reducers keep the read-ahead window moving, see prefetchAhead()
+            for (int i = 0, n = Math.min(prefetchCount, frameCount); i < n; i++) {
+                pageAddressCache.prefetch(ff, i, frameRowCounts.getQuick(i));
+            }
+
             // It is essential to init the atom after we prepared sequence for dispatch.
             // If atom is to fail, we will be releasing whatever we prepared.
             atom.init(pageFrameCursor, executionContext);
@@ -340,6 +381,18 @@ public class PageFrameSequence<T extends StatefulAtom> implements Closeable {
         return this;
     }
 
+    /**
+     * Advises column memory of the frame that is prefetch count frames ahead of the
+     * given one. Called by reducers, so that the OS reads column files in while
+     * the preceding frames are being processed. This method is thread safe.
+     */
+    public void prefetchAhead(int frameIndex) {
+        final int prefetchFrameIndex = frameIndex + prefetchCount;
+        if (prefetchCount > 0 && prefetchFrameIndex < frameCount) {
+            pageAddressCache.prefetch(ff, prefetchFrameIndex, frameRowCounts.getQuick(prefetchFrameIndex));
+        }
+    }
+
     public void reset() {
         // prepare to resend the same sequence as it might be required by toTop()
         frameRowCounts.clear();
@@ -367,6 +420,7 @@ public class PageFrameSequence<T extends StatefulAtom> implements Closeable {
             dispatchStartFrameIndex = 0;
             collectedFrameIndex = -1;
             reduceCounter.set(0);
+            failureMessage.set(null);
             valid.set(true);
         }
     }
@@ -470,6 +524,7 @@ public class PageFrameSequence<T extends StatefulAtom> implements Closeable {
     ) {
         this.id = ID_SEQ.incrementAndGet();
         this.done = false;
+        this.failureMessage.set(null);
         this.valid.set(true);
         this.reduceCounter.set(0);
         this.shard = rnd.nextInt(messageBus.getPageFrameReduceShardCount());
@@ -502,9 +557,18 @@ public class PageFrameSequence<T extends StatefulAtom> implements Closeable {
             PageAddressCacheRecord record,
             SqlExecutionCircuitBreaker circuitBreaker
     ) {
-        if (PageFrameReduceJob.consumeQueue(queue, reduceSubSeq, record, circuitBreaker, this)) {
-            Os.pause();
-            return false;
+        try {
+            if (PageFrameReduceJob.consumeQueue(queue, reduceSubSeq, record, circuitBreaker, this)) {
+                Os.pause();
+                return false;
+            }
+        } catch (Throwable e) {
+            // the error is kept by the failed sequence, we have to carry on
+            // dispatching, otherwise await() would wait for the frames forever
+            LOG.error()
+                    .$("steal error [id=").$(id)
+                    .$(", ex=").$(e)
+                    .I$();
         }
         return true;
     }
@@ -529,8 +593,9 @@ public class PageFrameSequence<T extends StatefulAtom> implements Closeable {
                 PageFrameReduceJob.reduce(record, circuitBreaker, localTask, this, this);
             }
         } catch (Throwable e) {
-            cancel();
-            throw e;
+            // the local task is still returned to the owner to be collected,
+            // the owner finds the sequence inactive and reports the failure
+            fail(e);
         } finally {
             reduceCounter.incrementAndGet();
         }
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo.vm;
+
+import io.questdb.cairo.ColumnBufferCache;
+import io.questdb.std.FilesFacade;
+import io.questdb.std.str.LPSZ;
+
+// contiguous readable memory over a column file of a cold partition, the file is read into ColumnBufferCache
+// rather than mapped. Falls back to mapping the file when it doesn't fit the cache or grows beyond
+// the cached size.
+public class MemoryCMRCImpl extends MemoryCMRImpl {
+    private final ColumnBufferCache cache;
+    private final int priority;
+    private ColumnBufferCache.Entry entry;
+
+    public MemoryCMRCImpl(ColumnBufferCache cache, int priority) {
+        this.cache = cache;
+        this.priority = priority;
+    }
+
+    @Override
+    public void close() {
+        if (entry != null) {
+            cache.release(entry);
+            entry = null;
+            pageAddress = 0;
+            size = 0;
+        }
+        super.close();
+    }
+
+    @Override
+    public void extend(long newSize) {
+        if (entry != null && newSize > size) {
+            if (newSize <= entry.getSize()) {
+                size = newSize;
+                return;
+            }
+            cache.release(entry);
+            entry = null;
+            pageAddress = 0;
+            size = 0;
+        }
+        super.extend(newSize);
+    }
+
+    public boolean isCached() {
+        return entry != null;
+    }
+
+    @Override
+    public void of(FilesFacade ff, LPSZ name, long extendSegmentSize, long size, int memoryTag, long opts, int madviseOpts) {
+        if (size < 1) {
+            super.of(ff, name, extendSegmentSize, size, memoryTag, opts, madviseOpts);
+            return;
+        }
+        // opens the file without mapping it
+        super.of(ff, name, extendSegmentSize, 0, memoryTag, opts, madviseOpts);
+        try {
+            entry = cache.acquire(name, fd, size, priority);
+        } catch (Throwable e) {
+            close();
+            throw e;
+        }
+        if (entry != null) {
+            pageAddress = entry.getAddress();
+            this.size = size;
+        } else {
+            super.extend(size);
+        }
+    }
+}
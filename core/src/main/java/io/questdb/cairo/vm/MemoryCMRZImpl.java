@@ -0,0 +1,287 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cairo.vm;
+
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.ColumnBufferCache;
+import io.questdb.cairo.PartitionCompressor;
+import io.questdb.cairo.TableUtils;
+import io.questdb.cairo.vm.api.MemoryCMR;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.*;
+import io.questdb.std.str.CharSink;
+import io.questdb.std.str.LPSZ;
+import org.jetbrains.annotations.Nullable;
+
+// contiguous readable memory over a block compressed column file, see PartitionCompressor.
+// The file stays mapped as long as the memory is open and blocks are decompressed on first access,
+// native memory is only touched by the blocks that are read. Values that straddle block boundaries,
+// such as strings, have all of their blocks decompressed before they are returned.
+// When column buffer cache is given, decompressed contents live in the cache: readers of the same
+// partition share them and the cache capacity bounds the memory held by the columns that are not in use.
+// Otherwise, or when the column does not fit the cache, the memory has its own buffer, which outlives
+// re-opening the memory for another file and is released on close.
+public class MemoryCMRZImpl extends AbstractMemoryCR implements MemoryCMR {
+    private static final Log LOG = LogFactory.getLog(MemoryCMRZImpl.class);
+    private final ColumnBufferCache cache;
+    // blocks this memory has seen decompressed, saves the trip to the cache entry monitor
+    private final LongList decodedBlocks = new LongList();
+    private final int priority;
+    private long blockCount;
+    private long blockSize;
+    private long capacity;
+    private long decodedBlockCount;
+    private ColumnBufferCache.Entry entry;
+    private long fileAddress;
+    private long fileSize;
+    private long length;
+    private int memoryTag = MemoryTag.MMAP_DEFAULT;
+
+    public MemoryCMRZImpl(FilesFacade ff, LPSZ name, long size, int memoryTag) {
+        this(null, 0);
+        of(ff, name, 0, size, memoryTag, 0);
+    }
+
+    public MemoryCMRZImpl(@Nullable ColumnBufferCache cache, int priority) {
+        this.cache = cache;
+        this.priority = priority;
+    }
+
+    public MemoryCMRZImpl() {
+        this(null, 0);
+    }
+
+    @Override
+    public long addressOf(long offset) {
+        // any primitive value starting at the offset must be readable
+        decode(offset, offset + Long.BYTES);
+        return super.addressOf(offset);
+    }
+
+    @Override
+    public long addressOf(long lo, long hi) {
+        decode(lo, hi);
+        return super.addressOf(lo);
+    }
+
+    @Override
+    public void close() {
+        clear();
+        unmap();
+        releaseEntry();
+        if (capacity > 0) {
+            Unsafe.free(pageAddress, capacity, MemoryTag.NATIVE_TABLE_READER);
+            capacity = 0;
+        }
+        pageAddress = 0;
+        size = 0;
+        if (ff != null && ff.close(fd)) {
+            LOG.debug().$("closed [fd=").$(fd).I$();
+            fd = -1;
+        }
+    }
+
+    @Override
+    public void extend(long newSize) {
+        if (newSize > size) {
+            setSize0(newSize);
+        }
+    }
+
+    @Override
+    public BinarySequence getBin(long offset, ByteSequenceView view) {
+        final long len = getLong(offset);
+        if (len > 0) {
+            decode(offset, offset + Long.BYTES + len);
+        }
+        return MemoryCMR.super.getBin(offset, view);
+    }
+
+    @Override
+    public void getLong256(long offset, CharSink sink) {
+        decode(offset, offset + Long256.BYTES);
+        MemoryCMR.super.getLong256(offset, sink);
+    }
+
+    @Override
+    public void getLong256(long offset, Long256Acceptor sink) {
+        decode(offset, offset + Long256.BYTES);
+        MemoryCMR.super.getLong256(offset, sink);
+    }
+
+    @Override
+    public long getPageAddress(int pageIndex) {
+        // the whole column is exposed as a single page
+        decode(0, size);
+        return pageAddress;
+    }
+
+    @Override
+    public CharSequence getStr(long offset, CharSequenceView view) {
+        final int len = getInt(offset);
+        if (len > 0) {
+            decode(offset, offset + Vm.getStorageLength(len));
+        }
+        return MemoryCMR.super.getStr(offset, view);
+    }
+
+    @Override
+    public void growToFileSize() {
+        extend(length);
+    }
+
+    @Override
+    public boolean isMapped(long offset, long len) {
+        return offset + len <= size();
+    }
+
+    @Override
+    public void of(FilesFacade ff, LPSZ name, long extendSegmentSize, long size, int memoryTag, long opts, int madviseOpts) {
+        clear();
+        unmap();
+        releaseEntry();
+        if (this.ff != null && this.ff.close(fd)) {
+            fd = -1;
+        }
+        this.ff = ff;
+        this.memoryTag = memoryTag;
+        this.size = 0;
+        this.length = 0;
+        fd = TableUtils.openRO(ff, name, LOG);
+        try {
+            map(name);
+            setSize0(size);
+        } catch (Throwable e) {
+            close();
+            throw e;
+        }
+        LOG.debug().$("opened compressed [file=").$(name).$(", fd=").$(fd).$(", size=").$(this.size).$(", length=").$(length).$(", cached=").$(entry != null).I$();
+    }
+
+    private void decode(long lo, long hi) {
+        if (decodedBlockCount == blockCount) {
+            return;
+        }
+        final long blockHi = (Math.min(hi, length) + blockSize - 1) / blockSize;
+        for (long block = Math.max(lo, 0) / blockSize; block < blockHi; block++) {
+            final int word = (int) (block >>> 6);
+            final long bit = 1L << block;
+            final long bits = decodedBlocks.getQuick(word);
+            if ((bits & bit) == 0) {
+                decodeBlock(block);
+                decodedBlocks.setQuick(word, bits | bit);
+                decodedBlockCount++;
+            }
+        }
+    }
+
+    private void decodeBlock(long block) {
+        if (entry != null) {
+            // readers sharing the entry decompress each block once
+            synchronized (entry) {
+                if (!entry.isDecoded(block)) {
+                    PartitionCompressor.inflate(fileAddress, pageAddress, block * blockSize, (block + 1) * blockSize);
+                    entry.setDecoded(block);
+                }
+            }
+        } else {
+            PartitionCompressor.inflate(fileAddress, pageAddress, block * blockSize, (block + 1) * blockSize);
+        }
+    }
+
+    private void map(LPSZ name) {
+        final long fileSize = ff.length(fd);
+        if (fileSize < 0) {
+            throw CairoException.critical(ff.errno()).put("could not get length [fd=").put(fd).put(']');
+        }
+        final long addr = TableUtils.mapRO(ff, fd, fileSize, memoryTag);
+        try {
+            length = PartitionCompressor.validate(addr, fileSize);
+        } catch (Throwable th) {
+            ff.munmap(addr, fileSize, memoryTag);
+            throw th;
+        }
+        fileAddress = addr;
+        this.fileSize = fileSize;
+        blockSize = PartitionCompressor.getBlockSize(addr);
+        blockCount = (length + blockSize - 1) / blockSize;
+        decodedBlocks.setAll((int) ((blockCount + 63) >>> 6), 0);
+        decodedBlockCount = 0;
+
+        if (length > 0 && cache != null) {
+            entry = cache.acquireDecompressed(name, length, blockCount, priority);
+        }
+        if (entry != null) {
+            if (capacity > 0) {
+                Unsafe.free(pageAddress, capacity, MemoryTag.NATIVE_TABLE_READER);
+                capacity = 0;
+            }
+            pageAddress = entry.getAddress();
+        } else {
+            if (capacity == 0) {
+                // address could be left over from a cache entry
+                pageAddress = 0;
+            }
+            if (length > capacity) {
+                pageAddress = Unsafe.realloc(pageAddress, capacity, length, MemoryTag.NATIVE_TABLE_READER);
+                capacity = length;
+            }
+        }
+    }
+
+    private void releaseEntry() {
+        if (entry != null) {
+            cache.release(entry);
+            entry = null;
+            pageAddress = 0;
+        }
+    }
+
+    private void setSize0(long newSize) {
+        if (newSize > length) {
+            throw tooShort(newSize);
+        }
+        size = newSize < 0 ? length : newSize;
+    }
+
+    private CairoException tooShort(long newSize) {
+        return CairoException.critical(0).put("compressed column is too short [fd=").put(fd)
+                .put(", size=").put(newSize)
+                .put(", length=").put(length)
+                .put(']');
+    }
+
+    private void unmap() {
+        if (fileAddress != 0) {
+            ff.munmap(fileAddress, fileSize, memoryTag);
+            fileAddress = 0;
+            fileSize = 0;
+        }
+        blockCount = 0;
+        decodedBlockCount = 0;
+    }
+}
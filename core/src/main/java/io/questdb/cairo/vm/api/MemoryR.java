@@ -37,6 +37,19 @@ public interface MemoryR extends Closeable {
 
     long addressOf(long offset);
 
+    /**
+     * Same as {@link #addressOf(long)}, additionally makes sure that the whole [lo, hi) range can be read
+     * via the returned address. Memory that decodes its data on demand decodes the range, other memory
+     * is readable as is.
+     *
+     * @param lo range start offset, inclusive
+     * @param hi range end offset, exclusive
+     * @return address of the lo offset
+     */
+    default long addressOf(long lo, long hi) {
+        return addressOf(lo);
+    }
+
     @Override
     void close();
 
@@ -69,13 +69,19 @@ public class ApplyWal2TableJob extends AbstractQueueConsumerJob<WalTxnNotificati
     private final MicrosecondClock microClock;
     private final OperationCompiler operationCompiler;
     private final TableSequencerAPI tableSequencerAPI;
+    private final long tableTimeQuota;
     private final Telemetry<TelemetryTask> telemetry;
     private final TelemetryFacade telemetryFacade;
     private final LongList transactionMeta = new LongList();
     private final WalEventReader walEventReader;
     private final Telemetry<TelemetryWalTask> walTelemetry;
     private final WalTelemetryFacade walTelemetryFacade;
+    // inclusive range of timestamps changed by the applied transactions, reported to materialized views
+    private long changedMaxTimestamp;
+    private long changedMinTimestamp;
     private long rowsSinceLastCommit;
+    // set when the table used up its time quota before all transactions were applied
+    private boolean tableTimeQuotaExceeded;
 
     public ApplyWal2TableJob(CairoEngine engine, int workerCount, int sharedWorkerCount, @Nullable FunctionFactoryCache ffCache) {
         super(engine.getMessageBus().getWalTxnNotificationQueue(), engine.getMessageBus().getWalTxnNotificationSubSequence());
@@ -90,6 +96,7 @@ public class ApplyWal2TableJob extends AbstractQueueConsumerJob<WalTxnNotificati
         walEventReader = new WalEventReader(engine.getConfiguration().getFilesFacade());
         commitSquashRowLimit = engine.getConfiguration().getWalCommitSquashRowLimit();
         metrics = engine.getMetrics().getWalMetrics();
+        tableTimeQuota = engine.getConfiguration().getWalApplyTableTimeQuota() * 1000L;
     }
 
     public long applyWAL(
@@ -101,12 +108,19 @@ public class ApplyWal2TableJob extends AbstractQueueConsumerJob<WalTxnNotificati
         long lastSequencerTxn = -1;
         long lastWriterTxn = -1;
         Path tempPath = Path.PATH.get();
+        changedMinTimestamp = Long.MAX_VALUE;
+        changedMaxTimestamp = Long.MIN_VALUE;
+        tableTimeQuotaExceeded = false;
+        // The quota keeps a table with a deep WAL backlog from holding the worker,
+        // notifications of the other tables are processed before this table continues.
+        final long deadline = microClock.getTicks() + tableTimeQuota;
 
         try {
             do {
                 // security context is checked on writing to the WAL and can be ignored here
                 TableToken updatedToken = engine.getUpdatedTableToken(tableToken);
                 if (updatedToken == null) {
+                    metrics.removeApplyLag(tableToken.getTableName());
                     if (engine.isTableDropped(tableToken)) {
                         return tryDestroyDroppedTable(tableToken, null, engine, tempPath) ? Long.MAX_VALUE : -1;
                     }
@@ -122,7 +136,7 @@ public class ApplyWal2TableJob extends AbstractQueueConsumerJob<WalTxnNotificati
                 rowsSinceLastCommit = 0;
                 try (TableWriter writer = engine.getWriterUnsafe(updatedToken, WAL_2_TABLE_WRITE_REASON, false)) {
                     assert writer.getMetadata().getTableId() == tableToken.getTableId();
-                    applyOutstandingWalTransactions(tableToken, writer, engine, operationCompiler, tempPath, runStatus);
+                    applyOutstandingWalTransactions(tableToken, writer, engine, operationCompiler, tempPath, runStatus, deadline);
                     lastWriterTxn = writer.getSeqTxn();
                 } catch (EntryUnavailableException tableBusy) {
                     if (!WAL_2_TABLE_WRITE_REASON.equals(tableBusy.getReason()) && !WAL_2_TABLE_RESUME_REASON.equals(tableBusy.getReason())) {
@@ -134,10 +148,11 @@ public class ApplyWal2TableJob extends AbstractQueueConsumerJob<WalTxnNotificati
                 }
 
                 lastSequencerTxn = engine.getTableSequencerAPI().lastTxn(tableToken);
-            } while (lastWriterTxn < lastSequencerTxn && !runStatus.isTerminating());
+            } while (lastWriterTxn < lastSequencerTxn && !runStatus.isTerminating() && !tableTimeQuotaExceeded);
         } catch (CairoException ex) {
             if (engine.isTableDropped(tableToken)) {
                 // Table is dropped, and we received cairo exception in the middle of apply
+                metrics.removeApplyLag(tableToken.getTableName());
                 return tryDestroyDroppedTable(tableToken, null, engine, tempPath) ? Long.MAX_VALUE : -1;
             }
             telemetryFacade.store(TelemetryOrigin.WAL_APPLY, WAL_APPLY_SUSPEND);
@@ -147,8 +162,21 @@ public class ApplyWal2TableJob extends AbstractQueueConsumerJob<WalTxnNotificati
                     .I$();
             return WAL_APPLY_FAILED;
         }
-        assert lastWriterTxn == lastSequencerTxn || runStatus.isTerminating();
+        assert lastWriterTxn == lastSequencerTxn || runStatus.isTerminating() || tableTimeQuotaExceeded;
 
+        if (tableTimeQuotaExceeded && lastWriterTxn < lastSequencerTxn) {
+            // The writer is back in the pool, re-queue the table behind the notifications of other tables
+            LOG.info().$("WAL apply time quota exceeded, re-queueing table [table=").utf8(tableToken.getDirName())
+                    .$(", writerTxn=").$(lastWriterTxn)
+                    .$(", seqTxn=").$(lastSequencerTxn)
+                    .I$();
+            metrics.incApplyQuotaExceeded();
+            engine.notifyWalTxnCommitted(tableToken, lastSequencerTxn);
+        }
+
+        if (changedMinTimestamp <= changedMaxTimestamp) {
+            engine.getMatViewGraph().notifyBaseTableCommit(tableToken.getTableName(), changedMinTimestamp, changedMaxTimestamp);
+        }
         return lastWriterTxn;
     }
 
@@ -279,7 +307,8 @@ public class ApplyWal2TableJob extends AbstractQueueConsumerJob<WalTxnNotificati
             CairoEngine engine,
             OperationCompiler operationCompiler,
             Path tempPath,
-            Job.RunStatus runStatus
+            Job.RunStatus runStatus,
+            long deadline
     ) {
         boolean isTerminating;
         try (TransactionLogCursor transactionLogCursor = tableSequencerAPI.getCursor(tableToken, writer.getSeqTxn())) {
@@ -340,6 +369,7 @@ public class ApplyWal2TableJob extends AbstractQueueConsumerJob<WalTxnNotificati
                                 walTelemetryFacade.store(WAL_TXN_APPLY_START, tableToken, walId, seqTxn, -1L, -1L, start - commitTimestamp);
                                 structuralChangeCursor.next().apply(writer, true);
                                 writer.setSeqTxn(seqTxn);
+                                markAllChanged();
                                 walTelemetryFacade.store(WAL_TXN_STRUCTURE_CHANGE_APPLIED, tableToken, walId, seqTxn, -1L, -1L, microClock.getTicks() - start);
                             } else {
                                 // Something messed up in sequencer.
@@ -352,6 +382,7 @@ public class ApplyWal2TableJob extends AbstractQueueConsumerJob<WalTxnNotificati
                             break;
 
                         case DROP_TABLE_WALID:
+                            metrics.removeApplyLag(tableToken.getTableName());
                             tryDestroyDroppedTable(tableToken, writer, engine, tempPath);
                             return;
 
@@ -381,6 +412,12 @@ public class ApplyWal2TableJob extends AbstractQueueConsumerJob<WalTxnNotificati
                             }
 
                             isTerminating = runStatus.isTerminating();
+                            if (iTransaction > 0 && microClock.getTicks() >= deadline) {
+                                // Commit everything applied so far and let other tables progress.
+                                // The first transaction is always applied so that the table is never starved.
+                                tableTimeQuotaExceeded = true;
+                                isTerminating = true;
+                            }
                             final long added = processWalCommit(
                                     writer,
                                     walId,
@@ -430,6 +467,11 @@ public class ApplyWal2TableJob extends AbstractQueueConsumerJob<WalTxnNotificati
         TelemetryWalTask.store(walTelemetry, event, tableToken.getTableId(), walId, seqTxn, rowCount, physicalRowCount, latencyUs);
     }
 
+    private void markAllChanged() {
+        changedMinTimestamp = Long.MIN_VALUE;
+        changedMaxTimestamp = Long.MAX_VALUE;
+    }
+
     private long processWalCommit(
             TableWriter writer,
             int walId,
@@ -480,9 +522,13 @@ public class ApplyWal2TableJob extends AbstractQueueConsumerJob<WalTxnNotificati
                                 seqTxn,
                                 commitToTimestamp
                         );
-                        final long latency = microClock.getTicks() - start;
+                        changedMinTimestamp = Math.min(changedMinTimestamp, dataInfo.getMinTimestamp());
+                        changedMaxTimestamp = Math.max(changedMaxTimestamp, dataInfo.getMaxTimestamp());
+                        final long end = microClock.getTicks();
+                        final long latency = end - start;
                         long physicalRowCount = writer.getPhysicallyWrittenRowsSinceLastCommit();
                         metrics.addApplyRowsWritten(rowCount, physicalRowCount, latency);
+                        metrics.setApplyLag(writer.getTableToken().getTableName(), end - commitTimestamp);
                         walTelemetryFacade.store(WAL_TXN_DATA_APPLIED, writer.getTableToken(), walId, seqTxn, rowsAdded, physicalRowCount, latency);
                         return rowCount;
                     } else {
@@ -494,6 +540,7 @@ public class ApplyWal2TableJob extends AbstractQueueConsumerJob<WalTxnNotificati
                     final long start = microClock.getTicks();
                     walTelemetryFacade.store(WAL_TXN_APPLY_START, writer.getTableToken(), walId, seqTxn, -1L, -1L, start - commitTimestamp);
                     processWalSql(writer, sqlInfo, operationCompiler, seqTxn);
+                    markAllChanged();
                     walTelemetryFacade.store(WAL_TXN_SQL_APPLIED, writer.getTableToken(), walId, seqTxn, -1L, -1L, microClock.getTicks() - start);
                     return -1L;
                 case TRUNCATE:
@@ -504,6 +551,7 @@ public class ApplyWal2TableJob extends AbstractQueueConsumerJob<WalTxnNotificati
                         // force mark the transaction as applied
                         writer.markSeqTxnCommitted(seqTxn);
                     }
+                    markAllChanged();
                     return -1L;
                 default:
                     throw new UnsupportedOperationException("Unsupported WAL txn type: " + walTxnType);
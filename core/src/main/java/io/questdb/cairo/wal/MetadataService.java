@@ -31,6 +31,9 @@ import io.questdb.cairo.UpdateOperator;
 import io.questdb.cairo.sql.TableRecordMetadata;
 
 public interface MetadataService {
+
+    void addBloomIndex(CharSequence columnName);
+
     /**
      * Adds new column to table, which can be either empty or can have data already. When existing columns
      * already have data this function will create ".top" file in addition to column files. ".top" file contains
@@ -77,6 +80,15 @@ public interface MetadataService {
 
     void changeCacheFlag(int columnIndex, boolean isCacheOn);
 
+    /**
+     * Rewrites column files of a sealed partition in block compressed format or back to native format.
+     * Compressed partitions are read-only until they are converted back.
+     *
+     * @param partitionTimestamp timestamp of the partition
+     * @param compress           true to compress the partition, false to convert it back to native format
+     */
+    void convertPartition(long partitionTimestamp, boolean compress);
+
     AttachDetachStatus detachPartition(long partitionTimestamp);
 
     void dropIndex(CharSequence columnName);
@@ -26,12 +26,15 @@ package io.questdb.cairo.wal;
 
 import io.questdb.metrics.Counter;
 import io.questdb.metrics.LongGauge;
+import io.questdb.metrics.LongGaugeWithOneLabel;
 import io.questdb.metrics.MetricsRegistry;
 
 import java.util.concurrent.atomic.AtomicLong;
 
 public class WalMetrics {
+    private final LongGaugeWithOneLabel applyLagGauge;
     private final Counter applyPhysicallyWrittenRowsCounter;
+    private final Counter applyQuotaExceededCounter;
     private final LongGauge applyRowsWriteRateGauge;
     private final Counter applyRowsWrittenCounter;
     private final Counter rowsWrittenCounter;
@@ -39,7 +42,9 @@ public class WalMetrics {
     private final AtomicLong totalRowsWrittenTotalTime = new AtomicLong();
 
     public WalMetrics(MetricsRegistry metricsRegistry) {
+        this.applyLagGauge = metricsRegistry.newLongGauge("wal_apply_lag_micros", "table");
         this.applyPhysicallyWrittenRowsCounter = metricsRegistry.newCounter("wal_apply_physically_written_rows");
+        this.applyQuotaExceededCounter = metricsRegistry.newCounter("wal_apply_table_quota_exceeded");
         this.applyRowsWrittenCounter = metricsRegistry.newCounter("wal_apply_written_rows");
         this.applyRowsWriteRateGauge = metricsRegistry.newLongGauge("wal_apply_rows_per_second");
         this.rowsWrittenCounter = metricsRegistry.newCounter("wal_written_rows");
@@ -57,4 +62,24 @@ public class WalMetrics {
     public void addRowsWritten(long rows) {
         rowsWrittenCounter.add(rows);
     }
+
+    public long getApplyLag(CharSequence tableName) {
+        return applyLagGauge.getValue(tableName);
+    }
+
+    public void incApplyQuotaExceeded() {
+        applyQuotaExceededCounter.inc();
+    }
+
+    public void removeApplyLag(CharSequence tableName) {
+        applyLagGauge.remove(tableName);
+    }
+
+    /**
+     * Sets the time between WAL commit and its application to the table storage
+     * for the last applied data transaction of the table.
+     */
+    public void setApplyLag(CharSequence tableName, long lagMicros) {
+        applyLagGauge.setValue(tableName, lagMicros);
+    }
 }
@@ -31,6 +31,11 @@ import io.questdb.cairo.wal.MetadataService;
 
 public interface MetadataServiceStub extends MetadataService {
 
+    @Override
+    default void addBloomIndex(CharSequence columnName) {
+        throw CairoException.critical(0).put("add bloom index does not update sequencer metadata");
+    }
+
     @Override
     default void addIndex(CharSequence columnName, int indexValueBlockSize) {
         throw CairoException.critical(0).put("add index does not update sequencer metadata");
@@ -46,6 +51,11 @@ public interface MetadataServiceStub extends MetadataService {
         throw CairoException.critical(0).put("change cache flag does not update sequencer metadata");
     }
 
+    @Override
+    default void convertPartition(long partitionTimestamp, boolean compress) {
+        throw CairoException.critical(0).put("convert partition does not update sequencer metadata");
+    }
+
     @Override
     default AttachDetachStatus detachPartition(long partitionTimestamp) {
         throw CairoException.critical(0).put("detach partition does not update sequencer metadata");
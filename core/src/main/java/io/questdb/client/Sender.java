@@ -24,17 +24,14 @@
 
 package io.questdb.client;
 
-import io.questdb.cutlass.line.LineChannel;
-import io.questdb.cutlass.line.LineSenderException;
-import io.questdb.cutlass.line.LineTcpSender;
+import io.questdb.cutlass.line.*;
 import io.questdb.cutlass.line.tcp.AuthDb;
 import io.questdb.cutlass.line.tcp.DelegatingTlsChannel;
 import io.questdb.cutlass.line.tcp.PlainTcpLineChannel;
 import io.questdb.network.NetworkFacade;
 import io.questdb.network.NetworkFacadeImpl;
-import io.questdb.std.Chars;
-import io.questdb.std.Numbers;
-import io.questdb.std.NumericException;
+import io.questdb.std.*;
+import io.questdb.std.datetime.millitime.MillisecondClockImpl;
 
 import javax.security.auth.DestroyFailedException;
 import java.io.Closeable;
@@ -222,14 +219,28 @@ public interface Sender extends Closeable {
      * }</pre>
      */
     final class LineSenderBuilder {
+        // indicates that async queue capacity was not set explicitly
+        private static final byte ASYNC_QUEUE_CAPACITY_DEFAULT = 0;
+        // indicates that auto flush interval was not set explicitly
+        private static final byte AUTO_FLUSH_INTERVAL_DEFAULT = -1;
         // indicates that buffer capacity was not set explicitly
         private static final byte BUFFER_CAPACITY_DEFAULT = 0;
+        // indicates that number of connections was not set explicitly
+        private static final byte CONNECTIONS_DEFAULT = 0;
+        private static final int DEFAULT_ASYNC_QUEUE_CAPACITY = 16;
+        private static final long DEFAULT_AUTO_FLUSH_INTERVAL_MILLIS = 100;
         private static final int DEFAULT_BUFFER_CAPACITY = 64 * 1024;
+        private static final int DEFAULT_CONNECTIONS = 1;
         private static final int DEFAULT_PORT = 9009;
         private static final int MIN_BUFFER_SIZE_FOR_AUTH = 512 + 1; // challenge size + 1;
         // indicate that port was not set explicitly
         private static final byte PORT_DEFAULT = 0;
+        private boolean asyncEnabled;
+        private int asyncQueueCapacity = ASYNC_QUEUE_CAPACITY_DEFAULT;
+        private long autoFlushIntervalMillis = AUTO_FLUSH_INTERVAL_DEFAULT;
+        private boolean binaryFormatEnabled;
         private int bufferCapacity = BUFFER_CAPACITY_DEFAULT;
+        private int connections = CONNECTIONS_DEFAULT;
         private String host;
         private String keyId;
         private int port = PORT_DEFAULT;
@@ -306,6 +317,52 @@ public interface Sender extends Closeable {
             return new AdvancedTlsSettings();
         }
 
+        /**
+         * Configure number of buffers the async sender can queue for its I/O threads. When all of them are
+         * queued, the thread calling the Sender waits, see {@link AsyncLineTcpSender#getBackPressureCount()}.
+         * The value is rounded up to a power of 2, default is 16.
+         * <br>
+         * Requires {@link #enableAsync()}.
+         *
+         * @param asyncQueueCapacity number of queued buffers.
+         * @return this instance for method chaining
+         */
+        public LineSenderBuilder asyncQueueCapacity(int asyncQueueCapacity) {
+            if (this.asyncQueueCapacity != ASYNC_QUEUE_CAPACITY_DEFAULT) {
+                throw new LineSenderException("async queue capacity was already configured ")
+                        .put("[configured-capacity=").put(this.asyncQueueCapacity).put("]");
+            }
+            if (asyncQueueCapacity < 1) {
+                throw new LineSenderException("async queue capacity must be positive ")
+                        .put("[capacity=").put(asyncQueueCapacity).put("]");
+            }
+            this.asyncQueueCapacity = asyncQueueCapacity;
+            return this;
+        }
+
+        /**
+         * Configure how long finished rows can wait in the buffer of the async sender before they are
+         * handed over to I/O threads. The interval is checked when a row is finished, you should still
+         * call {@link Sender#flush()} before a period of quiescence. Default is 100 milliseconds.
+         * <br>
+         * Requires {@link #enableAsync()}.
+         *
+         * @param autoFlushIntervalMillis interval in milliseconds, 0 hands over every row.
+         * @return this instance for method chaining
+         */
+        public LineSenderBuilder autoFlushInterval(long autoFlushIntervalMillis) {
+            if (this.autoFlushIntervalMillis != AUTO_FLUSH_INTERVAL_DEFAULT) {
+                throw new LineSenderException("auto flush interval was already configured ")
+                        .put("[configured-interval=").put(this.autoFlushIntervalMillis).put("]");
+            }
+            if (autoFlushIntervalMillis < 0) {
+                throw new LineSenderException("auto flush interval cannot be negative ")
+                        .put("[interval=").put(autoFlushIntervalMillis).put("]");
+            }
+            this.autoFlushIntervalMillis = autoFlushIntervalMillis;
+            return this;
+        }
+
         /**
          * Configure capacity of an internal buffer.
          * Bigger buffer increase batching effect.
@@ -329,48 +386,73 @@ public interface Sender extends Closeable {
          * @return returns a configured instance of Sender.
          */
         public Sender build() {
+            validateAsyncParameters();
             configureDefaults();
             validateParameters();
 
             NetworkFacade nf = NetworkFacadeImpl.INSTANCE;
-            LineChannel channel = new PlainTcpLineChannel(nf, host, port, bufferCapacity * 2);
-            LineTcpSender sender;
-            if (tlsEnabled) {
-                assert (trustStorePath == null) == (trustStorePassword == null); //either both null or both non-null
-                DelegatingTlsChannel tlsChannel;
-                try {
-                    tlsChannel = new DelegatingTlsChannel(channel, trustStorePath, trustStorePassword, tlsValidationMode, host);
-                } catch (Throwable t) {
-                    channel.close();
-                    throw rethrow(t);
-                }
-                channel = tlsChannel;
+            if (asyncEnabled) {
+                return buildAsync(nf);
             }
+            LineChannel channel = newChannel(nf);
+            LineTcpSender sender;
             try {
                 sender = new LineTcpSender(channel, bufferCapacity);
             } catch (Throwable t) {
                 channel.close();
                 throw rethrow(t);
             }
-            if (privateKey != null) {
-                try {
-                    sender.authenticate(keyId, privateKey);
-                } catch (Throwable t) {
-                    sender.close();
-                    throw rethrow(t);
-                } finally {
-                    if (shouldDestroyPrivKey) {
-                        try {
-                            privateKey.destroy();
-                        } catch (DestroyFailedException e) {
-                            // not much we can do
-                        }
-                    }
-                }
+            if (binaryFormatEnabled) {
+                sender.enableBinaryFormat();
             }
+            authenticate(sender, null);
             return sender;
         }
 
+        /**
+         * Configure number of connections the async sender spreads rows over. Each connection has its own
+         * I/O thread. Rows sent over different connections can reach the server in any order, which is
+         * fine for tables receiving out-of-order data. Default is 1.
+         * <br>
+         * Requires {@link #enableAsync()}.
+         *
+         * @param connections number of connections.
+         * @return this instance for method chaining
+         */
+        public LineSenderBuilder connections(int connections) {
+            if (this.connections != CONNECTIONS_DEFAULT) {
+                throw new LineSenderException("number of connections was already configured ")
+                        .put("[configured-connections=").put(this.connections).put("]");
+            }
+            if (connections < 1) {
+                throw new LineSenderException("number of connections must be positive ")
+                        .put("[connections=").put(connections).put("]");
+            }
+            this.connections = connections;
+            return this;
+        }
+
+        /**
+         * Instruct a client to send data from background I/O threads. Threads calling the Sender then do not
+         * wait on the network: {@link Sender#flush()} and a full buffer only copy finished rows into a queue.
+         * The calling thread waits only when the queue is full.
+         * <br>
+         * Errors of I/O threads are thrown by the next flush. {@link Sender#close()} waits until all queued
+         * data is sent.
+         *
+         * @return this instance for method chaining.
+         * @see #asyncQueueCapacity(int)
+         * @see #autoFlushInterval(long)
+         * @see #connections(int)
+         */
+        public LineSenderBuilder enableAsync() {
+            if (asyncEnabled) {
+                throw new LineSenderException("async send was already enabled");
+            }
+            asyncEnabled = true;
+            return this;
+        }
+
         /**
          * Configure authentication. This is needed when QuestDB server required clients to authenticate.
          *
@@ -386,6 +468,24 @@ public interface Sender extends Closeable {
             return new LineSenderBuilder.AuthBuilder();
         }
 
+        /**
+         * Instruct a client to send long, double and timestamp values, including the designated timestamp,
+         * in the binary form rather than as text. This saves the server parsing numbers, which is most of
+         * the ingestion cost for numeric data.
+         * <br>
+         * The server must support the binary form, it is enabled by <code>line.tcp.binary.format.supported</code>
+         * configuration property, which is off by default.
+         *
+         * @return this instance for method chaining.
+         */
+        public LineSenderBuilder enableBinaryFormat() {
+            if (binaryFormatEnabled) {
+                throw new LineSenderException("binary format was already enabled");
+            }
+            binaryFormatEnabled = true;
+            return this;
+        }
+
         /**
          * Instruct a client to use TLS when connecting to a QuestDB server
          *
@@ -421,6 +521,61 @@ public interface Sender extends Closeable {
             throw new LineSenderException(t);
         }
 
+        private void authenticate(AbstractLineSender sender, AsyncLineChannel asyncChannel) {
+            if (privateKey == null) {
+                return;
+            }
+            try {
+                if (asyncChannel == null) {
+                    sender.authenticate(keyId, privateKey);
+                } else {
+                    for (int i = 0, n = asyncChannel.getConnectionCount(); i < n; i++) {
+                        asyncChannel.select(i);
+                        sender.authenticate(keyId, privateKey);
+                    }
+                }
+            } catch (Throwable t) {
+                sender.close();
+                throw rethrow(t);
+            } finally {
+                if (shouldDestroyPrivKey) {
+                    try {
+                        privateKey.destroy();
+                    } catch (DestroyFailedException e) {
+                        // not much we can do
+                    }
+                }
+            }
+        }
+
+        private Sender buildAsync(NetworkFacade nf) {
+            final ObjList<LineChannel> channels = new ObjList<>(connections);
+            AsyncLineChannel asyncChannel;
+            try {
+                for (int i = 0; i < connections; i++) {
+                    channels.add(newChannel(nf));
+                }
+                asyncChannel = new AsyncLineChannel(channels, bufferCapacity, asyncQueueCapacity);
+            } catch (Throwable t) {
+                Misc.freeObjList(channels);
+                throw rethrow(t);
+            }
+            AsyncLineTcpSender sender;
+            try {
+                sender = new AsyncLineTcpSender(asyncChannel, bufferCapacity, autoFlushIntervalMillis, MillisecondClockImpl.INSTANCE);
+            } catch (Throwable t) {
+                asyncChannel.close();
+                throw rethrow(t);
+            }
+            if (binaryFormatEnabled) {
+                sender.enableBinaryFormat();
+            }
+            // connections authenticate synchronously, before I/O threads take over
+            authenticate(sender, asyncChannel);
+            asyncChannel.start();
+            return sender;
+        }
+
         private void configureDefaults() {
             if (bufferCapacity == BUFFER_CAPACITY_DEFAULT) {
                 bufferCapacity = DEFAULT_BUFFER_CAPACITY;
@@ -428,6 +583,46 @@ public interface Sender extends Closeable {
             if (port == PORT_DEFAULT) {
                 port = DEFAULT_PORT;
             }
+            if (asyncQueueCapacity == ASYNC_QUEUE_CAPACITY_DEFAULT) {
+                asyncQueueCapacity = DEFAULT_ASYNC_QUEUE_CAPACITY;
+            } else {
+                asyncQueueCapacity = Numbers.ceilPow2(asyncQueueCapacity);
+            }
+            if (autoFlushIntervalMillis == AUTO_FLUSH_INTERVAL_DEFAULT) {
+                autoFlushIntervalMillis = DEFAULT_AUTO_FLUSH_INTERVAL_MILLIS;
+            }
+            if (connections == CONNECTIONS_DEFAULT) {
+                connections = DEFAULT_CONNECTIONS;
+            }
+        }
+
+        private LineChannel newChannel(NetworkFacade nf) {
+            LineChannel channel = new PlainTcpLineChannel(nf, host, port, bufferCapacity * 2);
+            if (tlsEnabled) {
+                assert (trustStorePath == null) == (trustStorePassword == null); //either both null or both non-null
+                try {
+                    channel = new DelegatingTlsChannel(channel, trustStorePath, trustStorePassword, tlsValidationMode, host);
+                } catch (Throwable t) {
+                    channel.close();
+                    throw rethrow(t);
+                }
+            }
+            return channel;
+        }
+
+        private void validateAsyncParameters() {
+            if (asyncEnabled) {
+                return;
+            }
+            if (asyncQueueCapacity != ASYNC_QUEUE_CAPACITY_DEFAULT) {
+                throw new LineSenderException("async queue capacity configured, but async send was not enabled");
+            }
+            if (autoFlushIntervalMillis != AUTO_FLUSH_INTERVAL_DEFAULT) {
+                throw new LineSenderException("auto flush interval configured, but async send was not enabled");
+            }
+            if (connections != CONNECTIONS_DEFAULT) {
+                throw new LineSenderException("connections configured, but async send was not enabled");
+            }
         }
 
         private void validateParameters() {
@@ -41,6 +41,7 @@ public class HttpConnectionContext extends AbstractMutableIOContext<HttpConnecti
     private static final Log LOG = LogFactory.getLog(HttpConnectionContext.class);
     private final boolean allowDeflateBeforeSend;
     private final CairoSecurityContext cairoSecurityContext;
+    private final HttpContentParser contentParser = new HttpContentParser();
     private final ObjectPool<DirectByteCharSequence> csPool;
     private final boolean dumpNetworkTraffic;
     private final HttpHeaderParser headerParser;
@@ -93,6 +94,7 @@ public class HttpConnectionContext extends AbstractMutableIOContext<HttpConnecti
         this.nCompletedRequests++;
         this.resumeProcessor = null;
         this.headerParser.clear();
+        this.contentParser.clear();
         this.multipartContentParser.clear();
         this.multipartContentHeaderParser.clear();
         this.csPool.clear();
@@ -340,6 +342,52 @@ public class HttpConnectionContext extends AbstractMutableIOContext<HttpConnecti
         }
     }
 
+    private boolean consumeContent(
+            int fd,
+            HttpRequestProcessor processor,
+            long headerEnd,
+            int read,
+            boolean newRequest,
+            RescheduleContext rescheduleContext
+    ) throws PeerDisconnectedException, PeerIsSlowToReadException, ServerDisconnectException, QueryPausedException {
+        if (newRequest) {
+            processor.onHeadersReady(this);
+            contentParser.of(headerParser);
+        }
+
+        processor.resumeRecv(this);
+
+        final HttpContentListener contentListener = (HttpContentListener) processor;
+        final long bufferEnd = recvBuffer + read;
+
+        LOG.debug().$("content").$();
+
+        // content that arrived together with the headers
+        boolean complete = contentParser.isComplete()
+                || (headerEnd < bufferEnd && contentParser.parse(headerEnd, bufferEnd, contentListener));
+
+        while (!complete) {
+            final int n = nf.recv(fd, recvBuffer, recvBufferSize);
+            if (n < 0) {
+                handlePeerDisconnect(DISCONNECT_REASON_PEER_DISCONNECT_AT_RECV);
+                return false;
+            }
+
+            if (n == 0) {
+                // content is parsed as it arrives, there is nothing to keep in the buffer
+                dispatcher.registerChannel(this, IOOperation.READ);
+                return false;
+            }
+
+            LOG.debug().$("content recv [len=").$(n).$(']').$();
+            dumpBuffer(recvBuffer, n);
+            complete = contentParser.parse(recvBuffer, recvBuffer + n, contentListener);
+        }
+
+        completeRequest(processor, rescheduleContext);
+        return true;
+    }
+
     private boolean consumeMultipart(
             int fd,
             HttpRequestProcessor processor,
@@ -584,6 +632,8 @@ public class HttpConnectionContext extends AbstractMutableIOContext<HttpConnecti
                     busyRecv = rejectRequest("Bad request. Multipart POST expected.");
                 } else if (multipartProcessor) {
                     busyRecv = consumeMultipart(fd, processor, headerEnd, read, newRequest, rescheduleContext);
+                } else if (processor instanceof HttpContentListener) {
+                    busyRecv = consumeContent(fd, processor, headerEnd, read, newRequest, rescheduleContext);
                 } else {
 
                     // Do not expect any more bytes to be sent to us before
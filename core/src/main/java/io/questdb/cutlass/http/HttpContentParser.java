@@ -0,0 +1,193 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.http;
+
+import io.questdb.network.PeerDisconnectedException;
+import io.questdb.network.PeerIsSlowToReadException;
+import io.questdb.network.ServerDisconnectException;
+import io.questdb.std.Chars;
+import io.questdb.std.Mutable;
+import io.questdb.std.NumericException;
+import io.questdb.std.Numbers;
+import io.questdb.std.Unsafe;
+import io.questdb.std.str.DirectByteCharSequence;
+
+/**
+ * Extracts request body delimited either by Content-Length or by chunked transfer encoding.
+ * Framing may be split across receive buffers at any byte, content is passed to the listener
+ * as soon as it is received.
+ */
+public class HttpContentParser implements Mutable {
+    private static final int CHUNK_DATA_END = 4;
+    private static final int CHUNK_EXTENSION = 2;
+    private static final int CHUNK_SIZE = 1;
+    private static final int CONTENT = 3;
+    private static final int DONE = 6;
+    // chunk size is a hex number, 15 digits keep it positive as a long
+    private static final int MAX_CHUNK_SIZE_DIGITS = 15;
+    private static final int TRAILER = 5;
+    private boolean chunked;
+    private int chunkSizeDigits;
+    private long remaining;
+    private int state;
+    private int trailerLineLen;
+
+    public HttpContentParser() {
+        clear();
+    }
+
+    @Override
+    public final void clear() {
+        this.chunked = false;
+        this.chunkSizeDigits = 0;
+        this.remaining = 0;
+        this.state = DONE;
+        this.trailerLineLen = 0;
+    }
+
+    public boolean isComplete() {
+        return state == DONE;
+    }
+
+    public void of(HttpRequestHeader header) {
+        clear();
+        final DirectByteCharSequence transferEncoding = header.getHeader("Transfer-Encoding");
+        if (transferEncoding != null) {
+            if (!Chars.equalsIgnoreCase(transferEncoding, "chunked")) {
+                throw HttpException.instance("unsupported transfer encoding [value=").put(transferEncoding).put(']');
+            }
+            chunked = true;
+            state = CHUNK_SIZE;
+            return;
+        }
+
+        final DirectByteCharSequence contentLength = header.getHeader("Content-Length");
+        if (contentLength != null) {
+            try {
+                remaining = Numbers.parseLong(contentLength);
+            } catch (NumericException e) {
+                throw HttpException.instance("invalid content length [value=").put(contentLength).put(']');
+            }
+            if (remaining < 0) {
+                throw HttpException.instance("invalid content length [value=").put(contentLength).put(']');
+            }
+            state = remaining > 0 ? CONTENT : DONE;
+        }
+    }
+
+    /**
+     * Consumes received bytes. Bytes after the end of the body are ignored.
+     *
+     * @return true when the body is complete
+     */
+    public boolean parse(
+            long lo,
+            long hi,
+            HttpContentListener listener
+    ) throws PeerDisconnectedException, PeerIsSlowToReadException, ServerDisconnectException {
+        long p = lo;
+        while (p < hi && state != DONE) {
+            if (state == CONTENT) {
+                final long len = Math.min(remaining, hi - p);
+                listener.onChunk(p, p + len);
+                p += len;
+                remaining -= len;
+                if (remaining == 0) {
+                    state = chunked ? CHUNK_DATA_END : DONE;
+                }
+                continue;
+            }
+
+            final byte b = Unsafe.getUnsafe().getByte(p++);
+            switch (state) {
+                case CHUNK_SIZE: {
+                    final int digit = hexDigit(b);
+                    if (digit > -1) {
+                        if (++chunkSizeDigits > MAX_CHUNK_SIZE_DIGITS) {
+                            throw HttpException.instance("chunk size is too large");
+                        }
+                        remaining = (remaining << 4) | digit;
+                    } else if (chunkSizeDigits == 0) {
+                        throw HttpException.instance("invalid chunk size");
+                    } else if (b == '\n') {
+                        onChunkSize();
+                    } else {
+                        // chunk extension, whitespace or CR
+                        state = CHUNK_EXTENSION;
+                    }
+                    break;
+                }
+                case CHUNK_EXTENSION:
+                    if (b == '\n') {
+                        onChunkSize();
+                    }
+                    break;
+                case CHUNK_DATA_END:
+                    if (b == '\n') {
+                        chunkSizeDigits = 0;
+                        state = CHUNK_SIZE;
+                    } else if (b != '\r') {
+                        throw HttpException.instance("invalid chunk terminator");
+                    }
+                    break;
+                case TRAILER:
+                    // trailer fields are ignored, empty line ends the body
+                    if (b == '\n') {
+                        if (trailerLineLen == 0) {
+                            state = DONE;
+                        }
+                        trailerLineLen = 0;
+                    } else if (b != '\r') {
+                        trailerLineLen++;
+                    }
+                    break;
+            }
+        }
+        return state == DONE;
+    }
+
+    private static int hexDigit(byte b) {
+        if (b >= '0' && b <= '9') {
+            return b - '0';
+        }
+        if (b >= 'a' && b <= 'f') {
+            return b - 'a' + 10;
+        }
+        if (b >= 'A' && b <= 'F') {
+            return b - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private void onChunkSize() {
+        if (remaining > 0) {
+            state = CONTENT;
+        } else {
+            // last chunk
+            trailerLineLen = 0;
+            state = TRAILER;
+        }
+    }
+}
@@ -151,6 +151,7 @@ public class JsonQueryProcessor implements HttpRequestProcessor, Closeable {
             // do not set random for new request to avoid copying random from previous request into next one
             // the only time we need to copy random from state is when we resume request execution
             sqlExecutionContext.with(context.getCairoSecurityContext(), null, null, context.getFd(), circuitBreaker.of(context.getFd()));
+            sqlExecutionContext.setQueryMemoryBudget(state.getMemoryBudget());
             if (state.getStatementTimeout() > 0L) {
                 circuitBreaker.setTimeout(state.getStatementTimeout());
             } else {
@@ -165,7 +166,9 @@ public class JsonQueryProcessor implements HttpRequestProcessor, Closeable {
                 return;
             }
 
-            final RecordCursorFactory factory = QueryCache.getThreadLocalInstance().poll(state.getQuery());
+            // the memory budget is baked into the factory at compile time, so factories
+            // compiled for a non-default budget are neither taken from nor put into the cache
+            final RecordCursorFactory factory = state.getMemoryBudget() == -1 ? QueryCache.getThreadLocalInstance().poll(state.getQuery()) : null;
             if (factory != null) {
                 try {
                     sqlExecutionContext.storeTelemetry(CompiledQuery.SELECT, TelemetryOrigin.HTTP_JSON);
@@ -263,6 +266,7 @@ public class JsonQueryProcessor implements HttpRequestProcessor, Closeable {
         if (state != null) {
             // we are resuming request execution, we need to copy random to execution context
             sqlExecutionContext.with(context.getCairoSecurityContext(), null, state.getRnd(), context.getFd(), circuitBreaker.of(context.getFd()));
+            sqlExecutionContext.setQueryMemoryBudget(state.getMemoryBudget());
             if (!state.isPausedQuery()) {
                 context.resumeResponseSend();
             } else {
@@ -530,7 +534,7 @@ public class JsonQueryProcessor implements HttpRequestProcessor, Closeable {
     ) throws PeerDisconnectedException, PeerIsSlowToReadException, QueryPausedException, SqlException {
         final HttpConnectionContext context = state.getHttpConnectionContext();
         try {
-            if (state.of(factory, sqlExecutionContext)) {
+            if (state.of(factory, state.getMemoryBudget() == -1, sqlExecutionContext)) {
                 header(context.getChunkedResponseSocket(), keepAliveHeader, 200);
                 doResumeSend(state, context, sqlExecutionContext);
                 metrics.jsonQuery().markComplete();
@@ -79,6 +79,7 @@ public class JsonQueryProcessorState implements Mutable, Closeable {
     private RecordCursor cursor;
     private long executeStartNanos;
     private boolean explain = false;
+    private long memoryBudget = -1;
     private boolean noMeta = false;
     private OperationFuture operationFuture;
     private boolean pausedQuery = false;
@@ -139,6 +140,7 @@ public class JsonQueryProcessorState implements Mutable, Closeable {
         columnIndex = 0;
         countRows = false;
         explain = false;
+        memoryBudget = -1;
         noMeta = false;
         timings = false;
         pausedQuery = false;
@@ -174,6 +176,15 @@ public class JsonQueryProcessorState implements Mutable, Closeable {
         explain = Chars.equalsNc("true", request.getUrlParam("explain"));
         quoteLargeNum = Chars.equalsNc("true", request.getUrlParam("quoteLargeNum"))
                 || Chars.equalsNc("con", request.getUrlParam("src"));
+        memoryBudget = -1;
+        final CharSequence budget = request.getUrlParam("memoryBudget");
+        if (budget != null) {
+            try {
+                memoryBudget = Math.max(Numbers.parseLongSize(budget), 0);
+            } catch (NumericException e) {
+                // configured budget applies
+            }
+        }
     }
 
     public LogRecord critical() {
@@ -204,6 +215,14 @@ public class JsonQueryProcessorState implements Mutable, Closeable {
         return operationFuture;
     }
 
+    /**
+     * Returns the query memory budget requested with the memoryBudget URL parameter,
+     * or -1 if the configured budget applies.
+     */
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
     public CharSequence getQuery() {
         return query;
     }
@@ -784,11 +803,6 @@ public class JsonQueryProcessorState implements Mutable, Closeable {
         return cursor == null;
     }
 
-    boolean of(RecordCursorFactory factory, SqlExecutionContextImpl sqlExecutionContext)
-            throws PeerDisconnectedException, PeerIsSlowToReadException, SqlException {
-        return of(factory, true, sqlExecutionContext);
-    }
-
     boolean of(RecordCursorFactory factory, boolean queryCacheable, SqlExecutionContextImpl sqlExecutionContext)
             throws PeerDisconnectedException, PeerIsSlowToReadException, SqlException {
         this.recordCursorFactory = factory;
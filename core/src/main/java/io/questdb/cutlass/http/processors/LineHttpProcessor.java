@@ -0,0 +1,96 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.http.processors;
+
+import io.questdb.cairo.CairoEngine;
+import io.questdb.cutlass.http.*;
+import io.questdb.cutlass.line.tcp.LineTcpReceiverConfiguration;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.network.PeerDisconnectedException;
+import io.questdb.network.PeerIsSlowToReadException;
+
+import java.io.Closeable;
+
+/**
+ * Accepts line protocol in the request body, which may use chunked transfer encoding.
+ * All measurements of a request are written to WAL tables in one transaction per table,
+ * and committed only when the whole body has been parsed. The response is 204 when the
+ * request is committed, and 400 with the error message when it is rolled back, so the
+ * client knows whether the batch has to be resent.
+ */
+public class LineHttpProcessor implements HttpRequestProcessor, HttpContentListener, Closeable {
+    private static final Log LOG = LogFactory.getLog(LineHttpProcessor.class);
+    // Local value has to be static because each thread will have its own instance of
+    // processor. For different threads to lookup the same value from local value map the key,
+    // which is LV, has to be the same between processor instances
+    private static final LocalValue<LineHttpProcessorState> LV = new LocalValue<>();
+    private final LineTcpReceiverConfiguration configuration;
+    private final CairoEngine engine;
+    private HttpConnectionContext transientContext;
+    private LineHttpProcessorState transientState;
+
+    public LineHttpProcessor(CairoEngine engine, LineTcpReceiverConfiguration configuration) {
+        this.engine = engine;
+        this.configuration = configuration;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void onChunk(long lo, long hi) {
+        transientState.parse(lo, hi, transientContext.getCairoSecurityContext());
+    }
+
+    @Override
+    public void onRequestComplete(HttpConnectionContext context) throws PeerDisconnectedException, PeerIsSlowToReadException {
+        final LineHttpProcessorState state = LV.get(context);
+        state.onRequestComplete(context.getCairoSecurityContext());
+        if (state.isOk()) {
+            LOG.debug().$("committed line protocol request [fd=").$(context.getFd()).$(", rows=").$(state.getRowCount()).I$();
+            context.simpleResponse().sendStatus(204);
+        } else {
+            LOG.info().$("rejected line protocol request [fd=").$(context.getFd()).$(", error=").$(state.getError()).I$();
+            context.simpleResponse().sendStatus(400, state.getError());
+        }
+    }
+
+    @Override
+    public void resumeRecv(HttpConnectionContext context) {
+        this.transientContext = context;
+        this.transientState = LV.get(context);
+        if (transientState == null) {
+            LOG.debug().$("new line protocol state").$();
+            LV.set(context, transientState = new LineHttpProcessorState(engine, configuration));
+        }
+    }
+
+    @Override
+    public void resumeSend(HttpConnectionContext context) throws PeerDisconnectedException, PeerIsSlowToReadException {
+        context.resumeResponseSend();
+    }
+}
@@ -0,0 +1,207 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.http.processors;
+
+import io.questdb.cairo.CairoEngine;
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.CairoSecurityContext;
+import io.questdb.cairo.CommitFailedException;
+import io.questdb.cutlass.line.tcp.LineTcpParser;
+import io.questdb.cutlass.line.tcp.LineTcpReceiverConfiguration;
+import io.questdb.cutlass.line.tcp.LineWalTransaction;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.MemoryTag;
+import io.questdb.std.Misc;
+import io.questdb.std.Mutable;
+import io.questdb.std.Unsafe;
+import io.questdb.std.Vect;
+import io.questdb.std.str.StringSink;
+
+import java.io.Closeable;
+
+class LineHttpProcessorState implements Mutable, Closeable {
+    private static final Log LOG = LogFactory.getLog(LineHttpProcessorState.class);
+    private final long bufHi;
+    private final long bufLo;
+    private final StringSink error = new StringSink();
+    private final LineTcpParser parser;
+    private final LineWalTransaction transaction;
+    private long bufPos;
+    private long measurementLo;
+    private long rowCount;
+
+    LineHttpProcessorState(CairoEngine engine, LineTcpReceiverConfiguration configuration) {
+        this.parser = new LineTcpParser(
+                configuration.isStringAsTagSupported(),
+                configuration.isSymbolAsFieldSupported(),
+                configuration.isBinaryFormatSupported()
+        );
+        this.transaction = new LineWalTransaction(configuration, engine);
+        final int bufSize = configuration.getNetMsgBufferSize();
+        this.bufLo = Unsafe.malloc(bufSize, MemoryTag.NATIVE_HTTP_CONN);
+        this.bufHi = bufLo + bufSize;
+        clear();
+    }
+
+    @Override
+    public void clear() {
+        transaction.rollback();
+        error.clear();
+        rowCount = 0;
+        resetParser();
+    }
+
+    @Override
+    public void close() {
+        clear();
+        Misc.free(transaction);
+        Unsafe.free(bufLo, bufHi - bufLo, MemoryTag.NATIVE_HTTP_CONN);
+    }
+
+    CharSequence getError() {
+        return error;
+    }
+
+    long getRowCount() {
+        return rowCount;
+    }
+
+    boolean isOk() {
+        return error.length() == 0;
+    }
+
+    /**
+     * Parses the last measurement, which may come without a trailing line feed, and commits
+     * the transaction. Rolls back when any measurement of the request has failed.
+     */
+    void onRequestComplete(CairoSecurityContext securityContext) {
+        if (isOk() && bufPos > measurementLo) {
+            if (bufPos == bufHi && !compactBuffer()) {
+                onMeasurementTooLarge();
+            } else {
+                Unsafe.getUnsafe().putByte(bufPos++, (byte) '\n');
+                parse(securityContext);
+                if (isOk() && bufPos > measurementLo) {
+                    error.put("incomplete measurement [measurement=").put(rowCount + 1).put(']');
+                }
+            }
+        }
+
+        if (isOk()) {
+            try {
+                transaction.commit();
+                return;
+            } catch (CommitFailedException e) {
+                onCommitFailed(e);
+            }
+        }
+        LOG.info().$("rolling back line protocol request [error=").$(error).I$();
+        transaction.rollback();
+    }
+
+    void parse(long lo, long hi, CairoSecurityContext securityContext) {
+        while (lo < hi && isOk()) {
+            if (bufPos == bufHi && !compactBuffer()) {
+                onMeasurementTooLarge();
+                return;
+            }
+            final long len = Math.min(hi - lo, bufHi - bufPos);
+            Vect.memcpy(bufPos, lo, len);
+            bufPos += len;
+            lo += len;
+            parse(securityContext);
+        }
+    }
+
+    /**
+     * Moves incomplete measurement to the start of the buffer, keeping parser pointers valid.
+     *
+     * @return true when there was space to reclaim
+     */
+    private boolean compactBuffer() {
+        if (measurementLo > bufLo) {
+            final long len = bufPos - measurementLo;
+            if (len > 0) {
+                Vect.memmove(bufLo, measurementLo, len);
+                parser.shl(measurementLo - bufLo);
+                measurementLo = bufLo;
+                bufPos = bufLo + len;
+            } else {
+                resetParser();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private void onCommitFailed(CommitFailedException e) {
+        error.put("commit failed [error=").put(String.valueOf(e.getCause().getMessage())).put(']');
+    }
+
+    private void onMeasurementTooLarge() {
+        error.put("measurement is larger than the buffer [measurement=").put(rowCount + 1)
+                .put(", bufferSize=").put(bufHi - bufLo)
+                .put(']');
+    }
+
+    private void parse(CairoSecurityContext securityContext) {
+        while (true) {
+            switch (parser.parseMeasurement(bufPos)) {
+                case MEASUREMENT_COMPLETE:
+                    try {
+                        transaction.append(securityContext, parser);
+                    } catch (CairoException e) {
+                        error.put(e.getFlyweightMessage()).put(" [measurement=").put(rowCount + 1).put(']');
+                        return;
+                    } catch (CommitFailedException e) {
+                        onCommitFailed(e);
+                        return;
+                    }
+                    rowCount++;
+                    parser.startNextMeasurement();
+                    measurementLo = parser.getBufferAddress();
+                    if (measurementLo == bufPos) {
+                        resetParser();
+                    }
+                    break;
+                case ERROR:
+                    error.put("could not parse measurement, ").put(parser.getErrorCode().name())
+                            .put(" [measurement=").put(rowCount + 1)
+                            .put(']');
+                    return;
+                default:
+                    // buffer underflow
+                    return;
+            }
+        }
+    }
+
+    private void resetParser() {
+        parser.of(bufLo);
+        bufPos = bufLo;
+        measurementLo = bufLo;
+    }
+}
@@ -27,6 +27,7 @@ package io.questdb.cutlass.line;
 import io.questdb.cairo.TableUtils;
 import io.questdb.client.Sender;
 import io.questdb.cutlass.line.tcp.AuthDb;
+import io.questdb.cutlass.line.tcp.LineTcpParser;
 import io.questdb.std.*;
 import io.questdb.std.str.AbstractCharSink;
 import io.questdb.std.str.CharSink;
@@ -40,6 +41,7 @@ public abstract class AbstractLineSender extends AbstractCharSink implements Clo
     private final long bufA;
     private final long bufB;
     protected LineChannel lineChannel;
+    private boolean binaryFormat;
     private boolean closed;
     private boolean enableValidation;
     private boolean hasColumns;
@@ -66,8 +68,7 @@ public abstract class AbstractLineSender extends AbstractCharSink implements Clo
     }
 
     public void $(long timestamp) {
-        put(' ').put(timestamp);
-        atNow();
+        at(timestamp);
     }
 
     public void $() {
@@ -76,7 +77,11 @@ public abstract class AbstractLineSender extends AbstractCharSink implements Clo
 
     @Override
     public final void at(long timestamp) {
-        put(' ').put(timestamp);
+        if (binaryFormat) {
+            put(' ').put('=').putBinaryLong(timestamp);
+        } else {
+            put(' ').put(timestamp);
+        }
         atNow();
     }
 
@@ -91,6 +96,7 @@ public abstract class AbstractLineSender extends AbstractCharSink implements Clo
         hasTable = false;
         hasColumns = false;
         hasSymbols = false;
+        rowComplete();
     }
 
     public final void authenticate(String keyId, PrivateKey privateKey) {
@@ -134,13 +140,33 @@ public abstract class AbstractLineSender extends AbstractCharSink implements Clo
         enableValidation = false;
     }
 
+    /**
+     * Sends long, double and timestamp values in the binary form, which saves the server
+     * parsing them from text. The form is supported by the TCP receiver only, see
+     * {@link LineTcpParser}.
+     */
+    public void enableBinaryFormat() {
+        binaryFormat = true;
+    }
+
     @Override
     public final AbstractLineSender doubleColumn(CharSequence name, double value) {
         return field(name, value);
     }
 
     public AbstractLineSender field(CharSequence name, long value) {
-        writeFieldName(name).put(value).put('i');
+        if (binaryFormat) {
+            writeBinaryFieldName(name, LineTcpParser.BINARY_TYPE_LONG);
+            // zigzag varint
+            long v = (value << 1) ^ (value >> 63);
+            while ((v & ~0x7fL) != 0) {
+                put((char) ((v & 0x7f) | 0x80));
+                v >>>= 7;
+            }
+            put((char) v);
+        } else {
+            writeFieldName(name).put(value).put('i');
+        }
         return this;
     }
 
@@ -154,7 +180,12 @@ public abstract class AbstractLineSender extends AbstractCharSink implements Clo
     }
 
     public AbstractLineSender field(CharSequence name, double value) {
-        writeFieldName(name).put(value);
+        if (binaryFormat) {
+            writeBinaryFieldName(name, LineTcpParser.BINARY_TYPE_DOUBLE);
+            putBinaryLong(Double.doubleToRawLongBits(value));
+        } else {
+            writeFieldName(name).put(value);
+        }
         return this;
     }
 
@@ -294,7 +325,12 @@ public abstract class AbstractLineSender extends AbstractCharSink implements Clo
 
     @Override
     public final AbstractLineSender timestampColumn(CharSequence name, long value) {
-        writeFieldName(name).put(value).put('t');
+        if (binaryFormat) {
+            writeBinaryFieldName(name, LineTcpParser.BINARY_TYPE_TIMESTAMP);
+            putBinaryLong(value);
+        } else {
+            writeFieldName(name).put(value).put('t');
+        }
         return this;
     }
 
@@ -308,6 +344,15 @@ public abstract class AbstractLineSender extends AbstractCharSink implements Clo
         return -1;
     }
 
+    private void putBinaryLong(long value) {
+        validateNotClosed();
+        if (ptr + Long.BYTES >= hi) {
+            send00();
+        }
+        Unsafe.getUnsafe().putLong(ptr, value);
+        ptr += Long.BYTES;
+    }
+
     private byte[] receiveChallengeBytes() {
         int n = 0;
         for (; ; ) {
@@ -362,6 +407,10 @@ public abstract class AbstractLineSender extends AbstractCharSink implements Clo
         }
     }
 
+    private void writeBinaryFieldName(CharSequence name, byte type) {
+        writeFieldName(name).put('=').put((char) type);
+    }
+
     private CharSink writeFieldName(CharSequence name) {
         validateNotClosed();
         validateColumnName(name);
@@ -377,6 +426,12 @@ public abstract class AbstractLineSender extends AbstractCharSink implements Clo
         throw new LineSenderException("table expected");
     }
 
+    /**
+     * Called after each row is finished, subclasses can flush on their own thresholds.
+     */
+    protected void rowComplete() {
+    }
+
     protected void send00() {
         validateNotClosed();
         int len = (int) (ptr - lineStart);
@@ -0,0 +1,272 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.line;
+
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.mp.*;
+import io.questdb.std.*;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Channel that never makes the sending thread wait on the network. Sent bytes are copied into
+ * a ring of native chunks, and each connection has its own I/O thread which takes chunks off
+ * the ring and writes them to its socket. With multiple connections every chunk goes to
+ * whichever connection is free, so chunks must hold whole lines.
+ * <br>
+ * The sending thread waits only when every chunk of the ring is still queued. Such waits are
+ * counted, see {@link #getBackPressureCount()} and {@link #getBackPressureNanos()}.
+ * <br>
+ * Before {@link #start()} the channel is synchronous: it sends to and receives from the
+ * connection chosen via {@link #select(int)}. This is how each connection authenticates.
+ * <br>
+ * Send errors on I/O threads stop all of them, the error is thrown on the next send.
+ */
+public class AsyncLineChannel implements LineChannel {
+    private static final long IDLE_PARK_NANOS = 50_000;
+    private static final int IDLE_SPIN_COUNT = 10_000;
+    private static final Log LOG = LogFactory.getLog(AsyncLineChannel.class);
+    private final ObjList<LineChannel> channels;
+    private final int chunkCapacity;
+    private final Sequence consumerSeq;
+    private final SOCountDownLatch halted = new SOCountDownLatch();
+    private final SPSequence producerSeq;
+    private final RingQueue<Chunk> queue;
+    private final AtomicLong sentBytes = new AtomicLong();
+    private final AtomicLong sentChunks = new AtomicLong();
+    private long backPressureCount;
+    private long backPressureNanos;
+    private boolean closed;
+    private volatile Throwable error;
+    private volatile int errorConnection = -1;
+    private long publishedChunks;
+    private volatile boolean running;
+    private int selected;
+    private boolean started;
+
+    /**
+     * @param channels      connections, the channel takes ownership of them and closes them on {@link #close()}
+     * @param chunkCapacity size of a chunk in bytes, typically capacity of the sender buffer
+     * @param queueCapacity number of chunks in the ring, must be a power of 2
+     */
+    public AsyncLineChannel(ObjList<LineChannel> channels, int chunkCapacity, int queueCapacity) {
+        assert channels.size() > 0;
+        this.channels = channels;
+        this.chunkCapacity = chunkCapacity;
+        this.queue = new RingQueue<>(Chunk::new, chunkCapacity, queueCapacity, MemoryTag.NATIVE_ILP_RSS);
+        this.producerSeq = new SPSequence(queueCapacity);
+        this.consumerSeq = channels.size() == 1 ? new SCSequence() : new MCSequence(queueCapacity);
+        producerSeq.then(consumerSeq).then(producerSeq);
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (started) {
+            // I/O threads send everything published so far before they exit
+            running = false;
+            halted.await();
+            final Throwable th = error;
+            if (th != null) {
+                LOG.error().$("async send failed, queued data was not sent [connection=").$(errorConnection)
+                        .$(", e=").$(th).I$();
+            }
+        }
+        Misc.freeObjList(channels);
+        Misc.free(queue);
+    }
+
+    @Override
+    public int errno() {
+        final int connection = errorConnection;
+        return channels.getQuick(connection != -1 ? connection : selected).errno();
+    }
+
+    /**
+     * @return number of sends which found the queue full and had to wait for an I/O thread
+     */
+    public long getBackPressureCount() {
+        return backPressureCount;
+    }
+
+    /**
+     * @return total time, in nanoseconds, the sending thread waited for an I/O thread
+     */
+    public long getBackPressureNanos() {
+        return backPressureNanos;
+    }
+
+    public int getConnectionCount() {
+        return channels.size();
+    }
+
+    /**
+     * @return number of chunks that were handed to I/O threads but are not sent yet
+     */
+    public long getPendingChunks() {
+        return publishedChunks - sentChunks.get();
+    }
+
+    public long getSentBytes() {
+        return sentBytes.get();
+    }
+
+    @Override
+    public int receive(long ptr, int len) {
+        if (started) {
+            throw new LineSenderException("cannot receive, async send is started");
+        }
+        return channels.getQuick(selected).receive(ptr, len);
+    }
+
+    /**
+     * Selects connection used by synchronous send and receive before the channel is started.
+     *
+     * @param connection index of the connection
+     */
+    public void select(int connection) {
+        assert !started && connection > -1 && connection < channels.size();
+        selected = connection;
+    }
+
+    @Override
+    public void send(long ptr, int len) {
+        if (!started) {
+            channels.getQuick(selected).send(ptr, len);
+            return;
+        }
+        checkError();
+        while (len > 0) {
+            final long cursor = nextCursor();
+            final Chunk chunk = queue.get(cursor);
+            final int n = Math.min(len, chunkCapacity);
+            Vect.memcpy(chunk.address, ptr, n);
+            chunk.size = n;
+            producerSeq.done(cursor);
+            publishedChunks++;
+            ptr += n;
+            len -= n;
+        }
+    }
+
+    public void start() {
+        assert !started;
+        started = true;
+        running = true;
+        final int n = channels.size();
+        halted.setCount(n);
+        for (int i = 0; i < n; i++) {
+            final int connection = i;
+            final Thread thread = new Thread(() -> {
+                try {
+                    runConnection(connection);
+                } finally {
+                    halted.countDown();
+                }
+            }, "questdb-ilp-sender-" + connection);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private void checkError() {
+        final Throwable th = error;
+        if (th != null) {
+            if (th instanceof LineSenderException) {
+                throw (LineSenderException) th;
+            }
+            throw new LineSenderException("async send failed ", th).put("[connection=").put(errorConnection).put(']');
+        }
+    }
+
+    private long nextCursor() {
+        long cursor = producerSeq.next();
+        if (cursor < 0) {
+            // every chunk is queued, wait for I/O threads to catch up
+            final long waitStart = System.nanoTime();
+            backPressureCount++;
+            do {
+                checkError();
+                Os.pause();
+                cursor = producerSeq.next();
+            } while (cursor < 0);
+            backPressureNanos += System.nanoTime() - waitStart;
+        }
+        return cursor;
+    }
+
+    private void runConnection(int connection) {
+        final LineChannel channel = channels.getQuick(connection);
+        int idleCount = 0;
+        while (error == null) {
+            // read the flag before the queue, chunks published before close() are still sent
+            final boolean stopping = !running;
+            final long cursor = consumerSeq.next();
+            if (cursor > -1) {
+                final Chunk chunk = queue.get(cursor);
+                final int size = chunk.size;
+                try {
+                    channel.send(chunk.address, size);
+                } catch (Throwable th) {
+                    errorConnection = connection;
+                    error = th;
+                    LOG.error().$("async send failed [connection=").$(connection).$(", e=").$(th).I$();
+                    break;
+                } finally {
+                    consumerSeq.done(cursor);
+                }
+                sentBytes.addAndGet(size);
+                sentChunks.incrementAndGet();
+                idleCount = 0;
+            } else if (cursor == -1) {
+                if (stopping) {
+                    break;
+                }
+                if (idleCount++ < IDLE_SPIN_COUNT) {
+                    Os.pause();
+                } else {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            } else {
+                Os.pause();
+            }
+        }
+    }
+
+    private static class Chunk {
+        // memory is owned by the queue
+        private final long address;
+        private int size;
+
+        private Chunk(long address, long capacity) {
+            this.address = address;
+        }
+    }
+}
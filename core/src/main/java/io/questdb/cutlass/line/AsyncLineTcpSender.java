@@ -0,0 +1,97 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.line;
+
+import io.questdb.client.Sender;
+import io.questdb.std.datetime.millitime.MillisecondClock;
+
+/**
+ * Sender which hands its buffer over to the I/O threads of {@link AsyncLineChannel} rather than
+ * writing it to a socket. Buffer is handed over when it is full, on {@link #flush()} and, after
+ * a row, when auto flush interval has elapsed since the previous hand over. A hand over copies
+ * complete rows only, the unfinished row stays in the buffer, so rows can be spread over
+ * multiple connections.
+ * <br>
+ * Use {@link Sender#builder()} and {@link Sender.LineSenderBuilder#enableAsync()} to create one.
+ */
+public class AsyncLineTcpSender extends AbstractLineSender {
+    private final AsyncLineChannel asyncChannel;
+    private final long autoFlushIntervalMillis;
+    private final MillisecondClock clock;
+    private long lastFlushMillis;
+
+    /**
+     * @param channel                 channel to hand buffers to, the sender takes ownership of it
+     * @param bufferCapacity          capacity of an internal buffer in bytes
+     * @param autoFlushIntervalMillis max time rows wait in the buffer, checked when a row is finished
+     * @param clock                   clock to measure auto flush interval with
+     */
+    public AsyncLineTcpSender(AsyncLineChannel channel, int bufferCapacity, long autoFlushIntervalMillis, MillisecondClock clock) {
+        super(channel, bufferCapacity);
+        this.asyncChannel = channel;
+        this.autoFlushIntervalMillis = autoFlushIntervalMillis;
+        this.clock = clock;
+        this.lastFlushMillis = clock.getTicks();
+    }
+
+    /**
+     * Hands complete rows over to I/O threads. Unlike synchronous senders this does not wait for
+     * the network, the data may still be queued when this method returns. Use {@link #close()}
+     * to wait for all data to be sent.
+     */
+    @Override
+    public void flush() {
+        send00();
+    }
+
+    public long getBackPressureCount() {
+        return asyncChannel.getBackPressureCount();
+    }
+
+    public long getBackPressureNanos() {
+        return asyncChannel.getBackPressureNanos();
+    }
+
+    public long getPendingChunks() {
+        return asyncChannel.getPendingChunks();
+    }
+
+    public long getSentBytes() {
+        return asyncChannel.getSentBytes();
+    }
+
+    @Override
+    protected void rowComplete() {
+        if (clock.getTicks() - lastFlushMillis >= autoFlushIntervalMillis) {
+            send00();
+        }
+    }
+
+    @Override
+    protected void send00() {
+        super.send00();
+        lastFlushMillis = clock.getTicks();
+    }
+}
@@ -176,16 +176,36 @@ public class DefaultLineTcpReceiverConfiguration implements LineTcpReceiverConfi
         return 30_000;
     }
 
+    @Override
+    public int getWriterMaxShards() {
+        return 0;
+    }
+
     @Override
     public int getWriterQueueCapacity() {
         return 64;
     }
 
+    @Override
+    public long getWriterShardEvents() {
+        return 10_000;
+    }
+
+    @Override
+    public double getWriterShardLoadRatio() {
+        return 0.5;
+    }
+
     @Override
     public WorkerPoolConfiguration getWriterWorkerPoolConfiguration() {
         return SHARED_CONFIGURATION;
     }
 
+    @Override
+    public boolean isBinaryFormatSupported() {
+        return true;
+    }
+
     @Override
     public boolean isEnabled() {
         return true;
@@ -49,6 +49,7 @@ class LineTcpMeasurementEvent implements Closeable {
     private final int maxColumnNameLength;
     private final boolean stringToCharCastAllowed;
     private final LineProtoTimestampAdapter timestampAdapter;
+    private boolean columnsByName;
     private boolean commitOnWriterClose;
     private TableUpdateDetails tableUpdateDetails;
     private int writerWorkerId;
@@ -121,6 +122,85 @@ class LineTcpMeasurementEvent implements Closeable {
         tableUpdateDetails.releaseWriter(commitOnWriterClose);
     }
 
+    private long putEntity(TableWriter.Row row, int colIndex, byte entityType, long offset) {
+        CharSequence cs;
+        switch (entityType) {
+            case LineTcpParser.ENTITY_TYPE_TAG:
+                cs = buffer.readUtf16Chars(offset);
+                row.putSym(colIndex, cs);
+                offset += cs.length() * 2L + Integer.BYTES;
+                break;
+            case LineTcpParser.ENTITY_TYPE_CACHED_TAG:
+                row.putSymIndex(colIndex, buffer.readInt(offset));
+                offset += Integer.BYTES;
+                break;
+            case LineTcpParser.ENTITY_TYPE_LONG:
+            case LineTcpParser.ENTITY_TYPE_GEOLONG:
+                row.putLong(colIndex, buffer.readLong(offset));
+                offset += Long.BYTES;
+                break;
+            case LineTcpParser.ENTITY_TYPE_INTEGER:
+            case LineTcpParser.ENTITY_TYPE_GEOINT:
+                row.putInt(colIndex, buffer.readInt(offset));
+                offset += Integer.BYTES;
+                break;
+            case LineTcpParser.ENTITY_TYPE_SHORT:
+            case LineTcpParser.ENTITY_TYPE_GEOSHORT:
+                row.putShort(colIndex, buffer.readShort(offset));
+                offset += Short.BYTES;
+                break;
+            case LineTcpParser.ENTITY_TYPE_BYTE:
+            case LineTcpParser.ENTITY_TYPE_GEOBYTE:
+                row.putByte(colIndex, buffer.readByte(offset));
+                offset += Byte.BYTES;
+                break;
+            case LineTcpParser.ENTITY_TYPE_DATE:
+                row.putDate(colIndex, buffer.readLong(offset));
+                offset += Long.BYTES;
+                break;
+            case LineTcpParser.ENTITY_TYPE_DOUBLE:
+                row.putDouble(colIndex, buffer.readDouble(offset));
+                offset += Double.BYTES;
+                break;
+            case LineTcpParser.ENTITY_TYPE_FLOAT:
+                row.putFloat(colIndex, buffer.readFloat(offset));
+                offset += Float.BYTES;
+                break;
+            case LineTcpParser.ENTITY_TYPE_BOOLEAN:
+                row.putBool(colIndex, buffer.readByte(offset) == 1);
+                offset += Byte.BYTES;
+                break;
+            case LineTcpParser.ENTITY_TYPE_STRING:
+                cs = buffer.readUtf16Chars(offset);
+                row.putStr(colIndex, cs);
+                offset += cs.length() * 2L + Integer.BYTES;
+                break;
+            case LineTcpParser.ENTITY_TYPE_CHAR:
+                row.putChar(colIndex, buffer.readChar(offset));
+                offset += Character.BYTES;
+                break;
+            case LineTcpParser.ENTITY_TYPE_LONG256:
+                cs = buffer.readUtf16Chars(offset);
+                row.putLong256(colIndex, cs);
+                offset += cs.length() * 2L + Integer.BYTES;
+                break;
+            case LineTcpParser.ENTITY_TYPE_TIMESTAMP:
+                row.putTimestamp(colIndex, buffer.readLong(offset));
+                offset += Long.BYTES;
+                break;
+            case LineTcpParser.ENTITY_TYPE_UUID:
+                row.putLong128(colIndex, buffer.readLong(offset), buffer.readLong(offset + Long.BYTES));
+                offset += Long.BYTES * 2;
+                break;
+            case ENTITY_TYPE_NULL:
+                // ignored, default nulls is used
+                break;
+            default:
+                throw new UnsupportedOperationException("entityType " + entityType + " is not implemented!");
+        }
+        return offset;
+    }
+
     void append() throws CommitFailedException {
         TableWriter.Row row = null;
         try {
@@ -198,81 +278,7 @@ class LineTcpMeasurementEvent implements Closeable {
                     }
                 }
 
-                CharSequence cs;
-                switch (entityType) {
-                    case LineTcpParser.ENTITY_TYPE_TAG:
-                        cs = buffer.readUtf16Chars(offset);
-                        row.putSym(colIndex, cs);
-                        offset += cs.length() * 2L + Integer.BYTES;
-                        break;
-                    case LineTcpParser.ENTITY_TYPE_CACHED_TAG:
-                        row.putSymIndex(colIndex, buffer.readInt(offset));
-                        offset += Integer.BYTES;
-                        break;
-                    case LineTcpParser.ENTITY_TYPE_LONG:
-                    case LineTcpParser.ENTITY_TYPE_GEOLONG:
-                        row.putLong(colIndex, buffer.readLong(offset));
-                        offset += Long.BYTES;
-                        break;
-                    case LineTcpParser.ENTITY_TYPE_INTEGER:
-                    case LineTcpParser.ENTITY_TYPE_GEOINT:
-                        row.putInt(colIndex, buffer.readInt(offset));
-                        offset += Integer.BYTES;
-                        break;
-                    case LineTcpParser.ENTITY_TYPE_SHORT:
-                    case LineTcpParser.ENTITY_TYPE_GEOSHORT:
-                        row.putShort(colIndex, buffer.readShort(offset));
-                        offset += Short.BYTES;
-                        break;
-                    case LineTcpParser.ENTITY_TYPE_BYTE:
-                    case LineTcpParser.ENTITY_TYPE_GEOBYTE:
-                        row.putByte(colIndex, buffer.readByte(offset));
-                        offset += Byte.BYTES;
-                        break;
-                    case LineTcpParser.ENTITY_TYPE_DATE:
-                        row.putDate(colIndex, buffer.readLong(offset));
-                        offset += Long.BYTES;
-                        break;
-                    case LineTcpParser.ENTITY_TYPE_DOUBLE:
-                        row.putDouble(colIndex, buffer.readDouble(offset));
-                        offset += Double.BYTES;
-                        break;
-                    case LineTcpParser.ENTITY_TYPE_FLOAT:
-                        row.putFloat(colIndex, buffer.readFloat(offset));
-                        offset += Float.BYTES;
-                        break;
-                    case LineTcpParser.ENTITY_TYPE_BOOLEAN:
-                        row.putBool(colIndex, buffer.readByte(offset) == 1);
-                        offset += Byte.BYTES;
-                        break;
-                    case LineTcpParser.ENTITY_TYPE_STRING:
-                        cs = buffer.readUtf16Chars(offset);
-                        row.putStr(colIndex, cs);
-                        offset += cs.length() * 2L + Integer.BYTES;
-                        break;
-                    case LineTcpParser.ENTITY_TYPE_CHAR:
-                        row.putChar(colIndex, buffer.readChar(offset));
-                        offset += Character.BYTES;
-                        break;
-                    case LineTcpParser.ENTITY_TYPE_LONG256:
-                        cs = buffer.readUtf16Chars(offset);
-                        row.putLong256(colIndex, cs);
-                        offset += cs.length() * 2L + Integer.BYTES;
-                        break;
-                    case LineTcpParser.ENTITY_TYPE_TIMESTAMP:
-                        row.putTimestamp(colIndex, buffer.readLong(offset));
-                        offset += Long.BYTES;
-                        break;
-                    case LineTcpParser.ENTITY_TYPE_UUID:
-                        row.putLong128(colIndex, buffer.readLong(offset), buffer.readLong(offset + Long.BYTES));
-                        offset += Long.BYTES * 2;
-                        break;
-                    case ENTITY_TYPE_NULL:
-                        // ignored, default nulls is used
-                        break;
-                    default:
-                        throw new UnsupportedOperationException("entityType " + entityType + " is not implemented!");
-                }
+                offset = putEntity(row, colIndex, entityType, offset);
             }
             row.append();
             tableUpdateDetails.commitIfMaxUncommittedRowsCountReached();
@@ -293,9 +299,11 @@ class LineTcpMeasurementEvent implements Closeable {
     void createMeasurementEvent(
             TableUpdateDetails tud,
             LineTcpParser parser,
-            int workerId
+            int workerId,
+            int writerWorkerId
     ) {
-        writerWorkerId = LineTcpMeasurementEventType.ALL_WRITERS_INCOMPLETE_EVENT;
+        this.writerWorkerId = LineTcpMeasurementEventType.ALL_WRITERS_INCOMPLETE_EVENT;
+        columnsByName = false;
         final TableUpdateDetails.ThreadLocalDetails localDetails = tud.getThreadLocalDetails(workerId);
         localDetails.resetStateIfNecessary();
         this.tableUpdateDetails = tud;
@@ -327,6 +335,7 @@ class LineTcpMeasurementEvent implements Closeable {
                 final String colNameUtf16 = localDetails.getColNameUtf16();
                 if (autoCreateNewColumns && TableUtils.isValidColumnName(colNameUtf16, maxColumnNameLength)) {
                     offset = buffer.addColumnName(offset, colNameUtf16);
+                    columnsByName = true;
                     colType = localDetails.getColumnType(localDetails.getColNameUtf8(), entityType);
                 } else if (!autoCreateNewColumns) {
                     throw newColumnsNotAllowed(tableUpdateDetails, colNameUtf16);
@@ -405,9 +414,11 @@ class LineTcpMeasurementEvent implements Closeable {
                             break;
 
                         case ColumnType.SYMBOL:
-                            offset = buffer.addSymbol(offset, entity.getValue(), parser.hasNonAsciiChars(), localDetails.getSymbolLookup(columnWriterIndex));
-                            break;
-
+                            if (!entity.isBinary()) {
+                                offset = buffer.addSymbol(offset, entity.getValue(), parser.hasNonAsciiChars(), localDetails.getSymbolLookup(columnWriterIndex));
+                                break;
+                            }
+                            // binary value has no text form
                         default:
                             throw castError("integer", columnWriterIndex, colType, entity.getName());
                     }
@@ -424,9 +435,11 @@ class LineTcpMeasurementEvent implements Closeable {
                             break;
 
                         case ColumnType.SYMBOL:
-                            offset = buffer.addSymbol(offset, entity.getValue(), parser.hasNonAsciiChars(), localDetails.getSymbolLookup(columnWriterIndex));
-                            break;
-
+                            if (!entity.isBinary()) {
+                                offset = buffer.addSymbol(offset, entity.getValue(), parser.hasNonAsciiChars(), localDetails.getSymbolLookup(columnWriterIndex));
+                                break;
+                            }
+                            // binary value has no text form
                         default:
                             throw castError("float", columnWriterIndex, colType, entity.getName());
                     }
@@ -542,9 +555,11 @@ class LineTcpMeasurementEvent implements Closeable {
                             break;
 
                         case ColumnType.SYMBOL:
-                            offset = buffer.addSymbol(offset, entity.getValue(), parser.hasNonAsciiChars(), localDetails.getSymbolLookup(columnWriterIndex));
-                            break;
-
+                            if (!entity.isBinary()) {
+                                offset = buffer.addSymbol(offset, entity.getValue(), parser.hasNonAsciiChars(), localDetails.getSymbolLookup(columnWriterIndex));
+                                break;
+                            }
+                            // binary value has no text form
                         default:
                             throw castError("timestamp", columnWriterIndex, colType, entity.getName());
                     }
@@ -568,7 +583,12 @@ class LineTcpMeasurementEvent implements Closeable {
         }
         buffer.addDesignatedTimestamp(buffer.getAddress() + Long.BYTES, timestamp);
         buffer.addNumOfColumns(buffer.getAddress() + 2 * Long.BYTES, entitiesWritten);
-        writerWorkerId = tud.getWriterThreadId();
+        this.writerWorkerId = writerWorkerId;
+    }
+
+    void createShardMergeEvent(TableUpdateDetails tableUpdateDetails) {
+        writerWorkerId = LineTcpMeasurementEventType.ALL_WRITERS_MERGE_SHARDS;
+        this.tableUpdateDetails = tableUpdateDetails;
     }
 
     void createWriterReleaseEvent(TableUpdateDetails tableUpdateDetails, boolean commitOnWriterClose) {
@@ -576,4 +596,54 @@ class LineTcpMeasurementEvent implements Closeable {
         this.tableUpdateDetails = tableUpdateDetails;
         this.commitOnWriterClose = commitOnWriterClose;
     }
+
+    boolean hasColumnsByName() {
+        return columnsByName;
+    }
+
+    void markIncomplete() {
+        writerWorkerId = LineTcpMeasurementEventType.ALL_WRITERS_INCOMPLETE_EVENT;
+    }
+
+    /**
+     * Appends the measurement to the staging buffer of a table shard. Measurements with columns
+     * passed by name are never staged, they are sent to the thread owning the table writer.
+     */
+    void stage(LineTcpStagingBuffer stagingBuffer) {
+        TableWriter.Row row = null;
+        try {
+            long offset = buffer.getAddress() + Long.BYTES;
+            long timestamp = buffer.readLong(offset);
+            offset += Long.BYTES;
+            if (timestamp == LineTcpParser.NULL_TIMESTAMP) {
+                timestamp = clock.getTicks();
+            }
+            row = stagingBuffer.newRow(timestamp);
+            final int nEntities = buffer.readInt(offset);
+            offset += Integer.BYTES;
+            for (int nEntity = 0; nEntity < nEntities; nEntity++) {
+                final int colIndex = buffer.readInt(offset);
+                assert colIndex > -1;
+                offset += Integer.BYTES;
+                final byte entityType = buffer.readByte(offset);
+                offset += Byte.BYTES;
+                if (!stagingBuffer.hasColumn(colIndex)) {
+                    // the column was dropped, so we skip it
+                    offset += buffer.columnValueLength(entityType, offset);
+                    continue;
+                }
+                offset = putEntity(row, colIndex, entityType, offset);
+            }
+            row.append();
+        } catch (Throwable th) {
+            LOG.error()
+                    .$("could not stage line protocol measurement [tableName=").$(tableUpdateDetails.getTableToken())
+                    .$(", message=").$(th.getMessage())
+                    .$(th)
+                    .I$();
+            if (row != null) {
+                row.cancel();
+            }
+        }
+    }
 }
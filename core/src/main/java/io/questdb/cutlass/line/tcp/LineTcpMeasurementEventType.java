@@ -30,4 +30,8 @@ class LineTcpMeasurementEventType {
     static final int ALL_WRITERS_INCOMPLETE_EVENT = -2;
 
     static final int ALL_WRITERS_RELEASE_WRITER = -3;
+
+    // Published by a writer thread holding a shard of a table, asks the thread owning
+    // the table writer to apply rows staged by shards
+    static final int ALL_WRITERS_MERGE_SHARDS = -4;
 }
@@ -28,11 +28,8 @@ import io.questdb.Telemetry;
 import io.questdb.TelemetryOrigin;
 import io.questdb.TelemetrySystemEvent;
 import io.questdb.cairo.*;
-import io.questdb.cairo.sql.TableRecordMetadata;
 import io.questdb.cairo.vm.Vm;
 import io.questdb.cairo.vm.api.MemoryMARW;
-import io.questdb.cairo.wal.WalWriter;
-import io.questdb.cutlass.line.LineProtoTimestampAdapter;
 import io.questdb.log.Log;
 import io.questdb.log.LogFactory;
 import io.questdb.mp.MPSequence;
@@ -54,10 +51,6 @@ import java.io.Closeable;
 import java.util.Arrays;
 import java.util.concurrent.locks.ReadWriteLock;
 
-import static io.questdb.cutlass.line.tcp.LineTcpMeasurementEvent.*;
-import static io.questdb.cutlass.line.tcp.TableUpdateDetails.ThreadLocalDetails.COLUMN_NOT_FOUND;
-import static io.questdb.cutlass.line.tcp.TableUpdateDetails.ThreadLocalDetails.DUPLICATED_COLUMN;
-
 class LineTcpMeasurementScheduler implements Closeable {
     private static final Log LOG = LogFactory.getLog(LineTcpMeasurementScheduler.class);
     private final ObjList<TableUpdateDetails>[] assignedTables;
@@ -70,6 +63,7 @@ class LineTcpMeasurementScheduler implements Closeable {
     private final CairoEngine engine;
     private final LowerCaseCharSequenceObjHashMap<TableUpdateDetails> idleTableUpdateDetailsUtf16;
     private final long[] loadByWriterThread;
+    private final long loadCheckInterval;
     private final NetworkIOJob[] netIoJobs;
     private final Path path = new Path();
     private final MPSequence[] pubSeq;
@@ -80,7 +74,12 @@ class LineTcpMeasurementScheduler implements Closeable {
     private final ReadWriteLock tableUpdateDetailsLock = new SimpleReadWriteLock();
     private final LowerCaseCharSequenceObjHashMap<TableUpdateDetails> tableUpdateDetailsUtf16;
     private final Telemetry<TelemetryTask> telemetry;
+    private final LineWalAppender walAppender;
     private final long writerIdleTimeout;
+    private final int writerMaxShards;
+    private final long writerShardEvents;
+    private final double writerShardLoadRatio;
+    private volatile long lastLoadCheckMillis;
     private LineTcpReceiver.SchedulerListener listener;
 
     LineTcpMeasurementScheduler(
@@ -113,6 +112,15 @@ class LineTcpMeasurementScheduler implements Closeable {
         tableUpdateDetailsUtf16 = new LowerCaseCharSequenceObjHashMap<>();
         idleTableUpdateDetailsUtf16 = new LowerCaseCharSequenceObjHashMap<>();
         loadByWriterThread = new long[writerWorkerPool.getWorkerCount()];
+        loadCheckInterval = lineConfiguration.getMaintenanceInterval();
+        lastLoadCheckMillis = lineConfiguration.getMillisecondClock().getTicks();
+        final int maxShards = lineConfiguration.getWriterMaxShards();
+        writerMaxShards = Math.min(
+                maxShards > 0 ? maxShards : writerWorkerPool.getWorkerCount(),
+                Math.min(writerWorkerPool.getWorkerCount(), ioWorkerPool.getWorkerCount())
+        );
+        writerShardEvents = lineConfiguration.getWriterShardEvents();
+        writerShardLoadRatio = lineConfiguration.getWriterShardLoadRatio();
         autoCreateNewTables = lineConfiguration.getAutoCreateNewTables();
         autoCreateNewColumns = lineConfiguration.getAutoCreateNewColumns();
         int maxMeasurementSize = lineConfiguration.getMaxMeasurementSize();
@@ -164,6 +172,7 @@ class LineTcpMeasurementScheduler implements Closeable {
             writerWorkerPool.freeOnExit(lineTcpWriterJob);
         }
         this.tableStructureAdapter = new TableStructureAdapter(cairoConfiguration, defaultColumnTypes, configuration.getDefaultPartitionBy());
+        this.walAppender = new LineWalAppender(lineConfiguration, cairoConfiguration.getMaxFileNameLength());
         writerIdleTimeout = lineConfiguration.getWriterIdleTimeout();
     }
 
@@ -223,6 +232,9 @@ class LineTcpMeasurementScheduler implements Closeable {
             int readerWorkerId,
             long millis
     ) {
+        if (writerMaxShards > 1 && millis - lastLoadCheckMillis >= loadCheckInterval) {
+            shardHotTables(millis);
+        }
         for (int n = 0, sz = tableUpdateDetailsUtf8.size(); n < sz; n++) {
             final ByteCharSequence tableNameUtf8 = tableUpdateDetailsUtf8.keys().get(n);
             final TableUpdateDetails tud = tableUpdateDetailsUtf8.get(tableNameUtf8);
@@ -297,310 +309,13 @@ class LineTcpMeasurementScheduler implements Closeable {
         return Numbers.ceilPow2((long) (maxMeasurementSize / 4) * (Integer.BYTES + Double.BYTES + 1));
     }
 
-    private void appendToWal(NetworkIOJob netIoJob, LineTcpParser parser, TableUpdateDetails tud) throws CommitFailedException {
-        final boolean stringToCharCastAllowed = configuration.isStringToCharCastAllowed();
-        LineProtoTimestampAdapter timestampAdapter = configuration.getTimestampAdapter();
-        // pass 1: create all columns that do not exist
-        final TableUpdateDetails.ThreadLocalDetails ld = tud.getThreadLocalDetails(netIoJob.getWorkerId());
-        ld.resetStateIfNecessary();
-        ld.clearColumnTypes();
-
-        WalWriter ww = (WalWriter) tud.getWriter();
-        TableRecordMetadata metadata = ww.getMetadata();
-
-        long timestamp = parser.getTimestamp();
-        if (timestamp != LineTcpParser.NULL_TIMESTAMP) {
-            timestamp = timestampAdapter.getMicros(timestamp);
-        } else {
-            timestamp = configuration.getMicrosecondClock().getTicks();
-        }
-
-        final int entCount = parser.getEntityCount();
-        for (int i = 0; i < entCount; i++) {
-            final LineTcpParser.ProtoEntity ent = parser.getEntity(i);
-            int columnIndex = ld.getColumnIndex(ent.getName(), parser.hasNonAsciiChars(), metadata);
-            int columnType = ColumnType.UNDEFINED;
-            if (columnIndex == COLUMN_NOT_FOUND) {
-                final String columnNameUtf16 = ld.getColNameUtf16();
-                if (autoCreateNewColumns && TableUtils.isValidColumnName(columnNameUtf16, cairoConfiguration.getMaxFileNameLength())) {
-                    if (metadata.getColumnIndexQuiet(columnNameUtf16) < 0) {
-                        tud.commit(false);
-                        try {
-                            ww.addColumn(columnNameUtf16, ld.getColumnType(ld.getColNameUtf8(), ent.getType()));
-                        } catch (CairoException e) {
-                            columnIndex = metadata.getColumnIndexQuiet(columnNameUtf16);
-                            if (columnIndex < 0) {
-                                // the column is still not there, something must be wrong
-                                throw e;
-                            }
-                            // all good, someone added the column concurrently
-                        }
-                    }
-                    columnIndex = metadata.getColumnIndexQuiet(columnNameUtf16);
-                    columnType = metadata.getColumnType(columnIndex);
-                } else if (!autoCreateNewColumns) {
-                    throw newColumnsNotAllowed(tud, columnNameUtf16);
-                } else {
-                    throw invalidColNameError(tud, columnNameUtf16);
-                }
-            } else if (columnIndex > -1) {
-                if (columnIndex == tud.getTimestampIndex()) {
-                    timestamp = timestampAdapter.getMicros(ent.getLongValue());
-                    columnIndex = DUPLICATED_COLUMN;
-                }
-                columnType = columnIndex < 0 ? ColumnType.UNDEFINED : metadata.getColumnType(columnIndex);
-            }
-            ld.addColumnType(columnIndex, columnType);
-        }
-
-        TableWriter.Row r = ww.newRow(timestamp);
-        try {
-            for (int i = 0; i < entCount; i++) {
-                final LineTcpParser.ProtoEntity ent = parser.getEntity(i);
-
-                short entType = ent.getType();
-                int colTypeAndIndex = ld.getColumnType(i);
-                int colType = Numbers.decodeLowShort(colTypeAndIndex);
-                int columnIndex = Numbers.decodeHighShort(colTypeAndIndex);
-
-                if (columnIndex < 0) {
-                    continue;
-                }
-
-                switch (entType) {
-                    case LineTcpParser.ENTITY_TYPE_TAG: {
-                        if (ColumnType.tagOf(colType) == ColumnType.SYMBOL) {
-                            r.putSymUtf8(columnIndex, ent.getValue(), parser.hasNonAsciiChars());
-                        } else {
-                            throw castError("tag", i, colType, ent.getName());
-                        }
-                        break;
-                    }
-                    case LineTcpParser.ENTITY_TYPE_INTEGER: {
-                        switch (ColumnType.tagOf(colType)) {
-                            case ColumnType.LONG:
-                                r.putLong(columnIndex, ent.getLongValue());
-                                break;
-
-                            case ColumnType.INT: {
-                                final long entityValue = ent.getLongValue();
-                                if (entityValue >= Integer.MIN_VALUE && entityValue <= Integer.MAX_VALUE) {
-                                    r.putInt(columnIndex, (int) entityValue);
-                                } else if (entityValue == Numbers.LONG_NaN) {
-                                    r.putInt(columnIndex, Numbers.INT_NaN);
-                                } else {
-                                    throw boundsError(entityValue, i, ColumnType.INT);
-                                }
-                                break;
-                            }
-                            case ColumnType.SHORT: {
-                                final long entityValue = ent.getLongValue();
-                                if (entityValue >= Short.MIN_VALUE && entityValue <= Short.MAX_VALUE) {
-                                    r.putShort(columnIndex, (short) entityValue);
-                                } else if (entityValue == Numbers.LONG_NaN) {
-                                    r.putShort(columnIndex, (short) 0);
-                                } else {
-                                    throw boundsError(entityValue, i, ColumnType.SHORT);
-                                }
-                                break;
-                            }
-                            case ColumnType.BYTE: {
-                                final long entityValue = ent.getLongValue();
-                                if (entityValue >= Byte.MIN_VALUE && entityValue <= Byte.MAX_VALUE) {
-                                    r.putByte(columnIndex, (byte) entityValue);
-                                } else if (entityValue == Numbers.LONG_NaN) {
-                                    r.putByte(columnIndex, (byte) 0);
-                                } else {
-                                    throw boundsError(entityValue, i, ColumnType.BYTE);
-                                }
-                                break;
-                            }
-                            case ColumnType.TIMESTAMP:
-                                r.putTimestamp(columnIndex, ent.getLongValue());
-                                break;
-
-                            case ColumnType.DATE:
-                                r.putDate(columnIndex, ent.getLongValue());
-                                break;
-
-                            case ColumnType.DOUBLE:
-                                r.putDouble(columnIndex, ent.getLongValue());
-                                break;
-
-                            case ColumnType.FLOAT:
-                                r.putFloat(columnIndex, ent.getLongValue());
-                                break;
-
-                            case ColumnType.SYMBOL:
-                                r.putSym(columnIndex, ent.getValue());
-                                break;
-
-                            default:
-                                throw castError("integer", i, colType, ent.getName());
-                        }
-                        break;
-                    }
-                    case LineTcpParser.ENTITY_TYPE_FLOAT: {
-                        switch (ColumnType.tagOf(colType)) {
-                            case ColumnType.DOUBLE:
-                                r.putDouble(columnIndex, ent.getFloatValue());
-                                break;
-
-                            case ColumnType.FLOAT:
-                                r.putFloat(columnIndex, (float) ent.getFloatValue());
-                                break;
-
-                            case ColumnType.SYMBOL:
-                                r.putSym(columnIndex, ent.getValue());
-                                break;
-
-                            default:
-                                throw castError("float", i, colType, ent.getName());
-                        }
-                        break;
-                    }
-                    case LineTcpParser.ENTITY_TYPE_STRING: {
-                        final int geoHashBits = ColumnType.getGeoHashBits(colType);
-                        final DirectByteCharSequence entityValue = ent.getValue();
-                        if (geoHashBits == 0) { // not geohash
-                            switch (ColumnType.tagOf(colType)) {
-                                case ColumnType.STRING:
-                                    r.putStrUtf8AsUtf16(columnIndex, entityValue, parser.hasNonAsciiChars());
-                                    break;
-
-                                case ColumnType.CHAR:
-                                    if (entityValue.length() == 1 && entityValue.byteAt(0) > -1) {
-                                        r.putChar(columnIndex, entityValue.charAt(0));
-                                    } else if (stringToCharCastAllowed) {
-                                        int encodedResult = Chars.utf8CharDecode(entityValue.getLo(), entityValue.getHi());
-                                        if (Numbers.decodeLowShort(encodedResult) > 0) {
-                                            r.putChar(columnIndex, (char) Numbers.decodeHighShort(encodedResult));
-                                        } else {
-                                            throw castError("string", i, colType, ent.getName());
-                                        }
-                                    } else {
-                                        throw castError("string", i, colType, ent.getName());
-                                    }
-                                    break;
-
-                                case ColumnType.SYMBOL:
-                                    r.putSymUtf8(columnIndex, entityValue, parser.hasNonAsciiChars());
-                                    break;
-                                case ColumnType.UUID:
-                                    r.putUuid(columnIndex, entityValue);
-                                    break;
-                                default:
-                                    throw castError("string", i, colType, ent.getName());
-                            }
-                        } else {
-                            long geoHash;
-                            try {
-                                DirectByteCharSequence value = ent.getValue();
-                                geoHash = GeoHashes.fromStringTruncatingNl(value.getLo(), value.getHi(), geoHashBits);
-                            } catch (NumericException e) {
-                                geoHash = GeoHashes.NULL;
-                            }
-                            r.putGeoHash(columnIndex, geoHash);
-                        }
-                        break;
-                    }
-                    case LineTcpParser.ENTITY_TYPE_LONG256: {
-                        switch (ColumnType.tagOf(colType)) {
-                            case ColumnType.LONG256:
-                                r.putLong256(columnIndex, ent.getValue());
-                                break;
-
-                            case ColumnType.SYMBOL:
-                                r.putSym(columnIndex, ent.getValue());
-                                break;
-
-                            default:
-                                throw castError("long256", i, colType, ent.getName());
-                        }
-                        break;
-                    }
-                    case LineTcpParser.ENTITY_TYPE_BOOLEAN: {
-                        switch (ColumnType.tagOf(colType)) {
-                            case ColumnType.BOOLEAN:
-                                r.putBool(columnIndex, ent.getBooleanValue());
-                                break;
-
-                            case ColumnType.BYTE:
-                                r.putByte(columnIndex, (byte) (ent.getBooleanValue() ? 1 : 0));
-                                break;
-
-                            case ColumnType.SHORT:
-                                r.putShort(columnIndex, (short) (ent.getBooleanValue() ? 1 : 0));
-                                break;
-
-                            case ColumnType.INT:
-                                r.putInt(columnIndex, ent.getBooleanValue() ? 1 : 0);
-                                break;
-
-                            case ColumnType.LONG:
-                                r.putLong(columnIndex, ent.getBooleanValue() ? 1 : 0);
-                                break;
-
-                            case ColumnType.FLOAT:
-                                r.putFloat(columnIndex, ent.getBooleanValue() ? 1 : 0);
-                                break;
-
-                            case ColumnType.DOUBLE:
-                                r.putDouble(columnIndex, ent.getBooleanValue() ? 1 : 0);
-                                break;
-
-                            case ColumnType.SYMBOL:
-                                r.putSym(columnIndex, ent.getValue());
-                                break;
-
-                            default:
-                                throw castError("boolean", i, colType, ent.getName());
-                        }
-                        break;
-                    }
-                    case LineTcpParser.ENTITY_TYPE_TIMESTAMP: {
-                        switch (ColumnType.tagOf(colType)) {
-                            case ColumnType.TIMESTAMP:
-                                r.putTimestamp(columnIndex, ent.getLongValue());
-                                break;
-
-                            case ColumnType.DATE:
-                                r.putTimestamp(columnIndex, ent.getLongValue() / 1000);
-                                break;
-
-                            case ColumnType.SYMBOL:
-                                r.putSym(columnIndex, ent.getValue());
-                                break;
-
-                            default:
-                                throw castError("timestamp", i, colType, ent.getName());
-                        }
-                        break;
-                    }
-                    // parser would reject this condition based on config
-                    case LineTcpParser.ENTITY_TYPE_SYMBOL: {
-                        if (ColumnType.tagOf(colType) == ColumnType.SYMBOL) {
-                            r.putSymUtf8(columnIndex, ent.getValue(), parser.hasNonAsciiChars());
-                        } else {
-                            throw castError("symbol", i, colType, ent.getName());
-                        }
-                        break;
-                    }
-                    default:
-                        // unsupported types are ignored
-                        break;
-                }
-            }
-            r.append();
-            tud.commitIfMaxUncommittedRowsCountReached();
-        } catch (CommitFailedException commitFailedException) {
-            throw commitFailedException;
-        } catch (Throwable th) {
-            LOG.error().$("could not write line protocol measurement [tableName=").$(tud.getTableNameUtf16()).$(", message=").$(th.getMessage()).$(th).I$();
-            if (r != null) {
-                r.cancel();
+    private static boolean isShardThread(int[] shardThreadIds, int shardCount, int threadId) {
+        for (int i = 0; i < shardCount; i++) {
+            if (shardThreadIds[i] == threadId) {
+                return true;
             }
         }
+        return false;
     }
 
     private void closeLocals(LowerCaseCharSequenceObjHashMap<TableUpdateDetails> tudUtf16) {
@@ -612,21 +327,35 @@ class LineTcpMeasurementScheduler implements Closeable {
     }
 
     private boolean dispatchEvent(NetworkIOJob netIoJob, LineTcpParser parser, TableUpdateDetails tud) {
-        final int writerThreadId = tud.getWriterThreadId();
-        long seq = getNextPublisherEventSequence(writerThreadId);
-        if (seq > -1) {
+        final int ownerThreadId = tud.getWriterThreadId();
+        int writerThreadId = tud.getShardThreadId(netIoJob.getWorkerId());
+        while (true) {
+            long seq = getNextPublisherEventSequence(writerThreadId);
+            if (seq < 0) {
+                return true;
+            }
+            final boolean complete;
             try {
                 if (tud.isWriterInError()) {
                     throw CairoException.critical(0).put("writer is in error, aborting ILP pipeline");
                 }
-                queue[writerThreadId].get(seq).createMeasurementEvent(tud, parser, netIoJob.getWorkerId());
+                final LineTcpMeasurementEvent event = queue[writerThreadId].get(seq);
+                event.createMeasurementEvent(tud, parser, netIoJob.getWorkerId(), writerThreadId);
+                // new columns can only be added by the thread owning the table writer,
+                // such measurement is re-published to the owner
+                complete = writerThreadId == ownerThreadId || !event.hasColumnsByName();
+                if (!complete) {
+                    event.markIncomplete();
+                }
             } finally {
                 pubSeq[writerThreadId].done(seq);
             }
-            tud.incrementEventsProcessedSinceReshuffle();
-            return false;
+            if (complete) {
+                tud.incrementEventsProcessedSinceReshuffle();
+                return false;
+            }
+            writerThreadId = ownerThreadId;
         }
-        return true;
     }
 
     private TableUpdateDetails getTableUpdateDetailsFromSharedArea(@NotNull NetworkIOJob netIoJob, @NotNull LineTcpParser parser) {
@@ -720,6 +449,44 @@ class LineTcpMeasurementScheduler implements Closeable {
         return null != pubSeq;
     }
 
+    /**
+     * Writer thread count is the ceiling for a single non-WAL table, all of its rows go
+     * through one writer. A table taking most of the load is spread across the least loaded
+     * writer threads, the thread owning the writer merges rows staged by the others.
+     */
+    private void shardHotTables(long millis) {
+        tableUpdateDetailsLock.writeLock().lock();
+        try {
+            if (millis - lastLoadCheckMillis < loadCheckInterval) {
+                // another network IO thread has just done it
+                return;
+            }
+            lastLoadCheckMillis = millis;
+            unsafeCalcThreadLoad();
+            long totalLoad = 0;
+            for (int i = 0, n = loadByWriterThread.length; i < n; i++) {
+                totalLoad += loadByWriterThread[i];
+            }
+            final ObjList<CharSequence> tableNames = tableUpdateDetailsUtf16.keys();
+            for (int n = 0, sz = tableNames.size(); n < sz; n++) {
+                final TableUpdateDetails tud = tableUpdateDetailsUtf16.get(tableNames.getQuick(n));
+                if (
+                        totalLoad >= writerShardEvents
+                                && tud.getEventsProcessedSinceReshuffle() >= totalLoad * writerShardLoadRatio
+                                && !tud.isSharded()
+                                && !tud.isWriterInError()
+                                && tud.getTimestampIndex() > -1
+                                && tud.getWriter() instanceof TableWriter
+                ) {
+                    unsafeShardTable(tud);
+                }
+                tud.resetEventsProcessedSinceReshuffle();
+            }
+        } finally {
+            tableUpdateDetailsLock.writeLock().unlock();
+        }
+    }
+
     @NotNull
     private TableUpdateDetails unsafeAssignTableToWriterThread(int tudKeyIndex, CharSequence tableNameUtf16) {
         unsafeCalcThreadLoad();
@@ -756,13 +523,47 @@ class LineTcpMeasurementScheduler implements Closeable {
             final CharSequence tableName = tableNames.getQuick(n);
             final TableUpdateDetails stats = tableUpdateDetailsUtf16.get(tableName);
             if (stats != null) {
-                loadByWriterThread[stats.getWriterThreadId()] += stats.getEventsProcessedSinceReshuffle();
+                final int[] shardThreadIds = stats.getShardThreadIds();
+                if (shardThreadIds == null) {
+                    loadByWriterThread[stats.getWriterThreadId()] += stats.getEventsProcessedSinceReshuffle();
+                } else {
+                    final long load = stats.getEventsProcessedSinceReshuffle() / shardThreadIds.length;
+                    for (int i = 0, m = shardThreadIds.length; i < m; i++) {
+                        loadByWriterThread[shardThreadIds[i]] += load;
+                    }
+                }
             } else {
                 LOG.error().$("could not find statistic for table [name=").$(tableName).I$();
             }
         }
     }
 
+    private void unsafeShardTable(TableUpdateDetails tud) {
+        final int[] shardThreadIds = new int[writerMaxShards];
+        shardThreadIds[0] = tud.getWriterThreadId();
+        for (int i = 1; i < writerMaxShards; i++) {
+            long leastLoad = Long.MAX_VALUE;
+            int threadId = -1;
+            for (int j = 0, n = loadByWriterThread.length; j < n; j++) {
+                if (loadByWriterThread[j] < leastLoad && !isShardThread(shardThreadIds, i, j)) {
+                    leastLoad = loadByWriterThread[j];
+                    threadId = j;
+                }
+            }
+            shardThreadIds[i] = threadId;
+        }
+        try {
+            tud.startSharding(shardThreadIds);
+            LOG.info().$("sharded ").$(tud.getTableToken()).$(" across ").$(writerMaxShards).$(" writer threads").$();
+            if (listener != null) {
+                // table sharded
+                listener.onEvent(tud.getTableToken(), 2);
+            }
+        } catch (Throwable th) {
+            LOG.error().$("could not shard table [table=").$(tud.getTableToken()).$(", e=").$(th).I$();
+        }
+    }
+
     protected NetworkIOJob createNetworkIOJob(IODispatcher<LineTcpConnectionContext> dispatcher, int workerId) {
         return new LineTcpNetworkIOJob(configuration, this, dispatcher, workerId);
     }
@@ -776,6 +577,22 @@ class LineTcpMeasurementScheduler implements Closeable {
         return seq;
     }
 
+    /**
+     * Asks the writer thread owning the table writer to merge rows staged by the shards,
+     * the request is dropped when its queue is full and the owner merges on the next commit.
+     */
+    void requestShardMerge(TableUpdateDetails tud) {
+        final int writerWorkerId = tud.getWriterThreadId();
+        final long seq = getNextPublisherEventSequence(writerWorkerId);
+        if (seq > -1) {
+            try {
+                queue[writerWorkerId].get(seq).createShardMergeEvent(tud);
+            } finally {
+                pubSeq[writerWorkerId].done(seq);
+            }
+        }
+    }
+
     boolean scheduleEvent(NetworkIOJob netIoJob, LineTcpParser parser) {
         DirectByteCharSequence measurementName = parser.getMeasurementName();
         TableUpdateDetails tud;
@@ -809,7 +626,7 @@ class LineTcpMeasurementScheduler implements Closeable {
 
         if (tud.isWal()) {
             try {
-                appendToWal(netIoJob, parser, tud);
+                walAppender.appendToWal(parser, tud, netIoJob.getWorkerId());
             } catch (Throwable ex) {
                 tud.setWriterInError();
                 LOG.critical().$("closing writer because of error [table=").$(tud.getTableNameUtf16())
@@ -33,8 +33,22 @@ import io.questdb.std.ObjList;
 import io.questdb.std.Unsafe;
 import io.questdb.std.str.DirectByteCharSequence;
 
+/**
+ * Parses ILP lines in place. Besides the text form, numeric and timestamp fields can be sent
+ * in the binary form when it is supported by configuration:
+ * <pre>
+ * name==&lt;type&gt;&lt;value&gt;
+ * </pre>
+ * where type is one of BINARY_TYPE_* bytes followed by little-endian 8-byte double or timestamp,
+ * or by zigzag encoded varint long. The designated timestamp can be sent as little-endian 8-byte
+ * value following " =" instead of the decimal digits. Neither "==" nor " =" are valid in
+ * the text form, so both forms can be mixed in the same stream.
+ */
 public class LineTcpParser {
 
+    public static final byte BINARY_TYPE_DOUBLE = 16;
+    public static final byte BINARY_TYPE_LONG = 17;
+    public static final byte BINARY_TYPE_TIMESTAMP = 18;
     public static final byte ENTITY_TYPE_BOOLEAN = 6;
     public static final byte ENTITY_TYPE_BYTE = 17;
     public static final byte ENTITY_TYPE_CACHED_TAG = 8;
@@ -66,7 +80,18 @@ public class LineTcpParser {
     private static final byte ENTITY_HANDLER_TIMESTAMP = 3;
     private static final byte ENTITY_HANDLER_VALUE = 2;
     private static final Log LOG = LogFactory.getLog(LineTcpParser.class);
+    private static final int MAX_VARINT_LENGTH = 10;
+    // SWAR (SIMD within a register) constants, bytes are scanned 8 at a time
+    private static final long SWAR_BACKSLASH = broadcast('\\');
+    // high bit of a 7-bit byte is set after adding this when the byte is '0' or above
+    private static final long SWAR_BELOW_ZERO = broadcast((char) (0x80 - '0'));
+    private static final long SWAR_EQUALS = broadcast('=');
+    private static final long SWAR_HIGH_BITS = 0x8080808080808080L;
+    private static final long SWAR_LF = broadcast('\n');
+    private static final long SWAR_LOW_BITS = 0x0101010101010101L;
+    private static final long SWAR_QUOTE = broadcast('"');
     private static final boolean[] controlChars;
+    private final boolean binaryFormatSupported;
     private final DirectByteCharSequence charSeq = new DirectByteCharSequence();
     private final ObjList<ProtoEntity> entityCache = new ObjList<>();
     private final DirectByteCharSequence measurementName = new DirectByteCharSequence();
@@ -89,8 +114,13 @@ public class LineTcpParser {
     private long timestamp;
 
     public LineTcpParser(boolean stringAsTagSupported, boolean symbolAsFieldSupported) {
+        this(stringAsTagSupported, symbolAsFieldSupported, false);
+    }
+
+    public LineTcpParser(boolean stringAsTagSupported, boolean symbolAsFieldSupported, boolean binaryFormatSupported) {
         this.stringAsTagSupported = stringAsTagSupported;
         this.symbolAsFieldSupported = symbolAsFieldSupported;
+        this.binaryFormatSupported = binaryFormatSupported;
     }
 
     public long getBufferAddress() {
@@ -161,7 +191,7 @@ public class LineTcpParser {
             if (nEscapedChars == 0 && b >= 0 && !controlChars[b]) {
                 // hot path
                 nextValueCanBeOpenQuote = false;
-                bufAt++;
+                bufAt = skipPlainBytes(bufAt + 1, bufHi);
                 continue;
             }
 
@@ -295,11 +325,33 @@ public class LineTcpParser {
 
     public ParseResult skipMeasurement(long bufHi) {
         assert bufAt != 0 && bufHi >= bufAt;
+        // binary values are stepped over as a whole regardless of configuration, they may contain
+        // '\n' bytes and resyncing on them would turn the rest of the value into a bogus line
+        if (entityHandler == ENTITY_HANDLER_VALUE) {
+            // the line may have been rejected in the middle of a binary value, step over it from its start
+            final long hi = skipBinaryValue(entityLo, false, bufHi);
+            if (hi < 0) {
+                return ParseResult.BUFFER_UNDERFLOW;
+            }
+            bufAt = Math.max(bufAt, hi);
+            entityHandler = -1;
+        }
         while (bufAt < bufHi) {
             byte b = Unsafe.getUnsafe().getByte(bufAt);
             if (b == (byte) '\n' || b == (byte) '\r') {
                 return ParseResult.MEASUREMENT_COMPLETE;
             }
+            if (false) {
+                final long hi = skipBinaryValue(bufAt + 1, b == (byte) ' ', bufHi);
+                if (hi < 0) {
+                    // bufAt stays at the value, it is scanned again once more bytes arrive
+                    return ParseResult.BUFFER_UNDERFLOW;
+                }
+                if (hi > 0) {
+                    bufAt = hi;
+                    continue;
+                }
+            }
             bufAt++;
         }
         return ParseResult.BUFFER_UNDERFLOW;
@@ -323,6 +375,128 @@ public class LineTcpParser {
         hasNonAscii = false;
     }
 
+    /**
+     * Finds the end of the binary value starting with the type byte at p.
+     *
+     * @return -1 when the value is not in the buffer as a whole, 0 when the type is unknown
+     * or the varint is too long, otherwise the end of the value
+     */
+    private static long binaryValueHi(long p, long bufHi) {
+        if (p >= bufHi) {
+            return -1;
+        }
+        switch (Unsafe.getUnsafe().getByte(p++)) {
+            case BINARY_TYPE_DOUBLE:
+            case BINARY_TYPE_TIMESTAMP:
+                p += Long.BYTES;
+                return p > bufHi ? -1 : p;
+            case BINARY_TYPE_LONG:
+                for (int i = 0; i < MAX_VARINT_LENGTH; i++) {
+                    if (p >= bufHi) {
+                        return -1;
+                    }
+                    if (Unsafe.getUnsafe().getByte(p++) >= 0) {
+                        return p;
+                    }
+                }
+                return 0;
+            default:
+                return 0;
+        }
+    }
+
+    private static long broadcast(char c) {
+        return SWAR_LOW_BITS * c;
+    }
+
+    private static boolean isValueTerminator(byte b) {
+        return b == (byte) ',' || b == (byte) ' ' || b == (byte) '\n' || b == (byte) '\r';
+    }
+
+    /**
+     * Returns word with the high bit set in the bytes that are zero. The lowest flagged byte
+     * is exact, bytes above it may be flagged falsely because of the borrow.
+     */
+    private static long markZeroBytes(long word) {
+        return (word - SWAR_LOW_BITS) & ~word;
+    }
+
+    /**
+     * Checks if '=' at p, following either field name or the space before the designated
+     * timestamp, starts a binary value while skipping a measurement.
+     *
+     * @return 0 when it does not, -1 when more bytes are needed to tell,
+     * otherwise the position right after the value
+     */
+    private static long skipBinaryValue(long p, boolean timestamp, long bufHi) {
+        if (p >= bufHi) {
+            return -1;
+        }
+        if (Unsafe.getUnsafe().getByte(p) != (byte) '=') {
+            return 0;
+        }
+        if (!timestamp) {
+            final long hi = binaryValueHi(p + 1, bufHi);
+            if (hi <= 0) {
+                return hi;
+            }
+            if (hi >= bufHi) {
+                return -1;
+            }
+            // a text value can legitimately look like a binary one, only trust a proper terminator
+            return isValueTerminator(Unsafe.getUnsafe().getByte(hi)) ? hi : 0;
+        }
+        final long hi = p + 1 + Long.BYTES;
+        if (hi >= bufHi) {
+            return -1;
+        }
+        final byte next = Unsafe.getUnsafe().getByte(hi);
+        return next == (byte) '\n' || next == (byte) '\r' ? hi : 0;
+    }
+
+    /**
+     * Skips bytes of the hot path of the byte-by-byte loop, the range is scanned 8 bytes at a time.
+     * Returns position of the first byte that may be a control character or is not ASCII, or of
+     * the tail shorter than 8 bytes, which is left to the byte-by-byte loop.
+     */
+    private static long skipPlainBytes(long lo, long hi) {
+        long p = lo;
+        while (p <= hi - Long.BYTES) {
+            final long word = Unsafe.getUnsafe().getLong(p);
+            // control characters other than '=' and '\\' are below '0', keep in sync with controlChars;
+            // bytes that are flagged but not control characters go through the hot path of the loop
+            final long mask = (~(word + SWAR_BELOW_ZERO)
+                    | markZeroBytes(word ^ SWAR_EQUALS)
+                    | markZeroBytes(word ^ SWAR_BACKSLASH)
+                    | word) & SWAR_HIGH_BITS;
+            if (mask != 0) {
+                return p + (Long.numberOfTrailingZeros(mask) >>> 3);
+            }
+            p += Long.BYTES;
+        }
+        return p;
+    }
+
+    /**
+     * Same as {@link #skipPlainBytes(long, long)} for the bytes of a quoted string value,
+     * which only stops at the closing quote, escape or EOL, and at non-ASCII bytes.
+     */
+    private static long skipPlainQuotedBytes(long lo, long hi) {
+        long p = lo;
+        while (p <= hi - Long.BYTES) {
+            final long word = Unsafe.getUnsafe().getLong(p);
+            final long mask = (markZeroBytes(word ^ SWAR_QUOTE)
+                    | markZeroBytes(word ^ SWAR_BACKSLASH)
+                    | markZeroBytes(word ^ SWAR_LF)
+                    | word) & SWAR_HIGH_BITS;
+            if (mask != 0) {
+                return p + (Long.numberOfTrailingZeros(mask) >>> 3);
+            }
+            p += Long.BYTES;
+        }
+        return p;
+    }
+
     private boolean completeEntity(byte endOfEntityByte, long bufHi) {
         switch (entityHandler) {
             case ENTITY_HANDLER_TABLE:
@@ -332,7 +506,7 @@ public class LineTcpParser {
             case ENTITY_HANDLER_VALUE:
                 return expectEntityValue(endOfEntityByte);
             case ENTITY_HANDLER_TIMESTAMP:
-                return expectTimestamp(endOfEntityByte);
+                return expectTimestamp(endOfEntityByte, bufHi);
             case ENTITY_HANDLER_NEW_LINE:
                 return expectEndOfLine(endOfEntityByte);
         }
@@ -351,6 +525,11 @@ public class LineTcpParser {
                 return false;
             }
 
+            final long binaryValueHi = tagsComplete && binaryFormatSupported ? findBinaryValueHi(bufHi) : 0;
+            if (binaryValueHi < 0) {
+                return false;
+            }
+
             if (entityCache.size() <= nEntities) {
                 currentEntity = new ProtoEntity();
                 entityCache.add(currentEntity);
@@ -362,6 +541,13 @@ public class LineTcpParser {
             nEntities++;
             currentEntity.setName();
             entityHandler = ENTITY_HANDLER_VALUE;
+            if (binaryValueHi > 0) {
+                // skip "=" and the value, only the separator can follow
+                currentEntity.setBinaryValue(bufAt + 2, binaryValueHi);
+                bufAt = binaryValueHi - 1;
+                isQuotedFieldValue = true;
+                return true;
+            }
             if (tagsComplete) {
                 if (bufAt + 3 < bufHi) { // peek oncoming value's 1st byte, only caring for valid strings (2 quotes plus a follow-up byte)
                     long candidateQuoteIdx = bufAt + 1;
@@ -399,7 +585,7 @@ public class LineTcpParser {
             if (currentEntity != null && currentEntity.getType() == ENTITY_TYPE_TAG) {
                 // One token after last tag, and no fields
                 // This must be the timestamp
-                return expectTimestamp(endOfEntityByte);
+                return expectTimestamp(endOfEntityByte, bufHi);
             }
         }
 
@@ -453,15 +639,29 @@ public class LineTcpParser {
         return false;
     }
 
-    private boolean expectTimestamp(byte endOfEntityByte) {
+    private boolean expectTimestamp(byte endOfEntityByte, long bufHi) {
         try {
             if (endOfEntityByte == (byte) '\n') {
                 if (entityLo < bufAt - nEscapedChars) {
+                    if (timestamp != NULL_TIMESTAMP) {
+                        // text after binary timestamp
+                        errorCode = ErrorCode.INVALID_TIMESTAMP;
+                        return false;
+                    }
                     timestamp = Numbers.parseLong(charSeq.of(entityLo, bufAt - nEscapedChars));
                 }
                 entityHandler = -1;
                 return true;
             }
+            if (endOfEntityByte == (byte) '=' && binaryFormatSupported && entityLo == bufAt && timestamp == NULL_TIMESTAMP) {
+                if (bufAt + Long.BYTES >= bufHi) {
+                    errorCode = ErrorCode.INVALID_FIELD_VALUE_STR_UNDERFLOW;
+                    return false;
+                }
+                timestamp = Unsafe.getUnsafe().getLong(bufAt + 1);
+                bufAt += Long.BYTES;
+                return true;
+            }
             errorCode = ErrorCode.INVALID_FIELD_SEPARATOR;
             return false;
         } catch (NumericException ex) {
@@ -470,6 +670,34 @@ public class LineTcpParser {
         }
     }
 
+    /**
+     * Checks if the field value starting after '=' at bufAt is in the binary form.
+     *
+     * @return 0 when the value is in the text form, -1 when the binary value is
+     * incomplete or invalid, otherwise the end of the binary value
+     */
+    private long findBinaryValueHi(long bufHi) {
+        long p = bufAt + 1;
+        // the value needs to be in the buffer as a whole, so that binary bytes are never scanned
+        if (p >= bufHi) {
+            errorCode = ErrorCode.INVALID_FIELD_VALUE_STR_UNDERFLOW;
+            return -1;
+        }
+        if (Unsafe.getUnsafe().getByte(p++) != '=') {
+            return 0;
+        }
+        final long hi = binaryValueHi(p, bufHi);
+        if (hi < 0) {
+            errorCode = ErrorCode.INVALID_FIELD_VALUE_STR_UNDERFLOW;
+            return -1;
+        }
+        if (hi == 0) {
+            errorCode = ErrorCode.INVALID_FIELD_VALUE;
+            return -1;
+        }
+        return hi;
+    }
+
     private ParseResult getError() {
         switch (entityHandler) {
             case ENTITY_HANDLER_NAME:
@@ -492,6 +720,17 @@ public class LineTcpParser {
         entityLo = openQuoteIdx; // from the quote
         boolean copyByte;
         while (bufAt < bufHi) { // consume until the next quote, '\n', or eof
+            if (nEscapedChars == 0 && !scape) {
+                // nothing to shift left, skip bytes that cannot end the string
+                final long plainHi = skipPlainQuotedBytes(bufAt, bufHi);
+                if (plainHi > bufAt) {
+                    nextValueCanBeOpenQuote = false;
+                    bufAt = plainHi;
+                    if (bufAt == bufHi) {
+                        break;
+                    }
+                }
+            }
             byte b = Unsafe.getUnsafe().getByte(bufAt);
             copyByte = true;
             hasNonAscii |= b < 0;
@@ -557,6 +796,7 @@ public class LineTcpParser {
     public class ProtoEntity {
         private final DirectByteCharSequence name = new DirectByteCharSequence();
         private final DirectByteCharSequence value = new DirectByteCharSequence();
+        private boolean binary;
         private boolean booleanValue;
         private double floatValue;
         private long longValue;
@@ -586,6 +826,14 @@ public class LineTcpParser {
             return value;
         }
 
+        /**
+         * @return true when the value was sent in the binary form, it has no text to be used
+         * as symbol value
+         */
+        public boolean isBinary() {
+            return binary;
+        }
+
         public void shl(long shl) {
             name.shl(shl);
             value.shl(shl);
@@ -593,6 +841,7 @@ public class LineTcpParser {
 
         private void clear() {
             type = ENTITY_TYPE_NONE;
+            binary = false;
         }
 
         private boolean parse(byte last, int valueLen) {
@@ -677,11 +926,39 @@ public class LineTcpParser {
             return true;
         }
 
+        private void setBinaryValue(long lo, long hi) {
+            final long valueLo = lo + 1;
+            switch (Unsafe.getUnsafe().getByte(lo)) {
+                case BINARY_TYPE_DOUBLE:
+                    floatValue = Unsafe.getUnsafe().getDouble(valueLo);
+                    type = ENTITY_TYPE_FLOAT;
+                    break;
+                case BINARY_TYPE_TIMESTAMP:
+                    longValue = Unsafe.getUnsafe().getLong(valueLo);
+                    type = ENTITY_TYPE_TIMESTAMP;
+                    break;
+                default:
+                    // zigzag varint, the length has been checked already
+                    long v = 0;
+                    for (long p = valueLo, shift = 0; p < hi; p++, shift += 7) {
+                        v |= (Unsafe.getUnsafe().getByte(p) & 0x7fL) << shift;
+                    }
+                    longValue = (v >>> 1) ^ -(v & 1);
+                    type = ENTITY_TYPE_INTEGER;
+                    break;
+            }
+            value.of(valueLo, hi);
+            binary = true;
+        }
+
         private void setName() {
             name.of(entityLo, bufAt - nEscapedChars);
         }
 
         private boolean setValue() {
+            if (binary) {
+                return true;
+            }
             assert type == ENTITY_TYPE_NONE;
             long bufHi = bufAt - nEscapedChars;
             int valueLen = (int) (bufHi - entityLo);
@@ -89,10 +89,36 @@ public interface LineTcpReceiverConfiguration {
 
     long getWriterIdleTimeout();
 
+    /**
+     * Maximum number of writer threads a hot non-WAL table can be sharded across, 0 means
+     * all writer threads, 1 disables sharding.
+     *
+     * @return max number of writer threads per table
+     */
+    int getWriterMaxShards();
+
     int getWriterQueueCapacity();
 
+    /**
+     * Number of events, across all tables, since the last load evaluation below which
+     * no table is sharded.
+     *
+     * @return min number of events to consider sharding
+     */
+    long getWriterShardEvents();
+
+    /**
+     * Share of all events a non-WAL table has to take since the last load evaluation
+     * to be sharded across writer threads.
+     *
+     * @return load ratio between 0 and 1
+     */
+    double getWriterShardLoadRatio();
+
     WorkerPoolConfiguration getWriterWorkerPoolConfiguration();
 
+    boolean isBinaryFormatSupported();
+
     boolean isEnabled();
 
     boolean isStringAsTagSupported();
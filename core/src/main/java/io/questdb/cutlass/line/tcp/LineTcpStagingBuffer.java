@@ -0,0 +1,596 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.line.tcp;
+
+import io.questdb.cairo.*;
+import io.questdb.cairo.security.AllowAllCairoSecurityContext;
+import io.questdb.cairo.sql.SymbolTable;
+import io.questdb.cairo.sql.TableRecordMetadata;
+import io.questdb.cairo.vm.Vm;
+import io.questdb.cairo.vm.api.MemoryA;
+import io.questdb.cairo.vm.api.MemoryCARW;
+import io.questdb.cairo.vm.api.MemoryCR;
+import io.questdb.cairo.wal.SymbolMapDiff;
+import io.questdb.cairo.wal.SymbolMapDiffCursor;
+import io.questdb.cairo.wal.SymbolMapDiffEntry;
+import io.questdb.cairo.wal.WriterRowUtils;
+import io.questdb.griffin.SqlUtil;
+import io.questdb.std.*;
+import io.questdb.std.datetime.microtime.Timestamps;
+import io.questdb.std.str.DirectByteCharSequence;
+import io.questdb.std.str.SingleCharCharSequence;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+
+/**
+ * Rows of a sharded non-WAL table appended by a writer thread that does not own the table writer.
+ * Columns are kept in memory in WAL segment layout, so that the owner thread can apply them with
+ * {@link TableWriter#applyStagedRows(ReadOnlyObjList, long, boolean, long, long, SymbolMapDiffCursor)}.
+ * Symbols that are not yet in the table get keys from {@link #SYMBOL_KEY_BASE} upwards, the writer
+ * remaps them when rows are applied.
+ */
+class LineTcpStagingBuffer implements SymbolMapDiffCursor, Closeable {
+    // well above any symbol count, keys of cached symbols are used as they are
+    static final int SYMBOL_KEY_BASE = Integer.MAX_VALUE >> 1;
+    private final IntList columnTypes = new IntList();
+    // two entries per column in writer index order, secondary is null for fixed size columns
+    private final ObjList<MemoryCARW> columns = new ObjList<>();
+    private final CairoConfiguration configuration;
+    private final IntList diffColumns = new IntList();
+    private final CairoEngine engine;
+    private final ObjList<MemoryCR> mergeColumns = new ObjList<>();
+    private final ObjList<MemoryCARW> nullColumns = new ObjList<>();
+    private final RowImpl row = new RowImpl();
+    private final LongList rowValueIsNotNull = new LongList();
+    private final SymbolMapDiffImpl symbolMapDiff = new SymbolMapDiffImpl();
+    private final ObjList<CharSequenceIntHashMap> symbolMaps = new ObjList<>();
+    private final BoolList symbolNullFlags = new BoolList();
+    private final TableToken tableToken;
+    private final Uuid uuid = new Uuid();
+    private int diffColumnPos;
+    private boolean outOfOrder;
+    private long rowCount;
+    private int timestampIndex = -1;
+    private long timestampMax = Long.MIN_VALUE;
+    private long timestampMin = Long.MAX_VALUE;
+
+    LineTcpStagingBuffer(CairoEngine engine, TableToken tableToken) {
+        this.engine = engine;
+        this.configuration = engine.getConfiguration();
+        this.tableToken = tableToken;
+        refreshColumns();
+    }
+
+    @Override
+    public void close() {
+        Misc.freeObjListAndClear(columns);
+        Misc.freeObjListAndClear(nullColumns);
+        columnTypes.clear();
+        mergeColumns.clear();
+    }
+
+    @Override
+    public SymbolMapDiff nextSymbolMapDiff() {
+        if (diffColumnPos < diffColumns.size()) {
+            symbolMapDiff.of(diffColumns.getQuick(diffColumnPos++));
+            return symbolMapDiff;
+        }
+        return null;
+    }
+
+    private static int getPrimaryColumnIndex(int index) {
+        return index * 2;
+    }
+
+    private static int getSecondaryColumnIndex(int index) {
+        return getPrimaryColumnIndex(index) + 1;
+    }
+
+    private static void putNull(MemoryA mem1, MemoryA mem2, int type) {
+        switch (ColumnType.tagOf(type)) {
+            case ColumnType.BOOLEAN:
+            case ColumnType.BYTE:
+                mem1.putByte((byte) 0);
+                break;
+            case ColumnType.DOUBLE:
+                mem1.putDouble(Double.NaN);
+                break;
+            case ColumnType.FLOAT:
+                mem1.putFloat(Float.NaN);
+                break;
+            case ColumnType.INT:
+                mem1.putInt(Numbers.INT_NaN);
+                break;
+            case ColumnType.LONG:
+            case ColumnType.DATE:
+            case ColumnType.TIMESTAMP:
+                mem1.putLong(Numbers.LONG_NaN);
+                break;
+            case ColumnType.LONG256:
+                mem1.putLong256(Numbers.LONG_NaN, Numbers.LONG_NaN, Numbers.LONG_NaN, Numbers.LONG_NaN);
+                break;
+            case ColumnType.SHORT:
+                mem1.putShort((short) 0);
+                break;
+            case ColumnType.CHAR:
+                mem1.putChar((char) 0);
+                break;
+            case ColumnType.STRING:
+                mem2.putLong(mem1.putNullStr());
+                break;
+            case ColumnType.SYMBOL:
+                mem1.putInt(SymbolTable.VALUE_IS_NULL);
+                break;
+            case ColumnType.BINARY:
+                mem2.putLong(mem1.putNullBin());
+                break;
+            case ColumnType.GEOBYTE:
+                mem1.putByte(GeoHashes.BYTE_NULL);
+                break;
+            case ColumnType.GEOSHORT:
+                mem1.putShort(GeoHashes.SHORT_NULL);
+                break;
+            case ColumnType.GEOINT:
+                mem1.putInt(GeoHashes.INT_NULL);
+                break;
+            case ColumnType.GEOLONG:
+                mem1.putLong(GeoHashes.NULL);
+                break;
+            case ColumnType.LONG128:
+                // fall through
+            case ColumnType.UUID:
+                mem1.putLong128(Numbers.LONG_NaN, Numbers.LONG_NaN);
+                break;
+            default:
+                throw new UnsupportedOperationException("unsupported column type: " + ColumnType.nameOf(type));
+        }
+    }
+
+    private void addColumn(int columnIndex, int columnType) {
+        final MemoryCARW primary = Vm.getCARWInstance(configuration.getO3ColumnMemorySize(), Integer.MAX_VALUE, MemoryTag.NATIVE_ILP_RSS);
+        MemoryCARW secondary = null;
+        if (ColumnType.isVariableLength(columnType)) {
+            secondary = Vm.getCARWInstance(configuration.getO3ColumnMemorySize(), Integer.MAX_VALUE, MemoryTag.NATIVE_ILP_RSS);
+            secondary.putLong(0);
+        }
+        // rows staged before the column was known are null
+        for (long r = 0; r < rowCount; r++) {
+            putNull(primary, secondary, columnType);
+        }
+        columns.extendAndSet(getPrimaryColumnIndex(columnIndex), primary);
+        columns.extendAndSet(getSecondaryColumnIndex(columnIndex), secondary);
+        columnTypes.extendAndSet(columnIndex, columnType);
+        rowValueIsNotNull.extendAndSet(columnIndex, rowCount - 1);
+        if (ColumnType.isSymbol(columnType)) {
+            symbolMaps.extendAndSet(columnIndex, new CharSequenceIntHashMap());
+            symbolNullFlags.extendAndSet(columnIndex, false);
+        }
+    }
+
+    private MemoryCARW getNullColumn(int index) {
+        MemoryCARW mem = nullColumns.getQuiet(index);
+        if (mem == null) {
+            mem = Vm.getCARWInstance(configuration.getO3ColumnMemorySize(), Integer.MAX_VALUE, MemoryTag.NATIVE_ILP_RSS);
+            nullColumns.extendAndSet(index, mem);
+        }
+        mem.jumpTo(0);
+        return mem;
+    }
+
+    private MemoryCARW getPrimaryColumn(int columnIndex) {
+        return columns.getQuick(getPrimaryColumnIndex(columnIndex));
+    }
+
+    private MemoryCARW getSecondaryColumn(int columnIndex) {
+        return columns.getQuick(getSecondaryColumnIndex(columnIndex));
+    }
+
+    private boolean isKnownColumn(int columnIndex) {
+        return columnIndex < columnTypes.size() && columnTypes.getQuick(columnIndex) > 0;
+    }
+
+    private void refreshColumns() {
+        try (TableRecordMetadata metadata = engine.getMetadata(AllowAllCairoSecurityContext.INSTANCE, tableToken)) {
+            for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+                final int columnIndex = metadata.getWriterIndex(i);
+                if (!isKnownColumn(columnIndex)) {
+                    addColumn(columnIndex, metadata.getColumnType(i));
+                }
+            }
+            if (timestampIndex < 0) {
+                timestampIndex = metadata.getWriterIndex(metadata.getTimestampIndex());
+            }
+        }
+    }
+
+    private void setAppendPosition(long rowCount) {
+        for (int i = 0, n = columnTypes.size(); i < n; i++) {
+            final int type = columnTypes.getQuick(i);
+            if (type > 0) {
+                final MemoryCARW mem1 = getPrimaryColumn(i);
+                final MemoryCARW mem2 = getSecondaryColumn(i);
+                if (mem2 != null) {
+                    // N+1 offsets, the last one points to the end of the data
+                    mem1.jumpTo(mem2.getLong(rowCount * Long.BYTES));
+                    mem2.jumpTo((rowCount + 1) * Long.BYTES);
+                } else if (i == timestampIndex) {
+                    mem1.jumpTo(rowCount << 4);
+                } else {
+                    mem1.jumpTo(rowCount << ColumnType.pow2SizeOf(type));
+                }
+                rowValueIsNotNull.setQuick(i, rowCount - 1);
+            }
+        }
+    }
+
+    private void setRowValueNotNull(int columnIndex) {
+        assert rowValueIsNotNull.getQuick(columnIndex) != rowCount;
+        rowValueIsNotNull.setQuick(columnIndex, rowCount);
+    }
+
+    /**
+     * Lines up staged columns with the columns of the table writer. Columns the writer has dropped
+     * are skipped, columns that are not staged are filled with nulls. Symbol map diffs of this
+     * buffer are valid for the returned columns only.
+     *
+     * @param writerMetadata metadata of the table writer the rows are applied to
+     * @return columns, two per writer column
+     */
+    ReadOnlyObjList<? extends MemoryCR> alignTo(TableRecordMetadata writerMetadata) {
+        mergeColumns.clear();
+        diffColumns.clear();
+        diffColumnPos = 0;
+        for (int i = 0, n = writerMetadata.getColumnCount(); i < n; i++) {
+            final int type = writerMetadata.getColumnType(i);
+            if (type < 0) {
+                mergeColumns.add(null);
+                mergeColumns.add(null);
+            } else if (i < columnTypes.size() && columnTypes.getQuick(i) == type) {
+                mergeColumns.add(getPrimaryColumn(i));
+                mergeColumns.add(getSecondaryColumn(i));
+                if (ColumnType.isSymbol(type) && (symbolMaps.getQuick(i).size() > 0 || symbolNullFlags.get(i))) {
+                    diffColumns.add(i);
+                }
+            } else {
+                // the column has been added after the rows were staged
+                final MemoryCARW primary = getNullColumn(getPrimaryColumnIndex(i));
+                MemoryCARW secondary = null;
+                if (ColumnType.isVariableLength(type)) {
+                    secondary = getNullColumn(getSecondaryColumnIndex(i));
+                    secondary.putLong(0);
+                }
+                for (long r = 0; r < rowCount; r++) {
+                    putNull(primary, secondary, type);
+                }
+                mergeColumns.add(primary);
+                mergeColumns.add(secondary);
+            }
+        }
+        return mergeColumns;
+    }
+
+    void clear() {
+        setAppendPosition(0);
+        for (int i = 0, n = columnTypes.size(); i < n; i++) {
+            if (ColumnType.isSymbol(columnTypes.getQuick(i))) {
+                symbolMaps.getQuick(i).clear();
+                symbolNullFlags.set(i, false);
+            }
+        }
+        rowCount = 0;
+        timestampMin = Long.MAX_VALUE;
+        timestampMax = Long.MIN_VALUE;
+        outOfOrder = false;
+    }
+
+    long getRowCount() {
+        return rowCount;
+    }
+
+    long getTimestampMax() {
+        return timestampMax;
+    }
+
+    long getTimestampMin() {
+        return timestampMin;
+    }
+
+    /**
+     * Checks whether the column can be staged, refreshes staged columns from table metadata when the
+     * column is unknown to this buffer.
+     *
+     * @param columnIndex column writer index
+     * @return false when the column does not exist in the table
+     */
+    boolean hasColumn(int columnIndex) {
+        if (isKnownColumn(columnIndex)) {
+            return true;
+        }
+        refreshColumns();
+        return isKnownColumn(columnIndex);
+    }
+
+    boolean isOrdered() {
+        return !outOfOrder;
+    }
+
+    TableWriter.Row newRow(long timestamp) {
+        if (timestamp < Timestamps.O3_MIN_TS) {
+            throw CairoException.nonCritical().put("timestamp before 1970-01-01 is not allowed");
+        }
+        getPrimaryColumn(timestampIndex).putLong128(timestamp, rowCount);
+        setRowValueNotNull(timestampIndex);
+        row.timestamp = timestamp;
+        return row;
+    }
+
+    private class RowImpl implements TableWriter.Row {
+        private long timestamp;
+
+        @Override
+        public void append() {
+            for (int i = 0, n = columnTypes.size(); i < n; i++) {
+                final int type = columnTypes.getQuick(i);
+                if (type > 0 && rowValueIsNotNull.getQuick(i) < rowCount) {
+                    putNull(getPrimaryColumn(i), getSecondaryColumn(i), type);
+                }
+            }
+
+            if (timestamp > timestampMax) {
+                timestampMax = timestamp;
+            } else {
+                outOfOrder |= (timestampMax != timestamp);
+            }
+            if (timestamp < timestampMin) {
+                timestampMin = timestamp;
+            }
+            rowCount++;
+        }
+
+        @Override
+        public void cancel() {
+            setAppendPosition(rowCount);
+        }
+
+        @Override
+        public void putBin(int columnIndex, long address, long len) {
+            getSecondaryColumn(columnIndex).putLong(getPrimaryColumn(columnIndex).putBin(address, len));
+            setRowValueNotNull(columnIndex);
+        }
+
+        @Override
+        public void putBin(int columnIndex, BinarySequence sequence) {
+            getSecondaryColumn(columnIndex).putLong(getPrimaryColumn(columnIndex).putBin(sequence));
+            setRowValueNotNull(columnIndex);
+        }
+
+        @Override
+        public void putBool(int columnIndex, boolean value) {
+            getPrimaryColumn(columnIndex).putBool(value);
+            setRowValueNotNull(columnIndex);
+        }
+
+        @Override
+        public void putByte(int columnIndex, byte value) {
+            getPrimaryColumn(columnIndex).putByte(value);
+            setRowValueNotNull(columnIndex);
+        }
+
+        @Override
+        public void putChar(int columnIndex, char value) {
+            getPrimaryColumn(columnIndex).putChar(value);
+            setRowValueNotNull(columnIndex);
+        }
+
+        @Override
+        public void putDouble(int columnIndex, double value) {
+            getPrimaryColumn(columnIndex).putDouble(value);
+            setRowValueNotNull(columnIndex);
+        }
+
+        @Override
+        public void putFloat(int columnIndex, float value) {
+            getPrimaryColumn(columnIndex).putFloat(value);
+            setRowValueNotNull(columnIndex);
+        }
+
+        @Override
+        public void putGeoHash(int index, long value) {
+            WriterRowUtils.putGeoHash(index, value, columnTypes.getQuick(index), this);
+        }
+
+        @Override
+        public void putGeoHashDeg(int index, double lat, double lon) {
+            final int type = columnTypes.getQuick(index);
+            WriterRowUtils.putGeoHash(index, GeoHashes.fromCoordinatesDegUnsafe(lat, lon, ColumnType.getGeoHashBits(type)), type, this);
+        }
+
+        @Override
+        public void putGeoStr(int index, CharSequence hash) {
+            WriterRowUtils.putGeoStr(index, hash, columnTypes.getQuick(index), this);
+        }
+
+        @Override
+        public void putInt(int columnIndex, int value) {
+            getPrimaryColumn(columnIndex).putInt(value);
+            setRowValueNotNull(columnIndex);
+        }
+
+        @Override
+        public void putLong(int columnIndex, long value) {
+            getPrimaryColumn(columnIndex).putLong(value);
+            setRowValueNotNull(columnIndex);
+        }
+
+        @Override
+        public void putLong128(int columnIndex, long lo, long hi) {
+            getPrimaryColumn(columnIndex).putLong128(lo, hi);
+            setRowValueNotNull(columnIndex);
+        }
+
+        @Override
+        public void putLong256(int columnIndex, long l0, long l1, long l2, long l3) {
+            getPrimaryColumn(columnIndex).putLong256(l0, l1, l2, l3);
+            setRowValueNotNull(columnIndex);
+        }
+
+        @Override
+        public void putLong256(int columnIndex, Long256 value) {
+            getPrimaryColumn(columnIndex).putLong256(value.getLong0(), value.getLong1(), value.getLong2(), value.getLong3());
+            setRowValueNotNull(columnIndex);
+        }
+
+        @Override
+        public void putLong256(int columnIndex, CharSequence hexString) {
+            getPrimaryColumn(columnIndex).putLong256(hexString);
+            setRowValueNotNull(columnIndex);
+        }
+
+        @Override
+        public void putLong256(int columnIndex, @NotNull CharSequence hexString, int start, int end) {
+            getPrimaryColumn(columnIndex).putLong256(hexString, start, end);
+            setRowValueNotNull(columnIndex);
+        }
+
+        @Override
+        public void putShort(int columnIndex, short value) {
+            getPrimaryColumn(columnIndex).putShort(value);
+            setRowValueNotNull(columnIndex);
+        }
+
+        @Override
+        public void putStr(int columnIndex, CharSequence value) {
+            getSecondaryColumn(columnIndex).putLong(getPrimaryColumn(columnIndex).putStr(value));
+            setRowValueNotNull(columnIndex);
+        }
+
+        @Override
+        public void putStr(int columnIndex, char value) {
+            getSecondaryColumn(columnIndex).putLong(getPrimaryColumn(columnIndex).putStr(value));
+            setRowValueNotNull(columnIndex);
+        }
+
+        @Override
+        public void putStr(int columnIndex, CharSequence value, int pos, int len) {
+            getSecondaryColumn(columnIndex).putLong(getPrimaryColumn(columnIndex).putStr(value, pos, len));
+            setRowValueNotNull(columnIndex);
+        }
+
+        @Override
+        public void putStrUtf8AsUtf16(int columnIndex, DirectByteCharSequence value, boolean hasNonAsciiChars) {
+            getSecondaryColumn(columnIndex).putLong(getPrimaryColumn(columnIndex).putStrUtf8AsUtf16(value, hasNonAsciiChars));
+            setRowValueNotNull(columnIndex);
+        }
+
+        @Override
+        public void putSym(int columnIndex, CharSequence value) {
+            int key;
+            if (value != null) {
+                final CharSequenceIntHashMap symbolMap = symbolMaps.getQuick(columnIndex);
+                final int index = symbolMap.keyIndex(value);
+                if (index > -1) {
+                    // staged symbols have a continuous range of keys
+                    key = SYMBOL_KEY_BASE + symbolMap.size();
+                    symbolMap.putAt(index, value, key);
+                } else {
+                    key = symbolMap.valueAt(index);
+                }
+            } else {
+                key = SymbolTable.VALUE_IS_NULL;
+                symbolNullFlags.set(columnIndex, true);
+            }
+            getPrimaryColumn(columnIndex).putInt(key);
+            setRowValueNotNull(columnIndex);
+        }
+
+        @Override
+        public void putSym(int columnIndex, char value) {
+            putSym(columnIndex, SingleCharCharSequence.get(value));
+        }
+
+        @Override
+        public void putUuid(int columnIndex, CharSequence uuidStr) {
+            SqlUtil.implicitCastStrAsUuid(uuidStr, uuid);
+            putLong128(columnIndex, uuid.getLo(), uuid.getHi());
+        }
+    }
+
+    private class SymbolMapDiffImpl implements SymbolMapDiff, SymbolMapDiffEntry {
+        private int columnIndex;
+        private int entryIndex;
+        private ObjList<CharSequence> symbols;
+
+        @Override
+        public void drain() {
+            entryIndex = symbols.size();
+        }
+
+        @Override
+        public int getCleanSymbolCount() {
+            return SYMBOL_KEY_BASE;
+        }
+
+        @Override
+        public int getColumnIndex() {
+            return columnIndex;
+        }
+
+        @Override
+        public int getKey() {
+            return SYMBOL_KEY_BASE + entryIndex - 1;
+        }
+
+        @Override
+        public int getSize() {
+            return symbols.size();
+        }
+
+        @Override
+        public CharSequence getSymbol() {
+            return symbols.getQuick(entryIndex - 1);
+        }
+
+        @Override
+        public boolean hasNullValue() {
+            return symbolNullFlags.get(columnIndex);
+        }
+
+        @Override
+        public SymbolMapDiffEntry nextEntry() {
+            if (entryIndex < symbols.size()) {
+                entryIndex++;
+                return this;
+            }
+            return null;
+        }
+
+        void of(int columnIndex) {
+            this.columnIndex = columnIndex;
+            this.symbols = symbolMaps.getQuick(columnIndex).keys();
+            this.entryIndex = 0;
+        }
+    }
+}
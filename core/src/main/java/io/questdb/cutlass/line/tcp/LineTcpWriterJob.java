@@ -150,7 +150,17 @@ class LineTcpWriterJob implements Job, Closeable {
 
                 final TableUpdateDetails tud = event.getTableUpdateDetails();
                 boolean closeWriter = false;
-                if (event.getWriterWorkerId() == workerId) {
+                final int eventWriterWorkerId = event.getWriterWorkerId();
+                if (eventWriterWorkerId == workerId && tud.getWriterThreadId() != workerId) {
+                    // table is sharded and its writer is owned by another thread,
+                    // rows are staged here and merged by the owner
+                    if (!tud.isWriterInError() && tud.stage(workerId, event)) {
+                        scheduler.requestShardMerge(tud);
+                    }
+                } else if (
+                        eventWriterWorkerId == workerId
+                                || (eventWriterWorkerId == LineTcpMeasurementEventType.ALL_WRITERS_MERGE_SHARDS && tud.getWriterThreadId() == workerId)
+                ) {
                     try {
                         if (tud.isWriterInError()) {
                             closeWriter = true;
@@ -164,7 +174,11 @@ class LineTcpWriterJob implements Job, Closeable {
                                         .$(", threadId=").$(workerId)
                                         .I$();
                             }
-                            event.append();
+                            if (eventWriterWorkerId == workerId) {
+                                event.append();
+                            } else {
+                                tud.mergeShards();
+                            }
                         }
                     } catch (Throwable ex) {
                         tud.setWriterInError();
@@ -178,7 +192,7 @@ class LineTcpWriterJob implements Job, Closeable {
                         // This is a critical error, so we treat it as an unhandled one.
                     }
                 } else {
-                    if (event.getWriterWorkerId() == LineTcpMeasurementEventType.ALL_WRITERS_RELEASE_WRITER) {
+                    if (eventWriterWorkerId == LineTcpMeasurementEventType.ALL_WRITERS_RELEASE_WRITER) {
                         closeWriter = true;
                     }
                 }
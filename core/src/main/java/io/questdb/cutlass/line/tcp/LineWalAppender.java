@@ -0,0 +1,407 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.line.tcp;
+
+import io.questdb.cairo.*;
+import io.questdb.cairo.sql.TableRecordMetadata;
+import io.questdb.cairo.wal.WalWriter;
+import io.questdb.cutlass.line.LineProtoTimestampAdapter;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.Chars;
+import io.questdb.std.NumericException;
+import io.questdb.std.Numbers;
+import io.questdb.std.datetime.microtime.MicrosecondClock;
+import io.questdb.std.str.DirectByteCharSequence;
+
+import static io.questdb.cutlass.line.tcp.LineTcpMeasurementEvent.*;
+import static io.questdb.cutlass.line.tcp.TableUpdateDetails.ThreadLocalDetails.COLUMN_NOT_FOUND;
+import static io.questdb.cutlass.line.tcp.TableUpdateDetails.ThreadLocalDetails.DUPLICATED_COLUMN;
+
+/**
+ * Writes parsed line protocol measurements into WAL tables. Shared by the TCP receiver, which
+ * commits as rows accumulate, and by transactional ingestion, which commits once per batch.
+ */
+class LineWalAppender {
+    private static final Log LOG = LogFactory.getLog(LineWalAppender.class);
+    private final boolean autoCreateNewColumns;
+    private final int maxFileNameLength;
+    private final MicrosecondClock microsecondClock;
+    private final boolean stringToCharCastAllowed;
+    private final LineProtoTimestampAdapter timestampAdapter;
+
+    LineWalAppender(LineTcpReceiverConfiguration configuration, int maxFileNameLength) {
+        this.autoCreateNewColumns = configuration.getAutoCreateNewColumns();
+        this.maxFileNameLength = maxFileNameLength;
+        this.microsecondClock = configuration.getMicrosecondClock();
+        this.stringToCharCastAllowed = configuration.isStringToCharCastAllowed();
+        this.timestampAdapter = configuration.getTimestampAdapter();
+    }
+
+    /**
+     * Appends the measurement and commits when the table reaches its max uncommitted row count.
+     * A row that cannot be written is logged and skipped.
+     */
+    void appendToWal(LineTcpParser parser, TableUpdateDetails tud, int workerId) throws CommitFailedException {
+        final TableUpdateDetails.ThreadLocalDetails ld = tud.getThreadLocalDetails(workerId);
+        final TableWriter.Row r = newRow(parser, tud, ld, true);
+        try {
+            putEntities(parser, ld, r);
+            r.append();
+            tud.commitIfMaxUncommittedRowsCountReached();
+        } catch (CommitFailedException commitFailedException) {
+            throw commitFailedException;
+        } catch (Throwable th) {
+            LOG.error().$("could not write line protocol measurement [tableName=").$(tud.getTableNameUtf16()).$(", message=").$(th.getMessage()).$(th).I$();
+            r.cancel();
+        }
+    }
+
+    /**
+     * Appends the measurement to the open WAL transaction without committing it. A row that
+     * cannot be written is cancelled and the error is rethrown, so that the caller can roll
+     * back the whole transaction.
+     */
+    void appendToWalUncommitted(LineTcpParser parser, TableUpdateDetails tud) throws CommitFailedException {
+        final TableUpdateDetails.ThreadLocalDetails ld = tud.getThreadLocalDetails(0);
+        final TableWriter.Row r = newRow(parser, tud, ld, false);
+        try {
+            putEntities(parser, ld, r);
+            r.append();
+        } catch (Throwable th) {
+            r.cancel();
+            throw th;
+        }
+    }
+
+    private TableWriter.Row newRow(
+            LineTcpParser parser,
+            TableUpdateDetails tud,
+            TableUpdateDetails.ThreadLocalDetails ld,
+            boolean commitBeforeAddColumn
+    ) throws CommitFailedException {
+        // pass 1: create all columns that do not exist
+        ld.resetStateIfNecessary();
+        ld.clearColumnTypes();
+
+        WalWriter ww = (WalWriter) tud.getWriter();
+        TableRecordMetadata metadata = ww.getMetadata();
+
+        long timestamp = parser.getTimestamp();
+        if (timestamp != LineTcpParser.NULL_TIMESTAMP) {
+            timestamp = timestampAdapter.getMicros(timestamp);
+        } else {
+            timestamp = microsecondClock.getTicks();
+        }
+
+        final int entCount = parser.getEntityCount();
+        for (int i = 0; i < entCount; i++) {
+            final LineTcpParser.ProtoEntity ent = parser.getEntity(i);
+            int columnIndex = ld.getColumnIndex(ent.getName(), parser.hasNonAsciiChars(), metadata);
+            int columnType = ColumnType.UNDEFINED;
+            if (columnIndex == COLUMN_NOT_FOUND) {
+                final String columnNameUtf16 = ld.getColNameUtf16();
+                if (autoCreateNewColumns && TableUtils.isValidColumnName(columnNameUtf16, maxFileNameLength)) {
+                    if (metadata.getColumnIndexQuiet(columnNameUtf16) < 0) {
+                        if (commitBeforeAddColumn) {
+                            tud.commit(false);
+                        }
+                        try {
+                            ww.addColumn(columnNameUtf16, ld.getColumnType(ld.getColNameUtf8(), ent.getType()));
+                        } catch (CairoException e) {
+                            columnIndex = metadata.getColumnIndexQuiet(columnNameUtf16);
+                            if (columnIndex < 0) {
+                                // the column is still not there, something must be wrong
+                                throw e;
+                            }
+                            // all good, someone added the column concurrently
+                        }
+                    }
+                    columnIndex = metadata.getColumnIndexQuiet(columnNameUtf16);
+                    columnType = metadata.getColumnType(columnIndex);
+                } else if (!autoCreateNewColumns) {
+                    throw newColumnsNotAllowed(tud, columnNameUtf16);
+                } else {
+                    throw invalidColNameError(tud, columnNameUtf16);
+                }
+            } else if (columnIndex > -1) {
+                if (columnIndex == tud.getTimestampIndex()) {
+                    timestamp = timestampAdapter.getMicros(ent.getLongValue());
+                    columnIndex = DUPLICATED_COLUMN;
+                }
+                columnType = columnIndex < 0 ? ColumnType.UNDEFINED : metadata.getColumnType(columnIndex);
+            }
+            ld.addColumnType(columnIndex, columnType);
+        }
+
+        return ww.newRow(timestamp);
+    }
+
+    private void putEntities(LineTcpParser parser, TableUpdateDetails.ThreadLocalDetails ld, TableWriter.Row r) {
+        final int entCount = parser.getEntityCount();
+        for (int i = 0; i < entCount; i++) {
+            final LineTcpParser.ProtoEntity ent = parser.getEntity(i);
+
+            short entType = ent.getType();
+            int colTypeAndIndex = ld.getColumnType(i);
+            int colType = Numbers.decodeLowShort(colTypeAndIndex);
+            int columnIndex = Numbers.decodeHighShort(colTypeAndIndex);
+
+            if (columnIndex < 0) {
+                continue;
+            }
+
+            switch (entType) {
+                case LineTcpParser.ENTITY_TYPE_TAG: {
+                    if (ColumnType.tagOf(colType) == ColumnType.SYMBOL) {
+                        r.putSymUtf8(columnIndex, ent.getValue(), parser.hasNonAsciiChars());
+                    } else {
+                        throw castError("tag", i, colType, ent.getName());
+                    }
+                    break;
+                }
+                case LineTcpParser.ENTITY_TYPE_INTEGER: {
+                    switch (ColumnType.tagOf(colType)) {
+                        case ColumnType.LONG:
+                            r.putLong(columnIndex, ent.getLongValue());
+                            break;
+
+                        case ColumnType.INT: {
+                            final long entityValue = ent.getLongValue();
+                            if (entityValue >= Integer.MIN_VALUE && entityValue <= Integer.MAX_VALUE) {
+                                r.putInt(columnIndex, (int) entityValue);
+                            } else if (entityValue == Numbers.LONG_NaN) {
+                                r.putInt(columnIndex, Numbers.INT_NaN);
+                            } else {
+                                throw boundsError(entityValue, i, ColumnType.INT);
+                            }
+                            break;
+                        }
+                        case ColumnType.SHORT: {
+                            final long entityValue = ent.getLongValue();
+                            if (entityValue >= Short.MIN_VALUE && entityValue <= Short.MAX_VALUE) {
+                                r.putShort(columnIndex, (short) entityValue);
+                            } else if (entityValue == Numbers.LONG_NaN) {
+                                r.putShort(columnIndex, (short) 0);
+                            } else {
+                                throw boundsError(entityValue, i, ColumnType.SHORT);
+                            }
+                            break;
+                        }
+                        case ColumnType.BYTE: {
+                            final long entityValue = ent.getLongValue();
+                            if (entityValue >= Byte.MIN_VALUE && entityValue <= Byte.MAX_VALUE) {
+                                r.putByte(columnIndex, (byte) entityValue);
+                            } else if (entityValue == Numbers.LONG_NaN) {
+                                r.putByte(columnIndex, (byte) 0);
+                            } else {
+                                throw boundsError(entityValue, i, ColumnType.BYTE);
+                            }
+                            break;
+                        }
+                        case ColumnType.TIMESTAMP:
+                            r.putTimestamp(columnIndex, ent.getLongValue());
+                            break;
+
+                        case ColumnType.DATE:
+                            r.putDate(columnIndex, ent.getLongValue());
+                            break;
+
+                        case ColumnType.DOUBLE:
+                            r.putDouble(columnIndex, ent.getLongValue());
+                            break;
+
+                        case ColumnType.FLOAT:
+                            r.putFloat(columnIndex, ent.getLongValue());
+                            break;
+
+                        case ColumnType.SYMBOL:
+                            if (!ent.isBinary()) {
+                                r.putSym(columnIndex, ent.getValue());
+                                break;
+                            }
+                            // binary value has no text form
+                        default:
+                            throw castError("integer", i, colType, ent.getName());
+                    }
+                    break;
+                }
+                case LineTcpParser.ENTITY_TYPE_FLOAT: {
+                    switch (ColumnType.tagOf(colType)) {
+                        case ColumnType.DOUBLE:
+                            r.putDouble(columnIndex, ent.getFloatValue());
+                            break;
+
+                        case ColumnType.FLOAT:
+                            r.putFloat(columnIndex, (float) ent.getFloatValue());
+                            break;
+
+                        case ColumnType.SYMBOL:
+                            if (!ent.isBinary()) {
+                                r.putSym(columnIndex, ent.getValue());
+                                break;
+                            }
+                            // binary value has no text form
+                        default:
+                            throw castError("float", i, colType, ent.getName());
+                    }
+                    break;
+                }
+                case LineTcpParser.ENTITY_TYPE_STRING: {
+                    final int geoHashBits = ColumnType.getGeoHashBits(colType);
+                    final DirectByteCharSequence entityValue = ent.getValue();
+                    if (geoHashBits == 0) { // not geohash
+                        switch (ColumnType.tagOf(colType)) {
+                            case ColumnType.STRING:
+                                r.putStrUtf8AsUtf16(columnIndex, entityValue, parser.hasNonAsciiChars());
+                                break;
+
+                            case ColumnType.CHAR:
+                                if (entityValue.length() == 1 && entityValue.byteAt(0) > -1) {
+                                    r.putChar(columnIndex, entityValue.charAt(0));
+                                } else if (stringToCharCastAllowed) {
+                                    int encodedResult = Chars.utf8CharDecode(entityValue.getLo(), entityValue.getHi());
+                                    if (Numbers.decodeLowShort(encodedResult) > 0) {
+                                        r.putChar(columnIndex, (char) Numbers.decodeHighShort(encodedResult));
+                                    } else {
+                                        throw castError("string", i, colType, ent.getName());
+                                    }
+                                } else {
+                                    throw castError("string", i, colType, ent.getName());
+                                }
+                                break;
+
+                            case ColumnType.SYMBOL:
+                                r.putSymUtf8(columnIndex, entityValue, parser.hasNonAsciiChars());
+                                break;
+                            case ColumnType.UUID:
+                                r.putUuid(columnIndex, entityValue);
+                                break;
+                            default:
+                                throw castError("string", i, colType, ent.getName());
+                        }
+                    } else {
+                        long geoHash;
+                        try {
+                            DirectByteCharSequence value = ent.getValue();
+                            geoHash = GeoHashes.fromStringTruncatingNl(value.getLo(), value.getHi(), geoHashBits);
+                        } catch (NumericException e) {
+                            geoHash = GeoHashes.NULL;
+                        }
+                        r.putGeoHash(columnIndex, geoHash);
+                    }
+                    break;
+                }
+                case LineTcpParser.ENTITY_TYPE_LONG256: {
+                    switch (ColumnType.tagOf(colType)) {
+                        case ColumnType.LONG256:
+                            r.putLong256(columnIndex, ent.getValue());
+                            break;
+
+                        case ColumnType.SYMBOL:
+                            r.putSym(columnIndex, ent.getValue());
+                            break;
+
+                        default:
+                            throw castError("long256", i, colType, ent.getName());
+                    }
+                    break;
+                }
+                case LineTcpParser.ENTITY_TYPE_BOOLEAN: {
+                    switch (ColumnType.tagOf(colType)) {
+                        case ColumnType.BOOLEAN:
+                            r.putBool(columnIndex, ent.getBooleanValue());
+                            break;
+
+                        case ColumnType.BYTE:
+                            r.putByte(columnIndex, (byte) (ent.getBooleanValue() ? 1 : 0));
+                            break;
+
+                        case ColumnType.SHORT:
+                            r.putShort(columnIndex, (short) (ent.getBooleanValue() ? 1 : 0));
+                            break;
+
+                        case ColumnType.INT:
+                            r.putInt(columnIndex, ent.getBooleanValue() ? 1 : 0);
+                            break;
+
+                        case ColumnType.LONG:
+                            r.putLong(columnIndex, ent.getBooleanValue() ? 1 : 0);
+                            break;
+
+                        case ColumnType.FLOAT:
+                            r.putFloat(columnIndex, ent.getBooleanValue() ? 1 : 0);
+                            break;
+
+                        case ColumnType.DOUBLE:
+                            r.putDouble(columnIndex, ent.getBooleanValue() ? 1 : 0);
+                            break;
+
+                        case ColumnType.SYMBOL:
+                            r.putSym(columnIndex, ent.getValue());
+                            break;
+
+                        default:
+                            throw castError("boolean", i, colType, ent.getName());
+                    }
+                    break;
+                }
+                case LineTcpParser.ENTITY_TYPE_TIMESTAMP: {
+                    switch (ColumnType.tagOf(colType)) {
+                        case ColumnType.TIMESTAMP:
+                            r.putTimestamp(columnIndex, ent.getLongValue());
+                            break;
+
+                        case ColumnType.DATE:
+                            r.putTimestamp(columnIndex, ent.getLongValue() / 1000);
+                            break;
+
+                        case ColumnType.SYMBOL:
+                            if (!ent.isBinary()) {
+                                r.putSym(columnIndex, ent.getValue());
+                                break;
+                            }
+                            // binary value has no text form
+                        default:
+                            throw castError("timestamp", i, colType, ent.getName());
+                    }
+                    break;
+                }
+                // parser would reject this condition based on config
+                case LineTcpParser.ENTITY_TYPE_SYMBOL: {
+                    if (ColumnType.tagOf(colType) == ColumnType.SYMBOL) {
+                        r.putSymUtf8(columnIndex, ent.getValue(), parser.hasNonAsciiChars());
+                    } else {
+                        throw castError("symbol", i, colType, ent.getName());
+                    }
+                    break;
+                }
+                default:
+                    // unsupported types are ignored
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.line.tcp;
+
+import io.questdb.cairo.*;
+import io.questdb.cairo.vm.Vm;
+import io.questdb.cairo.vm.api.MemoryMARW;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.*;
+import io.questdb.std.str.DirectByteCharSequence;
+import io.questdb.std.str.Path;
+import io.questdb.std.str.StringSink;
+
+import java.io.Closeable;
+
+/**
+ * Appends line protocol measurements to WAL tables without committing them row by row.
+ * Each table touched by the batch gets its own WAL transaction, which is published by
+ * {@link #commit()} or discarded by {@link #rollback()}. Writers are held only for the
+ * duration of the batch.
+ */
+public class LineWalTransaction implements Closeable {
+    private static final Log LOG = LogFactory.getLog(LineWalTransaction.class);
+    private final boolean autoCreateNewColumns;
+    private final boolean autoCreateNewTables;
+    private final LineTcpReceiverConfiguration configuration;
+    private final MemoryMARW ddlMem = Vm.getMARWInstance();
+    private final DefaultColumnTypes defaultColumnTypes;
+    private final CairoEngine engine;
+    private final Path path = new Path();
+    private final StringSink tableNameUtf16 = new StringSink();
+    private final TableStructureAdapter tableStructureAdapter;
+    private final LowerCaseCharSequenceObjHashMap<TableUpdateDetails> tableUpdateDetailsUtf16 = new LowerCaseCharSequenceObjHashMap<>();
+    private final ObjList<SymbolCache> unusedSymbolCaches = new ObjList<>();
+    private final LineWalAppender walAppender;
+
+    public LineWalTransaction(LineTcpReceiverConfiguration configuration, CairoEngine engine) {
+        this.configuration = configuration;
+        this.engine = engine;
+        this.autoCreateNewColumns = configuration.getAutoCreateNewColumns();
+        this.autoCreateNewTables = configuration.getAutoCreateNewTables();
+        this.defaultColumnTypes = new DefaultColumnTypes(configuration);
+        final CairoConfiguration cairoConfiguration = engine.getConfiguration();
+        this.tableStructureAdapter = new TableStructureAdapter(cairoConfiguration, defaultColumnTypes, configuration.getDefaultPartitionBy());
+        this.walAppender = new LineWalAppender(configuration, cairoConfiguration.getMaxFileNameLength());
+    }
+
+    /**
+     * Appends the measurement the parser has just completed. Tables and columns are created
+     * as the receiver configuration allows. Throws when the measurement cannot be written,
+     * the transaction should be rolled back then.
+     */
+    public void append(CairoSecurityContext securityContext, LineTcpParser parser) throws CommitFailedException {
+        walAppender.appendToWalUncommitted(parser, getTableUpdateDetails(securityContext, parser));
+    }
+
+    @Override
+    public void close() {
+        rollback();
+        Misc.free(path);
+        Misc.free(ddlMem);
+        Misc.freeObjListAndClear(unusedSymbolCaches);
+    }
+
+    /**
+     * Commits the tables in the order they were first written to. A failed commit rolls back
+     * that table and the ones after it, tables committed before the failure stay committed.
+     */
+    public void commit() throws CommitFailedException {
+        final ObjList<CharSequence> tableNames = tableUpdateDetailsUtf16.keys();
+        try {
+            for (int i = 0, n = tableNames.size(); i < n; i++) {
+                tableUpdateDetailsUtf16.get(tableNames.getQuick(i)).commit(false);
+            }
+        } finally {
+            rollback();
+        }
+    }
+
+    public boolean isEmpty() {
+        return tableUpdateDetailsUtf16.size() == 0;
+    }
+
+    /**
+     * Discards uncommitted rows of all tables and releases their writers.
+     */
+    public void rollback() {
+        final ObjList<CharSequence> tableNames = tableUpdateDetailsUtf16.keys();
+        for (int i = 0, n = tableNames.size(); i < n; i++) {
+            final TableUpdateDetails tud = tableUpdateDetailsUtf16.get(tableNames.getQuick(i));
+            try {
+                tud.rollback();
+            } catch (Throwable th) {
+                LOG.error().$("could not rollback [table=").$(tud.getTableNameUtf16()).$(", ex=").$(th).I$();
+                tud.setWriterInError();
+            } finally {
+                tud.close();
+            }
+        }
+        tableUpdateDetailsUtf16.clear();
+    }
+
+    private TableUpdateDetails getTableUpdateDetails(CairoSecurityContext securityContext, LineTcpParser parser) {
+        final DirectByteCharSequence tableNameUtf8 = parser.getMeasurementName();
+        tableNameUtf16.clear();
+        Chars.utf8Decode(tableNameUtf8.getLo(), tableNameUtf8.getHi(), tableNameUtf16);
+
+        final int keyIndex = tableUpdateDetailsUtf16.keyIndex(tableNameUtf16);
+        if (keyIndex < 0) {
+            return tableUpdateDetailsUtf16.valueAt(keyIndex);
+        }
+
+        TableToken tableToken = engine.getTableTokenIfExists(tableNameUtf16);
+        if (engine.getStatus(securityContext, path, tableToken) != TableUtils.TABLE_EXISTS) {
+            if (!autoCreateNewTables) {
+                throw CairoException.nonCritical()
+                        .put("table does not exist, creating new tables is disabled [table=").put(tableNameUtf16)
+                        .put(']');
+            }
+            if (!autoCreateNewColumns) {
+                throw CairoException.nonCritical()
+                        .put("table does not exist, cannot create table, creating new columns is disabled [table=").put(tableNameUtf16)
+                        .put(']');
+            }
+            final TableStructureAdapter tsa = tableStructureAdapter.of(tableNameUtf16, parser);
+            for (int i = 0, n = tsa.getColumnCount(); i < n; i++) {
+                if (tsa.getColumnType(i) == LineTcpParser.ENTITY_TYPE_NULL) {
+                    throw CairoException.nonCritical().put("unknown column type [columnName=").put(tsa.getColumnName(i)).put(']');
+                }
+            }
+            LOG.info().$("creating table [tableName=").$(tableNameUtf16).$(']').$();
+            tableToken = engine.createTable(securityContext, ddlMem, path, true, tsa, false);
+        }
+
+        if (!engine.isWalTable(tableToken)) {
+            throw CairoException.nonCritical()
+                    .put("transactional ingestion requires a WAL table [table=").put(tableNameUtf16)
+                    .put(']');
+        }
+
+        final TableUpdateDetails tud = new TableUpdateDetails(
+                configuration,
+                engine,
+                engine.getWalWriter(securityContext, tableToken),
+                unusedSymbolCaches,
+                defaultColumnTypes
+        );
+        tableUpdateDetailsUtf16.putAt(keyIndex, tud.getTableNameUtf16(), tud);
+        return tud;
+    }
+}
@@ -63,9 +63,13 @@ public class TableUpdateDetails implements Closeable {
     // multiple threads without synchronisation
     private long eventsProcessedSinceReshuffle = 0;
     private long lastMeasurementMillis = Long.MAX_VALUE;
+    private long maxStagedRows;
     private MetadataService metadataService;
     private int networkIOOwnerCount = 0;
     private long nextCommitTime;
+    // writer threads the table is sharded across, the first one owns the writer, null when not sharded
+    private volatile int[] shardThreadIds;
+    private volatile Shard[] shards;
     private TableWriterAPI writerAPI;
     private volatile boolean writerInError;
     private int writerThreadId;
@@ -77,11 +81,46 @@ public class TableUpdateDetails implements Closeable {
             int writerThreadId,
             NetworkIOJob[] netIoJobs,
             DefaultColumnTypes defaultColumnTypes
+    ) {
+        this(configuration, engine, writer, writerThreadId, netIoJobs.length, defaultColumnTypes);
+        for (int i = 0, n = netIoJobs.length; i < n; i++) {
+            //noinspection resource
+            this.localDetailsArray[i] = new ThreadLocalDetails(
+                    configuration,
+                    netIoJobs[i].getUnusedSymbolCaches(),
+                    writer.getMetadata().getColumnCount()
+            );
+        }
+    }
+
+    // single-threaded instance, used outside the network IO jobs
+    TableUpdateDetails(
+            LineTcpReceiverConfiguration configuration,
+            CairoEngine engine,
+            TableWriterAPI writer,
+            ObjList<SymbolCache> unusedSymbolCaches,
+            DefaultColumnTypes defaultColumnTypes
+    ) {
+        this(configuration, engine, writer, -1, 1, defaultColumnTypes);
+        //noinspection resource
+        this.localDetailsArray[0] = new ThreadLocalDetails(
+                configuration,
+                unusedSymbolCaches,
+                writer.getMetadata().getColumnCount()
+        );
+    }
+
+    private TableUpdateDetails(
+            LineTcpReceiverConfiguration configuration,
+            CairoEngine engine,
+            TableWriterAPI writer,
+            int writerThreadId,
+            int localDetailsCount,
+            DefaultColumnTypes defaultColumnTypes
     ) {
         this.writerThreadId = writerThreadId;
         this.engine = engine;
         this.defaultColumnTypes = defaultColumnTypes;
-        final int n = netIoJobs.length;
         CairoConfiguration cairoConfiguration = engine.getConfiguration();
         this.millisecondClock = cairoConfiguration.getMillisecondClock();
         this.writerTickRowsCountMod = cairoConfiguration.getWriterTickRowsCountMod();
@@ -99,15 +138,7 @@ public class TableUpdateDetails implements Closeable {
             metadataService.updateCommitInterval(configuration.getCommitIntervalFraction(), configuration.getCommitIntervalDefault());
             this.nextCommitTime = millisecondClock.getTicks() + metadataService.getCommitInterval();
         }
-        this.localDetailsArray = new ThreadLocalDetails[n];
-        for (int i = 0; i < n; i++) {
-            //noinspection resource
-            this.localDetailsArray[i] = new ThreadLocalDetails(
-                    configuration,
-                    netIoJobs[i].getUnusedSymbolCaches(),
-                    writer.getMetadata().getColumnCount()
-            );
-        }
+        this.localDetailsArray = new ThreadLocalDetails[localDetailsCount];
     }
 
     public void addReference(int workerId) {
@@ -140,6 +171,7 @@ public class TableUpdateDetails implements Closeable {
             LOG.info().$("closing table writer [tableName=").$(tableToken).$(']').$();
             closeLocals();
             if (null != writerAPI) {
+                stopSharding(!writerInError);
                 try {
                     if (!writerInError) {
                         writerAPI.commit();
@@ -192,6 +224,10 @@ public class TableUpdateDetails implements Closeable {
         return assignedToJob;
     }
 
+    public boolean isSharded() {
+        return shardThreadIds != null;
+    }
+
     public boolean isWriterInError() {
         return writerInError;
     }
@@ -200,6 +236,61 @@ public class TableUpdateDetails implements Closeable {
         return writerThreadId == -1;
     }
 
+    /**
+     * Applies rows staged by the shards of the table to the writer. Runs on the writer thread
+     * owning the table writer, commits rows appended by the owner first.
+     *
+     * @throws CommitFailedException when the rows could not be applied, the writer is in error then
+     */
+    public void mergeShards() throws CommitFailedException {
+        final Shard[] shards = this.shards;
+        if (shards == null) {
+            return;
+        }
+        final TableWriter writer = (TableWriter) writerAPI;
+        try {
+            if (writer.inTransaction()) {
+                writer.commit();
+            }
+            // shard 0 is the owner, it appends to the writer directly
+            for (int i = 1, n = shards.length; i < n; i++) {
+                final Shard shard = shards[i];
+                final LineTcpStagingBuffer staged;
+                synchronized (shard) {
+                    staged = shard.active;
+                    shard.active = shard.spare;
+                    shard.spare = staged;
+                    shard.mergeRequested = false;
+                }
+                final long rowCount = staged.getRowCount();
+                if (rowCount > 0) {
+                    try {
+                        LOG.debug().$("merging shard [table=").$(tableToken).$(", shard=").$(i).$(", rows=").$(rowCount).I$();
+                        writer.applyStagedRows(
+                                staged.alignTo(writer.getMetadata()),
+                                rowCount,
+                                staged.isOrdered(),
+                                staged.getTimestampMin(),
+                                staged.getTimestampMax(),
+                                staged
+                        );
+                    } finally {
+                        staged.clear();
+                    }
+                }
+            }
+        } catch (Throwable ex) {
+            setWriterInError();
+            LOG.error().$("could not merge shards [table=").$(tableToken).$(", e=").$(ex).I$();
+            try {
+                writer.rollback();
+            } catch (Throwable th) {
+                LOG.error().$("could not perform emergency rollback [table=").$(tableToken).$(", e=").$(th).I$();
+            }
+            throw CommitFailedException.instance(ex);
+        }
+    }
+
     public void removeReference(int workerId) {
         if (!isWal()) {
             networkIOOwnerCount--;
@@ -227,6 +318,7 @@ public class TableUpdateDetails implements Closeable {
     }
 
     public void commit(boolean withLag) throws CommitFailedException {
+        mergeShards();
         if (writerAPI.getUncommittedRowCount() > 0) {
             try {
                 LOG.debug().$("time-based commit " + (withLag ? "with lag " : "") + "[rows=").$(writerAPI.getUncommittedRowCount()).$(", table=").$(tableToken).I$();
@@ -251,6 +343,17 @@ public class TableUpdateDetails implements Closeable {
         }
     }
 
+    private static Shard getShard(int[] shardThreadIds, Shard[] shards, int writerThreadId) {
+        if (shardThreadIds != null && shards != null) {
+            for (int i = 1, n = shardThreadIds.length; i < n; i++) {
+                if (shardThreadIds[i] == writerThreadId) {
+                    return shards[i];
+                }
+            }
+        }
+        return null;
+    }
+
     private long getCommitInterval() {
         if (metadataService != null) {
             return metadataService.getCommitInterval();
@@ -265,6 +368,33 @@ public class TableUpdateDetails implements Closeable {
         return defaultMaxUncommittedRows;
     }
 
+    private void stopSharding(boolean merge) {
+        final Shard[] shards = this.shards;
+        if (shards == null) {
+            return;
+        }
+        try {
+            if (merge) {
+                mergeShards();
+            }
+        } catch (Throwable th) {
+            LOG.error().$("could not merge shards before releasing writer [table=").$(tableToken).$(", e=").$(th).I$();
+        } finally {
+            shardThreadIds = null;
+            for (int i = 1, n = shards.length; i < n; i++) {
+                final Shard shard = shards[i];
+                synchronized (shard) {
+                    if (shard.active.getRowCount() > 0) {
+                        LOG.error().$("dropping staged rows [table=").$(tableToken).$(", rows=").$(shard.active.getRowCount()).I$();
+                    }
+                    shard.close();
+                }
+            }
+            this.shards = null;
+            LOG.info().$("table is no longer sharded [table=").$(tableToken).I$();
+        }
+    }
+
     long commitIfIntervalElapsed(long wallClockMillis) throws CommitFailedException {
         if (wallClockMillis < nextCommitTime) {
             return nextCommitTime;
@@ -308,6 +438,19 @@ public class TableUpdateDetails implements Closeable {
         tick();
     }
 
+    /**
+     * Returns writer thread the measurement published by the network IO thread goes to,
+     * the thread owning the table writer unless the table is sharded.
+     */
+    int getShardThreadId(int networkIOWorkerId) {
+        final int[] shardThreadIds = this.shardThreadIds;
+        return shardThreadIds != null ? shardThreadIds[networkIOWorkerId % shardThreadIds.length] : writerThreadId;
+    }
+
+    int[] getShardThreadIds() {
+        return shardThreadIds;
+    }
+
     ThreadLocalDetails getThreadLocalDetails(int workerId) {
         lastMeasurementMillis = millisecondClock.getTicks();
         return localDetailsArray[workerId];
@@ -323,6 +466,7 @@ public class TableUpdateDetails implements Closeable {
 
     void releaseWriter(boolean commit) {
         if (writerAPI != null) {
+            stopSharding(commit && !writerInError);
             try {
                 if (commit) {
                     LOG.debug().$("release commit [table=").$(tableToken).I$();
@@ -339,6 +483,85 @@ public class TableUpdateDetails implements Closeable {
         }
     }
 
+    void resetEventsProcessedSinceReshuffle() {
+        eventsProcessedSinceReshuffle = 0;
+    }
+
+    void rollback() {
+        if (writerAPI != null) {
+            writerAPI.rollback();
+        }
+    }
+
+    /**
+     * Stages measurement on a writer thread holding a shard of the table. Measurements for shards
+     * that are gone, e.g. the writer was released, are dropped.
+     *
+     * @return true when the shard has staged enough rows to ask the owner thread for a merge
+     */
+    boolean stage(int writerThreadId, LineTcpMeasurementEvent event) {
+        final Shard shard = getShard(shardThreadIds, shards, writerThreadId);
+        if (shard != null) {
+            synchronized (shard) {
+                if (!shard.closed) {
+                    event.stage(shard.active);
+                    if (shard.active.getRowCount() >= maxStagedRows && !shard.mergeRequested) {
+                        shard.mergeRequested = true;
+                        return true;
+                    }
+                    return false;
+                }
+            }
+        }
+        LOG.error().$("table is not sharded, measurement dropped [table=").$(tableToken).$(", threadId=").$(writerThreadId).I$();
+        return false;
+    }
+
+    /**
+     * Spreads measurements of the table across writer threads. The first thread owns the table
+     * writer, other threads stage rows in memory and the owner merges them on commit.
+     *
+     * @param shardThreadIds writer threads, owner first
+     */
+    void startSharding(int[] shardThreadIds) {
+        assert shardThreadIds[0] == writerThreadId;
+        final Shard[] shards = new Shard[shardThreadIds.length];
+        try {
+            for (int i = 1, n = shards.length; i < n; i++) {
+                shards[i] = new Shard(
+                        new LineTcpStagingBuffer(engine, tableToken),
+                        new LineTcpStagingBuffer(engine, tableToken)
+                );
+            }
+        } catch (Throwable th) {
+            Misc.free(shards);
+            throw th;
+        }
+        maxStagedRows = getMetaMaxUncommittedRows();
+        this.shards = shards;
+        this.shardThreadIds = shardThreadIds;
+    }
+
+    private static class Shard implements Closeable {
+        private LineTcpStagingBuffer active;
+        private boolean closed;
+        private boolean mergeRequested;
+        // used by the owner thread only, swapped with the active buffer on merge
+        private LineTcpStagingBuffer spare;
+
+        private Shard(LineTcpStagingBuffer active, LineTcpStagingBuffer spare) {
+            this.active = active;
+            this.spare = spare;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            active = Misc.free(active);
+            spare = Misc.free(spare);
+        }
+    }
+
     public class ThreadLocalDetails implements Closeable {
         static final int COLUMN_NOT_FOUND = -1;
         static final int DUPLICATED_COLUMN = -2;
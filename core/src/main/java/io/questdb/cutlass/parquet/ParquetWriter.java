@@ -0,0 +1,678 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cutlass.parquet;
+
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.ColumnType;
+import io.questdb.cairo.GeoHashes;
+import io.questdb.cairo.TableUtils;
+import io.questdb.cairo.sql.PageFrame;
+import io.questdb.cairo.sql.RecordMetadata;
+import io.questdb.cairo.sql.SymbolTable;
+import io.questdb.cairo.sql.SymbolTableSource;
+import io.questdb.cairo.vm.Vm;
+import io.questdb.cairo.vm.api.MemoryCARW;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.*;
+import io.questdb.std.str.LPSZ;
+
+/**
+ * Writes Parquet file one row group at a time. Each page frame becomes a row group, column
+ * chunks are copied from the frame's column memory, so the data is never materialized as
+ * records. Values use PLAIN encoding and nulls are expressed through RLE definition levels.
+ * Data pages are optionally GZIP compressed.
+ * <p>
+ * Column types map to Parquet types as follows:
+ * <ul>
+ *     <li>BOOLEAN - BOOLEAN, BYTE and SHORT - INT32, these types are never null in QuestDB</li>
+ *     <li>INT and GEOHASH up to 32 bits - INT32, LONG and GEOHASH up to 60 bits - INT64</li>
+ *     <li>DATE - INT64 TIMESTAMP_MILLIS, TIMESTAMP - INT64 TIMESTAMP_MICROS</li>
+ *     <li>FLOAT and DOUBLE - FLOAT and DOUBLE, NaN is written as null</li>
+ *     <li>CHAR, STRING and SYMBOL - UTF8 BYTE_ARRAY, BINARY - BYTE_ARRAY</li>
+ *     <li>UUID - 16 byte FIXED_LEN_BYTE_ARRAY</li>
+ * </ul>
+ */
+public class ParquetWriter implements QuietCloseable {
+    public static final int CODEC_GZIP = 2;
+    public static final int CODEC_UNCOMPRESSED = 0;
+    private static final int CONVERTED_INT_16 = 16;
+    private static final int CONVERTED_INT_8 = 15;
+    private static final int CONVERTED_TIMESTAMP_MICROS = 10;
+    private static final int CONVERTED_TIMESTAMP_MILLIS = 9;
+    private static final int CONVERTED_UTF8 = 0;
+    private static final int ENCODING_PLAIN = 0;
+    private static final int ENCODING_RLE = 3;
+    private static final int GZIP_HEADER_SIZE = 10;
+    private static final int GZIP_TRAILER_SIZE = 8;
+    private static final int LONGS_PER_CHUNK = 4;
+    private static final Log LOG = LogFactory.getLog(ParquetWriter.class);
+    private static final int MAGIC = 0x31524150; // "PAR1"
+    // rows per data page, pages of wide string columns stay well below 2GB
+    private static final int PAGE_ROW_COUNT = 64 * 1024;
+    private static final int PAGE_TYPE_DATA = 0;
+    private static final int REPETITION_OPTIONAL = 1;
+    private static final int REPETITION_REQUIRED = 0;
+    private static final int TYPE_BOOLEAN = 0;
+    private static final int TYPE_BYTE_ARRAY = 6;
+    private static final int TYPE_DOUBLE = 5;
+    private static final int TYPE_FIXED_LEN_BYTE_ARRAY = 7;
+    private static final int TYPE_FLOAT = 4;
+    private static final int TYPE_INT32 = 1;
+    private static final int TYPE_INT64 = 2;
+    // data page offset, uncompressed size, compressed size and value count of each column chunk
+    private final LongList chunks = new LongList();
+    private final ObjList<String> columnNames = new ObjList<>();
+    private final IntList columnTypes = new IntList();
+    private final MemoryCARW compressMem;
+    private final MemoryCARW defLevelMem;
+    private final FilesFacade ff;
+    private final MemoryCARW headerMem;
+    private final LongList rowGroups = new LongList();
+    private final ThriftCompactWriter thrift = new ThriftCompactWriter();
+    private final MemoryCARW valueMem;
+    private int codec;
+    private int fd = -1;
+    private long fileOffset;
+    private long stream;
+    private boolean defLevelRun;
+    private int defLevelRunLength;
+
+    public ParquetWriter(FilesFacade ff, long pageSize) {
+        this.ff = ff;
+        this.valueMem = Vm.getCARWInstance(pageSize, Integer.MAX_VALUE, MemoryTag.NATIVE_DEFAULT);
+        this.defLevelMem = Vm.getCARWInstance(pageSize, Integer.MAX_VALUE, MemoryTag.NATIVE_DEFAULT);
+        this.compressMem = Vm.getCARWInstance(pageSize, Integer.MAX_VALUE, MemoryTag.NATIVE_DEFAULT);
+        this.headerMem = Vm.getCARWInstance(pageSize, Integer.MAX_VALUE, MemoryTag.NATIVE_DEFAULT);
+    }
+
+    public static boolean isSupported(int columnType) {
+        return physicalType(columnType) > -1;
+    }
+
+    @Override
+    public void close() {
+        closeFile();
+        if (stream != 0) {
+            Zip.deflateEnd(stream);
+            stream = 0;
+        }
+        Misc.free(valueMem);
+        Misc.free(defLevelMem);
+        Misc.free(compressMem);
+        Misc.free(headerMem);
+    }
+
+    /**
+     * Writes file footer and closes the file.
+     *
+     * @return size of the file
+     */
+    public long finish() {
+        final int columnCount = columnTypes.size();
+        headerMem.jumpTo(0);
+        thrift.of(headerMem).structBegin();
+        thrift.fieldI32(1, 1);
+
+        thrift.fieldList(2, ThriftCompactWriter.TYPE_STRUCT, columnCount + 1);
+        thrift.structBegin();
+        thrift.fieldBinary(4, "schema");
+        thrift.fieldI32(5, columnCount);
+        thrift.structEnd();
+        for (int i = 0; i < columnCount; i++) {
+            putSchemaElement(columnNames.getQuick(i), columnTypes.getQuick(i));
+        }
+
+        long rowCount = 0;
+        for (int i = 0, n = rowGroups.size(); i < n; i++) {
+            rowCount += rowGroups.getQuick(i);
+        }
+        thrift.fieldI64(3, rowCount);
+
+        thrift.fieldList(4, ThriftCompactWriter.TYPE_STRUCT, rowGroups.size());
+        for (int g = 0, n = rowGroups.size(); g < n; g++) {
+            putRowGroup(g, columnCount);
+        }
+        thrift.fieldBinary(6, "QuestDB");
+        thrift.structEnd();
+
+        final int footerSize = (int) headerMem.getAppendOffset();
+        headerMem.putInt(footerSize);
+        headerMem.putInt(MAGIC);
+        write(headerMem.getAddress(), headerMem.getAppendOffset());
+        final long size = fileOffset;
+        closeFile();
+        return size;
+    }
+
+    public ParquetWriter of(LPSZ path, RecordMetadata metadata, int codec, long opts) {
+        closeFile();
+        chunks.clear();
+        rowGroups.clear();
+        columnNames.clear();
+        columnTypes.clear();
+        for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+            assert isSupported(metadata.getColumnType(i));
+            columnNames.add(metadata.getColumnName(i));
+            columnTypes.add(metadata.getColumnType(i));
+        }
+        this.codec = codec;
+        this.fileOffset = 0;
+        if (ff.exists(path) && !ff.remove(path)) {
+            throw CairoException.critical(ff.errno()).put("could not remove existing file [path=").put(path).put(']');
+        }
+        fd = TableUtils.openRW(ff, path, LOG, opts);
+        headerMem.jumpTo(0);
+        headerMem.putInt(MAGIC);
+        write(headerMem.getAddress(), Integer.BYTES);
+        return this;
+    }
+
+    /**
+     * Appends page frame as a row group. Frame columns must be in the same order as
+     * the metadata the writer was opened with.
+     *
+     * @param frame             page frame to write
+     * @param symbolTableSource resolves symbol keys to values
+     */
+    public void writeRowGroup(PageFrame frame, SymbolTableSource symbolTableSource) {
+        final long rowCount = frame.getPartitionHi() - frame.getPartitionLo();
+        for (int i = 0, n = columnTypes.size(); i < n; i++) {
+            final int columnType = columnTypes.getQuick(i);
+            final SymbolTable symbolTable = ColumnType.isSymbol(columnType) ? symbolTableSource.getSymbolTable(i) : null;
+            final long chunkOffset = fileOffset;
+            long uncompressedSize = 0;
+            for (long lo = 0; lo < rowCount; lo += PAGE_ROW_COUNT) {
+                final long hi = Math.min(rowCount, lo + PAGE_ROW_COUNT);
+                uncompressedSize += writePage(frame, i, columnType, symbolTable, lo, hi);
+            }
+            chunks.add(chunkOffset);
+            chunks.add(uncompressedSize);
+            chunks.add(fileOffset - chunkOffset);
+            chunks.add(rowCount);
+        }
+        rowGroups.add(rowCount);
+    }
+
+    private static int convertedType(int columnType) {
+        switch (ColumnType.tagOf(columnType)) {
+            case ColumnType.BYTE:
+                return CONVERTED_INT_8;
+            case ColumnType.SHORT:
+                return CONVERTED_INT_16;
+            case ColumnType.DATE:
+                return CONVERTED_TIMESTAMP_MILLIS;
+            case ColumnType.TIMESTAMP:
+                return CONVERTED_TIMESTAMP_MICROS;
+            case ColumnType.CHAR:
+            case ColumnType.STRING:
+            case ColumnType.SYMBOL:
+                return CONVERTED_UTF8;
+            default:
+                return -1;
+        }
+    }
+
+    private static boolean isRequired(int columnType) {
+        switch (ColumnType.tagOf(columnType)) {
+            case ColumnType.BOOLEAN:
+            case ColumnType.BYTE:
+            case ColumnType.SHORT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static int physicalType(int columnType) {
+        switch (ColumnType.tagOf(columnType)) {
+            case ColumnType.BOOLEAN:
+                return TYPE_BOOLEAN;
+            case ColumnType.BYTE:
+            case ColumnType.SHORT:
+            case ColumnType.INT:
+            case ColumnType.GEOBYTE:
+            case ColumnType.GEOSHORT:
+            case ColumnType.GEOINT:
+                return TYPE_INT32;
+            case ColumnType.LONG:
+            case ColumnType.DATE:
+            case ColumnType.TIMESTAMP:
+            case ColumnType.GEOLONG:
+                return TYPE_INT64;
+            case ColumnType.FLOAT:
+                return TYPE_FLOAT;
+            case ColumnType.DOUBLE:
+                return TYPE_DOUBLE;
+            case ColumnType.CHAR:
+            case ColumnType.STRING:
+            case ColumnType.SYMBOL:
+            case ColumnType.BINARY:
+                return TYPE_BYTE_ARRAY;
+            case ColumnType.UUID:
+                return TYPE_FIXED_LEN_BYTE_ARRAY;
+            default:
+                return -1;
+        }
+    }
+
+    // unpaired surrogates are replaced with '?'
+    private static long putUtf8(long p, char c) {
+        if (c < 0x80) {
+            Unsafe.getUnsafe().putByte(p++, (byte) c);
+        } else if (c < 0x800) {
+            Unsafe.getUnsafe().putByte(p++, (byte) (0xc0 | (c >> 6)));
+            Unsafe.getUnsafe().putByte(p++, (byte) (0x80 | (c & 0x3f)));
+        } else if (Character.isSurrogate(c)) {
+            Unsafe.getUnsafe().putByte(p++, (byte) '?');
+        } else {
+            Unsafe.getUnsafe().putByte(p++, (byte) (0xe0 | (c >> 12)));
+            Unsafe.getUnsafe().putByte(p++, (byte) (0x80 | ((c >> 6) & 0x3f)));
+            Unsafe.getUnsafe().putByte(p++, (byte) (0x80 | (c & 0x3f)));
+        }
+        return p;
+    }
+
+    private static long putUtf8(long p, char high, char low) {
+        final int cp = Character.toCodePoint(high, low);
+        Unsafe.getUnsafe().putByte(p++, (byte) (0xf0 | (cp >> 18)));
+        Unsafe.getUnsafe().putByte(p++, (byte) (0x80 | ((cp >> 12) & 0x3f)));
+        Unsafe.getUnsafe().putByte(p++, (byte) (0x80 | ((cp >> 6) & 0x3f)));
+        Unsafe.getUnsafe().putByte(p++, (byte) (0x80 | (cp & 0x3f)));
+        return p;
+    }
+
+    private void closeFile() {
+        if (fd != -1) {
+            ff.close(fd);
+            fd = -1;
+        }
+    }
+
+    // GZIP member around raw deflate stream, returns compressed size, data is in compressMem
+    private int compress(long addr, int len) {
+        if (stream == 0) {
+            final long strm = Zip.deflateInit();
+            if (strm < 0) {
+                throw CairoException.critical(0).put("could not initialize deflater [code=").put(strm).put(']');
+            }
+            stream = strm;
+        } else {
+            Zip.deflateReset(stream);
+        }
+        final int bound = len + (len >> 12) + (len >> 14) + (len >> 25) + 64;
+        compressMem.jumpTo(0);
+        final long out = compressMem.appendAddressFor(GZIP_HEADER_SIZE + bound + GZIP_TRAILER_SIZE);
+        Unsafe.getUnsafe().putLong(out, 0x00000000_00088b1fL);
+        Unsafe.getUnsafe().putShort(out + 8, (short) 0xff00);
+        Zip.setInput(stream, addr, len);
+        final int ret = Zip.deflate(stream, out + GZIP_HEADER_SIZE, bound, true);
+        if (ret != Zip.Z_STREAM_END) {
+            throw CairoException.critical(0).put("could not compress parquet page [code=").put(ret).put(']');
+        }
+        final int deflated = bound - Zip.availOut(stream);
+        Unsafe.getUnsafe().putInt(out + GZIP_HEADER_SIZE + deflated, Zip.crc32(0, addr, len));
+        Unsafe.getUnsafe().putInt(out + GZIP_HEADER_SIZE + deflated + 4, len);
+        return GZIP_HEADER_SIZE + deflated + GZIP_TRAILER_SIZE;
+    }
+
+    private void encodeValues(PageFrame frame, int columnIndex, int columnType, SymbolTable symbolTable, long lo, long hi) {
+        final long addr = frame.getPageAddress(columnIndex);
+        switch (ColumnType.tagOf(columnType)) {
+            case ColumnType.BOOLEAN:
+                for (long r = lo; r < hi; r += 8) {
+                    int bits = 0;
+                    for (long b = r, n = Math.min(hi, r + 8); b < n; b++) {
+                        if (addr != 0 && Unsafe.getUnsafe().getByte(addr + b) == 1) {
+                            bits |= 1 << (b - r);
+                        }
+                    }
+                    valueMem.putByte((byte) bits);
+                }
+                break;
+            case ColumnType.BYTE:
+                for (long r = lo; r < hi; r++) {
+                    valueMem.putInt(addr != 0 ? Unsafe.getUnsafe().getByte(addr + r) : 0);
+                }
+                break;
+            case ColumnType.SHORT:
+                for (long r = lo; r < hi; r++) {
+                    valueMem.putInt(addr != 0 ? Unsafe.getUnsafe().getShort(addr + r * Short.BYTES) : 0);
+                }
+                break;
+            case ColumnType.CHAR:
+                for (long r = lo; r < hi; r++) {
+                    final char c = addr != 0 ? Unsafe.getUnsafe().getChar(addr + r * Character.BYTES) : 0;
+                    if (putDefLevel(c != 0)) {
+                        final long lenOffset = valueMem.getAppendOffset();
+                        final long p = valueMem.appendAddressFor(Integer.BYTES + 3);
+                        final long q = putUtf8(p + Integer.BYTES, c);
+                        Unsafe.getUnsafe().putInt(p, (int) (q - p - Integer.BYTES));
+                        valueMem.jumpTo(lenOffset + q - p);
+                    }
+                }
+                break;
+            case ColumnType.INT:
+                for (long r = lo; r < hi; r++) {
+                    final int v = addr != 0 ? Unsafe.getUnsafe().getInt(addr + r * Integer.BYTES) : Numbers.INT_NaN;
+                    if (putDefLevel(v != Numbers.INT_NaN)) {
+                        valueMem.putInt(v);
+                    }
+                }
+                break;
+            case ColumnType.GEOBYTE:
+                for (long r = lo; r < hi; r++) {
+                    final byte v = addr != 0 ? Unsafe.getUnsafe().getByte(addr + r) : GeoHashes.BYTE_NULL;
+                    if (putDefLevel(v != GeoHashes.BYTE_NULL)) {
+                        valueMem.putInt(v);
+                    }
+                }
+                break;
+            case ColumnType.GEOSHORT:
+                for (long r = lo; r < hi; r++) {
+                    final short v = addr != 0 ? Unsafe.getUnsafe().getShort(addr + r * Short.BYTES) : GeoHashes.SHORT_NULL;
+                    if (putDefLevel(v != GeoHashes.SHORT_NULL)) {
+                        valueMem.putInt(v);
+                    }
+                }
+                break;
+            case ColumnType.GEOINT:
+                for (long r = lo; r < hi; r++) {
+                    final int v = addr != 0 ? Unsafe.getUnsafe().getInt(addr + r * Integer.BYTES) : GeoHashes.INT_NULL;
+                    if (putDefLevel(v != GeoHashes.INT_NULL)) {
+                        valueMem.putInt(v);
+                    }
+                }
+                break;
+            case ColumnType.LONG:
+            case ColumnType.DATE:
+            case ColumnType.TIMESTAMP:
+                for (long r = lo; r < hi; r++) {
+                    final long v = addr != 0 ? Unsafe.getUnsafe().getLong(addr + r * Long.BYTES) : Numbers.LONG_NaN;
+                    if (putDefLevel(v != Numbers.LONG_NaN)) {
+                        valueMem.putLong(v);
+                    }
+                }
+                break;
+            case ColumnType.GEOLONG:
+                for (long r = lo; r < hi; r++) {
+                    final long v = addr != 0 ? Unsafe.getUnsafe().getLong(addr + r * Long.BYTES) : GeoHashes.NULL;
+                    if (putDefLevel(v != GeoHashes.NULL)) {
+                        valueMem.putLong(v);
+                    }
+                }
+                break;
+            case ColumnType.FLOAT:
+                for (long r = lo; r < hi; r++) {
+                    final float v = addr != 0 ? Unsafe.getUnsafe().getFloat(addr + r * Float.BYTES) : Float.NaN;
+                    if (putDefLevel(v == v)) {
+                        valueMem.putFloat(v);
+                    }
+                }
+                break;
+            case ColumnType.DOUBLE:
+                for (long r = lo; r < hi; r++) {
+                    final double v = addr != 0 ? Unsafe.getUnsafe().getDouble(addr + r * Double.BYTES) : Double.NaN;
+                    if (putDefLevel(v == v)) {
+                        valueMem.putDouble(v);
+                    }
+                }
+                break;
+            case ColumnType.UUID:
+                for (long r = lo; r < hi; r++) {
+                    final long l = addr != 0 ? Unsafe.getUnsafe().getLong(addr + r * 2 * Long.BYTES) : Numbers.LONG_NaN;
+                    final long h = addr != 0 ? Unsafe.getUnsafe().getLong(addr + r * 2 * Long.BYTES + Long.BYTES) : Numbers.LONG_NaN;
+                    if (putDefLevel(!Uuid.isNull(l, h))) {
+                        // big-endian, most significant bits first
+                        valueMem.putLong(Long.reverseBytes(h));
+                        valueMem.putLong(Long.reverseBytes(l));
+                    }
+                }
+                break;
+            case ColumnType.SYMBOL:
+                for (long r = lo; r < hi; r++) {
+                    final int key = addr != 0 ? Unsafe.getUnsafe().getInt(addr + r * Integer.BYTES) : SymbolTable.VALUE_IS_NULL;
+                    if (putDefLevel(key != SymbolTable.VALUE_IS_NULL)) {
+                        putUtf8(symbolTable.valueOf(key));
+                    }
+                }
+                break;
+            case ColumnType.STRING:
+                if (addr == 0) {
+                    putNullDefLevels(hi - lo);
+                } else {
+                    final long indexAddr = frame.getIndexPageAddress(columnIndex);
+                    for (long r = lo; r < hi; r++) {
+                        final long offset = Unsafe.getUnsafe().getLong(indexAddr + r * Long.BYTES);
+                        final int len = Unsafe.getUnsafe().getInt(addr + offset);
+                        if (putDefLevel(len != TableUtils.NULL_LEN)) {
+                            putUtf8(addr + offset + Integer.BYTES, len);
+                        }
+                    }
+                }
+                break;
+            case ColumnType.BINARY:
+                if (addr == 0) {
+                    putNullDefLevels(hi - lo);
+                } else {
+                    final long indexAddr = frame.getIndexPageAddress(columnIndex);
+                    for (long r = lo; r < hi; r++) {
+                        final long offset = Unsafe.getUnsafe().getLong(indexAddr + r * Long.BYTES);
+                        final long len = Unsafe.getUnsafe().getLong(addr + offset);
+                        if (putDefLevel(len != TableUtils.NULL_LEN)) {
+                            valueMem.putInt((int) len);
+                            Vect.memcpy(valueMem.appendAddressFor(len), addr + offset + Long.BYTES, len);
+                        }
+                    }
+                }
+                break;
+            default:
+                throw CairoException.critical(0).put("unsupported column type [type=").put(ColumnType.nameOf(columnType)).put(']');
+        }
+    }
+
+    private void flushDefLevelRun() {
+        if (defLevelRunLength > 0) {
+            // RLE run header is run length shifted left by one, the value takes a single byte at bit width 1
+            long header = (long) defLevelRunLength << 1;
+            while ((header & ~0x7fL) != 0) {
+                defLevelMem.putByte((byte) ((header & 0x7f) | 0x80));
+                header >>>= 7;
+            }
+            defLevelMem.putByte((byte) header);
+            defLevelMem.putByte((byte) (defLevelRun ? 1 : 0));
+            defLevelRunLength = 0;
+        }
+    }
+
+    private boolean putDefLevel(boolean defined) {
+        if (defLevelRun != defined) {
+            flushDefLevelRun();
+            defLevelRun = defined;
+        }
+        defLevelRunLength++;
+        return defined;
+    }
+
+    private void putNullDefLevels(long count) {
+        for (long i = 0; i < count; i++) {
+            putDefLevel(false);
+        }
+    }
+
+    private void putRowGroup(int rowGroupIndex, int columnCount) {
+        final int chunkLo = rowGroupIndex * columnCount * LONGS_PER_CHUNK;
+        long uncompressedSize = 0;
+        long compressedSize = 0;
+        thrift.structBegin();
+        thrift.fieldList(1, ThriftCompactWriter.TYPE_STRUCT, columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            final int p = chunkLo + i * LONGS_PER_CHUNK;
+            final long dataPageOffset = chunks.getQuick(p);
+            uncompressedSize += chunks.getQuick(p + 1);
+            compressedSize += chunks.getQuick(p + 2);
+
+            thrift.structBegin();
+            thrift.fieldI64(2, dataPageOffset);
+            thrift.fieldStructBegin(3);
+            thrift.fieldI32(1, physicalType(columnTypes.getQuick(i)));
+            thrift.fieldList(2, ThriftCompactWriter.TYPE_I32, 2);
+            thrift.putI32(ENCODING_PLAIN);
+            thrift.putI32(ENCODING_RLE);
+            thrift.fieldList(3, ThriftCompactWriter.TYPE_BINARY, 1);
+            thrift.putString(columnNames.getQuick(i));
+            thrift.fieldI32(4, codec);
+            thrift.fieldI64(5, chunks.getQuick(p + 3));
+            thrift.fieldI64(6, chunks.getQuick(p + 1));
+            thrift.fieldI64(7, chunks.getQuick(p + 2));
+            thrift.fieldI64(9, dataPageOffset);
+            thrift.structEnd();
+            thrift.structEnd();
+        }
+        thrift.fieldI64(2, uncompressedSize);
+        thrift.fieldI64(3, rowGroups.getQuick(rowGroupIndex));
+        thrift.fieldI64(5, chunks.getQuick(chunkLo));
+        thrift.fieldI64(6, compressedSize);
+        thrift.structEnd();
+    }
+
+    private void putSchemaElement(String name, int columnType) {
+        thrift.structBegin();
+        thrift.fieldI32(1, physicalType(columnType));
+        if (ColumnType.tagOf(columnType) == ColumnType.UUID) {
+            thrift.fieldI32(2, 16);
+        }
+        thrift.fieldI32(3, isRequired(columnType) ? REPETITION_REQUIRED : REPETITION_OPTIONAL);
+        thrift.fieldBinary(4, name);
+        final int convertedType = convertedType(columnType);
+        if (convertedType > -1) {
+            thrift.fieldI32(6, convertedType);
+        }
+        if (ColumnType.tagOf(columnType) == ColumnType.UUID) {
+            // LogicalType union, UUID is an empty struct
+            thrift.fieldStructBegin(10);
+            thrift.fieldStructBegin(14);
+            thrift.structEnd();
+            thrift.structEnd();
+        }
+        thrift.structEnd();
+    }
+
+    private void putUtf8(long lo, int len) {
+        final long lenOffset = valueMem.getAppendOffset();
+        final long p = valueMem.appendAddressFor(Integer.BYTES + len * 3L);
+        long q = p + Integer.BYTES;
+        for (long c = lo, hi = lo + len * 2L; c < hi; c += 2) {
+            final char ch = Unsafe.getUnsafe().getChar(c);
+            final char next;
+            if (Character.isHighSurrogate(ch) && c + 2 < hi && Character.isLowSurrogate(next = Unsafe.getUnsafe().getChar(c + 2))) {
+                q = putUtf8(q, ch, next);
+                c += 2;
+            } else {
+                q = putUtf8(q, ch);
+            }
+        }
+        Unsafe.getUnsafe().putInt(p, (int) (q - p - Integer.BYTES));
+        valueMem.jumpTo(lenOffset + q - p);
+    }
+
+    private void putUtf8(CharSequence value) {
+        final int len = value.length();
+        final long lenOffset = valueMem.getAppendOffset();
+        final long p = valueMem.appendAddressFor(Integer.BYTES + len * 3L);
+        long q = p + Integer.BYTES;
+        for (int i = 0; i < len; i++) {
+            final char c = value.charAt(i);
+            if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(value.charAt(i + 1))) {
+                q = putUtf8(q, c, value.charAt(++i));
+            } else {
+                q = putUtf8(q, c);
+            }
+        }
+        Unsafe.getUnsafe().putInt(p, (int) (q - p - Integer.BYTES));
+        valueMem.jumpTo(lenOffset + q - p);
+    }
+
+    private void write(long addr, long len) {
+        if (ff.write(fd, addr, len, fileOffset) != len) {
+            throw CairoException.critical(ff.errno()).put("could not write parquet file [fd=").put(fd)
+                    .put(", offset=").put(fileOffset)
+                    .put(", len=").put(len)
+                    .put(']');
+        }
+        fileOffset += len;
+    }
+
+    // returns uncompressed size of the page including its header
+    private long writePage(PageFrame frame, int columnIndex, int columnType, SymbolTable symbolTable, long lo, long hi) {
+        final boolean required = isRequired(columnType);
+        valueMem.jumpTo(0);
+        defLevelMem.jumpTo(0);
+        if (!required) {
+            // definition levels are prefixed with their length
+            defLevelMem.putInt(0);
+        }
+        defLevelRunLength = 0;
+        encodeValues(frame, columnIndex, columnType, symbolTable, lo, hi);
+        if (!required) {
+            flushDefLevelRun();
+            defLevelMem.putInt(0, (int) (defLevelMem.getAppendOffset() - Integer.BYTES));
+        }
+        // page is levels followed by values
+        defLevelMem.putBlockOfBytes(valueMem.getAddress(), valueMem.getAppendOffset());
+
+        final long pageSize = defLevelMem.getAppendOffset();
+        if (pageSize > Integer.MAX_VALUE) {
+            throw CairoException.critical(0).put("parquet page is too large [column=").put(columnNames.getQuick(columnIndex))
+                    .put(", size=").put(pageSize)
+                    .put(']');
+        }
+        long pageAddr = defLevelMem.getAddress();
+        int compressedSize = (int) pageSize;
+        if (codec == CODEC_GZIP) {
+            compressedSize = compress(pageAddr, (int) pageSize);
+            pageAddr = compressMem.getAddress();
+        }
+
+        headerMem.jumpTo(0);
+        thrift.of(headerMem).structBegin();
+        thrift.fieldI32(1, PAGE_TYPE_DATA);
+        thrift.fieldI32(2, (int) pageSize);
+        thrift.fieldI32(3, compressedSize);
+        thrift.fieldStructBegin(5);
+        thrift.fieldI32(1, (int) (hi - lo));
+        thrift.fieldI32(2, ENCODING_PLAIN);
+        thrift.fieldI32(3, ENCODING_RLE);
+        thrift.fieldI32(4, ENCODING_RLE);
+        thrift.structEnd();
+        thrift.structEnd();
+
+        final long headerSize = headerMem.getAppendOffset();
+        write(headerMem.getAddress(), headerSize);
+        write(pageAddr, compressedSize);
+        return headerSize + pageSize;
+    }
+}
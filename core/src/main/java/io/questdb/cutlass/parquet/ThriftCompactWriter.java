@@ -0,0 +1,156 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cutlass.parquet;
+
+import io.questdb.cairo.vm.api.MemoryCARW;
+import io.questdb.std.IntList;
+import io.questdb.std.Mutable;
+
+/**
+ * Appends values encoded with Thrift compact protocol to native memory. Parquet uses this
+ * protocol for file metadata and page headers. Only the subset of the protocol that Parquet
+ * structures need is implemented: structs, lists, integers, booleans and binary values.
+ */
+public class ThriftCompactWriter implements Mutable {
+    public static final byte TYPE_BINARY = 8;
+    public static final byte TYPE_BOOLEAN_FALSE = 2;
+    public static final byte TYPE_BOOLEAN_TRUE = 1;
+    public static final byte TYPE_BYTE = 3;
+    public static final byte TYPE_I32 = 5;
+    public static final byte TYPE_I64 = 6;
+    public static final byte TYPE_LIST = 9;
+    public static final byte TYPE_STRUCT = 12;
+    // field ids of enclosing structs, restored when nested struct ends
+    private final IntList fieldIdStack = new IntList();
+    private int lastFieldId;
+    private MemoryCARW mem;
+
+    @Override
+    public void clear() {
+        fieldIdStack.clear();
+        lastFieldId = 0;
+    }
+
+    public void fieldBinary(int fieldId, CharSequence value) {
+        fieldHeader(fieldId, TYPE_BINARY);
+        putString(value);
+    }
+
+    public void fieldBool(int fieldId, boolean value) {
+        fieldHeader(fieldId, value ? TYPE_BOOLEAN_TRUE : TYPE_BOOLEAN_FALSE);
+    }
+
+    public void fieldByte(int fieldId, byte value) {
+        fieldHeader(fieldId, TYPE_BYTE);
+        mem.putByte(value);
+    }
+
+    public void fieldI32(int fieldId, int value) {
+        fieldHeader(fieldId, TYPE_I32);
+        putVarLong(zigzag(value));
+    }
+
+    public void fieldI64(int fieldId, long value) {
+        fieldHeader(fieldId, TYPE_I64);
+        putVarLong(zigzag(value));
+    }
+
+    public void fieldList(int fieldId, byte elementType, int size) {
+        fieldHeader(fieldId, TYPE_LIST);
+        listHeader(elementType, size);
+    }
+
+    public void fieldStructBegin(int fieldId) {
+        fieldHeader(fieldId, TYPE_STRUCT);
+        structBegin();
+    }
+
+    public void listHeader(byte elementType, int size) {
+        if (size < 15) {
+            mem.putByte((byte) ((size << 4) | elementType));
+        } else {
+            mem.putByte((byte) (0xf0 | elementType));
+            putVarLong(size);
+        }
+    }
+
+    public ThriftCompactWriter of(MemoryCARW mem) {
+        this.mem = mem;
+        clear();
+        return this;
+    }
+
+    public void putI32(int value) {
+        putVarLong(zigzag(value));
+    }
+
+    public void putString(CharSequence value) {
+        // names in Parquet metadata are ASCII column names and constants
+        final int len = value.length();
+        putVarLong(len);
+        for (int i = 0; i < len; i++) {
+            mem.putByte((byte) value.charAt(i));
+        }
+    }
+
+    /**
+     * Starts struct that is an element of a list or a top level struct.
+     */
+    public void structBegin() {
+        fieldIdStack.add(lastFieldId);
+        lastFieldId = 0;
+    }
+
+    public void structEnd() {
+        mem.putByte((byte) 0);
+        final int n = fieldIdStack.size() - 1;
+        lastFieldId = fieldIdStack.getQuick(n);
+        fieldIdStack.setPos(n);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private void fieldHeader(int fieldId, byte type) {
+        final int delta = fieldId - lastFieldId;
+        if (delta > 0 && delta < 16) {
+            mem.putByte((byte) ((delta << 4) | type));
+        } else {
+            mem.putByte(type);
+            putVarLong(zigzag(fieldId));
+        }
+        lastFieldId = fieldId;
+    }
+
+    private void putVarLong(long value) {
+        while ((value & ~0x7fL) != 0) {
+            mem.putByte((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        mem.putByte((byte) value);
+    }
+}
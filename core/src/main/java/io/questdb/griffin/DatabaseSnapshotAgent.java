@@ -37,6 +37,7 @@ import io.questdb.log.LogFactory;
 import io.questdb.mp.SimpleWaitingLock;
 import io.questdb.std.*;
 import io.questdb.std.str.Path;
+import io.questdb.std.str.StringSink;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.TestOnly;
 
@@ -54,15 +55,27 @@ import static io.questdb.cairo.wal.seq.TableTransactionLog.MAX_TXN_OFFSET;
 public class DatabaseSnapshotAgent implements Closeable {
 
     private final static Log LOG = LogFactory.getLog(DatabaseSnapshotAgent.class);
+    // Manifest of incremental snapshot is a long creation timestamp and int table count followed by
+    // table entries, each one is table directory name, table txn and seqTxn.
+    private final static long MANIFEST_OFFSET_TABLE_COUNT = Long.BYTES;
+    private final static long MANIFEST_HEADER_SIZE = MANIFEST_OFFSET_TABLE_COUNT + Integer.BYTES;
     private final AtomicBoolean activePrepareFlag = new AtomicBoolean();
     private final CairoConfiguration configuration;
     private final CairoEngine engine;
     private final FilesFacade ff;
+    // names of partition directories carried over from the previous incremental snapshot
+    private final CharSequenceHashSet keptPartitions = new CharSequenceHashSet();
     private final ReentrantLock lock = new ReentrantLock(); // protects below fields
     private final WalWriterMetadata metadata;
+    private final StringSink nameSink = new StringSink();
     private final Path path = new Path();
+    private final TxReader prevTxReader;
     // List of readers kept around to lock partitions while a database snapshot is being made.
     private final ObjList<TableReader> snapshotReaders = new ObjList<>();
+    // directory names of tables in the incremental snapshot being made, along with their txn and seqTxn
+    private final CharSequenceHashSet snapshotTables = new CharSequenceHashSet();
+    private final LongList snapshotTxns = new LongList();
+    private final Path srcPath = new Path();
     private SimpleWaitingLock walPurgeJobRunLock = null; // used as a suspend/resume handler for the WalPurgeJob
 
     public DatabaseSnapshotAgent(CairoEngine engine) {
@@ -70,6 +83,7 @@ public class DatabaseSnapshotAgent implements Closeable {
         this.configuration = engine.getConfiguration();
         this.ff = configuration.getFilesFacade();
         this.metadata = new WalWriterMetadata(ff);
+        this.prevTxReader = new TxReader(ff);
     }
 
     public static void recoverSnapshot(CairoEngine engine) {
@@ -113,137 +127,144 @@ public class DatabaseSnapshotAgent implements Closeable {
                     .$("`, previousId=`").$(snapshotInstanceId)
                     .$("`]").$();
 
-            // OK, we need to recover from the snapshot.
-            AtomicInteger recoveredMetaFiles = new AtomicInteger();
-            AtomicInteger recoveredTxnFiles = new AtomicInteger();
-            AtomicInteger recoveredCVFiles = new AtomicInteger();
-            AtomicInteger recoveredWalFiles = new AtomicInteger();
-            srcPath.trimTo(snapshotRootLen).$();
-            final int snapshotDbLen = srcPath.length();
-            ff.iterateDir(srcPath, (pUtf8NameZ, type) -> {
-                if (ff.isDirOrSoftLinkDirNoDots(srcPath, snapshotDbLen, pUtf8NameZ, type)) {
-                    dstPath.trimTo(rootLen).concat(pUtf8NameZ);
-                    int srcPathLen = srcPath.length();
-                    int dstPathLen = dstPath.length();
-
-                    srcPath.concat(TableUtils.META_FILE_NAME).$();
-                    dstPath.concat(TableUtils.META_FILE_NAME).$();
-                    if (ff.exists(srcPath) && ff.exists(dstPath)) {
-                        if (ff.copy(srcPath, dstPath) < 0) {
-                            LOG.error()
-                                    .$("could not copy _meta file [src=").utf8(srcPath)
-                                    .$(", dst=").utf8(dstPath)
-                                    .$(", errno=").$(ff.errno())
-                                    .$(']').$();
-                        } else {
-                            recoveredMetaFiles.incrementAndGet();
-                            LOG.info()
-                                    .$("recovered _meta file [src=").utf8(srcPath)
-                                    .$(", dst=").utf8(dstPath)
-                                    .$(']').$();
+            srcPath.trimTo(snapshotRootLen).concat(TableUtils.SNAPSHOT_MANIFEST_FILE_NAME).$();
+            if (ff.exists(srcPath)) {
+                // Incremental snapshot holds complete table directories, move them in place of the current ones.
+                memFile.smallFile(ff, srcPath, MemoryTag.MMAP_DEFAULT);
+                recoverTables(configuration, memFile, srcPath, snapshotRootLen, dstPath, rootLen);
+            } else {
+                // OK, we need to recover from the snapshot.
+                AtomicInteger recoveredMetaFiles = new AtomicInteger();
+                AtomicInteger recoveredTxnFiles = new AtomicInteger();
+                AtomicInteger recoveredCVFiles = new AtomicInteger();
+                AtomicInteger recoveredWalFiles = new AtomicInteger();
+                srcPath.trimTo(snapshotRootLen).$();
+                final int snapshotDbLen = srcPath.length();
+                ff.iterateDir(srcPath, (pUtf8NameZ, type) -> {
+                    if (ff.isDirOrSoftLinkDirNoDots(srcPath, snapshotDbLen, pUtf8NameZ, type)) {
+                        dstPath.trimTo(rootLen).concat(pUtf8NameZ);
+                        int srcPathLen = srcPath.length();
+                        int dstPathLen = dstPath.length();
+
+                        srcPath.concat(TableUtils.META_FILE_NAME).$();
+                        dstPath.concat(TableUtils.META_FILE_NAME).$();
+                        if (ff.exists(srcPath) && ff.exists(dstPath)) {
+                            if (ff.copy(srcPath, dstPath) < 0) {
+                                LOG.error()
+                                        .$("could not copy _meta file [src=").utf8(srcPath)
+                                        .$(", dst=").utf8(dstPath)
+                                        .$(", errno=").$(ff.errno())
+                                        .$(']').$();
+                            } else {
+                                recoveredMetaFiles.incrementAndGet();
+                                LOG.info()
+                                        .$("recovered _meta file [src=").utf8(srcPath)
+                                        .$(", dst=").utf8(dstPath)
+                                        .$(']').$();
+                            }
                         }
-                    }
 
-                    srcPath.trimTo(srcPathLen).concat(TableUtils.TXN_FILE_NAME).$();
-                    dstPath.trimTo(dstPathLen).concat(TableUtils.TXN_FILE_NAME).$();
-                    if (ff.exists(srcPath) && ff.exists(dstPath)) {
-                        if (ff.copy(srcPath, dstPath) < 0) {
-                            LOG.error()
-                                    .$("could not copy _txn file [src=").utf8(srcPath)
-                                    .$(", dst=").utf8(dstPath)
-                                    .$(", errno=").$(ff.errno())
-                                    .$(']').$();
-                        } else {
-                            recoveredTxnFiles.incrementAndGet();
-                            LOG.info()
-                                    .$("recovered _txn file [src=").utf8(srcPath)
-                                    .$(", dst=").utf8(dstPath)
-                                    .$(']').$();
+                        srcPath.trimTo(srcPathLen).concat(TableUtils.TXN_FILE_NAME).$();
+                        dstPath.trimTo(dstPathLen).concat(TableUtils.TXN_FILE_NAME).$();
+                        if (ff.exists(srcPath) && ff.exists(dstPath)) {
+                            if (ff.copy(srcPath, dstPath) < 0) {
+                                LOG.error()
+                                        .$("could not copy _txn file [src=").utf8(srcPath)
+                                        .$(", dst=").utf8(dstPath)
+                                        .$(", errno=").$(ff.errno())
+                                        .$(']').$();
+                            } else {
+                                recoveredTxnFiles.incrementAndGet();
+                                LOG.info()
+                                        .$("recovered _txn file [src=").utf8(srcPath)
+                                        .$(", dst=").utf8(dstPath)
+                                        .$(']').$();
+                            }
                         }
-                    }
 
-                    srcPath.trimTo(srcPathLen).concat(TableUtils.COLUMN_VERSION_FILE_NAME).$();
-                    dstPath.trimTo(dstPathLen).concat(TableUtils.COLUMN_VERSION_FILE_NAME).$();
-                    if (ff.exists(srcPath) && ff.exists(dstPath)) {
-                        if (ff.copy(srcPath, dstPath) < 0) {
-                            LOG.error()
-                                    .$("could not copy _cv file [src=").utf8(srcPath)
-                                    .$(", dst=").utf8(dstPath)
-                                    .$(", errno=").$(ff.errno())
-                                    .$(']').$();
-                        } else {
-                            recoveredCVFiles.incrementAndGet();
-                            LOG.info()
-                                    .$("recovered _cv file [src=").utf8(srcPath)
-                                    .$(", dst=").utf8(dstPath)
-                                    .$(']').$();
+                        srcPath.trimTo(srcPathLen).concat(TableUtils.COLUMN_VERSION_FILE_NAME).$();
+                        dstPath.trimTo(dstPathLen).concat(TableUtils.COLUMN_VERSION_FILE_NAME).$();
+                        if (ff.exists(srcPath) && ff.exists(dstPath)) {
+                            if (ff.copy(srcPath, dstPath) < 0) {
+                                LOG.error()
+                                        .$("could not copy _cv file [src=").utf8(srcPath)
+                                        .$(", dst=").utf8(dstPath)
+                                        .$(", errno=").$(ff.errno())
+                                        .$(']').$();
+                            } else {
+                                recoveredCVFiles.incrementAndGet();
+                                LOG.info()
+                                        .$("recovered _cv file [src=").utf8(srcPath)
+                                        .$(", dst=").utf8(dstPath)
+                                        .$(']').$();
+                            }
                         }
-                    }
 
-                    // Go inside SEQ_DIR
-                    srcPath.trimTo(srcPathLen).concat(WalUtils.SEQ_DIR);
-                    srcPathLen = srcPath.length();
-                    srcPath.concat(TableUtils.META_FILE_NAME).$();
-
-                    dstPath.trimTo(dstPathLen).concat(WalUtils.SEQ_DIR);
-                    dstPathLen = dstPath.length();
-                    dstPath.concat(TableUtils.META_FILE_NAME).$();
-
-                    if (ff.exists(srcPath) && ff.exists(dstPath)) {
-                        if (ff.copy(srcPath, dstPath) < 0) {
-                            LOG.critical()
-                                    .$("could not copy ").$(TableUtils.META_FILE_NAME).$(" file [src=").utf8(srcPath)
-                                    .utf8(", dst=").utf8(dstPath)
-                                    .$(", errno=").$(ff.errno())
-                                    .$(']').$();
-                        } else {
-                            try {
-                                srcPath.trimTo(srcPathLen);
-                                openSmallFile(ff, srcPath, srcPathLen, memFile, TableUtils.TXN_FILE_NAME, MemoryTag.MMAP_TX_LOG);
-                                long newMaxTxn = memFile.getLong(0L); // snapshot/db/tableName/txn_seq/_txn
-
-                                memFile.smallFile(ff, dstPath, MemoryTag.MMAP_SEQUENCER_METADATA);
-                                dstPath.trimTo(dstPathLen);
-                                openSmallFile(ff, dstPath, dstPathLen, memFile, TXNLOG_FILE_NAME_META_INX, MemoryTag.MMAP_TX_LOG);
-
-                                if (newMaxTxn >= 0) {
+                        // Go inside SEQ_DIR
+                        srcPath.trimTo(srcPathLen).concat(WalUtils.SEQ_DIR);
+                        srcPathLen = srcPath.length();
+                        srcPath.concat(TableUtils.META_FILE_NAME).$();
+
+                        dstPath.trimTo(dstPathLen).concat(WalUtils.SEQ_DIR);
+                        dstPathLen = dstPath.length();
+                        dstPath.concat(TableUtils.META_FILE_NAME).$();
+
+                        if (ff.exists(srcPath) && ff.exists(dstPath)) {
+                            if (ff.copy(srcPath, dstPath) < 0) {
+                                LOG.critical()
+                                        .$("could not copy ").$(TableUtils.META_FILE_NAME).$(" file [src=").utf8(srcPath)
+                                        .utf8(", dst=").utf8(dstPath)
+                                        .$(", errno=").$(ff.errno())
+                                        .$(']').$();
+                            } else {
+                                try {
+                                    srcPath.trimTo(srcPathLen);
+                                    openSmallFile(ff, srcPath, srcPathLen, memFile, TableUtils.TXN_FILE_NAME, MemoryTag.MMAP_TX_LOG);
+                                    long newMaxTxn = memFile.getLong(0L); // snapshot/db/tableName/txn_seq/_txn
+
+                                    memFile.smallFile(ff, dstPath, MemoryTag.MMAP_SEQUENCER_METADATA);
                                     dstPath.trimTo(dstPathLen);
-                                    openSmallFile(ff, dstPath, dstPathLen, memFile, TXNLOG_FILE_NAME, MemoryTag.MMAP_TX_LOG);
-                                    // get oldMaxTxn from dbRoot/tableName/txn_seq/_txnlog
-                                    long oldMaxTxn = memFile.getLong(MAX_TXN_OFFSET);
-                                    if (newMaxTxn < oldMaxTxn) {
-                                        // update header of dbRoot/tableName/txn_seq/_txnlog with new values
-                                        memFile.putLong(MAX_TXN_OFFSET, newMaxTxn);
-                                        LOG.info()
-                                                .$("updated ").$(TXNLOG_FILE_NAME).$(" file [path=").utf8(dstPath)
-                                                .$(", oldMaxTxn=").$(oldMaxTxn)
-                                                .$(", newMaxTxn=").$(newMaxTxn)
-                                                .$(']').$();
+                                    openSmallFile(ff, dstPath, dstPathLen, memFile, TXNLOG_FILE_NAME_META_INX, MemoryTag.MMAP_TX_LOG);
+
+                                    if (newMaxTxn >= 0) {
+                                        dstPath.trimTo(dstPathLen);
+                                        openSmallFile(ff, dstPath, dstPathLen, memFile, TXNLOG_FILE_NAME, MemoryTag.MMAP_TX_LOG);
+                                        // get oldMaxTxn from dbRoot/tableName/txn_seq/_txnlog
+                                        long oldMaxTxn = memFile.getLong(MAX_TXN_OFFSET);
+                                        if (newMaxTxn < oldMaxTxn) {
+                                            // update header of dbRoot/tableName/txn_seq/_txnlog with new values
+                                            memFile.putLong(MAX_TXN_OFFSET, newMaxTxn);
+                                            LOG.info()
+                                                    .$("updated ").$(TXNLOG_FILE_NAME).$(" file [path=").utf8(dstPath)
+                                                    .$(", oldMaxTxn=").$(oldMaxTxn)
+                                                    .$(", newMaxTxn=").$(newMaxTxn)
+                                                    .$(']').$();
+                                        }
                                     }
+                                } catch (CairoException ex) {
+                                    LOG.critical()
+                                            .$("could not update file [src=").utf8(dstPath)
+                                            .$("`, ex=").$(ex.getFlyweightMessage())
+                                            .$(", errno=").$(ff.errno())
+                                            .$(']').$();
                                 }
-                            } catch (CairoException ex) {
-                                LOG.critical()
-                                        .$("could not update file [src=").utf8(dstPath)
-                                        .$("`, ex=").$(ex.getFlyweightMessage())
-                                        .$(", errno=").$(ff.errno())
+
+                                recoveredWalFiles.incrementAndGet();
+                                LOG.info()
+                                        .$("recovered ").$(TableUtils.META_FILE_NAME).$(" file [src=").utf8(srcPath)
+                                        .$(", dst=").utf8(dstPath)
                                         .$(']').$();
                             }
-
-                            recoveredWalFiles.incrementAndGet();
-                            LOG.info()
-                                    .$("recovered ").$(TableUtils.META_FILE_NAME).$(" file [src=").utf8(srcPath)
-                                    .$(", dst=").utf8(dstPath)
-                                    .$(']').$();
                         }
                     }
-                }
-            });
-            LOG.info()
-                    .$("snapshot recovery finished [metaFilesCount=").$(recoveredMetaFiles.get())
-                    .$(", txnFilesCount=").$(recoveredTxnFiles.get())
-                    .$(", cvFilesCount=").$(recoveredCVFiles.get())
-                    .$(", walFilesCount=").$(recoveredWalFiles.get())
-                    .$(']').$();
+                });
+                LOG.info()
+                        .$("snapshot recovery finished [metaFilesCount=").$(recoveredMetaFiles.get())
+                        .$(", txnFilesCount=").$(recoveredTxnFiles.get())
+                        .$(", cvFilesCount=").$(recoveredCVFiles.get())
+                        .$(", walFilesCount=").$(recoveredWalFiles.get())
+                        .$(']').$();
+            }
 
             // Delete snapshot directory to avoid recovery on next restart.
             srcPath.trimTo(snapshotRootLen).$();
@@ -273,6 +294,8 @@ public class DatabaseSnapshotAgent implements Closeable {
         lock.lock();
         try {
             Misc.free(path);
+            Misc.free(srcPath);
+            Misc.free(prevTxReader);
             unsafeReleaseReaders();
             metadata.close();
         } finally {
@@ -310,6 +333,155 @@ public class DatabaseSnapshotAgent implements Closeable {
         }
     }
 
+    /**
+     * Makes a standalone copy of the database in the given directory under the snapshot root. Partitions other than
+     * the last one are not appended to in place, so their files are hard-linked, while the last partition, symbol
+     * files and WAL files are copied. Running the snapshot against the same directory again relinks only the
+     * partitions that changed since the previous run. Table transaction files in the snapshot bound the visible
+     * rows, hence the linked files may safely grow afterwards.
+     * <p>
+     * A snapshot made in the "db" directory is restored by {@link #recoverSnapshot(CairoEngine)} on startup when
+     * instance id changes. Snapshots made elsewhere have to be moved there first.
+     *
+     * @param executionContext execution context
+     * @param dirName          snapshot directory name, relative to the snapshot root
+     * @throws SqlException when another snapshot is in progress
+     */
+    public void incrementalSnapshot(SqlExecutionContext executionContext, CharSequence dirName) throws SqlException {
+        // Windows doesn't support sync() system call.
+        if (Os.isWindows()) {
+            throw SqlException.position(0).put("Snapshots are not supported on Windows");
+        }
+
+        if (!lock.tryLock()) {
+            throw SqlException.position(0).put("Another snapshot command in progress");
+        }
+        try {
+            if (activePrepareFlag.get()) {
+                throw SqlException.position(0).put("Waiting for SNAPSHOT COMPLETE to be called");
+            }
+
+            path.of(configuration.getSnapshotRoot()).concat(dirName);
+            final int snapshotLen = path.length();
+            if (ff.mkdirs(path.slash$(), configuration.getMkDirMode()) != 0) {
+                throw CairoException.critical(ff.errno()).put("Could not create [dir=").put(path).put(']');
+            }
+
+            // Snapshot is not recoverable until it's complete.
+            path.trimTo(snapshotLen).concat(TableUtils.SNAPSHOT_MANIFEST_FILE_NAME).$();
+            if (ff.exists(path) && !ff.remove(path)) {
+                throw CairoException.critical(ff.errno()).put("Could not remove [file=").put(path).put(']');
+            }
+
+            snapshotTables.clear();
+            snapshotTxns.clear();
+            try (TableListRecordCursorFactory factory = new TableListRecordCursorFactory()) {
+                final int tableNameIndex = factory.getMetadata().getColumnIndex(TableListRecordCursorFactory.TABLE_NAME_COLUMN);
+                try (RecordCursor cursor = factory.getCursor(executionContext)) {
+                    final Record record = cursor.getRecord();
+
+                    // Suspend the WalPurgeJob
+                    if (walPurgeJobRunLock != null) {
+                        final long timeout = configuration.getCircuitBreakerConfiguration().getTimeout();
+                        while (!walPurgeJobRunLock.tryLock(timeout, TimeUnit.MICROSECONDS)) {
+                            executionContext.getCircuitBreaker().statefulThrowExceptionIfTrippedNoThrottle();
+                        }
+                    }
+
+                    try (MemoryCMARW mem = Vm.getCMARWInstance()) {
+                        while (cursor.hasNext()) {
+                            CharSequence tableName = record.getStr(tableNameIndex);
+                            srcPath.of(configuration.getRoot());
+                            TableToken tableToken = engine.getTableToken(tableName);
+                            if (
+                                    TableUtils.isValidTableName(tableName, tableName.length())
+                                            && ff.exists(srcPath.concat(tableToken).concat(TableUtils.META_FILE_NAME).$())
+                            ) {
+                                LOG.info().$("incremental snapshot [table=").$(tableName).I$();
+                                // Reader pins partition versions until the table is copied.
+                                try (TableReader reader = engine.getReaderWithRepair(executionContext.getCairoSecurityContext(), tableToken)) {
+                                    snapshotTable(reader, tableToken, engine.isWalTable(tableToken), snapshotLen, mem);
+                                }
+                            } else {
+                                LOG.error().$("skipping, invalid table name or missing metadata [table=").$(tableName).I$();
+                            }
+                        }
+
+                        // Remove tables dropped since the previous snapshot.
+                        path.trimTo(snapshotLen).$();
+                        ff.iterateDir(path, (pUtf8NameZ, type) -> {
+                            if (ff.isDirOrSoftLinkDirNoDots(path, snapshotLen, pUtf8NameZ, type, nameSink) && snapshotTables.excludes(nameSink)) {
+                                if (ff.rmdir(path) != 0) {
+                                    throw CairoException.critical(ff.errno()).put("Could not remove [dir=").put(path).put(']');
+                                }
+                            }
+                        });
+
+                        // Copy table registry.
+                        path.trimTo(snapshotLen).$();
+                        ff.iterateDir(path, (pUtf8NameZ, type) -> {
+                            if (type == Files.DT_FILE && getTableRegistryFileVersion(pUtf8NameZ, nameSink) > -1) {
+                                path.trimTo(snapshotLen).concat(pUtf8NameZ).$();
+                                if (!ff.remove(path)) {
+                                    throw CairoException.critical(ff.errno()).put("Could not remove [file=").put(path).put(']');
+                                }
+                            }
+                        });
+                        srcPath.of(configuration.getRoot()).$();
+                        final int rootLen = srcPath.length();
+                        ff.iterateDir(srcPath, (pUtf8NameZ, type) -> {
+                            if (type == Files.DT_FILE && getTableRegistryFileVersion(pUtf8NameZ, nameSink) > -1) {
+                                srcPath.trimTo(rootLen).concat(pUtf8NameZ).$();
+                                path.trimTo(snapshotLen).concat(pUtf8NameZ).$();
+                                if (ff.copy(srcPath, path) < 0) {
+                                    throw CairoException.critical(ff.errno()).put("Could not copy [from=").put(srcPath).put(", to=").put(path).put(']');
+                                }
+                            }
+                        });
+
+                        path.trimTo(snapshotLen).concat(TableUtils.SNAPSHOT_META_FILE_NAME).$();
+                        mem.smallFile(ff, path, MemoryTag.MMAP_DEFAULT);
+                        mem.putStr(configuration.getSnapshotInstanceId());
+                        mem.close();
+
+                        // Flush dirty pages and filesystem metadata to disk before the manifest makes snapshot valid.
+                        if (ff.sync() != 0) {
+                            throw CairoException.critical(ff.errno()).put("Could not sync");
+                        }
+
+                        path.trimTo(snapshotLen).concat(TableUtils.SNAPSHOT_MANIFEST_FILE_NAME).$();
+                        mem.smallFile(ff, path, MemoryTag.MMAP_DEFAULT);
+                        mem.putLong(configuration.getMicrosecondClock().getTicks());
+                        mem.putInt(snapshotTables.size());
+                        for (int i = 0, n = snapshotTables.size(); i < n; i++) {
+                            mem.putStr(snapshotTables.get(i));
+                            mem.putLong(snapshotTxns.getQuick(2 * i));
+                            mem.putLong(snapshotTxns.getQuick(2 * i + 1));
+                        }
+                        mem.close();
+
+                        if (ff.sync() != 0) {
+                            throw CairoException.critical(ff.errno()).put("Could not sync");
+                        }
+                        LOG.info().$("incremental snapshot finished [dir=").$(dirName).$(", tables=").$(snapshotTables.size()).I$();
+                    } catch (Throwable e) {
+                        LOG.error()
+                                .$("snapshot error [e=").$(e)
+                                .I$();
+                        throw e;
+                    } finally {
+                        // Resume the WalPurgeJob
+                        if (walPurgeJobRunLock != null) {
+                            walPurgeJobRunLock.unlock();
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
     public void prepareSnapshot(SqlExecutionContext executionContext) throws SqlException {
         // Windows doesn't support sync() system call.
         if (Os.isWindows()) {
@@ -446,6 +618,272 @@ public class DatabaseSnapshotAgent implements Closeable {
         this.walPurgeJobRunLock = walPurgeJobRunLock;
     }
 
+    // returns version of the table registry file or -1 when it's some other file
+    private static int getTableRegistryFileVersion(long pUtf8NameZ, StringSink nameSink) {
+        nameSink.clear();
+        Chars.utf8DecodeZ(pUtf8NameZ, nameSink);
+        final int len = WalUtils.TABLE_REGISTRY_NAME_FILE.length();
+        if (nameSink.length() > len + 1 && Chars.startsWith(nameSink, WalUtils.TABLE_REGISTRY_NAME_FILE) && nameSink.charAt(len) == '.') {
+            try {
+                return Numbers.parseInt(nameSink, len + 1, nameSink.length());
+            } catch (NumericException ignore) {
+            }
+        }
+        return -1;
+    }
+
+    private static void recoverTables(
+            CairoConfiguration configuration,
+            MemoryCMARW manifest,
+            Path srcPath,
+            int snapshotRootLen,
+            Path dstPath,
+            int rootLen
+    ) {
+        final FilesFacade ff = configuration.getFilesFacade();
+        final StringSink nameSink = new StringSink();
+
+        // Table registry of the snapshot replaces the current one. Files are overwritten rather than removed,
+        // newer versions of the registry are removed.
+        final AtomicInteger lastRegistryVersion = new AtomicInteger(-1);
+        srcPath.trimTo(snapshotRootLen).$();
+        ff.iterateDir(srcPath, (pUtf8NameZ, type) -> {
+            final int version;
+            if (type == Files.DT_FILE && (version = getTableRegistryFileVersion(pUtf8NameZ, nameSink)) > -1) {
+                srcPath.trimTo(snapshotRootLen).concat(pUtf8NameZ).$();
+                dstPath.trimTo(rootLen).concat(pUtf8NameZ).$();
+                if (ff.copy(srcPath, dstPath) < 0) {
+                    LOG.critical()
+                            .$("could not copy table registry file [src=").utf8(srcPath)
+                            .$(", dst=").utf8(dstPath)
+                            .$(", errno=").$(ff.errno())
+                            .$(']').$();
+                } else if (version > lastRegistryVersion.get()) {
+                    lastRegistryVersion.set(version);
+                }
+            }
+        });
+        if (lastRegistryVersion.get() > -1) {
+            dstPath.trimTo(rootLen).$();
+            ff.iterateDir(dstPath, (pUtf8NameZ, type) -> {
+                if (type == Files.DT_FILE && getTableRegistryFileVersion(pUtf8NameZ, nameSink) > lastRegistryVersion.get()) {
+                    dstPath.trimTo(rootLen).concat(pUtf8NameZ).$();
+                    if (!ff.remove(dstPath)) {
+                        LOG.critical()
+                                .$("could not remove table registry file [path=").utf8(dstPath)
+                                .$(", errno=").$(ff.errno())
+                                .$(']').$();
+                    }
+                }
+            });
+        }
+
+        int recoveredTables = 0;
+        final int tableCount = manifest.getInt(MANIFEST_OFFSET_TABLE_COUNT);
+        long offset = MANIFEST_HEADER_SIZE;
+        for (int i = 0; i < tableCount; i++) {
+            final CharSequence dirName = manifest.getStr(offset);
+            offset += Vm.getStorageLength(dirName) + 2 * Long.BYTES;
+
+            srcPath.trimTo(snapshotRootLen).concat(dirName).$();
+            dstPath.trimTo(rootLen).concat(dirName).$();
+            if (ff.exists(dstPath) && ff.rmdir(dstPath) != 0) {
+                LOG.critical()
+                        .$("could not remove table dir [dir=").utf8(dstPath)
+                        .$(", errno=").$(ff.errno())
+                        .$(']').$();
+                continue;
+            }
+            if (ff.rename(srcPath, dstPath) != Files.FILES_RENAME_OK
+                    && ff.copyRecursive(srcPath, dstPath, configuration.getMkDirMode()) != 0) {
+                LOG.critical()
+                        .$("could not recover table dir [src=").utf8(srcPath)
+                        .$(", dst=").utf8(dstPath)
+                        .$(", errno=").$(ff.errno())
+                        .$(']').$();
+                continue;
+            }
+            recoveredTables++;
+            LOG.info()
+                    .$("recovered table dir [src=").utf8(srcPath)
+                    .$(", dst=").utf8(dstPath)
+                    .$(']').$();
+        }
+        LOG.info().$("snapshot recovery finished [tableCount=").$(recoveredTables).$(']').$();
+    }
+
+    private void copyFile(CharSequence fileName, int srcLen, int dstLen) {
+        srcPath.trimTo(srcLen).concat(fileName).$();
+        path.trimTo(dstLen).concat(fileName).$();
+        if (ff.copy(srcPath, path) < 0) {
+            throw CairoException.critical(ff.errno()).put("Could not copy [from=").put(srcPath).put(", to=").put(path).put(']');
+        }
+    }
+
+    private void snapshotTable(TableReader reader, TableToken tableToken, boolean isWalTable, int snapshotLen, MemoryCMARW mem) {
+        final TxReader txFile = reader.getTxFile();
+        final int partitionBy = reader.getPartitionedBy();
+        final int partitionCount = txFile.getPartitionCount();
+        final int mkDirMode = configuration.getMkDirMode();
+
+        path.trimTo(snapshotLen).concat(tableToken);
+        final int tableLen = path.length();
+        srcPath.of(configuration.getRoot()).concat(tableToken);
+        final int srcTableLen = srcPath.length();
+        if (ff.mkdirs(path.slash$(), mkDirMode) != 0) {
+            throw CairoException.critical(ff.errno()).put("Could not create [dir=").put(path).put(']');
+        }
+
+        // Partitions that did not change since the previous snapshot are kept. Structure changes, such as
+        // column renames, are applied to partition files in place, so they invalidate all partitions.
+        keptPartitions.clear();
+        path.trimTo(tableLen).concat(TableUtils.TXN_FILE_NAME).$();
+        if (PartitionBy.isPartitioned(partitionBy) && ff.exists(path)) {
+            try {
+                prevTxReader.ofRO(path, partitionBy);
+                if (prevTxReader.unsafeLoadAll() && prevTxReader.getStructureVersion() == txFile.getStructureVersion()) {
+                    // last partition is appended to in place, it is copied rather than linked
+                    final int prevLastIndex = prevTxReader.getPartitionCount() - 1;
+                    for (int i = 0; i < partitionCount - 1; i++) {
+                        final long timestamp = txFile.getPartitionTimestamp(i);
+                        final int prevIndex = prevTxReader.getPartitionIndex(timestamp);
+                        if (
+                                prevIndex > -1
+                                        && prevIndex < prevLastIndex
+                                        && prevTxReader.getPartitionNameTxn(prevIndex) == txFile.getPartitionNameTxn(i)
+                                        && prevTxReader.getPartitionSize(prevIndex) == txFile.getPartitionSize(i)
+                                        && prevTxReader.getPartitionColumnVersion(prevIndex) == txFile.getPartitionColumnVersion(i)
+                        ) {
+                            setPartitionName(partitionBy, timestamp, txFile.getPartitionNameTxn(i));
+                            if (ff.exists(path.trimTo(tableLen).concat(nameSink).$())) {
+                                keptPartitions.add(nameSink);
+                            }
+                        }
+                    }
+                }
+            } finally {
+                prevTxReader.close();
+            }
+        }
+
+        // Remove everything else, _txn included, so that an interrupted snapshot doesn't keep stale partitions.
+        path.trimTo(tableLen).$();
+        ff.iterateDir(path, (pUtf8NameZ, type) -> {
+            if (Files.notDots(pUtf8NameZ)) {
+                nameSink.clear();
+                Chars.utf8DecodeZ(pUtf8NameZ, nameSink);
+                if (keptPartitions.excludes(nameSink)) {
+                    path.trimTo(tableLen).concat(pUtf8NameZ).$();
+                    if (type == Files.DT_DIR ? ff.rmdir(path) != 0 : !ff.remove(path)) {
+                        throw CairoException.critical(ff.errno()).put("Could not remove [path=").put(path).put(']');
+                    }
+                }
+            }
+        });
+
+        int linked = 0;
+        for (int i = 0; i < partitionCount; i++) {
+            setPartitionName(partitionBy, txFile.getPartitionTimestamp(i), txFile.getPartitionNameTxn(i));
+            if (keptPartitions.contains(nameSink)) {
+                continue;
+            }
+            srcPath.trimTo(srcTableLen).concat(nameSink);
+            path.trimTo(tableLen).concat(nameSink);
+            if (i < partitionCount - 1) {
+                if (ff.hardLinkDirRecursive(srcPath, path, mkDirMode) != 0) {
+                    if (!ff.isCrossDeviceCopyError(ff.errno()) || ff.copyRecursive(srcPath, path, mkDirMode) != 0) {
+                        throw CairoException.critical(ff.errno()).put("Could not link partition [from=").put(srcPath)
+                                .put(", to=").put(path)
+                                .put(']');
+                    }
+                }
+                linked++;
+            } else if (ff.copyRecursive(srcPath, path, mkDirMode) != 0) {
+                throw CairoException.critical(ff.errno()).put("Could not copy partition [from=").put(srcPath)
+                        .put(", to=").put(path)
+                        .put(']');
+            }
+        }
+
+        long lastTxn = -1;
+        if (isWalTable) {
+            // Sequencer state goes first, WAL files copied after it contain all transactions up to lastTxn.
+            metadata.clear();
+            lastTxn = engine.getTableSequencerAPI().getTableMetadata(tableToken, metadata);
+        }
+
+        // Copy symbol, WAL and other files of the table, except for the ones dumped from the reader below.
+        srcPath.trimTo(srcTableLen).$();
+        ff.iterateDir(srcPath, (pUtf8NameZ, type) -> {
+            if (type == Files.DT_FILE) {
+                nameSink.clear();
+                Chars.utf8DecodeZ(pUtf8NameZ, nameSink);
+                if (
+                        !Chars.equals(nameSink, TableUtils.TXN_FILE_NAME)
+                                && !Chars.equals(nameSink, TableUtils.META_FILE_NAME)
+                                && !Chars.equals(nameSink, TableUtils.COLUMN_VERSION_FILE_NAME)
+                                && !Chars.equals(nameSink, TableUtils.TXN_SCOREBOARD_FILE_NAME)
+                                && !Chars.equals(nameSink, TableUtils.TODO_FILE_NAME)
+                ) {
+                    copyFile(nameSink, srcTableLen, tableLen);
+                }
+            } else if (
+                    isWalTable
+                            && ff.isDirOrSoftLinkDirNoDots(srcPath, srcTableLen, pUtf8NameZ, type, nameSink)
+                            && (Chars.equals(nameSink, WalUtils.SEQ_DIR) || Chars.startsWith(nameSink, WalUtils.WAL_NAME_BASE))
+            ) {
+                path.trimTo(tableLen).concat(nameSink);
+                if (ff.copyRecursive(srcPath.trimTo(srcTableLen).concat(nameSink), path, mkDirMode) != 0) {
+                    throw CairoException.critical(ff.errno()).put("Could not copy [from=").put(srcPath)
+                            .put(", to=").put(path)
+                            .put(']');
+                }
+            }
+        });
+
+        if (isWalTable) {
+            path.trimTo(tableLen).concat(WalUtils.SEQ_DIR);
+            final int seqLen = path.length();
+            metadata.switchTo(path, seqLen); // dump sequencer metadata to snapshot/dir/tableName/txn_seq/_meta
+            metadata.close(Vm.TRUNCATE_TO_POINTER);
+            // transaction log may have moved on while it was copied
+            openSmallFile(ff, path.trimTo(seqLen), seqLen, mem, TXNLOG_FILE_NAME, MemoryTag.MMAP_TX_LOG);
+            if (lastTxn < mem.getLong(MAX_TXN_OFFSET)) {
+                mem.putLong(MAX_TXN_OFFSET, lastTxn);
+            }
+            mem.close(false);
+        }
+
+        // Dump _meta, _cv and, the last one, _txn file.
+        path.trimTo(tableLen).concat(TableUtils.META_FILE_NAME).$();
+        mem.smallFile(ff, path, MemoryTag.MMAP_DEFAULT);
+        reader.getMetadata().dumpTo(mem);
+        mem.close(false);
+        path.trimTo(tableLen).concat(TableUtils.COLUMN_VERSION_FILE_NAME).$();
+        mem.smallFile(ff, path, MemoryTag.MMAP_DEFAULT);
+        reader.getColumnVersionReader().dumpTo(mem);
+        mem.close(false);
+        path.trimTo(tableLen).concat(TableUtils.TXN_FILE_NAME).$();
+        mem.smallFile(ff, path, MemoryTag.MMAP_DEFAULT);
+        txFile.dumpTo(mem);
+        mem.close(false);
+
+        snapshotTables.add(tableToken.getDirName());
+        snapshotTxns.add(txFile.getTxn(), txFile.getSeqTxn());
+        LOG.info()
+                .$("table snapshot finished [table=").$(tableToken)
+                .$(", partitions=").$(partitionCount)
+                .$(", linked=").$(linked)
+                .$(", kept=").$(keptPartitions.size())
+                .I$();
+    }
+
+    private void setPartitionName(int partitionBy, long timestamp, long nameTxn) {
+        nameSink.clear();
+        PartitionBy.setSinkForPartition(nameSink, partitionBy, timestamp, false);
+        TableUtils.txnPartitionConditionally(nameSink, nameTxn);
+    }
+
     private void unsafeReleaseReaders() {
         Misc.freeObjList(snapshotReaders);
         snapshotReaders.clear();
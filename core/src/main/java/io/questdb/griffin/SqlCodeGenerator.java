@@ -34,6 +34,7 @@ import io.questdb.cairo.vm.Vm;
 import io.questdb.cairo.vm.api.MemoryCARW;
 import io.questdb.griffin.engine.*;
 import io.questdb.griffin.engine.analytic.AnalyticFunction;
+import io.questdb.griffin.engine.analytic.AnalyticRecordCursorFactory;
 import io.questdb.griffin.engine.analytic.CachedAnalyticRecordCursorFactory;
 import io.questdb.griffin.engine.functions.GroupByFunction;
 import io.questdb.griffin.engine.functions.SymbolFunction;
@@ -46,7 +47,9 @@ import io.questdb.griffin.engine.groupby.*;
 import io.questdb.griffin.engine.groupby.vect.GroupByRecordCursorFactory;
 import io.questdb.griffin.engine.groupby.vect.*;
 import io.questdb.griffin.engine.join.*;
+import io.questdb.griffin.engine.orderby.AsyncSortedLightRecordCursorFactory;
 import io.questdb.griffin.engine.orderby.LimitedSizeSortedLightRecordCursorFactory;
+import io.questdb.griffin.engine.orderby.LongSortedLightRecordCursorFactory;
 import io.questdb.griffin.engine.orderby.RecordComparatorCompiler;
 import io.questdb.griffin.engine.orderby.SortedLightRecordCursorFactory;
 import io.questdb.griffin.engine.orderby.SortedRecordCursorFactory;
@@ -203,6 +206,83 @@ public class SqlCodeGenerator implements Mutable, Closeable {
         return new ExplainPlanFactory(factory, model.getFormat());
     }
 
+    private static void addPartitionPrunerPredicate(
+            PartitionPruner pruner,
+            RecordMetadata metadata,
+            ExpressionNode column,
+            int op,
+            ExpressionNode value
+    ) {
+        final int columnIndex = metadata.getColumnIndexQuiet(column.token);
+        if (columnIndex < 0) {
+            return;
+        }
+        final int columnType = metadata.getColumnType(columnIndex);
+        final boolean bloom = op == PartitionPruner.OP_EQ && PartitionBloomFilter.isSupported(columnType);
+        if (!bloom && !PartitionStats.isSupported(columnType)) {
+            return;
+        }
+
+        boolean negative = false;
+        if (value.type == ExpressionNode.OPERATION && value.paramCount == 1 && Chars.equals(value.token, '-')) {
+            negative = true;
+            value = value.rhs;
+        }
+        if (value == null || value.type != CONSTANT) {
+            return;
+        }
+
+        final short columnTag = ColumnType.tagOf(columnType);
+        if (columnTag == ColumnType.STRING || columnTag == ColumnType.UUID) {
+            if (!negative && Chars.isQuoted(value.token)) {
+                final CharSequence str = GenericLexer.unquote(value.token);
+                if (columnTag == ColumnType.STRING) {
+                    pruner.addBloom(columnIndex, columnType, PartitionBloomFilter.hashString(str));
+                } else {
+                    try {
+                        Uuid.checkDashesAndLength(str);
+                        pruner.addBloom(columnIndex, columnType, PartitionBloomFilter.hashUuid(Uuid.parseLo(str), Uuid.parseHi(str)));
+                    } catch (NumericException ignore) {
+                    }
+                }
+            }
+            return;
+        }
+
+        if (columnTag == ColumnType.SYMBOL) {
+            if (op == PartitionPruner.OP_EQ && !negative && Chars.isQuoted(value.token)) {
+                pruner.addSymbol(columnIndex, columnType, GenericLexer.unquote(value.token));
+            }
+            return;
+        }
+
+        // floating point equality is approximate, only ranges are pruned
+        if (op == PartitionPruner.OP_EQ && (columnTag == ColumnType.FLOAT || columnTag == ColumnType.DOUBLE)) {
+            return;
+        }
+
+        try {
+            final long v = Numbers.parseLong(value.token);
+            // null constants compare differently, leave them to the filter
+            if (v != Numbers.LONG_NaN && v != Numbers.INT_NaN) {
+                pruner.addLong(columnIndex, columnType, op, negative ? -v : v);
+                if (bloom) {
+                    pruner.addBloom(columnIndex, columnType, PartitionBloomFilter.hashLong(negative ? -v : v));
+                }
+            }
+            return;
+        } catch (NumericException ignore) {
+        }
+
+        try {
+            final double v = Numbers.parseDouble(value.token);
+            if (!Double.isNaN(v)) {
+                pruner.addDouble(columnIndex, columnType, op, negative ? -v : v);
+            }
+        } catch (NumericException ignore) {
+        }
+    }
+
     private static boolean allGroupsFirstLastWithSingleSymbolFilter(QueryModel model, RecordMetadata metadata) {
         final ObjList<QueryColumn> columns = model.getColumns();
         for (int i = 0, n = columns.size(); i < n; i++) {
@@ -225,6 +305,43 @@ public class SqlCodeGenerator implements Mutable, Closeable {
         return true;
     }
 
+    private static void collectPartitionPrunerPredicates(ExpressionNode node, RecordMetadata metadata, PartitionPruner pruner) {
+        if (node == null || node.type != ExpressionNode.OPERATION) {
+            return;
+        }
+
+        if (isAndKeyword(node.token)) {
+            collectPartitionPrunerPredicates(node.lhs, metadata, pruner);
+            collectPartitionPrunerPredicates(node.rhs, metadata, pruner);
+            return;
+        }
+
+        if (node.paramCount != 2 || node.lhs == null || node.rhs == null) {
+            return;
+        }
+
+        final int op;
+        if (Chars.equals(node.token, '=')) {
+            op = PartitionPruner.OP_EQ;
+        } else if (Chars.equals(node.token, '<')) {
+            op = PartitionPruner.OP_LT;
+        } else if (Chars.equals(node.token, "<=")) {
+            op = PartitionPruner.OP_LE;
+        } else if (Chars.equals(node.token, '>')) {
+            op = PartitionPruner.OP_GT;
+        } else if (Chars.equals(node.token, ">=")) {
+            op = PartitionPruner.OP_GE;
+        } else {
+            return;
+        }
+
+        if (node.lhs.type == LITERAL) {
+            addPartitionPrunerPredicate(pruner, metadata, node.lhs, op, node.rhs);
+        } else if (node.rhs.type == LITERAL) {
+            addPartitionPrunerPredicate(pruner, metadata, node.rhs, PartitionPruner.flip(op), node.lhs);
+        }
+    }
+
     private static RecordCursorFactory createFullFatAsOfJoin(CairoConfiguration configuration,
                                                              RecordMetadata metadata,
                                                              RecordCursorFactory masterFactory,
@@ -257,6 +374,16 @@ public class SqlCodeGenerator implements Mutable, Closeable {
         return new LtJoinRecordCursorFactory(configuration, metadata, masterFactory, slaveFactory, mapKeyTypes, mapValueTypes, slaveColumnTypes, masterKeySink, slaveKeySink, columnSplit, slaveValueSink, columnIndex, joinContext);
     }
 
+    /**
+     * Extracts "column op constant" conjuncts of the filter, which can be checked against
+     * partition statistics to skip partitions without matching rows.
+     */
+    private static @Nullable PartitionPruner generatePartitionPruner(ExpressionNode filter, RecordMetadata metadata) {
+        final PartitionPruner pruner = new PartitionPruner();
+        collectPartitionPrunerPredicates(filter, metadata, pruner);
+        return pruner.isEmpty() ? null : pruner;
+    }
+
     private static int getOrderByDirectionOrDefault(QueryModel model, int index) {
         IntList direction = model.getOrderByDirectionAdvice();
         if (index >= direction.size()) {
@@ -399,6 +526,47 @@ public class SqlCodeGenerator implements Mutable, Closeable {
         return null;
     }
 
+    private ObjList<ObjList<GroupByFunction>> compilePerWorkerGroupByFunctions(
+            QueryModel model,
+            RecordMetadata metadata,
+            SqlExecutionContext executionContext,
+            int workerCount,
+            boolean sampleBy
+    ) throws SqlException {
+        // Always have at least one slot, so that threads stealing work from
+        // other queries don't have to share the owner's functions.
+        final int slotCount = Math.max(workerCount, 1);
+        final ObjList<ObjList<GroupByFunction>> perWorkerGroupByFunctions = new ObjList<>(slotCount);
+        final ArrayColumnTypes workerValueTypes = new ArrayColumnTypes();
+        final IntList workerFunctionPositions = new IntList();
+        try {
+            for (int i = 0; i < slotCount; i++) {
+                final ObjList<GroupByFunction> workerGroupByFunctions = new ObjList<>();
+                perWorkerGroupByFunctions.extendAndSet(i, workerGroupByFunctions);
+                workerValueTypes.clear();
+                if (sampleBy) {
+                    // keep value indexes in sync with the owner's functions, sample by reserves the first value
+                    workerValueTypes.add(ColumnType.TIMESTAMP);
+                }
+                GroupByUtils.prepareGroupByFunctions(
+                        model,
+                        metadata,
+                        functionParser,
+                        executionContext,
+                        workerGroupByFunctions,
+                        workerFunctionPositions,
+                        workerValueTypes
+                );
+            }
+        } catch (Throwable e) {
+            for (int i = 0, n = perWorkerGroupByFunctions.size(); i < n; i++) {
+                Misc.freeObjList(perWorkerGroupByFunctions.getQuick(i));
+            }
+            throw e;
+        }
+        return perWorkerGroupByFunctions;
+    }
+
     private @Nullable ObjList<Function> compileWorkerFilterConditionally(
             boolean condition,
             int workerCount,
@@ -624,7 +792,8 @@ public class SqlCodeGenerator implements Mutable, Closeable {
             RecordCursorFactory slave,
             int joinType,
             Function filter,
-            JoinContext context
+            JoinContext context,
+            SqlExecutionContext executionContext
     ) {
         /*
          * JoinContext provides the following information:
@@ -659,6 +828,28 @@ public class SqlCodeGenerator implements Mutable, Closeable {
 
         if (slave.recordCursorSupportsRandomAccess() && !fullFatJoins) {
             if (joinType == JOIN_INNER) {
+                if (
+                        configuration.isSqlParallelHashJoinEnabled()
+                                && master.supportPageFrameCursor()
+                                && !master.hasDescendingOrder()
+                ) {
+                    return new AsyncHashJoinLightRecordCursorFactory(
+                            configuration,
+                            executionContext.getMessageBus(),
+                            metadata,
+                            master,
+                            slave,
+                            keyTypes,
+                            valueTypes,
+                            masterKeySink,
+                            slaveKeySink,
+                            masterMetadata.getColumnCount(),
+                            context,
+                            reduceTaskPool,
+                            executionContext.getSharedWorkerCount()
+                    );
+                }
+
                 return new HashJoinLightRecordCursorFactory(
                         configuration,
                         metadata,
@@ -1699,7 +1890,8 @@ public class SqlCodeGenerator implements Mutable, Closeable {
                                         slave,
                                         joinType,
                                         filter,
-                                        slaveModel.getContext()
+                                        slaveModel.getContext(),
+                                        executionContext
                                 );
                                 masterAlias = null;
                                 break;
@@ -1813,7 +2005,7 @@ public class SqlCodeGenerator implements Mutable, Closeable {
         assert nested != null;
         final LowerCaseCharSequenceIntHashMap orderBy = nested.getOrderHash();
         CharSequence timestampColumn = metadata.getColumnName(timestampIndex);
-        if (orderBy.get(timestampColumn) == QueryModel.ORDER_DIRECTION_ASCENDING) {
+        if (orderBy.get(timestampColumn) == ORDER_DIRECTION_ASCENDING) {
             // ORDER BY the timestamp column case.
             orderedByTimestampAsc = true;
         } else if (timestampIndex == metadata.getTimestampIndex() && orderBy.size() == 0) {
@@ -2198,7 +2390,7 @@ public class SqlCodeGenerator implements Mutable, Closeable {
                     int index = metadata.getColumnIndexQuiet(column);
                     if (index == timestampIndex) {
                         if (orderByColumnCount == 1) {
-                            if (orderBy.get(column) == QueryModel.ORDER_DIRECTION_ASCENDING) {
+                            if (orderBy.get(column) == ORDER_DIRECTION_ASCENDING) {
                                 return recordCursorFactory;
                             } else if (orderBy.get(column) == ORDER_DIRECTION_DESCENDING &&
                                     recordCursorFactory.hasDescendingOrder()) {
@@ -2224,6 +2416,35 @@ public class SqlCodeGenerator implements Mutable, Closeable {
                                 hiFunc,
                                 listColumnFilterA.copy()
                         );
+                    } else if (
+                            configuration.isSqlParallelSortEnabled()
+                                    && recordCursorFactory.supportPageFrameCursor()
+                                    && !recordCursorFactory.hasDescendingOrder()
+                    ) {
+                        final int workerCount = executionContext.getSharedWorkerCount();
+                        // comparators hold the left record's values, so each worker needs its own instance
+                        final ObjList<RecordComparator> perWorkerComparators = new ObjList<>(workerCount);
+                        for (int i = 0; i < workerCount; i++) {
+                            perWorkerComparators.add(recordComparatorCompiler.compile(metadata, listColumnFilterA));
+                        }
+                        return new AsyncSortedLightRecordCursorFactory(
+                                configuration,
+                                executionContext.getMessageBus(),
+                                orderedMetadata,
+                                recordCursorFactory,
+                                recordComparatorCompiler.compile(metadata, listColumnFilterA),
+                                perWorkerComparators,
+                                listColumnFilterA.copy(),
+                                reduceTaskPool,
+                                workerCount
+                        );
+                    } else if (LongSortedLightRecordCursorFactory.isSupported(metadata, listColumnFilterA)) {
+                        return new LongSortedLightRecordCursorFactory(
+                                configuration,
+                                orderedMetadata,
+                                recordCursorFactory,
+                                listColumnFilterA.copy()
+                        );
                     } else {
                         return new SortedLightRecordCursorFactory(
                                 configuration,
@@ -2535,6 +2756,49 @@ public class SqlCodeGenerator implements Mutable, Closeable {
 
             if (isFillNone) {
 
+                if (
+                        configuration.isSqlParallelSampleByEnabled()
+                                && timezoneName == null
+                                && factory.supportPageFrameCursor()
+                                && AsyncSampleByRecordCursorFactory.isTimestampSamplerSupported(timestampSampler)
+                                && GroupByUtils.isOrderedMergeSupported(groupByFunctions)
+                ) {
+                    final int workerCount = executionContext.getSharedWorkerCount();
+                    final ObjList<ObjList<GroupByFunction>> perWorkerGroupByFunctions;
+                    try {
+                        perWorkerGroupByFunctions = compilePerWorkerGroupByFunctions(
+                                model,
+                                metadata,
+                                executionContext,
+                                workerCount,
+                                true
+                        );
+                    } catch (Throwable e) {
+                        Misc.freeObjList(recordFunctions);
+                        Misc.free(offsetFunc);
+                        throw e;
+                    }
+                    return new AsyncSampleByRecordCursorFactory(
+                            asm,
+                            configuration,
+                            executionContext.getMessageBus(),
+                            factory,
+                            groupByMetadata,
+                            listColumnFilterA,
+                            keyTypes,
+                            valueTypes,
+                            groupByFunctions,
+                            perWorkerGroupByFunctions,
+                            recordFunctions,
+                            timestampSampler,
+                            timestampIndex,
+                            offsetFunc,
+                            offsetFuncPos,
+                            reduceTaskPool,
+                            workerCount
+                    );
+                }
+
                 if (keyTypes.getColumnCount() == 0) {
                     // this sample by is not keyed
                     return new SampleByFillNoneNotKeyedRecordCursorFactory(
@@ -2685,6 +2949,16 @@ public class SqlCodeGenerator implements Mutable, Closeable {
 
     private RecordCursorFactory generateSelectAnalytic(QueryModel model, SqlExecutionContext executionContext) throws SqlException {
         final RecordCursorFactory base = generateSubQuery(model, executionContext);
+        try {
+            final RecordCursorFactory streamingFactory = generateStreamingAnalytic(model, base, executionContext);
+            if (streamingFactory != null) {
+                return streamingFactory;
+            }
+        } catch (Throwable th) {
+            Misc.free(base);
+            throw th;
+        }
+
         final RecordMetadata baseMetadata = base.getMetadata();
         final ObjList<QueryColumn> columns = model.getColumns();
         final int columnCount = columns.size();
@@ -2752,68 +3026,14 @@ public class SqlCodeGenerator implements Mutable, Closeable {
             final QueryColumn qc = columns.getQuick(i);
             if (qc instanceof AnalyticColumn) {
                 final AnalyticColumn ac = (AnalyticColumn) qc;
-                final ExpressionNode ast = qc.getAst();
-                if (ast.paramCount > 1) {
+                final AnalyticFunction analyticFunction;
+                try {
+                    analyticFunction = parseAnalyticFunction(ac, chainMetadata, base.recordCursorSupportsRandomAccess(), executionContext);
+                } catch (Throwable th) {
                     Misc.free(base);
-                    throw SqlException.$(ast.position, "too many arguments");
-                }
-
-                ObjList<Function> partitionBy = null;
-                int psz = ac.getPartitionBy().size();
-                if (psz > 0) {
-                    partitionBy = new ObjList<>(psz);
-                    for (int j = 0; j < psz; j++) {
-                        partitionBy.add(
-                                functionParser.parseFunction(ac.getPartitionBy().getQuick(j), chainMetadata, executionContext)
-                        );
-                    }
-                }
-
-                final VirtualRecord partitionByRecord;
-                final RecordSink partitionBySink;
-
-                if (partitionBy != null) {
-                    partitionByRecord = new VirtualRecord(partitionBy);
-                    keyTypes.clear();
-                    final int partitionByCount = partitionBy.size();
-
-                    for (int j = 0; j < partitionByCount; j++) {
-                        keyTypes.add(partitionBy.getQuick(j).getType());
-                    }
-                    entityColumnFilter.of(partitionByCount);
-                    // create sink
-                    partitionBySink = RecordSinkFactory.getInstance(
-                            asm,
-                            keyTypes,
-                            entityColumnFilter,
-                            false
-                    );
-                } else {
-                    partitionByRecord = null;
-                    partitionBySink = null;
+                    throw th;
                 }
-
-
                 final int osz = ac.getOrderBy().size();
-                executionContext.configureAnalyticContext(
-                        partitionByRecord,
-                        partitionBySink,
-                        keyTypes,
-                        osz > 0,
-                        base.recordCursorSupportsRandomAccess()
-                );
-                final Function f;
-                try {
-                    f = functionParser.parseFunction(ast, baseMetadata, executionContext);
-                    if (!(f instanceof AnalyticFunction)) {
-                        Misc.free(base);
-                        throw SqlException.$(ast.position, "non-analytic function called in analytic context");
-                    }
-                } finally {
-                    executionContext.clearAnalyticContext();
-                }
-
-                AnalyticFunction analyticFunction = (AnalyticFunction) f;
 
                 // analyze order by clause on the current model and optimise out
                 // order by on analytic function if it matches the one on the model
@@ -3336,6 +3556,42 @@ public class SqlCodeGenerator implements Mutable, Closeable {
                 );
             }
 
+            if (
+                    configuration.isSqlParallelGroupByEnabled()
+                            && factory.supportPageFrameCursor()
+                            && GroupByUtils.isParallelismSupported(groupByFunctions)
+            ) {
+                final int workerCount = executionContext.getSharedWorkerCount();
+                final ObjList<ObjList<GroupByFunction>> perWorkerGroupByFunctions;
+                try {
+                    perWorkerGroupByFunctions = compilePerWorkerGroupByFunctions(
+                            model,
+                            metadata,
+                            executionContext,
+                            workerCount,
+                            false
+                    );
+                } catch (Throwable e) {
+                    Misc.freeObjList(recordFunctions);
+                    throw e;
+                }
+                return new AsyncGroupByRecordCursorFactory(
+                        asm,
+                        configuration,
+                        executionContext.getMessageBus(),
+                        factory,
+                        groupByMetadata,
+                        listColumnFilterA,
+                        keyTypes,
+                        valueTypes,
+                        groupByFunctions,
+                        perWorkerGroupByFunctions,
+                        recordFunctions,
+                        reduceTaskPool,
+                        workerCount
+                );
+            }
+
             return new io.questdb.griffin.engine.groupby.GroupByRecordCursorFactory(
                     asm,
                     configuration,
@@ -3345,7 +3601,8 @@ public class SqlCodeGenerator implements Mutable, Closeable {
                     valueTypes,
                     groupByMetadata,
                     groupByFunctions,
-                    recordFunctions
+                    recordFunctions,
+                    executionContext.getQueryMemoryBudget() > 0 && GroupByUtils.isOrderedMergeSupported(groupByFunctions)
             );
 
         } catch (Throwable e) {
@@ -3615,6 +3872,74 @@ public class SqlCodeGenerator implements Mutable, Closeable {
         }
     }
 
+    /**
+     * Attempts to build a factory that evaluates analytic functions in a single pass over the base cursor.
+     * This is possible when every analytic function is either unordered or ordered by the designated timestamp
+     * of the base in ascending order and all functions support streaming.
+     *
+     * @return streaming factory or null when the cached (sorting) factory has to be used
+     */
+    private RecordCursorFactory generateStreamingAnalytic(
+            QueryModel model,
+            RecordCursorFactory base,
+            SqlExecutionContext executionContext
+    ) throws SqlException {
+        final RecordMetadata baseMetadata = base.getMetadata();
+        final int timestampIndex = baseMetadata.getTimestampIndex();
+        final ObjList<QueryColumn> columns = model.getColumns();
+        final int columnCount = columns.size();
+
+        for (int i = 0; i < columnCount; i++) {
+            final QueryColumn qc = columns.getQuick(i);
+            if (qc instanceof AnalyticColumn) {
+                final AnalyticColumn ac = (AnalyticColumn) qc;
+                final int osz = ac.getOrderBy().size();
+                if (osz == 0) {
+                    continue;
+                }
+                if (osz > 1 || timestampIndex == -1 || base.hasDescendingOrder()) {
+                    return null;
+                }
+                final ExpressionNode node = ac.getOrderBy().getQuick(0);
+                if (node.type != LITERAL
+                        || ac.getOrderByDirection().getQuick(0) != ORDER_DIRECTION_ASCENDING
+                        || baseMetadata.getColumnIndexQuiet(node.token) != timestampIndex) {
+                    return null;
+                }
+            }
+        }
+
+        final GenericRecordMetadata metadata = new GenericRecordMetadata();
+        final ObjList<Function> functions = new ObjList<>(columnCount);
+        final ObjList<AnalyticFunction> analyticFunctions = new ObjList<>();
+        try {
+            for (int i = 0; i < columnCount; i++) {
+                final QueryColumn qc = columns.getQuick(i);
+                if (qc instanceof AnalyticColumn) {
+                    final AnalyticFunction f = parseAnalyticFunction((AnalyticColumn) qc, baseMetadata, base.recordCursorSupportsRandomAccess(), executionContext);
+                    functions.add(f);
+                    analyticFunctions.add(f);
+                    metadata.add(new TableColumnMetadata(Chars.toString(qc.getAlias()), f.getType(), false, 0, false, null));
+                    if (!f.isStreamingSupported()) {
+                        Misc.freeObjList(functions);
+                        return null;
+                    }
+                } else {
+                    final int columnIndex = baseMetadata.getColumnIndexQuiet(qc.getAst().token);
+                    functions.add(functionParser.parseFunction(qc.getAst(), baseMetadata, executionContext));
+                    metadata.add(AbstractRecordMetadata.copyOf(baseMetadata, columnIndex));
+                    if (columnIndex == timestampIndex) {
+                        metadata.setTimestampIndex(i);
+                    }
+                }
+            }
+            return new AnalyticRecordCursorFactory(metadata, base, functions, analyticFunctions);
+        } catch (Throwable th) {
+            Misc.freeObjList(functions);
+            throw th;
+        }
+    }
+
     private RecordCursorFactory generateSubQuery(QueryModel model, SqlExecutionContext executionContext) throws SqlException {
         assert model.getNestedModel() != null;
         return generateQuery(model.getNestedModel(), executionContext, true);
@@ -3780,7 +4105,7 @@ public class SqlCodeGenerator implements Mutable, Closeable {
                 return new EmptyTableRecordCursorFactory(myMeta);
             }
 
-            DataFrameCursorFactory dfcFactory;
+            AbstractDataFrameCursorFactory dfcFactory;
 
             if (latestByColumnCount > 0) {
                 Function f = compileFilter(intrinsicModel, myMeta, executionContext);
@@ -4024,7 +4349,7 @@ public class SqlCodeGenerator implements Mutable, Closeable {
                                     myMeta,
                                     dfcFactory,
                                     columnIndex,
-                                    getOrderByDirectionOrDefault(model, 0) == QueryModel.ORDER_DIRECTION_ASCENDING,
+                                    getOrderByDirectionOrDefault(model, 0) == ORDER_DIRECTION_ASCENDING,
                                     indexDirection,
                                     columnIndexes
                             );
@@ -4044,6 +4369,10 @@ public class SqlCodeGenerator implements Mutable, Closeable {
                 rowFactory = new DataFrameRowCursorFactory();
             }
 
+            if (intrinsicModel.filter != null && configuration.isPartitionStatsEnabled() && PartitionBy.isPartitioned(reader.getPartitionedBy())) {
+                dfcFactory.setPartitionPruner(generatePartitionPruner(intrinsicModel.filter, metadata));
+            }
+
             model.setWhereClause(intrinsicModel.filter);
             return new DataFrameRecordCursorFactory(
                     configuration,
@@ -4305,6 +4634,107 @@ public class SqlCodeGenerator implements Mutable, Closeable {
         }
     }
 
+    private AnalyticFunction parseAnalyticFunction(
+            AnalyticColumn ac,
+            RecordMetadata metadata,
+            boolean baseSupportsRandomAccess,
+            SqlExecutionContext executionContext
+    ) throws SqlException {
+        final ExpressionNode ast = ac.getAst();
+        // lag() and lead() take an offset, no analytic function takes more arguments
+        if (ast.paramCount > 2) {
+            throw SqlException.$(ast.position, "too many arguments");
+        }
+
+        ObjList<Function> partitionBy = null;
+        final int psz = ac.getPartitionBy().size();
+        if (psz > 0) {
+            partitionBy = new ObjList<>(psz);
+            try {
+                for (int j = 0; j < psz; j++) {
+                    partitionBy.add(
+                            functionParser.parseFunction(ac.getPartitionBy().getQuick(j), metadata, executionContext)
+                    );
+                }
+            } catch (Throwable th) {
+                Misc.freeObjList(partitionBy);
+                throw th;
+            }
+        }
+
+        final VirtualRecord partitionByRecord;
+        final RecordSink partitionBySink;
+        if (partitionBy != null) {
+            partitionByRecord = new VirtualRecord(partitionBy);
+            keyTypes.clear();
+            for (int j = 0; j < psz; j++) {
+                keyTypes.add(partitionBy.getQuick(j).getType());
+            }
+            entityColumnFilter.of(psz);
+            partitionBySink = RecordSinkFactory.getInstance(
+                    asm,
+                    keyTypes,
+                    entityColumnFilter,
+                    false
+            );
+        } else {
+            partitionByRecord = null;
+            partitionBySink = null;
+        }
+
+        // RANGE frame without ORDER BY includes all rows of the partition, offsets
+        // are only allowed when rows are ordered by timestamp
+        final int osz = ac.getOrderBy().size();
+        final int framingMode = ac.getFramingMode();
+        long rowsLo = ac.getRowsLo();
+        long rowsHi = ac.getRowsHi();
+        int timestampIndex = -1;
+        if (framingMode == AnalyticColumn.FRAMING_RANGE) {
+            if (osz == 0) {
+                rowsLo = AnalyticColumn.UNBOUNDED_PRECEDING;
+                rowsHi = AnalyticColumn.UNBOUNDED_FOLLOWING;
+            } else if (rowsLo != AnalyticColumn.UNBOUNDED_PRECEDING) {
+                final ExpressionNode node = ac.getOrderBy().getQuick(0);
+                final int index = node.type == LITERAL ? metadata.getColumnIndexQuiet(node.token) : -1;
+                if (osz > 1
+                        || index == -1
+                        || !ColumnType.isTimestamp(metadata.getColumnType(index))
+                        || ac.getOrderByDirection().getQuick(0) != ORDER_DIRECTION_ASCENDING) {
+                    Misc.freeObjList(partitionBy);
+                    throw SqlException.$(ast.position, "RANGE frame with offset requires ORDER BY on a single timestamp column in ascending order");
+                }
+                timestampIndex = index;
+            }
+        }
+
+        executionContext.configureAnalyticContext(
+                partitionByRecord,
+                partitionBySink,
+                keyTypes,
+                osz > 0,
+                baseSupportsRandomAccess,
+                framingMode,
+                rowsLo,
+                rowsHi,
+                timestampIndex
+        );
+        final Function f;
+        try {
+            f = functionParser.parseFunction(ast, metadata, executionContext);
+        } catch (Throwable th) {
+            Misc.freeObjList(partitionBy);
+            throw th;
+        } finally {
+            executionContext.clearAnalyticContext();
+        }
+        if (!(f instanceof AnalyticFunction)) {
+            Misc.free(f);
+            Misc.freeObjList(partitionBy);
+            throw SqlException.$(ast.position, "non-analytic function called in analytic context");
+        }
+        return (AnalyticFunction) f;
+    }
+
     private int prepareLatestByColumnIndexes(ObjList<ExpressionNode> latestBy, RecordMetadata myMeta) throws SqlException {
         keyTypes.clear();
         listColumnFilterA.clear();
@@ -28,14 +28,18 @@ import io.questdb.MessageBus;
 import io.questdb.PropServerConfiguration;
 import io.questdb.TelemetryOrigin;
 import io.questdb.cairo.*;
+import io.questdb.cairo.mv.MatViewDefinition;
+import io.questdb.cairo.mv.MatViewGraph;
 import io.questdb.cairo.pool.WriterPool;
 import io.questdb.cairo.sql.Record;
 import io.questdb.cairo.sql.*;
 import io.questdb.cairo.vm.Vm;
 import io.questdb.cairo.vm.api.MemoryMARW;
+import io.questdb.cutlass.parquet.ParquetWriter;
 import io.questdb.cutlass.text.*;
 import io.questdb.griffin.engine.functions.catalogue.*;
 import io.questdb.griffin.engine.ops.AlterOperationBuilder;
+import io.questdb.griffin.engine.ops.CopyExportFactory;
 import io.questdb.griffin.engine.ops.CopyFactory;
 import io.questdb.griffin.engine.ops.InsertOperationImpl;
 import io.questdb.griffin.engine.ops.UpdateOperation;
@@ -454,6 +458,21 @@ public class SqlCompiler implements Closeable {
                     } else {
                         throw SqlException.$(lexer.lastTokenPosition(), "'partition' expected");
                     }
+                } else if (SqlKeywords.isConvertKeyword(tok)) {
+                    tok = expectToken(lexer, "'partition'");
+                    if (SqlKeywords.isPartitionKeyword(tok)) {
+                        expectKeyword(lexer, "to");
+                        tok = expectToken(lexer, "'compressed' or 'native'");
+                        if (SqlKeywords.isCompressedKeyword(tok)) {
+                            return alterTableDropDetachOrAttachPartition(tableMetadata, tableToken, PartitionAction.CONVERT_TO_COMPRESSED, executionContext);
+                        } else if (SqlKeywords.isNativeKeyword(tok)) {
+                            return alterTableDropDetachOrAttachPartition(tableMetadata, tableToken, PartitionAction.CONVERT_TO_NATIVE, executionContext);
+                        } else {
+                            throw SqlException.$(lexer.lastTokenPosition(), "'compressed' or 'native' expected");
+                        }
+                    } else {
+                        throw SqlException.$(lexer.lastTokenPosition(), "'partition' expected");
+                    }
                 } else if (SqlKeywords.isAlterKeyword(tok)) {
                     tok = expectToken(lexer, "'column'");
                     if (SqlKeywords.isColumnKeyword(tok)) {
@@ -466,6 +485,19 @@ public class SqlCompiler implements Closeable {
                             tok = SqlUtil.fetchNext(lexer);
                             int indexValueCapacity = -1;
 
+                            if (tok != null && SqlKeywords.isTypeKeyword(tok)) {
+                                // alter table <table name> alter column <column name> add index type bloom
+                                tok = expectToken(lexer, "'bloom'");
+                                if (!SqlKeywords.isBloomKeyword(tok)) {
+                                    throw SqlException.$(lexer.lastTokenPosition(), "'bloom' expected");
+                                }
+                                tok = SqlUtil.fetchNext(lexer);
+                                if (tok != null && !isSemicolon(tok)) {
+                                    throw SqlException.$(lexer.lastTokenPosition(), "unexpected token [").put(tok).put("] while trying to add index");
+                                }
+                                return alterTableColumnAddBloomIndex(tableNamePosition, tableToken, columnNamePosition, columnName, tableMetadata);
+                            }
+
                             if (tok != null && (!isSemicolon(tok))) {
                                 if (!SqlKeywords.isCapacityKeyword(tok)) {
                                     throw SqlException.$(lexer.lastTokenPosition(), "'capacity' expected");
@@ -779,6 +811,32 @@ public class SqlCompiler implements Closeable {
         return compiledQuery.ofAlter(alterOperationBuilder.build());
     }
 
+    private CompiledQuery alterTableColumnAddBloomIndex(
+            int tableNamePosition,
+            TableToken tableToken,
+            int columnNamePosition,
+            CharSequence columnName,
+            TableRecordMetadata metadata
+    ) throws SqlException {
+        final int columnIndex = metadata.getColumnIndexQuiet(columnName);
+        if (columnIndex == -1) {
+            throw SqlException.invalidColumn(columnNamePosition, columnName);
+        }
+        if (!PartitionBloomFilter.isSupported(metadata.getColumnType(columnIndex))) {
+            throw SqlException.$(columnNamePosition, "bloom index is only supported for LONG, STRING and UUID columns");
+        }
+        return compiledQuery.ofAlter(
+                alterOperationBuilder
+                        .ofAddBloomIndex(
+                                tableNamePosition,
+                                tableToken,
+                                metadata.getTableId(),
+                                columnName
+                        )
+                        .build()
+        );
+    }
+
     private CompiledQuery alterTableColumnAddIndex(
             int tableNamePosition,
             TableToken tableToken,
@@ -931,8 +989,17 @@ public class SqlCompiler implements Closeable {
                     case PartitionAction.DETACH:
                         alterOperationBuilder = this.alterOperationBuilder.ofDetachPartition(pos, tableToken, tableMetadata.getTableId());
                         break;
+                    case PartitionAction.CONVERT_TO_COMPRESSED:
+                    case PartitionAction.CONVERT_TO_NATIVE:
+                        alterOperationBuilder = this.alterOperationBuilder.ofConvertPartition(
+                                pos,
+                                tableToken,
+                                tableMetadata.getTableId(),
+                                action == PartitionAction.CONVERT_TO_COMPRESSED
+                        );
+                        break;
                     default:
-                        throw SqlException.$(pos, "WHERE clause can only be used with command DROP PARTITION, or DETACH PARTITION");
+                        throw SqlException.$(pos, "WHERE clause can only be used with command DROP PARTITION, DETACH PARTITION or CONVERT PARTITION");
                 }
 
                 final int functionPosition = lexer.getPosition();
@@ -992,6 +1059,15 @@ public class SqlCompiler implements Closeable {
                 // attach
                 alterOperationBuilder = this.alterOperationBuilder.ofAttachPartition(pos, tableToken, tableMetadata.getTableId());
                 break;
+            case PartitionAction.CONVERT_TO_COMPRESSED:
+            case PartitionAction.CONVERT_TO_NATIVE:
+                alterOperationBuilder = this.alterOperationBuilder.ofConvertPartition(
+                        pos,
+                        tableToken,
+                        tableMetadata.getTableId(),
+                        action == PartitionAction.CONVERT_TO_COMPRESSED
+                );
+                break;
             default:
                 alterOperationBuilder = null;
                 assert false;
@@ -1255,6 +1331,36 @@ public class SqlCompiler implements Closeable {
         return compiledQuery.ofSet();
     }
 
+    private CopyExportFactory compileExport(CopyModel model, SqlExecutionContext executionContext) throws SqlException {
+        assert model.isExport();
+
+        final ExpressionNode tableNameNode = model.getTarget();
+        final TableToken tableToken = tableExistsOrFail(tableNameNode.position, GenericLexer.unquote(tableNameNode.token), executionContext);
+        final ExpressionNode dirNameNode = model.getFileName();
+        final CharSequence dirName = GenericLexer.assertNoDots(GenericLexer.unquote(dirNameNode.token), dirNameNode.position);
+
+        try (TableReader reader = executionContext.getReader(tableToken)) {
+            final TableReaderMetadata metadata = reader.getMetadata();
+            for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+                if (!ParquetWriter.isSupported(metadata.getColumnType(i))) {
+                    throw SqlException.$(tableNameNode.position, "column type is not supported by parquet export [column=")
+                            .put(metadata.getColumnName(i))
+                            .put(", type=").put(ColumnType.nameOf(metadata.getColumnType(i)))
+                            .put(']');
+                }
+            }
+            return new CopyExportFactory(
+                    configuration,
+                    tableToken,
+                    metadata.getTableId(),
+                    reader.getVersion(),
+                    GenericRecordMetadata.deepCopyOf(metadata),
+                    Chars.toString(dirName),
+                    model.getCompressionCodec() != -1 ? model.getCompressionCodec() : ParquetWriter.CODEC_UNCOMPRESSED
+            );
+        }
+    }
+
     private CopyFactory compileTextImport(CopyModel model) throws SqlException {
         assert !model.isCancel();
 
@@ -1587,6 +1693,35 @@ public class SqlCompiler implements Closeable {
         return rowCount;
     }
 
+    private void createMatView(CreateTableModel model, SqlExecutionContext executionContext, int position) throws SqlException {
+        final TableToken baseTableToken = executionContext.getTableTokenIfExists(model.getMatViewBaseTableName());
+        if (baseTableToken == null) {
+            throw SqlException.$(position, "base table does not exist [table=").put(model.getMatViewBaseTableName()).put(']');
+        }
+        if (!engine.isWalTable(baseTableToken)) {
+            throw SqlException.$(position, "materialized view base table must be a WAL table [table=").put(baseTableToken.getTableName()).put(']');
+        }
+
+        // base table commits made while the view is filled are recorded and caught up by a refresh
+        final MatViewGraph graph = engine.getMatViewGraph();
+        graph.trackBaseTable(baseTableToken.getTableName());
+        try {
+            createTableFromCursor(model, executionContext, position);
+
+            final TableToken viewToken = executionContext.getTableToken(model.getName().token);
+            final MatViewDefinition viewDefinition = new MatViewDefinition(
+                    viewToken,
+                    baseTableToken.getTableName(),
+                    model.getMatViewSamplingInterval(),
+                    model.getMatViewQuery()
+            );
+            viewDefinition.write(configuration.getFilesFacade(), mem, path.of(configuration.getRoot()).concat(viewToken));
+            graph.addView(viewDefinition);
+        } finally {
+            graph.untrackBaseTable(baseTableToken.getTableName());
+        }
+    }
+
     private CompiledQuery createTable(final ExecutionModel model, SqlExecutionContext executionContext) throws
             SqlException {
         final CreateTableModel createTableModel = (CreateTableModel) model;
@@ -1623,6 +1758,8 @@ public class SqlCompiler implements Closeable {
                 }
                 throw SqlException.$(name.position, "Could not create table, ").put(e.getFlyweightMessage());
             }
+        } else if (createTableModel.isMatView()) {
+            createMatView(createTableModel, executionContext, name.position);
         } else {
             createTableFromCursor(createTableModel, executionContext, name.position);
         }
@@ -1642,6 +1779,9 @@ public class SqlCompiler implements Closeable {
         ) {
             typeCast.clear();
             final RecordMetadata metadata = factory.getMetadata();
+            if (model.isMatView() && metadata.getTimestampIndex() == -1) {
+                throw SqlException.$(position, "materialized view query must select the designated timestamp");
+            }
             validateTableModelAndCreateTypeCast(model, metadata, typeCast);
             boolean keepLock = !model.isWalEnabled();
 
@@ -1733,21 +1873,23 @@ public class SqlCompiler implements Closeable {
     @NotNull
     private CompiledQuery executeCopy(SqlExecutionContext executionContext, CopyModel executionModel) throws SqlException {
         executionContext.getCairoSecurityContext().checkWritePermission();
-        if (!executionModel.isCancel() && Chars.equalsLowerCaseAscii(executionModel.getFileName().token, "stdin")) {
+        if (!executionModel.isCancel() && !executionModel.isExport() && Chars.equalsLowerCaseAscii(executionModel.getFileName().token, "stdin")) {
             // no-op implementation
             setupTextLoaderFromModel(executionModel);
             return compiledQuery.ofCopyRemote(textLoader);
         }
-        RecordCursorFactory copyFactory = executeCopy0(executionModel);
+        RecordCursorFactory copyFactory = executeCopy0(executionModel, executionContext);
         return compiledQuery.ofCopyLocal(copyFactory);
     }
 
     @Nullable
-    private RecordCursorFactory executeCopy0(CopyModel model) throws SqlException {
+    private RecordCursorFactory executeCopy0(CopyModel model, SqlExecutionContext executionContext) throws SqlException {
         try {
             if (model.isCancel()) {
                 cancelTextImport(model);
                 return null;
+            } else if (model.isExport()) {
+                return compileExport(model, executionContext);
             } else {
                 if (model.getTimestampColumnName() == null &&
                         ((model.getPartitionBy() != -1 && model.getPartitionBy() != PartitionBy.NONE))) {
@@ -2329,7 +2471,7 @@ public class SqlCompiler implements Closeable {
 
     private CompiledQuery snapshotDatabase(SqlExecutionContext executionContext) throws SqlException {
         executionContext.getCairoSecurityContext().checkWritePermission();
-        CharSequence tok = expectToken(lexer, "'prepare' or 'complete'");
+        CharSequence tok = expectToken(lexer, "'prepare', 'complete' or 'incremental'");
 
         if (Chars.equalsLowerCaseAscii(tok, "prepare")) {
             if (snapshotAgent == null) {
@@ -2347,7 +2489,23 @@ public class SqlCompiler implements Closeable {
             return compiledQuery.ofSnapshotComplete();
         }
 
-        throw SqlException.position(lexer.lastTokenPosition()).put("'prepare' or 'complete' expected");
+        if (Chars.equalsLowerCaseAscii(tok, "incremental")) {
+            if (snapshotAgent == null) {
+                throw SqlException.position(lexer.lastTokenPosition()).put("Snapshot agent is not configured. Try using different embedded API");
+            }
+            expectKeyword(lexer, "to");
+            tok = expectToken(lexer, "directory name");
+            if (tok.length() < 3 || !Chars.isQuoted(tok)) {
+                throw SqlException.position(lexer.lastTokenPosition()).put("directory name expected");
+            }
+            if (Chars.indexOf(tok, '.') != -1) {
+                throw SqlException.position(lexer.lastTokenPosition()).put("'.' is not allowed here");
+            }
+            snapshotAgent.incrementalSnapshot(executionContext, GenericLexer.unquote(tok));
+            return compiledQuery.ofSnapshotComplete();
+        }
+
+        throw SqlException.position(lexer.lastTokenPosition()).put("'prepare', 'complete' or 'incremental' expected");
     }
 
     private CompiledQuery sqlShow(SqlExecutionContext executionContext) throws SqlException {
@@ -2704,6 +2862,8 @@ public class SqlCompiler implements Closeable {
 
     public final static class PartitionAction {
         public static final int ATTACH = 2;
+        public static final int CONVERT_TO_COMPRESSED = 4;
+        public static final int CONVERT_TO_NATIVE = 5;
         public static final int DETACH = 3;
         public static final int DROP = 1;
     }
@@ -2782,6 +2942,11 @@ public class SqlCompiler implements Closeable {
             return timestampIndex;
         }
 
+        @Override
+        public boolean isDedupKey(int columnIndex) {
+            return model.isDedupKey(columnIndex);
+        }
+
         @Override
         public boolean isIndexed(int columnIndex) {
             return model.isIndexed(columnIndex);
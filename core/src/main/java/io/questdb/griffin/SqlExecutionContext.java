@@ -53,7 +53,11 @@ public interface SqlExecutionContext extends Closeable {
             @Nullable RecordSink partitionBySink,
             @Transient @Nullable ColumnTypes keyTypes,
             boolean isOrdered,
-            boolean baseSupportsRandomAccess
+            boolean baseSupportsRandomAccess,
+            int framingMode,
+            long rowsLo,
+            long rowsHi,
+            int timestampIndex
     );
 
     AnalyticContext getAnalyticContext();
@@ -96,6 +100,14 @@ public interface SqlExecutionContext extends Closeable {
 
     QueryFutureUpdateListener getQueryFutureUpdateListener();
 
+    /**
+     * Returns the amount of native memory in bytes a query may use for its hash tables
+     * before spilling them to disk, or 0 if there is no budget.
+     */
+    default long getQueryMemoryBudget() {
+        return getCairoEngine().getConfiguration().getSqlQueryMemoryBudget();
+    }
+
     Rnd getRandom();
 
     default TableReader getReader(TableToken tableName, long version) {
@@ -59,6 +59,7 @@ public class SqlExecutionContextImpl implements SqlExecutionContext {
     private int jitMode;
     private long now;
     private final MicrosecondClock nowClock = () -> now;
+    private long queryMemoryBudget = -1;
     private Rnd random;
     private long requestFd = -1;
 
@@ -92,14 +93,22 @@ public class SqlExecutionContextImpl implements SqlExecutionContext {
             @Nullable RecordSink partitionBySink,
             @Transient @Nullable ColumnTypes partitionByKeyTypes,
             boolean ordered,
-            boolean baseSupportsRandomAccess
+            boolean baseSupportsRandomAccess,
+            int framingMode,
+            long rowsLo,
+            long rowsHi,
+            int timestampIndex
     ) {
         analyticContext.of(
                 partitionByRecord,
                 partitionBySink,
                 partitionByKeyTypes,
                 ordered,
-                baseSupportsRandomAccess
+                baseSupportsRandomAccess,
+                framingMode,
+                rowsLo,
+                rowsHi,
+                timestampIndex
         );
     }
 
@@ -153,6 +162,11 @@ public class SqlExecutionContextImpl implements SqlExecutionContext {
         return QueryFutureUpdateListener.EMPTY;
     }
 
+    @Override
+    public long getQueryMemoryBudget() {
+        return queryMemoryBudget > -1 ? queryMemoryBudget : cairoConfiguration.getSqlQueryMemoryBudget();
+    }
+
     @Override
     public Rnd getRandom() {
         return random != null ? random : SharedRandom.getRandom(cairoConfiguration);
@@ -224,6 +238,14 @@ public class SqlExecutionContextImpl implements SqlExecutionContext {
         clock = nowClock;
     }
 
+    /**
+     * Overrides the configured query memory budget for the queries compiled and executed
+     * with this context, 0 disables spilling. Pass -1 to go back to the configured budget.
+     */
+    public void setQueryMemoryBudget(long queryMemoryBudget) {
+        this.queryMemoryBudget = queryMemoryBudget;
+    }
+
     @Override
     public void setRandom(Rnd rnd) {
         this.random = rnd;
@@ -28,9 +28,11 @@ import io.questdb.cairo.CairoConfiguration;
 import io.questdb.cairo.ColumnType;
 import io.questdb.cairo.PartitionBy;
 import io.questdb.cairo.TableUtils;
+import io.questdb.cutlass.parquet.ParquetWriter;
 import io.questdb.cutlass.text.Atomicity;
 import io.questdb.griffin.model.*;
 import io.questdb.std.*;
+import io.questdb.std.datetime.microtime.Timestamps;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -111,6 +113,32 @@ public final class SqlParser {
         return SqlException.unexpectedToken(lexer.lastTokenPosition(), token);
     }
 
+    /**
+     * Returns number of microseconds in the RANGE frame offset unit, or 0 when the token
+     * is not a time unit. Both singular and plural unit names are accepted.
+     */
+    private static long frameUnitMicros(CharSequence tok) {
+        if (isMicrosecondsKeyword(tok) || Chars.equalsLowerCaseAscii(tok, "microsecond")) {
+            return 1;
+        }
+        if (isMillisecondsKeyword(tok) || Chars.equalsLowerCaseAscii(tok, "millisecond")) {
+            return Timestamps.MILLI_MICROS;
+        }
+        if (isSecondKeyword(tok) || Chars.equalsLowerCaseAscii(tok, "seconds")) {
+            return Timestamps.SECOND_MICROS;
+        }
+        if (isMinuteKeyword(tok) || Chars.equalsLowerCaseAscii(tok, "minutes")) {
+            return Timestamps.MINUTE_MICROS;
+        }
+        if (isHourKeyword(tok) || Chars.equalsLowerCaseAscii(tok, "hours")) {
+            return Timestamps.HOUR_MICROS;
+        }
+        if (isDayKeyword(tok) || Chars.equalsLowerCaseAscii(tok, "days")) {
+            return Timestamps.DAY_MICROS;
+        }
+        return 0;
+    }
+
     private static boolean isValidSampleByPeriodLetter(CharSequence token) {
         if (token.length() != 1) return false;
         switch (token.charAt(0)) {
@@ -346,6 +374,90 @@ public final class SqlParser {
         return tok;
     }
 
+    private void parseAnalyticFrame(GenericLexer lexer, AnalyticColumn col, CharSequence tok) throws SqlException {
+        final int framingMode = isRowsKeyword(tok) ? AnalyticColumn.FRAMING_ROWS : AnalyticColumn.FRAMING_RANGE;
+        final int framingPosition = lexer.lastTokenPosition();
+        final long rowsLo;
+        final long rowsHi;
+
+        tok = tok(lexer, "'between', 'unbounded', 'current' or offset");
+        if (isBetweenKeyword(tok)) {
+            rowsLo = parseAnalyticFrameBound(lexer, framingMode, tok(lexer, "'unbounded', 'current' or offset"), true);
+            expectTok(lexer, "and");
+            tok = tok(lexer, "'unbounded' or 'current'");
+            final int hiPosition = lexer.lastTokenPosition();
+            rowsHi = parseAnalyticFrameBound(lexer, framingMode, tok, false);
+            if (rowsHi != 0 && rowsHi != AnalyticColumn.UNBOUNDED_FOLLOWING) {
+                throw SqlException.$(hiPosition, "frame end must be CURRENT ROW or UNBOUNDED FOLLOWING");
+            }
+            if (rowsHi == AnalyticColumn.UNBOUNDED_FOLLOWING && rowsLo != AnalyticColumn.UNBOUNDED_PRECEDING) {
+                throw SqlException.$(hiPosition, "UNBOUNDED FOLLOWING frame end requires UNBOUNDED PRECEDING frame start");
+            }
+        } else {
+            rowsLo = parseAnalyticFrameBound(lexer, framingMode, tok, true);
+            rowsHi = 0;
+        }
+
+        if (framingMode == AnalyticColumn.FRAMING_RANGE && rowsLo != AnalyticColumn.UNBOUNDED_PRECEDING && rowsLo != 0 && col.getOrderBy().size() == 0) {
+            throw SqlException.$(framingPosition, "RANGE frame with offset requires ORDER BY");
+        }
+        col.setFrame(framingMode, rowsLo, rowsHi);
+    }
+
+    private long parseAnalyticFrameBound(GenericLexer lexer, int framingMode, CharSequence tok, boolean frameStart) throws SqlException {
+        if (isUnboundedKeyword(tok)) {
+            tok = tok(lexer, frameStart ? "'preceding'" : "'following'");
+            if (frameStart && isPrecedingKeyword(tok)) {
+                return AnalyticColumn.UNBOUNDED_PRECEDING;
+            }
+            if (!frameStart && isFollowingKeyword(tok)) {
+                return AnalyticColumn.UNBOUNDED_FOLLOWING;
+            }
+            throw SqlException.$(lexer.lastTokenPosition(), frameStart ? "'preceding' expected" : "'following' expected");
+        }
+
+        if (isCurrentKeyword(tok)) {
+            expectTok(lexer, "row");
+            return 0;
+        }
+
+        final int offsetPosition = lexer.lastTokenPosition();
+        long offset;
+        try {
+            offset = Numbers.parseLong(tok);
+        } catch (NumericException e) {
+            throw SqlException.$(offsetPosition, "'unbounded', 'current' or non-negative integer offset expected");
+        }
+        if (offset < 0) {
+            throw SqlException.$(offsetPosition, "non-negative integer offset expected");
+        }
+
+        tok = tok(lexer, "'preceding' or 'following'");
+        if (framingMode == AnalyticColumn.FRAMING_RANGE) {
+            // RANGE offsets are timestamp deltas, optionally followed by a time unit
+            final long unitMicros = frameUnitMicros(tok);
+            if (unitMicros > 0) {
+                if (offset > Long.MAX_VALUE / unitMicros) {
+                    throw SqlException.$(offsetPosition, "frame offset is too large");
+                }
+                offset *= unitMicros;
+                tok = tok(lexer, "'preceding' or 'following'");
+            }
+        }
+
+        if (isPrecedingKeyword(tok)) {
+            return -offset;
+        }
+        if (isFollowingKeyword(tok)) {
+            if (frameStart) {
+                throw SqlException.$(lexer.lastTokenPosition(), "frame start must be UNBOUNDED PRECEDING, CURRENT ROW or offset PRECEDING");
+            }
+            // frame end is validated by the caller
+            return offset;
+        }
+        throw SqlException.$(lexer.lastTokenPosition(), "'preceding' or 'following' expected");
+    }
+
     private QueryModel parseAsSubQueryAndExpectClosingBrace(GenericLexer lexer, LowerCaseCharSequenceObjHashMap<WithClauseModel> withClauses) throws SqlException {
         final QueryModel model = parseAsSubQuery(lexer, withClauses);
         expectTok(lexer, ')');
@@ -439,10 +551,137 @@ public final class SqlParser {
             }
             return model;
         }
-        throw SqlException.$(lexer.lastTokenPosition(), "'from' expected");
+
+        if (isToKeyword(tok)) {
+            final ExpressionNode dirName = expectExpr(lexer);
+            if (dirName.token.length() < 3 && Chars.startsWith(dirName.token, '\'')) {
+                throw SqlException.$(dirName.position, "directory name expected");
+            }
+
+            CopyModel model = copyModelPool.next();
+            model.setExport(true);
+            model.setTarget(target);
+            model.setFileName(dirName);
+
+            tok = tok(lexer, "'with'");
+            if (!isWithKeyword(tok)) {
+                throw SqlException.$(lexer.lastTokenPosition(), "'with' expected");
+            }
+
+            boolean hasFormat = false;
+            tok = tok(lexer, "copy option");
+            while (tok != null && !isSemicolon(tok)) {
+                if (isFormatKeyword(tok)) {
+                    tok = tok(lexer, "'parquet'");
+                    if (!isParquetKeyword(tok)) {
+                        throw SqlException.$(lexer.lastTokenPosition(), "'parquet' expected");
+                    }
+                    hasFormat = true;
+                } else if (isCompressionKeyword(tok)) {
+                    tok = tok(lexer, "'gzip' or 'uncompressed'");
+                    if (Chars.equalsIgnoreCase(tok, "gzip")) {
+                        model.setCompressionCodec(ParquetWriter.CODEC_GZIP);
+                    } else if (Chars.equalsIgnoreCase(tok, "uncompressed")) {
+                        model.setCompressionCodec(ParquetWriter.CODEC_UNCOMPRESSED);
+                    } else {
+                        throw SqlException.$(lexer.lastTokenPosition(), "'gzip' or 'uncompressed' expected");
+                    }
+                } else {
+                    throw SqlException.$(lexer.lastTokenPosition(), "unexpected option");
+                }
+                tok = optTok(lexer);
+            }
+
+            if (!hasFormat) {
+                throw SqlException.$(lexer.lastTokenPosition(), "'format parquet' expected");
+            }
+            return model;
+        }
+        throw SqlException.$(lexer.lastTokenPosition(), "'from' or 'to' expected");
+    }
+
+    private ExecutionModel parseCreateMatView(GenericLexer lexer, SqlExecutionContext executionContext) throws SqlException {
+        final CreateTableModel model = createTableModelPool.next();
+        final CharSequence viewName;
+        CharSequence tok = tok(lexer, "view name or 'if'");
+        if (SqlKeywords.isIfKeyword(tok)) {
+            if (SqlKeywords.isNotKeyword(tok(lexer, "'not'")) && SqlKeywords.isExistsKeyword(tok(lexer, "'exists'"))) {
+                model.setIgnoreIfExists(true);
+                viewName = tok(lexer, "view name");
+            } else {
+                throw SqlException.$(lexer.lastTokenPosition(), "'if not exists' expected");
+            }
+        } else {
+            viewName = tok;
+        }
+        model.setName(nextLiteral(GenericLexer.assertNoDotsAndSlashes(GenericLexer.unquote(viewName), lexer.lastTokenPosition()), lexer.lastTokenPosition()));
+
+        expectTok(lexer, "as");
+        expectTok(lexer, '(');
+        final int queryStart = lexer.getPosition();
+        final QueryModel queryModel = parseDml(lexer, null, queryStart);
+        expectTok(lexer, ')');
+        final String queryText = Chars.toString(lexer.getContent().subSequence(queryStart, lexer.lastTokenPosition())).trim();
+
+        // views are refreshed one base table commit at a time, so the query must be
+        // a calendar aligned SAMPLE BY over a single table without gaps to fill
+        final QueryModel fromModel = queryModel.getNestedModel();
+        if (queryModel.getUnionModel() != null || fromModel == null || fromModel.getNestedModel() != null
+                || fromModel.getTableNameExpr() == null || fromModel.getTableNameExpr().type != ExpressionNode.LITERAL
+                || fromModel.getJoinModels().size() > 1) {
+            throw SqlException.$(queryStart, "materialized view query must select from a single table");
+        }
+        final ExpressionNode sampleBy = fromModel.getSampleBy();
+        if (sampleBy == null || fromModel.getSampleByUnit() != null) {
+            throw SqlException.$(queryStart, "materialized view query must use SAMPLE BY with a constant interval");
+        }
+        if (fromModel.getSampleByFill().size() > 0) {
+            throw SqlException.$(sampleBy.position, "FILL is not supported in materialized views");
+        }
+        if (fromModel.getSampleByTimezoneName() != null || fromModel.getSampleByOffset() != ZERO_OFFSET) {
+            throw SqlException.$(sampleBy.position, "materialized view query must use ALIGN TO CALENDAR without time zone or offset");
+        }
+        final String baseTableName = Chars.toString(fromModel.getTableName());
+        final String samplingInterval = Chars.toString(sampleBy.token);
+
+        final QueryModel optimisedModel = optimiser.optimise(queryModel, executionContext);
+        final ObjList<QueryColumn> columns = optimisedModel.getBottomUpColumns();
+        for (int i = 0, n = columns.size(); i < n; i++) {
+            model.addColumn(columns.getQuick(i).getName(), -1, configuration.getDefaultSymbolCapacity());
+        }
+        model.setQueryModel(optimisedModel);
+        model.setMatView(baseTableName, samplingInterval, queryText);
+
+        tok = optTok(lexer);
+        ExpressionNode partitionBy = parseCreateTablePartition(lexer, tok);
+        if (partitionBy != null) {
+            final int partitionByValue = PartitionBy.fromString(partitionBy.token);
+            if (partitionByValue == -1 || !PartitionBy.isPartitioned(partitionByValue)) {
+                throw SqlException.$(partitionBy.position, "'HOUR', 'DAY', 'MONTH' or 'YEAR' expected");
+            }
+            tok = optTok(lexer);
+        } else {
+            partitionBy = nextLiteral("DAY", lexer.lastTokenPosition());
+        }
+        model.setPartitionBy(partitionBy);
+        model.setMaxUncommittedRows(configuration.getMaxUncommittedRows());
+        model.setO3MaxLag(configuration.getO3MaxLag());
+        // views are written by the refresh job directly, they never have their own WAL
+        model.setWalEnabled(false);
+
+        if (tok == null || Chars.equals(tok, ';')) {
+            return model;
+        }
+        throw errUnexpected(lexer, tok);
     }
 
     private ExecutionModel parseCreateStatement(GenericLexer lexer, SqlExecutionContext executionContext) throws SqlException {
+        CharSequence tok = tok(lexer, "'table'");
+        if (isMaterializedKeyword(tok)) {
+            expectTok(lexer, "view");
+            return parseCreateMatView(lexer, executionContext);
+        }
+        lexer.unparseLast();
         expectTok(lexer, "table");
         return parseCreateTable(lexer, executionContext);
     }
@@ -540,6 +779,11 @@ public final class SqlParser {
                 }
             }
 
+            if (tok != null && isDedupKeyword(tok)) {
+                parseCreateTableDedupKeys(lexer, model);
+                tok = optTok(lexer);
+            }
+
             if (tok != null && isWithKeyword(tok)) {
                 ExpressionNode expr;
                 while ((expr = expr(lexer, (QueryModel) null)) != null) {
@@ -725,6 +969,26 @@ public final class SqlParser {
         }
     }
 
+    private void parseCreateTableDedupKeys(GenericLexer lexer, CreateTableModel model) throws SqlException {
+        final int dedupPosition = lexer.lastTokenPosition();
+        expectTok(lexer, "upsert");
+        expectTok(lexer, "keys");
+        expectTok(lexer, '(');
+        boolean timestampKey = false;
+        CharSequence tok;
+        do {
+            final CharSequence columnName = expectLiteral(lexer).token;
+            final int columnIndex = getCreateTableColumnIndex(model, columnName, lexer.lastTokenPosition());
+            timestampKey |= columnIndex == model.getTimestampIndex();
+            model.setDedupKey(columnIndex);
+            tok = tok(lexer, "',' or ')'");
+        } while (Chars.equals(tok, ','));
+        expectTok(tok, lexer.lastTokenPosition(), ')');
+        if (!timestampKey) {
+            throw SqlException.$(dedupPosition, "deduplication keys must include the designated timestamp column");
+        }
+    }
+
     private void parseCreateTableIndexDef(GenericLexer lexer, CreateTableModel model) throws SqlException {
         expectTok(lexer, '(');
         final CharSequence columnName = expectLiteral(lexer).token;
@@ -1609,6 +1873,10 @@ public final class SqlParser {
                         }
                     } while (Chars.equals(tok, ','));
                 }
+                if (isRowsKeyword(tok) || isRangeKeyword(tok)) {
+                    parseAnalyticFrame(lexer, (AnalyticColumn) col, tok);
+                    tok = tokIncludingLocalBrace(lexer, "')'");
+                }
                 expectTok(tok, lexer.lastTokenPosition(), ')');
                 tok = optTok(lexer);
 
@@ -31,13 +31,41 @@ import io.questdb.cairo.sql.VirtualRecord;
 public interface AnalyticContext {
     boolean baseSupportsRandomAccess();
 
+    /**
+     * @return {@link io.questdb.griffin.model.AnalyticColumn#FRAMING_ROWS} or {@link io.questdb.griffin.model.AnalyticColumn#FRAMING_RANGE}
+     */
+    int getFramingMode();
+
     ColumnTypes getPartitionByKeyTypes();
 
     VirtualRecord getPartitionByRecord();
 
     RecordSink getPartitionBySink();
 
+    /**
+     * @return frame end relative to the current row, 0 for CURRENT ROW and Long.MAX_VALUE for UNBOUNDED FOLLOWING
+     */
+    long getRowsHi();
+
+    /**
+     * @return frame start relative to the current row, negative for offset PRECEDING and Long.MIN_VALUE for UNBOUNDED PRECEDING
+     */
+    long getRowsLo();
+
+    /**
+     * @return index of the ORDER BY timestamp column used by RANGE frames with offset, -1 otherwise
+     */
+    int getTimestampIndex();
+
     boolean isEmpty();
 
+    /**
+     * Group by aggregates act as window functions only over ordered windows or ROWS frames.
+     * Over a bare partition they are still rejected as non-analytic functions.
+     *
+     * @return true if the window has an ORDER BY or a ROWS frame
+     */
+    boolean isFramed();
+
     boolean isOrdered();
 }
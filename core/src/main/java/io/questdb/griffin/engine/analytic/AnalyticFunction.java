@@ -37,11 +37,37 @@ public interface AnalyticFunction extends Function {
     int THREE_PASS = 3;
     int TWO_PASS = 2;
 
+    /**
+     * Computes function value for the next record of the streamed input. Records must arrive in the
+     * order of the function's ORDER BY clause; the value is then available via the getXXX() methods.
+     * Only called on functions that return true from {@link #isStreamingSupported()}.
+     *
+     * @param record current record
+     */
+    default void computeNext(Record record) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @return number of passes over cached records the function needs, {@link #STREAM} or {@link #TWO_PASS}
+     */
+    default int getPassCount() {
+        return STREAM;
+    }
+
     void initRecordComparator(RecordComparatorCompiler recordComparatorCompiler, ArrayColumnTypes chainTypes, IntList order);
 
+    /**
+     * @return true when the function can be evaluated in a single pass over ordered input
+     * via {@link #computeNext(Record)}, without caching the records
+     */
+    default boolean isStreamingSupported() {
+        return false;
+    }
+
     void pass1(Record record, long recordOffset, AnalyticSPI spi);
 
-    void pass2(Record record);
+    void pass2(Record record, long recordOffset, AnalyticSPI spi);
 
     void preparePass2(RecordCursor cursor);
 
@@ -0,0 +1,165 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.analytic;
+
+import io.questdb.cairo.AbstractRecordCursorFactory;
+import io.questdb.cairo.Reopenable;
+import io.questdb.cairo.sql.Function;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.cairo.sql.RecordMetadata;
+import io.questdb.griffin.PlanSink;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.engine.AbstractVirtualFunctionRecordCursor;
+import io.questdb.std.Misc;
+import io.questdb.std.ObjList;
+
+/**
+ * Evaluates analytic functions in a single pass over the base cursor. Used when the base cursor
+ * already returns records in the order required by all functions, e.g. ordered by the designated
+ * timestamp, and all functions support streaming. Unlike {@link CachedAnalyticRecordCursorFactory}
+ * it neither copies the records into a record chain nor sorts them.
+ */
+public class AnalyticRecordCursorFactory extends AbstractRecordCursorFactory {
+    private final ObjList<AnalyticFunction> analyticFunctions;
+    private final RecordCursorFactory base;
+    private final AnalyticRecordCursor cursor;
+    private final ObjList<Function> functions;
+
+    public AnalyticRecordCursorFactory(
+            RecordMetadata metadata,
+            RecordCursorFactory base,
+            ObjList<Function> functions,
+            ObjList<AnalyticFunction> analyticFunctions
+    ) {
+        super(metadata);
+        this.base = base;
+        this.functions = functions;
+        this.analyticFunctions = analyticFunctions;
+        this.cursor = new AnalyticRecordCursor(functions, analyticFunctions);
+    }
+
+    @Override
+    public RecordCursorFactory getBaseFactory() {
+        return base;
+    }
+
+    @Override
+    public RecordCursor getCursor(SqlExecutionContext executionContext) throws SqlException {
+        final RecordCursor baseCursor = base.getCursor(executionContext);
+        try {
+            cursor.reopen();
+            Function.init(functions, baseCursor, executionContext);
+            cursor.of(baseCursor);
+            return cursor;
+        } catch (Throwable th) {
+            baseCursor.close();
+            throw th;
+        }
+    }
+
+    @Override
+    public boolean hasDescendingOrder() {
+        return base.hasDescendingOrder();
+    }
+
+    @Override
+    public boolean recordCursorSupportsRandomAccess() {
+        return false;
+    }
+
+    @Override
+    public void toPlan(PlanSink sink) {
+        sink.type("Analytic");
+        sink.optAttr("functions", analyticFunctions, true);
+        sink.child(base);
+    }
+
+    @Override
+    public boolean usesCompiledFilter() {
+        return base.usesCompiledFilter();
+    }
+
+    @Override
+    protected void _close() {
+        Misc.freeObjList(functions);
+        Misc.free(base);
+    }
+
+    private static class AnalyticRecordCursor extends AbstractVirtualFunctionRecordCursor {
+        private final ObjList<AnalyticFunction> analyticFunctions;
+        private Record baseRecord;
+        private boolean isOpen;
+
+        public AnalyticRecordCursor(ObjList<Function> functions, ObjList<AnalyticFunction> analyticFunctions) {
+            super(functions, false);
+            this.analyticFunctions = analyticFunctions;
+            this.isOpen = true;
+        }
+
+        @Override
+        public void close() {
+            if (isOpen) {
+                super.close();
+                // releases memory held by the function state
+                for (int i = 0, n = analyticFunctions.size(); i < n; i++) {
+                    analyticFunctions.getQuick(i).reset();
+                }
+                isOpen = false;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (baseCursor.hasNext()) {
+                for (int i = 0, n = analyticFunctions.size(); i < n; i++) {
+                    analyticFunctions.getQuick(i).computeNext(baseRecord);
+                }
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void of(RecordCursor cursor) {
+            super.of(cursor);
+            baseRecord = cursor.getRecord();
+        }
+
+        private void reopen() {
+            if (!isOpen) {
+                for (int i = 0, n = analyticFunctions.size(); i < n; i++) {
+                    final AnalyticFunction function = analyticFunctions.getQuick(i);
+                    if (function instanceof Reopenable) {
+                        ((Reopenable) function).reopen();
+                    }
+                }
+                isOpen = true;
+            }
+        }
+    }
+}
@@ -43,10 +43,12 @@ import org.jetbrains.annotations.Nullable;
 public class CachedAnalyticRecordCursorFactory extends AbstractRecordCursorFactory {
     private final ObjList<AnalyticFunction> allFunctions;
     private final RecordCursorFactory base;
+    private final IntList columnIndexes;
     private final ObjList<RecordComparator> comparators;
     private final CachedAnalyticRecordCursor cursor;
     private final ObjList<ObjList<AnalyticFunction>> orderedFunctions;
     private final int orderedGroupCount;
+    private final ObjList<AnalyticFunction> twoPassFunctions;
     @Nullable
     private final ObjList<AnalyticFunction> unorderedFunctions;
     private boolean closed = false;
@@ -64,6 +66,7 @@ public class CachedAnalyticRecordCursorFactory extends AbstractRecordCursorFacto
     ) {
         super(metadata);
         this.base = base;
+        this.columnIndexes = columnIndexes;
         this.orderedGroupCount = comparators.size();
         assert orderedGroupCount == orderedFunctions.size();
         this.orderedFunctions = orderedFunctions;
@@ -98,9 +101,23 @@ public class CachedAnalyticRecordCursorFactory extends AbstractRecordCursorFacto
             allFunctions.addAll(unorderedFunctions);
         }
 
+        this.twoPassFunctions = new ObjList<>();
+        for (int i = 0, n = allFunctions.size(); i < n; i++) {
+            final AnalyticFunction function = allFunctions.getQuick(i);
+            if (function.getPassCount() == AnalyticFunction.TWO_PASS) {
+                twoPassFunctions.add(function);
+            }
+        }
+
         this.unorderedFunctions = unorderedFunctions;
     }
 
+    @Override
+    public String getBaseColumnName(int idx) {
+        // functions address columns of the record chain
+        return base.getMetadata().getColumnName(columnIndexes.getQuick(idx));
+    }
+
     @Override
     public RecordCursorFactory getBaseFactory() {
         return base;
@@ -121,7 +138,7 @@ public class CachedAnalyticRecordCursorFactory extends AbstractRecordCursorFacto
     @Override
     public void toPlan(PlanSink sink) {
         sink.type("CachedAnalytic");
-        sink.optAttr("functions", allFunctions);
+        sink.optAttr("functions", allFunctions, true);
         sink.child(base);
     }
 
@@ -273,6 +290,18 @@ public class CachedAnalyticRecordCursorFactory extends AbstractRecordCursorFacto
                 }
             }
 
+            // run pass2 for functions that need to see the whole partition before
+            // they can produce values, e.g. aggregates over UNBOUNDED FOLLOWING frame
+            for (int j = 0, n = twoPassFunctions.size(); j < n; j++) {
+                final AnalyticFunction f = twoPassFunctions.getQuick(j);
+                f.preparePass2(recordChain);
+                recordChain.toTop();
+                while (recordChain.hasNext()) {
+                    circuitBreaker.statefulThrowExceptionIfTripped();
+                    f.pass2(chainRecord, chainRecord.getRowId(), recordChain);
+                }
+            }
+
             recordChain.toTop();
         }
 
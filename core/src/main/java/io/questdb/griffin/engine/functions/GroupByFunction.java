@@ -54,10 +54,43 @@ public interface GroupByFunction extends Function, Mutable {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Returns true if partial aggregates computed over consecutive row ranges can be
+     * combined with {@link #merge(MapValue, MapValue)} when merged in row order, i.e.
+     * when the source value is always built from the rows following the rows of the
+     * destination value. Functions that support parallelism in any order, support
+     * ordered merge, too.
+     */
+    default boolean isOrderedMergeSupported() {
+        return isParallelismSupported();
+    }
+
+    /**
+     * Returns true if the function supports parallel execution, i.e. partial
+     * aggregates computed by independent instances of the function over
+     * disjoint sets of rows can be combined with {@link #merge(MapValue, MapValue)}.
+     */
+    default boolean isParallelismSupported() {
+        return false;
+    }
+
     default boolean isScalar() {
         return true;
     }
 
+    /**
+     * Merges a partial aggregate from the source map value into the destination
+     * map value. Both values must have the layout defined by {@link #pushValueTypes(ArrayColumnTypes)}.
+     * Called only when {@link #isParallelismSupported()} or {@link #isOrderedMergeSupported()}
+     * returns true.
+     *
+     * @param destValue map value that accumulates the result
+     * @param srcValue  map value holding a partial aggregate
+     */
+    default void merge(MapValue destValue, MapValue srcValue) {
+        throw new UnsupportedOperationException();
+    }
+
     void pushValueTypes(ArrayColumnTypes columnTypes);
 
     default void setByte(MapValue mapValue, byte value) {
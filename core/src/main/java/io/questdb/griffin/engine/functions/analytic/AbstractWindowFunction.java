@@ -0,0 +1,402 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.functions.analytic;
+
+import io.questdb.cairo.ArrayColumnTypes;
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.ColumnType;
+import io.questdb.cairo.RecordSink;
+import io.questdb.cairo.Reopenable;
+import io.questdb.cairo.map.Map;
+import io.questdb.cairo.map.MapFactory;
+import io.questdb.cairo.map.MapKey;
+import io.questdb.cairo.map.MapValue;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.*;
+import io.questdb.cairo.vm.Vm;
+import io.questdb.cairo.vm.api.MemoryCARW;
+import io.questdb.griffin.PlanSink;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.engine.analytic.AnalyticContext;
+import io.questdb.griffin.engine.analytic.AnalyticFunction;
+import io.questdb.griffin.engine.functions.DoubleFunction;
+import io.questdb.griffin.engine.groupby.SimpleMapValue;
+import io.questdb.griffin.engine.orderby.RecordComparatorCompiler;
+import io.questdb.griffin.model.AnalyticColumn;
+import io.questdb.std.*;
+
+/**
+ * Base class for window functions over ROWS and RANGE frames. Values are computed incrementally,
+ * one record at a time, as records arrive in the order of the function's ORDER BY clause. The same
+ * code serves single-pass streaming evaluation and pass1 of the cached analytic factory.
+ * <p>
+ * Per-partition state lives in a map value. Functions that need the records inside the frame keep
+ * (key, value) pairs in a ring buffer, where key is the row number within the partition for ROWS
+ * frames and the timestamp for RANGE frames. Ring buffers of all partitions are allocated in a single
+ * native memory block and double in size when full, which keeps sliding frames at amortized O(1)
+ * cost per record.
+ */
+public abstract class AbstractWindowFunction extends DoubleFunction implements ScalarFunction, AnalyticFunction, Reopenable {
+    // map value layout, subclasses append their own slots starting from FIRST_CUSTOM_SLOT
+    protected static final int BUFFER_CAPACITY_SLOT = 1;
+    protected static final int BUFFER_OFFSET_SLOT = 0;
+    protected static final int BUFFER_SIZE_SLOT = 3;
+    protected static final int BUFFER_START_SLOT = 2;
+    protected static final int ROW_COUNT_SLOT = 4;
+    protected static final int VALUE_SLOT = 5;
+    protected static final int FIRST_CUSTOM_SLOT = VALUE_SLOT + 1;
+    private static final long BUFFER_ENTRY_SIZE = 2 * Long.BYTES;
+    private static final long BUFFER_INITIAL_CAPACITY = 16;
+    protected final Function arg;
+    protected final int framingMode;
+    protected final long rowsHi;
+    protected final long rowsLo;
+    private final MemoryCARW buffer;
+    private final Map map;
+    private final String name;
+    private final VirtualRecord partitionByRecord;
+    private final RecordSink partitionBySink;
+    private final SimpleMapValue singleState;
+    private final int timestampIndex;
+    protected int columnIndex;
+    private double value = Double.NaN;
+
+    protected AbstractWindowFunction(
+            String name,
+            CairoConfiguration configuration,
+            AnalyticContext analyticContext,
+            Function arg,
+            @Transient ArrayColumnTypes stateTypes
+    ) {
+        this.name = name;
+        this.arg = arg;
+        this.framingMode = analyticContext.getFramingMode();
+        this.rowsLo = analyticContext.getRowsLo();
+        this.rowsHi = analyticContext.getRowsHi();
+        this.timestampIndex = analyticContext.getTimestampIndex();
+        this.partitionByRecord = analyticContext.getPartitionByRecord();
+        if (partitionByRecord != null) {
+            this.partitionBySink = analyticContext.getPartitionBySink();
+            this.map = MapFactory.createMap(configuration, analyticContext.getPartitionByKeyTypes(), stateTypes);
+            this.singleState = null;
+        } else {
+            this.partitionBySink = null;
+            this.map = null;
+            this.singleState = new SimpleMapValue(stateTypes.getColumnCount());
+            initState(singleState);
+        }
+        this.buffer = Vm.getCARWInstance(
+                configuration.getSqlAnalyticStorePageSize(),
+                configuration.getSqlAnalyticStoreMaxPages(),
+                MemoryTag.NATIVE_DEFAULT
+        );
+    }
+
+    /**
+     * Creates map value types for the function state: common slots followed by the given custom slots.
+     */
+    protected static ArrayColumnTypes stateTypes(int... customTypes) {
+        final ArrayColumnTypes types = new ArrayColumnTypes();
+        for (int i = 0; i < VALUE_SLOT; i++) {
+            types.add(ColumnType.LONG);
+        }
+        types.add(ColumnType.DOUBLE);
+        for (int i = 0; i < customTypes.length; i++) {
+            types.add(customTypes[i]);
+        }
+        return types;
+    }
+
+    @Override
+    public void close() {
+        Misc.free(arg);
+        Misc.free(map);
+        Misc.free(buffer);
+        if (partitionByRecord != null) {
+            Misc.freeObjList(partitionByRecord.getFunctions());
+        }
+    }
+
+    @Override
+    public void computeNext(Record record) {
+        final MapValue state = stateOf(record);
+        final long rowCount = state.getLong(ROW_COUNT_SLOT);
+        final long key = timestampIndex > -1 ? record.getTimestamp(timestampIndex) : rowCount;
+        value = computeNext(state, record, key);
+        state.putLong(ROW_COUNT_SLOT, rowCount + 1);
+        state.putDouble(VALUE_SLOT, value);
+    }
+
+    @Override
+    public double getDouble(Record rec) {
+        return value;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getPassCount() {
+        // aggregates over the whole partition can only be written out after all rows are seen
+        return isFrameSupported() && rowsHi == AnalyticColumn.UNBOUNDED_FOLLOWING ? TWO_PASS : STREAM;
+    }
+
+    @Override
+    public void init(SymbolTableSource symbolTableSource, SqlExecutionContext executionContext) throws SqlException {
+        arg.init(symbolTableSource, executionContext);
+        if (partitionByRecord != null) {
+            Function.init(partitionByRecord.getFunctions(), symbolTableSource, executionContext);
+        }
+        toTop();
+    }
+
+    @Override
+    public void initRecordComparator(RecordComparatorCompiler recordComparatorCompiler, ArrayColumnTypes chainTypes, IntList order) {
+    }
+
+    @Override
+    public boolean isStreamingSupported() {
+        return getPassCount() == STREAM;
+    }
+
+    @Override
+    public void pass1(Record record, long recordOffset, AnalyticSPI spi) {
+        computeNext(record);
+        Unsafe.getUnsafe().putDouble(spi.getAddress(recordOffset, columnIndex), value);
+    }
+
+    @Override
+    public void pass2(Record record, long recordOffset, AnalyticSPI spi) {
+        final MapValue state;
+        if (map != null) {
+            partitionByRecord.of(record);
+            final MapKey key = map.withKey();
+            key.put(partitionByRecord, partitionBySink);
+            state = key.findValue();
+            assert state != null;
+        } else {
+            state = singleState;
+        }
+        Unsafe.getUnsafe().putDouble(spi.getAddress(recordOffset, columnIndex), state.getDouble(VALUE_SLOT));
+    }
+
+    @Override
+    public void preparePass2(RecordCursor cursor) {
+    }
+
+    @Override
+    public void reopen() {
+        if (map != null) {
+            map.reopen();
+        } else {
+            initState(singleState);
+        }
+        value = Double.NaN;
+    }
+
+    @Override
+    public void reset() {
+        // releases memory, the function is reopened before the next use
+        Misc.free(map);
+        buffer.close();
+    }
+
+    @Override
+    public void setColumnIndex(int columnIndex) {
+        this.columnIndex = columnIndex;
+    }
+
+    @Override
+    public boolean supportsRandomAccess() {
+        return false;
+    }
+
+    @Override
+    public void toPlan(PlanSink sink) {
+        sink.val(name).val('(').val(arg);
+        toPlanArgs(sink);
+        sink.val(')').val(" over (");
+        if (partitionByRecord != null) {
+            sink.val("partition by ").val(partitionByRecord.getFunctions());
+        }
+        if (isFrameSupported()) {
+            if (partitionByRecord != null) {
+                sink.val(' ');
+            }
+            sink.val(framingMode == AnalyticColumn.FRAMING_ROWS ? "rows" : "range").val(" between ");
+            boundToPlan(sink, rowsLo);
+            sink.val(" and ");
+            boundToPlan(sink, rowsHi);
+        }
+        sink.val(')');
+    }
+
+    @Override
+    public void toTop() {
+        if (map != null) {
+            map.clear();
+        } else {
+            initState(singleState);
+        }
+        buffer.jumpTo(0);
+        value = Double.NaN;
+    }
+
+    private static void boundToPlan(PlanSink sink, long bound) {
+        if (bound == AnalyticColumn.UNBOUNDED_PRECEDING) {
+            sink.val("unbounded preceding");
+        } else if (bound == AnalyticColumn.UNBOUNDED_FOLLOWING) {
+            sink.val("unbounded following");
+        } else if (bound == 0) {
+            sink.val("current row");
+        } else {
+            sink.val(-bound).val(" preceding");
+        }
+    }
+
+    private long entryAddress(MapValue state, long index) {
+        final long capacity = state.getLong(BUFFER_CAPACITY_SLOT);
+        final long start = state.getLong(BUFFER_START_SLOT);
+        return buffer.addressOf(state.getLong(BUFFER_OFFSET_SLOT) + ((start + index) & (capacity - 1)) * BUFFER_ENTRY_SIZE);
+    }
+
+    private void growBuffer(MapValue state, long size, long capacity) {
+        final long newCapacity = capacity == 0 ? BUFFER_INITIAL_CAPACITY : capacity * 2;
+        final long newOffset = buffer.getAppendOffset();
+        buffer.skip(newCapacity * BUFFER_ENTRY_SIZE);
+        // the old buffer is abandoned, total memory used by a partition stays within 2x of its largest frame
+        if (size > 0) {
+            final long newAddress = buffer.addressOf(newOffset);
+            final long oldAddress = buffer.addressOf(state.getLong(BUFFER_OFFSET_SLOT));
+            final long start = state.getLong(BUFFER_START_SLOT);
+            final long headSize = Math.min(size, capacity - start);
+            Vect.memcpy(newAddress, oldAddress + start * BUFFER_ENTRY_SIZE, headSize * BUFFER_ENTRY_SIZE);
+            if (headSize < size) {
+                Vect.memcpy(newAddress + headSize * BUFFER_ENTRY_SIZE, oldAddress, (size - headSize) * BUFFER_ENTRY_SIZE);
+            }
+        }
+        state.putLong(BUFFER_OFFSET_SLOT, newOffset);
+        state.putLong(BUFFER_CAPACITY_SLOT, newCapacity);
+        state.putLong(BUFFER_START_SLOT, 0);
+    }
+
+    protected void bufferAdd(MapValue state, long key, double value) {
+        final long size = state.getLong(BUFFER_SIZE_SLOT);
+        final long capacity = state.getLong(BUFFER_CAPACITY_SLOT);
+        if (size == capacity) {
+            growBuffer(state, size, capacity);
+        }
+        final long address = entryAddress(state, size);
+        Unsafe.getUnsafe().putLong(address, key);
+        Unsafe.getUnsafe().putDouble(address + Long.BYTES, value);
+        state.putLong(BUFFER_SIZE_SLOT, size + 1);
+    }
+
+    protected long bufferFirstKey(MapValue state) {
+        return Unsafe.getUnsafe().getLong(entryAddress(state, 0));
+    }
+
+    protected double bufferFirstValue(MapValue state) {
+        return Unsafe.getUnsafe().getDouble(entryAddress(state, 0) + Long.BYTES);
+    }
+
+    protected double bufferLastValue(MapValue state) {
+        return Unsafe.getUnsafe().getDouble(entryAddress(state, state.getLong(BUFFER_SIZE_SLOT) - 1) + Long.BYTES);
+    }
+
+    protected void bufferRemoveFirst(MapValue state) {
+        final long capacity = state.getLong(BUFFER_CAPACITY_SLOT);
+        state.putLong(BUFFER_START_SLOT, (state.getLong(BUFFER_START_SLOT) + 1) & (capacity - 1));
+        state.addLong(BUFFER_SIZE_SLOT, -1);
+    }
+
+    protected void bufferRemoveLast(MapValue state) {
+        state.addLong(BUFFER_SIZE_SLOT, -1);
+    }
+
+    protected long bufferSize(MapValue state) {
+        return state.getLong(BUFFER_SIZE_SLOT);
+    }
+
+    /**
+     * Computes function value for the current record.
+     *
+     * @param state  partition state
+     * @param record current record
+     * @param key    row number within the partition for ROWS frames and ORDER BY timestamp for RANGE frames
+     * @return function value
+     */
+    protected abstract double computeNext(MapValue state, Record record, long key);
+
+    /**
+     * @return smallest key that belongs to the frame of the record with the given key
+     */
+    protected long frameStart(long key) {
+        if (rowsLo == AnalyticColumn.UNBOUNDED_PRECEDING || key < Long.MIN_VALUE - rowsLo) {
+            return Long.MIN_VALUE;
+        }
+        return key + rowsLo;
+    }
+
+    protected void initState(MapValue state) {
+        state.putLong(BUFFER_OFFSET_SLOT, 0);
+        state.putLong(BUFFER_CAPACITY_SLOT, 0);
+        state.putLong(BUFFER_START_SLOT, 0);
+        state.putLong(BUFFER_SIZE_SLOT, 0);
+        state.putLong(ROW_COUNT_SLOT, 0);
+        state.putDouble(VALUE_SLOT, Double.NaN);
+    }
+
+    protected boolean isFrameBounded() {
+        return rowsLo != AnalyticColumn.UNBOUNDED_PRECEDING;
+    }
+
+    /**
+     * @return false for functions that ignore the frame clause, such as lag() and lead()
+     */
+    protected boolean isFrameSupported() {
+        return true;
+    }
+
+    protected MapValue stateOf(Record record) {
+        if (map == null) {
+            return singleState;
+        }
+        partitionByRecord.of(record);
+        final MapKey key = map.withKey();
+        key.put(partitionByRecord, partitionBySink);
+        final MapValue state = key.createValue();
+        if (state.isNew()) {
+            initState(state);
+        }
+        return state;
+    }
+
+    protected void toPlanArgs(PlanSink sink) {
+    }
+}
@@ -0,0 +1,124 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.functions.analytic;
+
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.map.MapValue;
+import io.questdb.cairo.sql.AnalyticSPI;
+import io.questdb.cairo.sql.Function;
+import io.questdb.cairo.sql.Record;
+import io.questdb.griffin.FunctionFactory;
+import io.questdb.griffin.PlanSink;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.engine.analytic.AnalyticContext;
+import io.questdb.std.IntList;
+import io.questdb.std.ObjList;
+import io.questdb.std.Unsafe;
+
+public class LeadDoubleFunctionFactory implements FunctionFactory {
+
+    @Override
+    public String getSignature() {
+        return "lead(D)";
+    }
+
+    @Override
+    public Function newInstance(
+            int position,
+            ObjList<Function> args,
+            IntList argPositions,
+            CairoConfiguration configuration,
+            SqlExecutionContext sqlExecutionContext
+    ) throws SqlException {
+        return newInstance(position, args.getQuick(0), 1, configuration, sqlExecutionContext);
+    }
+
+    static Function newInstance(
+            int position,
+            Function arg,
+            long offset,
+            CairoConfiguration configuration,
+            SqlExecutionContext sqlExecutionContext
+    ) throws SqlException {
+        final AnalyticContext analyticContext = sqlExecutionContext.getAnalyticContext();
+        if (analyticContext.isEmpty()) {
+            throw SqlException.$(position, "analytic function called in non-analytic context, make sure to add OVER clause");
+        }
+        return new LeadFunction(configuration, analyticContext, arg, offset);
+    }
+
+    /**
+     * Looks ahead, so it cannot be streamed. Records are cached and each record's value is written
+     * into the slot of the record that is offset rows behind it in the same partition.
+     */
+    private static class LeadFunction extends AbstractWindowFunction {
+        private final long offset;
+
+        public LeadFunction(CairoConfiguration configuration, AnalyticContext analyticContext, Function arg, long offset) {
+            super("lead", configuration, analyticContext, arg, stateTypes());
+            this.offset = offset;
+        }
+
+        @Override
+        public boolean isStreamingSupported() {
+            return false;
+        }
+
+        @Override
+        public void pass1(Record record, long recordOffset, AnalyticSPI spi) {
+            final double d = arg.getDouble(record);
+            final long address = spi.getAddress(recordOffset, columnIndex);
+            if (offset == 0) {
+                Unsafe.getUnsafe().putDouble(address, d);
+                return;
+            }
+
+            // stays null unless there are offset more rows in the partition
+            Unsafe.getUnsafe().putDouble(address, Double.NaN);
+            final MapValue state = stateOf(record);
+            if (bufferSize(state) == offset) {
+                Unsafe.getUnsafe().putDouble(spi.getAddress(bufferFirstKey(state), columnIndex), d);
+                bufferRemoveFirst(state);
+            }
+            bufferAdd(state, recordOffset, d);
+        }
+
+        @Override
+        protected double computeNext(MapValue state, Record record, long key) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected boolean isFrameSupported() {
+            return false;
+        }
+
+        @Override
+        protected void toPlanArgs(PlanSink sink) {
+            sink.val(',').val(offset);
+        }
+    }
+}
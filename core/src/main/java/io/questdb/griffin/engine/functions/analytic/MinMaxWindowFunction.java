@@ -0,0 +1,71 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.functions.analytic;
+
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.map.MapValue;
+import io.questdb.cairo.sql.Function;
+import io.questdb.cairo.sql.Record;
+import io.questdb.griffin.engine.analytic.AnalyticContext;
+
+/**
+ * min() and max() over a window frame. Sliding frames keep a monotonic queue of candidate values:
+ * a value is dropped as soon as a better one arrives after it, so the head of the queue is always
+ * the frame's extremum and each record is added and removed at most once.
+ */
+public class MinMaxWindowFunction extends AbstractWindowFunction {
+    private final boolean max;
+
+    public MinMaxWindowFunction(CairoConfiguration configuration, AnalyticContext analyticContext, Function arg, boolean max) {
+        super(max ? "max" : "min", configuration, analyticContext, arg, stateTypes());
+        this.max = max;
+    }
+
+    @Override
+    protected double computeNext(MapValue state, Record record, long key) {
+        final double d = arg.getDouble(record);
+        if (!isFrameBounded()) {
+            // running extremum is the previous value of the function
+            final double current = state.getDouble(VALUE_SLOT);
+            return Double.isNaN(current) || isBetter(d, current) ? d : current;
+        }
+
+        final long frameStart = frameStart(key);
+        while (bufferSize(state) > 0 && bufferFirstKey(state) < frameStart) {
+            bufferRemoveFirst(state);
+        }
+        if (!Double.isNaN(d)) {
+            while (bufferSize(state) > 0 && !isBetter(bufferLastValue(state), d)) {
+                bufferRemoveLast(state);
+            }
+            bufferAdd(state, key, d);
+        }
+        return bufferSize(state) > 0 ? bufferFirstValue(state) : Double.NaN;
+    }
+
+    private boolean isBetter(double candidate, double current) {
+        return max ? candidate > current : candidate < current;
+    }
+}
@@ -0,0 +1,90 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.functions.analytic;
+
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.ColumnType;
+import io.questdb.cairo.map.MapValue;
+import io.questdb.cairo.sql.Function;
+import io.questdb.cairo.sql.Record;
+import io.questdb.griffin.engine.analytic.AnalyticContext;
+import io.questdb.std.Numbers;
+
+/**
+ * sum() and avg() over a window frame. Sliding frames add the incoming value and subtract values
+ * leaving the frame, so the cost per record does not depend on the frame size.
+ */
+public class SumWindowFunction extends AbstractWindowFunction {
+    private static final int COUNT_SLOT = FIRST_CUSTOM_SLOT;
+    private static final int SUM_SLOT = FIRST_CUSTOM_SLOT + 1;
+    private final boolean average;
+
+    public SumWindowFunction(CairoConfiguration configuration, AnalyticContext analyticContext, Function arg, boolean average) {
+        super(average ? "avg" : "sum", configuration, analyticContext, arg, stateTypes(ColumnType.LONG, ColumnType.DOUBLE));
+        this.average = average;
+    }
+
+    @Override
+    protected double computeNext(MapValue state, Record record, long key) {
+        double sum = state.getDouble(SUM_SLOT);
+        long count = state.getLong(COUNT_SLOT);
+        if (isFrameBounded()) {
+            final long frameStart = frameStart(key);
+            while (bufferSize(state) > 0 && bufferFirstKey(state) < frameStart) {
+                sum -= bufferFirstValue(state);
+                count--;
+                bufferRemoveFirst(state);
+            }
+        }
+
+        final double d = arg.getDouble(record);
+        if (Numbers.isFinite(d)) {
+            if (isFrameBounded()) {
+                bufferAdd(state, key, d);
+            }
+            sum += d;
+            count++;
+        }
+
+        if (count == 0) {
+            // drop rounding error accumulated by subtractions
+            sum = 0;
+        }
+        state.putDouble(SUM_SLOT, sum);
+        state.putLong(COUNT_SLOT, count);
+
+        if (count == 0) {
+            return Double.NaN;
+        }
+        return average ? sum / count : sum;
+    }
+
+    @Override
+    protected void initState(MapValue state) {
+        super.initState(state);
+        state.putLong(COUNT_SLOT, 0);
+        state.putDouble(SUM_SLOT, 0);
+    }
+}
@@ -44,4 +44,10 @@ public class LastDateGroupByFunction extends FirstDateGroupByFunction {
     public String getName() {
         return "last";
     }
+
+    @Override
+    public void merge(MapValue destValue, MapValue srcValue) {
+        // source value is built from the following rows, so it holds the last value
+        destValue.putLong(valueIndex, srcValue.getLong(valueIndex));
+    }
 }
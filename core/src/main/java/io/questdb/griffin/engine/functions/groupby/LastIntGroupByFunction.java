@@ -44,4 +44,10 @@ public class LastIntGroupByFunction extends FirstIntGroupByFunction {
     public String getName() {
         return "last";
     }
+
+    @Override
+    public void merge(MapValue destValue, MapValue srcValue) {
+        // source value is built from the following rows, so it holds the last value
+        destValue.putInt(valueIndex, srcValue.getInt(valueIndex));
+    }
 }
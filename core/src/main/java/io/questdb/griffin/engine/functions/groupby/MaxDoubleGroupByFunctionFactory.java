@@ -28,6 +28,8 @@ import io.questdb.cairo.CairoConfiguration;
 import io.questdb.cairo.sql.Function;
 import io.questdb.griffin.FunctionFactory;
 import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.engine.analytic.AnalyticContext;
+import io.questdb.griffin.engine.functions.analytic.MinMaxWindowFunction;
 import io.questdb.std.IntList;
 import io.questdb.std.ObjList;
 
@@ -44,6 +46,10 @@ public class MaxDoubleGroupByFunctionFactory implements FunctionFactory {
 
     @Override
     public Function newInstance(int position, ObjList<Function> args, IntList argPositions, CairoConfiguration configuration, SqlExecutionContext sqlExecutionContext) {
+        final AnalyticContext analyticContext = sqlExecutionContext.getAnalyticContext();
+        if (analyticContext.isFramed()) {
+            return new MinMaxWindowFunction(configuration, analyticContext, args.getQuick(0), true);
+        }
         return new MaxDoubleGroupByFunction(args.getQuick(0));
     }
 }
@@ -72,6 +72,20 @@ public class MaxLongGroupByFunction extends LongFunction implements GroupByFunct
         return "max";
     }
 
+    @Override
+    public boolean isParallelismSupported() {
+        return true;
+    }
+
+    @Override
+    public void merge(MapValue destValue, MapValue srcValue) {
+        long srcMax = srcValue.getLong(valueIndex);
+        long destMax = destValue.getLong(valueIndex);
+        if (srcMax > destMax) {
+            destValue.putLong(valueIndex, srcMax);
+        }
+    }
+
     @Override
     public void pushValueTypes(ArrayColumnTypes columnTypes) {
         this.valueIndex = columnTypes.getColumnCount();
@@ -72,6 +72,20 @@ public class MaxTimestampGroupByFunction extends TimestampFunction implements Gr
         return rec.getTimestamp(valueIndex);
     }
 
+    @Override
+    public boolean isParallelismSupported() {
+        return true;
+    }
+
+    @Override
+    public void merge(MapValue destValue, MapValue srcValue) {
+        long srcMax = srcValue.getTimestamp(valueIndex);
+        long destMax = destValue.getTimestamp(valueIndex);
+        if (srcMax > destMax) {
+            destValue.putTimestamp(valueIndex, srcMax);
+        }
+    }
+
     @Override
     public void pushValueTypes(ArrayColumnTypes columnTypes) {
         this.valueIndex = columnTypes.getColumnCount();
@@ -0,0 +1,229 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.groupby;
+
+import io.questdb.cairo.ArrayColumnTypes;
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.RecordSink;
+import io.questdb.cairo.map.FastMap;
+import io.questdb.cairo.map.MapValue;
+import io.questdb.cairo.map.MapValueMergeFunction;
+import io.questdb.cairo.sql.Function;
+import io.questdb.cairo.sql.SqlExecutionCircuitBreaker;
+import io.questdb.cairo.sql.StatefulAtom;
+import io.questdb.cairo.sql.SymbolTableSource;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.engine.functions.GroupByFunction;
+import io.questdb.std.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Holds the state of a parallel keyed GROUP BY. Each worker aggregates page frames
+ * into its own partial map using its own copy of the group by functions. The query
+ * owner thread uses the owner map, which is also the destination for the final merge.
+ */
+public class AsyncGroupByAtom implements StatefulAtom, Closeable, MapValueMergeFunction {
+
+    private final ObjList<GroupByFunction> ownerFunctions;
+    private final GroupByFunctionsUpdater ownerFunctionsUpdater;
+    private final FastMap ownerMap;
+    private final ObjList<ObjList<GroupByFunction>> perWorkerFunctions;
+    private final ObjList<GroupByFunctionsUpdater> perWorkerFunctionsUpdaters;
+    private final AtomicIntegerArray perWorkerLocks;
+    private final ObjList<FastMap> perWorkerMaps;
+    private final RecordSink recordSink;
+    // Used to randomize acquire attempts for work stealing threads. Accessed in a racy way, intentionally.
+    private final Rnd rnd;
+
+    public AsyncGroupByAtom(
+            @Transient @NotNull BytecodeAssembler asm,
+            @NotNull CairoConfiguration configuration,
+            @Transient @NotNull ArrayColumnTypes keyTypes,
+            @Transient @NotNull ArrayColumnTypes valueTypes,
+            @NotNull RecordSink recordSink,
+            @NotNull ObjList<GroupByFunction> ownerFunctions,
+            @NotNull ObjList<ObjList<GroupByFunction>> perWorkerFunctions
+    ) {
+        assert perWorkerFunctions.size() > 0;
+        this.rnd = new Rnd(
+                configuration.getNanosecondClock().getTicks(),
+                configuration.getMicrosecondClock().getTicks()
+        );
+        this.recordSink = recordSink;
+        this.ownerFunctions = ownerFunctions;
+        this.perWorkerFunctions = perWorkerFunctions;
+        final int slotCount = perWorkerFunctions.size();
+        this.perWorkerLocks = new AtomicIntegerArray(slotCount);
+        this.perWorkerMaps = new ObjList<>(slotCount);
+        this.perWorkerFunctionsUpdaters = new ObjList<>(slotCount);
+        try {
+            this.ownerMap = createMap(configuration, keyTypes, valueTypes, false);
+            this.ownerFunctionsUpdater = GroupByFunctionsUpdaterFactory.getInstance(asm, ownerFunctions);
+            for (int i = 0; i < slotCount; i++) {
+                perWorkerMaps.extendAndSet(i, createMap(configuration, keyTypes, valueTypes, true));
+                perWorkerFunctionsUpdaters.extendAndSet(i, GroupByFunctionsUpdaterFactory.getInstance(asm, perWorkerFunctions.getQuick(i)));
+            }
+        } catch (Throwable e) {
+            close();
+            throw e;
+        }
+    }
+
+    public int acquire(int workerId, boolean owner, SqlExecutionCircuitBreaker circuitBreaker) {
+        if (workerId == -1 && owner) {
+            // Owner thread is free to use its own map and functions anytime.
+            return -1;
+        }
+        final int size = perWorkerLocks.length();
+        workerId = workerId == -1 ? rnd.nextInt(size) : workerId;
+        while (true) {
+            for (int i = 0; i < size; i++) {
+                int id = (i + workerId) % size;
+                if (perWorkerLocks.compareAndSet(id, 0, 1)) {
+                    return id;
+                }
+            }
+            circuitBreaker.statefulThrowExceptionIfTripped();
+            Os.pause();
+        }
+    }
+
+    /**
+     * Releases the memory held by the maps. Maps are reopened on the next {@link #init(SymbolTableSource, SqlExecutionContext)} call.
+     */
+    public void clear() {
+        Misc.free(ownerMap);
+        Misc.freeObjListAndKeepObjects(perWorkerMaps);
+        Misc.clearObjList(ownerFunctions);
+        for (int i = 0, n = perWorkerFunctions.size(); i < n; i++) {
+            Misc.clearObjList(perWorkerFunctions.getQuick(i));
+        }
+    }
+
+    @Override
+    public void close() {
+        Misc.free(ownerMap);
+        Misc.freeObjList(perWorkerMaps);
+        // owner functions are freed by the factory along with the rest of the record functions
+        for (int i = 0, n = perWorkerFunctions.size(); i < n; i++) {
+            Misc.freeObjList(perWorkerFunctions.getQuick(i));
+        }
+    }
+
+    public GroupByFunctionsUpdater getFunctionsUpdater(int slotId) {
+        if (slotId == -1) {
+            return ownerFunctionsUpdater;
+        }
+        return perWorkerFunctionsUpdaters.getQuick(slotId);
+    }
+
+    public FastMap getMap(int slotId) {
+        if (slotId == -1) {
+            return ownerMap;
+        }
+        return perWorkerMaps.getQuick(slotId);
+    }
+
+    public RecordSink getRecordSink() {
+        return recordSink;
+    }
+
+    @Override
+    public void init(SymbolTableSource symbolTableSource, SqlExecutionContext executionContext) throws SqlException {
+        ownerMap.reopen();
+        for (int i = 0, n = perWorkerMaps.size(); i < n; i++) {
+            perWorkerMaps.getQuick(i).reopen();
+        }
+
+        for (int i = 0, n = ownerFunctions.size(); i < n; i++) {
+            ownerFunctions.getQuick(i).init(symbolTableSource, executionContext);
+        }
+        final boolean current = executionContext.getCloneSymbolTables();
+        executionContext.setCloneSymbolTables(true);
+        try {
+            for (int i = 0, n = perWorkerFunctions.size(); i < n; i++) {
+                final ObjList<GroupByFunction> functions = perWorkerFunctions.getQuick(i);
+                for (int j = 0, m = functions.size(); j < m; j++) {
+                    functions.getQuick(j).init(symbolTableSource, executionContext);
+                }
+            }
+        } finally {
+            executionContext.setCloneSymbolTables(current);
+        }
+    }
+
+    @Override
+    public void merge(MapValue destValue, MapValue srcValue) {
+        for (int i = 0, n = ownerFunctions.size(); i < n; i++) {
+            ownerFunctions.getQuick(i).merge(destValue, srcValue);
+        }
+    }
+
+    /**
+     * Merges partial per-worker maps into the owner map. Must be called by the
+     * query owner thread once all page frames are reduced.
+     *
+     * @return the owner map holding the final result
+     */
+    public FastMap mergeWorkerMaps() {
+        for (int i = 0, n = perWorkerMaps.size(); i < n; i++) {
+            final FastMap workerMap = perWorkerMaps.getQuick(i);
+            if (workerMap.size() > 0) {
+                ownerMap.merge(workerMap, this);
+                // The partial map is no longer needed.
+                workerMap.close();
+            }
+        }
+        return ownerMap;
+    }
+
+    public void release(int slotId) {
+        if (slotId == -1) {
+            return;
+        }
+        perWorkerLocks.set(slotId, 0);
+    }
+
+    private static FastMap createMap(
+            CairoConfiguration configuration,
+            ArrayColumnTypes keyTypes,
+            ArrayColumnTypes valueTypes,
+            boolean smallMap
+    ) {
+        return new FastMap(
+                smallMap ? configuration.getSqlSmallMapPageSize() : configuration.getSqlMapPageSize(),
+                keyTypes,
+                valueTypes,
+                smallMap ? configuration.getSqlSmallMapKeyCapacity() : configuration.getSqlMapKeyCapacity(),
+                configuration.getSqlFastMapLoadFactor(),
+                configuration.getSqlMapMaxResizes()
+        );
+    }
+}
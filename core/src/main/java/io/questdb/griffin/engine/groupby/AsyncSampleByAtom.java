@@ -0,0 +1,268 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.groupby;
+
+import io.questdb.cairo.ArrayColumnTypes;
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.ColumnType;
+import io.questdb.cairo.RecordSink;
+import io.questdb.cairo.map.FastMap;
+import io.questdb.cairo.map.MapValue;
+import io.questdb.cairo.map.MapValueMergeFunction;
+import io.questdb.cairo.sql.SqlExecutionCircuitBreaker;
+import io.questdb.cairo.sql.StatefulAtom;
+import io.questdb.cairo.sql.SymbolTableSource;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.engine.functions.GroupByFunction;
+import io.questdb.std.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Holds the state of a parallel SAMPLE BY. Unlike {@link AsyncGroupByAtom}, partial
+ * aggregates are kept per page frame rather than per worker. The query owner thread
+ * merges frame maps into the result map in frame order, so the result has exactly the
+ * same row order as the one produced by the single-threaded SAMPLE BY.
+ * <p>
+ * Frames in flight never exceed the reduce queue capacity, so frame maps are recycled
+ * in a ring.
+ */
+public class AsyncSampleByAtom implements StatefulAtom, Closeable, MapValueMergeFunction {
+
+    private final ArrayColumnTypes keyTypes = new ArrayColumnTypes();
+    private final CairoConfiguration configuration;
+    private final ObjList<FastMap> frameMaps;
+    private final ObjList<GroupByFunction> ownerFunctions;
+    private final GroupByFunctionsUpdater ownerFunctionsUpdater;
+    private final FastMap ownerMap;
+    private final ObjList<ObjList<GroupByFunction>> perWorkerFunctions;
+    private final ObjList<GroupByFunctionsUpdater> perWorkerFunctionsUpdaters;
+    private final AtomicIntegerArray perWorkerLocks;
+    private final RecordSink recordSink;
+    // Used to randomize acquire attempts for work stealing threads. Accessed in a racy way, intentionally.
+    private final Rnd rnd;
+    private final int timestampIndex;
+    private final TimestampSampler timestampSampler;
+    private final ArrayColumnTypes valueTypes = new ArrayColumnTypes();
+
+    public AsyncSampleByAtom(
+            @Transient @NotNull BytecodeAssembler asm,
+            @NotNull CairoConfiguration configuration,
+            @Transient @NotNull ArrayColumnTypes keyTypes,
+            @Transient @NotNull ArrayColumnTypes valueTypes,
+            @NotNull RecordSink recordSink,
+            @NotNull ObjList<GroupByFunction> ownerFunctions,
+            @NotNull ObjList<ObjList<GroupByFunction>> perWorkerFunctions,
+            @NotNull TimestampSampler timestampSampler,
+            int timestampIndex
+    ) {
+        assert perWorkerFunctions.size() > 0;
+        this.configuration = configuration;
+        this.rnd = new Rnd(
+                configuration.getNanosecondClock().getTicks(),
+                configuration.getMicrosecondClock().getTicks()
+        );
+        this.recordSink = recordSink;
+        this.ownerFunctions = ownerFunctions;
+        this.perWorkerFunctions = perWorkerFunctions;
+        this.timestampSampler = timestampSampler;
+        this.timestampIndex = timestampIndex;
+        // map key is the list of key columns followed by the sample timestamp
+        for (int i = 0, n = keyTypes.getColumnCount(); i < n; i++) {
+            this.keyTypes.add(keyTypes.getColumnType(i));
+        }
+        this.keyTypes.add(ColumnType.TIMESTAMP);
+        for (int i = 0, n = valueTypes.getColumnCount(); i < n; i++) {
+            this.valueTypes.add(valueTypes.getColumnType(i));
+        }
+        final int slotCount = perWorkerFunctions.size();
+        this.perWorkerLocks = new AtomicIntegerArray(slotCount);
+        this.perWorkerFunctionsUpdaters = new ObjList<>(slotCount);
+        // frame maps are allocated lazily by the reducing threads
+        final int frameMapCount = configuration.getPageFrameReduceQueueCapacity();
+        this.frameMaps = new ObjList<>(frameMapCount);
+        this.frameMaps.setPos(frameMapCount);
+        try {
+            this.ownerMap = new FastMap(
+                    configuration.getSqlSmallMapPageSize(),
+                    this.keyTypes,
+                    this.valueTypes,
+                    configuration.getSqlSmallMapKeyCapacity(),
+                    configuration.getSqlFastMapLoadFactor(),
+                    configuration.getSqlMapMaxResizes()
+            );
+            this.ownerFunctionsUpdater = GroupByFunctionsUpdaterFactory.getInstance(asm, ownerFunctions);
+            for (int i = 0; i < slotCount; i++) {
+                perWorkerFunctionsUpdaters.extendAndSet(i, GroupByFunctionsUpdaterFactory.getInstance(asm, perWorkerFunctions.getQuick(i)));
+            }
+        } catch (Throwable e) {
+            close();
+            throw e;
+        }
+    }
+
+    public int acquire(int workerId, boolean owner, SqlExecutionCircuitBreaker circuitBreaker) {
+        if (workerId == -1 && owner) {
+            // Owner thread is free to use its own functions anytime.
+            return -1;
+        }
+        final int size = perWorkerLocks.length();
+        workerId = workerId == -1 ? rnd.nextInt(size) : workerId;
+        while (true) {
+            for (int i = 0; i < size; i++) {
+                int id = (i + workerId) % size;
+                if (perWorkerLocks.compareAndSet(id, 0, 1)) {
+                    return id;
+                }
+            }
+            circuitBreaker.statefulThrowExceptionIfTripped();
+            Os.pause();
+        }
+    }
+
+    /**
+     * Releases the memory held by the maps. Maps are reopened on the next {@link #init(SymbolTableSource, SqlExecutionContext)} call.
+     */
+    public void clear() {
+        Misc.free(ownerMap);
+        Misc.freeObjListAndKeepObjects(frameMaps);
+        Misc.clearObjList(ownerFunctions);
+        for (int i = 0, n = perWorkerFunctions.size(); i < n; i++) {
+            Misc.clearObjList(perWorkerFunctions.getQuick(i));
+        }
+    }
+
+    @Override
+    public void close() {
+        Misc.free(ownerMap);
+        Misc.freeObjList(frameMaps);
+        // owner functions are freed by the factory along with the rest of the record functions
+        for (int i = 0, n = perWorkerFunctions.size(); i < n; i++) {
+            Misc.freeObjList(perWorkerFunctions.getQuick(i));
+        }
+    }
+
+    /**
+     * Returns the map to aggregate the given page frame into. Only one thread
+     * works on a frame at a time, so there is no contention on the map.
+     *
+     * @param frameIndex page frame index
+     * @return frame map
+     */
+    public FastMap getFrameMap(int frameIndex) {
+        final int slot = frameIndex % frameMaps.size();
+        FastMap map = frameMaps.getQuick(slot);
+        if (map == null) {
+            map = new FastMap(
+                    configuration.getSqlSmallMapPageSize(),
+                    keyTypes,
+                    valueTypes,
+                    configuration.getSqlSmallMapKeyCapacity(),
+                    configuration.getSqlFastMapLoadFactor(),
+                    configuration.getSqlMapMaxResizes()
+            );
+            frameMaps.setQuick(slot, map);
+        } else {
+            map.reopen();
+        }
+        return map;
+    }
+
+    public GroupByFunctionsUpdater getFunctionsUpdater(int slotId) {
+        if (slotId == -1) {
+            return ownerFunctionsUpdater;
+        }
+        return perWorkerFunctionsUpdaters.getQuick(slotId);
+    }
+
+    public FastMap getOwnerMap() {
+        return ownerMap;
+    }
+
+    public RecordSink getRecordSink() {
+        return recordSink;
+    }
+
+    public int getTimestampIndex() {
+        return timestampIndex;
+    }
+
+    public TimestampSampler getTimestampSampler() {
+        return timestampSampler;
+    }
+
+    @Override
+    public void init(SymbolTableSource symbolTableSource, SqlExecutionContext executionContext) throws SqlException {
+        ownerMap.reopen();
+
+        for (int i = 0, n = ownerFunctions.size(); i < n; i++) {
+            ownerFunctions.getQuick(i).init(symbolTableSource, executionContext);
+        }
+        final boolean current = executionContext.getCloneSymbolTables();
+        executionContext.setCloneSymbolTables(true);
+        try {
+            for (int i = 0, n = perWorkerFunctions.size(); i < n; i++) {
+                final ObjList<GroupByFunction> functions = perWorkerFunctions.getQuick(i);
+                for (int j = 0, m = functions.size(); j < m; j++) {
+                    functions.getQuick(j).init(symbolTableSource, executionContext);
+                }
+            }
+        } finally {
+            executionContext.setCloneSymbolTables(current);
+        }
+    }
+
+    @Override
+    public void merge(MapValue destValue, MapValue srcValue) {
+        for (int i = 0, n = ownerFunctions.size(); i < n; i++) {
+            ownerFunctions.getQuick(i).merge(destValue, srcValue);
+        }
+    }
+
+    /**
+     * Merges the given frame map into the result map. Must be called by the query
+     * owner thread for each page frame, in the frame order.
+     *
+     * @param frameIndex index of the collected page frame
+     */
+    public void mergeFrameMap(int frameIndex) {
+        final FastMap frameMap = frameMaps.getQuick(frameIndex % frameMaps.size());
+        if (frameMap != null && frameMap.size() > 0) {
+            ownerMap.merge(frameMap, this);
+            frameMap.clear();
+        }
+    }
+
+    public void release(int slotId) {
+        if (slotId == -1) {
+            return;
+        }
+        perWorkerLocks.set(slotId, 0);
+    }
+}
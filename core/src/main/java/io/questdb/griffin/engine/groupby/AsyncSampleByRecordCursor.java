@@ -0,0 +1,147 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.groupby;
+
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.sql.Function;
+import io.questdb.cairo.sql.async.PageFrameSequence;
+import io.questdb.griffin.engine.AbstractVirtualFunctionRecordCursor;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.ObjList;
+import io.questdb.std.Os;
+
+class AsyncSampleByRecordCursor extends AbstractVirtualFunctionRecordCursor {
+
+    private static final Log LOG = LogFactory.getLog(AsyncSampleByRecordCursor.class);
+    private static final String exceptionMessage = "timeout, query aborted";
+    private PageFrameSequence<AsyncSampleByAtom> frameSequence;
+    private boolean isDataMapBuilt;
+    private boolean isOpen;
+
+    public AsyncSampleByRecordCursor(ObjList<Function> recordFunctions) {
+        super(recordFunctions, false);
+    }
+
+    @Override
+    public void close() {
+        if (isOpen) {
+            if (frameSequence != null) {
+                LOG.debug()
+                        .$("closing [shard=").$(frameSequence.getShard())
+                        .$(", frameCount=").$(frameSequence.getFrameCount())
+                        .I$();
+
+                if (frameSequence.getFrameCount() > 0) {
+                    frameSequence.await();
+                }
+                frameSequence.clear();
+                frameSequence.getAtom().clear();
+            }
+            baseCursor = null;
+            isOpen = false;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        buildDataMapConditionally();
+        return super.hasNext();
+    }
+
+    @Override
+    public long size() {
+        // same as the serial SAMPLE BY cursors, size is not known upfront
+        return -1;
+    }
+
+    @Override
+    public void toTop() {
+        if (isDataMapBuilt) {
+            super.toTop();
+        }
+    }
+
+    private void buildDataMap() {
+        final int frameCount = frameSequence.getFrameCount();
+        final AsyncSampleByAtom atom = frameSequence.getAtom();
+        boolean allFramesActive = true;
+        try {
+            int frameIndex = -1;
+            while (frameIndex < frameCount - 1) {
+                final long cursor = frameSequence.next();
+                if (cursor > -1) {
+                    allFramesActive &= frameSequence.isActive();
+                    frameIndex = frameSequence.getTask(cursor).getFrameIndex();
+                    // Frames are collected in order, so merging them one by one
+                    // keeps the sample intervals and keys in the serial order.
+                    // The frame map must be merged before the task is released,
+                    // otherwise it may get reused for another frame.
+                    try {
+                        if (allFramesActive) {
+                            atom.mergeFrameMap(frameIndex);
+                        }
+                    } catch (Throwable e) {
+                        // skip the remaining frames, the task has to be collected anyway
+                        frameSequence.cancel();
+                        throw e;
+                    } finally {
+                        frameSequence.collect(cursor, false);
+                    }
+                } else {
+                    Os.pause();
+                }
+            }
+        } catch (Throwable e) {
+            // errors are reported as is, only circuit breaker trips are timeouts
+            LOG.error().$("could not sample frames [ex=").$(e).I$();
+            throw e;
+        }
+
+        if (!allFramesActive) {
+            final CharSequence failure = frameSequence.getFailureMessage();
+            if (failure != null) {
+                throw CairoException.nonCritical().put(failure);
+            }
+            throw CairoException.nonCritical().put(exceptionMessage).setInterruption(true);
+        }
+
+        of(atom.getOwnerMap().getCursor());
+    }
+
+    private void buildDataMapConditionally() {
+        if (!isDataMapBuilt) {
+            buildDataMap();
+            isDataMapBuilt = true;
+        }
+    }
+
+    void of(PageFrameSequence<AsyncSampleByAtom> frameSequence) {
+        this.frameSequence = frameSequence;
+        this.isOpen = true;
+        this.isDataMapBuilt = false;
+    }
+}
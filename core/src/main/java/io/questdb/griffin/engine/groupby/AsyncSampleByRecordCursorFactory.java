@@ -0,0 +1,247 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.groupby;
+
+import io.questdb.MessageBus;
+import io.questdb.cairo.*;
+import io.questdb.cairo.map.FastMap;
+import io.questdb.cairo.map.MapKey;
+import io.questdb.cairo.map.MapValue;
+import io.questdb.cairo.sql.*;
+import io.questdb.cairo.sql.async.PageFrameReduceTask;
+import io.questdb.cairo.sql.async.PageFrameReducer;
+import io.questdb.cairo.sql.async.PageFrameSequence;
+import io.questdb.griffin.PlanSink;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.engine.EmptyTableNoSizeRecordCursor;
+import io.questdb.griffin.engine.functions.GroupByFunction;
+import io.questdb.griffin.engine.functions.columns.TimestampColumn;
+import io.questdb.mp.SCSequence;
+import io.questdb.std.*;
+import io.questdb.std.datetime.microtime.Timestamps;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static io.questdb.cairo.sql.DataFrameCursorFactory.ORDER_ASC;
+
+/**
+ * SAMPLE BY FILL(NONE) executed in parallel on the shared worker pool. Each page frame
+ * is aggregated into its own partial map keyed by the key columns and the sample
+ * timestamp. Partial maps are merged into the result map on the query owner thread
+ * in the frame order, which keeps the result identical to the serial SAMPLE BY.
+ */
+public class AsyncSampleByRecordCursorFactory extends AbstractRecordCursorFactory {
+
+    private static final PageFrameReducer REDUCER = AsyncSampleByRecordCursorFactory::aggregate;
+
+    private final AsyncSampleByAtom atom;
+    private final RecordCursorFactory base;
+    private final SCSequence collectSubSeq = new SCSequence();
+    private final AsyncSampleByRecordCursor cursor;
+    private final PageFrameSequence<AsyncSampleByAtom> frameSequence;
+    private final ObjList<GroupByFunction> groupByFunctions;
+    private final Function offsetFunc;
+    private final int offsetFuncPos;
+    private final ObjList<Function> recordFunctions; // includes groupByFunctions
+    private final int timestampIndex;
+    private final TimestampSampler timestampSampler;
+    private final int workerCount;
+
+    public AsyncSampleByRecordCursorFactory(
+            @Transient @NotNull BytecodeAssembler asm,
+            @NotNull CairoConfiguration configuration,
+            @NotNull MessageBus messageBus,
+            @NotNull RecordCursorFactory base,
+            @NotNull RecordMetadata groupByMetadata,
+            @Transient @NotNull ListColumnFilter listColumnFilter,
+            @Transient @NotNull ArrayColumnTypes keyTypes,
+            @Transient @NotNull ArrayColumnTypes valueTypes,
+            @NotNull ObjList<GroupByFunction> groupByFunctions,
+            @NotNull ObjList<ObjList<GroupByFunction>> perWorkerGroupByFunctions,
+            @NotNull ObjList<Function> recordFunctions,
+            @NotNull TimestampSampler timestampSampler,
+            int timestampIndex,
+            @NotNull Function offsetFunc,
+            int offsetFuncPos,
+            @NotNull @Transient WeakClosableObjectPool<PageFrameReduceTask> localTaskPool,
+            int workerCount
+    ) {
+        super(groupByMetadata);
+        try {
+            this.base = base;
+            this.groupByFunctions = groupByFunctions;
+            this.recordFunctions = recordFunctions;
+            this.timestampSampler = timestampSampler;
+            this.timestampIndex = timestampIndex;
+            this.offsetFunc = offsetFunc;
+            this.offsetFuncPos = offsetFuncPos;
+            // sample timestamp is the last map key column
+            final int sampleTimestampIndex = valueTypes.getColumnCount() + keyTypes.getColumnCount();
+            for (int i = 0, n = recordFunctions.size(); i < n; i++) {
+                if (recordFunctions.getQuick(i) == null) {
+                    recordFunctions.setQuick(i, TimestampColumn.newInstance(sampleTimestampIndex));
+                }
+            }
+            // sink will be storing record columns to map key; it's stateless, so we can share it between workers
+            final RecordSink recordSink = RecordSinkFactory.getInstance(asm, base.getMetadata(), listColumnFilter, false);
+            this.atom = new AsyncSampleByAtom(
+                    asm,
+                    configuration,
+                    keyTypes,
+                    valueTypes,
+                    recordSink,
+                    groupByFunctions,
+                    perWorkerGroupByFunctions,
+                    timestampSampler,
+                    timestampIndex
+            );
+            this.frameSequence = new PageFrameSequence<>(configuration, messageBus, REDUCER, localTaskPool);
+            this.cursor = new AsyncSampleByRecordCursor(recordFunctions);
+            this.workerCount = workerCount;
+        } catch (Throwable e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Parallel SAMPLE BY relies on the sample interval boundaries being a pure function
+     * of the row timestamp, which holds for fixed size intervals only.
+     */
+    public static boolean isTimestampSamplerSupported(TimestampSampler timestampSampler) {
+        return timestampSampler instanceof MicroTimestampSampler;
+    }
+
+    @Override
+    public PageFrameSequence<AsyncSampleByAtom> execute(SqlExecutionContext executionContext, SCSequence collectSubSeq, int order) throws SqlException {
+        return frameSequence.of(base, executionContext, collectSubSeq, atom, order);
+    }
+
+    @Override
+    public RecordCursorFactory getBaseFactory() {
+        return base;
+    }
+
+    @Override
+    public RecordCursor getCursor(SqlExecutionContext executionContext) throws SqlException {
+        offsetFunc.init(null, executionContext);
+        final CharSequence offset = offsetFunc.getStr(null);
+        if (offset != null) {
+            final long val = Timestamps.parseOffset(offset);
+            if (val == Numbers.LONG_NaN) {
+                // bad value for offset
+                throw SqlException.$(offsetFuncPos, "invalid offset: ").put(offset);
+            }
+            timestampSampler.setStart(Numbers.decodeLowInt(val) * Timestamps.MINUTE_MICROS);
+        } else {
+            // intervals are aligned to the first observation, so we have to find it
+            // before any of the page frames is dispatched
+            try (RecordCursor baseCursor = base.getCursor(executionContext)) {
+                if (!baseCursor.hasNext()) {
+                    return EmptyTableNoSizeRecordCursor.INSTANCE;
+                }
+                timestampSampler.setStart(baseCursor.getRecord().getTimestamp(timestampIndex));
+            }
+        }
+
+        final PageFrameSequence<AsyncSampleByAtom> frameSequence = execute(executionContext, collectSubSeq, ORDER_ASC);
+        try {
+            // init all record functions for this cursor, in case functions require metadata and/or symbol tables
+            Function.init(recordFunctions, frameSequence.getSymbolTableSource(), executionContext);
+            cursor.of(frameSequence);
+            return cursor;
+        } catch (Throwable e) {
+            cursor.of(frameSequence);
+            cursor.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean recordCursorSupportsRandomAccess() {
+        return false;
+    }
+
+    @Override
+    public void toPlan(PlanSink sink) {
+        sink.type("Async Sample By");
+        sink.meta("workers").val(workerCount);
+        sink.optAttr("keys", GroupByRecordCursorFactory.getKeys(recordFunctions, getMetadata()));
+        sink.optAttr("values", groupByFunctions, true);
+        sink.child(base);
+    }
+
+    @Override
+    public boolean usesCompiledFilter() {
+        return base.usesCompiledFilter();
+    }
+
+    private static void aggregate(
+            int workerId,
+            @NotNull PageAddressCacheRecord record,
+            @NotNull PageFrameReduceTask task,
+            @NotNull SqlExecutionCircuitBreaker circuitBreaker,
+            @Nullable PageFrameSequence<?> stealingFrameSequence
+    ) {
+        final long frameRowCount = task.getFrameRowCount();
+        final AsyncSampleByAtom atom = task.getFrameSequence(AsyncSampleByAtom.class).getAtom();
+
+        final boolean owner = stealingFrameSequence != null && stealingFrameSequence == task.getFrameSequence();
+        final int slotId = atom.acquire(workerId, owner, circuitBreaker);
+        final GroupByFunctionsUpdater functionsUpdater = atom.getFunctionsUpdater(slotId);
+        final FastMap map = atom.getFrameMap(task.getFrameIndex());
+        final RecordSink recordSink = atom.getRecordSink();
+        final TimestampSampler timestampSampler = atom.getTimestampSampler();
+        final int timestampIndex = atom.getTimestampIndex();
+        try {
+            for (long r = 0; r < frameRowCount; r++) {
+                record.setRowIndex(r);
+                final MapKey key = map.withKey();
+                key.put(record, recordSink);
+                key.putTimestamp(timestampSampler.round(record.getTimestamp(timestampIndex)));
+                final MapValue value = key.createValue();
+                if (value.isNew()) {
+                    functionsUpdater.updateNew(value, record);
+                } else {
+                    functionsUpdater.updateExisting(value, record);
+                }
+            }
+        } finally {
+            atom.release(slotId);
+        }
+    }
+
+    @Override
+    protected void _close() {
+        Misc.free(base);
+        Misc.free(cursor);
+        Misc.free(frameSequence);
+        Misc.freeObjList(recordFunctions);
+        Misc.free(offsetFunc);
+        Misc.free(atom);
+    }
+}
@@ -25,10 +25,7 @@
 package io.questdb.griffin.engine.groupby;
 
 import io.questdb.cairo.*;
-import io.questdb.cairo.map.Map;
-import io.questdb.cairo.map.MapFactory;
-import io.questdb.cairo.map.MapKey;
-import io.questdb.cairo.map.MapValue;
+import io.questdb.cairo.map.*;
 import io.questdb.cairo.sql.Record;
 import io.questdb.cairo.sql.*;
 import io.questdb.griffin.PlanSink;
@@ -42,6 +39,7 @@ import io.questdb.std.Transient;
 import org.jetbrains.annotations.NotNull;
 
 public class GroupByRecordCursorFactory extends AbstractRecordCursorFactory {
+    private static final int SPILL_PARTITION_COUNT = 16;
 
     protected final RecordCursorFactory base;
     private final GroupByRecordCursor cursor;
@@ -59,7 +57,8 @@ public class GroupByRecordCursorFactory extends AbstractRecordCursorFactory {
             @Transient @NotNull ArrayColumnTypes valueTypes,
             RecordMetadata groupByMetadata,
             ObjList<GroupByFunction> groupByFunctions,
-            ObjList<Function> recordFunctions
+            ObjList<Function> recordFunctions,
+            boolean spillEnabled
     ) {
         super(groupByMetadata);
         // sink will be storing record columns to map key
@@ -69,7 +68,7 @@ public class GroupByRecordCursorFactory extends AbstractRecordCursorFactory {
             this.groupByFunctions = groupByFunctions;
             this.recordFunctions = recordFunctions;
             final GroupByFunctionsUpdater updater = GroupByFunctionsUpdaterFactory.getInstance(asm, groupByFunctions);
-            this.cursor = new GroupByRecordCursor(recordFunctions, updater, keyTypes, valueTypes, configuration);
+            this.cursor = new GroupByRecordCursor(recordFunctions, updater, keyTypes, valueTypes, configuration, spillEnabled);
         } catch (Throwable e) {
             Misc.freeObjList(recordFunctions);
             throw e;
@@ -88,7 +87,7 @@ public class GroupByRecordCursorFactory extends AbstractRecordCursorFactory {
 
         try {
             Function.init(recordFunctions, baseCursor, executionContext);
-            cursor.of(baseCursor, circuitBreaker);
+            cursor.of(baseCursor, circuitBreaker, executionContext.getQueryMemoryBudget());
             // init all record function for this cursor, in case functions require metadata and/or symbol tables
             return cursor;
         } catch (Throwable e) {
@@ -99,13 +98,17 @@ public class GroupByRecordCursorFactory extends AbstractRecordCursorFactory {
 
     @Override
     public boolean recordCursorSupportsRandomAccess() {
-        return true;
+        // records of a spilled map are gone once the next partition is loaded
+        return cursor.spiller == null;
     }
 
     @Override
     public void toPlan(PlanSink sink) {
         sink.type("GroupBy");
         sink.meta("vectorized").val(false);
+        if (cursor.spiller != null) {
+            sink.meta("spill").val(true);
+        }
         sink.optAttr("keys", getKeys(recordFunctions, getMetadata()));
         sink.optAttr("values", groupByFunctions, true);
         sink.child(base);
@@ -137,9 +140,11 @@ public class GroupByRecordCursorFactory extends AbstractRecordCursorFactory {
         Misc.free(cursor);
     }
 
-    class GroupByRecordCursor extends VirtualFunctionSkewedSymbolRecordCursor {
+    class GroupByRecordCursor extends VirtualFunctionSkewedSymbolRecordCursor implements MapValueMergeFunction {
         private final Map dataMap;
         private final GroupByFunctionsUpdater groupByFunctionsUpdater;
+        private final FastMapSpillCursor spillCursor;
+        private final FastMapSpiller spiller;
         private boolean isOpen;
 
         public GroupByRecordCursor(
@@ -147,11 +152,19 @@ public class GroupByRecordCursorFactory extends AbstractRecordCursorFactory {
                 GroupByFunctionsUpdater groupByFunctionsUpdater,
                 @Transient @NotNull ArrayColumnTypes keyTypes,
                 @Transient @NotNull ArrayColumnTypes valueTypes,
-                CairoConfiguration configuration
+                CairoConfiguration configuration,
+                boolean spillEnabled
         ) {
             super(functions);
             this.dataMap = MapFactory.createMap(configuration, keyTypes, valueTypes);
             this.groupByFunctionsUpdater = groupByFunctionsUpdater;
+            if (spillEnabled && dataMap instanceof FastMap) {
+                this.spiller = new FastMapSpiller(configuration, SPILL_PARTITION_COUNT);
+                this.spillCursor = new FastMapSpillCursor((FastMap) dataMap, spiller);
+            } else {
+                this.spiller = null;
+                this.spillCursor = null;
+            }
             this.isOpen = true;
         }
 
@@ -160,28 +173,33 @@ public class GroupByRecordCursorFactory extends AbstractRecordCursorFactory {
             if (isOpen) {
                 isOpen = false;
                 Misc.free(dataMap);
+                Misc.free(spiller);
                 Misc.clearObjList(groupByFunctions);
                 super.close();
             }
         }
 
-        public void of(RecordCursor baseCursor, SqlExecutionCircuitBreaker circuitBreaker) {
+        @Override
+        public void merge(MapValue destValue, MapValue srcValue) {
+            for (int i = 0, n = groupByFunctions.size(); i < n; i++) {
+                groupByFunctions.getQuick(i).merge(destValue, srcValue);
+            }
+        }
+
+        public void of(RecordCursor baseCursor, SqlExecutionCircuitBreaker circuitBreaker, long memoryBudget) {
             try {
                 if (!isOpen) {
                     isOpen = true;
                     dataMap.reopen();
                 }
-                final Record baseRecord = baseCursor.getRecord();
-                while (baseCursor.hasNext()) {
-                    circuitBreaker.statefulThrowExceptionIfTripped();
-                    final MapKey key = dataMap.withKey();
-                    mapSink.copy(baseRecord, key);
-                    MapValue value = key.createValue();
-                    if (value.isNew()) {
-                        groupByFunctionsUpdater.updateNew(value, baseRecord);
-                    } else {
-                        groupByFunctionsUpdater.updateExisting(value, baseRecord);
+                if (spiller != null && memoryBudget > 0) {
+                    aggregateWithSpill(baseCursor, circuitBreaker, memoryBudget);
+                    if (spiller.isSpilled()) {
+                        super.of(baseCursor, spillCursor.of(this, memoryBudget));
+                        return;
                     }
+                } else {
+                    aggregate(baseCursor, circuitBreaker);
                 }
                 super.of(baseCursor, dataMap.getCursor());
             } catch (Throwable e) {
@@ -189,5 +207,45 @@ public class GroupByRecordCursorFactory extends AbstractRecordCursorFactory {
                 throw e;
             }
         }
+
+        private void aggregate(RecordCursor baseCursor, SqlExecutionCircuitBreaker circuitBreaker) {
+            final Record baseRecord = baseCursor.getRecord();
+            while (baseCursor.hasNext()) {
+                circuitBreaker.statefulThrowExceptionIfTripped();
+                final MapKey key = dataMap.withKey();
+                mapSink.copy(baseRecord, key);
+                MapValue value = key.createValue();
+                if (value.isNew()) {
+                    groupByFunctionsUpdater.updateNew(value, baseRecord);
+                } else {
+                    groupByFunctionsUpdater.updateExisting(value, baseRecord);
+                }
+            }
+        }
+
+        private void aggregateWithSpill(RecordCursor baseCursor, SqlExecutionCircuitBreaker circuitBreaker, long memoryBudget) {
+            final FastMap map = (FastMap) dataMap;
+            final Record baseRecord = baseCursor.getRecord();
+            while (baseCursor.hasNext()) {
+                circuitBreaker.statefulThrowExceptionIfTripped();
+                final MapKey key = map.withKey();
+                mapSink.copy(baseRecord, key);
+                MapValue value = key.createValue();
+                if (value.isNew()) {
+                    groupByFunctionsUpdater.updateNew(value, baseRecord);
+                } else {
+                    groupByFunctionsUpdater.updateExisting(value, baseRecord);
+                }
+                if (map.getUsedHeapSize() > memoryBudget) {
+                    spiller.spill(map);
+                    map.restoreInitialCapacity();
+                }
+            }
+            if (spiller.isSpilled()) {
+                // spill the remaining key-value pairs, so that each partition is loaded from disk only
+                spiller.spill(map);
+                map.restoreInitialCapacity();
+            }
+        }
     }
 }
@@ -0,0 +1,205 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.join;
+
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.ColumnTypes;
+import io.questdb.cairo.RecordSink;
+import io.questdb.cairo.map.FastMap;
+import io.questdb.cairo.map.MapKey;
+import io.questdb.cairo.map.MapValue;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.SqlExecutionCircuitBreaker;
+import io.questdb.cairo.sql.StatefulAtom;
+import io.questdb.cairo.sql.SymbolTableSource;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.std.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Holds the state of a parallel light hash join. The slave records are hashed into
+ * the join key map by the query owner thread. Once the map is built, it's read-only,
+ * so workers probe it concurrently, each one building master keys in its own key map.
+ */
+public class AsyncHashJoinLightAtom implements StatefulAtom, Closeable {
+
+    private final FastMap joinKeyMap;
+    private final RecordSink masterKeySink;
+    private final FastMap ownerKeyMap;
+    private final ObjList<FastMap> perWorkerKeyMaps;
+    private final AtomicIntegerArray perWorkerLocks;
+    // Used to randomize acquire attempts for work stealing threads. Accessed in a racy way, intentionally.
+    private final Rnd rnd;
+    private final LongChain slaveChain;
+    private final RecordSink slaveKeySink;
+
+    public AsyncHashJoinLightAtom(
+            @NotNull CairoConfiguration configuration,
+            @Transient @NotNull ColumnTypes joinColumnTypes,
+            @Transient @NotNull ColumnTypes valueTypes,
+            @NotNull RecordSink masterKeySink,
+            @NotNull RecordSink slaveKeySink,
+            int workerCount
+    ) {
+        this.rnd = new Rnd(
+                configuration.getNanosecondClock().getTicks(),
+                configuration.getMicrosecondClock().getTicks()
+        );
+        this.masterKeySink = masterKeySink;
+        this.slaveKeySink = slaveKeySink;
+        final int slotCount = Math.max(workerCount, 1);
+        this.perWorkerLocks = new AtomicIntegerArray(slotCount);
+        this.perWorkerKeyMaps = new ObjList<>(slotCount);
+        try {
+            this.joinKeyMap = new FastMap(
+                    configuration.getSqlMapPageSize(),
+                    joinColumnTypes,
+                    valueTypes,
+                    configuration.getSqlMapKeyCapacity(),
+                    configuration.getSqlFastMapLoadFactor(),
+                    configuration.getSqlMapMaxResizes()
+            );
+            this.slaveChain = new LongChain(configuration.getSqlHashJoinLightValuePageSize(), configuration.getSqlHashJoinLightValueMaxPages());
+            this.ownerKeyMap = createKeyMap(configuration, joinColumnTypes, valueTypes);
+            for (int i = 0; i < slotCount; i++) {
+                perWorkerKeyMaps.extendAndSet(i, createKeyMap(configuration, joinColumnTypes, valueTypes));
+            }
+        } catch (Throwable e) {
+            close();
+            throw e;
+        }
+    }
+
+    public int acquire(int workerId, boolean owner, SqlExecutionCircuitBreaker circuitBreaker) {
+        if (workerId == -1 && owner) {
+            // Owner thread is free to use its own key map anytime.
+            return -1;
+        }
+        final int size = perWorkerLocks.length();
+        workerId = workerId == -1 ? rnd.nextInt(size) : workerId;
+        while (true) {
+            for (int i = 0; i < size; i++) {
+                int id = (i + workerId) % size;
+                if (perWorkerLocks.compareAndSet(id, 0, 1)) {
+                    return id;
+                }
+            }
+            circuitBreaker.statefulThrowExceptionIfTripped();
+            Os.pause();
+        }
+    }
+
+    /**
+     * Hashes all slave records into the join key map. Must be called by the query
+     * owner thread before any page frame is dispatched.
+     */
+    public void build(RecordCursor slaveCursor, SqlExecutionCircuitBreaker circuitBreaker) {
+        joinKeyMap.reopen();
+        joinKeyMap.clear();
+        slaveChain.reopen();
+        slaveChain.clear();
+        final Record record = slaveCursor.getRecord();
+        while (slaveCursor.hasNext()) {
+            circuitBreaker.statefulThrowExceptionIfTripped();
+            MapKey key = joinKeyMap.withKey();
+            key.put(record, slaveKeySink);
+            MapValue value = key.createValue();
+            if (value.isNew()) {
+                final long offset = slaveChain.put(record.getRowId(), -1);
+                value.putLong(0, offset);
+                value.putLong(1, offset);
+            } else {
+                value.putLong(1, slaveChain.put(record.getRowId(), value.getLong(1)));
+            }
+        }
+    }
+
+    /**
+     * Releases the memory held by the maps. The join key map is rebuilt on the next
+     * {@link #build(RecordCursor, SqlExecutionCircuitBreaker)} call.
+     */
+    public void clear() {
+        Misc.free(joinKeyMap);
+        slaveChain.close();
+        Misc.free(ownerKeyMap);
+        Misc.freeObjListAndKeepObjects(perWorkerKeyMaps);
+    }
+
+    @Override
+    public void close() {
+        Misc.free(joinKeyMap);
+        Misc.free(slaveChain);
+        Misc.free(ownerKeyMap);
+        Misc.freeObjList(perWorkerKeyMaps);
+    }
+
+    /**
+     * Looks up the master record's join key.
+     *
+     * @return offset of the slave chain head or -1 when there is no matching slave record
+     */
+    public long findChain(int slotId, Record masterRecord) {
+        final FastMap keyMap = slotId == -1 ? ownerKeyMap : perWorkerKeyMaps.getQuick(slotId);
+        keyMap.withKey().put(masterRecord, masterKeySink);
+        final MapValue value = joinKeyMap.findValue(keyMap);
+        return value != null ? value.getLong(0) : -1;
+    }
+
+    public LongChain getSlaveChain() {
+        return slaveChain;
+    }
+
+    @Override
+    public void init(SymbolTableSource symbolTableSource, SqlExecutionContext executionContext) {
+        ownerKeyMap.reopen();
+        for (int i = 0, n = perWorkerKeyMaps.size(); i < n; i++) {
+            perWorkerKeyMaps.getQuick(i).reopen();
+        }
+    }
+
+    public void release(int slotId) {
+        if (slotId == -1) {
+            return;
+        }
+        perWorkerLocks.set(slotId, 0);
+    }
+
+    private static FastMap createKeyMap(CairoConfiguration configuration, ColumnTypes joinColumnTypes, ColumnTypes valueTypes) {
+        // key maps never hold more than a single uncommitted key
+        return new FastMap(
+                configuration.getSqlSmallMapPageSize(),
+                joinColumnTypes,
+                valueTypes,
+                configuration.getSqlSmallMapKeyCapacity(),
+                configuration.getSqlFastMapLoadFactor(),
+                configuration.getSqlMapMaxResizes()
+        );
+    }
+}
@@ -0,0 +1,240 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.join;
+
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.*;
+import io.questdb.cairo.sql.async.PageFrameReduceTask;
+import io.questdb.cairo.sql.async.PageFrameSequence;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.DirectLongList;
+import io.questdb.std.Misc;
+import io.questdb.std.Os;
+
+class AsyncHashJoinLightRecordCursor implements NoRandomAccessRecordCursor {
+
+    private static final Log LOG = LogFactory.getLog(AsyncHashJoinLightRecordCursor.class);
+    private static final String exceptionMessage = "timeout, query aborted";
+    private final int columnSplit;
+    private final PageAddressCacheRecord masterRecord;
+    private final JoinRecord record;
+    private boolean allFramesActive;
+    private long cursor = -1;
+    private int frameIndex;
+    private int frameLimit;
+    private long frameRowCount;
+    private long frameRowIndex;
+    private PageFrameSequence<AsyncHashJoinLightAtom> frameSequence;
+    private boolean isOpen;
+    // pairs of master row index and slave chain head offset
+    private DirectLongList rows;
+    private LongChain slaveChain;
+    private LongChain.TreeCursor slaveChainCursor;
+    private RecordCursor slaveCursor;
+    private Record slaveRecord;
+
+    public AsyncHashJoinLightRecordCursor(int columnSplit) {
+        this.columnSplit = columnSplit;
+        this.masterRecord = new PageAddressCacheRecord();
+        this.record = new JoinRecord(columnSplit);
+    }
+
+    @Override
+    public void close() {
+        if (isOpen) {
+            LOG.debug()
+                    .$("closing [shard=").$(frameSequence.getShard())
+                    .$(", frameIndex=").$(frameIndex)
+                    .$(", frameCount=").$(frameLimit)
+                    .$(", frameId=").$(frameSequence.getId())
+                    .$(", cursor=").$(cursor)
+                    .I$();
+
+            collectCursor(true);
+            if (frameLimit > -1) {
+                frameSequence.await();
+            }
+            frameSequence.clear();
+            frameSequence.getAtom().clear();
+            slaveCursor = Misc.free(slaveCursor);
+            isOpen = false;
+        }
+    }
+
+    public void freeRecords() {
+        Misc.free(masterRecord);
+    }
+
+    @Override
+    public Record getRecord() {
+        return record;
+    }
+
+    @Override
+    public SymbolTable getSymbolTable(int columnIndex) {
+        if (columnIndex < columnSplit) {
+            return frameSequence.getSymbolTableSource().getSymbolTable(columnIndex);
+        }
+        return slaveCursor.getSymbolTable(columnIndex - columnSplit);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (slaveChainCursor != null && slaveChainCursor.hasNext()) {
+            slaveCursor.recordAt(slaveRecord, slaveChainCursor.next());
+            return true;
+        }
+
+        // Check for the first hasNext call.
+        if (frameIndex == -1 && frameLimit > -1) {
+            fetchNextFrame();
+        }
+
+        while (true) {
+            // We have matched rows in the current frame we still need to dispatch
+            if (frameRowIndex < frameRowCount) {
+                masterRecord.setRowIndex(rows.get(frameRowIndex));
+                slaveChainCursor = slaveChain.getCursor(rows.get(frameRowIndex + 1));
+                frameRowIndex += 2;
+                // we know cursor has values
+                // advance to get first value
+                slaveChainCursor.hasNext();
+                slaveCursor.recordAt(slaveRecord, slaveChainCursor.next());
+                return true;
+            }
+
+            // Release the previous queue item.
+            collectCursor(false);
+
+            if (frameIndex < frameLimit) {
+                fetchNextFrame();
+            } else {
+                break;
+            }
+        }
+
+        if (!allFramesActive) {
+            final CharSequence failure = frameSequence.getFailureMessage();
+            if (failure != null) {
+                throw CairoException.nonCritical().put(failure);
+            }
+            throw CairoException.nonCritical().put(exceptionMessage).setInterruption(true);
+        }
+        return false;
+    }
+
+    @Override
+    public SymbolTable newSymbolTable(int columnIndex) {
+        if (columnIndex < columnSplit) {
+            return frameSequence.getSymbolTableSource().newSymbolTable(columnIndex);
+        }
+        return slaveCursor.newSymbolTable(columnIndex - columnSplit);
+    }
+
+    @Override
+    public long size() {
+        return -1;
+    }
+
+    @Override
+    public void toTop() {
+        collectCursor(false);
+        frameSequence.toTop();
+        if (frameLimit > -1) {
+            frameIndex = -1;
+        }
+        frameRowIndex = 0;
+        frameRowCount = 0;
+        slaveChainCursor = null;
+        allFramesActive = true;
+    }
+
+    private void collectCursor(boolean forceCollect) {
+        if (cursor > -1) {
+            frameSequence.collect(cursor, forceCollect);
+            // It is necessary to clear 'cursor' value
+            // because we updated frameIndex and loop can exit due to lack of frames.
+            // Non-update of 'cursor' could cause double-free.
+            cursor = -1;
+        }
+    }
+
+    private void fetchNextFrame() {
+        try {
+            do {
+                this.cursor = frameSequence.next();
+                if (cursor > -1) {
+                    PageFrameReduceTask task = frameSequence.getTask(cursor);
+                    LOG.debug()
+                            .$("collected [shard=").$(frameSequence.getShard())
+                            .$(", frameIndex=").$(task.getFrameIndex())
+                            .$(", frameCount=").$(frameSequence.getFrameCount())
+                            .$(", frameId=").$(frameSequence.getId())
+                            .$(", active=").$(frameSequence.isActive())
+                            .$(", cursor=").$(cursor)
+                            .I$();
+                    this.allFramesActive &= frameSequence.isActive();
+                    this.rows = task.getRows();
+                    this.frameRowCount = rows.size();
+                    this.frameIndex = task.getFrameIndex();
+                    this.frameRowIndex = 0;
+                    if (this.frameRowCount > 0 && frameSequence.isActive()) {
+                        masterRecord.setFrameIndex(task.getFrameIndex());
+                        break;
+                    } else {
+                        // Force reset frame size if frameSequence was canceled or failed.
+                        this.frameRowCount = 0;
+                        collectCursor(false);
+                    }
+                } else {
+                    Os.pause();
+                }
+            } while (this.frameIndex < frameLimit);
+        } catch (Throwable e) {
+            // errors are reported as is, only circuit breaker trips are timeouts
+            LOG.error().$("could not fetch frame [ex=").$(e).I$();
+            throw e;
+        }
+    }
+
+    void of(PageFrameSequence<AsyncHashJoinLightAtom> frameSequence, RecordCursor slaveCursor) {
+        this.isOpen = true;
+        this.frameSequence = frameSequence;
+        this.slaveCursor = slaveCursor;
+        this.slaveChain = frameSequence.getAtom().getSlaveChain();
+        this.slaveRecord = slaveCursor.getRecordB();
+        this.frameIndex = -1;
+        this.frameLimit = frameSequence.getFrameCount() - 1;
+        this.frameRowIndex = 0;
+        this.frameRowCount = 0;
+        this.slaveChainCursor = null;
+        this.allFramesActive = true;
+        masterRecord.of(frameSequence.getSymbolTableSource(), frameSequence.getPageAddressCache());
+        record.of(masterRecord, slaveRecord);
+    }
+}
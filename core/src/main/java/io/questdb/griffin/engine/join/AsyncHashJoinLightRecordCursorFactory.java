@@ -0,0 +1,212 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.join;
+
+import io.questdb.MessageBus;
+import io.questdb.cairo.AbstractRecordCursorFactory;
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.ColumnTypes;
+import io.questdb.cairo.RecordSink;
+import io.questdb.cairo.TableToken;
+import io.questdb.cairo.sql.*;
+import io.questdb.cairo.sql.async.PageFrameReduceTask;
+import io.questdb.cairo.sql.async.PageFrameReducer;
+import io.questdb.cairo.sql.async.PageFrameSequence;
+import io.questdb.griffin.PlanSink;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.model.JoinContext;
+import io.questdb.mp.SCSequence;
+import io.questdb.std.DirectLongList;
+import io.questdb.std.Misc;
+import io.questdb.std.Transient;
+import io.questdb.std.WeakClosableObjectPool;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static io.questdb.cairo.sql.DataFrameCursorFactory.ORDER_ASC;
+
+/**
+ * Inner hash join with light-weight slave records, i.e. slave row ids, executed in
+ * parallel on the shared worker pool. The slave side is hashed by the query owner
+ * thread, then master page frames are dispatched via {@link PageFrameSequence} and
+ * probed by workers. Matches are collected in page frame order, so the result has
+ * the same order as the one produced by {@link HashJoinLightRecordCursorFactory}.
+ */
+public class AsyncHashJoinLightRecordCursorFactory extends AbstractRecordCursorFactory {
+
+    private static final PageFrameReducer REDUCER = AsyncHashJoinLightRecordCursorFactory::probe;
+
+    private final AsyncHashJoinLightAtom atom;
+    private final SCSequence collectSubSeq = new SCSequence();
+    private final AsyncHashJoinLightRecordCursor cursor;
+    private final PageFrameSequence<AsyncHashJoinLightAtom> frameSequence;
+    private final JoinContext joinContext;
+    private final RecordCursorFactory masterFactory;
+    private final RecordCursorFactory slaveFactory;
+    private final int workerCount;
+
+    public AsyncHashJoinLightRecordCursorFactory(
+            @NotNull CairoConfiguration configuration,
+            @NotNull MessageBus messageBus,
+            @NotNull RecordMetadata metadata,
+            @NotNull RecordCursorFactory masterFactory,
+            @NotNull RecordCursorFactory slaveFactory,
+            @Transient @NotNull ColumnTypes joinColumnTypes,
+            @Transient @NotNull ColumnTypes valueTypes, // this expected to be just LONG, we store chain references in map
+            @NotNull RecordSink masterKeySink,
+            @NotNull RecordSink slaveKeySink,
+            int columnSplit,
+            @NotNull JoinContext joinContext,
+            @NotNull @Transient WeakClosableObjectPool<PageFrameReduceTask> localTaskPool,
+            int workerCount
+    ) {
+        super(metadata);
+        this.masterFactory = masterFactory;
+        this.slaveFactory = slaveFactory;
+        this.joinContext = joinContext;
+        this.workerCount = workerCount;
+        try {
+            this.atom = new AsyncHashJoinLightAtom(
+                    configuration,
+                    joinColumnTypes,
+                    valueTypes,
+                    masterKeySink,
+                    slaveKeySink,
+                    workerCount
+            );
+            this.frameSequence = new PageFrameSequence<>(configuration, messageBus, REDUCER, localTaskPool);
+            this.cursor = new AsyncHashJoinLightRecordCursor(columnSplit);
+        } catch (Throwable e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public PageFrameSequence<AsyncHashJoinLightAtom> execute(SqlExecutionContext executionContext, SCSequence collectSubSeq, int order) throws SqlException {
+        return frameSequence.of(masterFactory, executionContext, collectSubSeq, atom, order);
+    }
+
+    @Override
+    public RecordCursorFactory getBaseFactory() {
+        return masterFactory;
+    }
+
+    @Override
+    public RecordCursor getCursor(SqlExecutionContext executionContext) throws SqlException {
+        final RecordCursor slaveCursor = slaveFactory.getCursor(executionContext);
+        try {
+            // the map has to be complete before the first master frame is dispatched
+            atom.build(slaveCursor, executionContext.getCircuitBreaker());
+        } catch (Throwable e) {
+            atom.clear();
+            Misc.free(slaveCursor);
+            throw e;
+        }
+
+        final PageFrameSequence<AsyncHashJoinLightAtom> frameSequence;
+        try {
+            frameSequence = execute(executionContext, collectSubSeq, ORDER_ASC);
+        } catch (Throwable e) {
+            atom.clear();
+            Misc.free(slaveCursor);
+            throw e;
+        }
+        cursor.of(frameSequence, slaveCursor);
+        return cursor;
+    }
+
+    @Override
+    public boolean hasDescendingOrder() {
+        return masterFactory.hasDescendingOrder();
+    }
+
+    @Override
+    public boolean recordCursorSupportsRandomAccess() {
+        return false;
+    }
+
+    @Override
+    public boolean supportsUpdateRowId(TableToken tableToken) {
+        return masterFactory.supportsUpdateRowId(tableToken);
+    }
+
+    @Override
+    public void toPlan(PlanSink sink) {
+        sink.type("Async Hash Join Light");
+        sink.meta("workers").val(workerCount);
+        sink.attr("condition").val(joinContext);
+        sink.child(masterFactory);
+        sink.child("Hash", slaveFactory);
+    }
+
+    @Override
+    public boolean usesCompiledFilter() {
+        return masterFactory.usesCompiledFilter();
+    }
+
+    private static void probe(
+            int workerId,
+            @NotNull PageAddressCacheRecord record,
+            @NotNull PageFrameReduceTask task,
+            @NotNull SqlExecutionCircuitBreaker circuitBreaker,
+            @Nullable PageFrameSequence<?> stealingFrameSequence
+    ) {
+        final long frameRowCount = task.getFrameRowCount();
+        final AsyncHashJoinLightAtom atom = task.getFrameSequence(AsyncHashJoinLightAtom.class).getAtom();
+        final DirectLongList rows = task.getRows();
+        rows.clear();
+
+        final boolean owner = stealingFrameSequence != null && stealingFrameSequence == task.getFrameSequence();
+        final int slotId = atom.acquire(workerId, owner, circuitBreaker);
+        try {
+            for (long r = 0; r < frameRowCount; r++) {
+                record.setRowIndex(r);
+                final long chainOffset = atom.findChain(slotId, record);
+                if (chainOffset != -1) {
+                    rows.add(r);
+                    rows.add(chainOffset);
+                }
+            }
+        } finally {
+            atom.release(slotId);
+        }
+    }
+
+    @Override
+    protected void _close() {
+        ((JoinRecordMetadata) getMetadata()).close();
+        Misc.free(masterFactory);
+        Misc.free(slaveFactory);
+        if (cursor != null) {
+            cursor.close();
+            cursor.freeRecords();
+        }
+        Misc.free(frameSequence);
+        Misc.free(atom);
+    }
+}
@@ -39,11 +39,14 @@ import io.questdb.std.str.DirectCharSequence;
 import io.questdb.tasks.TableWriterTask;
 
 public class AlterOperation extends AbstractOperation implements Mutable {
+    public final static short ADD_BLOOM_INDEX = 13;
     public final static short ADD_COLUMN = 1;
     public final static short ADD_INDEX = 4;
     public final static short ADD_SYMBOL_CACHE = 6;
     public final static short ATTACH_PARTITION = 3;
     public final static String CMD_NAME = "ALTER TABLE";
+    public final static short CONVERT_PARTITION_TO_COMPRESSED = 14;
+    public final static short CONVERT_PARTITION_TO_NATIVE = 15;
     public final static short DETACH_PARTITION = 12;
     public final static short DO_NOTHING = 0;
     public final static short DROP_COLUMN = 8;
@@ -103,9 +106,18 @@ public class AlterOperation extends AbstractOperation implements Mutable {
                 case ATTACH_PARTITION:
                     applyAttachPartition(svc);
                     break;
+                case CONVERT_PARTITION_TO_COMPRESSED:
+                    applyConvertPartition(svc, true);
+                    break;
+                case CONVERT_PARTITION_TO_NATIVE:
+                    applyConvertPartition(svc, false);
+                    break;
                 case ADD_INDEX:
                     applyAddIndex(svc);
                     break;
+                case ADD_BLOOM_INDEX:
+                    applyAddBloomIndex(svc);
+                    break;
                 case DROP_INDEX:
                     applyDropIndex(svc);
                     break;
@@ -285,6 +297,17 @@ public class AlterOperation extends AbstractOperation implements Mutable {
     public void startAsync() {
     }
 
+    private void applyAddBloomIndex(MetadataService svc) {
+        final CharSequence columnName = activeExtraStrInfo.getStrA(0);
+        try {
+            svc.addBloomIndex(columnName);
+        } catch (CairoException e) {
+            // augment exception with table position
+            e.position(tableNamePosition);
+            throw e;
+        }
+    }
+
     private void applyAddColumn(MetadataService svc) {
         int lParam = 0;
         for (int i = 0, n = activeExtraStrInfo.size(); i < n; i++) {
@@ -338,6 +361,18 @@ public class AlterOperation extends AbstractOperation implements Mutable {
         }
     }
 
+    private void applyConvertPartition(MetadataService svc, boolean compress) {
+        // long list is a set of two longs per partition - (timestamp, partitionNamePosition)
+        for (int i = 0, n = extraInfo.size() / 2; i < n; i++) {
+            try {
+                svc.convertPartition(extraInfo.getQuick(i * 2), compress);
+            } catch (CairoException e) {
+                e.position((int) extraInfo.getQuick(i * 2 + 1));
+                throw e;
+            }
+        }
+    }
+
     private void applyDetachPartition(MetadataService svc) {
         for (int i = 0, n = extraInfo.size() / 2; i < n; i++) {
             final long partitionTimestamp = extraInfo.getQuick(i * 2);
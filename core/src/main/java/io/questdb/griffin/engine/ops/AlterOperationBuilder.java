@@ -82,6 +82,20 @@ public class AlterOperationBuilder {
         tableNamePosition = -1;
     }
 
+    public AlterOperationBuilder ofAddBloomIndex(
+            int tableNamePosition,
+            TableToken tableToken,
+            int tableId,
+            CharSequence columnName
+    ) {
+        this.command = ADD_BLOOM_INDEX;
+        this.tableNamePosition = tableNamePosition;
+        this.tableToken = tableToken;
+        this.tableId = tableId;
+        this.extraStrInfo.add(columnName);
+        return this;
+    }
+
     public AlterOperationBuilder ofAddColumn(int tableNamePosition, TableToken tableToken, int tableId) {
         this.command = ADD_COLUMN;
         this.tableNamePosition = tableNamePosition;
@@ -142,6 +156,14 @@ public class AlterOperationBuilder {
         return this;
     }
 
+    public AlterOperationBuilder ofConvertPartition(int tableNamePosition, TableToken tableToken, int tableId, boolean compress) {
+        this.command = compress ? CONVERT_PARTITION_TO_COMPRESSED : CONVERT_PARTITION_TO_NATIVE;
+        this.tableNamePosition = tableNamePosition;
+        this.tableToken = tableToken;
+        this.tableId = tableId;
+        return this;
+    }
+
     public AlterOperationBuilder ofDetachPartition(int tableNamePosition, TableToken tableToken, int tableId) {
         this.command = DETACH_PARTITION;
         this.tableNamePosition = tableNamePosition;
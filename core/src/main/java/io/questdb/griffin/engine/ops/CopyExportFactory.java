@@ -0,0 +1,196 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.ops;
+
+import io.questdb.cairo.*;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.*;
+import io.questdb.cutlass.parquet.ParquetWriter;
+import io.questdb.griffin.PlanSink;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.engine.SingleValueRecordCursor;
+import io.questdb.griffin.engine.table.FwdTableReaderPageFrameCursor;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.Files;
+import io.questdb.std.FilesFacade;
+import io.questdb.std.IntList;
+import io.questdb.std.Misc;
+import io.questdb.std.Numbers;
+import io.questdb.std.str.Path;
+import io.questdb.std.str.StringSink;
+
+/**
+ * Executes COPY TO statement, i.e. exports table into a Parquet file under COPY root directory.
+ * Page frames of the table are written as Parquet row groups. Like {@link CopyFactory} the
+ * statement is executed on record cursor initialization. Export is synchronous, the cursor
+ * returns path of the file relative to COPY root and the number of exported rows.
+ */
+public class CopyExportFactory extends AbstractRecordCursorFactory {
+    private final static GenericRecordMetadata METADATA = new GenericRecordMetadata();
+    private static final Log LOG = LogFactory.getLog(CopyExportFactory.class);
+    private final int codec;
+    private final CairoConfiguration configuration;
+    private final FullFwdDataFrameCursorFactory dataFrameCursorFactory;
+    private final String dirName;
+    private final StringSink fileNameSink = new StringSink();
+    private final FwdTableReaderPageFrameCursor pageFrameCursor;
+    private final Path path = new Path();
+    private final ExportRecord record = new ExportRecord();
+    private final SingleValueRecordCursor cursor = new SingleValueRecordCursor(record);
+    private final String tableName;
+    private ParquetWriter writer;
+
+    public CopyExportFactory(
+            CairoConfiguration configuration,
+            TableToken tableToken,
+            int tableId,
+            long tableVersion,
+            GenericRecordMetadata tableMetadata,
+            String dirName,
+            int codec
+    ) {
+        super(METADATA);
+        this.configuration = configuration;
+        this.tableName = tableToken.getTableName();
+        this.dirName = dirName;
+        this.codec = codec;
+        this.dataFrameCursorFactory = new FullFwdDataFrameCursorFactory(tableToken, tableId, tableVersion, tableMetadata);
+        final IntList columnIndexes = new IntList();
+        final IntList columnSizes = new IntList();
+        for (int i = 0, n = tableMetadata.getColumnCount(); i < n; i++) {
+            columnIndexes.add(i);
+            columnSizes.add(Numbers.msb(ColumnType.sizeOf(tableMetadata.getColumnType(i))));
+        }
+        this.pageFrameCursor = new FwdTableReaderPageFrameCursor(
+                columnIndexes,
+                columnSizes,
+                1,
+                configuration.getSqlPageFrameMinRows(),
+                configuration.getSqlPageFrameMaxRows()
+        );
+    }
+
+    @Override
+    public RecordCursor getCursor(SqlExecutionContext executionContext) throws SqlException {
+        final FilesFacade ff = configuration.getFilesFacade();
+        final SqlExecutionCircuitBreaker circuitBreaker = executionContext.getCircuitBreaker();
+        path.of(configuration.getSqlCopyInputRoot()).concat(dirName).slash$();
+        if (!ff.exists(path) && ff.mkdirs(path, configuration.getMkDirMode()) != 0) {
+            throw CairoException.critical(ff.errno()).put("could not create export directory [path=").put(path).put(']');
+        }
+        fileNameSink.clear();
+        fileNameSink.put(dirName).put(Files.SEPARATOR).put(tableName).put(".parquet");
+        path.of(configuration.getSqlCopyInputRoot()).concat(fileNameSink).$();
+
+        if (writer == null) {
+            writer = new ParquetWriter(ff, configuration.getSqlCopyBufferSize());
+        }
+        long rowCount = 0;
+        try (PageFrameCursor frameCursor = pageFrameCursor.of(dataFrameCursorFactory.getCursor(executionContext, DataFrameCursorFactory.ORDER_ASC))) {
+            writer.of(path, dataFrameCursorFactory.getMetadata(), codec, configuration.getWriterFileOpenOpts());
+            PageFrame frame;
+            while ((frame = frameCursor.next()) != null) {
+                circuitBreaker.statefulThrowExceptionIfTripped();
+                writer.writeRowGroup(frame, frameCursor);
+                rowCount += frame.getPartitionHi() - frame.getPartitionLo();
+            }
+            final long size = writer.finish();
+            LOG.info().$("exported [table=").utf8(tableName)
+                    .$(", path=").$(path)
+                    .$(", rows=").$(rowCount)
+                    .$(", size=").$(size)
+                    .I$();
+        } catch (Throwable th) {
+            // writer may hold partially written file open
+            writer = Misc.free(writer);
+            if (ff.exists(path) && !ff.remove(path)) {
+                LOG.error().$("could not remove partially exported file [path=").$(path).$(", errno=").$(ff.errno()).I$();
+            }
+            throw th;
+        }
+
+        record.of(fileNameSink, rowCount);
+        cursor.toTop();
+        return cursor;
+    }
+
+    @Override
+    public boolean recordCursorSupportsRandomAccess() {
+        return false;
+    }
+
+    @Override
+    public void toPlan(PlanSink sink) {
+        sink.type("Copy");
+        sink.meta("format").val("parquet");
+    }
+
+    @Override
+    protected void _close() {
+        Misc.free(pageFrameCursor);
+        Misc.free(dataFrameCursorFactory);
+        writer = Misc.free(writer);
+        Misc.free(path);
+    }
+
+    private static class ExportRecord implements Record {
+        private CharSequence fileName;
+        private long rowCount;
+
+        @Override
+        public long getLong(int col) {
+            return rowCount;
+        }
+
+        @Override
+        public CharSequence getStr(int col) {
+            return fileName;
+        }
+
+        @Override
+        public CharSequence getStrB(int col) {
+            // the sink is not modified while the cursor is open
+            return getStr(col);
+        }
+
+        @Override
+        public int getStrLen(int col) {
+            return fileName.length();
+        }
+
+        public void of(CharSequence fileName, long rowCount) {
+            this.fileName = fileName;
+            this.rowCount = rowCount;
+        }
+    }
+
+    static {
+        METADATA.add(new TableColumnMetadata("path", ColumnType.STRING));
+        METADATA.add(new TableColumnMetadata("rows", ColumnType.LONG));
+    }
+}
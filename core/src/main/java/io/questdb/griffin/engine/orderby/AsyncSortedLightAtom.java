@@ -0,0 +1,211 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.orderby;
+
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.sql.PageAddressCacheRecord;
+import io.questdb.cairo.sql.SqlExecutionCircuitBreaker;
+import io.questdb.cairo.sql.StatefulAtom;
+import io.questdb.griffin.engine.RecordComparator;
+import io.questdb.std.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Holds the state of a parallel light sort. Each page frame is sorted into a run of
+ * row ids by a worker using its own comparator instance and merge buffer. The runs
+ * are merged by the query owner thread.
+ * <p>
+ * Rows with equal sort keys are ordered by descending row id, which matches the order
+ * produced by {@link LongTreeChain}.
+ */
+public class AsyncSortedLightAtom implements StatefulAtom, Closeable {
+
+    private final RecordComparator ownerComparator;
+    private final DirectLongList ownerMergeBuffer;
+    private final ObjList<RecordComparator> perWorkerComparators;
+    private final AtomicIntegerArray perWorkerLocks;
+    private final ObjList<DirectLongList> perWorkerMergeBuffers;
+    // Used to randomize acquire attempts for work stealing threads. Accessed in a racy way, intentionally.
+    private final Rnd rnd;
+
+    public AsyncSortedLightAtom(
+            @NotNull CairoConfiguration configuration,
+            @NotNull RecordComparator ownerComparator,
+            @NotNull ObjList<RecordComparator> perWorkerComparators
+    ) {
+        assert perWorkerComparators.size() > 0;
+        this.rnd = new Rnd(
+                configuration.getNanosecondClock().getTicks(),
+                configuration.getMicrosecondClock().getTicks()
+        );
+        this.ownerComparator = ownerComparator;
+        this.perWorkerComparators = perWorkerComparators;
+        final int slotCount = perWorkerComparators.size();
+        this.perWorkerLocks = new AtomicIntegerArray(slotCount);
+        this.perWorkerMergeBuffers = new ObjList<>(slotCount);
+        try {
+            this.ownerMergeBuffer = new DirectLongList(configuration.getPageFrameReduceRowIdListCapacity(), MemoryTag.NATIVE_LONG_LIST);
+            for (int i = 0; i < slotCount; i++) {
+                perWorkerMergeBuffers.extendAndSet(i, new DirectLongList(configuration.getPageFrameReduceRowIdListCapacity(), MemoryTag.NATIVE_LONG_LIST));
+            }
+        } catch (Throwable e) {
+            close();
+            throw e;
+        }
+    }
+
+    public int acquire(int workerId, boolean owner, SqlExecutionCircuitBreaker circuitBreaker) {
+        if (workerId == -1 && owner) {
+            // Owner thread is free to use its own comparator anytime.
+            return -1;
+        }
+        final int size = perWorkerLocks.length();
+        workerId = workerId == -1 ? rnd.nextInt(size) : workerId;
+        while (true) {
+            for (int i = 0; i < size; i++) {
+                int id = (i + workerId) % size;
+                if (perWorkerLocks.compareAndSet(id, 0, 1)) {
+                    return id;
+                }
+            }
+            circuitBreaker.statefulThrowExceptionIfTripped();
+            Os.pause();
+        }
+    }
+
+    /**
+     * Releases the memory held by the merge buffers. Buffers are reopened when the next
+     * frame is sorted.
+     */
+    public void clear() {
+        Misc.free(ownerMergeBuffer);
+        Misc.freeObjListAndKeepObjects(perWorkerMergeBuffers);
+    }
+
+    @Override
+    public void close() {
+        Misc.free(ownerMergeBuffer);
+        Misc.freeObjList(perWorkerMergeBuffers);
+    }
+
+    public RecordComparator getOwnerComparator() {
+        return ownerComparator;
+    }
+
+    public void release(int slotId) {
+        if (slotId == -1) {
+            return;
+        }
+        perWorkerLocks.set(slotId, 0);
+    }
+
+    /**
+     * Sorts row indexes of a single page frame with bottom-up merge sort.
+     *
+     * @param slotId acquired slot id
+     * @param record record positioned at the frame to be sorted
+     * @param rows   row indexes to sort, sorted in place
+     */
+    public void sortFrame(int slotId, PageAddressCacheRecord record, DirectLongList rows) {
+        final RecordComparator comparator = slotId == -1 ? ownerComparator : perWorkerComparators.getQuick(slotId);
+        final DirectLongList buffer = slotId == -1 ? ownerMergeBuffer : perWorkerMergeBuffers.getQuick(slotId);
+        final long size = rows.size();
+        if (size < 2) {
+            return;
+        }
+        buffer.reopen();
+        if (buffer.getCapacity() < size) {
+            buffer.setCapacity(size);
+        }
+        buffer.setPos(size);
+
+        DirectLongList src = rows;
+        DirectLongList dst = buffer;
+        for (long width = 1; width < size; width <<= 1) {
+            for (long lo = 0; lo < size; lo += width << 1) {
+                final long mid = Math.min(lo + width, size);
+                final long hi = Math.min(lo + (width << 1), size);
+                merge(comparator, record, src, dst, lo, mid, hi);
+            }
+            final DirectLongList tmp = src;
+            src = dst;
+            dst = tmp;
+        }
+
+        if (src != rows) {
+            Vect.memcpy(rows.getAddress(), buffer.getAddress(), size * Long.BYTES);
+        }
+    }
+
+    static int compare(RecordComparator comparator, PageAddressCacheRecord record, long rowIdA, long rowIdB) {
+        record.setFrameIndex(Rows.toPartitionIndex(rowIdA));
+        record.setRowIndex(Rows.toLocalRowID(rowIdA));
+        comparator.setLeft(record);
+        record.setFrameIndex(Rows.toPartitionIndex(rowIdB));
+        record.setRowIndex(Rows.toLocalRowID(rowIdB));
+        final int cmp = comparator.compare(record);
+        return cmp != 0 ? cmp : Long.compare(rowIdB, rowIdA);
+    }
+
+    private static void merge(
+            RecordComparator comparator,
+            PageAddressCacheRecord record,
+            DirectLongList src,
+            DirectLongList dst,
+            long lo,
+            long mid,
+            long hi
+    ) {
+        long i = lo;
+        long j = mid;
+        long k = lo;
+        while (i < mid && j < hi) {
+            final long a = src.get(i);
+            final long b = src.get(j);
+            record.setRowIndex(a);
+            comparator.setLeft(record);
+            record.setRowIndex(b);
+            final int cmp = comparator.compare(record);
+            // on equal keys the higher row index goes first
+            if (cmp < 0 || (cmp == 0 && a > b)) {
+                dst.set(k++, a);
+                i++;
+            } else {
+                dst.set(k++, b);
+                j++;
+            }
+        }
+        while (i < mid) {
+            dst.set(k++, src.get(i++));
+        }
+        while (j < hi) {
+            dst.set(k++, src.get(j++));
+        }
+    }
+}
@@ -0,0 +1,271 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.orderby;
+
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.*;
+import io.questdb.cairo.sql.async.PageFrameReduceTask;
+import io.questdb.cairo.sql.async.PageFrameSequence;
+import io.questdb.griffin.engine.RecordComparator;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.*;
+
+/**
+ * Collects sorted per-frame runs of row ids and k-way merges them on the fly
+ * with a binary heap of run indexes.
+ */
+class AsyncSortedLightRecordCursor implements RecordCursor {
+
+    private static final Log LOG = LogFactory.getLog(AsyncSortedLightRecordCursor.class);
+    private static final String exceptionMessage = "timeout, query aborted";
+    // used for comparisons during the merge, so that the user facing records stay intact
+    private final PageAddressCacheRecord comparatorRecord;
+    // binary min-heap of run indexes, ordered by the current row of each run
+    private final IntList heap = new IntList();
+    private final PageAddressCacheRecord record;
+    // current position of each run in the rows list
+    private final LongList runHeads = new LongList();
+    // run boundaries in the rows list, run i spans [runOffsets[i], runOffsets[i + 1])
+    private final LongList runOffsets = new LongList();
+    private final DirectLongList rows;
+    private RecordComparator comparator;
+    private PageFrameSequence<AsyncSortedLightAtom> frameSequence;
+    private int heapSize;
+    private boolean isOpen;
+    private boolean isSorted;
+    private PageAddressCacheRecord recordB;
+
+    public AsyncSortedLightRecordCursor(long rowsCapacity) {
+        this.record = new PageAddressCacheRecord();
+        this.comparatorRecord = new PageAddressCacheRecord();
+        this.rows = new DirectLongList(rowsCapacity, MemoryTag.NATIVE_LONG_LIST);
+    }
+
+    @Override
+    public void close() {
+        if (isOpen) {
+            if (frameSequence != null) {
+                LOG.debug()
+                        .$("closing [shard=").$(frameSequence.getShard())
+                        .$(", frameCount=").$(frameSequence.getFrameCount())
+                        .I$();
+
+                if (frameSequence.getFrameCount() > 0) {
+                    frameSequence.await();
+                }
+                frameSequence.clear();
+                frameSequence.getAtom().clear();
+            }
+            rows.close();
+            isOpen = false;
+        }
+    }
+
+    public void freeRecords() {
+        Misc.free(rows);
+        Misc.free(record);
+        Misc.free(recordB);
+        Misc.free(comparatorRecord);
+    }
+
+    @Override
+    public Record getRecord() {
+        return record;
+    }
+
+    @Override
+    public Record getRecordB() {
+        if (recordB != null) {
+            return recordB;
+        }
+        recordB = new PageAddressCacheRecord(record);
+        return recordB;
+    }
+
+    @Override
+    public SymbolTable getSymbolTable(int columnIndex) {
+        return frameSequence.getSymbolTableSource().getSymbolTable(columnIndex);
+    }
+
+    @Override
+    public boolean hasNext() {
+        sortConditionally();
+        if (heapSize == 0) {
+            return false;
+        }
+
+        final int run = heap.getQuick(0);
+        final long head = runHeads.getQuick(run);
+        final long rowId = rows.get(head);
+        record.setFrameIndex(Rows.toPartitionIndex(rowId));
+        record.setRowIndex(Rows.toLocalRowID(rowId));
+
+        if (head + 1 < runOffsets.getQuick(run + 1)) {
+            runHeads.setQuick(run, head + 1);
+        } else {
+            // the run is exhausted, replace it with the last one
+            heap.setQuick(0, heap.getQuick(--heapSize));
+        }
+        siftDown(0);
+        return true;
+    }
+
+    @Override
+    public SymbolTable newSymbolTable(int columnIndex) {
+        return frameSequence.getSymbolTableSource().newSymbolTable(columnIndex);
+    }
+
+    @Override
+    public void recordAt(Record record, long atRowId) {
+        ((PageAddressCacheRecord) record).setFrameIndex(Rows.toPartitionIndex(atRowId));
+        ((PageAddressCacheRecord) record).setRowIndex(Rows.toLocalRowID(atRowId));
+    }
+
+    @Override
+    public long size() {
+        sortConditionally();
+        return rows.size();
+    }
+
+    @Override
+    public void toTop() {
+        if (isSorted) {
+            initHeap();
+        }
+    }
+
+    private void collectRuns() {
+        final int frameCount = frameSequence.getFrameCount();
+        boolean allFramesActive = true;
+        try {
+            int frameIndex = -1;
+            while (frameIndex < frameCount - 1) {
+                final long cursor = frameSequence.next();
+                if (cursor > -1) {
+                    final PageFrameReduceTask task = frameSequence.getTask(cursor);
+                    allFramesActive &= frameSequence.isActive();
+                    frameIndex = task.getFrameIndex();
+                    final DirectLongList frameRows = task.getRows();
+                    try {
+                        if (allFramesActive && frameRows.size() > 0) {
+                            runOffsets.add(rows.size());
+                            rows.add(frameRows);
+                        }
+                    } catch (Throwable e) {
+                        // skip the remaining frames, the task has to be collected anyway
+                        frameSequence.cancel();
+                        throw e;
+                    } finally {
+                        frameSequence.collect(cursor, false);
+                    }
+                } else {
+                    Os.pause();
+                }
+            }
+        } catch (Throwable e) {
+            // errors are reported as is, only circuit breaker trips are timeouts
+            LOG.error().$("could not sort frames [ex=").$(e).I$();
+            throw e;
+        }
+
+        if (!allFramesActive) {
+            final CharSequence failure = frameSequence.getFailureMessage();
+            if (failure != null) {
+                throw CairoException.nonCritical().put(failure);
+            }
+            throw CairoException.nonCritical().put(exceptionMessage).setInterruption(true);
+        }
+        runOffsets.add(rows.size());
+    }
+
+    private void initHeap() {
+        final int runCount = runOffsets.size() - 1;
+        heap.clear();
+        runHeads.clear();
+        for (int i = 0; i < runCount; i++) {
+            heap.add(i);
+            runHeads.add(runOffsets.getQuick(i));
+        }
+        heapSize = runCount;
+        for (int i = (heapSize >> 1) - 1; i > -1; i--) {
+            siftDown(i);
+        }
+    }
+
+    private boolean less(int runA, int runB) {
+        return AsyncSortedLightAtom.compare(
+                comparator,
+                comparatorRecord,
+                rows.get(runHeads.getQuick(runA)),
+                rows.get(runHeads.getQuick(runB))
+        ) < 0;
+    }
+
+    private void siftDown(int index) {
+        final int run = heap.getQuick(index);
+        while (true) {
+            int child = (index << 1) + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && less(heap.getQuick(child + 1), heap.getQuick(child))) {
+                child++;
+            }
+            if (!less(heap.getQuick(child), run)) {
+                break;
+            }
+            heap.setQuick(index, heap.getQuick(child));
+            index = child;
+        }
+        heap.setQuick(index, run);
+    }
+
+    private void sortConditionally() {
+        if (!isSorted) {
+            collectRuns();
+            initHeap();
+            isSorted = true;
+        }
+    }
+
+    void of(PageFrameSequence<AsyncSortedLightAtom> frameSequence) {
+        this.frameSequence = frameSequence;
+        this.comparator = frameSequence.getAtom().getOwnerComparator();
+        this.isOpen = true;
+        this.isSorted = false;
+        this.heapSize = 0;
+        rows.reopen();
+        rows.clear();
+        runOffsets.clear();
+        record.of(frameSequence.getSymbolTableSource(), frameSequence.getPageAddressCache());
+        comparatorRecord.of(frameSequence.getSymbolTableSource(), frameSequence.getPageAddressCache());
+        if (recordB != null) {
+            recordB.of(frameSequence.getSymbolTableSource(), frameSequence.getPageAddressCache());
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.orderby;
+
+import io.questdb.cairo.ColumnType;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.*;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.engine.LimitOverflowException;
+import io.questdb.std.DirectLongList;
+import io.questdb.std.MemoryTag;
+import io.questdb.std.Misc;
+import io.questdb.std.Vect;
+
+/**
+ * Sorts base cursor rows by a single fixed-width column. Instead of inserting rows into
+ * a red-black tree, the cursor collects (key, row id) pairs and sorts them with the
+ * native radix sort. Keys are encoded in a way that their unsigned order matches
+ * the order of the column values.
+ * <p>
+ * Pairs are reversed before sorting, so that rows with equal keys come in descending
+ * row id order, just like in {@link LongTreeChain}.
+ */
+class LongSortedLightRecordCursor implements DelegatingRecordCursor {
+    private final boolean ascending;
+    private final int columnIndex;
+    private final int columnType;
+    private final int maxPages;
+    private final long maxRows;
+    private final DirectLongList sortBuffer;
+    private final DirectLongList sortedIndex;
+    private RecordCursor base;
+    private Record baseRecord;
+    private long index;
+    private boolean isOpen;
+    private long rowCount;
+
+    public LongSortedLightRecordCursor(
+            long initialCapacity,
+            long pageSize,
+            int maxPages,
+            int columnIndex,
+            int columnType,
+            boolean ascending
+    ) {
+        this.maxPages = maxPages;
+        // each row takes a (key, row id) pair in both the index and the sort buffer
+        this.maxRows = Math.max(1, pageSize * maxPages / (4 * Long.BYTES));
+        this.columnIndex = columnIndex;
+        this.columnType = columnType;
+        this.ascending = ascending;
+        this.isOpen = true;
+        try {
+            // (key, row id) pairs
+            this.sortedIndex = new DirectLongList(initialCapacity * 2, MemoryTag.NATIVE_LONG_LIST);
+            this.sortBuffer = new DirectLongList(initialCapacity * 2, MemoryTag.NATIVE_LONG_LIST);
+        } catch (Throwable e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (isOpen) {
+            isOpen = false;
+            Misc.free(sortedIndex);
+            Misc.free(sortBuffer);
+            base = Misc.free(base);
+            baseRecord = null;
+        }
+    }
+
+    @Override
+    public Record getRecord() {
+        return baseRecord;
+    }
+
+    @Override
+    public Record getRecordB() {
+        return base.getRecordB();
+    }
+
+    @Override
+    public SymbolTable getSymbolTable(int columnIndex) {
+        return base.getSymbolTable(columnIndex);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (index < rowCount) {
+            base.recordAt(baseRecord, sortedIndex.get(2 * index + 1));
+            index++;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public SymbolTable newSymbolTable(int columnIndex) {
+        return base.newSymbolTable(columnIndex);
+    }
+
+    @Override
+    public void of(RecordCursor base, SqlExecutionContext executionContext) {
+        if (!isOpen) {
+            sortedIndex.reopen();
+            sortBuffer.reopen();
+            isOpen = true;
+        }
+
+        this.base = base;
+        this.baseRecord = base.getRecord();
+        final SqlExecutionCircuitBreaker circuitBreaker = executionContext.getCircuitBreaker();
+
+        sortedIndex.clear();
+        while (base.hasNext()) {
+            circuitBreaker.statefulThrowExceptionIfTripped();
+            if (sortedIndex.size() >= 2 * maxRows) {
+                throw LimitOverflowException.instance().put("Maximum number of pages (").put(maxPages).put(") breached in radix sort");
+            }
+            sortedIndex.add(sortKey(baseRecord));
+            sortedIndex.add(baseRecord.getRowId());
+        }
+        rowCount = sortedIndex.size() / 2;
+
+        // radix sort is stable, reverse the pairs to get the equal keys in descending row id order
+        for (long lo = 0, hi = rowCount - 1; lo < hi; lo++, hi--) {
+            final long loKey = sortedIndex.get(2 * lo);
+            final long loRowId = sortedIndex.get(2 * lo + 1);
+            sortedIndex.set(2 * lo, sortedIndex.get(2 * hi));
+            sortedIndex.set(2 * lo + 1, sortedIndex.get(2 * hi + 1));
+            sortedIndex.set(2 * hi, loKey);
+            sortedIndex.set(2 * hi + 1, loRowId);
+        }
+
+        if (rowCount > 1) {
+            if (sortBuffer.getCapacity() < rowCount * 2) {
+                sortBuffer.setCapacity(rowCount * 2);
+            }
+            Vect.radixSortLongIndexAscInPlace(sortedIndex.getAddress(), rowCount, sortBuffer.getAddress());
+        }
+        index = 0;
+    }
+
+    @Override
+    public void recordAt(Record record, long atRowId) {
+        base.recordAt(record, atRowId);
+    }
+
+    @Override
+    public long size() {
+        return base.size();
+    }
+
+    @Override
+    public void toTop() {
+        index = 0;
+    }
+
+    /**
+     * Encodes the column value into a key whose unsigned order is the same as the
+     * order of {@link io.questdb.griffin.engine.RecordComparator} generated for the column.
+     * Nulls go first in ascending order.
+     */
+    private long sortKey(Record record) {
+        long key;
+        switch (ColumnType.tagOf(columnType)) {
+            case ColumnType.INT:
+                key = record.getInt(columnIndex) ^ Long.MIN_VALUE;
+                break;
+            case ColumnType.DOUBLE:
+                final double value = record.getDouble(columnIndex);
+                if (value != value) {
+                    // NaN is the smallest value
+                    key = 0;
+                } else if (value == 0) {
+                    // Numbers.compare() puts 0.0 before -0.0, no other value lies in between
+                    key = Double.doubleToRawLongBits(value) < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+                } else {
+                    final long bits = Double.doubleToRawLongBits(value);
+                    key = bits < 0 ? ~bits : bits ^ Long.MIN_VALUE;
+                }
+                break;
+            case ColumnType.DATE:
+                key = record.getDate(columnIndex) ^ Long.MIN_VALUE;
+                break;
+            case ColumnType.TIMESTAMP:
+                key = record.getTimestamp(columnIndex) ^ Long.MIN_VALUE;
+                break;
+            default:
+                key = record.getLong(columnIndex) ^ Long.MIN_VALUE;
+                break;
+        }
+        return ascending ? key : ~key;
+    }
+}
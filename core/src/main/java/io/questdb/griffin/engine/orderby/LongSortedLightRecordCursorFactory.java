@@ -0,0 +1,132 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.orderby;
+
+import io.questdb.cairo.AbstractRecordCursorFactory;
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.ColumnType;
+import io.questdb.cairo.ListColumnFilter;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.cairo.sql.RecordMetadata;
+import io.questdb.griffin.PlanSink;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionContext;
+
+/**
+ * Light sort by a single INT, LONG, DATE, TIMESTAMP or DOUBLE column. Rows are ordered
+ * with the native radix sort over (key, row id) pairs rather than the red-black tree
+ * used by {@link SortedLightRecordCursorFactory}.
+ */
+public class LongSortedLightRecordCursorFactory extends AbstractRecordCursorFactory {
+    private final RecordCursorFactory base;
+    private final LongSortedLightRecordCursor cursor;
+    private final ListColumnFilter sortColumnFilter;
+
+    public LongSortedLightRecordCursorFactory(
+            CairoConfiguration configuration,
+            RecordMetadata metadata,
+            RecordCursorFactory base,
+            ListColumnFilter sortColumnFilter
+    ) {
+        super(metadata);
+        assert sortColumnFilter.size() == 1;
+        this.base = base;
+        this.sortColumnFilter = sortColumnFilter;
+        final int columnIndexAndDirection = sortColumnFilter.get(0);
+        final int columnIndex = (columnIndexAndDirection > 0 ? columnIndexAndDirection : -columnIndexAndDirection) - 1;
+        this.cursor = new LongSortedLightRecordCursor(
+                configuration.getSqlSortLightValuePageSize() / Long.BYTES,
+                configuration.getSqlSortKeyPageSize(),
+                configuration.getSqlSortKeyMaxPages(),
+                columnIndex,
+                base.getMetadata().getColumnType(columnIndex),
+                columnIndexAndDirection > 0
+        );
+    }
+
+    /**
+     * Checks if the sort keys consist of a single column supported by the radix sort.
+     */
+    public static boolean isSupported(RecordMetadata metadata, ListColumnFilter sortColumnFilter) {
+        if (sortColumnFilter.size() != 1) {
+            return false;
+        }
+        final int columnIndexAndDirection = sortColumnFilter.get(0);
+        final int columnIndex = (columnIndexAndDirection > 0 ? columnIndexAndDirection : -columnIndexAndDirection) - 1;
+        switch (ColumnType.tagOf(metadata.getColumnType(columnIndex))) {
+            case ColumnType.INT:
+            case ColumnType.LONG:
+            case ColumnType.DATE:
+            case ColumnType.TIMESTAMP:
+            case ColumnType.DOUBLE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public RecordCursorFactory getBaseFactory() {
+        return base;
+    }
+
+    @Override
+    public RecordCursor getCursor(SqlExecutionContext executionContext) throws SqlException {
+        RecordCursor baseCursor = base.getCursor(executionContext);
+        try {
+            cursor.of(baseCursor, executionContext);
+            return cursor;
+        } catch (Throwable ex) {
+            baseCursor.close();
+            cursor.close();
+            throw ex;
+        }
+    }
+
+    @Override
+    public boolean recordCursorSupportsRandomAccess() {
+        return true;
+    }
+
+    @Override
+    public void toPlan(PlanSink sink) {
+        sink.type("Radix sort light");
+        SortedLightRecordCursorFactory.addSortKeys(sink, sortColumnFilter);
+        sink.child(base);
+    }
+
+    @Override
+    public boolean usesCompiledFilter() {
+        return base.usesCompiledFilter();
+    }
+
+    @Override
+    protected void _close() {
+        base.close();
+        cursor.close();
+    }
+}
@@ -160,19 +160,22 @@ public class FwdTableReaderPageFrameCursor implements PageFrameCursor {
                 if (sh > -1) {
                     // this assumes reader uses single page to map the whole column
                     // non-negative sh means fixed length column
-                    long address = col.getPageAddress(0);
                     long addressSize = partitionHiAdjusted << sh;
                     long offset = partitionLoAdjusted << sh;
-                    columnPageAddress.setQuick(i * 2, address + offset);
+                    // encoded columns of compressed partitions decode just the frame rows
+                    columnPageAddress.setQuick(i * 2, col.addressOf(offset, addressSize));
                     pageSizes.setQuick(i * 2, addressSize - offset);
                 } else {
                     final MemoryR fixCol = reader.getColumn(readerColIndex + 1);
-                    long fixAddress = fixCol.getPageAddress(0);
                     long fixAddressSize = partitionHiAdjusted << 3;
                     long fixOffset = partitionLoAdjusted << 3;
+                    // index has an extra entry, the end offset of the last value
+                    long fixAddress = fixCol.addressOf(fixOffset, fixAddressSize + Long.BYTES) - fixOffset;
 
-                    long varAddress = col.getPageAddress(0);
+                    long varOffset = Unsafe.getUnsafe().getLong(fixAddress + fixOffset);
                     long varAddressSize = Unsafe.getUnsafe().getLong(fixAddress + fixAddressSize);
+                    // offsets in the index are absolute, frame points at the start of the column
+                    long varAddress = col.addressOf(varOffset, varAddressSize) - varOffset;
 
                     columnPageAddress.setQuick(i * 2, varAddress);
                     columnPageAddress.setQuick(i * 2 + 1, fixAddress + fixOffset);
@@ -27,12 +27,22 @@ package io.questdb.griffin.model;
 import io.questdb.std.IntList;
 import io.questdb.std.ObjList;
 import io.questdb.std.ObjectFactory;
+import io.questdb.std.str.CharSink;
 
 public final class AnalyticColumn extends QueryColumn {
     public final static ObjectFactory<AnalyticColumn> FACTORY = AnalyticColumn::new;
+    public static final int FRAMING_RANGE = 1;
+    public static final int FRAMING_ROWS = 0;
+    // frame bounds are offsets relative to the current row: number of rows for ROWS frames
+    // and timestamp delta for RANGE frames; CURRENT ROW is 0
+    public static final long UNBOUNDED_FOLLOWING = Long.MAX_VALUE;
+    public static final long UNBOUNDED_PRECEDING = Long.MIN_VALUE;
     private final ObjList<ExpressionNode> orderBy = new ObjList<>(2);
     private final IntList orderByDirection = new IntList(2);
     private final ObjList<ExpressionNode> partitionBy = new ObjList<>(2);
+    private int framingMode = FRAMING_RANGE;
+    private long rowsHi = 0;
+    private long rowsLo = UNBOUNDED_PRECEDING;
 
     private AnalyticColumn() {
     }
@@ -48,6 +58,20 @@ public final class AnalyticColumn extends QueryColumn {
         partitionBy.clear();
         orderBy.clear();
         orderByDirection.clear();
+        framingMode = FRAMING_RANGE;
+        rowsLo = UNBOUNDED_PRECEDING;
+        rowsHi = 0;
+    }
+
+    public void frameToSink(CharSink sink) {
+        sink.put(framingMode == FRAMING_ROWS ? "rows between " : "range between ");
+        boundToSink(sink, rowsLo);
+        sink.put(" and ");
+        boundToSink(sink, rowsHi);
+    }
+
+    public int getFramingMode() {
+        return framingMode;
     }
 
     public ObjList<ExpressionNode> getOrderBy() {
@@ -62,8 +86,44 @@ public final class AnalyticColumn extends QueryColumn {
         return partitionBy;
     }
 
+    public long getRowsHi() {
+        return rowsHi;
+    }
+
+    public long getRowsLo() {
+        return rowsLo;
+    }
+
+    /**
+     * Default frame is RANGE BETWEEN UNBOUNDED PRECEDING AND CURRENT ROW, which covers
+     * the whole partition when there is no ORDER BY.
+     */
+    public boolean isDefaultFrame() {
+        return framingMode == FRAMING_RANGE && rowsLo == UNBOUNDED_PRECEDING && rowsHi == 0;
+    }
+
     @Override
     public AnalyticColumn of(CharSequence alias, ExpressionNode ast) {
         return (AnalyticColumn) super.of(alias, ast);
     }
+
+    public void setFrame(int framingMode, long rowsLo, long rowsHi) {
+        this.framingMode = framingMode;
+        this.rowsLo = rowsLo;
+        this.rowsHi = rowsHi;
+    }
+
+    private static void boundToSink(CharSink sink, long bound) {
+        if (bound == UNBOUNDED_PRECEDING) {
+            sink.put("unbounded preceding");
+        } else if (bound == UNBOUNDED_FOLLOWING) {
+            sink.put("unbounded following");
+        } else if (bound == 0) {
+            sink.put("current row");
+        } else if (bound < 0) {
+            sink.put(-bound).put(" preceding");
+        } else {
+            sink.put(bound).put(" following");
+        }
+    }
 }
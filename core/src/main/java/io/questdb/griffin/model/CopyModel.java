@@ -33,7 +33,9 @@ public class CopyModel implements ExecutionModel, Mutable, Sinkable {
     public static final ObjectFactory<CopyModel> FACTORY = CopyModel::new;
     private int atomicity;
     private boolean cancel;
+    private int compressionCodec;
     private byte delimiter;
+    private boolean export;
     private ExpressionNode fileName;
     private boolean header;
     private int partitionBy;
@@ -50,6 +52,8 @@ public class CopyModel implements ExecutionModel, Mutable, Sinkable {
         fileName = null;
         header = false;
         cancel = false;
+        export = false;
+        compressionCodec = -1;
         timestampFormat = null;
         timestampColumnName = null;
         partitionBy = -1;
@@ -61,6 +65,10 @@ public class CopyModel implements ExecutionModel, Mutable, Sinkable {
         return atomicity;
     }
 
+    public int getCompressionCodec() {
+        return compressionCodec;
+    }
+
     public byte getDelimiter() {
         return delimiter;
     }
@@ -94,6 +102,10 @@ public class CopyModel implements ExecutionModel, Mutable, Sinkable {
         return cancel;
     }
 
+    public boolean isExport() {
+        return export;
+    }
+
     public boolean isHeader() {
         return header;
     }
@@ -106,10 +118,18 @@ public class CopyModel implements ExecutionModel, Mutable, Sinkable {
         this.cancel = cancel;
     }
 
+    public void setCompressionCodec(int compressionCodec) {
+        this.compressionCodec = compressionCodec;
+    }
+
     public void setDelimiter(byte delimiter) {
         this.delimiter = delimiter;
     }
 
+    public void setExport(boolean export) {
+        this.export = export;
+    }
+
     public void setFileName(ExpressionNode fileName) {
         this.fileName = fileName;
     }
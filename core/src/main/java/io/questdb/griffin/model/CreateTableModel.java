@@ -34,6 +34,7 @@ import io.questdb.std.str.CharSink;
 public class CreateTableModel implements Mutable, ExecutionModel, Sinkable, TableStructure {
     public static final ObjectFactory<CreateTableModel> FACTORY = CreateTableModel::new;
     private static final int COLUMN_FLAG_CACHED = 1;
+    private static final int COLUMN_FLAG_DEDUP_KEY = 4;
     private static final int COLUMN_FLAG_INDEXED = 2;
     private final LongList columnBits = new LongList();
     private final CharSequenceObjHashMap<ColumnCastModel> columnCastModels = new CharSequenceObjHashMap<>();
@@ -41,6 +42,9 @@ public class CreateTableModel implements Mutable, ExecutionModel, Sinkable, Tabl
     private final ObjList<CharSequence> columnNames = new ObjList<>();
     private boolean ignoreIfExists = false;
     private ExpressionNode likeTableName;
+    private String matViewBaseTableName;
+    private String matViewQuery;
+    private String matViewSamplingInterval;
     private int maxUncommittedRows;
     private ExpressionNode name;
     private long o3MaxLag;
@@ -95,6 +99,9 @@ public class CreateTableModel implements Mutable, ExecutionModel, Sinkable, Tabl
         columnNames.clear();
         columnNameIndexMap.clear();
         ignoreIfExists = false;
+        matViewBaseTableName = null;
+        matViewQuery = null;
+        matViewSamplingInterval = null;
     }
 
     public CharSequenceObjHashMap<ColumnCastModel> getColumnCastModels() {
@@ -129,6 +136,18 @@ public class CreateTableModel implements Mutable, ExecutionModel, Sinkable, Tabl
         return likeTableName;
     }
 
+    public String getMatViewBaseTableName() {
+        return matViewBaseTableName;
+    }
+
+    public String getMatViewQuery() {
+        return matViewQuery;
+    }
+
+    public String getMatViewSamplingInterval() {
+        return matViewSamplingInterval;
+    }
+
     @Override
     public int getMaxUncommittedRows() {
         return maxUncommittedRows;
@@ -183,6 +202,11 @@ public class CreateTableModel implements Mutable, ExecutionModel, Sinkable, Tabl
         return timestamp == null ? -1 : getColumnIndex(timestamp.token);
     }
 
+    @Override
+    public boolean isDedupKey(int index) {
+        return (getLowAt(index * 2 + 1) & COLUMN_FLAG_DEDUP_KEY) != 0;
+    }
+
     public boolean isIgnoreIfExists() {
         return ignoreIfExists;
     }
@@ -192,6 +216,10 @@ public class CreateTableModel implements Mutable, ExecutionModel, Sinkable, Tabl
         return (getLowAt(index * 2 + 1) & COLUMN_FLAG_INDEXED) != 0;
     }
 
+    public boolean isMatView() {
+        return matViewQuery != null;
+    }
+
     @Override
     public boolean isSequential(int columnIndex) {
         // todo: expose this flag on CREATE TABLE statement
@@ -203,6 +231,11 @@ public class CreateTableModel implements Mutable, ExecutionModel, Sinkable, Tabl
         return walEnabled;
     }
 
+    public void setDedupKey(int columnIndex) {
+        final int index = columnIndex * 2 + 1;
+        columnBits.setQuick(index, Numbers.encodeLowHighInts(getLowAt(index) | COLUMN_FLAG_DEDUP_KEY, getHighAt(index)));
+    }
+
     public void setIgnoreIfExists(boolean flag) {
         this.ignoreIfExists = flag;
     }
@@ -219,6 +252,12 @@ public class CreateTableModel implements Mutable, ExecutionModel, Sinkable, Tabl
         this.likeTableName = tableName;
     }
 
+    public void setMatView(String baseTableName, String samplingInterval, String query) {
+        this.matViewBaseTableName = baseTableName;
+        this.matViewSamplingInterval = samplingInterval;
+        this.matViewQuery = query;
+    }
+
     public void setMaxUncommittedRows(int maxUncommittedRows) {
         this.maxUncommittedRows = maxUncommittedRows;
     }
@@ -257,7 +296,7 @@ public class CreateTableModel implements Mutable, ExecutionModel, Sinkable, Tabl
 
     @Override
     public void toSink(CharSink sink) {
-        sink.put("create table ");
+        sink.put(isMatView() ? "create materialized view " : "create table ");
         sink.put(getName().token);
         if (getQueryModel() != null) {
             sink.put(" as (");
@@ -342,6 +381,18 @@ public class CreateTableModel implements Mutable, ExecutionModel, Sinkable, Tabl
         if (partitionBy != null) {
             sink.put(" partition by ").put(partitionBy.token);
         }
+
+        boolean dedup = false;
+        for (int i = 0, n = getColumnCount(); i < n; i++) {
+            if (isDedupKey(i)) {
+                sink.put(dedup ? ", " : " dedup upsert keys(");
+                sink.put(getColumnName(i));
+                dedup = true;
+            }
+        }
+        if (dedup) {
+            sink.put(')');
+        }
     }
 
     private int getHighAt(int index) {
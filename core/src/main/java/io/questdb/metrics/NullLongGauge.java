@@ -26,7 +26,7 @@ package io.questdb.metrics;
 
 import io.questdb.std.str.CharSink;
 
-public class NullLongGauge implements LongGauge {
+public class NullLongGauge implements LongGauge, LongGaugeWithOneLabel {
     public static final NullLongGauge INSTANCE = new NullLongGauge();
 
     private NullLongGauge() {
@@ -45,10 +45,19 @@ public class NullLongGauge implements LongGauge {
         return 0;
     }
 
+    @Override
+    public long getValue(CharSequence label0) {
+        return 0;
+    }
+
     @Override
     public void inc() {
     }
 
+    @Override
+    public void remove(CharSequence label0) {
+    }
+
     @Override
     public void scrapeIntoPrometheus(CharSink sink) {
     }
@@ -56,4 +65,8 @@ public class NullLongGauge implements LongGauge {
     @Override
     public void setValue(long value) {
     }
+
+    @Override
+    public void setValue(CharSequence label0, long value) {
+    }
 }
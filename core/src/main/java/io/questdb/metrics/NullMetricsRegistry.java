@@ -64,6 +64,11 @@ public class NullMetricsRegistry implements MetricsRegistry {
         return NullLongGauge.INSTANCE;
     }
 
+    @Override
+    public LongGaugeWithOneLabel newLongGauge(CharSequence name, CharSequence labelName0) {
+        return NullLongGauge.INSTANCE;
+    }
+
     @Override
     public LongGauge newVirtualGauge(CharSequence name, VirtualLongGauge.StatProvider provider) {
         return NullLongGauge.INSTANCE;
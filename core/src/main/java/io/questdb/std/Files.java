@@ -47,6 +47,7 @@ public final class Files {
     public static final int MAP_RO = 1;
     public static final int MAP_RW = 2;
     public static final long PAGE_SIZE;
+    public static final int POSIX_FADV_DONTNEED;
     public static final int POSIX_FADV_RANDOM;
     public static final int POSIX_FADV_SEQUENTIAL;
     // Apart from obvious random read use case, MADV_RANDOM/FADV_RANDOM should be used for write-only
@@ -54,6 +55,7 @@ public final class Files {
     // wasted disk read ops.
     public static final int POSIX_MADV_RANDOM;
     public static final int POSIX_MADV_SEQUENTIAL;
+    public static final int POSIX_MADV_WILLNEED;
     public static final char SEPARATOR;
     public static final Charset UTF_8;
     public static final int WINDOWS_ERROR_FILE_EXISTS = 0x50;
@@ -536,11 +538,16 @@ public final class Files {
             POSIX_FADV_SEQUENTIAL = getPosixFadvSequential();
             POSIX_MADV_RANDOM = getPosixMadvRandom();
             POSIX_MADV_SEQUENTIAL = getPosixMadvSequential();
+            // same values on all Linux architectures we support
+            POSIX_FADV_DONTNEED = 4;
+            POSIX_MADV_WILLNEED = 3;
         } else {
             POSIX_FADV_SEQUENTIAL = -1;
             POSIX_FADV_RANDOM = -1;
+            POSIX_FADV_DONTNEED = -1;
             POSIX_MADV_SEQUENTIAL = -1;
             POSIX_MADV_RANDOM = -1;
+            POSIX_MADV_WILLNEED = -1;
         }
     }
 }
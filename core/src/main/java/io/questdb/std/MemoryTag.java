@@ -46,6 +46,7 @@ public final class MemoryTag {
     public static final int NATIVE_CB3 = 30;
     public static final int NATIVE_CB4 = 31;
     public static final int NATIVE_CB5 = 32;
+    public static final int NATIVE_COLUMN_BUFFER_CACHE = 54;
     public static final int NATIVE_COLUMN_PURGE = 42;
     public static final int NATIVE_COMPACT_MAP = 8;
     public static final int NATIVE_DEFAULT = 1;
@@ -79,7 +80,7 @@ public final class MemoryTag {
     public static final int NATIVE_TEXT_PARSER_RSS = 48;
     public static final int NATIVE_TLS_RSS = 47;
     public static final int NATIVE_TREE_CHAIN = 6;
-    public static final int SIZE = MMAP_TX_LOG + 1;
+    public static final int SIZE = NATIVE_COLUMN_BUFFER_CACHE + 1;
     private static final ObjList<String> tagNameMap = new ObjList<>(SIZE);
 
     public static String nameOf(int tag) {
@@ -141,5 +142,6 @@ public final class MemoryTag {
         tagNameMap.extendAndSet(NATIVE_DIRECT_CHAR_SINK, "NATIVE_DIRECT_CHAR_SINK");
         tagNameMap.extendAndSet(MMAP_TX_LOG_CURSOR, "MMAP_TX_LOG_CURSOR");
         tagNameMap.extendAndSet(MMAP_TX_LOG, "MMAP_TX_LOG");
+        tagNameMap.extendAndSet(NATIVE_COLUMN_BUFFER_CACHE, "NATIVE_COLUMN_BUFFER_CACHE");
     }
 }
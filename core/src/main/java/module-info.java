@@ -53,6 +53,7 @@ open module io.questdb {
     exports io.questdb.cutlass.line.udp;
     exports io.questdb.cutlass.line.tcp;
     exports io.questdb.cutlass.pgwire;
+    exports io.questdb.cutlass.parquet;
     exports io.questdb.cutlass.text;
     exports io.questdb.cutlass.text.types;
 
@@ -696,6 +697,12 @@ open module io.questdb {
 
             // analytic functions
             io.questdb.griffin.engine.functions.analytic.RowNumberFunctionFactory,
+            io.questdb.griffin.engine.functions.analytic.FirstValueDoubleFunctionFactory,
+            io.questdb.griffin.engine.functions.analytic.LastValueDoubleFunctionFactory,
+            io.questdb.griffin.engine.functions.analytic.LagDoubleFunctionFactory,
+            io.questdb.griffin.engine.functions.analytic.LagOffsetDoubleFunctionFactory,
+            io.questdb.griffin.engine.functions.analytic.LeadDoubleFunctionFactory,
+            io.questdb.griffin.engine.functions.analytic.LeadOffsetDoubleFunctionFactory,
             // this factory seems to corrupt memory, symptoms of which are visible on M1 CPU
             //io.questdb.griffin.engine.functions.analytic.RankFunctionFactory,
 
@@ -226,6 +226,13 @@ public class PropServerConfigurationTest {
         Assert.assertFalse(configuration.getLineUdpReceiverConfiguration().ownThread());
 
         Assert.assertTrue(configuration.getCairoConfiguration().isSqlParallelFilterEnabled());
+        Assert.assertFalse(configuration.getCairoConfiguration().isSqlParallelGroupByEnabled());
+        Assert.assertFalse(configuration.getCairoConfiguration().isSqlParallelSampleByEnabled());
+        Assert.assertFalse(configuration.getCairoConfiguration().isSqlParallelHashJoinEnabled());
+        Assert.assertFalse(configuration.getCairoConfiguration().isSqlParallelSortEnabled());
+        Assert.assertEquals(0, configuration.getCairoConfiguration().getSqlQueryMemoryBudget());
+        Assert.assertTrue(configuration.getCairoConfiguration().isPartitionStatsEnabled());
+        Assert.assertEquals(-1, configuration.getCairoConfiguration().getPartitionCompressionAge());
         Assert.assertTrue(configuration.getCairoConfiguration().isSqlParallelFilterPreTouchEnabled());
         Assert.assertEquals(1_000_000, configuration.getCairoConfiguration().getSqlPageFrameMaxRows());
         Assert.assertEquals(1000, configuration.getCairoConfiguration().getSqlPageFrameMinRows());
@@ -294,6 +301,9 @@ public class PropServerConfigurationTest {
         Assert.assertEquals(32768, configuration.getLineTcpReceiverConfiguration().getNetMsgBufferSize());
         Assert.assertEquals(32768, configuration.getLineTcpReceiverConfiguration().getMaxMeasurementSize());
         Assert.assertEquals(128, configuration.getLineTcpReceiverConfiguration().getWriterQueueCapacity());
+        Assert.assertEquals(0, configuration.getLineTcpReceiverConfiguration().getWriterMaxShards());
+        Assert.assertEquals(10_000, configuration.getLineTcpReceiverConfiguration().getWriterShardEvents());
+        Assert.assertEquals(0.5, configuration.getLineTcpReceiverConfiguration().getWriterShardLoadRatio(), 0.000001);
         Assert.assertEquals(1, configuration.getLineTcpReceiverConfiguration().getWriterWorkerPoolConfiguration().getWorkerCount());
         Assert.assertEquals(10, configuration.getLineTcpReceiverConfiguration().getWriterWorkerPoolConfiguration().getYieldThreshold());
         Assert.assertEquals(10_000, configuration.getLineTcpReceiverConfiguration().getWriterWorkerPoolConfiguration().getSleepThreshold());
@@ -315,6 +325,7 @@ public class PropServerConfigurationTest {
         Assert.assertEquals(ColumnType.DOUBLE, configuration.getLineTcpReceiverConfiguration().getDefaultColumnTypeForFloat());
         Assert.assertEquals(ColumnType.LONG, configuration.getLineTcpReceiverConfiguration().getDefaultColumnTypeForInteger());
         Assert.assertTrue(configuration.getLineTcpReceiverConfiguration().getDisconnectOnError());
+        Assert.assertFalse(configuration.getLineTcpReceiverConfiguration().isBinaryFormatSupported());
 
         Assert.assertTrue(configuration.getHttpServerConfiguration().getHttpContextConfiguration().getServerKeepAlive());
         Assert.assertEquals("HTTP/1.1 ", configuration.getHttpServerConfiguration().getHttpContextConfiguration().getHttpVersion());
@@ -698,6 +709,13 @@ public class PropServerConfigurationTest {
         new PropServerConfiguration(root, properties, null, LOG, new BuildInformationHolder());
     }
 
+    @Test(expected = ServerConfigurationException.class)
+    public void testInvalidPartitionCompressionAge() throws ServerConfigurationException, JsonException {
+        Properties properties = new Properties();
+        properties.setProperty("cairo.partition.compression.age", "0");
+        new PropServerConfiguration(root, properties, null, LOG, new BuildInformationHolder());
+    }
+
     @Test
     public void testInvalidValidationResult() {
         Properties properties = new Properties();
@@ -961,6 +979,13 @@ public class PropServerConfigurationTest {
 
             Assert.assertFalse(configuration.getCairoConfiguration().isSqlParallelFilterEnabled());
             Assert.assertFalse(configuration.getCairoConfiguration().isSqlParallelFilterPreTouchEnabled());
+            Assert.assertTrue(configuration.getCairoConfiguration().isSqlParallelGroupByEnabled());
+            Assert.assertTrue(configuration.getCairoConfiguration().isSqlParallelSampleByEnabled());
+            Assert.assertTrue(configuration.getCairoConfiguration().isSqlParallelHashJoinEnabled());
+            Assert.assertTrue(configuration.getCairoConfiguration().isSqlParallelSortEnabled());
+            Assert.assertEquals(1073741824, configuration.getCairoConfiguration().getSqlQueryMemoryBudget());
+            Assert.assertFalse(configuration.getCairoConfiguration().isPartitionStatsEnabled());
+            Assert.assertEquals(604800000, configuration.getCairoConfiguration().getPartitionCompressionAge());
             Assert.assertEquals(1000, configuration.getCairoConfiguration().getSqlPageFrameMaxRows());
             Assert.assertEquals(100, configuration.getCairoConfiguration().getSqlPageFrameMinRows());
             Assert.assertEquals(128, configuration.getCairoConfiguration().getPageFrameReduceShardCount());
@@ -999,6 +1024,9 @@ public class PropServerConfigurationTest {
             Assert.assertEquals(2049, configuration.getLineTcpReceiverConfiguration().getNetMsgBufferSize());
             Assert.assertEquals(128, configuration.getLineTcpReceiverConfiguration().getMaxMeasurementSize());
             Assert.assertEquals(256, configuration.getLineTcpReceiverConfiguration().getWriterQueueCapacity());
+            Assert.assertEquals(3, configuration.getLineTcpReceiverConfiguration().getWriterMaxShards());
+            Assert.assertEquals(5_000, configuration.getLineTcpReceiverConfiguration().getWriterShardEvents());
+            Assert.assertEquals(0.75, configuration.getLineTcpReceiverConfiguration().getWriterShardLoadRatio(), 0.000001);
             Assert.assertEquals(2, configuration.getLineTcpReceiverConfiguration().getWriterWorkerPoolConfiguration().getWorkerCount());
             Assert.assertArrayEquals(new int[]{1, 2}, configuration.getLineTcpReceiverConfiguration().getWriterWorkerPoolConfiguration().getWorkerAffinity());
             Assert.assertEquals(20, configuration.getLineTcpReceiverConfiguration().getWriterWorkerPoolConfiguration().getYieldThreshold());
@@ -339,6 +339,18 @@ public abstract class AbstractCairoTest {
         node1.getConfigurationOverrides().setParallelFilterEnabled(parallelFilterEnabled);
     }
 
+    protected static void configOverrideQueryMemoryBudget(long queryMemoryBudget) {
+        node1.getConfigurationOverrides().setQueryMemoryBudget(queryMemoryBudget);
+    }
+
+    protected static void configOverridePartitionStatsEnabled(Boolean partitionStatsEnabled) {
+        node1.getConfigurationOverrides().setPartitionStatsEnabled(partitionStatsEnabled);
+    }
+
+    protected static void configOverridePartitionCompressionAge(long partitionCompressionAge) {
+        node1.getConfigurationOverrides().setPartitionCompressionAge(partitionCompressionAge);
+    }
+
     protected static void configOverrideParallelImportStatusLogKeepNDays(int parallelImportStatusLogKeepNDays) {
         node1.getConfigurationOverrides().setParallelImportStatusLogKeepNDays(parallelImportStatusLogKeepNDays);
     }
@@ -370,6 +382,10 @@ public abstract class AbstractCairoTest {
         node1.getConfigurationOverrides().setSqlJoinMetadataPageSize(sqlJoinMetadataPageSize);
     }
 
+    protected static void configOverrideSqlMapKeyCapacity(int sqlMapKeyCapacity) {
+        node1.getConfigurationOverrides().setSqlMapKeyCapacity(sqlMapKeyCapacity);
+    }
+
     @SuppressWarnings("SameParameterValue")
     protected static void configOverrideWalSegmentRolloverRowCount(long walSegmentRolloverRowCount) {
         node1.getConfigurationOverrides().setWalSegmentRolloverRowCount(walSegmentRolloverRowCount);
@@ -31,6 +31,7 @@ import io.questdb.cairo.sql.VirtualRecord;
 import io.questdb.griffin.QueryFutureUpdateListener;
 import io.questdb.griffin.SqlExecutionContext;
 import io.questdb.griffin.engine.analytic.AnalyticContext;
+import io.questdb.griffin.engine.analytic.AnalyticContextImpl;
 import io.questdb.std.Rnd;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -39,6 +40,8 @@ public final class AllowAllSqlSecurityContext {
 
     public static SqlExecutionContext instance(@NotNull CairoEngine engine) {
         return new SqlExecutionContext() {
+            private final AnalyticContextImpl analyticContext = new AnalyticContextImpl();
+
             @Override
             public void clearAnalyticContext() {
             }
@@ -49,13 +52,17 @@ public final class AllowAllSqlSecurityContext {
                     @Nullable RecordSink partitionBySink,
                     @Nullable ColumnTypes keyTypes,
                     boolean isOrdered,
-                    boolean baseSupportsRandomAccess
+                    boolean baseSupportsRandomAccess,
+                    int framingMode,
+                    long rowsLo,
+                    long rowsHi,
+                    int timestampIndex
             ) {
             }
 
             @Override
             public AnalyticContext getAnalyticContext() {
-                return null;
+                return analyticContext;
             }
 
             @Override
@@ -239,6 +239,11 @@ public class CairoTestConfiguration extends DefaultTestCairoConfiguration {
         return overrides.getSqlJoinMetadataPageSize() > -1 ? overrides.getSqlJoinMetadataPageSize() : super.getSqlJoinMetadataPageSize();
     }
 
+    @Override
+    public int getSqlMapKeyCapacity() {
+        return overrides.getSqlMapKeyCapacity() > -1 ? overrides.getSqlMapKeyCapacity() : super.getSqlMapKeyCapacity();
+    }
+
     @Override
     public int getSqlPageFrameMaxRows() {
         return overrides.getPageFrameMaxRows() < 0 ? super.getSqlPageFrameMaxRows() : overrides.getPageFrameMaxRows();
@@ -249,6 +254,11 @@ public class CairoTestConfiguration extends DefaultTestCairoConfiguration {
         return telemetryConfiguration;
     }
 
+    @Override
+    public long getWalApplyTableTimeQuota() {
+        return overrides.getWalApplyTableTimeQuota() < 0 ? super.getWalApplyTableTimeQuota() : overrides.getWalApplyTableTimeQuota();
+    }
+
     @Override
     public boolean getWalEnabledDefault() {
         return overrides.getDefaultTableWriteMode() < 0 ? super.getWalEnabledDefault() : overrides.getDefaultTableWriteMode() == 1;
@@ -319,6 +329,21 @@ public class CairoTestConfiguration extends DefaultTestCairoConfiguration {
         return overrides.isColumnPreTouchEnabled() != null ? overrides.isColumnPreTouchEnabled() : super.isSqlParallelFilterPreTouchEnabled();
     }
 
+    @Override
+    public long getSqlQueryMemoryBudget() {
+        return overrides.getQueryMemoryBudget() > -1 ? overrides.getQueryMemoryBudget() : super.getSqlQueryMemoryBudget();
+    }
+
+    @Override
+    public boolean isPartitionStatsEnabled() {
+        return overrides.isPartitionStatsEnabled() != null ? overrides.isPartitionStatsEnabled() : super.isPartitionStatsEnabled();
+    }
+
+    @Override
+    public long getPartitionCompressionAge() {
+        return overrides.getPartitionCompressionAge() > -1 ? overrides.getPartitionCompressionAge() : super.getPartitionCompressionAge();
+    }
+
     @Override
     public boolean isWalSupported() {
         return true;
@@ -0,0 +1,293 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo;
+
+import io.questdb.griffin.SqlCompiler;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.SqlExecutionContextImpl;
+import io.questdb.std.FilesFacade;
+import io.questdb.std.MemoryTag;
+import io.questdb.std.Unsafe;
+import io.questdb.std.Zip;
+import io.questdb.std.str.Path;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ColumnBufferCacheTest extends AbstractCairoTest {
+
+    @Test
+    public void testColdPartitionsReadFromCache() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final CairoConfiguration configuration = new DefaultTestCairoConfiguration(root) {
+                @Override
+                public long getColumnBufferCachePartitionAge() {
+                    return 0;
+                }
+
+                @Override
+                public long getColumnBufferCacheSize() {
+                    return 16 * 1024 * 1024;
+                }
+            };
+            try (
+                    CairoEngine engine = new CairoEngine(configuration);
+                    SqlCompiler compiler = new SqlCompiler(engine);
+                    SqlExecutionContext executionContext = new SqlExecutionContextImpl(engine, 1)
+            ) {
+                final ColumnBufferCache cache = engine.getColumnBufferCache();
+                Assert.assertNotNull(cache);
+
+                compiler.compile(
+                        "create table x as (" +
+                                "select x, rnd_str(3, 10, 0) s, timestamp_sequence(0, 3600000000) ts from long_sequence(72)" +
+                                ") timestamp(ts) partition by day",
+                        executionContext
+                );
+
+                final String expected = "count\tsum\tcount1\n" +
+                        "72\t2628\t72\n";
+                final String query = "select count(), sum(x), count(s) from x";
+
+                TestUtils.assertSql(compiler, executionContext, query, sink, expected);
+                // x, s (data and index) and ts of the two cold partitions, the last partition is mapped
+                Assert.assertEquals(8, cache.getEntryCount());
+                Assert.assertTrue(cache.getUsedSize() > 0);
+                final long missCount = cache.getMissCount();
+
+                // the pooled reader holds on to the entries, a second reader shares them
+                try (
+                        TableReader ignore = engine.getReader(executionContext.getCairoSecurityContext(), engine.getTableToken("x"));
+                        TableReader reader = new TableReader(configuration, engine.getTableToken("x"), engine.getMessageBus(), cache)
+                ) {
+                    Assert.assertEquals(72, reader.size());
+                    TestUtils.assertSql(compiler, executionContext, query, sink, expected);
+                }
+                Assert.assertEquals(missCount, cache.getMissCount());
+                Assert.assertTrue(cache.getHitCount() > 0);
+
+                engine.releaseAllReaders();
+                // entries outlive the readers and are hit by the next query
+                final long hitCount = cache.getHitCount();
+                TestUtils.assertSql(compiler, executionContext, query, sink, expected);
+                Assert.assertEquals(missCount, cache.getMissCount());
+                Assert.assertTrue(cache.getHitCount() > hitCount);
+            }
+        });
+    }
+
+    @Test
+    public void testCompressedPartitionsShareCache() throws Exception {
+        // static gzip header is allocated on first use and would be reported as a leak
+        Zip.init();
+        TestUtils.assertMemoryLeak(() -> {
+            final CairoConfiguration configuration = new DefaultTestCairoConfiguration(root) {
+                @Override
+                public long getColumnBufferCachePartitionAge() {
+                    // native partitions are mapped, only compressed ones go to the cache
+                    return Long.MAX_VALUE / 1000;
+                }
+
+                @Override
+                public long getColumnBufferCacheSize() {
+                    return 64 * 1024 * 1024;
+                }
+            };
+            try (
+                    CairoEngine engine = new CairoEngine(configuration);
+                    SqlCompiler compiler = new SqlCompiler(engine);
+                    SqlExecutionContext executionContext = new SqlExecutionContextImpl(engine, 1)
+            ) {
+                final ColumnBufferCache cache = engine.getColumnBufferCache();
+                Assert.assertNotNull(cache);
+
+                // several compression blocks per column
+                compiler.compile(
+                        "create table x as (" +
+                                "select x, rnd_str(3, 10, 0) s, timestamp_sequence(0, 500000L) ts from long_sequence(400000)" +
+                                ") timestamp(ts) partition by day",
+                        executionContext
+                );
+                final String query = "select count(), sum(x), count(s) from x";
+                final String expected = "count\tsum\tcount1\n" +
+                        "400000\t80000200000\t400000\n";
+                TestUtils.assertSql(compiler, executionContext, query, sink, expected);
+                Assert.assertEquals(0, cache.getEntryCount());
+
+                compiler.compile("alter table x convert partition to compressed where ts < '1970-01-03'", executionContext).execute(null).await();
+                engine.releaseAllReaders();
+
+                // point lookup decompresses only the blocks it reads
+                TestUtils.assertSql(compiler, executionContext, "select x from x where ts = '1970-01-01T12:00:00.000000Z'", sink, "x\n86401\n");
+                Assert.assertTrue(cache.getEntryCount() > 0);
+
+                TestUtils.assertSql(compiler, executionContext, query, sink, expected);
+                final long missCount = cache.getMissCount();
+                final int entryCount = cache.getEntryCount();
+                try (TableReader reader = new TableReader(configuration, engine.getTableToken("x"), engine.getMessageBus(), cache)) {
+                    Assert.assertEquals(400000, reader.size());
+                    // second reader shares blocks decompressed by the first one
+                    for (int i = 0, n = reader.getPartitionCount(); i < n; i++) {
+                        reader.openPartition(i);
+                    }
+                    TestUtils.assertSql(compiler, executionContext, query, sink, expected);
+                }
+                Assert.assertEquals(missCount, cache.getMissCount());
+                Assert.assertEquals(entryCount, cache.getEntryCount());
+            }
+        });
+    }
+
+    @Test
+    public void testFileDoesNotFit() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            try (
+                    Path path = new Path();
+                    ColumnBufferCache cache = new ColumnBufferCache(cacheConfiguration(1024, null))
+            ) {
+                final int fd = createFile(path, "big.d", 2048);
+                try {
+                    Assert.assertNull(cache.acquire(path, fd, 2048, ColumnBufferCache.PRIORITY_LOW));
+                    Assert.assertEquals(0, cache.getEntryCount());
+                    Assert.assertEquals(0, cache.getUsedSize());
+
+                    final ColumnBufferCache.Entry entry = cache.acquire(path, fd, 1024, ColumnBufferCache.PRIORITY_LOW);
+                    Assert.assertNotNull(entry);
+                    assertContent(entry.getAddress(), 1024);
+                    cache.release(entry);
+                } finally {
+                    configuration.getFilesFacade().close(fd);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testPinnedEntriesAreNotEvicted() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            try (
+                    Path path = new Path();
+                    ColumnBufferCache cache = new ColumnBufferCache(cacheConfiguration(2048, null))
+            ) {
+                final int fd1 = createFile(path, "a.d", 1024);
+                final int fd2 = createFile(path, "b.d", 1024);
+                final int fd3 = createFile(path, "c.d", 1024);
+                try {
+                    final ColumnBufferCache.Entry a = cache.acquire(path.of(root).concat("a.d").$(), fd1, 1024, ColumnBufferCache.PRIORITY_LOW);
+                    final ColumnBufferCache.Entry b = cache.acquire(path.of(root).concat("b.d").$(), fd2, 1024, ColumnBufferCache.PRIORITY_LOW);
+                    Assert.assertNotNull(a);
+                    Assert.assertNotNull(b);
+
+                    // both entries are in use
+                    Assert.assertNull(cache.acquire(path.of(root).concat("c.d").$(), fd3, 1024, ColumnBufferCache.PRIORITY_LOW));
+
+                    cache.release(a);
+                    final ColumnBufferCache.Entry c = cache.acquire(path.of(root).concat("c.d").$(), fd3, 1024, ColumnBufferCache.PRIORITY_LOW);
+                    Assert.assertNotNull(c);
+                    Assert.assertEquals(2, cache.getEntryCount());
+                    assertContent(b.getAddress(), 1024);
+                    assertContent(c.getAddress(), 1024);
+                    cache.release(b);
+                    cache.release(c);
+                } finally {
+                    configuration.getFilesFacade().close(fd1);
+                    configuration.getFilesFacade().close(fd2);
+                    configuration.getFilesFacade().close(fd3);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testPriorityTableOutlivesScans() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            try (
+                    Path path = new Path();
+                    ColumnBufferCache cache = new ColumnBufferCache(cacheConfiguration(2048, "trades, quotes"))
+            ) {
+                Assert.assertEquals(ColumnBufferCache.PRIORITY_HIGH, cache.getPriority("quotes"));
+                Assert.assertEquals(ColumnBufferCache.PRIORITY_LOW, cache.getPriority("x"));
+
+                final int fd1 = createFile(path, "hot.d", 1024);
+                final int fd2 = createFile(path, "scan1.d", 1024);
+                final int fd3 = createFile(path, "scan2.d", 1024);
+                try {
+                    cache.release(cache.acquire(path.of(root).concat("hot.d").$(), fd1, 1024, cache.getPriority("trades")));
+                    cache.release(cache.acquire(path.of(root).concat("scan1.d").$(), fd2, 1024, cache.getPriority("x")));
+                    // the scan evicts the previous scan rather than the priority table
+                    cache.release(cache.acquire(path.of(root).concat("scan2.d").$(), fd3, 1024, cache.getPriority("x")));
+                    Assert.assertEquals(2, cache.getEntryCount());
+                    Assert.assertEquals(3, cache.getMissCount());
+
+                    final ColumnBufferCache.Entry hot = cache.acquire(path.of(root).concat("hot.d").$(), fd1, 1024, cache.getPriority("trades"));
+                    Assert.assertNotNull(hot);
+                    Assert.assertEquals(1, cache.getHitCount());
+                    assertContent(hot.getAddress(), 1024);
+                    cache.release(hot);
+                } finally {
+                    configuration.getFilesFacade().close(fd1);
+                    configuration.getFilesFacade().close(fd2);
+                    configuration.getFilesFacade().close(fd3);
+                }
+            }
+        });
+    }
+
+    private static void assertContent(long address, long size) {
+        for (long i = 0; i < size; i++) {
+            Assert.assertEquals((byte) i, Unsafe.getUnsafe().getByte(address + i));
+        }
+    }
+
+    private static CairoConfiguration cacheConfiguration(long size, String priorityTables) {
+        return new DefaultTestCairoConfiguration(root) {
+            @Override
+            public String getColumnBufferCachePriorityTables() {
+                return priorityTables;
+            }
+
+            @Override
+            public long getColumnBufferCacheSize() {
+                return size;
+            }
+        };
+    }
+
+    private static int createFile(Path path, String name, long size) {
+        final FilesFacade ff = configuration.getFilesFacade();
+        final int fd = ff.openRW(path.of(root).concat(name).$(), configuration.getWriterFileOpenOpts());
+        Assert.assertTrue(fd > -1);
+        final long buf = Unsafe.malloc(size, MemoryTag.NATIVE_DEFAULT);
+        try {
+            for (long i = 0; i < size; i++) {
+                Unsafe.getUnsafe().putByte(buf + i, (byte) i);
+            }
+            Assert.assertEquals(size, ff.write(fd, buf, size, 0));
+        } finally {
+            Unsafe.free(buf, size, MemoryTag.NATIVE_DEFAULT);
+        }
+        return fd;
+    }
+}
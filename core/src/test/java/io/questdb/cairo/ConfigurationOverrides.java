@@ -108,8 +108,12 @@ public interface ConfigurationOverrides {
 
     int getSqlJoinMetadataPageSize();
 
+    int getSqlMapKeyCapacity();
+
     MicrosecondClock getTestMicrosClock();
 
+    long getWalApplyTableTimeQuota();
+
     long getWalPurgeInterval();
 
     long getWalSegmentRolloverRowCount();
@@ -134,6 +138,12 @@ public interface ConfigurationOverrides {
 
     Boolean isParallelFilterEnabled();
 
+    long getQueryMemoryBudget();
+
+    Boolean isPartitionStatsEnabled();
+
+    long getPartitionCompressionAge();
+
     boolean mangleTableDirNames();
 
     void reset();
@@ -200,6 +210,12 @@ public interface ConfigurationOverrides {
 
     void setParallelFilterEnabled(Boolean parallelFilterEnabled);
 
+    void setQueryMemoryBudget(long queryMemoryBudget);
+
+    void setPartitionStatsEnabled(Boolean partitionStatsEnabled);
+
+    void setPartitionCompressionAge(long partitionCompressionAge);
+
     void setParallelImportStatusLogKeepNDays(int parallelImportStatusLogKeepNDays);
 
     void setQueryCacheEventQueueCapacity(int queryCacheEventQueueCapacity);
@@ -226,8 +242,12 @@ public interface ConfigurationOverrides {
 
     void setSqlJoinMetadataPageSize(int sqlJoinMetadataPageSize);
 
+    void setSqlMapKeyCapacity(int sqlMapKeyCapacity);
+
     void setTestMicrosClock(MicrosecondClock testMicrosClock);
 
+    void setWalApplyTableTimeQuota(long walApplyTableTimeQuota);
+
     void setWalPurgeInterval(long walPurgeInterval);
 
     void setWalSegmentRolloverRowCount(long walSegmentRolloverRowCount);
@@ -65,6 +65,9 @@ public class Overrides implements ConfigurationOverrides {
     private int pageFrameReduceQueueCapacity = -1;
     private int pageFrameReduceShardCount = -1;
     private Boolean parallelFilterEnabled = null;
+    private long queryMemoryBudget = -1;
+    private Boolean partitionStatsEnabled = null;
+    private long partitionCompressionAge = -1;
     private int parallelImportStatusLogKeepNDays = -1;
     private int queryCacheEventQueueCapacity = -1;
     private int recreateDistressedSequencerAttempts = 3;
@@ -78,6 +81,8 @@ public class Overrides implements ConfigurationOverrides {
     private int sqlCopyBufferSize = 1024 * 1024;
     private int sqlJoinMetadataMaxResizes = -1;
     private int sqlJoinMetadataPageSize = -1;
+    private int sqlMapKeyCapacity = -1;
+    private long walApplyTableTimeQuota = -1;
     private long walPurgeInterval = -1;
     private long walSegmentRolloverRowCount = -1;
     private int walTxnNotificationQueueCapacity = -1;
@@ -276,11 +281,21 @@ public class Overrides implements ConfigurationOverrides {
         return sqlJoinMetadataPageSize;
     }
 
+    @Override
+    public int getSqlMapKeyCapacity() {
+        return sqlMapKeyCapacity;
+    }
+
     @Override
     public MicrosecondClock getTestMicrosClock() {
         return testMicrosClock;
     }
 
+    @Override
+    public long getWalApplyTableTimeQuota() {
+        return walApplyTableTimeQuota;
+    }
+
     @Override
     public long getWalPurgeInterval() {
         return walPurgeInterval;
@@ -341,6 +356,21 @@ public class Overrides implements ConfigurationOverrides {
         return parallelFilterEnabled;
     }
 
+    @Override
+    public long getQueryMemoryBudget() {
+        return queryMemoryBudget;
+    }
+
+    @Override
+    public Boolean isPartitionStatsEnabled() {
+        return partitionStatsEnabled;
+    }
+
+    @Override
+    public long getPartitionCompressionAge() {
+        return partitionCompressionAge;
+    }
+
     @Override
     public boolean mangleTableDirNames() {
         return mangleTableDirNames;
@@ -365,6 +395,9 @@ public class Overrides implements ConfigurationOverrides {
         snapshotInstanceId = null;
         snapshotRecoveryEnabled = null;
         parallelFilterEnabled = null;
+        queryMemoryBudget = -1;
+        partitionStatsEnabled = null;
+        partitionCompressionAge = -1;
         columnPreTouchEnabled = null;
         writerCommandQueueCapacity = 4;
         queryCacheEventQueueCapacity = -1;
@@ -375,6 +408,7 @@ public class Overrides implements ConfigurationOverrides {
         rostiAllocFacade = null;
         sqlCopyBufferSize = 1024 * 1024;
         sqlJoinMetadataPageSize = -1;
+        sqlMapKeyCapacity = -1;
         sqlJoinMetadataMaxResizes = -1;
         ioURingEnabled = null;
         parallelImportStatusLogKeepNDays = -1;
@@ -387,6 +421,7 @@ public class Overrides implements ConfigurationOverrides {
         walSegmentRolloverRowCount = -1;
         mangleTableDirNames = true;
         walPurgeInterval = -1;
+        walApplyTableTimeQuota = -1;
     }
 
     @Override
@@ -544,6 +579,21 @@ public class Overrides implements ConfigurationOverrides {
         this.parallelFilterEnabled = parallelFilterEnabled;
     }
 
+    @Override
+    public void setQueryMemoryBudget(long queryMemoryBudget) {
+        this.queryMemoryBudget = queryMemoryBudget;
+    }
+
+    @Override
+    public void setPartitionStatsEnabled(Boolean partitionStatsEnabled) {
+        this.partitionStatsEnabled = partitionStatsEnabled;
+    }
+
+    @Override
+    public void setPartitionCompressionAge(long partitionCompressionAge) {
+        this.partitionCompressionAge = partitionCompressionAge;
+    }
+
     @Override
     public void setParallelImportStatusLogKeepNDays(int parallelImportStatusLogKeepNDays) {
         this.parallelImportStatusLogKeepNDays = parallelImportStatusLogKeepNDays;
@@ -609,11 +659,21 @@ public class Overrides implements ConfigurationOverrides {
         this.sqlJoinMetadataPageSize = sqlJoinMetadataPageSize;
     }
 
+    @Override
+    public void setSqlMapKeyCapacity(int sqlMapKeyCapacity) {
+        this.sqlMapKeyCapacity = sqlMapKeyCapacity;
+    }
+
     @Override
     public void setTestMicrosClock(MicrosecondClock testMicrosClock) {
         this.testMicrosClock = testMicrosClock;
     }
 
+    @Override
+    public void setWalApplyTableTimeQuota(long walApplyTableTimeQuota) {
+        this.walApplyTableTimeQuota = walApplyTableTimeQuota;
+    }
+
     @Override
     public void setWalPurgeInterval(long walPurgeInterval) {
         this.walPurgeInterval = walPurgeInterval;
@@ -0,0 +1,259 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo;
+
+import io.questdb.griffin.AbstractGriffinTest;
+import io.questdb.griffin.SqlException;
+import io.questdb.std.Chars;
+import io.questdb.std.FilesFacade;
+import io.questdb.std.TestFilesFacadeImpl;
+import io.questdb.std.str.LPSZ;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PartitionBloomFilterTest extends AbstractGriffinTest {
+
+    @Test
+    public void testAddIndexTwice() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable("x");
+            compile("alter table x alter column id add index type bloom");
+            try {
+                compile("alter table x alter column id add index type bloom");
+                Assert.fail();
+            } catch (CairoException e) {
+                TestUtils.assertContains(e.getFlyweightMessage(), "already bloom indexed");
+            }
+        });
+    }
+
+    @Test
+    public void testFilterRebuiltAfterO3() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable("x");
+            compile("alter table x alter column id add index type bloom");
+            executeInsert("insert into x values (123, 'o3', '00000000-0000-0000-0000-000000000123', '2023-01-01T01:00:00.000000Z')");
+
+            assertPruned(
+                    "select id, s, ts from x where id = 123",
+                    "id\ts\tts\n" +
+                            "123\to3\t2023-01-01T01:00:00.000000Z\n",
+                    2
+            );
+        });
+    }
+
+    @Test
+    public void testFilterRebuiltAfterUpdate() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable("x");
+            compile("alter table x alter column id add index type bloom");
+            compile("update x set id = 777 where ts = '2023-01-02T06:00:00.000000Z'");
+
+            assertPruned(
+                    "select id, ts from x where id = 777",
+                    "id\tts\n" +
+                            "777\t2023-01-02T06:00:00.000000Z\n",
+                    2
+            );
+        });
+    }
+
+    @Test
+    public void testInvalidSyntax() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable("x");
+            assertSyntaxError("alter table x alter column id add index type btree", 45, "'bloom' expected");
+            assertSyntaxError("alter table x alter column id add index type bloom capacity 4", 51, "unexpected token [capacity]");
+            assertSyntaxError("alter table x alter column k add index type bloom", 27, "Invalid column: k");
+            assertSyntaxError("alter table x alter column ts add index type bloom", 27, "bloom index is only supported for LONG, STRING and UUID columns");
+        });
+    }
+
+    @Test
+    public void testMetadata() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable("x");
+            compile("alter table x alter column s add index type bloom");
+            // rewrite metadata with another ALTER to check that the flag is kept
+            compile("alter table x add column v int");
+            engine.releaseAllReaders();
+
+            try (TableReader reader = getReader("x")) {
+                final TableReaderMetadata metadata = reader.getMetadata();
+                Assert.assertFalse(metadata.getColumnMetadata(metadata.getColumnIndex("id")).isBloomIndexed());
+                Assert.assertTrue(metadata.getColumnMetadata(metadata.getColumnIndex("s")).isBloomIndexed());
+
+                // filters of sealed partitions are built by ALTER, the last partition doesn't have one
+                Assert.assertNotNull(reader.getPartitionBloomFilter(0));
+                Assert.assertNotNull(reader.getPartitionBloomFilter(2));
+                Assert.assertNull(reader.getPartitionBloomFilter(3));
+            }
+        });
+    }
+
+    @Test
+    public void testNotIndexed() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable("x");
+            assertPruned(
+                    "select id, ts from x where id = 47514",
+                    "id\tts\n" +
+                            "47514\t2023-01-02T06:00:00.000000Z\n",
+                    4
+            );
+        });
+    }
+
+    @Test
+    public void testPruneLong() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable("x");
+            compile("alter table x alter column id add index type bloom");
+
+            // min/max of every partition include the value, only the filter can skip them
+            assertPruned(
+                    "select id, ts from x where id = 47514",
+                    "id\tts\n" +
+                            "47514\t2023-01-02T06:00:00.000000Z\n",
+                    2
+            );
+            assertPruned("select id, ts from x where id = 47515", "id\tts\n", 1);
+        });
+    }
+
+    @Test
+    public void testPruneString() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable("x");
+            compile("alter table x alter column s add index type bloom");
+
+            assertPruned(
+                    "select s, ts from x where s = 'v10'",
+                    "s\tts\n" +
+                            "v10\t2023-01-03T06:00:00.000000Z\n",
+                    2
+            );
+            assertPruned("select s, ts from x where 'missing' = s", "s\tts\n", 1);
+            // string nulls are equal to null, they are not in the filter
+            assertPruned(
+                    "select s, ts from x where s = null",
+                    "s\tts\n" +
+                            "\t2023-01-01T12:00:00.000000Z\n" +
+                            "\t2023-01-02T12:00:00.000000Z\n" +
+                            "\t2023-01-03T12:00:00.000000Z\n" +
+                            "\t2023-01-04T12:00:00.000000Z\n",
+                    4
+            );
+        });
+    }
+
+    @Test
+    public void testPruneUuid() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable("x");
+            compile("alter table x alter column u add index type bloom");
+
+            assertPruned(
+                    "select u, ts from x where u = '00000000-0000-0000-0000-000000000011'",
+                    "u\tts\n" +
+                            "00000000-0000-0000-0000-000000000011\t2023-01-01T06:00:00.000000Z\n",
+                    2
+            );
+        });
+    }
+
+    @Test
+    public void testWalTable() throws Exception {
+        assertMemoryLeak(() -> {
+            compile("create table x (id long, s string, u uuid, ts timestamp) timestamp(ts) partition by DAY WAL");
+            compile("alter table x alter column id add index type bloom");
+            executeInsert("insert into x values (1, 'a', null, '2023-01-01T00:00'), (2, 'b', null, '2023-01-02T00:00'), (3, 'c', null, '2023-01-03T00:00')");
+            drainWalQueue();
+
+            try (TableReader reader = getReader("x")) {
+                Assert.assertTrue(reader.getMetadata().getColumnMetadata(0).isBloomIndexed());
+                PartitionBloomFilter filter = reader.getPartitionBloomFilter(0);
+                Assert.assertNotNull(filter);
+                Assert.assertTrue(filter.mightContain(0, ColumnType.LONG, PartitionBloomFilter.hashLong(1)));
+                Assert.assertFalse(filter.mightContain(0, ColumnType.LONG, PartitionBloomFilter.hashLong(2)));
+            }
+
+            assertPruned(
+                    "select id, ts from x where id = 2",
+                    "id\tts\n" +
+                            "2\t2023-01-02T00:00:00.000000Z\n",
+                    2
+            );
+        });
+    }
+
+    private static void createTable(String tableName) throws SqlException {
+        // min and max of id are the same in all partitions
+        compile("create table " + tableName + " as (" +
+                "select case when x % 4 = 1 then 0 when x % 4 = 0 then 1000000 else x * 7919 end id," +
+                " case when x % 4 = 3 then null else 'v' || x end s," +
+                " cast('00000000-0000-0000-0000-0000000000' || (x + 9) as uuid) u," +
+                " timestamp_sequence('2023-01-01', 6 * 3600000000L) ts" +
+                " from long_sequence(16)" +
+                ") timestamp(ts) partition by DAY");
+    }
+
+    private static void assertSyntaxError(String ddl, int position, String message) {
+        try {
+            compile(ddl);
+            Assert.fail();
+        } catch (SqlException e) {
+            Assert.assertEquals(position, e.getPosition());
+            TestUtils.assertContains(e.getFlyweightMessage(), message);
+        }
+    }
+
+    private void assertPruned(String query, String expected, int expectedPartitionsScanned) throws Exception {
+        final AtomicInteger opened = new AtomicInteger();
+        final FilesFacade prevFf = ff;
+        engine.releaseAllReaders();
+        ff = new TestFilesFacadeImpl() {
+            @Override
+            public int openRO(LPSZ name) {
+                // column file name has txn suffix after UPDATE
+                if (Chars.contains(name, "id.d")) {
+                    opened.incrementAndGet();
+                }
+                return super.openRO(name);
+            }
+        };
+        try {
+            assertSql(query, expected);
+        } finally {
+            ff = prevFf;
+            engine.releaseAllReaders();
+        }
+        Assert.assertEquals(expectedPartitionsScanned, opened.get());
+    }
+}
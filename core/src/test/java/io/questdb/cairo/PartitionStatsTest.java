@@ -0,0 +1,391 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cairo;
+
+import io.questdb.griffin.AbstractGriffinTest;
+import io.questdb.std.Chars;
+import io.questdb.std.FilesFacade;
+import io.questdb.std.TestFilesFacadeImpl;
+import io.questdb.std.str.LPSZ;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PartitionStatsTest extends AbstractGriffinTest {
+
+    @Test
+    public void testByteAndShortColumnsAddedLater() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable("x");
+            compile("alter table x add column b byte");
+            compile("alter table x add column s short");
+            executeInsert("insert into x (qty, price, sym, ts, b, s) values (20, 200.0, 'c', '2023-01-05T00:00:00.000000Z', 5, 5)");
+            executeInsert("insert into x (qty, price, sym, ts, b, s) values (21, 210.0, 'c', '2023-01-06T00:00:00.000000Z', -6, -6)");
+
+            try (TableReader reader = getReader("x")) {
+                // column top of BYTE and SHORT reads as 0, not as null
+                PartitionStats stats = reader.getPartitionStats(3);
+                Assert.assertNotNull(stats);
+                for (int i = 4; i < 6; i++) {
+                    Assert.assertEquals(0, stats.getNullCount(i));
+                    Assert.assertEquals(0, stats.getMinLong(i));
+                    Assert.assertEquals(0, stats.getMaxLong(i));
+                }
+            }
+
+            assertSql("select count() from x where b = 0", "count\n16\n");
+            assertSql("select count() from x where b <= 0", "count\n17\n");
+            assertSql("select count() from x where s = 0", "count\n16\n");
+            assertSql("select count() from x where s <= 0", "count\n17\n");
+        });
+    }
+
+    @Test
+    public void testColumnAddedLater() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable("x");
+            compile("alter table x add column v int");
+            executeInsert("insert into x (qty, price, sym, ts, v) values (20, 200.0, 'c', '2023-01-05T00:00:00.000000Z', 7)");
+            executeInsert("insert into x (qty, price, sym, ts, v) values (21, 210.0, 'c', '2023-01-06T00:00:00.000000Z', 8)");
+
+            try (TableReader reader = getReader("x")) {
+                // partition that was sealed before the column was added has no stats for it
+                PartitionStats stats = reader.getPartitionStats(0);
+                Assert.assertNotNull(stats);
+                Assert.assertEquals(-1, stats.getNullCount(4));
+
+                // partition with the column top
+                stats = reader.getPartitionStats(3);
+                Assert.assertNotNull(stats);
+                Assert.assertEquals(4, stats.getNullCount(4));
+
+                stats = reader.getPartitionStats(4);
+                Assert.assertNotNull(stats);
+                Assert.assertEquals(0, stats.getNullCount(4));
+                Assert.assertEquals(7, stats.getMinLong(4));
+                Assert.assertEquals(7, stats.getMaxLong(4));
+            }
+
+            assertSql(
+                    "select qty, v from x where v > 0",
+                    "qty\tv\n" +
+                            "20\t7\n" +
+                            "21\t8\n"
+            );
+        });
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        configOverridePartitionStatsEnabled(false);
+        assertMemoryLeak(() -> {
+            createTable("x");
+            try (TableReader reader = getReader("x")) {
+                for (int i = 0, n = reader.getPartitionCount(); i < n; i++) {
+                    Assert.assertNull(reader.getPartitionStats(i));
+                }
+            }
+            assertSql(
+                    "select qty from x where qty > 14",
+                    "qty\n" +
+                            "15\n" +
+                            "16\n"
+            );
+        });
+    }
+
+    @Test
+    public void testNonPartitionedTable() throws Exception {
+        assertMemoryLeak(() -> {
+            compile("create table x as (select x qty, timestamp_sequence('2023-01-01', 6 * 3600000000L) ts from long_sequence(16)) timestamp(ts)");
+            try (TableReader reader = getReader("x")) {
+                Assert.assertNull(reader.getPartitionStats(0));
+            }
+            assertSql(
+                    "select qty from x where qty > 14",
+                    "qty\n" +
+                            "15\n" +
+                            "16\n"
+            );
+        });
+    }
+
+    @Test
+    public void testPruneAfterO3() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable("x");
+            // O3 into sealed partitions, both append and merge
+            executeInsert("insert into x values (100, 1000.0, 'a', '2023-01-01T23:00:00.000000Z')");
+            executeInsert("insert into x values (200, 2000.0, 'a', '2023-01-02T01:00:00.000000Z')");
+
+            try (TableReader reader = getReader("x")) {
+                PartitionStats stats = reader.getPartitionStats(0);
+                Assert.assertNotNull(stats);
+                Assert.assertEquals(5, stats.getRowCount());
+                Assert.assertEquals(100, stats.getMaxLong(0));
+
+                stats = reader.getPartitionStats(1);
+                Assert.assertNotNull(stats);
+                Assert.assertEquals(5, stats.getRowCount());
+                Assert.assertEquals(200, stats.getMaxLong(0));
+            }
+
+            assertPruned(
+                    "select qty, ts from x where qty > 50",
+                    "qty\tts\n" +
+                            "100\t2023-01-01T23:00:00.000000Z\n" +
+                            "200\t2023-01-02T01:00:00.000000Z\n",
+                    3
+            );
+        });
+    }
+
+    @Test
+    public void testPruneAfterUpdate() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable("x");
+            compile("update x set qty = 1000 where qty = 2");
+
+            try (TableReader reader = getReader("x")) {
+                final PartitionStats stats = reader.getPartitionStats(0);
+                Assert.assertNotNull(stats);
+                Assert.assertEquals(1000, stats.getMaxLong(0));
+            }
+
+            assertSql(
+                    "select qty, ts from x where qty > 500",
+                    "qty\tts\n" +
+                            "1000\t2023-01-01T06:00:00.000000Z\n"
+            );
+        });
+    }
+
+    @Test
+    public void testPruneComparisons() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable("x");
+
+            // sealed partitions 0 and 1 cannot match, last partition is always scanned
+            assertPruned(
+                    "select qty from x where qty > 10",
+                    "qty\n" +
+                            "11\n" +
+                            "12\n" +
+                            "13\n" +
+                            "14\n" +
+                            "15\n" +
+                            "16\n",
+                    2
+            );
+
+            assertPruned(
+                    "select qty from x where 6 >= qty",
+                    "qty\n" +
+                            "1\n" +
+                            "2\n" +
+                            "3\n" +
+                            "4\n" +
+                            "5\n" +
+                            "6\n",
+                    3
+            );
+
+            assertPruned(
+                    "select qty from x where qty = 9",
+                    "qty\n" +
+                            "9\n",
+                    2
+            );
+
+            assertPruned(
+                    "select qty from x where price < 25.0 and qty > -1",
+                    "qty\n" +
+                            "1\n" +
+                            "2\n",
+                    2
+            );
+
+            assertPruned(
+                    "select qty from x where qty > -5 and price >= 155.0",
+                    "qty\n" +
+                            "16\n",
+                    1
+            );
+
+            // descending scan
+            assertPruned(
+                    "select qty from x where qty < 3 order by ts desc",
+                    "qty\n" +
+                            "2\n" +
+                            "1\n",
+                    2
+            );
+
+            // interval scan
+            assertPruned(
+                    "select qty from x where ts > '2023-01-01T10:00' and qty > 10",
+                    "qty\n" +
+                            "11\n" +
+                            "12\n" +
+                            "13\n" +
+                            "14\n" +
+                            "15\n" +
+                            "16\n",
+                    2
+            );
+        });
+    }
+
+    @Test
+    public void testPruneNulls() throws Exception {
+        assertMemoryLeak(() -> {
+            compile("create table x as (" +
+                    "select case when x > 8 then x else null end qty, timestamp_sequence('2023-01-01', 6 * 3600000000L) ts" +
+                    " from long_sequence(16)" +
+                    ") timestamp(ts) partition by DAY");
+
+            try (TableReader reader = getReader("x")) {
+                final PartitionStats stats = reader.getPartitionStats(0);
+                Assert.assertNotNull(stats);
+                Assert.assertEquals(4, stats.getNullCount(0));
+            }
+
+            assertSql(
+                    "select qty from x where qty < 10",
+                    "qty\n" +
+                            "9\n"
+            );
+        });
+    }
+
+    @Test
+    public void testPruneSymbol() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable("x");
+            assertPruned(
+                    "select qty, sym from x where sym = 'c'",
+                    "qty\tsym\n" +
+                            "9\tc\n" +
+                            "10\tc\n" +
+                            "11\tc\n" +
+                            "12\tc\n",
+                    2
+            );
+        });
+    }
+
+    @Test
+    public void testStats() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable("x");
+            try (TableReader reader = getReader("x")) {
+                Assert.assertEquals(4, reader.getPartitionCount());
+                for (int i = 0; i < 3; i++) {
+                    final PartitionStats stats = reader.getPartitionStats(i);
+                    Assert.assertNotNull(stats);
+                    Assert.assertEquals(4, stats.getRowCount());
+
+                    // qty
+                    Assert.assertEquals(0, stats.getNullCount(0));
+                    Assert.assertEquals(i * 4 + 1, stats.getMinLong(0));
+                    Assert.assertEquals(i * 4 + 4, stats.getMaxLong(0));
+
+                    // price
+                    Assert.assertEquals(0, stats.getNullCount(1));
+                    Assert.assertEquals((i * 4 + 1) * 10.0, stats.getMinDouble(1), 0.000001);
+                    Assert.assertEquals((i * 4 + 4) * 10.0, stats.getMaxDouble(1), 0.000001);
+
+                    // sym
+                    Assert.assertEquals(0, stats.getNullCount(2));
+                    Assert.assertEquals(stats.getMinLong(2), stats.getMaxLong(2));
+                }
+                // the last partition is still being appended to
+                Assert.assertNull(reader.getPartitionStats(3));
+            }
+        });
+    }
+
+    @Test
+    public void testWalTable() throws Exception {
+        assertMemoryLeak(() -> {
+            compile("create table x (qty long, ts timestamp) timestamp(ts) partition by DAY WAL");
+            executeInsert("insert into x values (1, '2023-01-01T00:00'), (2, '2023-01-01T12:00'), (3, '2023-01-02T00:00')");
+            drainWalQueue();
+            executeInsert("insert into x values (4, '2023-01-03T00:00')");
+            drainWalQueue();
+
+            try (TableReader reader = getReader("x")) {
+                PartitionStats stats = reader.getPartitionStats(0);
+                Assert.assertNotNull(stats);
+                Assert.assertEquals(1, stats.getMinLong(0));
+                Assert.assertEquals(2, stats.getMaxLong(0));
+
+                stats = reader.getPartitionStats(1);
+                Assert.assertNotNull(stats);
+                Assert.assertEquals(3, stats.getMinLong(0));
+                Assert.assertEquals(3, stats.getMaxLong(0));
+            }
+
+            assertSql(
+                    "select qty from x where qty > 2",
+                    "qty\n" +
+                            "3\n" +
+                            "4\n"
+            );
+        });
+    }
+
+    private static void createTable(String tableName) throws Exception {
+        compile("create table " + tableName + " as (" +
+                "select x qty, x * 10.0 price, case when x <= 4 then 'a' when x <= 8 then 'b' when x <= 12 then 'c' else 'd' end::symbol sym," +
+                " timestamp_sequence('2023-01-01', 6 * 3600000000L) ts" +
+                " from long_sequence(16)" +
+                ") timestamp(ts) partition by DAY");
+    }
+
+    private void assertPruned(String query, String expected, int expectedPartitionsScanned) throws Exception {
+        final AtomicInteger opened = new AtomicInteger();
+        final FilesFacade prevFf = ff;
+        engine.releaseAllReaders();
+        ff = new TestFilesFacadeImpl() {
+            @Override
+            public int openRO(LPSZ name) {
+                if (Chars.endsWith(name, "qty.d")) {
+                    opened.incrementAndGet();
+                }
+                return super.openRO(name);
+            }
+        };
+        try {
+            assertSql(query, expected);
+        } finally {
+            ff = prevFf;
+            engine.releaseAllReaders();
+        }
+        Assert.assertEquals(expectedPartitionsScanned, opened.get());
+    }
+}
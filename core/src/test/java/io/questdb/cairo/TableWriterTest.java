@@ -644,6 +644,12 @@ public class TableWriterTest extends AbstractCairoTest {
             public FilesFacade getFilesFacade() {
                 return ff;
             }
+
+            @Override
+            public boolean isPartitionStatsEnabled() {
+                // partition stats read column files on commit, keep the failure on the indexer's open
+                return false;
+            }
         };
 
         testAddIndexAndFailToIndexHalfWay(configuration, PartitionBy.DAY, 1000);
@@ -0,0 +1,221 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cairo.map;
+
+import io.questdb.cairo.*;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.std.Files;
+import io.questdb.std.str.Path;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FastMapSpillerTest extends AbstractCairoTest {
+
+    @Test
+    public void testSpillFixedSizeKeys() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final int N = 10000;
+            try (
+                    FastMap map = new FastMap(
+                            1024,
+                            new SingleColumnType(ColumnType.LONG),
+                            new SingleColumnType(ColumnType.LONG),
+                            16, 0.5f, Integer.MAX_VALUE
+                    );
+                    FastMapSpiller spiller = new FastMapSpiller(configuration, 8)
+            ) {
+                Assert.assertFalse(spiller.isSpilled());
+
+                // spill 3 rounds: all keys, even keys and keys divisible by 3; the value is the round number
+                for (int round = 1; round < 4; round++) {
+                    for (int i = 0; i < N; i += round) {
+                        MapKey key = map.withKey();
+                        key.putLong(i);
+                        key.createValue().putLong(0, round);
+                    }
+                    spiller.spill(map);
+                    map.restoreInitialCapacity();
+                }
+                Assert.assertTrue(spiller.isSpilled());
+
+                long totalSize = 0;
+                for (int p = 0, n = spiller.getPartitionCount(); p < n; p++) {
+                    map.clear();
+                    // merge function records the merge order, e.g. 123 for a key spilled in all rounds
+                    Assert.assertTrue(spiller.load(p, map, (destValue, srcValue) -> destValue.putLong(0, destValue.getLong(0) * 10 + srcValue.getLong(0)), 0));
+                    totalSize += map.size();
+
+                    RecordCursor cursor = map.getCursor();
+                    MapRecord record = (MapRecord) cursor.getRecord();
+                    while (cursor.hasNext()) {
+                        long k = record.getLong(1);
+                        long expected = 1;
+                        if (k % 2 == 0) {
+                            expected = expected * 10 + 2;
+                        }
+                        if (k % 3 == 0) {
+                            expected = expected * 10 + 3;
+                        }
+                        Assert.assertEquals(expected, record.getValue().getLong(0));
+                    }
+                }
+                Assert.assertEquals(N, totalSize);
+
+                spiller.clear();
+                Assert.assertFalse(spiller.isSpilled());
+                assertNoSpillFiles();
+            }
+        });
+    }
+
+    @Test
+    public void testSplitOversizedPartitions() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final int N = 20000;
+            // a partition holds about N / 2 keys of 16 bytes each (with the value), twice the budget
+            final long memoryBudget = 16 * N / 4;
+            try (
+                    FastMap map = new FastMap(
+                            1024,
+                            new SingleColumnType(ColumnType.LONG),
+                            new SingleColumnType(ColumnType.LONG),
+                            16, 0.5f, Integer.MAX_VALUE
+                    );
+                    FastMapSpiller spiller = new FastMapSpiller(configuration, 2)
+            ) {
+                for (int round = 1; round < 4; round++) {
+                    for (int i = 0; i < N; i += round) {
+                        MapKey key = map.withKey();
+                        key.putLong(i);
+                        key.createValue().putLong(0, round);
+                    }
+                    spiller.spill(map);
+                    map.restoreInitialCapacity();
+                }
+
+                FastMapSpillCursor cursor = new FastMapSpillCursor(map, spiller);
+                // the merge order must survive the splits; split partitions merge partially merged values,
+                // e.g. 1 and 23, so the merge function concatenates the digits
+                cursor.of((destValue, srcValue) -> {
+                    final long src = srcValue.getLong(0);
+                    destValue.putLong(0, destValue.getLong(0) * (src < 10 ? 10 : 100) + src);
+                }, memoryBudget);
+                MapRecord record = (MapRecord) cursor.getRecord();
+                long size = 0;
+                long maxHeapSize = 0;
+                while (cursor.hasNext()) {
+                    long k = record.getLong(1);
+                    long expected = 1;
+                    if (k % 2 == 0) {
+                        expected = expected * 10 + 2;
+                    }
+                    if (k % 3 == 0) {
+                        expected = expected * 10 + 3;
+                    }
+                    Assert.assertEquals(expected, record.getValue().getLong(0));
+                    maxHeapSize = Math.max(maxHeapSize, map.getUsedHeapSize());
+                    size++;
+                }
+                Assert.assertEquals(N, size);
+                Assert.assertNotNull(spiller.getChild());
+                Assert.assertTrue(maxHeapSize <= memoryBudget);
+
+                cursor.close();
+                Assert.assertFalse(spiller.isSpilled());
+                assertNoSpillFiles();
+            }
+        });
+    }
+
+    @Test
+    public void testSpillVarSizeKeys() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final int N = 1000;
+            ArrayColumnTypes keyTypes = new ArrayColumnTypes();
+            keyTypes.add(ColumnType.STRING);
+            keyTypes.add(ColumnType.INT);
+            // a key larger than both write and read buffers
+            final String largeKey = keyOf(200_000);
+            try (
+                    FastMap map = new FastMap(1024, keyTypes, new SingleColumnType(ColumnType.LONG), 16, 0.5f, Integer.MAX_VALUE);
+                    FastMapSpiller spiller = new FastMapSpiller(configuration, 4)
+            ) {
+                for (int round = 0; round < 2; round++) {
+                    for (int i = 0; i < N; i++) {
+                        MapKey key = map.withKey();
+                        key.putStr(i == N / 2 ? largeKey : keyOf(i % 50));
+                        key.putInt(i);
+                        key.createValue().putLong(0, i);
+                    }
+                    spiller.spill(map);
+                    map.restoreInitialCapacity();
+                }
+
+                long totalSize = 0;
+                for (int p = 0, n = spiller.getPartitionCount(); p < n; p++) {
+                    map.clear();
+                    Assert.assertTrue(spiller.load(p, map, (destValue, srcValue) -> destValue.addLong(0, srcValue.getLong(0)), 0));
+                    totalSize += map.size();
+
+                    RecordCursor cursor = map.getCursor();
+                    MapRecord record = (MapRecord) cursor.getRecord();
+                    while (cursor.hasNext()) {
+                        int i = record.getInt(2);
+                        Assert.assertEquals(2L * i, record.getValue().getLong(0));
+                        TestUtils.assertEquals(i == N / 2 ? largeKey : keyOf(i % 50), record.getStr(1));
+                    }
+                }
+                Assert.assertEquals(N, totalSize);
+            }
+            assertNoSpillFiles();
+        });
+    }
+
+    private static String keyOf(int len) {
+        StringBuilder sb = new StringBuilder("k");
+        for (int j = 0; j < len; j++) {
+            sb.append('y');
+        }
+        return sb.toString();
+    }
+
+    private static void assertNoSpillFiles() {
+        try (Path path = new Path()) {
+            path.of(configuration.getRoot()).concat(FastMapSpiller.SPILL_DIR).$();
+            Assert.assertTrue(Files.exists(path));
+            final long p = Files.findFirst(path);
+            try {
+                do {
+                    final long name = Files.findName(p);
+                    Assert.assertFalse(Files.notDots(name));
+                } while (Files.findNext(p) > 0);
+            } finally {
+                Files.findClose(p);
+            }
+        }
+    }
+}
@@ -566,6 +566,49 @@ public class FastMapTest extends AbstractCairoTest {
         });
     }
 
+    @Test
+    public void testFindValueOfKeyInOtherMap() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            Rnd rnd = new Rnd();
+            int N = 1000;
+            ArrayColumnTypes keyTypes = new ArrayColumnTypes();
+            keyTypes.add(ColumnType.STRING);
+            keyTypes.add(ColumnType.INT);
+            try (
+                    FastMap map = new FastMap(1024, keyTypes, new SingleColumnType(ColumnType.LONG), 16, 0.5f, Integer.MAX_VALUE);
+                    FastMap keyMap = new FastMap(1024, keyTypes, new SingleColumnType(ColumnType.LONG), 16, 0.5f, Integer.MAX_VALUE)
+            ) {
+                for (int i = 0; i < N; i++) {
+                    MapKey key = map.withKey();
+                    key.putStr(rnd.nextChars(i % 10 + 1));
+                    key.putInt(i);
+                    key.createValue().putLong(0, i);
+                }
+                final long areaSize = map.getAreaSize();
+
+                rnd.reset();
+                for (int i = 0; i < N; i++) {
+                    MapKey key = keyMap.withKey();
+                    key.putStr(rnd.nextChars(i % 10 + 1));
+                    key.putInt(i);
+                    MapValue value = map.findValue(keyMap);
+                    Assert.assertNotNull(value);
+                    Assert.assertEquals(i, value.getLong(0));
+
+                    key = keyMap.withKey();
+                    key.putStr("missing");
+                    key.putInt(i);
+                    Assert.assertNull(map.findValue(keyMap));
+                }
+
+                // lookups must not modify either of the maps
+                Assert.assertEquals(N, map.size());
+                Assert.assertEquals(areaSize, map.getAreaSize());
+                Assert.assertEquals(0, keyMap.size());
+            }
+        });
+    }
+
     @Test
     public void testGeoHashRecordAsKey() throws Exception {
         TestUtils.assertMemoryLeak(() -> {
@@ -785,6 +828,136 @@ public class FastMapTest extends AbstractCairoTest {
         }
     }
 
+    @Test
+    public void testMergeFixedSizeKeys() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            int N = 1000;
+            try (
+                    FastMap mapA = new FastMap(
+                            1024,
+                            new SingleColumnType(ColumnType.LONG),
+                            new SingleColumnType(ColumnType.LONG),
+                            16, 0.5f, Integer.MAX_VALUE
+                    );
+                    FastMap mapB = new FastMap(
+                            1024,
+                            new SingleColumnType(ColumnType.LONG),
+                            new SingleColumnType(ColumnType.LONG),
+                            16, 0.5f, Integer.MAX_VALUE
+                    )
+            ) {
+                // mapA has even keys, mapB has keys divisible by 3, so some of the keys overlap
+                for (int i = 0; i < N; i += 2) {
+                    MapKey key = mapA.withKey();
+                    key.putLong(i);
+                    MapValue value = key.createValue();
+                    Assert.assertTrue(value.isNew());
+                    value.putLong(0, i);
+                }
+                for (int i = 0; i < N; i += 3) {
+                    MapKey key = mapB.withKey();
+                    key.putLong(i);
+                    MapValue value = key.createValue();
+                    Assert.assertTrue(value.isNew());
+                    value.putLong(0, i);
+                }
+
+                mapA.merge(mapB, (destValue, srcValue) -> destValue.addLong(0, srcValue.getLong(0)));
+
+                int expectedSize = 0;
+                for (int i = 0; i < N; i++) {
+                    MapKey key = mapA.withKey();
+                    key.putLong(i);
+                    MapValue value = key.findValue();
+                    long expectedValue = 0;
+                    if (i % 2 == 0) {
+                        expectedValue += i;
+                    }
+                    if (i % 3 == 0) {
+                        expectedValue += i;
+                    }
+                    if (i % 2 == 0 || i % 3 == 0) {
+                        expectedSize++;
+                        Assert.assertNotNull(value);
+                        Assert.assertEquals(expectedValue, value.getLong(0));
+                    } else {
+                        Assert.assertNull(value);
+                    }
+                }
+                Assert.assertEquals(expectedSize, mapA.size());
+                // source map must stay intact
+                Assert.assertEquals((N + 2) / 3, mapB.size());
+
+                // merged map must be iterable
+                long count = 0;
+                RecordCursor cursor = mapA.getCursor();
+                while (cursor.hasNext()) {
+                    count++;
+                }
+                Assert.assertEquals(expectedSize, count);
+            }
+        });
+    }
+
+    @Test
+    public void testMergeVarSizeKeys() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            Rnd rnd = new Rnd();
+            int N = 500;
+            try (
+                    FastMap mapA = new FastMap(
+                            1024,
+                            new SingleColumnType(ColumnType.STRING),
+                            new SingleColumnType(ColumnType.LONG),
+                            16, 0.5f, Integer.MAX_VALUE
+                    );
+                    FastMap mapB = new FastMap(
+                            1024,
+                            new SingleColumnType(ColumnType.STRING),
+                            new SingleColumnType(ColumnType.LONG),
+                            16, 0.5f, Integer.MAX_VALUE
+                    )
+            ) {
+                ObjList<String> keys = new ObjList<>();
+                for (int i = 0; i < N; i++) {
+                    // vary the key length to exercise var-size entries
+                    keys.add(i + "_" + rnd.nextChars(i % 17));
+                }
+
+                for (int i = 0; i < N; i++) {
+                    MapKey key = mapA.withKey();
+                    key.putStr(keys.getQuick(i));
+                    key.createValue().putLong(0, 1);
+                }
+                for (int i = N / 2; i < N; i++) {
+                    MapKey key = mapB.withKey();
+                    key.putStr(keys.getQuick(i));
+                    key.createValue().putLong(0, 10);
+                }
+                // null key is present in the source map only
+                MapKey nullKey = mapB.withKey();
+                nullKey.putStr(null);
+                nullKey.createValue().putLong(0, 42);
+
+                mapA.merge(mapB, (destValue, srcValue) -> destValue.addLong(0, srcValue.getLong(0)));
+
+                Assert.assertEquals(N + 1, mapA.size());
+                for (int i = 0; i < N; i++) {
+                    MapKey key = mapA.withKey();
+                    key.putStr(keys.getQuick(i));
+                    MapValue value = key.findValue();
+                    Assert.assertNotNull(value);
+                    Assert.assertEquals(i < N / 2 ? 1 : 11, value.getLong(0));
+                }
+                nullKey = mapA.withKey();
+                nullKey.putStr(null);
+                MapValue value = nullKey.findValue();
+                Assert.assertNotNull(value);
+                Assert.assertEquals(42, value.getLong(0));
+            }
+        });
+    }
+
     @Test
     public void testNoValueColumns() throws Exception {
         TestUtils.assertMemoryLeak(() -> {
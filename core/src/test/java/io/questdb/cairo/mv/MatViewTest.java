@@ -0,0 +1,274 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cairo.mv;
+
+import io.questdb.cairo.TableWriter;
+import io.questdb.griffin.AbstractGriffinTest;
+import io.questdb.std.LongList;
+import io.questdb.std.ObjList;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MatViewTest extends AbstractGriffinTest {
+    private static final String VIEW_QUERY = "select sym, sum(price) total, count() cnt, ts from base sample by 1h align to calendar";
+
+    @Test
+    public void testBaseTableNotWal() throws Exception {
+        assertFailure(
+                "create materialized view v as (select sym, sum(price) total, ts from base sample by 1h align to calendar)",
+                "create table base (sym symbol, price double, ts timestamp) timestamp(ts) partition by DAY BYPASS WAL",
+                25,
+                "materialized view base table must be a WAL table"
+        );
+    }
+
+    @Test
+    public void testBaseTableCommitDuringCreate() throws Exception {
+        assertMemoryLeak(() -> {
+            createBaseTable();
+            final MatViewGraph graph = engine.getMatViewGraph();
+            final LongList range = new LongList();
+
+            // commit lands after the view has read the base table, but before the view is registered
+            graph.trackBaseTable("base");
+            graph.notifyBaseTableCommit("base", 10, 20);
+            Assert.assertNull(graph.pollPendingRefresh(range));
+            compile("create materialized view price_1h as (" + VIEW_QUERY + ")");
+            graph.untrackBaseTable("base");
+
+            Assert.assertEquals("base", graph.pollPendingRefresh(range));
+            Assert.assertEquals(10, range.getQuick(0));
+            Assert.assertEquals(20, range.getQuick(1));
+
+            // commits recorded for a view that failed to register are dropped
+            graph.trackBaseTable("other");
+            graph.notifyBaseTableCommit("other", 10, 20);
+            graph.untrackBaseTable("other");
+            Assert.assertNull(graph.pollPendingRefresh(range));
+        });
+    }
+
+    @Test
+    public void testCreateAndRefresh() throws Exception {
+        assertMemoryLeak(() -> {
+            createBaseTable();
+            executeInsert("insert into base values ('a', 1.0, '2023-01-01T00:10'), ('b', 2.0, '2023-01-01T00:20'), ('a', 3.0, '2023-01-01T01:30')");
+            drainWalQueue();
+
+            compile("create materialized view price_1h as (" + VIEW_QUERY + ") partition by DAY");
+            assertSql(
+                    "price_1h",
+                    "sym\ttotal\tcnt\tts\n" +
+                            "a\t1.0\t1\t2023-01-01T00:00:00.000000Z\n" +
+                            "b\t2.0\t1\t2023-01-01T00:00:00.000000Z\n" +
+                            "a\t3.0\t1\t2023-01-01T01:00:00.000000Z\n"
+            );
+
+            // new bucket in a new partition and an O3 row into an existing bucket
+            executeInsert("insert into base values ('a', 4.0, '2023-01-02T05:00'), ('b', 5.0, '2023-01-01T00:30')");
+            drainWalQueue();
+            refreshViews();
+
+            assertSql(
+                    "price_1h order by ts, sym",
+                    "sym\ttotal\tcnt\tts\n" +
+                            "a\t1.0\t1\t2023-01-01T00:00:00.000000Z\n" +
+                            "b\t7.0\t2\t2023-01-01T00:00:00.000000Z\n" +
+                            "a\t3.0\t1\t2023-01-01T01:00:00.000000Z\n" +
+                            "a\t4.0\t1\t2023-01-02T05:00:00.000000Z\n"
+            );
+            assertViewMatchesQuery();
+        });
+    }
+
+    @Test
+    public void testDropView() throws Exception {
+        assertMemoryLeak(() -> {
+            createBaseTable();
+            compile("create materialized view price_1h as (" + VIEW_QUERY + ")");
+            compile("drop table price_1h");
+
+            executeInsert("insert into base values ('a', 1.0, '2023-01-01T00:10')");
+            drainWalQueue();
+            // nothing to refresh once the view is gone
+            Assert.assertFalse(refreshViews());
+        });
+    }
+
+    @Test
+    public void testFillNotSupported() throws Exception {
+        assertFailure(
+                "create materialized view v as (select sym, sum(price) total, ts from base sample by 1h fill(null) align to calendar)",
+                "create table base (sym symbol, price double, ts timestamp) timestamp(ts) partition by DAY WAL",
+                84,
+                "FILL is not supported in materialized views"
+        );
+    }
+
+    @Test
+    public void testFirstObservationNotSupported() throws Exception {
+        assertFailure(
+                "create materialized view v as (select sym, sum(price) total, ts from base sample by 1h)",
+                "create table base (sym symbol, price double, ts timestamp) timestamp(ts) partition by DAY WAL",
+                84,
+                "materialized view query must use ALIGN TO CALENDAR"
+        );
+    }
+
+    @Test
+    public void testInvalidQueryStopsRefresh() throws Exception {
+        assertMemoryLeak(() -> {
+            createBaseTable();
+            compile("create materialized view price_1h as (" + VIEW_QUERY + ")");
+
+            compile("alter table base drop column price");
+            executeInsert("insert into base values ('a', '2023-01-01T00:10')");
+            drainWalQueue();
+            Assert.assertFalse(refreshViews());
+
+            final ObjList<MatViewDefinition> views = new ObjList<>();
+            engine.getMatViewGraph().getViews("base", views);
+            Assert.assertEquals(1, views.size());
+            Assert.assertFalse(views.getQuick(0).isValid());
+            TestUtils.assertContains(views.getQuick(0).getInvalidationReason(), "Invalid column: price");
+
+            // invalid view is skipped
+            executeInsert("insert into base values ('b', '2023-01-01T00:20')");
+            drainWalQueue();
+            Assert.assertFalse(refreshViews());
+            assertSql("price_1h", "sym\ttotal\tcnt\tts\n");
+        });
+    }
+
+    @Test
+    public void testRefreshAfterReload() throws Exception {
+        assertMemoryLeak(() -> {
+            createBaseTable();
+            compile("create materialized view price_1h as (" + VIEW_QUERY + ") partition by HOUR");
+
+            // definitions are read back from the view directory
+            engine.getMatViewGraph().clear();
+            engine.reloadTableNames();
+
+            executeInsert("insert into base values ('a', 1.0, '2023-01-01T00:10'), ('a', 2.0, '2023-01-01T03:10')");
+            drainWalQueue();
+            Assert.assertTrue(refreshViews());
+
+            assertSql(
+                    "price_1h",
+                    "sym\ttotal\tcnt\tts\n" +
+                            "a\t1.0\t1\t2023-01-01T00:00:00.000000Z\n" +
+                            "a\t2.0\t1\t2023-01-01T03:00:00.000000Z\n"
+            );
+        });
+    }
+
+    @Test
+    public void testRefreshRetriedWhenViewBusy() throws Exception {
+        assertMemoryLeak(() -> {
+            createBaseTable();
+            compile("create materialized view price_1h as (" + VIEW_QUERY + ")");
+
+            executeInsert("insert into base values ('a', 1.0, '2023-01-01T00:10')");
+            drainWalQueue();
+            try (TableWriter ignore = getWriter("price_1h")) {
+                // the range is kept for the next run
+                Assert.assertFalse(refreshViews());
+            }
+            Assert.assertTrue(refreshViews());
+
+            assertSql(
+                    "price_1h",
+                    "sym\ttotal\tcnt\tts\n" +
+                            "a\t1.0\t1\t2023-01-01T00:00:00.000000Z\n"
+            );
+        });
+    }
+
+    @Test
+    public void testRefreshBucketsWiderThanPartition() throws Exception {
+        assertMemoryLeak(() -> {
+            createBaseTable();
+            executeInsert("insert into base values ('a', 1.0, '2023-01-01T00:10'), ('a', 2.0, '2023-01-02T10:00'), ('a', 3.0, '2023-01-05T10:00')");
+            drainWalQueue();
+            compile("create materialized view price_2d as (select sym, sum(price) total, count() cnt, ts from base sample by 2d align to calendar) partition by HOUR");
+
+            // change lands in the middle of a 2 day bucket, the whole bucket must be recomputed
+            executeInsert("insert into base values ('a', 10.0, '2023-01-02T23:00')");
+            drainWalQueue();
+            refreshViews();
+
+            assertSql(
+                    "price_2d",
+                    "sym\ttotal\tcnt\tts\n" +
+                            "a\t13.0\t3\t2023-01-01T00:00:00.000000Z\n" +
+                            "a\t3.0\t1\t2023-01-05T00:00:00.000000Z\n"
+            );
+        });
+    }
+
+    @Test
+    public void testTruncateRebuildsView() throws Exception {
+        assertMemoryLeak(() -> {
+            createBaseTable();
+            executeInsert("insert into base values ('a', 1.0, '2023-01-01T00:10'), ('b', 2.0, '2023-01-03T00:20')");
+            drainWalQueue();
+            compile("create materialized view price_1h as (" + VIEW_QUERY + ")");
+
+            compile("truncate table base");
+            executeInsert("insert into base values ('c', 3.0, '2023-01-02T00:10')");
+            drainWalQueue();
+            refreshViews();
+
+            assertSql(
+                    "price_1h",
+                    "sym\ttotal\tcnt\tts\n" +
+                            "c\t3.0\t1\t2023-01-02T00:00:00.000000Z\n"
+            );
+        });
+    }
+
+    private static void createBaseTable() throws Exception {
+        compile("create table base (sym symbol, price double, ts timestamp) timestamp(ts) partition by DAY WAL");
+    }
+
+    private static boolean refreshViews() {
+        try (MatViewRefreshJob job = new MatViewRefreshJob(engine, null)) {
+            return job.run(0);
+        }
+    }
+
+    private void assertViewMatchesQuery() throws Exception {
+        TestUtils.assertSqlCursors(
+                compiler,
+                sqlExecutionContext,
+                "select * from (" + VIEW_QUERY + ") order by ts, sym",
+                "price_1h order by ts, sym",
+                LOG
+        );
+    }
+}
@@ -95,6 +95,37 @@ public class LineSenderBuilderTest extends AbstractLineTcpReceiverTest {
         });
     }
 
+    @Test
+    public void testAsyncDoubleSet() throws Exception {
+        assertMemoryLeak(() -> {
+            Sender.LineSenderBuilder builder = Sender.builder().enableAsync();
+            try {
+                builder.enableAsync();
+                fail("should not allow double async set");
+            } catch (LineSenderException e) {
+                TestUtils.assertContains(e.getMessage(), "already enabled");
+            }
+        });
+    }
+
+    @Test
+    public void testAsyncOptionsWithoutAsync() throws Exception {
+        assertMemoryLeak(() -> {
+            try {
+                Sender.builder().address(LOCALHOST).connections(2).build();
+                fail("connections should require async send");
+            } catch (LineSenderException e) {
+                TestUtils.assertContains(e.getMessage(), "async send was not enabled");
+            }
+            try {
+                Sender.builder().address(LOCALHOST).autoFlushInterval(10).build();
+                fail("auto flush interval should require async send");
+            } catch (LineSenderException e) {
+                TestUtils.assertContains(e.getMessage(), "async send was not enabled");
+            }
+        });
+    }
+
     @Test
     public void testAuthDoubleSet() throws Exception {
         assertMemoryLeak(() -> {
@@ -342,6 +373,19 @@ public class LineSenderBuilderTest extends AbstractLineTcpReceiverTest {
         });
     }
 
+    @Test
+    public void testConnectionsNotPositive() throws Exception {
+        assertMemoryLeak(() -> {
+            Sender.LineSenderBuilder builder = Sender.builder().enableAsync();
+            try {
+                builder.connections(0);
+                fail("zero connections should fail");
+            } catch (LineSenderException e) {
+                TestUtils.assertContains(e.getMessage(), "must be positive");
+            }
+        });
+    }
+
     @Test
     public void testCustomTruststoreButTlsNotEnabled() throws Exception {
         assertMemoryLeak(() -> {
@@ -241,6 +241,18 @@ public class HttpQueryTestBuilder {
                     }
                 });
 
+                httpServer.bind(new HttpRequestProcessorFactory() {
+                    @Override
+                    public String getUrl() {
+                        return "/write";
+                    }
+
+                    @Override
+                    public HttpRequestProcessor newInstance() {
+                        return new LineHttpProcessor(engine, httpConfiguration.getLineTcpReceiverConfiguration());
+                    }
+                });
+
                 QueryCache.configure(httpConfiguration, metrics);
 
                 workerPool.start(LOG);
@@ -0,0 +1,221 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.http;
+
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.CairoEngine;
+import io.questdb.cairo.DefaultTestCairoConfiguration;
+import io.questdb.cairo.wal.ApplyWal2TableJob;
+import io.questdb.cairo.wal.CheckWalTransactionsJob;
+import io.questdb.griffin.SqlCompiler;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionContextImpl;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LineHttpProcessorTest {
+    private static final String NO_CONTENT_RESPONSE = "HTTP/1.1 204 No Content\r\n" +
+            "Server: questDB/1.0\r\n" +
+            "Date: Thu, 1 Jan 1970 00:00:00 GMT\r\n" +
+            "Content-Type: text/html; charset=utf-8\r\n" +
+            "\r\n";
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void testChunkedRequestIsCommitted() throws Exception {
+        testWrite(
+                "POST /write HTTP/1.1\r\n" +
+                        "Host: localhost:9000\r\n" +
+                        "Transfer-Encoding: chunked\r\n" +
+                        "\r\n" +
+                        "1d\r\n" +
+                        "x,sym=a v=1.5 1000000000\nx,sy\r\n" +
+                        "1e\r\n" +
+                        "m=b v=2.5 2000000000\ny,sym=c v\r\n" +
+                        "e\r\n" +
+                        "=3.5 10000000\n\r\n" +
+                        "0\r\n" +
+                        "\r\n",
+                NO_CONTENT_RESPONSE,
+                "sym\tv\tts\n" +
+                        "a\t1.5\t1970-01-01T00:00:01.000000Z\n" +
+                        "b\t2.5\t1970-01-01T00:00:02.000000Z\n",
+                "sym\tv\tts\n" +
+                        "c\t3.5\t1970-01-01T00:00:00.010000Z\n"
+        );
+    }
+
+    @Test
+    public void testContentLengthRequestIsCommitted() throws Exception {
+        final String body = "x,sym=a v=1.5 1000000000\n" +
+                "y,sym=c v=3.5 10000000\n";
+        testWrite(
+                "POST /write HTTP/1.1\r\n" +
+                        "Host: localhost:9000\r\n" +
+                        "Content-Length: " + body.length() + "\r\n" +
+                        "\r\n" +
+                        body,
+                NO_CONTENT_RESPONSE,
+                "sym\tv\tts\n" +
+                        "a\t1.5\t1970-01-01T00:00:01.000000Z\n",
+                "sym\tv\tts\n" +
+                        "c\t3.5\t1970-01-01T00:00:00.010000Z\n"
+        );
+    }
+
+    @Test
+    public void testInvalidMeasurementRollsBackRequest() throws Exception {
+        final String body = "x,sym=a v=1.5 1000000000\n" +
+                "y,sym=c v=3.5 10000000\n" +
+                "x,sym=b v=2.5 2000000000 abc\n";
+        testWrite(
+                "POST /write HTTP/1.1\r\n" +
+                        "Host: localhost:9000\r\n" +
+                        "Content-Length: " + body.length() + "\r\n" +
+                        "\r\n" +
+                        body,
+                "HTTP/1.1 400 Bad request\r\n" +
+                        "Server: questDB/1.0\r\n" +
+                        "Date: Thu, 1 Jan 1970 00:00:00 GMT\r\n" +
+                        "Transfer-Encoding: chunked\r\n" +
+                        "Content-Type: text/plain; charset=utf-8\r\n" +
+                        "\r\n" +
+                        "46\r\n" +
+                        "could not parse measurement, INVALID_FIELD_SEPARATOR [measurement=3]\r\n" +
+                        "\r\n" +
+                        "00\r\n" +
+                        "\r\n",
+                "sym\tv\tts\n",
+                "sym\tv\tts\n"
+        );
+    }
+
+    @Test
+    public void testLastMeasurementWithoutLineFeed() throws Exception {
+        final String body = "x,sym=a v=1.5 1000000000\n" +
+                "x,sym=b v=2.5 2000000000";
+        testWrite(
+                "POST /write HTTP/1.1\r\n" +
+                        "Host: localhost:9000\r\n" +
+                        "Content-Length: " + body.length() + "\r\n" +
+                        "\r\n" +
+                        body,
+                NO_CONTENT_RESPONSE,
+                "sym\tv\tts\n" +
+                        "a\t1.5\t1970-01-01T00:00:01.000000Z\n" +
+                        "b\t2.5\t1970-01-01T00:00:02.000000Z\n",
+                "sym\tv\tts\n"
+        );
+    }
+
+    @Test
+    public void testNonWalTableIsRejected() throws Exception {
+        new HttpQueryTestBuilder()
+                .withTempFolder(temp)
+                .withWorkerCount(1)
+                .withHttpServerConfigBuilder(new HttpServerConfigurationBuilder())
+                .withTelemetry(false)
+                .run(walConfiguration(), engine -> {
+                    try (
+                            SqlCompiler compiler = new SqlCompiler(engine);
+                            SqlExecutionContextImpl executionContext = new SqlExecutionContextImpl(engine, 1)
+                    ) {
+                        compiler.compile("create table z (sym symbol, v double, ts timestamp) timestamp(ts) partition by DAY BYPASS WAL", executionContext);
+                    }
+                    final String body = "z,sym=a v=1.5 1000000000\n";
+                    new SendAndReceiveRequestBuilder().execute(
+                            "POST /write HTTP/1.1\r\n" +
+                                    "Host: localhost:9000\r\n" +
+                                    "Content-Length: " + body.length() + "\r\n" +
+                                    "\r\n" +
+                                    body,
+                            "HTTP/1.1 400 Bad request\r\n" +
+                                    "Server: questDB/1.0\r\n" +
+                                    "Date: Thu, 1 Jan 1970 00:00:00 GMT\r\n" +
+                                    "Transfer-Encoding: chunked\r\n" +
+                                    "Content-Type: text/plain; charset=utf-8\r\n" +
+                                    "\r\n" +
+                                    "48\r\n" +
+                                    "transactional ingestion requires a WAL table [table=z] [measurement=1]\r\n" +
+                                    "\r\n" +
+                                    "00\r\n" +
+                                    "\r\n"
+                    );
+                });
+    }
+
+    private static void assertTable(SqlCompiler compiler, SqlExecutionContextImpl executionContext, String tableName, String expected) throws SqlException {
+        TestUtils.assertSql(compiler, executionContext, tableName, new StringSink(), expected);
+    }
+
+    private static void drainWalQueue(CairoEngine engine) {
+        try (ApplyWal2TableJob walApplyJob = new ApplyWal2TableJob(engine, 1, 1, null)) {
+            walApplyJob.drain(0);
+            new CheckWalTransactionsJob(engine).run(0);
+            walApplyJob.drain(0);
+        }
+    }
+
+    private CairoConfiguration walConfiguration() {
+        return new DefaultTestCairoConfiguration(temp.getRoot().getAbsolutePath()) {
+            @Override
+            public boolean isWalSupported() {
+                return true;
+            }
+
+            @Override
+            public boolean mangleTableDirNames() {
+                return false;
+            }
+        };
+    }
+
+    private void testWrite(String request, String response, String expectedX, String expectedY) throws Exception {
+        new HttpQueryTestBuilder()
+                .withTempFolder(temp)
+                .withWorkerCount(1)
+                .withHttpServerConfigBuilder(new HttpServerConfigurationBuilder())
+                .withTelemetry(false)
+                .run(walConfiguration(), engine -> {
+                    try (
+                            SqlCompiler compiler = new SqlCompiler(engine);
+                            SqlExecutionContextImpl executionContext = new SqlExecutionContextImpl(engine, 1)
+                    ) {
+                        compiler.compile("create table x (sym symbol, v double, ts timestamp) timestamp(ts) partition by DAY WAL", executionContext);
+                        compiler.compile("create table y (sym symbol, v double, ts timestamp) timestamp(ts) partition by DAY WAL", executionContext);
+
+                        new SendAndReceiveRequestBuilder().execute(request, response);
+
+                        drainWalQueue(engine);
+                        assertTable(compiler, executionContext, "x", expectedX);
+                        assertTable(compiler, executionContext, "y", expectedY);
+                    }
+                });
+    }
+}
@@ -79,6 +79,7 @@ public class AbstractLineTcpReceiverTest extends AbstractCairoTest {
     };
     private final ThreadLocal<Socket> tlSocket = new ThreadLocal<>();
     protected String authKeyId = null;
+    protected boolean binaryFormatSupported;
     protected long commitIntervalDefault = 2000;
     protected double commitIntervalFraction = 0.5;
     protected boolean disconnectOnError = false;
@@ -89,6 +90,7 @@ public class AbstractLineTcpReceiverTest extends AbstractCairoTest {
     protected NetworkFacade nf = NetworkFacadeImpl.INSTANCE;
     protected int partitionByDefault = PartitionBy.DAY;
     protected boolean symbolAsFieldSupported;
+    protected long writerShardEvents = 10_000;
     protected boolean autoCreateNewColumns = true;
 
     protected final LineTcpReceiverConfiguration lineConfiguration = new DefaultLineTcpReceiverConfiguration() {
@@ -162,6 +164,16 @@ public class AbstractLineTcpReceiverTest extends AbstractCairoTest {
             return 4;
         }
 
+        @Override
+        public long getWriterShardEvents() {
+            return writerShardEvents;
+        }
+
+        @Override
+        public boolean isBinaryFormatSupported() {
+            return binaryFormatSupported;
+        }
+
         @Override
         public boolean isSymbolAsFieldSupported() {
             return symbolAsFieldSupported;
@@ -210,6 +222,7 @@ public class AbstractLineTcpReceiverTest extends AbstractCairoTest {
     public void cleanup() {
         maxMeasurementSize = 256;
         authKeyId = null;
+        binaryFormatSupported = false;
         msgBufferSize = 256 * 1024;
         minIdleMsBeforeWriterRelease = 30000;
         maintenanceInterval = 25;
@@ -218,6 +231,7 @@ public class AbstractLineTcpReceiverTest extends AbstractCairoTest {
         partitionByDefault = PartitionBy.DAY;
         disconnectOnError = false;
         symbolAsFieldSupported = false;
+        writerShardEvents = 10_000;
         nf = NetworkFacadeImpl.INSTANCE;
     }
 
@@ -33,6 +33,47 @@ import org.junit.Test;
 
 public class LineTcpParserTest extends BaseLineTcpContextTest {
 
+    @Test
+    public void testBinaryFormat() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final int len = 64;
+            final long mem = Unsafe.malloc(len, MemoryTag.NATIVE_DEFAULT);
+            try {
+                final int hi = putBinaryLine(mem);
+                final LineTcpParser parser = new LineTcpParser(false, false, true);
+                // values are resumed from any byte they are split at
+                parser.of(mem);
+                for (int i = 1; i < hi; i++) {
+                    Assert.assertEquals(LineTcpParser.ParseResult.BUFFER_UNDERFLOW, parser.parseMeasurement(mem + i));
+                }
+                Assert.assertEquals(LineTcpParser.ParseResult.MEASUREMENT_COMPLETE, parser.parseMeasurement(mem + hi));
+
+                Assert.assertEquals(5, parser.getEntityCount());
+                Assert.assertEquals(LineTcpParser.ENTITY_TYPE_TAG, parser.getEntity(0).getType());
+                Assert.assertEquals("a", parser.getEntity(0).getValue().toString());
+                Assert.assertFalse(parser.getEntity(0).isBinary());
+                Assert.assertEquals(LineTcpParser.ENTITY_TYPE_FLOAT, parser.getEntity(1).getType());
+                Assert.assertEquals(-1.5, parser.getEntity(1).getFloatValue(), 0);
+                Assert.assertTrue(parser.getEntity(1).isBinary());
+                Assert.assertEquals(LineTcpParser.ENTITY_TYPE_INTEGER, parser.getEntity(2).getType());
+                Assert.assertEquals(-300, parser.getEntity(2).getLongValue());
+                Assert.assertEquals(LineTcpParser.ENTITY_TYPE_INTEGER, parser.getEntity(3).getType());
+                Assert.assertEquals(42, parser.getEntity(3).getLongValue());
+                Assert.assertFalse(parser.getEntity(3).isBinary());
+                Assert.assertEquals(LineTcpParser.ENTITY_TYPE_TIMESTAMP, parser.getEntity(4).getType());
+                Assert.assertEquals(1_000_000, parser.getEntity(4).getLongValue());
+                Assert.assertEquals(1234567890L, parser.getTimestamp());
+
+                // text only parser does not take the binary form
+                final LineTcpParser textParser = new LineTcpParser(false, false, false);
+                textParser.of(mem);
+                Assert.assertEquals(LineTcpParser.ParseResult.ERROR, textParser.parseMeasurement(mem + hi));
+            } finally {
+                Unsafe.free(mem, len, MemoryTag.NATIVE_DEFAULT);
+            }
+        });
+    }
+
     @Test
     public void testGetValueType() throws Exception {
         assertType(LineTcpParser.ENTITY_TYPE_TAG, "null");
@@ -101,6 +142,91 @@ public class LineTcpParserTest extends BaseLineTcpContextTest {
         assertType(LineTcpParser.ENTITY_TYPE_LONG256, "0x123a4i");
     }
 
+    @Test
+    public void testLongEntitiesAtEveryWordOffset() throws Exception {
+        // long runs of plain bytes are skipped a word at a time, shift them across word boundaries
+        // and split the line at every byte to make sure nothing is lost on resumption
+        TestUtils.assertMemoryLeak(() -> {
+            for (int offset = 0; offset < 2 * Long.BYTES; offset++) {
+                final String name = "m" + repeat('a', offset);
+                final String tagValue = repeat('b', 20) + ",c" + repeat('d', offset);
+                final String strValue = repeat('e', 17 + offset) + "\"q\\ =,x" + repeat('f', offset);
+                final String line = name + ",tag\\ k=" + repeat('b', 20) + "\\,c" + repeat('d', offset)
+                        + " s=\"" + repeat('e', 17 + offset) + "\\\"q\\\\ =,x" + repeat('f', offset) + "\""
+                        + ",u=\"" + repeat('g', offset) + "\u00e9\u00e9" + repeat('h', 9) + "\" 1000\n";
+                final byte[] bytes = line.getBytes(Files.UTF_8);
+                final int len = bytes.length;
+                final long mem = Unsafe.malloc(len, MemoryTag.NATIVE_DEFAULT);
+                try {
+                    for (int split = 1; split <= len; split++) {
+                        // escaped entities are shifted left in place, start from a pristine copy
+                        for (int i = 0; i < len; i++) {
+                            Unsafe.getUnsafe().putByte(mem + i, bytes[i]);
+                        }
+                        final LineTcpParser parser = new LineTcpParser(false, false, true);
+                        parser.of(mem);
+                        if (split < len) {
+                            Assert.assertEquals(LineTcpParser.ParseResult.BUFFER_UNDERFLOW, parser.parseMeasurement(mem + split));
+                        }
+                        Assert.assertEquals(LineTcpParser.ParseResult.MEASUREMENT_COMPLETE, parser.parseMeasurement(mem + len));
+
+                        Assert.assertEquals(name, parser.getMeasurementName().toString());
+                        Assert.assertEquals(3, parser.getEntityCount());
+                        Assert.assertEquals(LineTcpParser.ENTITY_TYPE_TAG, parser.getEntity(0).getType());
+                        Assert.assertEquals("tag k", parser.getEntity(0).getName().toString());
+                        Assert.assertEquals(tagValue, parser.getEntity(0).getValue().toString());
+                        Assert.assertEquals(LineTcpParser.ENTITY_TYPE_STRING, parser.getEntity(1).getType());
+                        Assert.assertEquals("s", parser.getEntity(1).getName().toString());
+                        Assert.assertEquals(strValue, parser.getEntity(1).getValue().toString());
+                        Assert.assertEquals(LineTcpParser.ENTITY_TYPE_STRING, parser.getEntity(2).getType());
+                        Assert.assertEquals("u", parser.getEntity(2).getName().toString());
+                        Assert.assertTrue(parser.hasNonAsciiChars());
+                        Assert.assertEquals(1000, parser.getTimestamp());
+                    }
+                } finally {
+                    Unsafe.free(mem, len, MemoryTag.NATIVE_DEFAULT);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testSkipBinaryValuesWithNewLineBytes() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final int len = 64;
+            final long mem = Unsafe.malloc(len, MemoryTag.NATIVE_DEFAULT);
+            try {
+                final int lineHi = putBinaryLineWithNewLineBytes(mem);
+                final int hi = (int) (putAscii(mem + lineHi, "u x=1i\n") - mem);
+
+                // skipping is resumed from any byte the line is split at
+                final LineTcpParser parser = new LineTcpParser(false, false, true);
+                parser.of(mem);
+                for (int i = 1; i < lineHi; i++) {
+                    Assert.assertEquals(LineTcpParser.ParseResult.BUFFER_UNDERFLOW, parser.skipMeasurement(mem + i));
+                }
+                Assert.assertEquals(LineTcpParser.ParseResult.MEASUREMENT_COMPLETE, parser.skipMeasurement(mem + lineHi));
+                Assert.assertEquals(mem + lineHi - 1, parser.getBufferAddress());
+
+                // a line rejected by text only parser is skipped as a whole
+                for (LineTcpParser p : new LineTcpParser[]{parser, new LineTcpParser(false, false, false)}) {
+                    p.of(mem);
+                    if (p.parseMeasurement(mem + hi) == LineTcpParser.ParseResult.ERROR) {
+                        Assert.assertEquals(LineTcpParser.ParseResult.MEASUREMENT_COMPLETE, p.skipMeasurement(mem + hi));
+                    }
+                    Assert.assertEquals(mem + lineHi - 1, p.getBufferAddress());
+                    p.startNextMeasurement();
+                    Assert.assertEquals(LineTcpParser.ParseResult.MEASUREMENT_COMPLETE, p.parseMeasurement(mem + hi));
+                    Assert.assertEquals("u", p.getMeasurementName().toString());
+                    Assert.assertEquals(1, p.getEntityCount());
+                    Assert.assertEquals(1, p.getEntity(0).getLongValue());
+                }
+            } finally {
+                Unsafe.free(mem, len, MemoryTag.NATIVE_DEFAULT);
+            }
+        });
+    }
+
     private static void assertError(int type, String value) throws Exception {
         assertType(type, value, value, LineTcpParser.ParseResult.ERROR, false, false);
     }
@@ -153,4 +279,56 @@ public class LineTcpParserTest extends BaseLineTcpContextTest {
             }
         });
     }
+
+    private static long putAscii(long p, String s) {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            Unsafe.getUnsafe().putByte(p++, (byte) s.charAt(i));
+        }
+        return p;
+    }
+
+    private static int putBinaryLine(long mem) {
+        // t,tag=a d==<-1.5>,l==<-300>,i=42i,ts==<1000000> =<1234567890>\n
+        long p = putAscii(mem, "t,tag=a d==");
+        Unsafe.getUnsafe().putByte(p++, LineTcpParser.BINARY_TYPE_DOUBLE);
+        Unsafe.getUnsafe().putDouble(p, -1.5);
+        p = putAscii(p + Long.BYTES, ",l==");
+        Unsafe.getUnsafe().putByte(p++, LineTcpParser.BINARY_TYPE_LONG);
+        // zigzag(-300) = 599
+        Unsafe.getUnsafe().putByte(p++, (byte) (599 & 0x7f | 0x80));
+        Unsafe.getUnsafe().putByte(p++, (byte) (599 >> 7));
+        p = putAscii(p, ",i=42i,ts==");
+        Unsafe.getUnsafe().putByte(p++, LineTcpParser.BINARY_TYPE_TIMESTAMP);
+        Unsafe.getUnsafe().putLong(p, 1_000_000);
+        p = putAscii(p + Long.BYTES, " =");
+        Unsafe.getUnsafe().putLong(p, 1234567890L);
+        p = putAscii(p + Long.BYTES, "\n");
+        return (int) (p - mem);
+    }
+
+    private static int putBinaryLineWithNewLineBytes(long mem) {
+        // every binary value holds '\n' bytes: t d==<double>,l==<5>,ts==<10> =<0x0a0a>\n
+        long p = putAscii(mem, "t d==");
+        Unsafe.getUnsafe().putByte(p++, LineTcpParser.BINARY_TYPE_DOUBLE);
+        Unsafe.getUnsafe().putLong(p, 0x0a0a0a0a0a0a0a0aL);
+        p = putAscii(p + Long.BYTES, ",l==");
+        Unsafe.getUnsafe().putByte(p++, LineTcpParser.BINARY_TYPE_LONG);
+        // zigzag(5) = 10
+        Unsafe.getUnsafe().putByte(p++, (byte) '\n');
+        p = putAscii(p, ",ts==");
+        Unsafe.getUnsafe().putByte(p++, LineTcpParser.BINARY_TYPE_TIMESTAMP);
+        Unsafe.getUnsafe().putLong(p, 10);
+        p = putAscii(p + Long.BYTES, " =");
+        Unsafe.getUnsafe().putLong(p, 0x0a0a);
+        p = putAscii(p + Long.BYTES, "\n");
+        return (int) (p - mem);
+    }
+
+    private static String repeat(char c, int n) {
+        final StringBuilder sb = new StringBuilder(n);
+        for (int i = 0; i < n; i++) {
+            sb.append(c);
+        }
+        return sb.toString();
+    }
 }
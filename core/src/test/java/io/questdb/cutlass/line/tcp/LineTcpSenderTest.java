@@ -25,15 +25,17 @@
 package io.questdb.cutlass.line.tcp;
 
 import io.questdb.cairo.*;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.RecordCursor;
 import io.questdb.client.Sender;
-import io.questdb.cutlass.line.LineChannel;
-import io.questdb.cutlass.line.LineSenderException;
-import io.questdb.cutlass.line.LineTcpSender;
+import io.questdb.cutlass.line.*;
 import io.questdb.griffin.model.IntervalUtils;
 import io.questdb.network.Net;
 import io.questdb.std.Chars;
+import io.questdb.std.ObjList;
 import io.questdb.std.Os;
 import io.questdb.std.datetime.microtime.MicrosecondClockImpl;
+import io.questdb.std.datetime.millitime.MillisecondClockImpl;
 import io.questdb.std.str.StringSink;
 import io.questdb.test.tools.TestUtils;
 import org.junit.Test;
@@ -54,6 +56,111 @@ public class LineTcpSenderTest extends AbstractLineTcpReceiverTest {
     private final static String TOKEN = "UvuVb1USHGRRT08gEnwN2zGZrvM4MsLQ5brgF6SVkAw=";
     private final static PrivateKey AUTH_PRIVATE_KEY1 = AuthDb.importPrivateKey(TOKEN);
 
+    @Test
+    public void testAsyncAuthSuccess() throws Exception {
+        authKeyId = AUTH_KEY_ID1;
+        runInContext(r -> {
+            try (Sender sender = Sender.builder()
+                    .address("127.0.0.1")
+                    .port(bindPort)
+                    .enableAuth(AUTH_KEY_ID1).authToken(TOKEN)
+                    .enableAsync()
+                    .connections(2)
+                    .build()) {
+                for (int i = 0; i < 10; i++) {
+                    sender.table("mytable").longColumn("my int field", i).atNow();
+                    sender.flush();
+                }
+            }
+            assertTableSizeEventually(engine, "mytable", 10);
+        });
+    }
+
+    @Test
+    public void testAsyncMultipleConnections() throws Exception {
+        runInContext(r -> {
+            final int rows = 10_000;
+            // tiny buffer and queue to exercise back-pressure, rows get spread over all connections
+            final AsyncLineTcpSender sender = (AsyncLineTcpSender) Sender.builder()
+                    .address("127.0.0.1")
+                    .port(bindPort)
+                    .bufferCapacity(1024)
+                    .enableAsync()
+                    .asyncQueueCapacity(2)
+                    .connections(3)
+                    .build();
+            try {
+                long tsMicros = IntervalUtils.parseFloorPartialTimestamp("2022-02-25");
+                for (int i = 0; i < rows; i++) {
+                    sender.table("mytable")
+                            .symbol("sym", i % 2 == 0 ? "a" : "b")
+                            .longColumn("v", i)
+                            .stringColumn("s", "foo bar")
+                            .at((tsMicros + i) * 1000);
+                }
+            } finally {
+                sender.close();
+            }
+            assertEquals(0, sender.getPendingChunks());
+            assertTrue(sender.getSentBytes() > 0);
+
+            assertTableSizeEventually(engine, "mytable", rows);
+            try (TableReader reader = getReader("mytable")) {
+                final int symIndex = reader.getMetadata().getColumnIndex("sym");
+                final int vIndex = reader.getMetadata().getColumnIndex("v");
+                final RecordCursor cursor = reader.getCursor();
+                final Record record = cursor.getRecord();
+                long vSum = 0;
+                int aCount = 0;
+                while (cursor.hasNext()) {
+                    final long v = record.getLong(vIndex);
+                    vSum += v;
+                    if (Chars.equals(record.getSym(symIndex), "a")) {
+                        assertEquals(0, v % 2);
+                        aCount++;
+                    }
+                }
+                assertEquals((long) rows * (rows - 1) / 2, vSum);
+                assertEquals(rows / 2, aCount);
+            }
+        });
+    }
+
+    @Test
+    public void testAsyncSendErrorIsThrown() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final DummyLineChannel failingChannel = new DummyLineChannel() {
+                @Override
+                public void send(long ptr, int len) {
+                    throw new LineSenderException("could not send");
+                }
+            };
+            final ObjList<LineChannel> channels = new ObjList<>();
+            channels.add(failingChannel);
+            final AsyncLineChannel channel = new AsyncLineChannel(channels, 1000, 2);
+            channel.start();
+            // every row is handed over to the I/O thread
+            final AsyncLineTcpSender sender = new AsyncLineTcpSender(channel, 1000, 0, MillisecondClockImpl.INSTANCE);
+            try {
+                //30 seconds should be enough even on a slow CI server
+                long deadline = Os.currentTimeNanos() + SECONDS.toNanos(30);
+                while (Os.currentTimeNanos() < deadline) {
+                    sender.table("mytable").longColumn("my int field", 42).atNow();
+                }
+                fail("error of the I/O thread was not thrown");
+            } catch (LineSenderException e) {
+                assertContains(e.getMessage(), "could not send");
+            }
+            try {
+                sender.close();
+                fail("error of the I/O thread was not thrown on close");
+            } catch (LineSenderException e) {
+                assertContains(e.getMessage(), "could not send");
+            }
+            assertEquals(1, failingChannel.closeCounter);
+        });
+    }
+
     @Test
     public void testAuthSuccess() throws Exception {
         authKeyId = AUTH_KEY_ID1;
@@ -91,6 +198,54 @@ public class LineTcpSenderTest extends AbstractLineTcpReceiverTest {
         });
     }
 
+    @Test
+    public void testBinaryFormat() throws Exception {
+        binaryFormatSupported = true;
+        runInContext(r -> {
+            try (Sender sender = Sender.builder()
+                    .address("127.0.0.1")
+                    .port(bindPort)
+                    .enableBinaryFormat()
+                    .bufferCapacity(1024)
+                    .build()) {
+
+                long tsMicros = IntervalUtils.parseFloorPartialTimestamp("2022-02-25");
+                // enough rows to split values between buffers
+                for (int i = 0; i < 100; i++) {
+                    sender.table("mytable")
+                            .symbol("sym", i % 2 == 0 ? "a" : "b")
+                            .longColumn("long_field", i % 2 == 0 ? -i * 1_000_000_007L : i)
+                            .boolColumn("bool_field", true)
+                            .stringColumn("string_field", "foo")
+                            .doubleColumn("double_field", i + 0.5)
+                            .timestampColumn("ts_field", tsMicros + i)
+                            .at((tsMicros + i) * 1000);
+                }
+                sender.table("mytable")
+                        .longColumn("long_field", Long.MAX_VALUE)
+                        .doubleColumn("double_field", Double.NEGATIVE_INFINITY)
+                        .at((tsMicros + 100) * 1000);
+                sender.flush();
+            }
+
+            assertTableSizeEventually(engine, "mytable", 101);
+            final StringSink expected = new StringSink();
+            expected.put("sym\tlong_field\tbool_field\tstring_field\tdouble_field\tts_field\ttimestamp\n");
+            for (int i = 0; i < 100; i++) {
+                final String ts = String.format("2022-02-25T00:00:00.%06dZ", i);
+                expected.put(i % 2 == 0 ? "a" : "b").put('\t')
+                        .put(i % 2 == 0 ? -i * 1_000_000_007L : i).put("\ttrue\tfoo\t")
+                        .put(i + 0.5).put('\t')
+                        .put(ts).put('\t')
+                        .put(ts).put('\n');
+            }
+            expected.put("\t9223372036854775807\tfalse\t\t-Infinity\t\t2022-02-25T00:00:00.000100Z\n");
+            try (TableReader reader = getReader("mytable")) {
+                TestUtils.assertReader(expected, reader, new StringSink());
+            }
+        });
+    }
+
     @Test
     public void testBuilderAuthSuccess() throws Exception {
         authKeyId = AUTH_KEY_ID1;
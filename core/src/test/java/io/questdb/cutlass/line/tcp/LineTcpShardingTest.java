@@ -0,0 +1,140 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.line.tcp;
+
+import io.questdb.cairo.TableReader;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.mp.SOCountDownLatch;
+import io.questdb.std.Chars;
+import io.questdb.std.Os;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LineTcpShardingTest extends AbstractLineTcpReceiverTest {
+    private static final int CONNECTIONS = 4;
+    private static final Log LOG = LogFactory.getLog(LineTcpShardingTest.class);
+    private static final int ROWS_PER_CONNECTION = 2_000;
+    private static final int WARMUP_ROWS = 200;
+
+    @Test
+    public void testShardedTableKeepsAllRows() throws Exception {
+        writerShardEvents = 10;
+        runInContext(receiver -> {
+            final SOCountDownLatch sharded = new SOCountDownLatch(1);
+            receiver.setSchedulerListener((tableToken, event) -> {
+                if (event == 2 && Chars.equals(tableToken.getTableName(), "hot")) {
+                    sharded.countDown();
+                }
+            });
+
+            // enough load on a single table to get it sharded
+            final StringBuilder warmup = new StringBuilder();
+            for (int i = 0; i < WARMUP_ROWS; i++) {
+                warmup.append("hot,sym=w v=1i,d=0.5 ").append(i * 1000L).append('\n');
+            }
+            sendToSocket(warmup.toString());
+            assertTableSizeEventually(engine, "hot", WARMUP_ROWS);
+            sharded.await();
+            receiver.setSchedulerListener(null);
+
+            // connections land on different network IO threads, each one is mapped to a shard,
+            // the first connection adds a column, which only the owner of the writer can do
+            final CyclicBarrier start = new CyclicBarrier(CONNECTIONS);
+            final SOCountDownLatch done = new SOCountDownLatch(CONNECTIONS);
+            final AtomicInteger errors = new AtomicInteger();
+            for (int c = 0; c < CONNECTIONS; c++) {
+                final int connection = c;
+                new Thread(() -> {
+                    try (Socket socket = newSocket()) {
+                        start.await();
+                        final StringBuilder lines = new StringBuilder();
+                        for (int i = 0; i < ROWS_PER_CONNECTION; i++) {
+                            final long timestamp = (WARMUP_ROWS + (long) i * CONNECTIONS + connection) * 1000L;
+                            lines.append("hot,sym=s").append(i % 10).append(" v=1i,d=0.5");
+                            if (connection == 0 && i % 100 == 0) {
+                                lines.append(",extra=1i");
+                            }
+                            lines.append(' ').append(timestamp).append('\n');
+                            if (lines.length() > 8 * 1024) {
+                                sendToSocket(socket, lines.toString());
+                                lines.setLength(0);
+                                Os.pause();
+                            }
+                        }
+                        sendToSocket(socket, lines.toString());
+                    } catch (Throwable th) {
+                        errors.incrementAndGet();
+                        LOG.error().$("could not send lines [connection=").$(connection).$(", e=").$(th).I$();
+                    } finally {
+                        done.countDown();
+                    }
+                }).start();
+            }
+            done.await();
+            Assert.assertEquals(0, errors.get());
+
+            final int expectedRows = WARMUP_ROWS + CONNECTIONS * ROWS_PER_CONNECTION;
+            assertTableSizeEventually(engine, "hot", expectedRows);
+            try (TableReader reader = getReader("hot")) {
+                final int symIndex = reader.getMetadata().getColumnIndex("sym");
+                final int vIndex = reader.getMetadata().getColumnIndex("v");
+                final int extraIndex = reader.getMetadata().getColumnIndex("extra");
+                final int tsIndex = reader.getMetadata().getColumnIndex("timestamp");
+                final RecordCursor cursor = reader.getCursor();
+                final Record record = cursor.getRecord();
+                long vSum = 0;
+                int extraCount = 0;
+                int warmupSymCount = 0;
+                long prevTimestamp = Long.MIN_VALUE;
+                while (cursor.hasNext()) {
+                    vSum += record.getLong(vIndex);
+                    if (record.getLong(extraIndex) == 1) {
+                        extraCount++;
+                    }
+                    if (Chars.equals(record.getSym(symIndex), "w")) {
+                        warmupSymCount++;
+                    }
+                    final long timestamp = record.getTimestamp(tsIndex);
+                    Assert.assertTrue(timestamp > prevTimestamp);
+                    prevTimestamp = timestamp;
+                }
+                Assert.assertEquals(expectedRows, vSum);
+                Assert.assertEquals(ROWS_PER_CONNECTION / 100, extraCount);
+                Assert.assertEquals(WARMUP_ROWS, warmupSymCount);
+            }
+        }, false, 30_000);
+    }
+
+    @Override
+    protected int getWorkerCount() {
+        return CONNECTIONS;
+    }
+}
@@ -107,6 +107,21 @@ public class CairoConfigurationWrapper implements CairoConfiguration {
         return conf.getCircuitBreakerConfiguration();
     }
 
+    @Override
+    public long getColumnBufferCachePartitionAge() {
+        return conf.getColumnBufferCachePartitionAge();
+    }
+
+    @Override
+    public String getColumnBufferCachePriorityTables() {
+        return conf.getColumnBufferCachePriorityTables();
+    }
+
+    @Override
+    public long getColumnBufferCacheSize() {
+        return conf.getColumnBufferCacheSize();
+    }
+
     @Override
     public int getColumnCastModelPoolCapacity() {
         return conf.getColumnCastModelPoolCapacity();
@@ -367,6 +382,11 @@ public class CairoConfigurationWrapper implements CairoConfiguration {
         return conf.getO3OpenColumnQueueCapacity();
     }
 
+    @Override
+    public int getO3PartitionChunkSize() {
+        return conf.getO3PartitionChunkSize();
+    }
+
     @Override
     public int getO3PartitionQueueCapacity() {
         return conf.getO3PartitionQueueCapacity();
@@ -377,6 +397,11 @@ public class CairoConfigurationWrapper implements CairoConfiguration {
         return conf.getO3PurgeDiscoveryQueueCapacity();
     }
 
+    @Override
+    public int getPageFramePrefetchCount() {
+        return conf.getPageFramePrefetchCount();
+    }
+
     @Override
     public int getPageFrameReduceColumnListCapacity() {
         return conf.getPageFrameReduceColumnListCapacity();
@@ -762,6 +787,11 @@ public class CairoConfigurationWrapper implements CairoConfiguration {
         return conf.getVectorAggregateQueueCapacity();
     }
 
+    @Override
+    public long getWalApplyTableTimeQuota() {
+        return conf.getWalApplyTableTimeQuota();
+    }
+
     @Override
     public int getWalCommitSquashRowLimit() {
         return conf.getWalCommitSquashRowLimit();
@@ -872,6 +902,41 @@ public class CairoConfigurationWrapper implements CairoConfiguration {
         return conf.isSqlParallelFilterPreTouchEnabled();
     }
 
+    @Override
+    public boolean isSqlParallelGroupByEnabled() {
+        return conf.isSqlParallelGroupByEnabled();
+    }
+
+    @Override
+    public boolean isSqlParallelSampleByEnabled() {
+        return conf.isSqlParallelSampleByEnabled();
+    }
+
+    @Override
+    public boolean isSqlParallelHashJoinEnabled() {
+        return conf.isSqlParallelHashJoinEnabled();
+    }
+
+    @Override
+    public boolean isSqlParallelSortEnabled() {
+        return conf.isSqlParallelSortEnabled();
+    }
+
+    @Override
+    public long getSqlQueryMemoryBudget() {
+        return conf.getSqlQueryMemoryBudget();
+    }
+
+    @Override
+    public boolean isPartitionStatsEnabled() {
+        return conf.isPartitionStatsEnabled();
+    }
+
+    @Override
+    public long getPartitionCompressionAge() {
+        return conf.getPartitionCompressionAge();
+    }
+
     @Override
     public boolean isTableTypeConversionEnabled() {
         return conf.isTableTypeConversionEnabled();
@@ -34,12 +34,14 @@ import io.questdb.cairo.sql.VirtualRecord;
 import io.questdb.griffin.QueryFutureUpdateListener;
 import io.questdb.griffin.SqlExecutionContext;
 import io.questdb.griffin.engine.analytic.AnalyticContext;
+import io.questdb.griffin.engine.analytic.AnalyticContextImpl;
 import io.questdb.std.Rnd;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public class SqlExecutionContextStub implements SqlExecutionContext {
 
+    private final AnalyticContextImpl analyticContext = new AnalyticContextImpl();
     private final CairoEngine engine;
 
     public SqlExecutionContextStub(@NotNull CairoEngine engine) {
@@ -51,12 +53,12 @@ public class SqlExecutionContextStub implements SqlExecutionContext {
     }
 
     @Override
-    public void configureAnalyticContext(@Nullable VirtualRecord partitionByRecord, @Nullable RecordSink partitionBySink, @Nullable ColumnTypes keyTypes, boolean isOrdered, boolean baseSupportsRandomAccess) {
+    public void configureAnalyticContext(@Nullable VirtualRecord partitionByRecord, @Nullable RecordSink partitionBySink, @Nullable ColumnTypes keyTypes, boolean isOrdered, boolean baseSupportsRandomAccess, int framingMode, long rowsLo, long rowsHi, int timestampIndex) {
     }
 
     @Override
     public AnalyticContext getAnalyticContext() {
-        return null;
+        return analyticContext;
     }
 
     @Override
@@ -293,7 +293,11 @@ public class AbstractO3Test {
     }
 
     protected static void executeVanillaWithMetrics(CustomisableRunnable code) throws Exception {
-        executeVanilla(() -> TestUtils.execute(null, code, new DefaultTestCairoConfiguration(root), Metrics.enabled(), LOG));
+        executeVanillaWithMetrics(new DefaultTestCairoConfiguration(root), code);
+    }
+
+    protected static void executeVanillaWithMetrics(CairoConfiguration configuration, CustomisableRunnable code) throws Exception {
+        executeVanilla(() -> TestUtils.execute(null, code, configuration, Metrics.enabled(), LOG));
     }
 
     protected static void executeWithPool(
@@ -946,6 +946,8 @@ public class AlterTableAttachPartitionTest extends AbstractAlterTableAttachParti
 
     @Test
     public void testCannotRenameDetachedFolderOnAttach() throws Exception {
+        // partition stats are renamed into the partition directory, keep the failure on the attach rename
+        configOverridePartitionStatsEnabled(false);
         AtomicInteger counter = new AtomicInteger(1);
         FilesFacadeImpl ff = new TestFilesFacadeImpl() {
             @Override
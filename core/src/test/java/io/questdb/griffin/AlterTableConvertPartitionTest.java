@@ -0,0 +1,482 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin;
+
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.PartitionBy;
+import io.questdb.cairo.PartitionCompressionJob;
+import io.questdb.cairo.TableReader;
+import io.questdb.cairo.TableUtils;
+import io.questdb.cairo.TableWriter;
+import io.questdb.std.Zip;
+import io.questdb.std.datetime.microtime.TimestampFormatUtils;
+import io.questdb.std.str.Path;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class AlterTableConvertPartitionTest extends AbstractGriffinTest {
+
+    private static final String EXPECTED = "i\tsym\ts\tl\tts\n" +
+            "1\ta\ts1\t10\t2023-01-01T00:00:00.000000Z\n" +
+            "2\tb\ts2\t20\t2023-01-01T12:00:00.000000Z\n" +
+            "3\ta\ts3\t30\t2023-01-02T00:00:00.000000Z\n" +
+            "4\tb\t\t40\t2023-01-02T12:00:00.000000Z\n" +
+            "5\ta\ts5\t50\t2023-01-03T00:00:00.000000Z\n" +
+            "6\tb\ts6\t60\t2023-01-03T12:00:00.000000Z\n";
+
+    @BeforeClass
+    public static void setUpStatic() {
+        AbstractGriffinTest.setUpStatic();
+        // static gzip header is allocated on first use and would be reported as a leak
+        Zip.init();
+    }
+
+    @Test
+    public void testActivePartition() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable("x");
+            assertConvertFailure("alter table x convert partition to compressed list '2023-01-03'", "cannot convert active partition");
+            assertSql("x", EXPECTED);
+        });
+    }
+
+    @Test
+    public void testAddIndex() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable("x");
+            compile("alter table x convert partition to compressed list '2023-01-01', '2023-01-02'");
+            compile("alter table x alter column sym add index");
+            assertSql(
+                    "select i, sym from x where sym = 'b'",
+                    "i\tsym\n" +
+                            "2\tb\n" +
+                            "4\tb\n" +
+                            "6\tb\n"
+            );
+        });
+    }
+
+    @Test
+    public void testAgePolicy() throws Exception {
+        configOverridePartitionCompressionAge(36 * 3600 * 1000L);
+        assertMemoryLeak(() -> {
+            createTable("x");
+            try (TableReader reader = getReader("x")) {
+                // commits leave partitions as they are, the job compresses them
+                Assert.assertFalse(reader.getTxFile().isPartitionCompressed(0));
+            }
+            runPartitionCompressionJob();
+            try (TableReader reader = getReader("x")) {
+                // 2023-01-01 ends 36h before max timestamp, 2023-01-02 is still warm
+                Assert.assertTrue(reader.getTxFile().isPartitionCompressed(0));
+                Assert.assertFalse(reader.getTxFile().isPartitionCompressed(1));
+                Assert.assertFalse(reader.getTxFile().isPartitionCompressed(2));
+            }
+            assertSql("x", EXPECTED);
+
+            executeInsert("insert into x values (7, 'a', 's7', 70, '2023-01-04T12:00:00.000000Z')");
+            runPartitionCompressionJob();
+            try (TableReader reader = getReader("x")) {
+                Assert.assertTrue(reader.getTxFile().isPartitionCompressed(1));
+                Assert.assertFalse(reader.getTxFile().isPartitionCompressed(2));
+            }
+            assertSql("select sum(l) from x", "sum\n280\n");
+        });
+    }
+
+    @Test
+    public void testAgePolicyWalTable() throws Exception {
+        configOverridePartitionCompressionAge(36 * 3600 * 1000L);
+        assertMemoryLeak(() -> {
+            compile("create table x (i int, sym symbol, s string, l long, ts timestamp) timestamp(ts) partition by DAY WAL");
+            insertRows();
+            drainWalQueue();
+            runPartitionCompressionJob();
+            drainWalQueue();
+            try (TableReader reader = getReader("x")) {
+                Assert.assertTrue(reader.getTxFile().isPartitionCompressed(0));
+                Assert.assertFalse(reader.getTxFile().isPartitionCompressed(1));
+            }
+            assertSql("x", EXPECTED);
+        });
+    }
+
+    @Test
+    public void testAlreadyCompressed() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable("x");
+            compile("alter table x convert partition to compressed list '2023-01-01'");
+            compile("alter table x convert partition to compressed list '2023-01-01'");
+            assertSql("x", EXPECTED);
+        });
+    }
+
+    @Test
+    public void testCompressList() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable("x");
+            try (TableReader reader = getReader("x")) {
+                assertSql("x", EXPECTED);
+                compile("alter table x convert partition to compressed list '2023-01-01', '2023-01-02'");
+                // reader opened before conversion moves on to compressed files
+                Assert.assertTrue(reader.reload());
+                Assert.assertTrue(reader.getTxFile().isPartitionCompressed(0));
+                Assert.assertTrue(reader.getTxFile().isPartitionCompressed(1));
+                Assert.assertFalse(reader.getTxFile().isPartitionCompressed(2));
+            }
+            assertSql("x", EXPECTED);
+            assertSql(
+                    "select sym, sum(l) from x order by sym",
+                    "sym\tsum\n" +
+                            "a\t90\n" +
+                            "b\t120\n"
+            );
+        });
+    }
+
+    @Test
+    public void testCompressWhere() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable("x");
+            compile("alter table x convert partition to compressed where ts < '2023-01-03'");
+            try (TableReader reader = getReader("x")) {
+                Assert.assertTrue(reader.getTxFile().isPartitionCompressed(0));
+                Assert.assertTrue(reader.getTxFile().isPartitionCompressed(1));
+            }
+            assertSql("x", EXPECTED);
+        });
+    }
+
+    @Test
+    public void testDetachCompressed() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable("x");
+            compile("alter table x convert partition to compressed list '2023-01-01'");
+            assertConvertFailure("alter table x detach partition list '2023-01-01'", "DETACH_ERR_COMPRESSED");
+        });
+    }
+
+    @Test
+    public void testDropPartitionsOfCompressed() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable("x");
+            compile("alter table x convert partition to compressed list '2023-01-01', '2023-01-02'");
+            // min timestamp is read from encoded timestamp column of the next partition
+            compile("alter table x drop partition list '2023-01-01'");
+            assertSql("select min(ts), count() from x", "min\tcount\n2023-01-02T00:00:00.000000Z\t4\n");
+
+            // compressed partition becomes active and is converted back to native
+            compile("alter table x drop partition list '2023-01-03'");
+            try (TableReader reader = getReader("x")) {
+                Assert.assertFalse(reader.getTxFile().isPartitionCompressed(0));
+            }
+            assertSql("select max(ts), count() from x", "max\tcount\n2023-01-02T12:00:00.000000Z\t2\n");
+
+            executeInsert("insert into x values (7, 'a', 's7', 70, '2023-01-02T13:00:00.000000Z')");
+            assertSql("select max(ts), sum(l) from x", "max\tsum\n2023-01-02T13:00:00.000000Z\t140\n");
+        });
+    }
+
+    @Test
+    public void testEncodedColumns() throws Exception {
+        assertMemoryLeak(() -> {
+            // sequential, low cardinality, sparse with nulls and random longs, jittered designated timestamp
+            compile("create table x as (" +
+                    "select x, rnd_long(1, 5, 0) lc, rnd_long(-100, 100, 5) ln, rnd_long() l, " +
+                    "rnd_timestamp(to_timestamp('2020', 'yyyy'), to_timestamp('2021', 'yyyy'), 3) t, " +
+                    "timestamp_sequence('2023-01-01', 500000L + rnd_long(0, 3, 0)) ts " +
+                    "from long_sequence(600000)" +
+                    ") timestamp(ts) partition by DAY");
+            compile("insert into x (x, lc, ln, l, t, ts) values " +
+                    "(0, 1, " + Long.MAX_VALUE + ", " + (Long.MIN_VALUE + 1) + ", null, '2023-01-01T00:00:00.000000Z')");
+            final String[] queries = {
+                    "select count(), sum(x), sum(lc), sum(ln), count(ln), min(l), max(l), sum(l), min(t), max(t), count(t) from x",
+                    "select lc, count(), sum(x) from x order by lc",
+                    "select * from x where ts = '2023-01-02T12:00:00.000000Z'",
+                    "select * from x where x in (0, 1, 300000)",
+                    "select * from x latest on ts partition by lc"
+            };
+            final String[] expected = new String[queries.length];
+            for (int i = 0; i < queries.length; i++) {
+                expected[i] = select(queries[i]);
+            }
+
+            compile("alter table x convert partition to compressed where ts < '2023-01-04'");
+            for (int i = 0; i < queries.length; i++) {
+                assertSql(queries[i], expected[i]);
+            }
+
+            try (TableReader reader = getReader("x"); Path path = new Path()) {
+                path.of(configuration.getRoot()).concat(reader.getTableToken());
+                TableUtils.setPathForPartition(path, PartitionBy.DAY, reader.getTxFile().getPartitionTimestamp(1), false);
+                TableUtils.txnPartitionConditionally(path, reader.getTxFile().getPartitionNameTxn(1));
+                final int plen = path.length();
+                final long nativeSize = reader.getTxFile().getPartitionSize(1) * Long.BYTES;
+                // delta-of-delta encoded sequences take a few bytes per block
+                Assert.assertTrue(configuration.getFilesFacade().length(path.concat("x.d").$()) < nativeSize / 100);
+                Assert.assertTrue(configuration.getFilesFacade().length(path.trimTo(plen).concat("ts.d").$()) < nativeSize / 10);
+                // 5 distinct values pack into 3 bits each
+                Assert.assertTrue(configuration.getFilesFacade().length(path.trimTo(plen).concat("lc.d").$()) < nativeSize / 10);
+            }
+
+            compile("alter table x convert partition to native where ts < '2023-01-04'");
+            for (int i = 0; i < queries.length; i++) {
+                assertSql(queries[i], expected[i]);
+            }
+        });
+    }
+
+    @Test
+    public void testIntervalScanCompressed() throws Exception {
+        assertMemoryLeak(() -> {
+            compile("create table x as (" +
+                    "select x, rnd_long() l, timestamp_sequence('2023-01-01', 250000L) ts " +
+                    "from long_sequence(1000000)" +
+                    ") timestamp(ts) partition by DAY");
+            final String[] queries = {
+                    "select count(), sum(x), sum(l), min(ts), max(ts) from x where ts in '2023-01-02'",
+                    "select count(), sum(l) from x where ts between '2023-01-01T10:11:12.3' and '2023-01-03T01:00:00'",
+                    "select ts, x from x where ts > '2023-01-01T23:59:59' limit 3",
+                    "select ts, x from x where ts < '2023-01-02T10' order by ts desc limit 3",
+                    "select ts, sum(l) from x where ts in '2023-01-02T06;2h' sample by 1h"
+            };
+            final String[] expected = new String[queries.length];
+            for (int i = 0; i < queries.length; i++) {
+                expected[i] = select(queries[i]);
+            }
+
+            compile("alter table x convert partition to compressed where ts < '2023-01-03'");
+            for (int i = 0; i < queries.length; i++) {
+                assertSql(queries[i], expected[i]);
+            }
+        });
+    }
+
+    @Test
+    public void testLargeColumn() throws Exception {
+        assertMemoryLeak(() -> {
+            // several compression blocks per column
+            compile("create table x as (" +
+                    "select x, rnd_str(5, 20, 2) s, rnd_long() l, timestamp_sequence('2023-01-01', 500000L) ts " +
+                    "from long_sequence(400000)" +
+                    ") timestamp(ts) partition by DAY");
+            final String query = "select count(), sum(x), sum(l), sum(length(s)) from x";
+            final String expected = select(query);
+            compile("alter table x convert partition to compressed where ts < '2023-01-03'");
+            assertSql(query, expected);
+            assertSql("select x, s, l from x where ts = '2023-01-01T12:00:00.000000Z'", select("select x, s, l from x where x = 86401"));
+
+            compile("alter table x convert partition to native where ts < '2023-01-03'");
+            assertSql(query, expected);
+        });
+    }
+
+    @Test
+    public void testMissingPartition() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable("x");
+            assertConvertFailure("alter table x convert partition to compressed list '2022-12-01'", "partition does not exist");
+        });
+    }
+
+    @Test
+    public void testO3AppendToCompressed() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable("x");
+            compile("alter table x convert partition to compressed list '2023-01-01', '2023-01-02'");
+            try (TableReader reader = getReader("x")) {
+                // rows after the last row of the partition are appended to the decompressed copy
+                executeInsert("insert into x values (7, 'c', 's7', 70, '2023-01-02T18:00:00.000000Z')");
+                Assert.assertTrue(reader.getTxFile().isPartitionCompressed(1));
+                Assert.assertEquals(6, reader.size());
+
+                reader.reload();
+                Assert.assertEquals(7, reader.size());
+                Assert.assertTrue(reader.getTxFile().isPartitionCompressed(0));
+                Assert.assertFalse(reader.getTxFile().isPartitionCompressed(1));
+            }
+            assertSql(
+                    "select i, sym, s, l, ts from x where ts in '2023-01-02'",
+                    "i\tsym\ts\tl\tts\n" +
+                            "3\ta\ts3\t30\t2023-01-02T00:00:00.000000Z\n" +
+                            "4\tb\t\t40\t2023-01-02T12:00:00.000000Z\n" +
+                            "7\tc\ts7\t70\t2023-01-02T18:00:00.000000Z\n"
+            );
+        });
+    }
+
+    @Test
+    public void testO3IntoCompressed() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable("x");
+            compile("alter table x convert partition to compressed list '2023-01-01', '2023-01-02'");
+            compile("alter table x alter column sym add index");
+            // the insert right after conversion, merge into compressed partition along with the active one
+            executeInsert("insert into x values " +
+                    "(7, 'a', 's7', 70, '2023-01-01T06:00:00.000000Z')," +
+                    "(8, 'b', 's8', 80, '2023-01-03T18:00:00.000000Z')"
+            );
+            try (TableReader reader = getReader("x")) {
+                Assert.assertFalse(reader.getTxFile().isPartitionCompressed(0));
+                Assert.assertTrue(reader.getTxFile().isPartitionCompressed(1));
+                Assert.assertEquals(8, reader.size());
+            }
+            assertSql(
+                    "x",
+                    "i\tsym\ts\tl\tts\n" +
+                            "1\ta\ts1\t10\t2023-01-01T00:00:00.000000Z\n" +
+                            "7\ta\ts7\t70\t2023-01-01T06:00:00.000000Z\n" +
+                            "2\tb\ts2\t20\t2023-01-01T12:00:00.000000Z\n" +
+                            "3\ta\ts3\t30\t2023-01-02T00:00:00.000000Z\n" +
+                            "4\tb\t\t40\t2023-01-02T12:00:00.000000Z\n" +
+                            "5\ta\ts5\t50\t2023-01-03T00:00:00.000000Z\n" +
+                            "6\tb\ts6\t60\t2023-01-03T12:00:00.000000Z\n" +
+                            "8\tb\ts8\t80\t2023-01-03T18:00:00.000000Z\n"
+            );
+            assertSql("select i from x where sym = 'a'", "i\n1\n7\n3\n5\n");
+
+            // rolled back rows leave compressed partition intact
+            try (TableWriter writer = getWriter("x")) {
+                TableWriter.Row row = writer.newRow(TimestampFormatUtils.parseTimestamp("2023-01-02T06:00:00.000000Z"));
+                row.putInt(0, 9);
+                row.append();
+                writer.rollback();
+                Assert.assertTrue(writer.getTxWriter().isPartitionCompressed(1));
+                row = writer.newRow(TimestampFormatUtils.parseTimestamp("2023-01-02T06:00:00.000000Z"));
+                row.putInt(0, 10);
+                row.append();
+                writer.commit();
+            }
+            assertSql("select i, ts from x where ts in '2023-01-02'", "i\tts\n" +
+                    "3\t2023-01-02T00:00:00.000000Z\n" +
+                    "10\t2023-01-02T06:00:00.000000Z\n" +
+                    "4\t2023-01-02T12:00:00.000000Z\n"
+            );
+        });
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable("x");
+            compile("alter table x convert partition to compressed list '2023-01-01', '2023-01-02'");
+            compile("alter table x convert partition to native list '2023-01-01', '2023-01-02'");
+            try (TableReader reader = getReader("x")) {
+                Assert.assertFalse(reader.getTxFile().isPartitionCompressed(0));
+                Assert.assertFalse(reader.getTxFile().isPartitionCompressed(1));
+            }
+            // native partitions are writable again
+            compile("update x set l = 0 where i = 1");
+            executeInsert("insert into x values (0, 'c', 's0', 0, '2023-01-01T01:00:00.000000Z')");
+            assertSql("select sum(l), count() from x", "sum\tcount\n200\t7\n");
+        });
+    }
+
+    @Test
+    public void testSyntaxErrors() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable("x");
+            assertSyntaxError("alter table x convert", "'partition' expected");
+            assertSyntaxError("alter table x convert partition", "'to' expected");
+            assertSyntaxError("alter table x convert partition to", "'compressed' or 'native' expected");
+            assertSyntaxError("alter table x convert partition to lz4", "'compressed' or 'native' expected");
+            assertSyntaxError("alter table x convert partition to compressed", "'list' or 'where' expected");
+        });
+    }
+
+    @Test
+    public void testUpdateCompressed() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable("x");
+            compile("alter table x convert partition to compressed list '2023-01-01'");
+            assertConvertFailure("update x set l = 0 where i = 1", "cannot update read-only partition");
+            assertSql("x", EXPECTED);
+        });
+    }
+
+    @Test
+    public void testWalTable() throws Exception {
+        assertMemoryLeak(() -> {
+            compile("create table x (i int, sym symbol, s string, l long, ts timestamp) timestamp(ts) partition by DAY WAL");
+            insertRows();
+            drainWalQueue();
+            compile("alter table x convert partition to compressed list '2023-01-01'");
+            drainWalQueue();
+            try (TableReader reader = getReader("x")) {
+                Assert.assertTrue(reader.getTxFile().isPartitionCompressed(0));
+            }
+            assertSql("x", EXPECTED);
+        });
+    }
+
+    private static void assertConvertFailure(String sql, String message) throws SqlException {
+        try {
+            compile(sql).execute(null).await();
+            Assert.fail();
+        } catch (CairoException e) {
+            TestUtils.assertContains(e.getFlyweightMessage(), message);
+        }
+    }
+
+    private static void assertSyntaxError(String sql, String message) {
+        try {
+            compile(sql);
+            Assert.fail();
+        } catch (SqlException e) {
+            TestUtils.assertContains(e.getFlyweightMessage(), message);
+        }
+    }
+
+    private static void createTable(String name) throws SqlException {
+        compile("create table " + name + " (i int, sym symbol, s string, l long, ts timestamp) timestamp(ts) partition by DAY");
+        insertRows();
+    }
+
+    private static void insertRows() throws SqlException {
+        compile("insert into x values " +
+                "(1, 'a', 's1', 10, '2023-01-01T00:00:00.000000Z')," +
+                "(2, 'b', 's2', 20, '2023-01-01T12:00:00.000000Z')," +
+                "(3, 'a', 's3', 30, '2023-01-02T00:00:00.000000Z')," +
+                "(4, 'b', null, 40, '2023-01-02T12:00:00.000000Z')," +
+                "(5, 'a', 's5', 50, '2023-01-03T00:00:00.000000Z')," +
+                "(6, 'b', 's6', 60, '2023-01-03T12:00:00.000000Z')"
+        );
+    }
+
+    private static void runPartitionCompressionJob() {
+        try (PartitionCompressionJob job = new PartitionCompressionJob(engine, null)) {
+            job.run(0);
+        }
+    }
+
+    private static String select(String query) throws SqlException {
+        sink.clear();
+        TestUtils.printSql(compiler, sqlExecutionContext, query, sink);
+        return sink.toString();
+    }
+}
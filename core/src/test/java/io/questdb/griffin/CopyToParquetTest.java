@@ -0,0 +1,546 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin;
+
+import io.questdb.cairo.ColumnType;
+import io.questdb.cairo.GeoHashes;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.cairo.sql.RecordMetadata;
+import io.questdb.std.*;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+public class CopyToParquetTest extends AbstractGriffinTest {
+
+    @BeforeClass
+    public static void setUpStatic() {
+        try {
+            inputRoot = temp.newFolder("exports" + System.nanoTime()).getAbsolutePath();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        AbstractGriffinTest.setUpStatic();
+        // static gzip header is allocated on first use and would be reported as a leak
+        Zip.init();
+    }
+
+    @Test
+    public void testColumnTop() throws Exception {
+        assertMemoryLeak(() -> {
+            compile("create table x as (select x, timestamp_sequence('2023-01-01', 3600000000L) ts from long_sequence(30)) timestamp(ts) partition by DAY");
+            compile("alter table x add column s string");
+            compile("insert into x select x, timestamp_sequence('2023-01-02T06:00', 3600000000L), 'abc' from long_sequence(30)");
+            assertExport("copy x to 'tops' with format parquet", "tops", "x", 60);
+        });
+    }
+
+    @Test
+    public void testDirectoryNameEmpty() throws Exception {
+        assertFailure("copy x to ''", "create table x (l long)", 10, "directory name expected");
+    }
+
+    @Test
+    public void testDirectoryNameWithDots() throws Exception {
+        assertFailure("copy x to '../../' with format parquet", "create table x (l long)", 10, "'.' is not allowed");
+    }
+
+    @Test
+    public void testEmptyTable() throws Exception {
+        assertMemoryLeak(() -> {
+            compile("create table x (l long, s string, ts timestamp) timestamp(ts) partition by DAY");
+            assertExport("copy x to 'empty' with format parquet", "empty", "x", 0);
+        });
+    }
+
+    @Test
+    public void testExportAllTypes() throws Exception {
+        assertMemoryLeak(() -> {
+            compile("create table x as (" +
+                    "select" +
+                    " x," +
+                    " rnd_boolean() b," +
+                    " rnd_byte() bt," +
+                    " rnd_short() sh," +
+                    " rnd_char() ch," +
+                    " rnd_int(0, 100, 2) i," +
+                    " rnd_long(0, 1000, 2) l," +
+                    " rnd_float(2) f," +
+                    " rnd_double(2) d," +
+                    " rnd_str('abc', 'żółw', null) s," +
+                    " rnd_symbol('a', 'b', null) sym," +
+                    " rnd_bin(1, 4, 2) bin," +
+                    " rnd_uuid4() u," +
+                    " rnd_geohash(5) g1," +
+                    " rnd_geohash(10) g2," +
+                    " rnd_geohash(20) g," +
+                    " rnd_geohash(40) g4," +
+                    " rnd_date(to_date('2015', 'yyyy'), to_date('2016', 'yyyy'), 2) dt," +
+                    " timestamp_sequence('2023-01-01', 60000000L) ts" +
+                    " from long_sequence(5000)" +
+                    ") timestamp(ts) partition by HOUR");
+            // nulls of every nullable type, including the ones stored as column tops
+            compile("alter table x add column s2 string");
+            compile("alter table x add column l2 long");
+            compile("insert into x (x, i, l, f, d, s, sym, bin, u, g1, g2, g, g4, dt, ts, s2, l2) values " +
+                    "(0, null, null, null, null, null, null, null, null, null, null, null, null, null, '2023-01-10', 'x', 1)");
+            assertExport("copy x to 'all' with format parquet", "all", "x", 5001);
+            assertExport("copy x to 'allgz' with format parquet compression gzip", "allgz", "x", 5001);
+        });
+    }
+
+    @Test
+    public void testGzip() throws Exception {
+        assertMemoryLeak(() -> {
+            compile("create table x as (select x % 10 l, rnd_symbol('a', 'b', 'c') sym, timestamp_sequence(0, 1000000L) ts from long_sequence(100000)) timestamp(ts) partition by DAY");
+            final long plainSize = assertExport("copy x to 'plain' with format parquet compression uncompressed", "plain", "x", 100000);
+            final long gzipSize = assertExport("copy x to 'gzip' with format parquet compression gzip", "gzip", "x", 100000);
+            Assert.assertTrue(gzipSize * 4 < plainSize);
+        });
+    }
+
+    @Test
+    public void testInvalidCompression() throws Exception {
+        assertFailure("copy x to 'e' with format parquet compression lz4", "create table x (l long)", 46, "'gzip' or 'uncompressed' expected");
+    }
+
+    @Test
+    public void testInvalidFormat() throws Exception {
+        assertFailure("copy x to 'e' with format csv", "create table x (l long)", 26, "'parquet' expected");
+    }
+
+    @Test
+    public void testMissingFormat() throws Exception {
+        assertFailure("copy x to 'e' with compression gzip", "create table x (l long)", 31, "'format parquet' expected");
+    }
+
+    @Test
+    public void testMissingWith() throws Exception {
+        assertFailure("copy x to 'e' format parquet", "create table x (l long)", 14, "'with' expected");
+    }
+
+    @Test
+    public void testOverwrite() throws Exception {
+        assertMemoryLeak(() -> {
+            compile("create table x as (select x, timestamp_sequence(0, 1000000L) ts from long_sequence(1000)) timestamp(ts) partition by DAY");
+            final long size = assertExport("copy x to 'dir' with format parquet", "dir", "x", 1000);
+            compile("truncate table x");
+            compile("insert into x select x, timestamp_sequence(0, 1000000L) from long_sequence(10)");
+            Assert.assertTrue(assertExport("copy x to 'dir' with format parquet", "dir", "x", 10) < size);
+        });
+    }
+
+    @Test
+    public void testTableDoesNotExist() throws Exception {
+        assertFailure("copy y to 'e' with format parquet", "create table x (l long)", 5, "table does not exist");
+    }
+
+    @Test
+    public void testUnsupportedColumnType() throws Exception {
+        assertFailure("copy x to 'e' with format parquet", "create table x (l long256)", 5, "column type is not supported by parquet export [column=l, type=LONG256]");
+    }
+
+    // returns size of the exported file
+    private long assertExport(String sql, String dirName, String tableName, long rowCount) throws Exception {
+        final String fileName = dirName + Files.SEPARATOR + tableName + ".parquet";
+        assertSql(sql, "path\trows\n" + fileName + '\t' + rowCount + '\n');
+
+        final byte[] bytes = java.nio.file.Files.readAllBytes(java.nio.file.Paths.get(inputRoot, fileName));
+        final ByteBuffer buf = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        final int footerSize = buf.getInt(bytes.length - 8);
+        Assert.assertEquals("PAR1", new String(bytes, 0, 4, StandardCharsets.US_ASCII));
+        Assert.assertEquals("PAR1", new String(bytes, bytes.length - 4, 4, StandardCharsets.US_ASCII));
+        Assert.assertTrue(footerSize > 0 && footerSize + 12 <= bytes.length);
+        TestUtils.assertContains(new String(bytes, bytes.length - 8 - footerSize, footerSize, StandardCharsets.ISO_8859_1), "QuestDB");
+
+        // decode the file and compare it to the table value by value
+        final ParquetFile file = new ParquetFile(bytes);
+        Assert.assertEquals(rowCount, file.rowCount);
+        try (
+                RecordCursorFactory factory = compiler.compile(tableName, sqlExecutionContext).getRecordCursorFactory();
+                RecordCursor cursor = factory.getCursor(sqlExecutionContext)
+        ) {
+            final RecordMetadata metadata = factory.getMetadata();
+            Assert.assertEquals(metadata.getColumnCount(), file.columnNames.size());
+            for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+                Assert.assertEquals(metadata.getColumnName(i), file.columnNames.get(i));
+                Assert.assertEquals(rowCount, file.values.get(i).size());
+            }
+            final Record record = cursor.getRecord();
+            int row = 0;
+            while (cursor.hasNext()) {
+                for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+                    final Object expected = valueOf(record, i, metadata.getColumnType(i));
+                    final Object actual = file.values.get(i).get(row);
+                    if (expected instanceof byte[] && actual instanceof byte[]) {
+                        Assert.assertArrayEquals("row " + row + ", column " + metadata.getColumnName(i), (byte[]) expected, (byte[]) actual);
+                    } else {
+                        Assert.assertEquals("row " + row + ", column " + metadata.getColumnName(i), expected, actual);
+                    }
+                }
+                row++;
+            }
+            Assert.assertEquals(rowCount, row);
+        }
+        return bytes.length;
+    }
+
+    // value as the parquet reader is expected to see it, nulls are null
+    private static Object valueOf(Record record, int col, int columnType) {
+        switch (ColumnType.tagOf(columnType)) {
+            case ColumnType.BOOLEAN:
+                return record.getBool(col);
+            case ColumnType.BYTE:
+                return (long) record.getByte(col);
+            case ColumnType.SHORT:
+                return (long) record.getShort(col);
+            case ColumnType.CHAR:
+                final char c = record.getChar(col);
+                return c != 0 ? String.valueOf(c) : null;
+            case ColumnType.INT:
+                final int i = record.getInt(col);
+                return i != Numbers.INT_NaN ? (long) i : null;
+            case ColumnType.LONG:
+            case ColumnType.DATE:
+            case ColumnType.TIMESTAMP:
+                final long l = record.getLong(col);
+                return l != Numbers.LONG_NaN ? l : null;
+            case ColumnType.GEOBYTE:
+                final byte gb = record.getGeoByte(col);
+                return gb != GeoHashes.BYTE_NULL ? (long) gb : null;
+            case ColumnType.GEOSHORT:
+                final short gs = record.getGeoShort(col);
+                return gs != GeoHashes.SHORT_NULL ? (long) gs : null;
+            case ColumnType.GEOINT:
+                final int gi = record.getGeoInt(col);
+                return gi != GeoHashes.INT_NULL ? (long) gi : null;
+            case ColumnType.GEOLONG:
+                final long gl = record.getGeoLong(col);
+                return gl != GeoHashes.NULL ? gl : null;
+            case ColumnType.FLOAT:
+                final float f = record.getFloat(col);
+                return f == f ? f : null;
+            case ColumnType.DOUBLE:
+                final double d = record.getDouble(col);
+                return d == d ? d : null;
+            case ColumnType.STRING:
+                final CharSequence str = record.getStr(col);
+                return str != null ? str.toString() : null;
+            case ColumnType.SYMBOL:
+                final CharSequence sym = record.getSym(col);
+                return sym != null ? sym.toString() : null;
+            case ColumnType.BINARY:
+                final BinarySequence bin = record.getBin(col);
+                if (bin == null) {
+                    return null;
+                }
+                final byte[] bytes = new byte[(int) bin.length()];
+                for (int b = 0; b < bytes.length; b++) {
+                    bytes[b] = bin.byteAt(b);
+                }
+                return bytes;
+            case ColumnType.UUID:
+                final long lo = record.getLong128Lo(col);
+                final long hi = record.getLong128Hi(col);
+                if (Uuid.isNull(lo, hi)) {
+                    return null;
+                }
+                return ByteBuffer.allocate(16).order(ByteOrder.BIG_ENDIAN).putLong(hi).putLong(lo).array();
+            default:
+                throw new AssertionError("unexpected type " + ColumnType.nameOf(columnType));
+        }
+    }
+
+    // Minimal Parquet reader for the subset of the format the exporter writes: PLAIN values,
+    // RLE/bit-packed definition levels and uncompressed or GZIP data pages. Footer and page
+    // headers are decoded with a generic Thrift compact protocol parser.
+    private static class ParquetFile {
+        final List<String> columnNames = new ArrayList<>();
+        final List<List<Object>> values = new ArrayList<>();
+        final long rowCount;
+        private final byte[] bytes;
+        private final List<Long> physicalTypes = new ArrayList<>();
+        private final List<Boolean> required = new ArrayList<>();
+        private final List<Boolean> utf8 = new ArrayList<>();
+        private int pos;
+
+        ParquetFile(byte[] bytes) throws IOException {
+            this.bytes = bytes;
+            final int footerSize = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getInt(bytes.length - 8);
+            pos = bytes.length - 8 - footerSize;
+            final HashMap<Integer, Object> metadata = readStruct();
+            Assert.assertEquals(bytes.length - 8, pos);
+
+            final List<Object> schema = list(metadata, 2);
+            Assert.assertEquals(schema.size() - 1L, ((HashMap<?, ?>) schema.get(0)).get(5));
+            for (int i = 1, n = schema.size(); i < n; i++) {
+                final HashMap<?, ?> element = (HashMap<?, ?>) schema.get(i);
+                physicalTypes.add((Long) element.get(1));
+                required.add((Long) element.get(3) == 0);
+                columnNames.add(new String((byte[]) element.get(4), StandardCharsets.UTF_8));
+                utf8.add(Long.valueOf(0).equals(element.get(6)));
+                values.add(new ArrayList<>());
+            }
+            rowCount = (Long) metadata.get(3);
+
+            long rowGroupRowCount = 0;
+            for (Object rowGroup : list(metadata, 4)) {
+                final HashMap<Integer, Object> group = cast(rowGroup);
+                final List<Object> chunks = list(group, 1);
+                Assert.assertEquals(columnNames.size(), chunks.size());
+                for (int i = 0, n = chunks.size(); i < n; i++) {
+                    final HashMap<Integer, Object> chunkMetadata = cast(cast(chunks.get(i)).get(3));
+                    Assert.assertEquals(physicalTypes.get(i), chunkMetadata.get(1));
+                    readChunk(i, chunkMetadata);
+                }
+                rowGroupRowCount += (Long) group.get(3);
+            }
+            Assert.assertEquals(rowCount, rowGroupRowCount);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static HashMap<Integer, Object> cast(Object struct) {
+            return (HashMap<Integer, Object>) struct;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static List<Object> list(HashMap<Integer, Object> struct, int fieldId) {
+            return (List<Object>) struct.get(fieldId);
+        }
+
+        private static byte[] gunzip(byte[] data) throws IOException {
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                final byte[] buf = new byte[4096];
+                int n;
+                while ((n = in.read(buf)) > 0) {
+                    out.write(buf, 0, n);
+                }
+                return out.toByteArray();
+            }
+        }
+
+        private static long readVarint(ByteBuffer buf) {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                final byte b = buf.get();
+                value |= (long) (b & 0x7f) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+
+        private void readChunk(int columnIndex, HashMap<Integer, Object> chunkMetadata) throws IOException {
+            final long codec = (Long) chunkMetadata.get(4);
+            final long valueCount = (Long) chunkMetadata.get(5);
+            pos = (int) (long) (Long) chunkMetadata.get(9);
+            final int chunkEnd = (int) (pos + (Long) chunkMetadata.get(7));
+            long decoded = 0;
+            while (decoded < valueCount) {
+                final HashMap<Integer, Object> pageHeader = readStruct();
+                Assert.assertEquals(0L, pageHeader.get(1));
+                final int uncompressedSize = (int) (long) (Long) pageHeader.get(2);
+                final int compressedSize = (int) (long) (Long) pageHeader.get(3);
+                final int pageValueCount = (int) (long) (Long) cast(pageHeader.get(5)).get(1);
+                byte[] page = Arrays.copyOfRange(bytes, pos, pos + compressedSize);
+                pos += compressedSize;
+                if (codec == 2) {
+                    page = gunzip(page);
+                } else {
+                    Assert.assertEquals(0, codec);
+                }
+                Assert.assertEquals(uncompressedSize, page.length);
+                readPage(columnIndex, ByteBuffer.wrap(page).order(ByteOrder.LITTLE_ENDIAN), pageValueCount);
+                decoded += pageValueCount;
+            }
+            Assert.assertEquals(valueCount, decoded);
+            Assert.assertEquals(chunkEnd, pos);
+        }
+
+        private void readPage(int columnIndex, ByteBuffer page, int valueCount) {
+            final boolean[] defined = new boolean[valueCount];
+            if (required.get(columnIndex)) {
+                Arrays.fill(defined, true);
+            } else {
+                final int levelsEnd = page.getInt() + page.position();
+                int i = 0;
+                while (i < valueCount) {
+                    final long header = readVarint(page);
+                    if ((header & 1) == 0) {
+                        final boolean value = page.get() != 0;
+                        for (long k = 0, n = header >>> 1; k < n; k++) {
+                            defined[i++] = value;
+                        }
+                    } else {
+                        for (long k = 0, n = (header >>> 1) * 8; k < n; k += 8) {
+                            final int bits = page.get() & 0xff;
+                            for (int b = 0; b < 8 && i < valueCount; b++) {
+                                defined[i++] = (bits & (1 << b)) != 0;
+                            }
+                        }
+                    }
+                }
+                Assert.assertEquals(levelsEnd, page.position());
+            }
+
+            final List<Object> column = values.get(columnIndex);
+            final int physicalType = (int) (long) physicalTypes.get(columnIndex);
+            int bitIndex = 0;
+            int bits = 0;
+            for (int i = 0; i < valueCount; i++) {
+                if (!defined[i]) {
+                    column.add(null);
+                    continue;
+                }
+                switch (physicalType) {
+                    case 0: // BOOLEAN, bit-packed
+                        if ((bitIndex & 7) == 0) {
+                            bits = page.get();
+                        }
+                        column.add((bits & (1 << (bitIndex++ & 7))) != 0);
+                        break;
+                    case 1: // INT32
+                        column.add((long) page.getInt());
+                        break;
+                    case 2: // INT64
+                        column.add(page.getLong());
+                        break;
+                    case 4: // FLOAT
+                        column.add(page.getFloat());
+                        break;
+                    case 5: // DOUBLE
+                        column.add(page.getDouble());
+                        break;
+                    case 6: { // BYTE_ARRAY
+                        final byte[] value = new byte[page.getInt()];
+                        page.get(value);
+                        // binary columns have no converted type, strings are annotated as UTF8
+                        column.add(utf8.get(columnIndex) ? new String(value, StandardCharsets.UTF_8) : value);
+                        break;
+                    }
+                    case 7: { // FIXED_LEN_BYTE_ARRAY
+                        final byte[] value = new byte[16];
+                        page.get(value);
+                        column.add(value);
+                        break;
+                    }
+                    default:
+                        Assert.fail("unexpected physical type " + physicalType);
+                }
+            }
+            Assert.assertFalse(page.hasRemaining());
+        }
+
+        private Object readValue(int type) {
+            switch (type) {
+                case 1:
+                    return true;
+                case 2:
+                    return false;
+                case 3:
+                    return (long) bytes[pos++];
+                case 4:
+                case 5:
+                case 6: {
+                    final long v = readVarint();
+                    return (v >>> 1) ^ -(v & 1);
+                }
+                case 7: {
+                    final double d = ByteBuffer.wrap(bytes, pos, 8).order(ByteOrder.LITTLE_ENDIAN).getDouble();
+                    pos += 8;
+                    return d;
+                }
+                case 8: {
+                    final int len = (int) readVarint();
+                    final byte[] value = Arrays.copyOfRange(bytes, pos, pos + len);
+                    pos += len;
+                    return value;
+                }
+                case 9:
+                case 10: {
+                    final int header = bytes[pos++] & 0xff;
+                    final int size = (header >>> 4) == 15 ? (int) readVarint() : header >>> 4;
+                    final int elementType = header & 0x0f;
+                    final List<Object> list = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        list.add(elementType == 1 || elementType == 2 ? bytes[pos++] == 1 : readValue(elementType));
+                    }
+                    return list;
+                }
+                case 12:
+                    return readStruct();
+                default:
+                    throw new AssertionError("unexpected thrift type " + type);
+            }
+        }
+
+        private HashMap<Integer, Object> readStruct() {
+            final HashMap<Integer, Object> struct = new HashMap<>();
+            int fieldId = 0;
+            while (true) {
+                final int header = bytes[pos++] & 0xff;
+                final int type = header & 0x0f;
+                if (type == 0) {
+                    return struct;
+                }
+                if ((header >>> 4) != 0) {
+                    fieldId += header >>> 4;
+                } else {
+                    final long v = readVarint();
+                    fieldId = (int) ((v >>> 1) ^ -(v & 1));
+                }
+                struct.put(fieldId, readValue(type));
+            }
+        }
+
+        private long readVarint() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                final byte b = bytes[pos++];
+                value |= (long) (b & 0x7f) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin;
+
+import io.questdb.cairo.TableReader;
+import io.questdb.cairo.TableReaderMetadata;
+import io.questdb.cairo.TableWriter;
+import io.questdb.std.Zip;
+import io.questdb.std.datetime.microtime.TimestampFormatUtils;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class DedupInsertTest extends AbstractGriffinTest {
+    private static final String INSERT_60_HOURS = "insert into x select cast(x % 3 as symbol), x, timestamp_sequence('2022-02-24', 3600000000L) from long_sequence(60)";
+
+    @BeforeClass
+    public static void setUpStatic() {
+        AbstractGriffinTest.setUpStatic();
+        // static gzip header is allocated on first use and would be reported as a leak
+        Zip.init();
+    }
+
+    @Test
+    public void testCreateAsSelectWithDedupKeys() throws Exception {
+        assertMemoryLeak(() -> {
+            compile("create table x as (" +
+                    "select rnd_symbol('A', 'B') s, x v, timestamp_sequence('2022-02-24', 1000000L) ts from long_sequence(3)" +
+                    ") timestamp(ts) partition by DAY BYPASS WAL dedup upsert keys(ts, s)");
+            try (TableReader reader = getReader("x")) {
+                final TableReaderMetadata metadata = reader.getMetadata();
+                Assert.assertTrue(metadata.getColumnMetadata(0).isDedupKey());
+                Assert.assertFalse(metadata.getColumnMetadata(1).isDedupKey());
+                Assert.assertTrue(metadata.getColumnMetadata(2).isDedupKey());
+            }
+        });
+    }
+
+    @Test
+    public void testDuplicatesWithinCommit() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable(false);
+            try (TableWriter writer = getWriter("x")) {
+                appendRow(writer, "A", 1, "2022-02-24T00:00:01");
+                appendRow(writer, "B", 2, "2022-02-24T00:00:01");
+                appendRow(writer, "A", 3, "2022-02-24T00:00:02");
+                // in-order duplicate of the max timestamp, replaces the earlier row
+                appendRow(writer, "A", 4, "2022-02-24T00:00:02");
+                // O3 duplicate, replaces the earlier row
+                appendRow(writer, "B", 5, "2022-02-24T00:00:01");
+                appendRow(writer, "C", 6, "2022-02-24T00:00:03");
+                writer.commit();
+            }
+
+            assertSql("x", "s\tv\tts\n" +
+                    "A\t1\t2022-02-24T00:00:01.000000Z\n" +
+                    "B\t5\t2022-02-24T00:00:01.000000Z\n" +
+                    "A\t4\t2022-02-24T00:00:02.000000Z\n" +
+                    "C\t6\t2022-02-24T00:00:03.000000Z\n");
+        });
+    }
+
+    @Test
+    public void testInOrderUniqueRowsAreKept() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable(false);
+            compile("insert into x select rnd_symbol('A', 'B'), x, timestamp_sequence('2022-02-24', 1000000L) from long_sequence(1000)");
+            assertSql("select count(), sum(v) from x", "count\tsum\n" +
+                    "1000\t500500\n");
+        });
+    }
+
+    @Test
+    public void testReplayIsIdempotent() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable(false);
+            compile(INSERT_60_HOURS);
+            // same rows again, they fall into existing partitions
+            compile(INSERT_60_HOURS);
+            // the same timestamps with different keys are new rows
+            executeInsert("insert into x values ('D', 100, '2022-02-24T01:00:00'), ('D', 101, '2022-02-25T00:00:00')");
+
+            assertSql("select count(), sum(v) from x", "count\tsum\n" +
+                    "62\t2031\n");
+            assertSql("x where ts = '2022-02-24T01:00:00'", "s\tv\tts\n" +
+                    "2\t2\t2022-02-24T01:00:00.000000Z\n" +
+                    "D\t100\t2022-02-24T01:00:00.000000Z\n");
+        });
+    }
+
+    @Test
+    public void testStringKeys() throws Exception {
+        assertMemoryLeak(() -> {
+            compile("create table x (s string, v long, ts timestamp) timestamp(ts) partition by DAY BYPASS WAL dedup upsert keys(ts, s)");
+            executeInsert("insert into x values ('abc', 1, '2022-02-24T00:00:01'), (null, 2, '2022-02-24T00:00:01'), ('abcd', 3, '2022-02-24T00:00:01')");
+            executeInsert("insert into x values ('abc', 4, '2022-02-24T00:00:01'), (null, 5, '2022-02-24T00:00:01'), ('ab', 6, '2022-02-24T00:00:01')");
+            assertSql("x order by v", "s\tv\tts\n" +
+                    "abcd\t3\t2022-02-24T00:00:01.000000Z\n" +
+                    "abc\t4\t2022-02-24T00:00:01.000000Z\n" +
+                    "\t5\t2022-02-24T00:00:01.000000Z\n" +
+                    "ab\t6\t2022-02-24T00:00:01.000000Z\n");
+        });
+    }
+
+    @Test
+    public void testTimestampOnlyKey() throws Exception {
+        assertMemoryLeak(() -> {
+            compile("create table x (v long, ts timestamp) timestamp(ts) partition by DAY BYPASS WAL dedup upsert keys(ts)");
+            executeInsert("insert into x values (1, '2022-02-24T00:00:01'), (2, '2022-02-24T00:00:01'), (3, '2022-02-24T00:00:02')");
+            executeInsert("insert into x values (4, '2022-02-24T00:00:02'), (5, '2022-02-24T00:00:03')");
+            assertSql("x", "v\tts\n" +
+                    "2\t2022-02-24T00:00:01.000000Z\n" +
+                    "4\t2022-02-24T00:00:02.000000Z\n" +
+                    "5\t2022-02-24T00:00:03.000000Z\n");
+        });
+    }
+
+    @Test
+    public void testUpsertDecompressesPartition() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable(false);
+            compile(INSERT_60_HOURS);
+            compile("alter table x convert partition to compressed list '2022-02-24'");
+            executeInsert("insert into x values ('1', 100, '2022-02-24T00:00:00')");
+
+            try (TableReader reader = getReader("x")) {
+                Assert.assertFalse(reader.getTxFile().isPartitionCompressed(0));
+            }
+            assertSql("select count(), sum(v) from x", "count\tsum\n" +
+                    "60\t1929\n");
+            assertSql("x where ts = '2022-02-24T00:00:00'", "s\tv\tts\n" +
+                    "1\t100\t2022-02-24T00:00:00.000000Z\n");
+        });
+    }
+
+    @Test
+    public void testUpsertReplacesCommittedRows() throws Exception {
+        assertMemoryLeak(() -> {
+            createUpsertTable(false);
+            executeUpsertRows();
+            assertUpsertRows();
+        });
+    }
+
+    @Test
+    public void testWalReplayIsIdempotent() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable(true);
+            compile(INSERT_60_HOURS);
+            drainWalQueue();
+            compile(INSERT_60_HOURS);
+            executeInsert("insert into x values ('D', 100, '2022-02-26T00:00:00'), ('D', 101, '2022-02-26T00:00:00')");
+            drainWalQueue();
+
+            assertSql("select count(), sum(v) from x", "count\tsum\n" +
+                    "61\t1931\n");
+            assertSql("x where ts = '2022-02-26T00:00:00' order by v", "s\tv\tts\n" +
+                    "1\t49\t2022-02-26T00:00:00.000000Z\n" +
+                    "D\t101\t2022-02-26T00:00:00.000000Z\n");
+        });
+    }
+
+    @Test
+    public void testWalUpsertReplacesCommittedRows() throws Exception {
+        assertMemoryLeak(() -> {
+            createUpsertTable(true);
+            executeUpsertRows();
+            assertUpsertRows();
+        });
+    }
+
+    private static void appendRow(TableWriter writer, String symbol, long value, String timestamp) throws Exception {
+        TableWriter.Row row = writer.newRow(TimestampFormatUtils.parseTimestamp(timestamp + ".000000Z"));
+        row.putSym(0, symbol);
+        row.putLong(1, value);
+        row.append();
+    }
+
+    private static void createTable(boolean wal) throws SqlException {
+        compile("create table x (s symbol, v long, ts timestamp) timestamp(ts) partition by DAY " + (wal ? "WAL" : "BYPASS WAL") + " dedup upsert keys(ts, s)");
+    }
+
+    private static void createUpsertTable(boolean wal) throws SqlException {
+        compile("create table x (s symbol, tag symbol index, v long, str string, ts timestamp) timestamp(ts) partition by DAY " + (wal ? "WAL" : "BYPASS WAL") + " dedup upsert keys(ts, s)");
+    }
+
+    private static void executeUpsertRows() throws SqlException {
+        executeInsert("insert into x values " +
+                "('A', 'p', 1, 'a1', '2022-02-24T00:00:00'), " +
+                "('B', 'p', 2, 'b2', '2022-02-24T00:00:00'), " +
+                "('A', 'p', 3, 'a3', '2022-02-25T00:00:00'), " +
+                "('A', 'p', 4, null, '2022-02-25T01:00:00')");
+        drainWalQueue();
+        // replaces rows of the older and of the last partition and merges a new row into the older one
+        executeInsert("insert into x values " +
+                "('B', 'q', 20, 'b20', '2022-02-24T00:00:00'), " +
+                "('A', 'q', 40, 'a40', '2022-02-25T01:00:00'), " +
+                "('C', 'p', 5, 'c5', '2022-02-24T12:00:00')");
+        drainWalQueue();
+        // appends to the last partition after its columns are re-written
+        executeInsert("insert into x values ('A', 'p', 6, 'a6', '2022-02-25T02:00:00')");
+        drainWalQueue();
+    }
+
+    private void assertUpsertRows() throws SqlException {
+        assertSql("x", "s\ttag\tv\tstr\tts\n" +
+                "A\tp\t1\ta1\t2022-02-24T00:00:00.000000Z\n" +
+                "B\tq\t20\tb20\t2022-02-24T00:00:00.000000Z\n" +
+                "C\tp\t5\tc5\t2022-02-24T12:00:00.000000Z\n" +
+                "A\tp\t3\ta3\t2022-02-25T00:00:00.000000Z\n" +
+                "A\tq\t40\ta40\t2022-02-25T01:00:00.000000Z\n" +
+                "A\tp\t6\ta6\t2022-02-25T02:00:00.000000Z\n");
+        // index of the re-written column is rebuilt
+        assertSql("select v from x where tag = 'q'", "v\n" +
+                "20\n" +
+                "40\n");
+    }
+}
@@ -33,7 +33,7 @@ import io.questdb.cairo.sql.Function;
 import io.questdb.griffin.engine.EmptyTableRecordCursorFactory;
 import io.questdb.griffin.engine.functions.CursorFunction;
 import io.questdb.griffin.engine.functions.NegatableBooleanFunction;
-import io.questdb.griffin.engine.functions.analytic.RowNumberFunctionFactory;
+import io.questdb.griffin.engine.functions.analytic.*;
 import io.questdb.griffin.engine.functions.bool.InCharFunctionFactory;
 import io.questdb.griffin.engine.functions.bool.InTimestampStrFunctionFactory;
 import io.questdb.griffin.engine.functions.bool.InTimestampTimestampFunctionFactory;
@@ -48,6 +48,7 @@ import io.questdb.griffin.engine.functions.date.*;
 import io.questdb.griffin.engine.functions.eq.EqIntStrCFunctionFactory;
 import io.questdb.griffin.engine.functions.rnd.LongSequenceFunctionFactory;
 import io.questdb.griffin.engine.functions.test.TestSumXDoubleGroupByFunctionFactory;
+import io.questdb.griffin.model.AnalyticColumn;
 import io.questdb.jit.JitUtil;
 import io.questdb.log.Log;
 import io.questdb.log.LogFactory;
@@ -1190,11 +1191,32 @@ public class ExplainPlanTest extends AbstractGriffinTest {
 
                         argPositions.setAll(args.size(), 0);
 
-                        if (factory instanceof RowNumberFunctionFactory) {
-                            sqlExecutionContext.configureAnalyticContext(null, null, null, true, true);
+                        if (factory instanceof RowNumberFunctionFactory
+                                || factory instanceof FirstValueDoubleFunctionFactory
+                                || factory instanceof LastValueDoubleFunctionFactory
+                                || factory instanceof LagDoubleFunctionFactory
+                                || factory instanceof LagOffsetDoubleFunctionFactory
+                                || factory instanceof LeadDoubleFunctionFactory
+                                || factory instanceof LeadOffsetDoubleFunctionFactory) {
+                            sqlExecutionContext.configureAnalyticContext(
+                                    null,
+                                    null,
+                                    null,
+                                    true,
+                                    true,
+                                    AnalyticColumn.FRAMING_RANGE,
+                                    AnalyticColumn.UNBOUNDED_PRECEDING,
+                                    0,
+                                    -1
+                            );
                         }
 
-                        Function function = factory.newInstance(0, args, argPositions, engine.getConfiguration(), sqlExecutionContext);
+                        Function function;
+                        try {
+                            function = factory.newInstance(0, args, argPositions, engine.getConfiguration(), sqlExecutionContext);
+                        } finally {
+                            sqlExecutionContext.clearAnalyticContext();
+                        }
                         function.toPlan(planSink);
                         goodArgsFound = true;
 
@@ -3145,7 +3167,7 @@ public class ExplainPlanTest extends AbstractGriffinTest {
     public void testSelectCount14() throws Exception {
         assertPlan("create table a ( i int, s symbol index, ts timestamp) timestamp(ts)",
                 "select * from a where s = 'S1' order by ts desc ",
-                "Sort light\n" +
+                "Radix sort light\n" +
                         "  keys: [ts desc]\n" +
                         "    DeferredSingleSymbolFilterDataFrame\n" +
                         "        Index forward scan on: s deferred: true\n" +
@@ -3292,7 +3314,7 @@ public class ExplainPlanTest extends AbstractGriffinTest {
     public void testSelectDesc2() throws Exception {
         assertPlan("create table a ( i int, ts timestamp) ;",
                 "select * from a order by ts desc",
-                "Sort light\n" +
+                "Radix sort light\n" +
                         "  keys: [ts desc]\n" +
                         "    DataFrame\n" +
                         "        Row forward scan\n" +
@@ -3445,7 +3467,7 @@ public class ExplainPlanTest extends AbstractGriffinTest {
     public void testSelectDynamicTsInterval6() throws Exception {
         assertPlan("create table tab ( l long, ts timestamp) timestamp(ts);",
                 "select * from tab where ts > '2022-01-01' and ts > now() order by ts desc",
-                "Sort light\n" +
+                "Radix sort light\n" +
                         "  keys: [ts desc]\n" +
                         "    DataFrame\n" +
                         "        Row forward scan\n" +
@@ -3563,7 +3585,7 @@ public class ExplainPlanTest extends AbstractGriffinTest {
             compile("create table a ( s1 symbol index, s2 symbol index, ts timestamp) timestamp(ts)");
             compile("insert into a select 'S' || x, 'S' || x, x::timestamp from long_sequence(10)");
             assertPlan("select * from a where s1 in ('S1')  order by ts desc",
-                    "Sort light\n" +
+                    "Radix sort light\n" +
                             "  keys: [ts desc]\n" +
                             "    DeferredSingleSymbolFilterDataFrame\n" +
                             "        Index forward scan on: s1\n" +
@@ -3578,7 +3600,7 @@ public class ExplainPlanTest extends AbstractGriffinTest {
             compile("create table a ( s1 symbol index, ts timestamp) timestamp(ts) partition by year;");
             compile("insert into a select 'S' || x, x::timestamp from long_sequence(10)");
             assertPlan("select * from a where s1 = 'S1'  order by ts desc",
-                    "Sort light\n" +
+                    "Radix sort light\n" +
                             "  keys: [ts desc]\n" +
                             "    DeferredSingleSymbolFilterDataFrame\n" +
                             "        Index forward scan on: s1\n" +
@@ -3794,7 +3816,7 @@ public class ExplainPlanTest extends AbstractGriffinTest {
     public void testSelectOrderedAsc() throws Exception {
         assertPlan("create table a ( i int, ts timestamp) timestamp(ts) ;",
                 "select * from a order by i asc",
-                "Sort light\n" +
+                "Radix sort light\n" +
                         "  keys: [i]\n" +
                         "    DataFrame\n" +
                         "        Row forward scan\n" +
@@ -3805,7 +3827,7 @@ public class ExplainPlanTest extends AbstractGriffinTest {
     public void testSelectOrderedDesc() throws Exception {
         assertPlan("create table a ( i int, ts timestamp) timestamp(ts) ;",
                 "select * from a order by i desc",
-                "Sort light\n" +
+                "Radix sort light\n" +
                         "  keys: [i desc]\n" +
                         "    DataFrame\n" +
                         "        Row forward scan\n" +
@@ -3845,7 +3867,7 @@ public class ExplainPlanTest extends AbstractGriffinTest {
     public void testSelectStaticTsInterval10() throws Exception {
         assertPlan("create table tab ( l long, ts timestamp) timestamp(ts);",
                 "select * from tab where ts in '2020-01-01T03:00:00;1h;24h;3' order by l desc ",
-                "Sort light\n" +
+                "Radix sort light\n" +
                         "  keys: [l desc]\n" +
                         "    DataFrame\n" +
                         "        Row forward scan\n" +
@@ -3942,7 +3964,7 @@ public class ExplainPlanTest extends AbstractGriffinTest {
     public void testSelectStaticTsInterval9() throws Exception {
         assertPlan("create table tab ( l long, ts timestamp) timestamp(ts);",
                 "select * from tab where ts in '2020-01-01T03:00:00;1h;24h;3' order by ts desc ",
-                "Sort light\n" +
+                "Radix sort light\n" +
                         "  keys: [ts desc]\n" +
                         "    DataFrame\n" +
                         "        Row forward scan\n" +
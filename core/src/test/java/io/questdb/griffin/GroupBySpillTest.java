@@ -0,0 +1,240 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin;
+
+import io.questdb.cairo.map.FastMapSpiller;
+import io.questdb.std.*;
+import io.questdb.std.str.LPSZ;
+import io.questdb.std.str.Path;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class GroupBySpillTest extends AbstractGriffinTest {
+    private static final long MEMORY_BUDGET = 64 * 1024;
+    private final StringSink expectedSink = new StringSink();
+
+    @Test
+    public void testDefaultMapSizing() throws Exception {
+        final AtomicInteger spillFileCount = new AtomicInteger();
+        final FilesFacade ff = new TestFilesFacadeImpl() {
+            @Override
+            public int openRW(LPSZ name, long opts) {
+                if (Chars.contains(name, FastMapSpiller.SPILL_DIR)) {
+                    spillFileCount.incrementAndGet();
+                }
+                return super.openRW(name, opts);
+            }
+        };
+        assertMemoryLeak(ff, () -> {
+            createTable();
+            final String smallQuery = "select s, count(), sum(l) from x order by s";
+            final String largeQuery = "select u, count(), sum(l) from x order by u";
+            TestUtils.printSql(compiler, sqlExecutionContext, smallQuery, expectedSink);
+            TestUtils.printSql(compiler, sqlExecutionContext, largeQuery, sink);
+            final String expectedLarge = sink.toString();
+
+            // the production default, the offsets of such a map alone take way more than the budget
+            configOverrideSqlMapKeyCapacity(2048 * 1024);
+            configOverrideQueryMemoryBudget(MEMORY_BUDGET);
+
+            // a handful of keys fits into the budget
+            TestUtils.printSql(compiler, sqlExecutionContext, smallQuery, sink);
+            TestUtils.assertEquals(expectedSink, sink);
+            Assert.assertEquals(0, spillFileCount.get());
+
+            TestUtils.printSql(compiler, sqlExecutionContext, largeQuery, sink);
+            TestUtils.assertEquals(expectedLarge, sink);
+            Assert.assertTrue(spillFileCount.get() > 0);
+            assertNoSpillFiles();
+        });
+    }
+
+    @Test
+    public void testNonMergeableFunctionDoesNotSpill() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            configOverrideQueryMemoryBudget(MEMORY_BUDGET);
+            assertPlan(
+                    "select u, count_distinct(i) from x",
+                    "GroupBy vectorized: false\n" +
+                            "  keys: [u]\n" +
+                            "  values: [count_distinct(i)]\n" +
+                            "    DataFrame\n" +
+                            "        Row forward scan\n" +
+                            "        Frame forward scan on: x\n"
+            );
+        });
+    }
+
+    @Test
+    public void testPerQueryBudget() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            final String query = "select u, count(), sum(l) from x order by u";
+            TestUtils.printSql(compiler, sqlExecutionContext, query, expectedSink);
+
+            final SqlExecutionContextImpl context = (SqlExecutionContextImpl) sqlExecutionContext;
+            try {
+                context.setQueryMemoryBudget(MEMORY_BUDGET);
+                TestUtils.printSql(compiler, sqlExecutionContext, "explain " + query, sink);
+                TestUtils.assertContains(sink, "spill: true");
+                TestUtils.printSql(compiler, sqlExecutionContext, query, sink);
+                TestUtils.assertEquals(expectedSink, sink);
+
+                // 0 turns spilling off for the query, whatever the configured budget
+                configOverrideQueryMemoryBudget(MEMORY_BUDGET);
+                context.setQueryMemoryBudget(0);
+                TestUtils.printSql(compiler, sqlExecutionContext, "explain " + query, sink);
+                Assert.assertFalse(Chars.contains(sink, "spill: true"));
+                TestUtils.printSql(compiler, sqlExecutionContext, query, sink);
+                TestUtils.assertEquals(expectedSink, sink);
+            } finally {
+                context.setQueryMemoryBudget(-1);
+            }
+            assertNoSpillFiles();
+        });
+    }
+
+    @Test
+    public void testPlan() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            configOverrideQueryMemoryBudget(MEMORY_BUDGET);
+            assertPlan(
+                    "select u, count() from x",
+                    "GroupBy vectorized: false spill: true\n" +
+                            "  keys: [u]\n" +
+                            "  values: [count(*)]\n" +
+                            "    DataFrame\n" +
+                            "        Row forward scan\n" +
+                            "        Frame forward scan on: x\n"
+            );
+        });
+    }
+
+    @Test
+    public void testSpillEmptyResult() throws Exception {
+        assertSameAsInMemory("select u, count(), sum(l) from x where l > 1000000 order by u");
+    }
+
+    @Test
+    public void testSpillMultipleKeys() throws Exception {
+        assertSameAsInMemory("select s, i, count(), sum(l), avg(d), min(ts), max(ts) from x order by s, i");
+    }
+
+    @Test
+    public void testSpillSplitsOversizedPartitions() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            final String query = "select u, count(), sum(l), min(ts) from x order by u";
+            TestUtils.printSql(compiler, sqlExecutionContext, query, expectedSink);
+
+            // 20k keys over 16 partitions don't fit into 4KB each, so the partitions are split again
+            configOverrideQueryMemoryBudget(4 * 1024);
+            TestUtils.printSql(compiler, sqlExecutionContext, query, sink);
+            TestUtils.assertEquals(expectedSink, sink);
+            assertNoSpillFiles();
+        });
+    }
+
+    @Test
+    public void testSpillStringKey() throws Exception {
+        assertSameAsInMemory("select str, count(), sum(i), min(l), max(d) from x order by str");
+    }
+
+    @Test
+    public void testSpillUuidKey() throws Exception {
+        assertSameAsInMemory("select u, count(), sum(l), min(d), max(ts) from x order by u");
+    }
+
+    @Test
+    public void testSpillUuidKeyToTop() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            configOverrideQueryMemoryBudget(MEMORY_BUDGET);
+            // the spilled group by isn't random access, so the sort copies its records and calls toTop() on it
+            assertQuery(
+                    "count\n20000\n",
+                    "select count() from (select u, count() c from x)",
+                    null,
+                    false,
+                    true
+            );
+        });
+    }
+
+    private static void createTable() throws SqlException {
+        compile(
+                "create table x as (" +
+                        "select" +
+                        " rnd_uuid4() u," +
+                        " rnd_str(5, 10, 0) str," +
+                        " rnd_symbol('A','B','C','D',null) s," +
+                        " rnd_int(0, 1000, 2) i," +
+                        " rnd_long(-1000, 1000, 2) l," +
+                        // integer values keep double sums exact regardless of the summation order
+                        " cast(rnd_int(0, 1000, 2) as double) d," +
+                        " timestamp_sequence(0, 100000000) ts" +
+                        " from long_sequence(20000)" +
+                        ") timestamp(ts) partition by hour"
+        );
+    }
+
+    private void assertNoSpillFiles() {
+        try (Path path = new Path()) {
+            path.of(configuration.getRoot()).concat(FastMapSpiller.SPILL_DIR).$();
+            if (!Files.exists(path)) {
+                return;
+            }
+            final long p = Files.findFirst(path);
+            try {
+                do {
+                    Assert.assertFalse(Files.notDots(Files.findName(p)));
+                } while (Files.findNext(p) > 0);
+            } finally {
+                Files.findClose(p);
+            }
+        }
+    }
+
+    private void assertSameAsInMemory(String query) throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            TestUtils.printSql(compiler, sqlExecutionContext, query, expectedSink);
+
+            configOverrideQueryMemoryBudget(MEMORY_BUDGET);
+            TestUtils.printSql(compiler, sqlExecutionContext, "explain " + query, sink);
+            TestUtils.assertContains(sink, "spill: true");
+            TestUtils.printSql(compiler, sqlExecutionContext, query, sink);
+            TestUtils.assertEquals(expectedSink, sink);
+            assertNoSpillFiles();
+        });
+    }
+}
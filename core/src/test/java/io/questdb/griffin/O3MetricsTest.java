@@ -25,7 +25,9 @@
 package io.questdb.griffin;
 
 import io.questdb.Metrics;
+import io.questdb.cairo.CairoConfiguration;
 import io.questdb.cairo.CairoEngine;
+import io.questdb.cairo.DefaultTestCairoConfiguration;
 import io.questdb.cairo.TableToken;
 import io.questdb.cairo.TableWriter;
 import io.questdb.test.tools.TestUtils;
@@ -321,6 +323,55 @@ public class O3MetricsTest extends AbstractO3Test {
         });
     }
 
+    @Test
+    public void testO3MergedInPartitionChunks() throws Exception {
+        final CairoConfiguration configuration = new DefaultTestCairoConfiguration(root) {
+            @Override
+            public int getO3PartitionChunkSize() {
+                return 2;
+            }
+        };
+        executeVanillaWithMetrics(configuration, (engine, compiler, sqlExecutionContext) -> {
+            final long initRowCount = 96;
+            setupBasicTable(engine, compiler, sqlExecutionContext, initRowCount);
+
+            try (TableWriter w = getWriterX(sqlExecutionContext)) {
+                TableWriter.Row r;
+
+                // one row into each of the five partitions
+                for (int day = 0; day < 5; day++) {
+                    r = w.newRow(millenniumTimestamp(day, 5, 30));
+                    r.putInt(0, 100 + day);
+                    r.append();
+                }
+
+                w.commit();
+            }
+
+            printSqlResult(compiler, sqlExecutionContext, "x where i >= 100");
+            final String expected = "i\tts\n" +
+                    "100\t2000-01-01T05:30:00.000000Z\n" +
+                    "101\t2000-01-02T05:30:00.000000Z\n" +
+                    "102\t2000-01-03T05:30:00.000000Z\n" +
+                    "103\t2000-01-04T05:30:00.000000Z\n" +
+                    "104\t2000-01-05T05:30:00.000000Z\n";
+            TestUtils.assertEquals(expected, sink);
+
+            printSqlResult(compiler, sqlExecutionContext, "select count(), min(ts), max(ts) from x");
+            TestUtils.assertEquals(
+                    "count\tmin\tmax\n" +
+                            "101\t2000-01-01T05:00:00.000000Z\t2000-01-05T05:30:00.000000Z\n",
+                    sink
+            );
+
+            Metrics metrics = engine.getMetrics();
+            Assert.assertEquals(initRowCount + 5, metrics.tableWriter().getCommittedRows());
+            Assert.assertEquals(1, metrics.tableWriter().getO3CommitCount());
+            // 5 partitions, 2 at a time
+            Assert.assertEquals(3, metrics.tableWriter().getO3PartitionChunkCount());
+        });
+    }
+
     @Test
     public void testWithO3MaxLag() throws Exception {
         executeVanillaWithMetrics((engine, compiler, sqlExecutionContext) -> {
@@ -93,6 +93,26 @@ public class OrderByTimeoutTest extends AbstractGriffinTest {
         });
     }
 
+    @Test
+    public void testTimeoutLongSortedLightRecordCursor() throws Exception {
+        assertMemoryLeak(() -> {
+            compile("CREATE TABLE trips as (" +
+                    "select rnd_long() a, rnd_long() b, timestamp_sequence('2022-01-03', 50000000) ts from long_sequence(20)" +
+                    ") timestamp(ts) partition by day;");
+
+            final String sql = "select * from trips order by b desc";
+            assertPlan(
+                    sql,
+                    "Radix sort light\n" +
+                            "  keys: [b desc]\n" +
+                            "    DataFrame\n" +
+                            "        Row forward scan\n" +
+                            "        Frame forward scan on: trips\n"
+            );
+            testSql(20, sql);
+        });
+    }
+
     @Test
     public void testTimeoutSortedLightRecordCursorFactory() throws Exception {
         assertMemoryLeak(() -> {
@@ -28,6 +28,7 @@ import io.questdb.cairo.sql.PageFrame;
 import io.questdb.cairo.sql.PageFrameCursor;
 import io.questdb.cairo.sql.RecordCursorFactory;
 import io.questdb.std.Unsafe;
+import io.questdb.std.Zip;
 import io.questdb.std.str.StringSink;
 import io.questdb.test.tools.TestUtils;
 import org.junit.Assert;
@@ -36,6 +37,66 @@ import org.junit.Test;
 import static io.questdb.cairo.sql.DataFrameCursorFactory.ORDER_ASC;
 
 public class PageFrameCursorTest extends AbstractGriffinTest {
+    @Test
+    public void testCompressedPartition() throws Exception {
+        // static gzip header is allocated on first use and would be reported as a leak
+        Zip.init();
+        assertMemoryLeak(
+                () -> {
+                    // string column spans several compression blocks, frames decode their own ranges
+                    compiler.compile("create table x as (select" +
+                                    " rnd_int() a," +
+                                    " rnd_str(5, 40, 2) b," +
+                                    " timestamp_sequence(0, 500000L) t" +
+                                    " from long_sequence(400000)" +
+                                    ") timestamp (t) partition by DAY",
+                            sqlExecutionContext
+                    );
+                    compiler.compile("alter table x convert partition to compressed where t < '1970-01-03'", sqlExecutionContext).execute(null).await();
+
+                    final StringSink actualSink = new StringSink();
+                    // header
+                    actualSink.put("b\n");
+
+                    try (RecordCursorFactory factory = compiler.compile("x", sqlExecutionContext).getRecordCursorFactory()) {
+                        try (PageFrameCursor pageFrameCursor = factory.getPageFrameCursor(sqlExecutionContext, ORDER_ASC)) {
+                            PageFrame frame;
+                            while ((frame = pageFrameCursor.next()) != null) {
+                                long size = frame.getPageSize(1);
+                                long topOfVarAddress = frame.getPageAddress(1);
+                                long fixAddress = frame.getIndexPageAddress(1);
+                                long count = frame.getPartitionHi() - frame.getPartitionLo();
+                                while (count > 0) {
+                                    final long offset = Unsafe.getUnsafe().getLong(fixAddress);
+                                    Assert.assertTrue(offset >= 0 && offset < size);
+                                    fixAddress += 8;
+                                    long varAddress = topOfVarAddress + offset;
+                                    int len = Unsafe.getUnsafe().getInt(varAddress); // string len
+                                    varAddress += 4;
+                                    if (len != -1) {
+                                        for (int i = 0; i < len; i++) {
+                                            actualSink.put(Unsafe.getUnsafe().getChar(varAddress + i * 2L));
+                                        }
+                                    }
+                                    actualSink.put('\n');
+                                    count--;
+                                }
+                            }
+                        }
+                    }
+
+                    // rows are printed after the frames, so that the frames are the first to decode the column
+                    TestUtils.printSql(
+                            compiler,
+                            sqlExecutionContext,
+                            "select b from x",
+                            sink
+                    );
+                    TestUtils.assertEquals(sink, actualSink);
+                }
+        );
+    }
+
     @Test
     public void testSimple() throws Exception {
         assertMemoryLeak(
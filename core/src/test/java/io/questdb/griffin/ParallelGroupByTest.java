@@ -0,0 +1,278 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin;
+
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.CairoEngine;
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.DefaultTestCairoConfiguration;
+import io.questdb.cairo.sql.NetworkSqlExecutionCircuitBreaker;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.griffin.engine.functions.rnd.SharedRandom;
+import io.questdb.griffin.engine.groupby.AsyncGroupByRecordCursorFactory;
+import io.questdb.griffin.engine.groupby.GroupByRecordCursorFactory;
+import io.questdb.mp.TestWorkerPool;
+import io.questdb.mp.WorkerPool;
+import io.questdb.std.MemoryTag;
+import io.questdb.std.Misc;
+import io.questdb.std.Rnd;
+import io.questdb.std.datetime.millitime.MillisecondClock;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+public class ParallelGroupByTest {
+    // every page frame holds rows of all five keys, so that each worker map has all of them
+    private static final String EXPECTED_OVERLAPPING_KEYS = "k\tcount\tcount1\tsum\tmin\tmax\n" +
+            "0\t2000\t1334\t6673335\t5\t10000\n" +
+            "1\t2000\t1333\t6661333\t1\t9991\n" +
+            "2\t2000\t1334\t6669333\t2\t9997\n" +
+            "3\t2000\t1333\t6667334\t8\t9998\n" +
+            "4\t2000\t1333\t6665332\t4\t9994\n";
+    private static final int PAGE_FRAME_MAX_ROWS = 100;
+    private static final String QUERY_OVERLAPPING_KEYS = "select k, count(), count(v), sum(v), min(v), max(v) from x group by k order by k";
+    private static final int ROW_COUNT = 10_000;
+    @ClassRule
+    public static TemporaryFolder temp = new TemporaryFolder();
+    private static CharSequence root;
+    private final StringSink sink = new StringSink();
+    private int mapMaxResizes = Integer.MAX_VALUE;
+    private int mapPageSize = -1;
+
+    @BeforeClass
+    public static void setupStatic() {
+        try {
+            root = temp.newFolder("dbRoot").getAbsolutePath();
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        SharedRandom.RANDOM.set(new Rnd());
+        TestUtils.createTestPath(root);
+    }
+
+    @After
+    public void tearDown() {
+        TestUtils.removeTestPath(root);
+    }
+
+    @Test
+    public void testCircuitBreakerTripIsTimeout() throws Exception {
+        execute(new TestWorkerPool(4), (engine, compiler, sqlExecutionContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            final NetworkSqlExecutionCircuitBreaker circuitBreaker = new NetworkSqlExecutionCircuitBreaker(
+                    new DefaultSqlExecutionCircuitBreakerConfiguration() {
+                        @Override
+                        @NotNull
+                        public MillisecondClock getClock() {
+                            return () -> Long.MAX_VALUE;
+                        }
+
+                        @Override
+                        public long getTimeout() {
+                            return 1;
+                        }
+                    },
+                    MemoryTag.NATIVE_DEFAULT
+            );
+            final SqlExecutionContextImpl context = (SqlExecutionContextImpl) sqlExecutionContext;
+            try (RecordCursorFactory factory = compiler.compile(QUERY_OVERLAPPING_KEYS, sqlExecutionContext).getRecordCursorFactory()) {
+                context.with(context.getCairoSecurityContext(), context.getBindVariableService(), context.getRandom(), context.getRequestFd(), circuitBreaker);
+                try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                    cursor.hasNext();
+                    Assert.fail();
+                } catch (CairoException e) {
+                    Assert.assertTrue(e.isInterruption());
+                    TestUtils.assertContains(e.getFlyweightMessage(), "query aborted");
+                }
+            } finally {
+                context.with(context.getCairoSecurityContext(), context.getBindVariableService(), context.getRandom(), context.getRequestFd(), null);
+                Misc.free(circuitBreaker);
+            }
+        });
+    }
+
+    @Test
+    public void testMergeDisjointKeys() throws Exception {
+        // keys are ranges of rows, most of them live in a single page frame, so in a single worker map
+        final StringSink expected = new StringSink();
+        expected.put("r\tcount\tmin\tmax\n");
+        expected.put("1000\t99\t1\t99\n");
+        for (int r = 1; r < ROW_COUNT / PAGE_FRAME_MAX_ROWS; r++) {
+            expected.put(1000 + r).put("\t100\t").put(r * 100).put('\t').put(r * 100 + 99).put('\n');
+        }
+        expected.put("1100\t1\t10000\t10000\n");
+        assertQuery(
+                new TestWorkerPool(4),
+                "select r, count(), min(x), max(x) from x group by r order by r",
+                expected
+        );
+    }
+
+    @Test
+    public void testMergeOverlappingKeys() throws Exception {
+        assertQuery(new TestWorkerPool(4), QUERY_OVERLAPPING_KEYS, EXPECTED_OVERLAPPING_KEYS);
+    }
+
+    @Test
+    public void testNonParallelizableFunctionFallsBack() throws Exception {
+        execute(new TestWorkerPool(4), (engine, compiler, sqlExecutionContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            try (RecordCursorFactory factory = compiler.compile("select k, first(v) from x", sqlExecutionContext).getRecordCursorFactory()) {
+                Assert.assertEquals(GroupByRecordCursorFactory.class, factory.getClass());
+            }
+            try (RecordCursorFactory factory = compiler.compile("select k, sum(v) from x", sqlExecutionContext).getRecordCursorFactory()) {
+                Assert.assertEquals(AsyncGroupByRecordCursorFactory.class, factory.getClass());
+            }
+        });
+    }
+
+    @Test
+    public void testOwnerReducesAllFramesWithoutWorkers() throws Exception {
+        assertQuery(null, QUERY_OVERLAPPING_KEYS, EXPECTED_OVERLAPPING_KEYS);
+    }
+
+    @Test
+    public void testReduceErrorIsNotTimeout() throws Exception {
+        // maps cannot grow, the first worker or owner to fill its map fails the query
+        mapPageSize = 1024;
+        mapMaxResizes = 0;
+        execute(new TestWorkerPool(4), (engine, compiler, sqlExecutionContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            try (RecordCursorFactory factory = compiler.compile("select r, k, count() from x", sqlExecutionContext).getRecordCursorFactory()) {
+                Assert.assertEquals(AsyncGroupByRecordCursorFactory.class, factory.getClass());
+                try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                    cursor.hasNext();
+                    Assert.fail();
+                } catch (CairoException e) {
+                    Assert.assertFalse(e.isInterruption());
+                    TestUtils.assertContains(e.getFlyweightMessage(), "resizes exceeded in FastMap");
+                }
+            }
+        });
+    }
+
+    private static void createTable(SqlCompiler compiler, SqlExecutionContext sqlExecutionContext) throws SqlException {
+        compiler.compile(
+                "create table x as (" +
+                        "select" +
+                        " x," +
+                        // string keys, the vectorized group by takes int and symbol keys
+                        " cast(x % 5 as string) k," +
+                        " cast(x / 100 + 1000 as string) r," +
+                        " case when x % 3 = 0 then null else x end v," +
+                        " timestamp_sequence(0, 1000000) ts" +
+                        " from long_sequence(" + ROW_COUNT + ")" +
+                        ") timestamp(ts) partition by hour",
+                sqlExecutionContext
+        );
+    }
+
+    private void assertQuery(@Nullable WorkerPool pool, String query, CharSequence expected) throws Exception {
+        execute(pool, (engine, compiler, sqlExecutionContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            try (RecordCursorFactory factory = compiler.compile(query, sqlExecutionContext).getRecordCursorFactory()) {
+                Assert.assertEquals(AsyncGroupByRecordCursorFactory.class, factory.getBaseFactory().getClass());
+                // worker maps are released after the merge, the second run has to reopen them
+                for (int i = 0; i < 2; i++) {
+                    try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                        TestUtils.assertCursor(expected, cursor, factory.getMetadata(), true, sink);
+                    }
+                }
+            }
+        });
+    }
+
+    private void execute(
+            @Nullable WorkerPool pool,
+            ParallelGroupByRunnable runnable
+    ) throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final CairoConfiguration configuration = new DefaultTestCairoConfiguration(root) {
+                @Override
+                public int getSqlMapMaxResizes() {
+                    return mapMaxResizes;
+                }
+
+                @Override
+                public int getSqlMapPageSize() {
+                    return mapPageSize > 0 ? mapPageSize : super.getSqlMapPageSize();
+                }
+
+                @Override
+                public int getSqlPageFrameMaxRows() {
+                    // small frames, so that there are many of them to dispatch
+                    return PAGE_FRAME_MAX_ROWS;
+                }
+
+                @Override
+                public int getSqlSmallMapPageSize() {
+                    return mapPageSize > 0 ? mapPageSize : super.getSqlSmallMapPageSize();
+                }
+
+                @Override
+                public boolean isSqlParallelGroupByEnabled() {
+                    return true;
+                }
+            };
+            final int workerCount = pool == null ? 1 : pool.getWorkerCount();
+            try (
+                    final CairoEngine engine = new CairoEngine(configuration);
+                    final SqlCompiler compiler = new SqlCompiler(engine);
+                    final SqlExecutionContext sqlExecutionContext = new SqlExecutionContextImpl(engine, workerCount)
+            ) {
+                try {
+                    if (pool != null) {
+                        TestUtils.setupWorkerPool(pool, engine);
+                        pool.start();
+                    }
+
+                    runnable.run(engine, compiler, sqlExecutionContext);
+                    Assert.assertEquals(0, engine.getBusyWriterCount());
+                    Assert.assertEquals(0, engine.getBusyReaderCount());
+                } finally {
+                    if (pool != null) {
+                        pool.halt();
+                    }
+                }
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface ParallelGroupByRunnable {
+        void run(CairoEngine engine, SqlCompiler compiler, SqlExecutionContext sqlExecutionContext) throws Exception;
+    }
+}
@@ -0,0 +1,304 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin;
+
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.CairoEngine;
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.DefaultTestCairoConfiguration;
+import io.questdb.cairo.sql.NetworkSqlExecutionCircuitBreaker;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.griffin.engine.functions.rnd.SharedRandom;
+import io.questdb.mp.TestWorkerPool;
+import io.questdb.mp.WorkerPool;
+import io.questdb.std.Chars;
+import io.questdb.std.MemoryTag;
+import io.questdb.std.Misc;
+import io.questdb.std.Rnd;
+import io.questdb.std.datetime.millitime.MillisecondClock;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+public class ParallelHashJoinTest {
+    // master key longer than the small map page, the key map has to grow to look it up
+    private static final String LONG_KEY = "a_key_that_does_not_fit_into_a_single_page_of_the_small_key_map";
+    private static final int PAGE_FRAME_MAX_ROWS = 100;
+    private static final String QUERY_UNIQUE_KEYS = "select x.x, y.v from x join y on (k)";
+    private static final int ROW_COUNT = 10_000;
+    @ClassRule
+    public static TemporaryFolder temp = new TemporaryFolder();
+    private static CharSequence root;
+    private final StringSink sink = new StringSink();
+    private int mapMaxResizes = Integer.MAX_VALUE;
+    private int smallMapPageSize = -1;
+
+    @BeforeClass
+    public static void setupStatic() {
+        try {
+            root = temp.newFolder("dbRoot").getAbsolutePath();
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        SharedRandom.RANDOM.set(new Rnd());
+        TestUtils.createTestPath(root);
+    }
+
+    @After
+    public void tearDown() {
+        TestUtils.removeTestPath(root);
+    }
+
+    @Test
+    public void testCircuitBreakerTripIsTimeout() throws Exception {
+        execute(new TestWorkerPool(4), (engine, compiler, sqlExecutionContext) -> {
+            createTables(compiler, sqlExecutionContext, 1);
+            final NetworkSqlExecutionCircuitBreaker circuitBreaker = new NetworkSqlExecutionCircuitBreaker(
+                    new DefaultSqlExecutionCircuitBreakerConfiguration() {
+                        @Override
+                        @NotNull
+                        public MillisecondClock getClock() {
+                            return () -> Long.MAX_VALUE;
+                        }
+
+                        @Override
+                        public long getTimeout() {
+                            return 1;
+                        }
+                    },
+                    MemoryTag.NATIVE_DEFAULT
+            );
+            final SqlExecutionContextImpl context = (SqlExecutionContextImpl) sqlExecutionContext;
+            try (RecordCursorFactory factory = compiler.compile(QUERY_UNIQUE_KEYS, sqlExecutionContext).getRecordCursorFactory()) {
+                context.with(context.getCairoSecurityContext(), context.getBindVariableService(), context.getRandom(), context.getRequestFd(), circuitBreaker);
+                try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                    cursor.hasNext();
+                    Assert.fail();
+                } catch (CairoException e) {
+                    Assert.assertTrue(e.isInterruption());
+                    TestUtils.assertContains(e.getFlyweightMessage(), "query aborted");
+                }
+            } finally {
+                context.with(context.getCairoSecurityContext(), context.getBindVariableService(), context.getRandom(), context.getRequestFd(), null);
+                Misc.free(circuitBreaker);
+            }
+        });
+    }
+
+    @Test
+    public void testDescendingMasterFallsBack() throws Exception {
+        execute(new TestWorkerPool(4), (engine, compiler, sqlExecutionContext) -> {
+            createTables(compiler, sqlExecutionContext, 1);
+            final String query = "select * from (x order by ts desc) x join y on (k)";
+            TestUtils.printSql(compiler, sqlExecutionContext, "explain " + query, sink);
+            TestUtils.assertContains(sink, "Hash Join Light");
+            Assert.assertFalse(Chars.contains(sink, "Async Hash Join Light"));
+        });
+    }
+
+    @Test
+    public void testFramesWithoutMatches() throws Exception {
+        // only the rows of a single page frame have a match, all the other frames are empty
+        final StringSink expected = new StringSink();
+        expected.put("x\tv\n");
+        for (int x = 5001; x <= 5100; x++) {
+            expected.put(x).put('\t').put(x).put('\n');
+        }
+        execute(new TestWorkerPool(4), (engine, compiler, sqlExecutionContext) -> {
+            createTables(compiler, sqlExecutionContext, 1);
+            compiler.compile("create table z as (select x + 5000 v from long_sequence(100))", sqlExecutionContext);
+            assertCursor(compiler, sqlExecutionContext, "select x.x, z.v from x join z on x.x = z.v", expected);
+        });
+    }
+
+    @Test
+    public void testMasterOrderKeptAcrossFrames() throws Exception {
+        assertQuery(new TestWorkerPool(4), 1, QUERY_UNIQUE_KEYS, expectedUniqueKeys());
+    }
+
+    @Test
+    public void testOwnerReducesAllFramesWithoutWorkers() throws Exception {
+        assertQuery(null, 1, QUERY_UNIQUE_KEYS, expectedUniqueKeys());
+    }
+
+    @Test
+    public void testReduceErrorIsNotTimeout() throws Exception {
+        // key maps cannot grow, the frame holding the long master key fails the query
+        smallMapPageSize = 64;
+        mapMaxResizes = 0;
+        execute(new TestWorkerPool(4), (engine, compiler, sqlExecutionContext) -> {
+            createTables(compiler, sqlExecutionContext, 1);
+            TestUtils.printSql(compiler, sqlExecutionContext, "explain " + QUERY_UNIQUE_KEYS, sink);
+            TestUtils.assertContains(sink, "Async Hash Join Light");
+            try (RecordCursorFactory factory = compiler.compile(QUERY_UNIQUE_KEYS, sqlExecutionContext).getRecordCursorFactory()) {
+                try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                    while (cursor.hasNext()) {
+                        // the error surfaces when the failed frame is reached
+                    }
+                    Assert.fail();
+                } catch (CairoException e) {
+                    Assert.assertFalse(e.isInterruption());
+                    TestUtils.assertContains(e.getFlyweightMessage(), "resizes exceeded in FastMap");
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testSlaveChains() throws Exception {
+        // every matching master row is joined with all slave rows of its key
+        final StringSink expected = new StringSink();
+        expected.put("x\tv\n");
+        for (int x = 1; x <= ROW_COUNT; x++) {
+            if (x % 10 < 5 && x != ROW_COUNT / 2) {
+                for (int v = x % 10; v < 20; v += 5) {
+                    expected.put(x).put('\t').put(v).put('\n');
+                }
+            }
+        }
+        assertQuery(new TestWorkerPool(4), 4, "select x.x, y.v from x join y on (k) order by x.x, y.v", expected);
+    }
+
+    private static void createTables(SqlCompiler compiler, SqlExecutionContext sqlExecutionContext, int slaveRowsPerKey) throws SqlException {
+        compiler.compile(
+                "create table x as (" +
+                        "select" +
+                        " x," +
+                        " case when x = " + ROW_COUNT / 2 + " then '" + LONG_KEY + "' else cast(x % 10 as string) end k," +
+                        " timestamp_sequence(0, 1000000) ts" +
+                        " from long_sequence(" + ROW_COUNT + ")" +
+                        ") timestamp(ts) partition by hour",
+                sqlExecutionContext
+        );
+        // keys 0 to 4, each one repeated slaveRowsPerKey times
+        compiler.compile(
+                "create table y as (" +
+                        "select" +
+                        " cast((x - 1) % 5 as string) k," +
+                        (slaveRowsPerKey == 1 ? " (x - 1) * 10 v" : " x - 1 v") +
+                        " from long_sequence(" + 5 * slaveRowsPerKey + ")" +
+                        ")",
+                sqlExecutionContext
+        );
+    }
+
+    private static StringSink expectedUniqueKeys() {
+        final StringSink expected = new StringSink();
+        expected.put("x\tv\n");
+        for (int x = 1; x <= ROW_COUNT; x++) {
+            if (x % 10 < 5 && x != ROW_COUNT / 2) {
+                expected.put(x).put('\t').put(x % 10 * 10).put('\n');
+            }
+        }
+        return expected;
+    }
+
+    private void assertCursor(SqlCompiler compiler, SqlExecutionContext sqlExecutionContext, String query, CharSequence expected) throws SqlException {
+        TestUtils.printSql(compiler, sqlExecutionContext, "explain " + query, sink);
+        TestUtils.assertContains(sink, "Async Hash Join Light");
+        try (RecordCursorFactory factory = compiler.compile(query, sqlExecutionContext).getRecordCursorFactory()) {
+            // run the query twice to make sure that the factory is reusable
+            for (int i = 0; i < 2; i++) {
+                try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                    TestUtils.assertCursor(expected, cursor, factory.getMetadata(), true, sink);
+                }
+            }
+        }
+    }
+
+    private void assertQuery(@Nullable WorkerPool pool, int slaveRowsPerKey, String query, CharSequence expected) throws Exception {
+        execute(pool, (engine, compiler, sqlExecutionContext) -> {
+            createTables(compiler, sqlExecutionContext, slaveRowsPerKey);
+            assertCursor(compiler, sqlExecutionContext, query, expected);
+        });
+    }
+
+    private void execute(
+            @Nullable WorkerPool pool,
+            ParallelHashJoinRunnable runnable
+    ) throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final CairoConfiguration configuration = new DefaultTestCairoConfiguration(root) {
+                @Override
+                public int getSqlMapMaxResizes() {
+                    return mapMaxResizes;
+                }
+
+                @Override
+                public int getSqlPageFrameMaxRows() {
+                    // small frames, so that there are many of them to dispatch
+                    return PAGE_FRAME_MAX_ROWS;
+                }
+
+                @Override
+                public int getSqlSmallMapPageSize() {
+                    return smallMapPageSize > 0 ? smallMapPageSize : super.getSqlSmallMapPageSize();
+                }
+
+                @Override
+                public boolean isSqlParallelHashJoinEnabled() {
+                    return true;
+                }
+            };
+            final int workerCount = pool == null ? 1 : pool.getWorkerCount();
+            try (
+                    final CairoEngine engine = new CairoEngine(configuration);
+                    final SqlCompiler compiler = new SqlCompiler(engine);
+                    final SqlExecutionContext sqlExecutionContext = new SqlExecutionContextImpl(engine, workerCount)
+            ) {
+                try {
+                    if (pool != null) {
+                        TestUtils.setupWorkerPool(pool, engine);
+                        pool.start();
+                    }
+
+                    runnable.run(engine, compiler, sqlExecutionContext);
+                    Assert.assertEquals(0, engine.getBusyWriterCount());
+                    Assert.assertEquals(0, engine.getBusyReaderCount());
+                } finally {
+                    if (pool != null) {
+                        pool.halt();
+                    }
+                }
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface ParallelHashJoinRunnable {
+        void run(CairoEngine engine, SqlCompiler compiler, SqlExecutionContext sqlExecutionContext) throws Exception;
+    }
+}
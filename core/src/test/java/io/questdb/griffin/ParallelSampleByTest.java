@@ -0,0 +1,291 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin;
+
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.CairoEngine;
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.DefaultTestCairoConfiguration;
+import io.questdb.cairo.sql.NetworkSqlExecutionCircuitBreaker;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.griffin.engine.functions.rnd.SharedRandom;
+import io.questdb.griffin.engine.groupby.AsyncSampleByRecordCursorFactory;
+import io.questdb.mp.TestWorkerPool;
+import io.questdb.mp.WorkerPool;
+import io.questdb.std.MemoryTag;
+import io.questdb.std.Misc;
+import io.questdb.std.Rnd;
+import io.questdb.std.datetime.millitime.MillisecondClock;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+public class ParallelSampleByTest {
+    private static final long MICROS_PER_ROW = 1_000_000;
+    private static final int PAGE_FRAME_MAX_ROWS = 100;
+    private static final String QUERY_SPANNING_FRAMES = "select ts, count(), first(x), last(x), min(x), max(x) from x sample by 250s";
+    private static final int ROW_COUNT = 10_000;
+    @ClassRule
+    public static TemporaryFolder temp = new TemporaryFolder();
+    private static CharSequence root;
+    private final StringSink sink = new StringSink();
+    private int mapMaxResizes = Integer.MAX_VALUE;
+    private int mapPageSize = -1;
+
+    @BeforeClass
+    public static void setupStatic() {
+        try {
+            root = temp.newFolder("dbRoot").getAbsolutePath();
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        SharedRandom.RANDOM.set(new Rnd());
+        TestUtils.createTestPath(root);
+    }
+
+    @After
+    public void tearDown() {
+        TestUtils.removeTestPath(root);
+    }
+
+    @Test
+    public void testCircuitBreakerTripIsTimeout() throws Exception {
+        execute(new TestWorkerPool(4), (engine, compiler, sqlExecutionContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            final NetworkSqlExecutionCircuitBreaker circuitBreaker = new NetworkSqlExecutionCircuitBreaker(
+                    new DefaultSqlExecutionCircuitBreakerConfiguration() {
+                        @Override
+                        @NotNull
+                        public MillisecondClock getClock() {
+                            return () -> Long.MAX_VALUE;
+                        }
+
+                        @Override
+                        public long getTimeout() {
+                            return 1;
+                        }
+                    },
+                    MemoryTag.NATIVE_DEFAULT
+            );
+            final SqlExecutionContextImpl context = (SqlExecutionContextImpl) sqlExecutionContext;
+            try (RecordCursorFactory factory = compiler.compile(QUERY_SPANNING_FRAMES, sqlExecutionContext).getRecordCursorFactory()) {
+                context.with(context.getCairoSecurityContext(), context.getBindVariableService(), context.getRandom(), context.getRequestFd(), circuitBreaker);
+                try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                    cursor.hasNext();
+                    Assert.fail();
+                } catch (CairoException e) {
+                    Assert.assertTrue(e.isInterruption());
+                    TestUtils.assertContains(e.getFlyweightMessage(), "query aborted");
+                }
+            } finally {
+                context.with(context.getCairoSecurityContext(), context.getBindVariableService(), context.getRandom(), context.getRequestFd(), null);
+                Misc.free(circuitBreaker);
+            }
+        });
+    }
+
+    @Test
+    public void testIntervalsSpanningFrames() throws Exception {
+        assertQuery(new TestWorkerPool(4), QUERY_SPANNING_FRAMES, expectedSpanningFrames());
+    }
+
+    @Test
+    public void testKeysFirstSeenInLaterFrames() throws Exception {
+        // within every 1000s interval key 'b' shows up in the last page frame only,
+        // the merge has to place it after 'a', as the serial cursor does
+        final StringSink expected = new StringSink();
+        expected.put("ts\tk\tcount\tfirst\tlast\n");
+        for (int i = 0; i < ROW_COUNT / 1000; i++) {
+            final long ts = i * 1000 * MICROS_PER_ROW;
+            expected.putISODate(ts).put("\ta\t900\t").put(i * 1000 + 1).put('\t').put(i * 1000 + 900).put('\n');
+            expected.putISODate(ts).put("\tb\t100\t").put(i * 1000 + 901).put('\t').put(i * 1000 + 1000).put('\n');
+        }
+        assertQuery(
+                new TestWorkerPool(4),
+                "select ts, k, count(), first(x), last(x) from x sample by 1000s",
+                expected
+        );
+    }
+
+    @Test
+    public void testNonParallelizableSampleByFallsBack() throws Exception {
+        execute(new TestWorkerPool(4), (engine, compiler, sqlExecutionContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            assertFactory(compiler, sqlExecutionContext, "select ts, k, sum(x) from x sample by 1h", true);
+            // fills are done by the serial cursors
+            assertFactory(compiler, sqlExecutionContext, "select ts, k, sum(x) from x sample by 1h fill(prev)", false);
+            // month intervals don't have fixed size
+            assertFactory(compiler, sqlExecutionContext, "select ts, k, sum(x) from x sample by 1M", false);
+            // time zone transitions are handled by the serial cursors
+            assertFactory(compiler, sqlExecutionContext, "select ts, k, sum(x) from x sample by 1h align to calendar time zone 'Europe/London'", false);
+            // the function doesn't support merge
+            assertFactory(compiler, sqlExecutionContext, "select ts, k, ksum(x) from x sample by 1h", false);
+        });
+    }
+
+    @Test
+    public void testOwnerReducesAllFramesWithoutWorkers() throws Exception {
+        assertQuery(null, QUERY_SPANNING_FRAMES, expectedSpanningFrames());
+    }
+
+    @Test
+    public void testReduceErrorIsNotTimeout() throws Exception {
+        // maps cannot grow, the first worker or owner to fill its map fails the query
+        mapPageSize = 1024;
+        mapMaxResizes = 0;
+        execute(new TestWorkerPool(4), (engine, compiler, sqlExecutionContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            try (RecordCursorFactory factory = compiler.compile("select ts, k, count() from x sample by 1s", sqlExecutionContext).getRecordCursorFactory()) {
+                Assert.assertTrue(factory instanceof AsyncSampleByRecordCursorFactory);
+                try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                    cursor.hasNext();
+                    Assert.fail();
+                } catch (CairoException e) {
+                    Assert.assertFalse(e.isInterruption());
+                    TestUtils.assertContains(e.getFlyweightMessage(), "resizes exceeded in FastMap");
+                }
+            }
+        });
+    }
+
+    private static void assertFactory(
+            SqlCompiler compiler,
+            SqlExecutionContext sqlExecutionContext,
+            String query,
+            boolean expectParallel
+    ) throws SqlException {
+        try (RecordCursorFactory factory = compiler.compile(query, sqlExecutionContext).getRecordCursorFactory()) {
+            Assert.assertEquals(expectParallel, factory instanceof AsyncSampleByRecordCursorFactory);
+        }
+    }
+
+    private static void createTable(SqlCompiler compiler, SqlExecutionContext sqlExecutionContext) throws SqlException {
+        compiler.compile(
+                "create table x as (" +
+                        "select" +
+                        " x," +
+                        " case when (x - 1) % 1000 < 900 then 'a' else 'b' end k," +
+                        " timestamp_sequence(0, " + MICROS_PER_ROW + ") ts" +
+                        " from long_sequence(" + ROW_COUNT + ")" +
+                        ") timestamp(ts) partition by hour",
+                sqlExecutionContext
+        );
+    }
+
+    private static StringSink expectedSpanningFrames() {
+        // every 250s interval starts and ends in the middle of a page frame
+        final StringSink expected = new StringSink();
+        expected.put("ts\tcount\tfirst\tlast\tmin\tmax\n");
+        for (int i = 0; i < ROW_COUNT / 250; i++) {
+            expected.putISODate(i * 250 * MICROS_PER_ROW).put("\t250\t")
+                    .put(i * 250 + 1).put('\t').put(i * 250 + 250).put('\t')
+                    .put(i * 250 + 1).put('\t').put(i * 250 + 250).put('\n');
+        }
+        return expected;
+    }
+
+    private void assertQuery(@Nullable WorkerPool pool, String query, CharSequence expected) throws Exception {
+        execute(pool, (engine, compiler, sqlExecutionContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            try (RecordCursorFactory factory = compiler.compile(query, sqlExecutionContext).getRecordCursorFactory()) {
+                Assert.assertTrue(factory instanceof AsyncSampleByRecordCursorFactory);
+                // no ORDER BY, frames have to be merged in order;
+                // run the query twice to make sure that the factory is reusable
+                for (int i = 0; i < 2; i++) {
+                    try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                        TestUtils.assertCursor(expected, cursor, factory.getMetadata(), true, sink);
+                    }
+                }
+            }
+        });
+    }
+
+    private void execute(
+            @Nullable WorkerPool pool,
+            ParallelSampleByRunnable runnable
+    ) throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final CairoConfiguration configuration = new DefaultTestCairoConfiguration(root) {
+                @Override
+                public int getSqlMapMaxResizes() {
+                    return mapMaxResizes;
+                }
+
+                @Override
+                public int getSqlPageFrameMaxRows() {
+                    // small frames, so that there are many of them to dispatch
+                    return PAGE_FRAME_MAX_ROWS;
+                }
+
+                @Override
+                public int getSqlSmallMapPageSize() {
+                    return mapPageSize > 0 ? mapPageSize : super.getSqlSmallMapPageSize();
+                }
+
+                @Override
+                public boolean isSqlParallelSampleByEnabled() {
+                    return true;
+                }
+            };
+            final int workerCount = pool == null ? 1 : pool.getWorkerCount();
+            try (
+                    final CairoEngine engine = new CairoEngine(configuration);
+                    final SqlCompiler compiler = new SqlCompiler(engine);
+                    final SqlExecutionContext sqlExecutionContext = new SqlExecutionContextImpl(engine, workerCount)
+            ) {
+                try {
+                    if (pool != null) {
+                        TestUtils.setupWorkerPool(pool, engine);
+                        pool.start();
+                    }
+
+                    runnable.run(engine, compiler, sqlExecutionContext);
+                    Assert.assertEquals(0, engine.getBusyWriterCount());
+                    Assert.assertEquals(0, engine.getBusyReaderCount());
+                } finally {
+                    if (pool != null) {
+                        pool.halt();
+                    }
+                }
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface ParallelSampleByRunnable {
+        void run(CairoEngine engine, SqlCompiler compiler, SqlExecutionContext sqlExecutionContext) throws Exception;
+    }
+}
@@ -0,0 +1,306 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin;
+
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.CairoEngine;
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.DefaultTestCairoConfiguration;
+import io.questdb.cairo.sql.NetworkSqlExecutionCircuitBreaker;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.griffin.engine.functions.rnd.SharedRandom;
+import io.questdb.mp.TestWorkerPool;
+import io.questdb.mp.WorkerPool;
+import io.questdb.std.Chars;
+import io.questdb.std.MemoryTag;
+import io.questdb.std.Misc;
+import io.questdb.std.Rnd;
+import io.questdb.std.datetime.millitime.MillisecondClock;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+public class ParallelSortTest {
+    private static final int PAGE_FRAME_MAX_ROWS = 100;
+    private static final String QUERY_RUNS = "select k, x from x order by k, x desc";
+    private static final int ROW_COUNT = 10_000;
+    @ClassRule
+    public static TemporaryFolder temp = new TemporaryFolder();
+    private static CharSequence root;
+    private final StringSink sink = new StringSink();
+
+    @BeforeClass
+    public static void setupStatic() {
+        try {
+            root = temp.newFolder("dbRoot").getAbsolutePath();
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        SharedRandom.RANDOM.set(new Rnd());
+        TestUtils.createTestPath(root);
+    }
+
+    @After
+    public void tearDown() {
+        TestUtils.removeTestPath(root);
+    }
+
+    @Test
+    public void testCircuitBreakerTripIsTimeout() throws Exception {
+        execute(new TestWorkerPool(4), (engine, compiler, sqlExecutionContext) -> {
+            createTable(compiler, sqlExecutionContext, ROW_COUNT);
+            final NetworkSqlExecutionCircuitBreaker circuitBreaker = new NetworkSqlExecutionCircuitBreaker(
+                    new DefaultSqlExecutionCircuitBreakerConfiguration() {
+                        @Override
+                        @NotNull
+                        public MillisecondClock getClock() {
+                            return () -> Long.MAX_VALUE;
+                        }
+
+                        @Override
+                        public long getTimeout() {
+                            return 1;
+                        }
+                    },
+                    MemoryTag.NATIVE_DEFAULT
+            );
+            final SqlExecutionContextImpl context = (SqlExecutionContextImpl) sqlExecutionContext;
+            try (RecordCursorFactory factory = compiler.compile(QUERY_RUNS, sqlExecutionContext).getRecordCursorFactory()) {
+                context.with(context.getCairoSecurityContext(), context.getBindVariableService(), context.getRandom(), context.getRequestFd(), circuitBreaker);
+                try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                    cursor.hasNext();
+                    Assert.fail();
+                } catch (CairoException e) {
+                    Assert.assertTrue(e.isInterruption());
+                    TestUtils.assertContains(e.getFlyweightMessage(), "query aborted");
+                }
+            } finally {
+                context.with(context.getCairoSecurityContext(), context.getBindVariableService(), context.getRandom(), context.getRequestFd(), null);
+                Misc.free(circuitBreaker);
+            }
+        });
+    }
+
+    @Test
+    public void testDescendingKeys() throws Exception {
+        assertQuery(
+                new TestWorkerPool(4),
+                ROW_COUNT,
+                "select k, x from x order by k desc, ts desc",
+                expected(ROW_COUNT, Comparator.comparingLong(ParallelSortTest::k).reversed().thenComparing(Comparator.reverseOrder()), false)
+        );
+    }
+
+    @Test
+    public void testFewerFramesThanWorkers() throws Exception {
+        assertQuery(
+                new TestWorkerPool(4),
+                150,
+                QUERY_RUNS,
+                expected(150, Comparator.comparingLong(ParallelSortTest::k).thenComparing(Comparator.reverseOrder()), false)
+        );
+    }
+
+    @Test
+    public void testNonPageFrameBaseFallsBack() throws Exception {
+        execute(new TestWorkerPool(4), (engine, compiler, sqlExecutionContext) -> {
+            createTable(compiler, sqlExecutionContext, ROW_COUNT);
+            final String query = "select k, x * 2 x2 from x order by x2, k";
+            TestUtils.printSql(compiler, sqlExecutionContext, "explain " + query, sink);
+            TestUtils.assertContains(sink, "Sort light");
+            Assert.assertFalse(Chars.contains(sink, "Async Sort light"));
+        });
+    }
+
+    @Test
+    public void testNullsFirst() throws Exception {
+        assertQuery(
+                new TestWorkerPool(4),
+                ROW_COUNT,
+                "select s, x from x order by s, x",
+                expected(ROW_COUNT, Comparator.comparingLong(ParallelSortTest::s).thenComparing(Comparator.naturalOrder()), true)
+        );
+    }
+
+    @Test
+    public void testOwnerSortsAllFramesWithoutWorkers() throws Exception {
+        assertQuery(
+                null,
+                ROW_COUNT,
+                QUERY_RUNS,
+                expected(ROW_COUNT, Comparator.comparingLong(ParallelSortTest::k).thenComparing(Comparator.reverseOrder()), false)
+        );
+    }
+
+    @Test
+    public void testRunsMergedAcrossFrames() throws Exception {
+        // every page frame holds rows of all keys, so each key is merged from all the runs
+        assertQuery(
+                new TestWorkerPool(4),
+                ROW_COUNT,
+                QUERY_RUNS,
+                expected(ROW_COUNT, Comparator.comparingLong(ParallelSortTest::k).thenComparing(Comparator.reverseOrder()), false)
+        );
+    }
+
+    @Test
+    public void testSingleKeyTies() throws Exception {
+        // single fixed-width keys are sorted in parallel rather than with the radix sort;
+        // rows with equal keys come in descending row id order, as with the serial sort
+        assertQuery(
+                new TestWorkerPool(4),
+                ROW_COUNT,
+                "select k, x from x order by k",
+                expected(ROW_COUNT, Comparator.comparingLong(ParallelSortTest::k).thenComparing(Comparator.reverseOrder()), false)
+        );
+    }
+
+    @Test
+    public void testSingleKeyTiesDesc() throws Exception {
+        assertQuery(
+                new TestWorkerPool(4),
+                ROW_COUNT,
+                "select k, x from x order by k desc",
+                expected(ROW_COUNT, Comparator.comparingLong(ParallelSortTest::k).reversed().thenComparing(Comparator.reverseOrder()), false)
+        );
+    }
+
+    private static void createTable(SqlCompiler compiler, SqlExecutionContext sqlExecutionContext, int rowCount) throws SqlException {
+        compiler.compile(
+                "create table x as (" +
+                        "select" +
+                        " x," +
+                        " cast(x % 7 as int) k," +
+                        " case when x % 4 = 0 then null else cast(x % 4 as symbol) end s," +
+                        " timestamp_sequence(0, 1000000) ts" +
+                        " from long_sequence(" + rowCount + ")" +
+                        ") timestamp(ts) partition by hour",
+                sqlExecutionContext
+        );
+    }
+
+    private static StringSink expected(int rowCount, Comparator<Long> comparator, boolean symbolKey) {
+        final Long[] xs = new Long[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            xs[i] = i + 1L;
+        }
+        Arrays.sort(xs, comparator);
+        final StringSink expected = new StringSink();
+        expected.put(symbolKey ? "s" : "k").put("\tx\n");
+        for (Long x : xs) {
+            if (!symbolKey) {
+                expected.put(k(x));
+            } else if (s(x) > -1) {
+                expected.put(s(x));
+            }
+            expected.put('\t').put(x).put('\n');
+        }
+        return expected;
+    }
+
+    private static long k(long x) {
+        return x % 7;
+    }
+
+    private static long s(long x) {
+        // null symbols come first
+        return x % 4 == 0 ? -1 : x % 4;
+    }
+
+    private void assertQuery(@Nullable WorkerPool pool, int rowCount, String query, CharSequence expected) throws Exception {
+        execute(pool, (engine, compiler, sqlExecutionContext) -> {
+            createTable(compiler, sqlExecutionContext, rowCount);
+            TestUtils.printSql(compiler, sqlExecutionContext, "explain " + query, sink);
+            TestUtils.assertContains(sink, "Async Sort light");
+            try (RecordCursorFactory factory = compiler.compile(query, sqlExecutionContext).getRecordCursorFactory()) {
+                // run the query twice to make sure that the factory is reusable
+                for (int i = 0; i < 2; i++) {
+                    try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                        TestUtils.assertCursor(expected, cursor, factory.getMetadata(), true, sink);
+                    }
+                }
+            }
+        });
+    }
+
+    private void execute(
+            @Nullable WorkerPool pool,
+            ParallelSortRunnable runnable
+    ) throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final CairoConfiguration configuration = new DefaultTestCairoConfiguration(root) {
+                @Override
+                public int getSqlPageFrameMaxRows() {
+                    // small frames, so that there are many of them to dispatch
+                    return PAGE_FRAME_MAX_ROWS;
+                }
+
+                @Override
+                public boolean isSqlParallelSortEnabled() {
+                    return true;
+                }
+            };
+            final int workerCount = pool == null ? 1 : pool.getWorkerCount();
+            try (
+                    final CairoEngine engine = new CairoEngine(configuration);
+                    final SqlCompiler compiler = new SqlCompiler(engine);
+                    final SqlExecutionContext sqlExecutionContext = new SqlExecutionContextImpl(engine, workerCount)
+            ) {
+                try {
+                    if (pool != null) {
+                        TestUtils.setupWorkerPool(pool, engine);
+                        pool.start();
+                    }
+
+                    runnable.run(engine, compiler, sqlExecutionContext);
+                    Assert.assertEquals(0, engine.getBusyWriterCount());
+                    Assert.assertEquals(0, engine.getBusyReaderCount());
+                } finally {
+                    if (pool != null) {
+                        pool.halt();
+                    }
+                }
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface ParallelSortRunnable {
+        void run(CairoEngine engine, SqlCompiler compiler, SqlExecutionContext sqlExecutionContext) throws Exception;
+    }
+}
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin;
+
+import io.questdb.test.tools.TestUtils;
+import org.junit.Test;
+
+public class RadixSortLightTest extends AbstractGriffinTest {
+
+    @Test
+    public void testPlan() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            assertPlan(
+                    "select * from x order by l desc",
+                    "Radix sort light\n" +
+                            "  keys: [l desc]\n" +
+                            "    DataFrame\n" +
+                            "        Row forward scan\n" +
+                            "        Frame forward scan on: x\n"
+            );
+        });
+    }
+
+    @Test
+    public void testSortByDate() throws Exception {
+        assertSameAsTreeSort("dt");
+    }
+
+    @Test
+    public void testSortByDouble() throws Exception {
+        assertSameAsTreeSort("d");
+    }
+
+    @Test
+    public void testSortByDoubleSignedZeros() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile(
+                    "create table x as (" +
+                            "select" +
+                            " case x % 4 when 0 then 0.0 when 1 then -1 * 0.0 when 2 then 1.5 else -1.5 end d," +
+                            " timestamp_sequence(0, 1000000) ts" +
+                            " from long_sequence(100)" +
+                            ") timestamp(ts)",
+                    sqlExecutionContext
+            );
+            // the zeros are told apart by their inverse, the comparator orders 0.0 before -0.0
+            for (String order : new String[]{"", " desc"}) {
+                TestUtils.assertSqlCursors(
+                        compiler,
+                        sqlExecutionContext,
+                        "select d, 1 / d inv, ts from x order by d" + order + ", ts desc",
+                        "select d, 1 / d inv, ts from x order by d" + order,
+                        LOG
+                );
+            }
+        });
+    }
+
+    @Test
+    public void testSortByInt() throws Exception {
+        assertSameAsTreeSort("i");
+    }
+
+    @Test
+    public void testSortByLong() throws Exception {
+        assertSameAsTreeSort("l");
+    }
+
+    @Test
+    public void testSortByTimestamp() throws Exception {
+        assertSameAsTreeSort("ts2");
+    }
+
+    @Test
+    public void testSortEmptyTable() throws Exception {
+        assertQuery(
+                "i\tts\n",
+                "select i, ts from x where i = 42 order by i",
+                "create table x as (select rnd_int(0, 10, 0) i, timestamp_sequence(0, 1000000) ts from long_sequence(100))",
+                null,
+                true,
+                true,
+                false
+        );
+    }
+
+    private static void createTable() throws SqlException {
+        compiler.compile(
+                "create table x as (" +
+                        "select" +
+                        " rnd_int(-50, 50, 5) i," +
+                        " rnd_long(-100, 100, 5) l," +
+                        // values with fraction, negatives, zeros and NaNs
+                        " rnd_int(-20, 20, 5) / 4.0 d," +
+                        " rnd_date(to_date('2015', 'yyyy'), to_date('2016', 'yyyy'), 5) dt," +
+                        " rnd_timestamp(to_timestamp('2015', 'yyyy'), to_timestamp('2016', 'yyyy'), 5) ts2," +
+                        " timestamp_sequence(0, 1000000) ts" +
+                        " from long_sequence(1000)" +
+                        ") timestamp(ts)",
+                sqlExecutionContext
+        );
+    }
+
+    private void assertSameAsTreeSort(String column) throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            // the second key forces the comparator based sort; rows with equal
+            // keys are expected in descending row id, i.e. timestamp, order
+            TestUtils.assertSqlCursors(
+                    compiler,
+                    sqlExecutionContext,
+                    "select * from x order by " + column + ", ts desc",
+                    "select * from x order by " + column,
+                    LOG
+            );
+            TestUtils.assertSqlCursors(
+                    compiler,
+                    sqlExecutionContext,
+                    "select * from x order by " + column + " desc, ts desc",
+                    "select * from x order by " + column + " desc",
+                    LOG
+            );
+        });
+    }
+}
@@ -35,6 +35,86 @@ import org.junit.Test;
 
 public class RemovePartitionTest extends AbstractGriffinTest {
 
+    @Test
+    public void testRemovePartitionsInTransaction() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile("create table tst as (select x a, timestamp_sequence(0, 43200000000l) t from long_sequence(6)) timestamp(t) partition by DAY", sqlExecutionContext);
+
+            try (
+                    TableReader reader = getReader("tst");
+                    TableWriter writer = getWriter("tst")
+            ) {
+                // middle and active partitions are replaced
+                Assert.assertEquals(2, writer.removePartitions(Timestamps.DAY_MICROS, Long.MAX_VALUE));
+                for (int i = 0; i < 3; i++) {
+                    TableWriter.Row row = writer.newRow(Timestamps.DAY_MICROS + i * Timestamps.DAY_MICROS / 2);
+                    row.putLong(0, 10 + i);
+                    row.append();
+                }
+
+                // removed partitions are visible until the commit
+                reader.reload();
+                TestUtils.assertReader(
+                        "a\tt\n" +
+                                "1\t1970-01-01T00:00:00.000000Z\n" +
+                                "2\t1970-01-01T12:00:00.000000Z\n" +
+                                "3\t1970-01-02T00:00:00.000000Z\n" +
+                                "4\t1970-01-02T12:00:00.000000Z\n" +
+                                "5\t1970-01-03T00:00:00.000000Z\n" +
+                                "6\t1970-01-03T12:00:00.000000Z\n",
+                        reader,
+                        sink
+                );
+
+                writer.commit();
+                reader.reload();
+                TestUtils.assertReader(
+                        "a\tt\n" +
+                                "1\t1970-01-01T00:00:00.000000Z\n" +
+                                "2\t1970-01-01T12:00:00.000000Z\n" +
+                                "10\t1970-01-02T00:00:00.000000Z\n" +
+                                "11\t1970-01-02T12:00:00.000000Z\n" +
+                                "12\t1970-01-03T00:00:00.000000Z\n",
+                        reader,
+                        sink
+                );
+            }
+        });
+    }
+
+    @Test
+    public void testRemovePartitionsRollback() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile("create table tst as (select x a, timestamp_sequence(0, 43200000000l) t from long_sequence(6)) timestamp(t) partition by DAY", sqlExecutionContext);
+
+            try (TableWriter writer = getWriter("tst")) {
+                Assert.assertEquals(3, writer.removePartitions(Long.MIN_VALUE, Long.MAX_VALUE));
+                TableWriter.Row row = writer.newRow(Timestamps.DAY_MICROS);
+                row.putLong(0, 10);
+                row.append();
+                writer.rollback();
+
+                // table is intact and takes new rows
+                row = writer.newRow(3 * Timestamps.DAY_MICROS);
+                row.putLong(0, 7);
+                row.append();
+                writer.commit();
+            }
+
+            assertSql(
+                    "tst",
+                    "a\tt\n" +
+                            "1\t1970-01-01T00:00:00.000000Z\n" +
+                            "2\t1970-01-01T12:00:00.000000Z\n" +
+                            "3\t1970-01-02T00:00:00.000000Z\n" +
+                            "4\t1970-01-02T12:00:00.000000Z\n" +
+                            "5\t1970-01-03T00:00:00.000000Z\n" +
+                            "6\t1970-01-03T12:00:00.000000Z\n" +
+                            "7\t1970-01-04T00:00:00.000000Z\n"
+            );
+        });
+    }
+
     @Test
     public void testRemoveSeveralFromTop() throws Exception {
         assertMemoryLeak(() -> {
@@ -248,6 +248,8 @@ public class SecurityTest extends AbstractGriffinTest {
                 Assert.fail();
             } catch (Exception ex) {
                 Assert.assertTrue(ex.toString().contains("Interrupting SQL processing"));
+            } finally {
+                circuitBreakerTimeoutDeadline = Long.MAX_VALUE;
             }
         });
     }
@@ -651,6 +653,34 @@ public class SecurityTest extends AbstractGriffinTest {
         });
     }
 
+    @Test
+    public void testMemoryRestrictionsWithRadixOrderBy() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile("create table tb1 as (select" +
+                    " x l," +
+                    " timestamp_sequence(0, 1000000000) ts" +
+                    " from long_sequence(10)) timestamp(ts)", sqlExecutionContext);
+            // the pairs of 4 rows fit into the sort key pages
+            assertQuery(
+                    memoryRestrictedCompiler,
+                    "l\n4\n3\n2\n1\n",
+                    "select l from tb1 where l < 5 order by l desc",
+                    null,
+                    true, readOnlyExecutionContext);
+            try {
+                assertQuery(
+                        memoryRestrictedCompiler,
+                        "TOO MUCH",
+                        "select l from tb1 order by l desc",
+                        null,
+                        true, readOnlyExecutionContext);
+                Assert.fail();
+            } catch (Exception ex) {
+                Assert.assertTrue(ex.toString().contains("Maximum number of pages (2) breached in radix sort"));
+            }
+        });
+    }
+
     @Test
     public void testMemoryRestrictionsWithRandomAccessOrderBy() throws Exception {
         assertMemoryLeak(() -> {
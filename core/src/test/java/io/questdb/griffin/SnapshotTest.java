@@ -36,6 +36,8 @@ import io.questdb.std.str.Path;
 import io.questdb.test.tools.TestUtils;
 import org.junit.*;
 
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.concurrent.CountDownLatch;
 
 public class SnapshotTest extends AbstractGriffinTest {
@@ -105,6 +107,47 @@ public class SnapshotTest extends AbstractGriffinTest {
         }
     }
 
+    @Test
+    public void testRecoverIncrementalSnapshot() throws Exception {
+        assertMemoryLeak(() -> {
+            snapshotInstanceId = "id1";
+
+            compile("create table npt as (select rnd_str(5,10,2) a, x b from long_sequence(20))");
+            compile("create table pt as (select x, rnd_symbol('a','b','c') s, timestamp_sequence(0, 3600000000) ts from long_sequence(100)) timestamp(ts) partition by day");
+            compile("create table w as (select x, timestamp_sequence(0, 3600000000) ts from long_sequence(50)) timestamp(ts) partition by day wal");
+            drainWalQueue();
+            // not applied to the table yet, comes from WAL segment of the snapshot
+            executeInsert("insert into w values (51, '1970-01-05')");
+
+            compiler.compile("snapshot incremental to '" + configuration.getDbDirectory() + "'", sqlExecutionContext);
+
+            compile("insert into npt select rnd_str(3,6,2) a, x+20 b from long_sequence(20)");
+            // O3 insert into the first partition and a new partition
+            compile("insert into pt select x+100, 'd', timestamp_sequence(0, 60000000) from long_sequence(3)");
+            compile("insert into pt select x+200, 'e', timestamp_sequence(1000000000000, 60000000) from long_sequence(3)");
+            executeInsert("insert into w values (52, '1970-01-06')");
+            drainWalQueue();
+            assertSql("select count() from w", "count\n52\n");
+
+            // Release all readers and writers, but keep the snapshot dir around.
+            engine.releaseInactive();
+
+            snapshotInstanceId = "id2";
+
+            DatabaseSnapshotAgent.recoverSnapshot(engine);
+            drainWalQueue();
+
+            assertSql("select count() from npt", "count\n20\n");
+            assertSql("select count(), max(x) from pt", "count\tmax\n100\t100\n");
+            assertSql("select count_distinct(s) from pt", "count_distinct\n3\n");
+            assertSql("select count(), max(x) from w", "count\tmax\n51\t51\n");
+
+            // Recovery should delete the snapshot dir.
+            path.trimTo(rootLen).slash$();
+            Assert.assertFalse(configuration.getFilesFacade().exists(path));
+        });
+    }
+
     @Test
     public void testRecoverSnapshotForDefaultInstanceIds() throws Exception {
         testRecoverSnapshot(null, null, false);
@@ -289,6 +332,78 @@ public class SnapshotTest extends AbstractGriffinTest {
         });
     }
 
+    @Test
+    public void testSnapshotIncrementalInvalidDirName() throws Exception {
+        assertMemoryLeak(() -> {
+            assertSnapshotFailure("snapshot incremental", 20, "'to' expected");
+            assertSnapshotFailure("snapshot incremental 'dir'", 21, "'to' expected");
+            assertSnapshotFailure("snapshot incremental to", 23, "directory name expected");
+            assertSnapshotFailure("snapshot incremental to ''", 24, "directory name expected");
+            assertSnapshotFailure("snapshot incremental to dir", 24, "directory name expected");
+            assertSnapshotFailure("snapshot incremental to '../dir'", 24, "'.' is not allowed here");
+        });
+    }
+
+    @Test
+    public void testSnapshotIncrementalLinksPartitions() throws Exception {
+        assertMemoryLeak(() -> {
+            compile("create table x as (select x, timestamp_sequence(0, 3600000000) ts from long_sequence(72)) timestamp(ts) partition by day");
+            final String dirName = testName.getMethodName();
+            final TableToken tableToken = engine.getTableToken("x");
+            try {
+                compiler.compile("snapshot incremental to '" + dirName + "'", sqlExecutionContext);
+                assertPartitionLinked(dirName, tableToken, "1970-01-01", true);
+                assertPartitionLinked(dirName, tableToken, "1970-01-02", true);
+                // last partition is copied
+                assertPartitionLinked(dirName, tableToken, "1970-01-03", false);
+                final Object firstPartitionKey = getFileKey(getSnapshotPath(dirName, tableToken, "1970-01-01"));
+
+                compile("insert into x select x + 72, timestamp_sequence('1970-01-04', 3600000000) from long_sequence(24)");
+                compiler.compile("snapshot incremental to '" + dirName + "'", sqlExecutionContext);
+                // unchanged partition is kept as is
+                Assert.assertEquals(firstPartitionKey, getFileKey(getSnapshotPath(dirName, tableToken, "1970-01-01")));
+                assertPartitionLinked(dirName, tableToken, "1970-01-03", true);
+                assertPartitionLinked(dirName, tableToken, "1970-01-04", false);
+
+                try (TableReader reader = engine.getReader(sqlExecutionContext.getCairoSecurityContext(), tableToken)) {
+                    try (Path path = new Path()) {
+                        path.of(configuration.getSnapshotRoot()).concat(dirName).concat(tableToken).concat(TableUtils.TXN_FILE_NAME).$();
+                        try (TxReader txReader = new TxReader(configuration.getFilesFacade()).ofRO(path, PartitionBy.DAY)) {
+                            TableUtils.safeReadTxn(txReader, configuration.getMillisecondClock(), configuration.getSpinLockTimeout());
+                            Assert.assertEquals(reader.getTxn(), txReader.getTxn());
+                            Assert.assertEquals(96, txReader.getRowCount());
+                        }
+                    }
+                }
+            } finally {
+                removeSnapshotDir(dirName);
+            }
+        });
+    }
+
+    @Test
+    public void testSnapshotIncrementalRemovesDroppedTables() throws Exception {
+        assertMemoryLeak(() -> {
+            compile("create table a (ts timestamp, name symbol, val int)");
+            compile("create table b (ts timestamp, name symbol, val int)");
+            final String dirName = testName.getMethodName();
+            final TableToken tableToken = engine.getTableToken("b");
+            try (Path path = new Path()) {
+                compiler.compile("snapshot incremental to '" + dirName + "'", sqlExecutionContext);
+                path.of(configuration.getSnapshotRoot()).concat(dirName).concat(tableToken).slash$();
+                Assert.assertTrue(configuration.getFilesFacade().exists(path));
+
+                compile("drop table b");
+                compiler.compile("snapshot incremental to '" + dirName + "'", sqlExecutionContext);
+                Assert.assertFalse(configuration.getFilesFacade().exists(path));
+                path.of(configuration.getSnapshotRoot()).concat(dirName).concat(TableUtils.SNAPSHOT_MANIFEST_FILE_NAME).$();
+                Assert.assertTrue(configuration.getFilesFacade().exists(path));
+            } finally {
+                removeSnapshotDir(dirName);
+            }
+        });
+    }
+
     @Test
     public void testSnapshotPrepare() throws Exception {
         assertMemoryLeak(() -> {
@@ -576,7 +691,7 @@ public class SnapshotTest extends AbstractGriffinTest {
                 compiler.compile("snapshot commit", sqlExecutionContext);
                 Assert.fail();
             } catch (SqlException ex) {
-                Assert.assertTrue(ex.getMessage().startsWith("[9] 'prepare' or 'complete' expected"));
+                Assert.assertTrue(ex.getMessage().startsWith("[9] 'prepare', 'complete' or 'incremental' expected"));
             }
         });
     }
@@ -781,6 +896,46 @@ public class SnapshotTest extends AbstractGriffinTest {
         });
     }
 
+    private static Object getFileKey(java.nio.file.Path path) throws java.io.IOException {
+        return java.nio.file.Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+    }
+
+    private void assertPartitionLinked(String dirName, TableToken tableToken, String partitionName, boolean expectLinked) throws Exception {
+        final java.nio.file.Path dbPartition = getPartitionPath(Paths.get(configuration.getRoot().toString(), tableToken.getDirName()), partitionName);
+        final java.nio.file.Path snapshotPartition = getSnapshotPath(dirName, tableToken, partitionName);
+        Assert.assertEquals(expectLinked, getFileKey(dbPartition).equals(getFileKey(snapshotPartition)));
+    }
+
+    private void assertSnapshotFailure(String sql, int position, String message) {
+        try {
+            compiler.compile(sql, sqlExecutionContext);
+            Assert.fail();
+        } catch (SqlException ex) {
+            Assert.assertEquals(position, ex.getPosition());
+            TestUtils.assertContains(ex.getFlyweightMessage(), message);
+        }
+    }
+
+    // partition directory names may have name txn suffix
+    private static java.nio.file.Path getPartitionPath(java.nio.file.Path tablePath, String partitionName) throws java.io.IOException {
+        try (java.util.stream.Stream<java.nio.file.Path> dirs = java.nio.file.Files.list(tablePath)) {
+            return dirs.filter(p -> p.getFileName().toString().startsWith(partitionName))
+                    .findFirst()
+                    .orElseThrow(AssertionError::new)
+                    .resolve("x.d");
+        }
+    }
+
+    private java.nio.file.Path getSnapshotPath(String dirName, TableToken tableToken, String partitionName) throws java.io.IOException {
+        return getPartitionPath(Paths.get(configuration.getSnapshotRoot().toString(), dirName, tableToken.getDirName()), partitionName);
+    }
+
+    private void removeSnapshotDir(String dirName) {
+        try (Path path = new Path()) {
+            configuration.getFilesFacade().rmdir(path.of(configuration.getSnapshotRoot()).concat(dirName).slash$());
+        }
+    }
+
     private void testRecoverSnapshot(String snapshotId, String restartedId, boolean expectRecovery) throws Exception {
         assertMemoryLeak(() -> {
             snapshotInstanceId = snapshotId;
@@ -129,6 +129,32 @@ public class SqlParserTest extends AbstractSqlParserTest {
         );
     }
 
+    @Test
+    public void testAnalyticFrame() throws Exception {
+        assertQuery(
+                "select-analytic a, sum(c) s over (partition by b order by ts rows between 3 preceding and current row), avg(c) avg over (order by ts range between 90000000 preceding and current row), max(c) max over (rows between unbounded preceding and unbounded following) from (select [a, c, b, ts] from xyz timestamp (ts))",
+                "select a, sum(c) over (partition by b order by ts rows 3 preceding) s," +
+                        " avg(c) over (order by ts range between 90 seconds preceding and current row)," +
+                        " max(c) over (rows between unbounded preceding and unbounded following)" +
+                        " from xyz",
+                modelOf("xyz")
+                        .col("a", ColumnType.INT)
+                        .col("b", ColumnType.INT)
+                        .col("c", ColumnType.INT)
+                        .timestamp("ts")
+        );
+    }
+
+    @Test
+    public void testAnalyticFrameStartFollowing() throws Exception {
+        assertSyntaxError(
+                "select a, sum(c) over (order by ts rows between 1 following and current row) from xyz",
+                50,
+                "frame start must be UNBOUNDED PRECEDING, CURRENT ROW or offset PRECEDING",
+                modelOf("xyz").col("a", ColumnType.INT).col("c", ColumnType.INT).timestamp("ts")
+        );
+    }
+
     @Test
     public void testAnalyticOrderDirection() throws Exception {
         assertQuery(
@@ -1162,6 +1188,32 @@ public class SqlParserTest extends AbstractSqlParserTest {
         );
     }
 
+    @Test
+    public void testCreateTableDedupKeysUnknownColumn() throws Exception {
+        assertSyntaxError(
+                "create table x (s SYMBOL, t TIMESTAMP) timestamp(t) partition by DAY dedup upsert keys(t, y)",
+                90,
+                "Invalid column: y"
+        );
+    }
+
+    @Test
+    public void testCreateTableDedupKeysWithoutTimestamp() throws Exception {
+        assertSyntaxError(
+                "create table x (s SYMBOL, t TIMESTAMP) timestamp(t) partition by DAY dedup upsert keys(s)",
+                69,
+                "deduplication keys must include the designated timestamp column"
+        );
+    }
+
+    @Test
+    public void testCreateTableDedupUpsertKeys() throws SqlException {
+        assertCreateTable(
+                "create table x (s SYMBOL capacity 128 cache, v DOUBLE, t TIMESTAMP) timestamp(t) partition by DAY dedup upsert keys(s, t)",
+                "create table x (s SYMBOL, v DOUBLE, t TIMESTAMP) timestamp(t) partition by DAY WAL DEDUP UPSERT KEYS(t, s)"
+        );
+    }
+
     @Test
     public void testCreateTableDuplicateCast() throws Exception {
         assertSyntaxError(
@@ -0,0 +1,245 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.analytic;
+
+import io.questdb.griffin.AbstractGriffinTest;
+import io.questdb.std.str.StringSink;
+import org.junit.Test;
+
+public class WindowFunctionTest extends AbstractGriffinTest {
+
+    private static final String DDL = "create table x as (" +
+            "select" +
+            " case when x % 2 = 1 then 'a' else 'b' end::symbol sym," +
+            " x::double price," +
+            " timestamp_sequence(0, 1000000) ts" +
+            " from long_sequence(6)" +
+            ") timestamp(ts) partition by day";
+
+    @Test
+    public void testAvgOverWholePartition() throws Exception {
+        assertMemoryLeak(() -> {
+            compile(DDL);
+            assertSql(
+                    "select sym, price," +
+                            " avg(price) over (partition by sym rows between unbounded preceding and unbounded following) avg," +
+                            " sum(price) over (rows between unbounded preceding and unbounded following) sum" +
+                            " from x",
+                    "sym\tprice\tavg\tsum\n" +
+                            "a\t1.0\t3.0\t21.0\n" +
+                            "b\t2.0\t4.0\t21.0\n" +
+                            "a\t3.0\t3.0\t21.0\n" +
+                            "b\t4.0\t4.0\t21.0\n" +
+                            "a\t5.0\t3.0\t21.0\n" +
+                            "b\t6.0\t4.0\t21.0\n"
+            );
+        });
+    }
+
+    @Test
+    public void testCachedPlanForLead() throws Exception {
+        assertMemoryLeak(() -> {
+            compile(DDL);
+            assertPlan(
+                    "select ts, lead(price) over (partition by sym order by ts) from x",
+                    "CachedAnalytic\n" +
+                            "  functions: [lead(price,1) over (partition by [sym])]\n" +
+                            "    DataFrame\n" +
+                            "        Row forward scan\n" +
+                            "        Frame forward scan on: x\n"
+            );
+        });
+    }
+
+    @Test
+    public void testFirstLastValueOverTimeRange() throws Exception {
+        assertMemoryLeak(() -> {
+            compile(DDL);
+            assertSql(
+                    "select ts, price," +
+                            " first_value(price) over (partition by sym order by ts range between 2 seconds preceding and current row) first," +
+                            " last_value(price) over (partition by sym order by ts range between 2 seconds preceding and current row) last" +
+                            " from x",
+                    "ts\tprice\tfirst\tlast\n" +
+                            "1970-01-01T00:00:00.000000Z\t1.0\t1.0\t1.0\n" +
+                            "1970-01-01T00:00:01.000000Z\t2.0\t2.0\t2.0\n" +
+                            "1970-01-01T00:00:02.000000Z\t3.0\t1.0\t3.0\n" +
+                            "1970-01-01T00:00:03.000000Z\t4.0\t2.0\t4.0\n" +
+                            "1970-01-01T00:00:04.000000Z\t5.0\t3.0\t5.0\n" +
+                            "1970-01-01T00:00:05.000000Z\t6.0\t4.0\t6.0\n"
+            );
+        });
+    }
+
+    @Test
+    public void testFrameEndFollowingNotSupported() throws Exception {
+        assertFailure(
+                "select sum(price) over (order by ts rows between 1 preceding and 1 following) from x",
+                DDL,
+                65,
+                "frame end must be CURRENT ROW or UNBOUNDED FOLLOWING"
+        );
+    }
+
+    @Test
+    public void testLagAndLead() throws Exception {
+        assertMemoryLeak(() -> {
+            compile(DDL);
+            assertSql(
+                    "select ts, price," +
+                            " lag(price) over (partition by sym order by ts) lag," +
+                            " lag(price, 2) over (order by ts) lag2," +
+                            " lead(price) over (partition by sym order by ts) lead" +
+                            " from x",
+                    "ts\tprice\tlag\tlag2\tlead\n" +
+                            "1970-01-01T00:00:00.000000Z\t1.0\tNaN\tNaN\t3.0\n" +
+                            "1970-01-01T00:00:01.000000Z\t2.0\tNaN\tNaN\t4.0\n" +
+                            "1970-01-01T00:00:02.000000Z\t3.0\t1.0\t1.0\t5.0\n" +
+                            "1970-01-01T00:00:03.000000Z\t4.0\t2.0\t2.0\t6.0\n" +
+                            "1970-01-01T00:00:04.000000Z\t5.0\t3.0\t3.0\tNaN\n" +
+                            "1970-01-01T00:00:05.000000Z\t6.0\t4.0\t4.0\tNaN\n"
+            );
+        });
+    }
+
+    @Test
+    public void testRangeOffsetRequiresTimestampOrder() throws Exception {
+        assertFailure(
+                "select sum(price) over (order by price range between 2 preceding and current row) from x",
+                DDL,
+                7,
+                "RANGE frame with offset requires ORDER BY on a single timestamp column in ascending order"
+        );
+    }
+
+    @Test
+    public void testRowsFrameOverRandomOrder() throws Exception {
+        assertMemoryLeak(() -> {
+            compile(DDL);
+            assertSql(
+                    "select price, sum(price) over (order by price desc rows between 1 preceding and current row) sum from x",
+                    "price\tsum\n" +
+                            "1.0\t3.0\n" +
+                            "2.0\t5.0\n" +
+                            "3.0\t7.0\n" +
+                            "4.0\t9.0\n" +
+                            "5.0\t11.0\n" +
+                            "6.0\t6.0\n"
+            );
+        });
+    }
+
+    @Test
+    public void testRunningSum() throws Exception {
+        assertMemoryLeak(() -> {
+            compile(DDL);
+            assertSql(
+                    "select ts, sum(price) over (order by ts) sum, max(price) over (order by ts rows between unbounded preceding and unbounded following) max from x",
+                    "ts\tsum\tmax\n" +
+                            "1970-01-01T00:00:00.000000Z\t1.0\t6.0\n" +
+                            "1970-01-01T00:00:01.000000Z\t3.0\t6.0\n" +
+                            "1970-01-01T00:00:02.000000Z\t6.0\t6.0\n" +
+                            "1970-01-01T00:00:03.000000Z\t10.0\t6.0\n" +
+                            "1970-01-01T00:00:04.000000Z\t15.0\t6.0\n" +
+                            "1970-01-01T00:00:05.000000Z\t21.0\t6.0\n"
+            );
+        });
+    }
+
+    @Test
+    public void testSlidingRowsFrame() throws Exception {
+        assertMemoryLeak(() -> {
+            compile(DDL);
+            assertSql(
+                    "select ts, price," +
+                            " sum(price) over (order by ts rows between 2 preceding and current row) sum," +
+                            " avg(price) over (order by ts rows between 1 preceding and current row) avg," +
+                            " min(price) over (order by ts rows 2 preceding) min," +
+                            " max(price) over (order by ts rows 2 preceding) max" +
+                            " from x",
+                    "ts\tprice\tsum\tavg\tmin\tmax\n" +
+                            "1970-01-01T00:00:00.000000Z\t1.0\t1.0\t1.0\t1.0\t1.0\n" +
+                            "1970-01-01T00:00:01.000000Z\t2.0\t3.0\t1.5\t1.0\t2.0\n" +
+                            "1970-01-01T00:00:02.000000Z\t3.0\t6.0\t2.5\t1.0\t3.0\n" +
+                            "1970-01-01T00:00:03.000000Z\t4.0\t9.0\t3.5\t2.0\t4.0\n" +
+                            "1970-01-01T00:00:04.000000Z\t5.0\t12.0\t4.5\t3.0\t5.0\n" +
+                            "1970-01-01T00:00:05.000000Z\t6.0\t15.0\t5.5\t4.0\t6.0\n"
+            );
+        });
+    }
+
+    @Test
+    public void testSlidingFramesLargerThanInitialBuffer() throws Exception {
+        assertMemoryLeak(() -> {
+            compile("create table y as (select x::double price, timestamp_sequence(0, 1000000) ts from long_sequence(100)) timestamp(ts)");
+            final StringSink expected = new StringSink();
+            expected.put("price\tsum\tmin\n");
+            for (int n = 1; n <= 100; n++) {
+                final int lo = Math.max(1, n - 19);
+                expected.put(n).put(".0\t").put((lo + n) * (n - lo + 1) / 2).put(".0\t").put(Math.max(1, n - 30)).put(".0\n");
+            }
+            assertSql(
+                    "select price," +
+                            " sum(price) over (order by ts rows between 19 preceding and current row) sum," +
+                            " min(price) over (order by ts range between 30 seconds preceding and current row) min" +
+                            " from y",
+                    expected
+            );
+        });
+    }
+
+    @Test
+    public void testStreamingPlan() throws Exception {
+        assertMemoryLeak(() -> {
+            compile(DDL);
+            assertPlan(
+                    "select ts, sum(price) over (partition by sym order by ts range between 1 minute preceding and current row) from x",
+                    "Analytic\n" +
+                            "  functions: [sum(price) over (partition by [sym] range between 60000000 preceding and current row)]\n" +
+                            "    DataFrame\n" +
+                            "        Row forward scan\n" +
+                            "        Frame forward scan on: x\n"
+            );
+        });
+    }
+
+    @Test
+    public void testSumOverTimeRange() throws Exception {
+        assertMemoryLeak(() -> {
+            compile(DDL);
+            assertSql(
+                    "select ts, sym, sum(price) over (partition by sym order by ts range between 2 seconds preceding and current row) sum from x",
+                    "ts\tsym\tsum\n" +
+                            "1970-01-01T00:00:00.000000Z\ta\t1.0\n" +
+                            "1970-01-01T00:00:01.000000Z\tb\t2.0\n" +
+                            "1970-01-01T00:00:02.000000Z\ta\t4.0\n" +
+                            "1970-01-01T00:00:03.000000Z\tb\t6.0\n" +
+                            "1970-01-01T00:00:04.000000Z\ta\t8.0\n" +
+                            "1970-01-01T00:00:05.000000Z\tb\t10.0\n"
+            );
+        });
+    }
+}
@@ -33,8 +33,11 @@ import io.questdb.griffin.*;
 import io.questdb.griffin.engine.analytic.AnalyticContext;
 import io.questdb.jit.JitUtil;
 import io.questdb.mp.*;
+import io.questdb.std.Files;
+import io.questdb.std.FilesFacade;
 import io.questdb.std.Misc;
 import io.questdb.std.Rnd;
+import io.questdb.std.TestFilesFacadeImpl;
 import io.questdb.std.str.StringSink;
 import io.questdb.test.tools.TestUtils;
 import org.hamcrest.MatcherAssert;
@@ -370,6 +373,49 @@ public class AsyncFilteredRecordCursorFactoryTest extends AbstractGriffinTest {
         testNoLimit(true, SqlJitMode.JIT_MODE_ENABLED, AsyncJitFilteredRecordCursorFactory.class);
     }
 
+    @Test
+    public void testPageFramePrefetch() throws Exception {
+        final AtomicInteger willNeedCount = new AtomicInteger();
+        final FilesFacade ff = new TestFilesFacadeImpl() {
+            @Override
+            public void madvise(long address, long len, int advise) {
+                if (advise == Files.POSIX_MADV_WILLNEED) {
+                    Assert.assertEquals(0, address % Files.PAGE_SIZE);
+                    Assert.assertTrue(len > 0);
+                    willNeedCount.incrementAndGet();
+                }
+                super.madvise(address, len, advise);
+            }
+        };
+
+        withPool(ff, (engine, compiler, sqlExecutionContext) -> {
+            sqlExecutionContext.setJitMode(SqlJitMode.JIT_MODE_DISABLED);
+            compiler.compile("create table x as (select x % 2 a, timestamp_sequence(0, 100000) t from long_sequence(200000)) timestamp(t) partition by hour", sqlExecutionContext);
+            // column top makes the frames of the first partitions skip the string column
+            compile("alter table x add column s string", compiler, sqlExecutionContext);
+            compiler.compile("insert into x select x % 2, timestamp_sequence(20000000000, 100000), 'abc' || x from long_sequence(200000)", sqlExecutionContext);
+
+            try (RecordCursorFactory factory = compiler.compile("x where a = 1", sqlExecutionContext).getRecordCursorFactory()) {
+                Assert.assertEquals(AsyncFilteredRecordCursorFactory.class, factory.getClass());
+                try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                    final Record record = cursor.getRecord();
+                    long rows = 0;
+                    long strings = 0;
+                    while (cursor.hasNext()) {
+                        Assert.assertEquals(1, record.getLong(0));
+                        if (record.getStr(2) != null) {
+                            strings++;
+                        }
+                        rows++;
+                    }
+                    Assert.assertEquals(200000, rows);
+                    Assert.assertEquals(100000, strings);
+                }
+            }
+            Assert.assertTrue(willNeedCount.get() > 0);
+        });
+    }
+
     @Test
     public void testPageFrameSequenceJit() throws Exception {
         // Disable the test on ARM64.
@@ -769,8 +815,17 @@ public class AsyncFilteredRecordCursorFactoryTest extends AbstractGriffinTest {
         withPool0(runnable, workerCount, workerCount);
     }
 
+    private void withPool(FilesFacade ff, CustomisableRunnable runnable) throws Exception {
+        int workerCount = 4;
+        withPool0(ff, runnable, workerCount, workerCount);
+    }
+
     private void withPool0(CustomisableRunnable runnable, int workerCount, int sharedWorkerCount) throws Exception {
-        assertMemoryLeak(() -> {
+        withPool0(AbstractCairoTest.ff, runnable, workerCount, sharedWorkerCount);
+    }
+
+    private void withPool0(FilesFacade ff, CustomisableRunnable runnable, int workerCount, int sharedWorkerCount) throws Exception {
+        assertMemoryLeak(ff, () -> {
 
             WorkerPool pool = new TestWorkerPool(workerCount);
             TestUtils.setupWorkerPool(pool, engine);
@@ -809,9 +864,13 @@ public class AsyncFilteredRecordCursorFactoryTest extends AbstractGriffinTest {
                 @Nullable RecordSink partitionBySink,
                 @Nullable ColumnTypes keyTypes,
                 boolean isOrdered,
-                boolean baseSupportsRandomAccess
+                boolean baseSupportsRandomAccess,
+                int framingMode,
+                long rowsLo,
+                long rowsHi,
+                int timestampIndex
         ) {
-            sqlExecutionContext.configureAnalyticContext(partitionByRecord, partitionBySink, keyTypes, isOrdered, baseSupportsRandomAccess);
+            sqlExecutionContext.configureAnalyticContext(partitionByRecord, partitionBySink, keyTypes, isOrdered, baseSupportsRandomAccess, framingMode, rowsLo, rowsHi, timestampIndex);
         }
 
         @Override
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.wal;
+
+import io.questdb.cairo.wal.ApplyWal2TableJob;
+import io.questdb.cairo.wal.WalMetrics;
+import io.questdb.griffin.AbstractGriffinTest;
+import io.questdb.std.str.StringSink;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WalApplyTimeQuotaTest extends AbstractGriffinTest {
+
+    @Test
+    public void testApplyLagIsReportedPerTable() throws Exception {
+        assertMemoryLeak(() -> {
+            currentMicros = 1000L;
+            createTable("x");
+            createTable("y");
+            executeInsert("insert into x values (1, '2022-02-24T00:00:00')");
+            currentMicros = 3000L;
+            executeInsert("insert into y values (1, '2022-02-24T00:00:00')");
+
+            currentMicros = 6000L;
+            drainWalQueue();
+
+            final WalMetrics walMetrics = metrics.getWalMetrics();
+            Assert.assertEquals(5000L, walMetrics.getApplyLag("x"));
+            Assert.assertEquals(3000L, walMetrics.getApplyLag("y"));
+
+            final StringSink scraped = new StringSink();
+            metrics.scrapeIntoPrometheus(scraped);
+            Assert.assertTrue(scraped.toString().contains("questdb_wal_apply_lag_micros{table=\"x\"} 5000\n"));
+
+            compile("drop table x");
+            drainWalQueue();
+            Assert.assertEquals(0L, walMetrics.getApplyLag("x"));
+            Assert.assertEquals(3000L, walMetrics.getApplyLag("y"));
+        });
+    }
+
+    @Test
+    public void testTableIsRequeuedWhenQuotaIsExceeded() throws Exception {
+        node1.getConfigurationOverrides().setWalApplyTableTimeQuota(0);
+        assertMemoryLeak(() -> {
+            currentMicros = 1000L;
+            createTable("x");
+            createTable("y");
+            for (int i = 0; i < 4; i++) {
+                executeInsert("insert into x values (" + i + ", '2022-02-24T00:00:0" + i + "')");
+            }
+            executeInsert("insert into y values (100, '2022-02-24T00:00:00')");
+
+            try (ApplyWal2TableJob walApplyJob = createWalApplyJob()) {
+                // the first notification of x applies two transactions and re-queues the table
+                Assert.assertTrue(walApplyJob.run(0));
+                assertSql("select count() from x", "count\n2\n");
+                assertSql("select count() from y", "count\n0\n");
+
+                drainWalQueue(walApplyJob);
+            }
+
+            assertSql("x", "v\tts\n" +
+                    "0\t2022-02-24T00:00:00.000000Z\n" +
+                    "1\t2022-02-24T00:00:01.000000Z\n" +
+                    "2\t2022-02-24T00:00:02.000000Z\n" +
+                    "3\t2022-02-24T00:00:03.000000Z\n");
+            assertSql("y", "v\tts\n" +
+                    "100\t2022-02-24T00:00:00.000000Z\n");
+        });
+    }
+
+    private static void createTable(String tableName) throws Exception {
+        compile("create table " + tableName + " (v long, ts timestamp) timestamp(ts) partition by DAY WAL");
+    }
+}
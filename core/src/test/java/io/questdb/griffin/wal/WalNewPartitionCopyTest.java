@@ -0,0 +1,135 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2022 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.wal;
+
+import io.questdb.griffin.AbstractGriffinTest;
+import io.questdb.griffin.SqlException;
+import io.questdb.std.FilesFacade;
+import io.questdb.std.Rnd;
+import io.questdb.std.TestFilesFacadeImpl;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class WalNewPartitionCopyTest extends AbstractGriffinTest {
+    private static final String DATA = "select" +
+            " rnd_int() i," +
+            " rnd_long() l," +
+            " rnd_double(2) d," +
+            " rnd_str(1, 20, 2) s," +
+            " rnd_bin(1, 20, 2) b," +
+            " rnd_symbol('a', 'b', 'c', null) sym," +
+            " rnd_symbol('x', 'y', null) isym," +
+            " timestamp_sequence(";
+
+    @Test
+    public void testInOrderCommitsAppendToActivePartition() throws Exception {
+        final AtomicInteger copyCount = new AtomicInteger();
+        FilesFacade ff = new TestFilesFacadeImpl() {
+            @Override
+            public long copyData(int srcFd, int destFd, long offsetSrc, long length) {
+                copyCount.incrementAndGet();
+                return super.copyData(srcFd, destFd, offsetSrc, length);
+            }
+        };
+
+        assertMemoryLeak(ff, () -> {
+            createTables();
+            insert("'2022-02-24', 60000000L", 100);
+            drainWalQueue();
+            assertTables();
+
+            // rows land in the active partition, they are copied into the mapped append memory
+            copyCount.set(0);
+            insert("'2022-02-24T02', 60000000L", 100);
+            drainWalQueue();
+            Assert.assertEquals(0, copyCount.get());
+            assertTables();
+        });
+    }
+
+    @Test
+    public void testInOrderCommitsAreCopiedToNewPartitions() throws Exception {
+        final AtomicInteger copyCount = new AtomicInteger();
+        FilesFacade ff = new TestFilesFacadeImpl() {
+            @Override
+            public long copyData(int srcFd, int destFd, long offsetSrc, long length) {
+                copyCount.incrementAndGet();
+                return super.copyData(srcFd, destFd, offsetSrc, length);
+            }
+        };
+
+        assertMemoryLeak(ff, () -> {
+            createTables();
+            insert("'2022-02-24', 1800000000L", 100);
+            drainWalQueue();
+            Assert.assertTrue(copyCount.get() > 0);
+            assertTables();
+
+            // in-order commit into the last partition and a few new ones
+            insert("'2022-02-26T02', 1800000000L", 100);
+            drainWalQueue();
+            assertTables();
+
+            // O3 commit mixes the rows into the existing partitions
+            insert("'2022-02-24T00:10', 3600000000L", 50);
+            drainWalQueue();
+            assertTables();
+        });
+    }
+
+    @Test
+    public void testNullVarColumnsAreCopied() throws Exception {
+        assertMemoryLeak(() -> {
+            compile("create table x (s string, b binary, ts timestamp) timestamp(ts) partition by HOUR WAL");
+            executeInsert("insert into x values (null, null, '2022-02-24T00:00'), (null, null, '2022-02-24T01:00'), ('abc', null, '2022-02-24T01:30')");
+            drainWalQueue();
+            assertSql("x", "s\tb\tts\n" +
+                    "\t\t2022-02-24T00:00:00.000000Z\n" +
+                    "\t\t2022-02-24T01:00:00.000000Z\n" +
+                    "abc\t\t2022-02-24T01:30:00.000000Z\n");
+        });
+    }
+
+    private static void assertTables() throws SqlException {
+        TestUtils.assertSqlCursors(compiler, sqlExecutionContext, "x", "y", LOG);
+    }
+
+    private static void createTables() throws SqlException {
+        compile("create table x (i int, l long, d double, s string, b binary, sym symbol, isym symbol index, ts timestamp) timestamp(ts) partition by DAY BYPASS WAL");
+        compile("create table y (i int, l long, d double, s string, b binary, sym symbol, isym symbol index, ts timestamp) timestamp(ts) partition by DAY WAL");
+    }
+
+    private static void insert(String timestampSequence, int count) throws SqlException {
+        final String select = DATA + timestampSequence + ") ts from long_sequence(" + count + ")";
+        final long seed = sqlExecutionContext.getRandom().nextLong();
+        sqlExecutionContext.setRandom(new Rnd(seed, seed));
+        compile("insert into x " + select);
+        sqlExecutionContext.setRandom(new Rnd(seed, seed));
+        compile("insert into y " + select);
+    }
+}
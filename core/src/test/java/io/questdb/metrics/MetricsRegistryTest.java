@@ -27,6 +27,7 @@ package io.questdb.metrics;
 import io.questdb.std.str.CharSink;
 import io.questdb.std.str.StringSink;
 import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
 import org.junit.Test;
 
 public class MetricsRegistryTest {
@@ -108,6 +109,30 @@ public class MetricsRegistryTest {
         assertScrapable(gauge, expected2);
     }
 
+    @Test
+    public void testGaugeWithOneLabel() {
+        MetricsRegistry metricsRegistry = new MetricsRegistryImpl();
+        LongGaugeWithOneLabel gauge = metricsRegistry.newLongGauge("gauge", "label0");
+        assertScrapable(gauge, "");
+
+        gauge.setValue("A", 5);
+        // mutable label sequences are copied on first use
+        StringSink label = new StringSink();
+        label.put('A');
+        gauge.setValue(label, 7);
+        label.clear();
+        Assert.assertEquals(7, gauge.getValue("A"));
+        Assert.assertEquals(0, gauge.getValue("B"));
+
+        String expected = "# TYPE questdb_gauge gauge\n" +
+                "questdb_gauge{label0=\"A\"} 7\n" +
+                "\n";
+        assertScrapable(gauge, expected);
+
+        gauge.remove("A");
+        assertScrapable(gauge, "");
+    }
+
     @Test
     public void testNullCounter() {
         MetricsRegistry metricsRegistry = new NullMetricsRegistry();
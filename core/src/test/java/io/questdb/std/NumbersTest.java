@@ -111,6 +111,18 @@ public class NumbersTest {
         Assert.assertEquals(32, Numbers.ceilPow2(17));
     }
 
+    @Test
+    public void testCompareDouble() {
+        Assert.assertEquals(0, Numbers.compare(0.0, 0.0));
+        Assert.assertEquals(0, Numbers.compare(42.5, 42.5));
+        Assert.assertEquals(0, Numbers.compare(Double.NaN, Double.NaN));
+        Assert.assertEquals(-1, Numbers.compare(1.0, 2.0));
+        Assert.assertEquals(1, Numbers.compare(2.0, 1.0));
+        // NaN is ordered the same way as in the float version
+        Assert.assertEquals(Numbers.compare(Float.NaN, 1.0f), Numbers.compare(Double.NaN, 1.0));
+        Assert.assertEquals(Numbers.compare(1.0f, Float.NaN), Numbers.compare(1.0, Double.NaN));
+    }
+
     @Test(expected = NumericException.class)
     public void testEmptyDouble() throws Exception {
         Numbers.parseDouble("D");